@@ -0,0 +1,307 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.benchmark;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import com.sitewhere.core.SiteWherePersistence;
+import com.sitewhere.rest.model.common.Location;
+import com.sitewhere.rest.model.device.Device;
+import com.sitewhere.rest.model.device.DeviceAssignment;
+import com.sitewhere.rest.model.device.Zone;
+import com.sitewhere.rest.model.device.command.CommandParameter;
+import com.sitewhere.rest.model.device.command.DeviceCommand;
+import com.sitewhere.rest.model.device.event.request.DeviceAlertCreateRequest;
+import com.sitewhere.rest.model.device.event.request.DeviceCommandInvocationCreateRequest;
+import com.sitewhere.rest.model.device.event.request.DeviceCommandResponseCreateRequest;
+import com.sitewhere.rest.model.device.event.request.DeviceLocationCreateRequest;
+import com.sitewhere.rest.model.device.event.request.DeviceMeasurementsCreateRequest;
+import com.sitewhere.rest.model.device.event.request.DeviceStateChangeCreateRequest;
+import com.sitewhere.rest.model.device.event.request.DeviceStreamDataCreateRequest;
+import com.sitewhere.spi.SiteWhereException;
+import com.sitewhere.spi.device.DeviceAssignmentStatus;
+import com.sitewhere.spi.device.DeviceAssignmentType;
+import com.sitewhere.spi.device.command.ParameterType;
+import com.sitewhere.spi.device.event.AlertLevel;
+import com.sitewhere.spi.device.event.AlertSource;
+import com.sitewhere.spi.device.event.CommandInitiator;
+import com.sitewhere.spi.device.event.CommandTarget;
+import com.sitewhere.spi.device.event.IDeviceMeasurements;
+import com.sitewhere.spi.device.event.state.StateChangeCategory;
+import com.sitewhere.spi.device.event.state.StateChangeType;
+
+/**
+ * Builds the model objects shared by benchmarks. Values are generated from a
+ * fixed seed so that runs are comparable.
+ * 
+ * @author Derek
+ */
+public class BenchmarkData {
+
+    /** Hardware id used for all benchmark events */
+    public static final String HARDWARE_ID = "benchmark-device";
+
+    /** Token for benchmark assignment */
+    public static final String ASSIGNMENT_TOKEN = "benchmark-assignment";
+
+    /** Token for benchmark site */
+    public static final String SITE_TOKEN = "benchmark-site";
+
+    /** Token for benchmark specification */
+    public static final String SPECIFICATION_TOKEN = "benchmark-specification";
+
+    /** Token for benchmark command */
+    public static final String COMMAND_TOKEN = "benchmark-command";
+
+    /** Latitude around which locations and zones are generated */
+    private static final double CENTER_LATITUDE = 33.75;
+
+    /** Longitude around which locations and zones are generated */
+    private static final double CENTER_LONGITUDE = -84.39;
+
+    /** Seed for generated values */
+    private static final long SEED = 1234567890L;
+
+    /**
+     * Create a device with an active assignment.
+     * 
+     * @return
+     */
+    public static Device createDevice() {
+	Device device = new Device();
+	device.setHardwareId(HARDWARE_ID);
+	device.setSiteToken(SITE_TOKEN);
+	device.setSpecificationToken(SPECIFICATION_TOKEN);
+	device.setAssignmentToken(ASSIGNMENT_TOKEN);
+	return device;
+    }
+
+    /**
+     * Create the assignment events are recorded against.
+     * 
+     * @return
+     */
+    public static DeviceAssignment createAssignment() {
+	DeviceAssignment assignment = new DeviceAssignment();
+	assignment.setToken(ASSIGNMENT_TOKEN);
+	assignment.setDeviceHardwareId(HARDWARE_ID);
+	assignment.setSiteToken(SITE_TOKEN);
+	assignment.setAssignmentType(DeviceAssignmentType.Unassociated);
+	assignment.setStatus(DeviceAssignmentStatus.Active);
+	assignment.setActiveDate(new Date());
+	return assignment;
+    }
+
+    /**
+     * Create a measurements request with the given number of values.
+     * 
+     * @param count
+     * @return
+     */
+    public static DeviceMeasurementsCreateRequest createMeasurementsRequest(int count) {
+	Random random = new Random(SEED);
+	DeviceMeasurementsCreateRequest request = new DeviceMeasurementsCreateRequest();
+	for (int i = 0; i < count; i++) {
+	    request.addOrReplaceMeasurement("mx" + i, random.nextDouble() * 100.0);
+	}
+	request.setEventDate(new Date());
+	return request;
+    }
+
+    /**
+     * Create a location request near the benchmark center point.
+     * 
+     * @return
+     */
+    public static DeviceLocationCreateRequest createLocationRequest() {
+	DeviceLocationCreateRequest request = new DeviceLocationCreateRequest();
+	request.setLatitude(CENTER_LATITUDE + 0.001);
+	request.setLongitude(CENTER_LONGITUDE - 0.001);
+	request.setElevation(300.0);
+	request.setEventDate(new Date());
+	return request;
+    }
+
+    /**
+     * Create an alert request.
+     * 
+     * @return
+     */
+    public static DeviceAlertCreateRequest createAlertRequest() {
+	DeviceAlertCreateRequest request = new DeviceAlertCreateRequest();
+	request.setSource(AlertSource.Device);
+	request.setLevel(AlertLevel.Warning);
+	request.setType("engine.overheat");
+	request.setMessage("Engine temperature above threshold.");
+	request.setEventDate(new Date());
+	return request;
+    }
+
+    /**
+     * Create a state change request.
+     * 
+     * @return
+     */
+    public static DeviceStateChangeCreateRequest createStateChangeRequest() {
+	DeviceStateChangeCreateRequest request = new DeviceStateChangeCreateRequest();
+	request.setCategory(StateChangeCategory.Presence);
+	request.setType(StateChangeType.Presence_Updated);
+	request.setPreviousState("PRESENT");
+	request.setNewState("NOT_PRESENT");
+	request.setEventDate(new Date());
+	return request;
+    }
+
+    /**
+     * Create a command with a few typed parameters.
+     * 
+     * @return
+     */
+    public static DeviceCommand createCommand() {
+	DeviceCommand command = new DeviceCommand();
+	command.setToken(COMMAND_TOKEN);
+	command.setSpecificationToken(SPECIFICATION_TOKEN);
+	command.setNamespace("http://sitewhere/benchmark");
+	command.setName("setThresholds");
+	List<CommandParameter> parameters = new ArrayList<CommandParameter>();
+	parameters.add(createParameter("label", ParameterType.String, true));
+	parameters.add(createParameter("limit", ParameterType.Int32, true));
+	parameters.add(createParameter("ratio", ParameterType.Double, false));
+	command.setParameters(parameters);
+	return command;
+    }
+
+    /**
+     * Create a command parameter.
+     * 
+     * @param name
+     * @param type
+     * @param required
+     * @return
+     */
+    protected static CommandParameter createParameter(String name, ParameterType type, boolean required) {
+	CommandParameter parameter = new CommandParameter();
+	parameter.setName(name);
+	parameter.setType(type);
+	parameter.setRequired(required);
+	return parameter;
+    }
+
+    /**
+     * Create an invocation request for the command from
+     * {@link #createCommand()}.
+     * 
+     * @return
+     */
+    public static DeviceCommandInvocationCreateRequest createCommandInvocationRequest() {
+	DeviceCommandInvocationCreateRequest request = new DeviceCommandInvocationCreateRequest();
+	request.setCommandToken(COMMAND_TOKEN);
+	request.setInitiator(CommandInitiator.REST);
+	request.setInitiatorId("admin");
+	request.setTarget(CommandTarget.Assignment);
+	request.setTargetId(ASSIGNMENT_TOKEN);
+	Map<String, String> values = new HashMap<String, String>();
+	values.put("label", "benchmark");
+	values.put("limit", "100");
+	values.put("ratio", "0.75");
+	request.setParameterValues(values);
+	request.setEventDate(new Date());
+	return request;
+    }
+
+    /**
+     * Create a command response request.
+     * 
+     * @return
+     */
+    public static DeviceCommandResponseCreateRequest createCommandResponseRequest() {
+	DeviceCommandResponseCreateRequest request = new DeviceCommandResponseCreateRequest();
+	request.setOriginatingEventId("benchmark-invocation");
+	request.setResponse("ACK");
+	request.setEventDate(new Date());
+	return request;
+    }
+
+    /**
+     * Create a stream data request carrying a chunk of the given size.
+     * 
+     * @param size
+     * @return
+     */
+    public static DeviceStreamDataCreateRequest createStreamDataRequest(int size) {
+	byte[] data = new byte[size];
+	new Random(SEED).nextBytes(data);
+	DeviceStreamDataCreateRequest request = new DeviceStreamDataCreateRequest();
+	request.setStreamId("firmware");
+	request.setSequenceNumber(1);
+	request.setData(data);
+	request.setEventDate(new Date());
+	return request;
+    }
+
+    /**
+     * Create square zones spread around the benchmark center point.
+     * 
+     * @param count
+     * @param vertices
+     *            number of vertices per zone
+     * @return
+     */
+    public static List<Zone> createZones(int count, int vertices) {
+	Random random = new Random(SEED);
+	List<Zone> zones = new ArrayList<Zone>();
+	for (int i = 0; i < count; i++) {
+	    double lat = CENTER_LATITUDE + ((random.nextDouble() - 0.5) * 0.1);
+	    double lon = CENTER_LONGITUDE + ((random.nextDouble() - 0.5) * 0.1);
+	    double radius = 0.005 + (random.nextDouble() * 0.02);
+	    List<Location> coordinates = new ArrayList<Location>();
+	    for (int v = 0; v < vertices; v++) {
+		double angle = (2 * Math.PI * v) / vertices;
+		coordinates.add(new Location(lat + (radius * Math.sin(angle)), lon + (radius * Math.cos(angle))));
+	    }
+	    Zone zone = new Zone();
+	    zone.setToken("zone-" + i);
+	    zone.setSiteToken(SITE_TOKEN);
+	    zone.setName("Zone " + i);
+	    zone.setCoordinates(coordinates);
+	    zones.add(zone);
+	}
+	return zones;
+    }
+
+    /**
+     * Create a history of measurements events as would be returned by a
+     * datastore query, newest first.
+     * 
+     * @param events
+     * @param measurementsPerEvent
+     * @return
+     * @throws SiteWhereException
+     */
+    public static List<IDeviceMeasurements> createMeasurementsHistory(int events, int measurementsPerEvent)
+	    throws SiteWhereException {
+	Random random = new Random(SEED);
+	DeviceAssignment assignment = createAssignment();
+	long now = System.currentTimeMillis();
+	List<IDeviceMeasurements> results = new ArrayList<IDeviceMeasurements>();
+	for (int i = 0; i < events; i++) {
+	    DeviceMeasurementsCreateRequest request = new DeviceMeasurementsCreateRequest();
+	    for (int j = 0; j < measurementsPerEvent; j++) {
+		request.addOrReplaceMeasurement("mx" + j, random.nextDouble() * 100.0);
+	    }
+	    request.setEventDate(new Date(now - (i * 1000L)));
+	    results.add(SiteWherePersistence.deviceMeasurementsCreateLogic(request, assignment));
+	}
+	return results;
+    }
+}
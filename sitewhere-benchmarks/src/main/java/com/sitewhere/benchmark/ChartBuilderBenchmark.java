@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sitewhere.device.charting.ChartBuilder;
+import com.sitewhere.spi.SiteWhereException;
+import com.sitewhere.spi.device.charting.IChartSeries;
+import com.sitewhere.spi.device.event.IDeviceMeasurements;
+
+/**
+ * Measures {@link ChartBuilder} converting a measurements history into chart
+ * series as done by the assignment measurements series REST call.
+ * 
+ * @author Derek
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChartBuilderBenchmark {
+
+    /** Number of measurements events in history */
+    @Param({ "100", "10000" })
+    private int eventCount;
+
+    /** Number of measurements in each event */
+    @Param({ "4" })
+    private int measurementCount;
+
+    /** Measurements history */
+    private List<IDeviceMeasurements> history;
+
+    @Setup
+    public void setup() throws SiteWhereException {
+	history = BenchmarkData.createMeasurementsHistory(eventCount, measurementCount);
+    }
+
+    @Benchmark
+    public List<IChartSeries<Double>> allSeries() {
+	return new ChartBuilder().process(history, null);
+    }
+
+    @Benchmark
+    public List<IChartSeries<Double>> singleSeries() {
+	return new ChartBuilder().process(history, new String[] { "mx0" });
+    }
+}
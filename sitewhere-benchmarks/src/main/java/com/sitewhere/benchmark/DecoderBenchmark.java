@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sitewhere.common.MarshalUtils;
+import com.sitewhere.device.communication.json.JsonBatchEventDecoder;
+import com.sitewhere.device.communication.json.JsonDeviceRequestDecoder;
+import com.sitewhere.device.communication.protobuf.ProtobufDeviceEventDecoder;
+import com.sitewhere.device.communication.protobuf.ProtobufDeviceEventEncoder;
+import com.sitewhere.rest.model.device.communication.DecodedDeviceRequest;
+import com.sitewhere.rest.model.device.communication.DeviceRequest;
+import com.sitewhere.rest.model.device.event.DeviceEventBatch;
+import com.sitewhere.rest.model.device.event.request.DeviceAlertCreateRequest;
+import com.sitewhere.rest.model.device.event.request.DeviceLocationCreateRequest;
+import com.sitewhere.rest.model.device.event.request.DeviceMeasurementsCreateRequest;
+import com.sitewhere.spi.SiteWhereException;
+import com.sitewhere.spi.device.communication.EventDecodeException;
+import com.sitewhere.spi.device.communication.IDecodedDeviceRequest;
+
+/**
+ * Measures decoding of inbound payloads into device requests for the
+ * protobuf, JSON request and JSON batch formats.
+ * 
+ * @author Derek
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DecoderBenchmark {
+
+    /** Number of measurements in each measurements event */
+    @Param({ "1", "10" })
+    private int measurementCount;
+
+    /** Number of events of each type in a JSON batch */
+    @Param({ "10" })
+    private int batchSize;
+
+    /** Protobuf decoder */
+    private ProtobufDeviceEventDecoder protobufDecoder = new ProtobufDeviceEventDecoder();
+
+    /** JSON request decoder */
+    private JsonDeviceRequestDecoder jsonRequestDecoder = new JsonDeviceRequestDecoder();
+
+    /** JSON batch decoder */
+    private JsonBatchEventDecoder jsonBatchDecoder = new JsonBatchEventDecoder();
+
+    /** Payload metadata passed to decoders */
+    private Map<String, Object> metadata = null;
+
+    /** Encoded protobuf measurements */
+    private byte[] protobufMeasurements;
+
+    /** Encoded protobuf location */
+    private byte[] protobufLocation;
+
+    /** Encoded protobuf alert */
+    private byte[] protobufAlert;
+
+    /** JSON measurements request */
+    private byte[] jsonMeasurements;
+
+    /** JSON location request */
+    private byte[] jsonLocation;
+
+    /** JSON alert request */
+    private byte[] jsonAlert;
+
+    /** JSON event batch */
+    private byte[] jsonBatch;
+
+    @Setup
+    public void setup() throws SiteWhereException {
+	DeviceMeasurementsCreateRequest measurements = BenchmarkData.createMeasurementsRequest(measurementCount);
+	DeviceLocationCreateRequest location = BenchmarkData.createLocationRequest();
+	DeviceAlertCreateRequest alert = BenchmarkData.createAlertRequest();
+
+	ProtobufDeviceEventEncoder encoder = new ProtobufDeviceEventEncoder();
+	protobufMeasurements = encoder.encode(decoded(measurements));
+	protobufLocation = encoder.encode(decoded(location));
+	protobufAlert = encoder.encode(decoded(alert));
+
+	jsonMeasurements = MarshalUtils.marshalJson(request(DeviceRequest.Type.DeviceMeasurements, measurements));
+	jsonLocation = MarshalUtils.marshalJson(request(DeviceRequest.Type.DeviceLocation, location));
+	jsonAlert = MarshalUtils.marshalJson(request(DeviceRequest.Type.DeviceAlert, alert));
+
+	DeviceEventBatch batch = new DeviceEventBatch();
+	batch.setHardwareId(BenchmarkData.HARDWARE_ID);
+	List<DeviceMeasurementsCreateRequest> mxs = new ArrayList<DeviceMeasurementsCreateRequest>();
+	List<DeviceLocationCreateRequest> locs = new ArrayList<DeviceLocationCreateRequest>();
+	List<DeviceAlertCreateRequest> alerts = new ArrayList<DeviceAlertCreateRequest>();
+	for (int i = 0; i < batchSize; i++) {
+	    mxs.add(measurements);
+	    locs.add(location);
+	    alerts.add(alert);
+	}
+	batch.setMeasurements(mxs);
+	batch.setLocations(locs);
+	batch.setAlerts(alerts);
+	jsonBatch = MarshalUtils.marshalJson(batch);
+    }
+
+    @Benchmark
+    public List<IDecodedDeviceRequest<?>> protobufMeasurements() throws EventDecodeException {
+	return protobufDecoder.decode(protobufMeasurements, metadata);
+    }
+
+    @Benchmark
+    public List<IDecodedDeviceRequest<?>> protobufLocation() throws EventDecodeException {
+	return protobufDecoder.decode(protobufLocation, metadata);
+    }
+
+    @Benchmark
+    public List<IDecodedDeviceRequest<?>> protobufAlert() throws EventDecodeException {
+	return protobufDecoder.decode(protobufAlert, metadata);
+    }
+
+    @Benchmark
+    public List<IDecodedDeviceRequest<?>> jsonRequestMeasurements() throws EventDecodeException {
+	return jsonRequestDecoder.decode(jsonMeasurements, metadata);
+    }
+
+    @Benchmark
+    public List<IDecodedDeviceRequest<?>> jsonRequestLocation() throws EventDecodeException {
+	return jsonRequestDecoder.decode(jsonLocation, metadata);
+    }
+
+    @Benchmark
+    public List<IDecodedDeviceRequest<?>> jsonRequestAlert() throws EventDecodeException {
+	return jsonRequestDecoder.decode(jsonAlert, metadata);
+    }
+
+    @Benchmark
+    public List<IDecodedDeviceRequest<?>> jsonBatch() throws EventDecodeException {
+	return jsonBatchDecoder.decode(jsonBatch, metadata);
+    }
+
+    /**
+     * Wrap a request as it would be produced by a decoder.
+     * 
+     * @param request
+     * @return
+     */
+    protected static <T> DecodedDeviceRequest<T> decoded(T request) {
+	return new DecodedDeviceRequest<T>(BenchmarkData.HARDWARE_ID, null, request);
+    }
+
+    /**
+     * Wrap a request in the JSON request envelope.
+     * 
+     * @param type
+     * @param request
+     * @return
+     */
+    protected static DeviceRequest request(DeviceRequest.Type type, Object request) {
+	DeviceRequest wrapper = new DeviceRequest();
+	wrapper.setHardwareId(BenchmarkData.HARDWARE_ID);
+	wrapper.setType(type);
+	wrapper.setRequest(request);
+	return wrapper;
+    }
+}
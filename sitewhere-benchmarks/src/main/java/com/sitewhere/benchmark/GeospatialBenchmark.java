@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sitewhere.core.SiteWherePersistence;
+import com.sitewhere.geospatial.ZoneMatcher;
+import com.sitewhere.rest.model.device.Zone;
+import com.sitewhere.spi.SiteWhereException;
+import com.sitewhere.spi.device.event.IDeviceLocation;
+
+/**
+ * Measures {@link ZoneMatcher}, which is evaluated for every location event
+ * by zone test processors.
+ * 
+ * @author Derek
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GeospatialBenchmark {
+
+    /** Number of zones tested for each location */
+    @Param({ "1", "10", "100" })
+    private int zoneCount;
+
+    /** Number of vertices in each zone */
+    @Param({ "4", "32" })
+    private int vertexCount;
+
+    /** Zones to test against */
+    private List<Zone> zones;
+
+    /** Location to test */
+    private IDeviceLocation location;
+
+    @Setup
+    public void setup() throws SiteWhereException {
+	zones = BenchmarkData.createZones(zoneCount, vertexCount);
+	location = SiteWherePersistence.deviceLocationCreateLogic(BenchmarkData.createAssignment(),
+		BenchmarkData.createLocationRequest());
+    }
+
+    @Benchmark
+    public ZoneMatcher zoneMatcher() {
+	return new ZoneMatcher(location, zones);
+    }
+}
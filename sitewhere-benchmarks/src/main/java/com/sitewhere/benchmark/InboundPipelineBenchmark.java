@@ -0,0 +1,306 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sitewhere.device.DeviceEventManagementTriggers;
+import com.sitewhere.device.communication.DirectOutboundProcessingStrategy;
+import com.sitewhere.device.communication.InboundProcessingStrategy;
+import com.sitewhere.device.event.processor.DefaultEventStorageProcessor;
+import com.sitewhere.device.event.processor.DefaultInboundEventProcessorChain;
+import com.sitewhere.device.event.processor.DefaultOutboundEventProcessorChain;
+import com.sitewhere.device.event.processor.OutboundEventProcessor;
+import com.sitewhere.rest.model.device.Device;
+import com.sitewhere.rest.model.device.DeviceAssignment;
+import com.sitewhere.rest.model.device.communication.DecodedDeviceRequest;
+import com.sitewhere.server.lifecycle.LifecycleProgressMonitor;
+import com.sitewhere.spi.SiteWhereException;
+import com.sitewhere.spi.device.IDeviceManagement;
+import com.sitewhere.spi.device.communication.IDecodedDeviceRequest;
+import com.sitewhere.spi.device.communication.IOutboundProcessingStrategy;
+import com.sitewhere.spi.device.event.IDeviceAlert;
+import com.sitewhere.spi.device.event.IDeviceEventManagement;
+import com.sitewhere.spi.device.event.IDeviceLocation;
+import com.sitewhere.spi.device.event.IDeviceMeasurements;
+import com.sitewhere.spi.device.event.processor.IInboundEventProcessor;
+import com.sitewhere.spi.device.event.processor.IInboundEventProcessorChain;
+import com.sitewhere.spi.device.event.processor.IOutboundEventProcessor;
+import com.sitewhere.spi.device.event.processor.IOutboundEventProcessorChain;
+import com.sitewhere.spi.device.event.request.IDeviceAlertCreateRequest;
+import com.sitewhere.spi.device.event.request.IDeviceCommandResponseCreateRequest;
+import com.sitewhere.spi.device.event.request.IDeviceLocationCreateRequest;
+import com.sitewhere.spi.device.event.request.IDeviceMappingCreateRequest;
+import com.sitewhere.spi.device.event.request.IDeviceMeasurementsCreateRequest;
+import com.sitewhere.spi.device.event.request.IDeviceRegistrationRequest;
+import com.sitewhere.spi.device.event.request.IDeviceStateChangeCreateRequest;
+import com.sitewhere.spi.device.event.request.IDeviceStreamCreateRequest;
+import com.sitewhere.spi.device.event.request.IDeviceStreamDataCreateRequest;
+import com.sitewhere.spi.device.event.request.ISendDeviceStreamDataRequest;
+import com.sitewhere.spi.server.lifecycle.ILifecycleProgressMonitor;
+
+/**
+ * Measures a decoded request passing through the inbound processing chain,
+ * event storage and the outbound processing chain. Datastores are replaced by
+ * in-memory stubs so that the cost of the pipeline itself is measured.
+ * 
+ * @author Derek
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InboundPipelineBenchmark {
+
+    /** Number of measurements in each measurements event */
+    @Param({ "1", "10" })
+    private int measurementCount;
+
+    /** Inbound processing strategy that events are sent to */
+    private DirectInboundProcessingStrategy inbound;
+
+    /** Outbound processor that receives stored events */
+    private CountingOutboundEventProcessor counter;
+
+    /** Decoded measurements request */
+    private IDecodedDeviceRequest<IDeviceMeasurementsCreateRequest> measurements;
+
+    /** Decoded location request */
+    private IDecodedDeviceRequest<IDeviceLocationCreateRequest> location;
+
+    /** Decoded alert request */
+    private IDecodedDeviceRequest<IDeviceAlertCreateRequest> alert;
+
+    @Setup
+    public void setup() {
+	Device device = BenchmarkData.createDevice();
+	DeviceAssignment assignment = BenchmarkData.createAssignment();
+	final IDeviceManagement devices = StubDatastores.createDeviceManagement(device, assignment);
+
+	counter = new CountingOutboundEventProcessor();
+	final DefaultOutboundEventProcessorChain outboundChain = new DefaultOutboundEventProcessorChain();
+	List<IOutboundEventProcessor> outboundProcessors = new ArrayList<IOutboundEventProcessor>();
+	outboundProcessors.add(counter);
+	outboundChain.setProcessors(outboundProcessors);
+
+	final DirectOutboundProcessingStrategy outbound = new DirectOutboundProcessingStrategy() {
+
+	    @Override
+	    protected IOutboundEventProcessorChain getOutboundEventProcessorChain() throws SiteWhereException {
+		return outboundChain;
+	    }
+	};
+	final IDeviceEventManagement events = new DeviceEventManagementTriggers(
+		StubDatastores.createDeviceEventManagement(assignment)) {
+
+	    @Override
+	    protected IOutboundProcessingStrategy getOutboundProcessingStrategy() throws SiteWhereException {
+		return outbound;
+	    }
+	};
+
+	final DefaultInboundEventProcessorChain inboundChain = new DefaultInboundEventProcessorChain();
+	List<IInboundEventProcessor> inboundProcessors = new ArrayList<IInboundEventProcessor>();
+	inboundProcessors.add(new DefaultEventStorageProcessor() {
+
+	    @Override
+	    protected IDeviceManagement getDeviceManagement() throws SiteWhereException {
+		return devices;
+	    }
+
+	    @Override
+	    protected IDeviceEventManagement getDeviceEventManagement() throws SiteWhereException {
+		return events;
+	    }
+	});
+	inboundChain.setProcessors(inboundProcessors);
+	inbound = new DirectInboundProcessingStrategy(inboundChain);
+
+	ILifecycleProgressMonitor monitor = new LifecycleProgressMonitor();
+	outboundChain.lifecycleStart(monitor);
+	outboundChain.setProcessingEnabled(true);
+	outbound.lifecycleStart(monitor);
+	inboundChain.lifecycleStart(monitor);
+	inbound.lifecycleStart(monitor);
+
+	measurements = new DecodedDeviceRequest<IDeviceMeasurementsCreateRequest>(BenchmarkData.HARDWARE_ID, null,
+		BenchmarkData.createMeasurementsRequest(measurementCount));
+	location = new DecodedDeviceRequest<IDeviceLocationCreateRequest>(BenchmarkData.HARDWARE_ID, null,
+		BenchmarkData.createLocationRequest());
+	alert = new DecodedDeviceRequest<IDeviceAlertCreateRequest>(BenchmarkData.HARDWARE_ID, null,
+		BenchmarkData.createAlertRequest());
+    }
+
+    @TearDown
+    public void tearDown() {
+	if (counter.getEventCount() == 0) {
+	    throw new IllegalStateException("No events reached the outbound processing chain.");
+	}
+    }
+
+    @Benchmark
+    public void measurements() throws SiteWhereException {
+	inbound.processDeviceMeasurements(measurements);
+    }
+
+    @Benchmark
+    public void location() throws SiteWhereException {
+	inbound.processDeviceLocation(location);
+    }
+
+    @Benchmark
+    public void alert() throws SiteWhereException {
+	inbound.processDeviceAlert(alert);
+    }
+
+    /**
+     * Inbound processing strategy that passes requests to the processing chain
+     * on the calling thread.
+     * 
+     * @author Derek
+     */
+    public static class DirectInboundProcessingStrategy extends InboundProcessingStrategy {
+
+	/** Static logger instance */
+	private static Logger LOGGER = LogManager.getLogger();
+
+	/** Chain that requests are sent to */
+	private IInboundEventProcessorChain chain;
+
+	public DirectInboundProcessingStrategy(IInboundEventProcessorChain chain) {
+	    this.chain = chain;
+	}
+
+	@Override
+	public void processRegistration(IDecodedDeviceRequest<IDeviceRegistrationRequest> request)
+		throws SiteWhereException {
+	    sendToInboundProcessingChain(request);
+	}
+
+	@Override
+	public void processDeviceCommandResponse(IDecodedDeviceRequest<IDeviceCommandResponseCreateRequest> request)
+		throws SiteWhereException {
+	    sendToInboundProcessingChain(request);
+	}
+
+	@Override
+	public void processDeviceMeasurements(IDecodedDeviceRequest<IDeviceMeasurementsCreateRequest> request)
+		throws SiteWhereException {
+	    sendToInboundProcessingChain(request);
+	}
+
+	@Override
+	public void processDeviceLocation(IDecodedDeviceRequest<IDeviceLocationCreateRequest> request)
+		throws SiteWhereException {
+	    sendToInboundProcessingChain(request);
+	}
+
+	@Override
+	public void processDeviceAlert(IDecodedDeviceRequest<IDeviceAlertCreateRequest> request)
+		throws SiteWhereException {
+	    sendToInboundProcessingChain(request);
+	}
+
+	@Override
+	public void processDeviceStateChange(IDecodedDeviceRequest<IDeviceStateChangeCreateRequest> request)
+		throws SiteWhereException {
+	    sendToInboundProcessingChain(request);
+	}
+
+	@Override
+	public void processDeviceStream(IDecodedDeviceRequest<IDeviceStreamCreateRequest> request)
+		throws SiteWhereException {
+	    sendToInboundProcessingChain(request);
+	}
+
+	@Override
+	public void processDeviceStreamData(IDecodedDeviceRequest<IDeviceStreamDataCreateRequest> request)
+		throws SiteWhereException {
+	    sendToInboundProcessingChain(request);
+	}
+
+	@Override
+	public void processSendDeviceStreamData(IDecodedDeviceRequest<ISendDeviceStreamDataRequest> request)
+		throws SiteWhereException {
+	    sendToInboundProcessingChain(request);
+	}
+
+	@Override
+	public void processCreateDeviceMapping(IDecodedDeviceRequest<IDeviceMappingCreateRequest> request)
+		throws SiteWhereException {
+	    sendToInboundProcessingChain(request);
+	}
+
+	@Override
+	protected IInboundEventProcessorChain getInboundProcessorChain() throws SiteWhereException {
+	    return chain;
+	}
+
+	@Override
+	public Logger getLogger() {
+	    return LOGGER;
+	}
+    }
+
+    /**
+     * Outbound processor that counts the events it receives.
+     * 
+     * @author Derek
+     */
+    public static class CountingOutboundEventProcessor extends OutboundEventProcessor {
+
+	/** Static logger instance */
+	private static Logger LOGGER = LogManager.getLogger();
+
+	/** Number of events received */
+	private long eventCount;
+
+	@Override
+	public void onMeasurements(IDeviceMeasurements measurements) throws SiteWhereException {
+	    eventCount++;
+	}
+
+	@Override
+	public void onLocation(IDeviceLocation location) throws SiteWhereException {
+	    eventCount++;
+	}
+
+	@Override
+	public void onAlert(IDeviceAlert alert) throws SiteWhereException {
+	    eventCount++;
+	}
+
+	@Override
+	public Logger getLogger() {
+	    return LOGGER;
+	}
+
+	public long getEventCount() {
+	    return eventCount;
+	}
+    }
+}
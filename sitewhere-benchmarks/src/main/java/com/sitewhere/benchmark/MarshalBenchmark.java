@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sitewhere.common.MarshalUtils;
+import com.sitewhere.core.SiteWherePersistence;
+import com.sitewhere.rest.model.device.DeviceAssignment;
+import com.sitewhere.rest.model.device.event.DeviceAlert;
+import com.sitewhere.rest.model.device.event.DeviceCommandInvocation;
+import com.sitewhere.rest.model.device.event.DeviceCommandResponse;
+import com.sitewhere.rest.model.device.event.DeviceLocation;
+import com.sitewhere.rest.model.device.event.DeviceMeasurements;
+import com.sitewhere.rest.model.device.event.DeviceStateChange;
+import com.sitewhere.rest.model.device.event.DeviceStreamData;
+import com.sitewhere.spi.SiteWhereException;
+
+/**
+ * Measures {@link MarshalUtils#marshalJson(Object)} for each event type. This
+ * is the format used when events are forwarded to external systems and
+ * pushed over Hazelcast topics.
+ * 
+ * @author Derek
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MarshalBenchmark {
+
+    /** Number of measurements in each measurements event */
+    @Param({ "1", "10" })
+    private int measurementCount;
+
+    /** Measurements event */
+    private DeviceMeasurements measurements;
+
+    /** Location event */
+    private DeviceLocation location;
+
+    /** Alert event */
+    private DeviceAlert alert;
+
+    /** Command invocation event */
+    private DeviceCommandInvocation invocation;
+
+    /** Command response event */
+    private DeviceCommandResponse response;
+
+    /** State change event */
+    private DeviceStateChange stateChange;
+
+    /** Stream data event */
+    private DeviceStreamData streamData;
+
+    @Setup
+    public void setup() throws SiteWhereException {
+	DeviceAssignment assignment = BenchmarkData.createAssignment();
+	measurements = SiteWherePersistence.deviceMeasurementsCreateLogic(
+		BenchmarkData.createMeasurementsRequest(measurementCount), assignment);
+	location = SiteWherePersistence.deviceLocationCreateLogic(assignment, BenchmarkData.createLocationRequest());
+	alert = SiteWherePersistence.deviceAlertCreateLogic(assignment, BenchmarkData.createAlertRequest());
+	invocation = SiteWherePersistence.deviceCommandInvocationCreateLogic(assignment, BenchmarkData.createCommand(),
+		BenchmarkData.createCommandInvocationRequest());
+	response = SiteWherePersistence.deviceCommandResponseCreateLogic(assignment,
+		BenchmarkData.createCommandResponseRequest());
+	stateChange = SiteWherePersistence.deviceStateChangeCreateLogic(assignment,
+		BenchmarkData.createStateChangeRequest());
+	streamData = SiteWherePersistence.deviceStreamDataCreateLogic(assignment,
+		BenchmarkData.createStreamDataRequest(1024));
+    }
+
+    @Benchmark
+    public byte[] measurements() throws SiteWhereException {
+	return MarshalUtils.marshalJson(measurements);
+    }
+
+    @Benchmark
+    public byte[] location() throws SiteWhereException {
+	return MarshalUtils.marshalJson(location);
+    }
+
+    @Benchmark
+    public byte[] alert() throws SiteWhereException {
+	return MarshalUtils.marshalJson(alert);
+    }
+
+    @Benchmark
+    public byte[] commandInvocation() throws SiteWhereException {
+	return MarshalUtils.marshalJson(invocation);
+    }
+
+    @Benchmark
+    public byte[] commandResponse() throws SiteWhereException {
+	return MarshalUtils.marshalJson(response);
+    }
+
+    @Benchmark
+    public byte[] stateChange() throws SiteWhereException {
+	return MarshalUtils.marshalJson(stateChange);
+    }
+
+    @Benchmark
+    public byte[] streamData() throws SiteWhereException {
+	return MarshalUtils.marshalJson(streamData);
+    }
+}
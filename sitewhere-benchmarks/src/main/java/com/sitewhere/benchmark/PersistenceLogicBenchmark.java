@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sitewhere.core.SiteWherePersistence;
+import com.sitewhere.rest.model.device.DeviceAssignment;
+import com.sitewhere.rest.model.device.command.DeviceCommand;
+import com.sitewhere.rest.model.device.event.DeviceAlert;
+import com.sitewhere.rest.model.device.event.DeviceCommandInvocation;
+import com.sitewhere.rest.model.device.event.DeviceCommandResponse;
+import com.sitewhere.rest.model.device.event.DeviceLocation;
+import com.sitewhere.rest.model.device.event.DeviceMeasurements;
+import com.sitewhere.rest.model.device.event.DeviceStateChange;
+import com.sitewhere.rest.model.device.event.DeviceStreamData;
+import com.sitewhere.rest.model.device.event.request.DeviceAlertCreateRequest;
+import com.sitewhere.rest.model.device.event.request.DeviceCommandInvocationCreateRequest;
+import com.sitewhere.rest.model.device.event.request.DeviceCommandResponseCreateRequest;
+import com.sitewhere.rest.model.device.event.request.DeviceLocationCreateRequest;
+import com.sitewhere.rest.model.device.event.request.DeviceMeasurementsCreateRequest;
+import com.sitewhere.rest.model.device.event.request.DeviceStateChangeCreateRequest;
+import com.sitewhere.rest.model.device.event.request.DeviceStreamDataCreateRequest;
+import com.sitewhere.spi.SiteWhereException;
+
+/**
+ * Measures the common event create logic in {@link SiteWherePersistence} that
+ * every datastore runs before storing an event.
+ * 
+ * @author Derek
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PersistenceLogicBenchmark {
+
+    /** Number of measurements in each measurements event */
+    @Param({ "1", "10" })
+    private int measurementCount;
+
+    /** Assignment events are created for */
+    private DeviceAssignment assignment;
+
+    /** Command for invocations */
+    private DeviceCommand command;
+
+    /** Measurements request */
+    private DeviceMeasurementsCreateRequest measurements;
+
+    /** Location request */
+    private DeviceLocationCreateRequest location;
+
+    /** Alert request */
+    private DeviceAlertCreateRequest alert;
+
+    /** Command invocation request */
+    private DeviceCommandInvocationCreateRequest invocation;
+
+    /** Command response request */
+    private DeviceCommandResponseCreateRequest response;
+
+    /** State change request */
+    private DeviceStateChangeCreateRequest stateChange;
+
+    /** Stream data request */
+    private DeviceStreamDataCreateRequest streamData;
+
+    @Setup
+    public void setup() {
+	assignment = BenchmarkData.createAssignment();
+	command = BenchmarkData.createCommand();
+	measurements = BenchmarkData.createMeasurementsRequest(measurementCount);
+	location = BenchmarkData.createLocationRequest();
+	alert = BenchmarkData.createAlertRequest();
+	invocation = BenchmarkData.createCommandInvocationRequest();
+	response = BenchmarkData.createCommandResponseRequest();
+	stateChange = BenchmarkData.createStateChangeRequest();
+	streamData = BenchmarkData.createStreamDataRequest(1024);
+    }
+
+    @Benchmark
+    public DeviceMeasurements measurements() throws SiteWhereException {
+	return SiteWherePersistence.deviceMeasurementsCreateLogic(measurements, assignment);
+    }
+
+    @Benchmark
+    public DeviceLocation location() throws SiteWhereException {
+	return SiteWherePersistence.deviceLocationCreateLogic(assignment, location);
+    }
+
+    @Benchmark
+    public DeviceAlert alert() throws SiteWhereException {
+	return SiteWherePersistence.deviceAlertCreateLogic(assignment, alert);
+    }
+
+    @Benchmark
+    public DeviceCommandInvocation commandInvocation() throws SiteWhereException {
+	return SiteWherePersistence.deviceCommandInvocationCreateLogic(assignment, command, invocation);
+    }
+
+    @Benchmark
+    public DeviceCommandResponse commandResponse() throws SiteWhereException {
+	return SiteWherePersistence.deviceCommandResponseCreateLogic(assignment, response);
+    }
+
+    @Benchmark
+    public DeviceStateChange stateChange() throws SiteWhereException {
+	return SiteWherePersistence.deviceStateChangeCreateLogic(assignment, stateChange);
+    }
+
+    @Benchmark
+    public DeviceStreamData streamData() throws SiteWhereException {
+	return SiteWherePersistence.deviceStreamDataCreateLogic(assignment, streamData);
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.benchmark;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sitewhere.core.SiteWherePersistence;
+import com.sitewhere.rest.model.device.Device;
+import com.sitewhere.rest.model.device.DeviceAssignment;
+import com.sitewhere.rest.model.device.event.DeviceEvent;
+import com.sitewhere.spi.device.IDeviceManagement;
+import com.sitewhere.spi.device.event.IDeviceEventManagement;
+import com.sitewhere.spi.device.event.request.IDeviceAlertCreateRequest;
+import com.sitewhere.spi.device.event.request.IDeviceCommandResponseCreateRequest;
+import com.sitewhere.spi.device.event.request.IDeviceLocationCreateRequest;
+import com.sitewhere.spi.device.event.request.IDeviceMeasurementsCreateRequest;
+import com.sitewhere.spi.device.event.request.IDeviceStateChangeCreateRequest;
+
+/**
+ * Minimal in-memory stand-ins for the datastore APIs used by the inbound and
+ * outbound pipeline. Only the calls made while processing events are
+ * supported. Events run through the same create logic as real datastores but
+ * are not retained.
+ * 
+ * @author Derek
+ */
+public class StubDatastores {
+
+    /**
+     * Create device management that knows about a single device and its
+     * assignment.
+     * 
+     * @param device
+     * @param assignment
+     * @return
+     */
+    public static IDeviceManagement createDeviceManagement(final Device device, final DeviceAssignment assignment) {
+	return createProxy(IDeviceManagement.class, new InvocationHandler() {
+
+	    @Override
+	    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+		if (method.getName().equals("getDeviceByHardwareId")) {
+		    return device.getHardwareId().equals(args[0]) ? device : null;
+		} else if (method.getName().equals("getDeviceAssignmentByToken")) {
+		    return assignment.getToken().equals(args[0]) ? assignment : null;
+		}
+		throw new UnsupportedOperationException(method.getName());
+	    }
+	});
+    }
+
+    /**
+     * Create device event management that builds events for the given
+     * assignment.
+     * 
+     * @param assignment
+     * @return
+     */
+    public static IDeviceEventManagement createDeviceEventManagement(final DeviceAssignment assignment) {
+	final AtomicLong ids = new AtomicLong();
+	return createProxy(IDeviceEventManagement.class, new InvocationHandler() {
+
+	    @Override
+	    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+		DeviceEvent event = null;
+		if (method.getName().equals("addDeviceMeasurements")) {
+		    event = SiteWherePersistence.deviceMeasurementsCreateLogic((IDeviceMeasurementsCreateRequest) args[1],
+			    assignment);
+		} else if (method.getName().equals("addDeviceLocation")) {
+		    event = SiteWherePersistence.deviceLocationCreateLogic(assignment,
+			    (IDeviceLocationCreateRequest) args[1]);
+		} else if (method.getName().equals("addDeviceAlert")) {
+		    event = SiteWherePersistence.deviceAlertCreateLogic(assignment, (IDeviceAlertCreateRequest) args[1]);
+		} else if (method.getName().equals("addDeviceStateChange")) {
+		    event = SiteWherePersistence.deviceStateChangeCreateLogic(assignment,
+			    (IDeviceStateChangeCreateRequest) args[1]);
+		} else if (method.getName().equals("addDeviceCommandResponse")) {
+		    event = SiteWherePersistence.deviceCommandResponseCreateLogic(assignment,
+			    (IDeviceCommandResponseCreateRequest) args[1]);
+		} else {
+		    throw new UnsupportedOperationException(method.getName());
+		}
+		event.setId(String.valueOf(ids.incrementAndGet()));
+		return event;
+	    }
+	});
+    }
+
+    /**
+     * Create a proxy that unwraps exceptions thrown by the handler.
+     * 
+     * @param type
+     * @param handler
+     * @return
+     */
+    protected static <T> T createProxy(Class<T> type, final InvocationHandler handler) {
+	Object proxy = Proxy.newProxyInstance(StubDatastores.class.getClassLoader(), new Class<?>[] { type },
+		new InvocationHandler() {
+
+		    @Override
+		    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			try {
+			    return handler.invoke(proxy, method, args);
+			} catch (InvocationTargetException e) {
+			    throw e.getCause();
+			}
+		    }
+		});
+	return type.cast(proxy);
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.rest.client;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+import com.sitewhere.rest.model.device.event.DeviceEventBatch;
+import com.sitewhere.rest.model.device.event.DeviceEventBatchResponse;
+import com.sitewhere.rest.model.device.event.request.DeviceAlertCreateRequest;
+import com.sitewhere.rest.model.device.event.request.DeviceLocationCreateRequest;
+import com.sitewhere.rest.model.device.event.request.DeviceMeasurementsCreateRequest;
+
+/**
+ * Collects events for devices and uploads them in batches through the device
+ * event batch endpoint. A batch is sent as soon as it holds the configured
+ * number of events, and {@link #flush()} sends all partial batches. Batches are
+ * sent with a {@link SiteWhereAsyncClient} so uploads for many devices can be
+ * in progress at once.
+ * 
+ * @author Derek
+ */
+public class DeviceEventBatchUploader {
+
+    /** Default number of events in a batch */
+    public static final int DEFAULT_BATCH_SIZE = 100;
+
+    /** Client used to send batches */
+    private SiteWhereAsyncClient client;
+
+    /** Maximum number of events in a batch */
+    private int batchSize;
+
+    /** Batches being collected by hardware id */
+    private Map<String, DeviceEventBatch> pending = new HashMap<String, DeviceEventBatch>();
+
+    /** Uploads that have not completed */
+    private List<CompletableFuture<?>> inFlight = new ArrayList<CompletableFuture<?>>();
+
+    /** Number of events uploaded successfully */
+    private AtomicLong uploadedEvents = new AtomicLong();
+
+    /** Number of batches that failed to upload */
+    private AtomicLong failedBatches = new AtomicLong();
+
+    public DeviceEventBatchUploader(SiteWhereAsyncClient client) {
+	this(client, DEFAULT_BATCH_SIZE);
+    }
+
+    public DeviceEventBatchUploader(SiteWhereAsyncClient client, int batchSize) {
+	this.client = client;
+	this.batchSize = batchSize;
+    }
+
+    /**
+     * Add measurements for a device.
+     * 
+     * @param hardwareId
+     * @param request
+     */
+    public synchronized void addMeasurements(String hardwareId, DeviceMeasurementsCreateRequest request) {
+	DeviceEventBatch batch = getBatch(hardwareId);
+	batch.getMeasurements().add(request);
+	sendIfFull(batch);
+    }
+
+    /**
+     * Add a location for a device.
+     * 
+     * @param hardwareId
+     * @param request
+     */
+    public synchronized void addLocation(String hardwareId, DeviceLocationCreateRequest request) {
+	DeviceEventBatch batch = getBatch(hardwareId);
+	batch.getLocations().add(request);
+	sendIfFull(batch);
+    }
+
+    /**
+     * Add an alert for a device.
+     * 
+     * @param hardwareId
+     * @param request
+     */
+    public synchronized void addAlert(String hardwareId, DeviceAlertCreateRequest request) {
+	DeviceEventBatch batch = getBatch(hardwareId);
+	batch.getAlerts().add(request);
+	sendIfFull(batch);
+    }
+
+    /**
+     * Send all partial batches. The returned future completes when every
+     * upload started so far has completed.
+     * 
+     * @return
+     */
+    public synchronized CompletableFuture<Void> flush() {
+	for (DeviceEventBatch batch : new ArrayList<DeviceEventBatch>(pending.values())) {
+	    send(batch);
+	}
+	return CompletableFuture.allOf(inFlight.toArray(new CompletableFuture<?>[inFlight.size()]));
+    }
+
+    /**
+     * Get batch being collected for a device.
+     * 
+     * @param hardwareId
+     * @return
+     */
+    protected DeviceEventBatch getBatch(String hardwareId) {
+	DeviceEventBatch batch = pending.get(hardwareId);
+	if (batch == null) {
+	    batch = new DeviceEventBatch();
+	    batch.setHardwareId(hardwareId);
+	    pending.put(hardwareId, batch);
+	}
+	return batch;
+    }
+
+    /**
+     * Send a batch if it has reached the batch size.
+     * 
+     * @param batch
+     */
+    protected void sendIfFull(DeviceEventBatch batch) {
+	if (getEventCount(batch) >= batchSize) {
+	    send(batch);
+	}
+    }
+
+    /**
+     * Remove a batch from the pending list and upload it.
+     * 
+     * @param batch
+     */
+    protected void send(final DeviceEventBatch batch) {
+	pending.remove(batch.getHardwareId());
+	final int count = getEventCount(batch);
+	if (count == 0) {
+	    return;
+	}
+	removeCompleted();
+	CompletableFuture<DeviceEventBatchResponse> upload = client.addDeviceEventBatch(batch.getHardwareId(), batch);
+
+	// Track the dependent future so counters are updated before flush completes.
+	inFlight.add(upload.whenComplete(new BiConsumer<DeviceEventBatchResponse, Throwable>() {
+
+	    @Override
+	    public void accept(DeviceEventBatchResponse response, Throwable error) {
+		if (error != null) {
+		    failedBatches.incrementAndGet();
+		} else {
+		    uploadedEvents.addAndGet(count);
+		}
+	    }
+	}));
+    }
+
+    /**
+     * Stop tracking uploads that have completed.
+     */
+    protected void removeCompleted() {
+	Iterator<CompletableFuture<?>> it = inFlight.iterator();
+	while (it.hasNext()) {
+	    if (it.next().isDone()) {
+		it.remove();
+	    }
+	}
+    }
+
+    /**
+     * Get total number of events in a batch.
+     * 
+     * @param batch
+     * @return
+     */
+    protected int getEventCount(DeviceEventBatch batch) {
+	return batch.getMeasurements().size() + batch.getLocations().size() + batch.getAlerts().size();
+    }
+
+    public long getUploadedEvents() {
+	return uploadedEvents.get();
+    }
+
+    public long getFailedBatches() {
+	return failedBatches.get();
+    }
+
+    public int getBatchSize() {
+	return batchSize;
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.rest.client;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.GZIPOutputStream;
+
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+/**
+ * Compresses request bodies with gzip and sets the 'Content-Encoding' header.
+ * Small bodies are sent uncompressed since compression would not reduce their
+ * size.
+ * 
+ * @author Derek
+ */
+public class GzipRequestInterceptor implements ClientHttpRequestInterceptor {
+
+    /** Bodies smaller than this are not compressed */
+    public static final int MIN_COMPRESSED_SIZE = 1024;
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * org.springframework.http.client.ClientHttpRequestInterceptor#intercept(
+     * org.springframework.http.HttpRequest, byte[],
+     * org.springframework.http.client.ClientHttpRequestExecution)
+     */
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+	    throws IOException {
+	if ((body == null) || (body.length < MIN_COMPRESSED_SIZE)) {
+	    return execution.execute(request, body);
+	}
+	ByteArrayOutputStream output = new ByteArrayOutputStream(body.length / 4);
+	GZIPOutputStream gzip = new GZIPOutputStream(output);
+	try {
+	    gzip.write(body);
+	} finally {
+	    gzip.close();
+	}
+	request.getHeaders().set("Content-Encoding", "gzip");
+	return execution.execute(request, output.toByteArray());
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.rest.client;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import com.sitewhere.rest.model.device.event.DeviceAlert;
+import com.sitewhere.rest.model.device.event.DeviceCommandInvocation;
+import com.sitewhere.rest.model.device.event.DeviceEventBatch;
+import com.sitewhere.rest.model.device.event.DeviceEventBatchResponse;
+import com.sitewhere.rest.model.device.event.DeviceLocation;
+import com.sitewhere.rest.model.device.event.DeviceMeasurements;
+import com.sitewhere.rest.model.device.event.request.DeviceAlertCreateRequest;
+import com.sitewhere.rest.model.device.event.request.DeviceCommandInvocationCreateRequest;
+import com.sitewhere.rest.model.device.event.request.DeviceLocationCreateRequest;
+import com.sitewhere.rest.model.device.event.request.DeviceMeasurementsCreateRequest;
+import com.sitewhere.spi.ISiteWhereClient;
+
+/**
+ * Asynchronous wrapper for an {@link ISiteWhereClient}. Calls are executed on
+ * a thread pool and results are returned as {@link CompletableFuture}s so that
+ * multiple requests can be in progress at once. The wrapped client should use
+ * a pooled connection manager with at least as many connections as threads.
+ * Failures complete the future exceptionally with a
+ * {@link CompletionException} wrapping the original exception.
+ * 
+ * @author Derek
+ */
+public class SiteWhereAsyncClient {
+
+    /** Wrapped client */
+    private ISiteWhereClient client;
+
+    /** Executes requests */
+    private ExecutorService executor;
+
+    public SiteWhereAsyncClient(ISiteWhereClient client, int threads) {
+	this(client, Executors.newFixedThreadPool(threads, new ClientThreadFactory()));
+    }
+
+    public SiteWhereAsyncClient(ISiteWhereClient client, ExecutorService executor) {
+	this.client = client;
+	this.executor = executor;
+    }
+
+    /**
+     * Create a client with a pooled connection for each thread.
+     * 
+     * @param url
+     * @param username
+     * @param password
+     * @param tenantAuthToken
+     * @param threads
+     * @return
+     */
+    public static SiteWhereAsyncClient create(String url, String username, String password, String tenantAuthToken,
+	    int threads) {
+	SiteWhereClient client = new SiteWhereClient(url, username, password, tenantAuthToken,
+		SiteWhereClient.DEFAULT_CONNECT_TIMEOUT, threads);
+	return new SiteWhereAsyncClient(client, threads);
+    }
+
+    /**
+     * Add a batch of events for a device.
+     * 
+     * @param hardwareId
+     * @param batch
+     * @return
+     */
+    public CompletableFuture<DeviceEventBatchResponse> addDeviceEventBatch(final String hardwareId,
+	    final DeviceEventBatch batch) {
+	return submit(new Callable<DeviceEventBatchResponse>() {
+
+	    @Override
+	    public DeviceEventBatchResponse call() throws Exception {
+		return getClient().addDeviceEventBatch(hardwareId, batch);
+	    }
+	});
+    }
+
+    /**
+     * Create measurements for an assignment.
+     * 
+     * @param assignmentToken
+     * @param request
+     * @return
+     */
+    public CompletableFuture<DeviceMeasurements> createDeviceMeasurements(final String assignmentToken,
+	    final DeviceMeasurementsCreateRequest request) {
+	return submit(new Callable<DeviceMeasurements>() {
+
+	    @Override
+	    public DeviceMeasurements call() throws Exception {
+		return getClient().createDeviceMeasurements(assignmentToken, request);
+	    }
+	});
+    }
+
+    /**
+     * Create a location for an assignment.
+     * 
+     * @param assignmentToken
+     * @param request
+     * @return
+     */
+    public CompletableFuture<DeviceLocation> createDeviceLocation(final String assignmentToken,
+	    final DeviceLocationCreateRequest request) {
+	return submit(new Callable<DeviceLocation>() {
+
+	    @Override
+	    public DeviceLocation call() throws Exception {
+		return getClient().createDeviceLocation(assignmentToken, request);
+	    }
+	});
+    }
+
+    /**
+     * Create an alert for an assignment.
+     * 
+     * @param assignmentToken
+     * @param request
+     * @return
+     */
+    public CompletableFuture<DeviceAlert> createDeviceAlert(final String assignmentToken,
+	    final DeviceAlertCreateRequest request) {
+	return submit(new Callable<DeviceAlert>() {
+
+	    @Override
+	    public DeviceAlert call() throws Exception {
+		return getClient().createDeviceAlert(assignmentToken, request);
+	    }
+	});
+    }
+
+    /**
+     * Create a command invocation for an assignment.
+     * 
+     * @param assignmentToken
+     * @param request
+     * @return
+     */
+    public CompletableFuture<DeviceCommandInvocation> createDeviceCommandInvocation(final String assignmentToken,
+	    final DeviceCommandInvocationCreateRequest request) {
+	return submit(new Callable<DeviceCommandInvocation>() {
+
+	    @Override
+	    public DeviceCommandInvocation call() throws Exception {
+		return getClient().createDeviceCommandInvocation(assignmentToken, request);
+	    }
+	});
+    }
+
+    /**
+     * Execute any call against the wrapped client asynchronously.
+     * 
+     * @param call
+     * @return
+     */
+    public <T> CompletableFuture<T> submit(final Callable<T> call) {
+	return CompletableFuture.supplyAsync(new Supplier<T>() {
+
+	    @Override
+	    public T get() {
+		try {
+		    return call.call();
+		} catch (RuntimeException e) {
+		    throw e;
+		} catch (Exception e) {
+		    throw new CompletionException(e);
+		}
+	    }
+	}, executor);
+    }
+
+    /**
+     * Stop accepting requests and release threads once pending requests
+     * complete.
+     */
+    public void shutdown() {
+	executor.shutdown();
+    }
+
+    public ISiteWhereClient getClient() {
+	return client;
+    }
+
+    public ExecutorService getExecutor() {
+	return executor;
+    }
+
+    /** Used for naming client threads */
+    private static class ClientThreadFactory implements ThreadFactory {
+
+	/** Counts threads */
+	private AtomicInteger counter = new AtomicInteger();
+
+	public Thread newThread(Runnable r) {
+	    Thread thread = new Thread(r, "SiteWhere Client " + counter.incrementAndGet());
+	    thread.setDaemon(true);
+	    return thread;
+	}
+    }
+}
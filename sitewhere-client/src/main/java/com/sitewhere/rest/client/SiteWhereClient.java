@@ -7,6 +7,8 @@
  */
 package com.sitewhere.rest.client;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -14,18 +16,30 @@ import java.util.List;
 import java.util.Map;
 
 import org.apache.commons.codec.binary.Base64;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpEntityEnclosingRequestBase;
 import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.protocol.HttpContext;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
 import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.http.converter.ByteArrayHttpMessageConverter;
 import org.springframework.http.converter.HttpMessageConverter;
 import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.client.RequestCallback;
 import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.ResponseExtractor;
 import org.springframework.web.client.RestTemplate;
 
 import com.sitewhere.rest.ISiteWhereWebConstants;
@@ -104,6 +118,9 @@ public class SiteWhereClient implements ISiteWhereClient {
     /** Default connection timeout in milliseconds */
     public static final int DEFAULT_CONNECT_TIMEOUT = 3 * 1000;
 
+    /** Default time to keep idle pooled connections alive in milliseconds */
+    public static final int DEFAULT_KEEP_ALIVE_MS = 30 * 1000;
+
     /** Indicates whether to write debug information to the console */
     public static final boolean DEBUG_ENABLED = false;
 
@@ -122,6 +139,9 @@ public class SiteWhereClient implements ISiteWhereClient {
     /** Tenant auth token used for REST calls */
     private String tenantAuthToken = DEFAULT_TENANT_AUTH_TOKEN;
 
+    /** Indicates if request bodies are compressed */
+    private boolean compressRequests = false;
+
     public SiteWhereClient() {
 	this(DEFAULT_BASE_URL, DEFAULT_USERNAME, DEFAULT_PASSWORD, DEFAULT_TENANT_AUTH_TOKEN, DEFAULT_CONNECT_TIMEOUT);
     }
@@ -139,6 +159,25 @@ public class SiteWhereClient implements ISiteWhereClient {
     }
 
     public SiteWhereClient(String url, String username, String password, String tenantAuthToken, int connectTimeoutMs) {
+	this(url, username, password, tenantAuthToken, connectTimeoutMs, 0);
+    }
+
+    /**
+     * Create a client that uses a pool of persistent connections. Pooled
+     * connections are reused across calls and allow up to the given number of
+     * requests to be in progress at once, which is needed when calls are made
+     * from multiple threads or through {@link SiteWhereAsyncClient}. If
+     * maxConnections is zero, the default HTTP client settings are used.
+     * 
+     * @param url
+     * @param username
+     * @param password
+     * @param tenantAuthToken
+     * @param connectTimeoutMs
+     * @param maxConnections
+     */
+    public SiteWhereClient(String url, String username, String password, String tenantAuthToken, int connectTimeoutMs,
+	    int maxConnections) {
 	if (DEBUG_ENABLED) {
 	    enableDebugging();
 	}
@@ -147,16 +186,7 @@ public class SiteWhereClient implements ISiteWhereClient {
 	this.password = password;
 	this.tenantAuthToken = tenantAuthToken;
 
-	// Special handling for delete requests with request body passed.
-	HttpComponentsClientHttpRequestFactory factory = new HttpComponentsClientHttpRequestFactory() {
-	    @Override
-	    protected HttpUriRequest createHttpUriRequest(HttpMethod httpMethod, URI uri) {
-		if (HttpMethod.DELETE == httpMethod) {
-		    return new HttpEntityEnclosingDeleteRequest(uri);
-		}
-		return super.createHttpUriRequest(httpMethod, uri);
-	    }
-	};
+	HttpComponentsClientHttpRequestFactory factory = createRequestFactory(maxConnections);
 	if (connectTimeoutMs > 0) {
 	    factory.setConnectTimeout(connectTimeoutMs);
 	}
@@ -168,6 +198,33 @@ public class SiteWhereClient implements ISiteWhereClient {
 	this.baseUrl = url;
     }
 
+    /**
+     * Create the factory for HTTP requests. If maxConnections is greater than
+     * zero, a pooled connection manager is used that keeps idle connections
+     * alive for reuse.
+     * 
+     * @param maxConnections
+     * @return
+     */
+    protected HttpComponentsClientHttpRequestFactory createRequestFactory(int maxConnections) {
+	if (maxConnections <= 0) {
+	    return new DeleteWithBodyRequestFactory();
+	}
+	PoolingHttpClientConnectionManager pool = new PoolingHttpClientConnectionManager();
+	pool.setMaxTotal(maxConnections);
+	pool.setDefaultMaxPerRoute(maxConnections);
+	HttpClient http = HttpClients.custom().setConnectionManager(pool)
+		.setKeepAliveStrategy(new DefaultConnectionKeepAliveStrategy() {
+
+		    @Override
+		    public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+			long duration = super.getKeepAliveDuration(response, context);
+			return (duration > 0) ? duration : DEFAULT_KEEP_ALIVE_MS;
+		    }
+		}).build();
+	return new DeleteWithBodyRequestFactory(http);
+    }
+
     /**
      * Allow subclasses to override converters used for the
      * {@link RestTemplate}.
@@ -828,6 +885,44 @@ public class SiteWhereClient implements ISiteWhereClient {
 		vars);
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.ISiteWhereClient#streamDeviceStreamData(java.lang.
+     * String, java.lang.String, java.io.OutputStream)
+     */
+    @Override
+    public void streamDeviceStreamData(String assignmentToken, String streamId, final OutputStream output)
+	    throws SiteWhereException {
+	Map<String, String> vars = new HashMap<String, String>();
+	vars.put("token", assignmentToken);
+	vars.put("streamId", streamId);
+	try {
+	    getClient().execute(getBaseUrl() + "assignments/{token}/streams/{streamId}/data", HttpMethod.GET,
+		    new RequestCallback() {
+
+			@Override
+			public void doWithRequest(ClientHttpRequest request) throws IOException {
+			    request.getHeaders().add("Authorization", getAuthHeader());
+			    request.getHeaders().add(ISiteWhereWebConstants.HEADER_TENANT_TOKEN, getTenantAuthToken());
+			}
+		    }, new ResponseExtractor<Void>() {
+
+			@Override
+			public Void extractData(ClientHttpResponse response) throws IOException {
+			    StreamUtils.copy(response.getBody(), output);
+			    return null;
+			}
+		    }, vars);
+	} catch (ResourceAccessException e) {
+	    if (e.getCause() instanceof SiteWhereSystemException) {
+		throw (SiteWhereSystemException) e.getCause();
+	    }
+	    throw new SiteWhereException("Unable to stream device stream data.", e);
+	}
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -1091,6 +1186,31 @@ public class SiteWhereClient implements ISiteWhereClient {
 	}
     }
 
+    /**
+     * Request factory with special handling for delete requests with request
+     * body passed.
+     * 
+     * @author Derek
+     */
+    public static class DeleteWithBodyRequestFactory extends HttpComponentsClientHttpRequestFactory {
+
+	public DeleteWithBodyRequestFactory() {
+	    super();
+	}
+
+	public DeleteWithBodyRequestFactory(HttpClient http) {
+	    super(http);
+	}
+
+	@Override
+	protected HttpUriRequest createHttpUriRequest(HttpMethod httpMethod, URI uri) {
+	    if (HttpMethod.DELETE == httpMethod) {
+		return new HttpEntityEnclosingDeleteRequest(uri);
+	    }
+	    return super.createHttpUriRequest(httpMethod, uri);
+	}
+    }
+
     /**
      * Used to get around limitation of Spring RestTemplate not being able to
      * send a body request for a delete.
@@ -1160,4 +1280,27 @@ public class SiteWhereClient implements ISiteWhereClient {
     public void setTenantAuthToken(String tenantAuthToken) {
 	this.tenantAuthToken = tenantAuthToken;
     }
+
+    public boolean isCompressRequests() {
+	return compressRequests;
+    }
+
+    /**
+     * Enable or disable gzip compression of request bodies.
+     * 
+     * @param compressRequests
+     */
+    public void setCompressRequests(boolean compressRequests) {
+	this.compressRequests = compressRequests;
+	List<ClientHttpRequestInterceptor> interceptors = new ArrayList<ClientHttpRequestInterceptor>();
+	for (ClientHttpRequestInterceptor interceptor : getClient().getInterceptors()) {
+	    if (!(interceptor instanceof GzipRequestInterceptor)) {
+		interceptors.add(interceptor);
+	    }
+	}
+	if (compressRequests) {
+	    interceptors.add(new GzipRequestInterceptor());
+	}
+	getClient().setInterceptors(interceptors);
+    }
 }
\ No newline at end of file
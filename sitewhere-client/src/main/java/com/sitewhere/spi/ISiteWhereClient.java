@@ -7,6 +7,7 @@
  */
 package com.sitewhere.spi;
 
+import java.io.OutputStream;
 import java.util.List;
 import java.util.Map;
 
@@ -499,6 +500,18 @@ public interface ISiteWhereClient {
     public byte[] listDeviceStreamData(String assignmentToken, String streamId, DateRangeSearchCriteria criteria)
 	    throws SiteWhereException;
 
+    /**
+     * Copy all data from a device stream to the given output stream as it is
+     * received, without holding the full stream in memory.
+     * 
+     * @param assignmentToken
+     * @param streamId
+     * @param output
+     * @throws SiteWhereException
+     */
+    public void streamDeviceStreamData(String assignmentToken, String streamId, OutputStream output)
+	    throws SiteWhereException;
+
     /**
      * Invokes a command on a list of devices as a batch operation.
      * 
@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sitewhere.rest.client.DeviceEventBatchUploader;
+import com.sitewhere.rest.client.SiteWhereAsyncClient;
+import com.sitewhere.rest.model.device.event.DeviceEventBatch;
+import com.sitewhere.rest.model.device.event.DeviceEventBatchResponse;
+import com.sitewhere.rest.model.device.event.request.DeviceMeasurementsCreateRequest;
+import com.sitewhere.spi.SiteWhereException;
+
+/**
+ * Tests for uploading device events in batches. Uses a client that completes
+ * uploads on another thread after a delay so that counters are only correct if
+ * the uploader waits for its completion callbacks.
+ * 
+ * @author Derek
+ */
+public class DeviceEventBatchUploaderTests {
+
+    /** Executes simulated uploads */
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+	executor = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+	executor.shutdownNow();
+	executor.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testBatchSentWhenFull() throws Exception {
+	RecordingAsyncClient client = new RecordingAsyncClient(executor, false);
+	DeviceEventBatchUploader uploader = new DeviceEventBatchUploader(client, 3);
+	for (int i = 0; i < 7; i++) {
+	    uploader.addMeasurements("device-1", createMeasurements());
+	}
+	Assert.assertEquals(2, client.getBatches().size());
+	Assert.assertEquals(3, client.getBatches().get(0).getMeasurements().size());
+
+	uploader.flush().join();
+	Assert.assertEquals(3, client.getBatches().size());
+	Assert.assertEquals(1, client.getBatches().get(2).getMeasurements().size());
+	Assert.assertEquals(7, uploader.getUploadedEvents());
+	Assert.assertEquals(0, uploader.getFailedBatches());
+    }
+
+    @Test
+    public void testCountersUpdatedWhenFlushCompletes() throws Exception {
+	RecordingAsyncClient client = new RecordingAsyncClient(executor, false);
+	DeviceEventBatchUploader uploader = new DeviceEventBatchUploader(client, 10);
+	for (int i = 0; i < 20; i++) {
+	    uploader.addMeasurements("device-" + i, createMeasurements());
+	}
+	uploader.flush().join();
+	Assert.assertEquals(20, client.getBatches().size());
+	Assert.assertEquals(20, uploader.getUploadedEvents());
+    }
+
+    @Test
+    public void testFailedBatchesCounted() throws Exception {
+	RecordingAsyncClient client = new RecordingAsyncClient(executor, true);
+	DeviceEventBatchUploader uploader = new DeviceEventBatchUploader(client, 10);
+	uploader.addMeasurements("device-1", createMeasurements());
+	uploader.addMeasurements("device-2", createMeasurements());
+	try {
+	    uploader.flush().join();
+	    Assert.fail("Expected flush to complete exceptionally.");
+	} catch (CompletionException e) {
+	    // Expected.
+	}
+	Assert.assertEquals(2, uploader.getFailedBatches());
+	Assert.assertEquals(0, uploader.getUploadedEvents());
+    }
+
+    /**
+     * Create a measurements request.
+     * 
+     * @return
+     */
+    protected DeviceMeasurementsCreateRequest createMeasurements() {
+	DeviceMeasurementsCreateRequest request = new DeviceMeasurementsCreateRequest();
+	request.addOrReplaceMeasurement("engine.temp", 98.6);
+	request.setEventDate(new Date());
+	return request;
+    }
+
+    /**
+     * Async client that records batches and completes uploads after a delay
+     * without contacting a server.
+     * 
+     * @author Derek
+     */
+    private static class RecordingAsyncClient extends SiteWhereAsyncClient {
+
+	/** Executes simulated uploads */
+	private ExecutorService executor;
+
+	/** Indicates uploads should fail */
+	private boolean fail;
+
+	/** Batches that were uploaded */
+	private List<DeviceEventBatch> batches = new ArrayList<DeviceEventBatch>();
+
+	public RecordingAsyncClient(ExecutorService executor, boolean fail) {
+	    super(null, executor);
+	    this.executor = executor;
+	    this.fail = fail;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.sitewhere.rest.client.SiteWhereAsyncClient#addDeviceEventBatch(
+	 * java.lang.String, com.sitewhere.rest.model.device.event.
+	 * DeviceEventBatch)
+	 */
+	@Override
+	public CompletableFuture<DeviceEventBatchResponse> addDeviceEventBatch(String hardwareId,
+		DeviceEventBatch batch) {
+	    synchronized (batches) {
+		batches.add(batch);
+	    }
+	    final CompletableFuture<DeviceEventBatchResponse> future = new CompletableFuture<DeviceEventBatchResponse>();
+	    executor.submit(new Runnable() {
+
+		@Override
+		public void run() {
+		    try {
+			Thread.sleep(20);
+		    } catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		    }
+		    if (fail) {
+			future.completeExceptionally(new SiteWhereException("Simulated upload failure."));
+		    } else {
+			future.complete(new DeviceEventBatchResponse());
+		    }
+		}
+	    });
+	    return future;
+	}
+
+	public List<DeviceEventBatch> getBatches() {
+	    synchronized (batches) {
+		return new ArrayList<DeviceEventBatch>(batches);
+	    }
+	}
+    }
+}
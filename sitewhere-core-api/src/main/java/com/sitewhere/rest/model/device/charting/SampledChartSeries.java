@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.rest.model.device.charting;
+
+import com.sitewhere.spi.device.charting.ChartAggregation;
+import com.sitewhere.spi.device.charting.ISampledChartSeries;
+
+/**
+ * Model object for a downsampled chart series.
+ * 
+ * @author Derek
+ */
+public class SampledChartSeries implements ISampledChartSeries {
+
+    /** Serial version UID */
+    private static final long serialVersionUID = -2683071449628183740L;
+
+    /** Measurement id */
+    private String measurementId;
+
+    /** Aggregation used to calculate values */
+    private ChartAggregation aggregation;
+
+    /** Point timestamps */
+    private long[] timestamps = new long[0];
+
+    /** Point values */
+    private double[] values = new double[0];
+
+    public SampledChartSeries() {
+    }
+
+    public SampledChartSeries(String measurementId, ChartAggregation aggregation, long[] timestamps,
+	    double[] values) {
+	this.measurementId = measurementId;
+	this.aggregation = aggregation;
+	this.timestamps = timestamps;
+	this.values = values;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.charting.ISampledChartSeries#getMeasurementId()
+     */
+    @Override
+    public String getMeasurementId() {
+	return measurementId;
+    }
+
+    public void setMeasurementId(String measurementId) {
+	this.measurementId = measurementId;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.charting.ISampledChartSeries#getAggregation()
+     */
+    @Override
+    public ChartAggregation getAggregation() {
+	return aggregation;
+    }
+
+    public void setAggregation(ChartAggregation aggregation) {
+	this.aggregation = aggregation;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.charting.ISampledChartSeries#getTimestamps()
+     */
+    @Override
+    public long[] getTimestamps() {
+	return timestamps;
+    }
+
+    public void setTimestamps(long[] timestamps) {
+	this.timestamps = timestamps;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.charting.ISampledChartSeries#getValues()
+     */
+    @Override
+    public double[] getValues() {
+	return values;
+    }
+
+    public void setValues(double[] values) {
+	this.values = values;
+    }
+}
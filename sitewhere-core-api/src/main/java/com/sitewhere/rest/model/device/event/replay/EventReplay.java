@@ -0,0 +1,238 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.rest.model.device.event.replay;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.sitewhere.rest.model.datatype.JsonDateSerializer;
+import com.sitewhere.spi.device.event.replay.EventReplayStatus;
+import com.sitewhere.spi.device.event.replay.IEventReplay;
+
+/**
+ * Model object for an event replay.
+ * 
+ * @author Derek
+ */
+@JsonInclude(Include.NON_NULL)
+public class EventReplay implements IEventReplay, Serializable {
+
+    /** Serialization version identifier */
+    private static final long serialVersionUID = -6320381739521830915L;
+
+    /** Unique id */
+    private String id;
+
+    /** Request that started the replay */
+    private EventReplayCreateRequest request;
+
+    /** Current status */
+    private EventReplayStatus status;
+
+    /** Date replay was created */
+    private Date createdDate;
+
+    /** Date replay ended */
+    private Date endedDate;
+
+    /** Names of processors receiving events */
+    private List<String> processorNames = new ArrayList<String>();
+
+    /** Total number of partitions */
+    private int partitionCount;
+
+    /** Number of partitions completed */
+    private int partitionsCompleted;
+
+    /** Number of events replayed */
+    private long eventsReplayed;
+
+    /** Number of events that failed */
+    private long eventsFailed;
+
+    /** Last error message */
+    private String lastError;
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.event.replay.IEventReplay#getId()
+     */
+    public String getId() {
+	return id;
+    }
+
+    public void setId(String id) {
+	this.id = id;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.event.replay.IEventReplay#getRequest()
+     */
+    public EventReplayCreateRequest getRequest() {
+	return request;
+    }
+
+    public void setRequest(EventReplayCreateRequest request) {
+	this.request = request;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.event.replay.IEventReplay#getStatus()
+     */
+    public EventReplayStatus getStatus() {
+	return status;
+    }
+
+    public void setStatus(EventReplayStatus status) {
+	this.status = status;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.event.replay.IEventReplay#getCreatedDate()
+     */
+    @JsonSerialize(using = JsonDateSerializer.class)
+    public Date getCreatedDate() {
+	return createdDate;
+    }
+
+    public void setCreatedDate(Date createdDate) {
+	this.createdDate = createdDate;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.event.replay.IEventReplay#getEndedDate()
+     */
+    @JsonSerialize(using = JsonDateSerializer.class)
+    public Date getEndedDate() {
+	return endedDate;
+    }
+
+    public void setEndedDate(Date endedDate) {
+	this.endedDate = endedDate;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.event.replay.IEventReplay#getProcessorNames()
+     */
+    public List<String> getProcessorNames() {
+	return processorNames;
+    }
+
+    public void setProcessorNames(List<String> processorNames) {
+	this.processorNames = processorNames;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.event.replay.IEventReplay#getPartitionCount()
+     */
+    public int getPartitionCount() {
+	return partitionCount;
+    }
+
+    public void setPartitionCount(int partitionCount) {
+	this.partitionCount = partitionCount;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.event.replay.IEventReplay#
+     * getPartitionsCompleted()
+     */
+    public int getPartitionsCompleted() {
+	return partitionsCompleted;
+    }
+
+    public void setPartitionsCompleted(int partitionsCompleted) {
+	this.partitionsCompleted = partitionsCompleted;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.event.replay.IEventReplay#getEventsReplayed()
+     */
+    public long getEventsReplayed() {
+	return eventsReplayed;
+    }
+
+    public void setEventsReplayed(long eventsReplayed) {
+	this.eventsReplayed = eventsReplayed;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.event.replay.IEventReplay#getEventsFailed()
+     */
+    public long getEventsFailed() {
+	return eventsFailed;
+    }
+
+    public void setEventsFailed(long eventsFailed) {
+	this.eventsFailed = eventsFailed;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.event.replay.IEventReplay#getLastError()
+     */
+    public String getLastError() {
+	return lastError;
+    }
+
+    public void setLastError(String lastError) {
+	this.lastError = lastError;
+    }
+
+    /**
+     * Create a copy of an SPI object. Used by web services for marshaling.
+     * 
+     * @param input
+     * @return
+     */
+    public static EventReplay copy(IEventReplay input) {
+	EventReplay result = new EventReplay();
+	result.setId(input.getId());
+	if (input.getRequest() != null) {
+	    result.setRequest(EventReplayCreateRequest.copy(input.getRequest()));
+	}
+	result.setStatus(input.getStatus());
+	result.setCreatedDate(input.getCreatedDate());
+	result.setEndedDate(input.getEndedDate());
+	result.setProcessorNames(new ArrayList<String>(input.getProcessorNames()));
+	result.setPartitionCount(input.getPartitionCount());
+	result.setPartitionsCompleted(input.getPartitionsCompleted());
+	result.setEventsReplayed(input.getEventsReplayed());
+	result.setEventsFailed(input.getEventsFailed());
+	result.setLastError(input.getLastError());
+	return result;
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.rest.model.device.event.replay;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.sitewhere.rest.model.datatype.JsonDateSerializer;
+import com.sitewhere.spi.device.event.DeviceEventType;
+import com.sitewhere.spi.device.event.replay.IEventReplayCreateRequest;
+
+/**
+ * Holds fields needed to start an event replay.
+ * 
+ * @author Derek
+ */
+public class EventReplayCreateRequest implements IEventReplayCreateRequest, Serializable {
+
+    /** Serialization version identifier */
+    private static final long serialVersionUID = 4263092173412876109L;
+
+    /** Default number of scanning threads */
+    public static final int DEFAULT_THREAD_COUNT = 4;
+
+    /** Default number of events loaded per query */
+    public static final int DEFAULT_PAGE_SIZE = 500;
+
+    /** Start of date range */
+    private Date startDate;
+
+    /** End of date range */
+    private Date endDate;
+
+    /** Site token */
+    private String siteToken;
+
+    /** Assignment tokens */
+    private List<String> assignmentTokens = new ArrayList<String>();
+
+    /** Event types */
+    private List<DeviceEventType> eventTypes = new ArrayList<DeviceEventType>();
+
+    /** Processor ids or names */
+    private List<String> processors = new ArrayList<String>();
+
+    /** Maximum events per second */
+    private int maxEventsPerSecond;
+
+    /** Number of scanning threads */
+    private int threadCount = DEFAULT_THREAD_COUNT;
+
+    /** Number of events loaded per query */
+    private int pageSize = DEFAULT_PAGE_SIZE;
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.event.replay.IEventReplayCreateRequest#
+     * getStartDate()
+     */
+    @JsonSerialize(using = JsonDateSerializer.class)
+    public Date getStartDate() {
+	return startDate;
+    }
+
+    public void setStartDate(Date startDate) {
+	this.startDate = startDate;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.event.replay.IEventReplayCreateRequest#
+     * getEndDate()
+     */
+    @JsonSerialize(using = JsonDateSerializer.class)
+    public Date getEndDate() {
+	return endDate;
+    }
+
+    public void setEndDate(Date endDate) {
+	this.endDate = endDate;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.event.replay.IEventReplayCreateRequest#
+     * getSiteToken()
+     */
+    public String getSiteToken() {
+	return siteToken;
+    }
+
+    public void setSiteToken(String siteToken) {
+	this.siteToken = siteToken;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.event.replay.IEventReplayCreateRequest#
+     * getAssignmentTokens()
+     */
+    public List<String> getAssignmentTokens() {
+	return assignmentTokens;
+    }
+
+    public void setAssignmentTokens(List<String> assignmentTokens) {
+	this.assignmentTokens = assignmentTokens;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.event.replay.IEventReplayCreateRequest#
+     * getEventTypes()
+     */
+    public List<DeviceEventType> getEventTypes() {
+	return eventTypes;
+    }
+
+    public void setEventTypes(List<DeviceEventType> eventTypes) {
+	this.eventTypes = eventTypes;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.event.replay.IEventReplayCreateRequest#
+     * getProcessors()
+     */
+    public List<String> getProcessors() {
+	return processors;
+    }
+
+    public void setProcessors(List<String> processors) {
+	this.processors = processors;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.event.replay.IEventReplayCreateRequest#
+     * getMaxEventsPerSecond()
+     */
+    public int getMaxEventsPerSecond() {
+	return maxEventsPerSecond;
+    }
+
+    public void setMaxEventsPerSecond(int maxEventsPerSecond) {
+	this.maxEventsPerSecond = maxEventsPerSecond;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.event.replay.IEventReplayCreateRequest#
+     * getThreadCount()
+     */
+    public int getThreadCount() {
+	return threadCount;
+    }
+
+    public void setThreadCount(int threadCount) {
+	this.threadCount = threadCount;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.event.replay.IEventReplayCreateRequest#
+     * getPageSize()
+     */
+    public int getPageSize() {
+	return pageSize;
+    }
+
+    public void setPageSize(int pageSize) {
+	this.pageSize = pageSize;
+    }
+
+    /**
+     * Create a copy of an SPI object. Used by web services for marshaling.
+     * 
+     * @param input
+     * @return
+     */
+    public static EventReplayCreateRequest copy(IEventReplayCreateRequest input) {
+	EventReplayCreateRequest result = new EventReplayCreateRequest();
+	result.setStartDate(input.getStartDate());
+	result.setEndDate(input.getEndDate());
+	result.setSiteToken(input.getSiteToken());
+	if (input.getAssignmentTokens() != null) {
+	    result.setAssignmentTokens(new ArrayList<String>(input.getAssignmentTokens()));
+	}
+	if (input.getEventTypes() != null) {
+	    result.setEventTypes(new ArrayList<DeviceEventType>(input.getEventTypes()));
+	}
+	if (input.getProcessors() != null) {
+	    result.setProcessors(new ArrayList<String>(input.getProcessors()));
+	}
+	result.setMaxEventsPerSecond(input.getMaxEventsPerSecond());
+	result.setThreadCount(input.getThreadCount());
+	result.setPageSize(input.getPageSize());
+	return result;
+    }
+}
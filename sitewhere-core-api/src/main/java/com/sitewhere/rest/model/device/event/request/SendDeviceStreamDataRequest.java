@@ -22,6 +22,9 @@ public class SendDeviceStreamDataRequest implements ISendDeviceStreamDataRequest
     /** Sequence number */
     private long sequenceNumber;
 
+    /** Number of chunks to send */
+    private int chunkCount = 1;
+
     public String getStreamId() {
 	return streamId;
     }
@@ -37,4 +40,12 @@ public class SendDeviceStreamDataRequest implements ISendDeviceStreamDataRequest
     public void setSequenceNumber(long sequenceNumber) {
 	this.sequenceNumber = sequenceNumber;
     }
+
+    public int getChunkCount() {
+	return chunkCount;
+    }
+
+    public void setChunkCount(int chunkCount) {
+	this.chunkCount = chunkCount;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,268 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.rest.model.device.event.rollup;
+
+import java.util.Date;
+
+import com.sitewhere.spi.device.event.rollup.IMeasurementRollup;
+
+/**
+ * Model object for a measurement rollup.
+ * 
+ * @author Derek
+ */
+public class MeasurementRollup implements IMeasurementRollup {
+
+    /** Serial version UID */
+    private static final long serialVersionUID = 3859328829108245407L;
+
+    /** Assignment token */
+    private String assignmentToken;
+
+    /** Measurement id */
+    private String measurementId;
+
+    /** Bucket width in ms */
+    private long intervalMs;
+
+    /** Bucket start */
+    private Date bucketStart;
+
+    /** Number of values */
+    private long count;
+
+    /** Smallest value */
+    private double min;
+
+    /** Largest value */
+    private double max;
+
+    /** Sum of values */
+    private double sum;
+
+    /** Most recent value */
+    private double last;
+
+    /** Event date of most recent value */
+    private Date lastDate;
+
+    public MeasurementRollup() {
+    }
+
+    public MeasurementRollup(String assignmentToken, String measurementId, long intervalMs, Date bucketStart) {
+	this.assignmentToken = assignmentToken;
+	this.measurementId = measurementId;
+	this.intervalMs = intervalMs;
+	this.bucketStart = bucketStart;
+    }
+
+    /**
+     * Add a single value to the rollup.
+     * 
+     * @param value
+     * @param eventDate
+     */
+    public void addValue(double value, Date eventDate) {
+	if (count == 0) {
+	    min = value;
+	    max = value;
+	} else {
+	    min = Math.min(min, value);
+	    max = Math.max(max, value);
+	}
+	count++;
+	sum += value;
+	if ((lastDate == null) || (!eventDate.before(lastDate))) {
+	    last = value;
+	    lastDate = eventDate;
+	}
+    }
+
+    /**
+     * Merge the values from another rollup into this one.
+     * 
+     * @param other
+     */
+    public void merge(IMeasurementRollup other) {
+	if (other.getCount() == 0) {
+	    return;
+	}
+	if (count == 0) {
+	    min = other.getMin();
+	    max = other.getMax();
+	} else {
+	    min = Math.min(min, other.getMin());
+	    max = Math.max(max, other.getMax());
+	}
+	count += other.getCount();
+	sum += other.getSum();
+	if ((lastDate == null) || ((other.getLastDate() != null) && (!other.getLastDate().before(lastDate)))) {
+	    last = other.getLast();
+	    lastDate = other.getLastDate();
+	}
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.event.rollup.IMeasurementRollup#
+     * getAssignmentToken()
+     */
+    @Override
+    public String getAssignmentToken() {
+	return assignmentToken;
+    }
+
+    public void setAssignmentToken(String assignmentToken) {
+	this.assignmentToken = assignmentToken;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.event.rollup.IMeasurementRollup#getMeasurementId
+     * ()
+     */
+    @Override
+    public String getMeasurementId() {
+	return measurementId;
+    }
+
+    public void setMeasurementId(String measurementId) {
+	this.measurementId = measurementId;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.event.rollup.IMeasurementRollup#getIntervalMs()
+     */
+    @Override
+    public long getIntervalMs() {
+	return intervalMs;
+    }
+
+    public void setIntervalMs(long intervalMs) {
+	this.intervalMs = intervalMs;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.event.rollup.IMeasurementRollup#getBucketStart()
+     */
+    @Override
+    public Date getBucketStart() {
+	return bucketStart;
+    }
+
+    public void setBucketStart(Date bucketStart) {
+	this.bucketStart = bucketStart;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.event.rollup.IMeasurementRollup#getCount()
+     */
+    @Override
+    public long getCount() {
+	return count;
+    }
+
+    public void setCount(long count) {
+	this.count = count;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.event.rollup.IMeasurementRollup#getMin()
+     */
+    @Override
+    public double getMin() {
+	return min;
+    }
+
+    public void setMin(double min) {
+	this.min = min;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.event.rollup.IMeasurementRollup#getMax()
+     */
+    @Override
+    public double getMax() {
+	return max;
+    }
+
+    public void setMax(double max) {
+	this.max = max;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.event.rollup.IMeasurementRollup#getSum()
+     */
+    @Override
+    public double getSum() {
+	return sum;
+    }
+
+    public void setSum(double sum) {
+	this.sum = sum;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.event.rollup.IMeasurementRollup#getLast()
+     */
+    @Override
+    public double getLast() {
+	return last;
+    }
+
+    public void setLast(double last) {
+	this.last = last;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.event.rollup.IMeasurementRollup#getLastDate()
+     */
+    @Override
+    public Date getLastDate() {
+	return lastDate;
+    }
+
+    public void setLastDate(Date lastDate) {
+	this.lastDate = lastDate;
+    }
+
+    /**
+     * Create a copy of an SPI object.
+     * 
+     * @param input
+     * @return
+     */
+    public static MeasurementRollup copy(IMeasurementRollup input) {
+	MeasurementRollup result = new MeasurementRollup(input.getAssignmentToken(), input.getMeasurementId(),
+		input.getIntervalMs(), input.getBucketStart());
+	result.merge(input);
+	return result;
+    }
+}
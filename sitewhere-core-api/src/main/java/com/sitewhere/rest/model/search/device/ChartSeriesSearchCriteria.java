@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.rest.model.search.device;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import com.sitewhere.rest.model.search.DateRangeSearchCriteria;
+import com.sitewhere.spi.device.charting.ChartAggregation;
+import com.sitewhere.spi.search.device.IChartSeriesSearchCriteria;
+
+/**
+ * Default implementation of {@link IChartSeriesSearchCriteria}.
+ * 
+ * @author Derek
+ */
+public class ChartSeriesSearchCriteria extends DateRangeSearchCriteria implements IChartSeriesSearchCriteria {
+
+    /** Measurement ids to include */
+    private List<String> measurementIds = new ArrayList<String>();
+
+    /** Bucket width in ms */
+    private Long bucketWidthMs;
+
+    /** Maximum number of points per series */
+    private Integer maxPoints;
+
+    /** Aggregations to calculate */
+    private List<ChartAggregation> aggregations = new ArrayList<ChartAggregation>();
+
+    public ChartSeriesSearchCriteria(Date startDate, Date endDate) {
+	super(1, 0, startDate, endDate);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.search.device.IChartSeriesSearchCriteria#
+     * getMeasurementIds()
+     */
+    @Override
+    public List<String> getMeasurementIds() {
+	return measurementIds;
+    }
+
+    public void setMeasurementIds(List<String> measurementIds) {
+	this.measurementIds = measurementIds;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.search.device.IChartSeriesSearchCriteria#
+     * getBucketWidthMs()
+     */
+    @Override
+    public Long getBucketWidthMs() {
+	return bucketWidthMs;
+    }
+
+    public void setBucketWidthMs(Long bucketWidthMs) {
+	this.bucketWidthMs = bucketWidthMs;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.search.device.IChartSeriesSearchCriteria#getMaxPoints()
+     */
+    @Override
+    public Integer getMaxPoints() {
+	return maxPoints;
+    }
+
+    public void setMaxPoints(Integer maxPoints) {
+	this.maxPoints = maxPoints;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.search.device.IChartSeriesSearchCriteria#
+     * getAggregations()
+     */
+    @Override
+    public List<ChartAggregation> getAggregations() {
+	return aggregations;
+    }
+
+    public void setAggregations(List<ChartAggregation> aggregations) {
+	this.aggregations = aggregations;
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.rest.model.user;
+
+import java.util.Date;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.sitewhere.rest.model.datatype.JsonDateSerializer;
+import com.sitewhere.spi.user.IAccessToken;
+
+/**
+ * Model object for an access token.
+ * 
+ * @author Derek
+ */
+public class AccessToken implements IAccessToken {
+
+    /** Token value */
+    private String token;
+
+    /** Username token was issued for */
+    private String username;
+
+    /** Expiration date */
+    private Date expires;
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.user.IAccessToken#getToken()
+     */
+    public String getToken() {
+	return token;
+    }
+
+    public void setToken(String token) {
+	this.token = token;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.user.IAccessToken#getUsername()
+     */
+    public String getUsername() {
+	return username;
+    }
+
+    public void setUsername(String username) {
+	this.username = username;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.user.IAccessToken#getExpires()
+     */
+    @JsonSerialize(using = JsonDateSerializer.class)
+    public Date getExpires() {
+	return expires;
+    }
+
+    public void setExpires(Date expires) {
+	this.expires = expires;
+    }
+}
@@ -56,6 +56,18 @@ public interface IAssetModule<T extends IAsset> extends ILifecycleComponent, IAs
      */
     public List<T> search(String criteria) throws SiteWhereException;
 
+    /**
+     * Search for assets that meet the criteria, returning at most the given
+     * number of results ordered by asset name.
+     * 
+     * @param criteria
+     * @param maxResults
+     *            maximum number of results or zero for no limit
+     * @return
+     * @throws SiteWhereException
+     */
+    public List<T> search(String criteria, int maxResults) throws SiteWhereException;
+
     /**
      * Refresh any cached data in the module.
      * 
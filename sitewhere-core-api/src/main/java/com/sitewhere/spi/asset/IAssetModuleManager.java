@@ -91,4 +91,18 @@ public interface IAssetModuleManager extends ITenantLifecycleComponent {
      * @throws SiteWhereException
      */
     public List<? extends IAsset> search(String assetModuleId, String criteria) throws SiteWhereException;
+
+    /**
+     * Search an asset module for assets matching the given criteria, returning
+     * at most the given number of results ordered by asset name.
+     * 
+     * @param assetModuleId
+     * @param criteria
+     * @param maxResults
+     *            maximum number of results or zero for no limit
+     * @return
+     * @throws SiteWhereException
+     */
+    public List<? extends IAsset> search(String assetModuleId, String criteria, int maxResults)
+	    throws SiteWhereException;
 }
\ No newline at end of file
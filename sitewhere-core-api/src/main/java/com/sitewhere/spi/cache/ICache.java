@@ -37,6 +37,21 @@ public interface ICache<K, V> {
      */
     public V get(K key) throws SiteWhereException;
 
+    /**
+     * Get value based on a given key, loading it on a miss. A loaded value is
+     * added to the cache. Concurrent misses for the same key may share a single
+     * load.
+     * 
+     * @param key
+     *            unique key
+     * @param loader
+     *            loads value if not found in cache
+     * @return corresponding value or null if not found
+     * @throws SiteWhereException
+     *             if implementation can not get or load value
+     */
+    public V get(K key, ICacheLoader<K, V> loader) throws SiteWhereException;
+
     /**
      * Add or replace value for the given key.
      * 
@@ -101,4 +116,31 @@ public interface ICache<K, V> {
      *             if implementation can not count hits
      */
     public long getHitCount() throws SiteWhereException;
+
+    /**
+     * Get the number of requests that were not found in the cache.
+     * 
+     * @return count of cache misses
+     * @throws SiteWhereException
+     *             if implementation can not count misses
+     */
+    public long getMissCount() throws SiteWhereException;
+
+    /**
+     * Get the number of values loaded by an {@link ICacheLoader}.
+     * 
+     * @return count of loads
+     * @throws SiteWhereException
+     *             if implementation can not count loads
+     */
+    public long getLoadCount() throws SiteWhereException;
+
+    /**
+     * Get the average time in milliseconds taken to load a value.
+     * 
+     * @return average load time in milliseconds
+     * @throws SiteWhereException
+     *             if implementation can not calculate load time
+     */
+    public double getAverageLoadTime() throws SiteWhereException;
 }
\ No newline at end of file
@@ -0,0 +1,33 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.spi.cache;
+
+import com.sitewhere.spi.SiteWhereException;
+
+/**
+ * Loads a value from the underlying datastore when it is not found in an
+ * {@link ICache}.
+ * 
+ * @author Derek
+ * 
+ * @param <K>
+ * @param <V>
+ */
+public interface ICacheLoader<K, V> {
+
+    /**
+     * Load value for the given key.
+     * 
+     * @param key
+     *            unique key
+     * @return loaded value or null if not found
+     * @throws SiteWhereException
+     *             if value can not be loaded
+     */
+    public V load(K key) throws SiteWhereException;
+}
@@ -7,8 +7,11 @@
  */
 package com.sitewhere.spi.device;
 
+import java.util.List;
+
 import com.sitewhere.spi.SiteWhereException;
 import com.sitewhere.spi.device.event.IDeviceAlert;
+import com.sitewhere.spi.device.event.IDeviceEvent;
 import com.sitewhere.spi.device.event.IDeviceLocation;
 import com.sitewhere.spi.device.event.IDeviceMeasurements;
 import com.sitewhere.spi.device.event.IDeviceStateChange;
@@ -68,4 +71,17 @@ public interface IAssignmentStateManager extends ITenantLifecycleComponent {
      *             if error in implementation
      */
     public void addStateChange(String token, IDeviceStateChange state) throws SiteWhereException;
-}
\ No newline at end of file
+
+    /**
+     * Add state for a group of events on the same assignment. Used by batch
+     * event persistence so that all events are merged in a single update.
+     * 
+     * @param token
+     *            unique assignment token
+     * @param events
+     *            events in the order they were created
+     * @throws SiteWhereException
+     *             if error in implementation
+     */
+    public void addEvents(String token, List<IDeviceEvent> events) throws SiteWhereException;
+}
@@ -179,6 +179,16 @@ public interface IDeviceManagement extends ITenantLifecycleComponent {
      */
     public IDevice getDeviceByHardwareId(String hardwareId) throws SiteWhereException;
 
+    /**
+     * Gets devices for a list of hardware ids in as few datastore calls as
+     * possible. Hardware ids with no matching device are skipped.
+     * 
+     * @param hardwareIds
+     * @return
+     * @throws SiteWhereException
+     */
+    public List<IDevice> getDevicesByHardwareIds(List<String> hardwareIds) throws SiteWhereException;
+
     /**
      * Update device information.
      * 
@@ -258,6 +268,16 @@ public interface IDeviceManagement extends ITenantLifecycleComponent {
      */
     public IDeviceAssignment getDeviceAssignmentByToken(String token) throws SiteWhereException;
 
+    /**
+     * Get device assignments for a list of tokens in as few datastore calls as
+     * possible. Tokens with no matching assignment are skipped.
+     * 
+     * @param tokens
+     * @return
+     * @throws SiteWhereException
+     */
+    public List<IDeviceAssignment> getDeviceAssignmentsByTokens(List<String> tokens) throws SiteWhereException;
+
     /**
      * Delete a device assignment. Depending on 'force' flag the assignment will
      * be marked for delete or actually be deleted.
@@ -0,0 +1,32 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.spi.device.charting;
+
+/**
+ * Function used to reduce the measurements that fall into a time bucket to a
+ * single chart point.
+ * 
+ * @author Derek
+ */
+public enum ChartAggregation {
+
+    /** Smallest value in the bucket */
+    Min,
+
+    /** Largest value in the bucket */
+    Max,
+
+    /** Average of values in the bucket */
+    Avg,
+
+    /** Most recent value in the bucket */
+    Last,
+
+    /** Largest-Triangle-Three-Buckets downsampling of the raw values */
+    Lttb;
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.spi.device.charting;
+
+import java.io.Serializable;
+
+/**
+ * Chart series that has been downsampled by the server. Points are stored as
+ * parallel arrays of timestamps and values ordered by timestamp rather than as
+ * one object per point.
+ * 
+ * @author Derek
+ */
+public interface ISampledChartSeries extends Serializable {
+
+    /**
+     * Get id of measurement represented by the series.
+     * 
+     * @return
+     */
+    public String getMeasurementId();
+
+    /**
+     * Get aggregation used to calculate the values.
+     * 
+     * @return
+     */
+    public ChartAggregation getAggregation();
+
+    /**
+     * Get timestamps (in ms) for each point in ascending order.
+     * 
+     * @return
+     */
+    public long[] getTimestamps();
+
+    /**
+     * Get value for each point.
+     * 
+     * @return
+     */
+    public double[] getValues();
+}
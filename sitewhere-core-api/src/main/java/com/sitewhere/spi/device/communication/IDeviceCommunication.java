@@ -15,6 +15,7 @@ import com.sitewhere.spi.device.command.ISystemCommand;
 import com.sitewhere.spi.device.event.IDeviceCommandInvocation;
 import com.sitewhere.spi.device.presence.IDevicePresenceManager;
 import com.sitewhere.spi.device.symbology.ISymbolGeneratorManager;
+import com.sitewhere.spi.server.lifecycle.ILifecycleProgressMonitor;
 import com.sitewhere.spi.server.lifecycle.ITenantLifecycleComponent;
 
 /**
@@ -59,6 +60,13 @@ public interface IDeviceCommunication extends ITenantLifecycleComponent {
      */
     public IDeviceStreamManager getDeviceStreamManager();
 
+    /**
+     * Get the manager that resolves device context for inbound requests.
+     * 
+     * @return
+     */
+    public IDeviceContextManager getDeviceContextManager();
+
     /**
      * Get the configured device presence manager.
      * 
@@ -104,4 +112,21 @@ public interface IDeviceCommunication extends ITenantLifecycleComponent {
      * @throws SiteWhereException
      */
     public void deliverSystemCommand(String hardwareId, ISystemCommand command) throws SiteWhereException;
+
+    /**
+     * Stop all nested components except inbound event sources and start any
+     * event sources that are not running. Used for tenant engines that are not
+     * running so that inbound device traffic can start them on demand.
+     * 
+     * @param monitor
+     * @throws SiteWhereException
+     */
+    public void idle(ILifecycleProgressMonitor monitor) throws SiteWhereException;
+
+    /**
+     * Indicates only inbound event sources are running.
+     * 
+     * @return
+     */
+    public boolean isIdle();
 }
\ No newline at end of file
@@ -0,0 +1,33 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.spi.device.communication;
+
+import com.sitewhere.spi.device.IDevice;
+import com.sitewhere.spi.device.IDeviceAssignment;
+
+/**
+ * Device information resolved as a unit for handling requests from a device.
+ * 
+ * @author Derek
+ */
+public interface IDeviceContext {
+
+    /**
+     * Get the device.
+     * 
+     * @return
+     */
+    public IDevice getDevice();
+
+    /**
+     * Get the current device assignment or null if device is not assigned.
+     * 
+     * @return
+     */
+    public IDeviceAssignment getDeviceAssignment();
+}
\ No newline at end of file
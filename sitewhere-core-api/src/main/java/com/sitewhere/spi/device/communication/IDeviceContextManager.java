@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.spi.device.communication;
+
+import java.util.Collection;
+import java.util.Map;
+
+import com.sitewhere.spi.SiteWhereException;
+import com.sitewhere.spi.device.IDeviceSpecification;
+import com.sitewhere.spi.device.ISite;
+import com.sitewhere.spi.server.lifecycle.ITenantLifecycleComponent;
+
+/**
+ * Resolves and caches the device management entities needed to handle requests
+ * from devices so that components on the inbound path share lookups rather
+ * than each querying the datastore.
+ * 
+ * @author Derek
+ */
+public interface IDeviceContextManager extends ITenantLifecycleComponent {
+
+    /**
+     * Get context for a device.
+     * 
+     * @param hardwareId
+     * @return context or null if device does not exist
+     * @throws SiteWhereException
+     */
+    public IDeviceContext getDeviceContext(String hardwareId) throws SiteWhereException;
+
+    /**
+     * Get contexts for a group of devices. Devices that do not exist are not
+     * included in the result.
+     * 
+     * @param hardwareIds
+     * @return map of contexts by hardware id
+     * @throws SiteWhereException
+     */
+    public Map<String, IDeviceContext> getDeviceContexts(Collection<String> hardwareIds) throws SiteWhereException;
+
+    /**
+     * Get a device specification by token.
+     * 
+     * @param token
+     * @return
+     * @throws SiteWhereException
+     */
+    public IDeviceSpecification getDeviceSpecification(String token) throws SiteWhereException;
+
+    /**
+     * Get a site by token.
+     * 
+     * @param token
+     * @return
+     * @throws SiteWhereException
+     */
+    public ISite getSite(String token) throws SiteWhereException;
+
+    /**
+     * Remove cached context for a device after it has been changed.
+     * 
+     * @param hardwareId
+     * @throws SiteWhereException
+     */
+    public void evictDeviceContext(String hardwareId) throws SiteWhereException;
+}
\ No newline at end of file
@@ -7,6 +7,8 @@
  */
 package com.sitewhere.spi.device.communication;
 
+import java.util.List;
+
 import com.sitewhere.spi.SiteWhereException;
 import com.sitewhere.spi.device.event.request.IDeviceMappingCreateRequest;
 import com.sitewhere.spi.device.event.request.IDeviceRegistrationRequest;
@@ -52,6 +54,15 @@ public interface IRegistrationManager extends ITenantLifecycleComponent {
      */
     public void handleDeviceRegistration(IDeviceRegistrationRequest request) throws SiteWhereException;
 
+    /**
+     * Handle a batch of registration requests, such as those received when
+     * many devices reconnect at once.
+     * 
+     * @param requests
+     * @throws SiteWhereException
+     */
+    public void handleDeviceRegistrations(List<IDeviceRegistrationRequest> requests) throws SiteWhereException;
+
     /**
      * Handle mapping of a device to a path on a composite device.
      * 
@@ -11,6 +11,7 @@ import java.util.List;
 
 import com.sitewhere.spi.SiteWhereException;
 import com.sitewhere.spi.device.IDeviceManagement;
+import com.sitewhere.spi.device.charting.ISampledChartSeries;
 import com.sitewhere.spi.device.command.IDeviceCommand;
 import com.sitewhere.spi.device.event.request.IDeviceAlertCreateRequest;
 import com.sitewhere.spi.device.event.request.IDeviceCommandInvocationCreateRequest;
@@ -19,8 +20,11 @@ import com.sitewhere.spi.device.event.request.IDeviceLocationCreateRequest;
 import com.sitewhere.spi.device.event.request.IDeviceMeasurementsCreateRequest;
 import com.sitewhere.spi.device.event.request.IDeviceStateChangeCreateRequest;
 import com.sitewhere.spi.device.event.request.IDeviceStreamDataCreateRequest;
+import com.sitewhere.spi.device.event.rollup.IMeasurementRollup;
+import com.sitewhere.spi.device.event.rollup.RollupResolution;
 import com.sitewhere.spi.search.IDateRangeSearchCriteria;
 import com.sitewhere.spi.search.ISearchResults;
+import com.sitewhere.spi.search.device.IChartSeriesSearchCriteria;
 import com.sitewhere.spi.server.lifecycle.ITenantLifecycleComponent;
 
 /**
@@ -110,6 +114,43 @@ public interface IDeviceEventManagement extends ITenantLifecycleComponent {
     public ISearchResults<IDeviceMeasurements> listDeviceMeasurementsForSite(String siteToken,
 	    IDateRangeSearchCriteria criteria) throws SiteWhereException;
 
+    /**
+     * Get measurements for an assignment as downsampled chart series. Values
+     * in the date range are reduced to time buckets (or to a target number of
+     * points) using the aggregations requested in the criteria. Implementations
+     * should push the aggregation into the datastore where it is supported.
+     * 
+     * @param assignmentToken
+     * @param criteria
+     * @return
+     * @throws SiteWhereException
+     */
+    public List<ISampledChartSeries> listDeviceMeasurementsSeries(String assignmentToken,
+	    IChartSeriesSearchCriteria criteria) throws SiteWhereException;
+
+    /**
+     * Merge measurement rollups into the rollups already stored. Counts and
+     * sums are added, minimum and maximum values are combined and the most
+     * recent value wins.
+     * 
+     * @param rollups
+     * @throws SiteWhereException
+     */
+    public void addMeasurementRollups(List<IMeasurementRollup> rollups) throws SiteWhereException;
+
+    /**
+     * List stored measurement rollups for an assignment at the given
+     * resolution. Results are ordered by bucket start.
+     * 
+     * @param assignmentToken
+     * @param resolution
+     * @param criteria
+     * @return
+     * @throws SiteWhereException
+     */
+    public ISearchResults<IMeasurementRollup> listMeasurementRollups(String assignmentToken,
+	    RollupResolution resolution, IDateRangeSearchCriteria criteria) throws SiteWhereException;
+
     /**
      * Add location for a given device assignment.
      * 
@@ -223,6 +264,23 @@ public interface IDeviceEventManagement extends ITenantLifecycleComponent {
     public ISearchResults<IDeviceStreamData> listDeviceStreamData(String assignmentToken, String streamId,
 	    IDateRangeSearchCriteria criteria) throws SiteWhereException;
 
+    /**
+     * Get a range of chunks from a device stream in a single request. Returns
+     * up to <code>maxChunks</code> chunks with a sequence number greater than
+     * or equal to <code>firstSequenceNumber</code>, ordered by sequence
+     * number. Callers can page through a stream by requesting the next range
+     * starting after the last sequence number returned.
+     * 
+     * @param assignmentToken
+     * @param streamId
+     * @param firstSequenceNumber
+     * @param maxChunks
+     * @return
+     * @throws SiteWhereException
+     */
+    public List<IDeviceStreamData> getDeviceStreamDataRange(String assignmentToken, String streamId,
+	    long firstSequenceNumber, int maxChunks) throws SiteWhereException;
+
     /**
      * Add a device command invocation event for the given assignment.
      * 
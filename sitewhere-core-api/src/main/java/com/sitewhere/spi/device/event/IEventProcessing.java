@@ -11,6 +11,7 @@ import com.sitewhere.spi.device.communication.IInboundProcessingStrategy;
 import com.sitewhere.spi.device.communication.IOutboundProcessingStrategy;
 import com.sitewhere.spi.device.event.processor.IInboundEventProcessorChain;
 import com.sitewhere.spi.device.event.processor.IOutboundEventProcessorChain;
+import com.sitewhere.spi.device.event.replay.IEventReplayManager;
 import com.sitewhere.spi.server.lifecycle.ITenantLifecycleComponent;
 
 /**
@@ -48,4 +49,11 @@ public interface IEventProcessing extends ITenantLifecycleComponent {
      * @return
      */
     public IOutboundEventProcessorChain getOutboundEventProcessorChain();
+
+    /**
+     * Get manager for replaying stored events through outbound processors.
+     * 
+     * @return
+     */
+    public IEventReplayManager getEventReplayManager();
 }
\ No newline at end of file
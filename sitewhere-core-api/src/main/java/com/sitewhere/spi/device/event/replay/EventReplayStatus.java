@@ -0,0 +1,34 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.spi.device.event.replay;
+
+/**
+ * Status indicators for an event replay.
+ * 
+ * @author Derek
+ */
+public enum EventReplayStatus {
+
+    /** Replay is resolving the assignments to be scanned */
+    Initializing,
+
+    /** Events are being replayed */
+    Running,
+
+    /** Replay was paused and may be resumed from its checkpoints */
+    Paused,
+
+    /** All partitions were replayed */
+    Completed,
+
+    /** Replay was canceled */
+    Canceled,
+
+    /** Replay stopped because of an error and may be resumed */
+    Failed;
+}
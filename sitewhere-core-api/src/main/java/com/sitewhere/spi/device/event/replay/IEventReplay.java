@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.spi.device.event.replay;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Progress of a replay of stored events through outbound event processors.
+ * Work is split into partitions, one for each assignment and event type.
+ * 
+ * @author Derek
+ */
+public interface IEventReplay {
+
+    /**
+     * Get unique id for the replay.
+     * 
+     * @return
+     */
+    public String getId();
+
+    /**
+     * Get the request that started the replay.
+     * 
+     * @return
+     */
+    public IEventReplayCreateRequest getRequest();
+
+    /**
+     * Get current status.
+     * 
+     * @return
+     */
+    public EventReplayStatus getStatus();
+
+    /**
+     * Get date the replay was created.
+     * 
+     * @return
+     */
+    public Date getCreatedDate();
+
+    /**
+     * Get date the replay finished, was canceled or failed.
+     * 
+     * @return
+     */
+    public Date getEndedDate();
+
+    /**
+     * Get names of outbound event processors receiving events.
+     * 
+     * @return
+     */
+    public List<String> getProcessorNames();
+
+    /**
+     * Get total number of partitions.
+     * 
+     * @return
+     */
+    public int getPartitionCount();
+
+    /**
+     * Get number of partitions that have been fully replayed.
+     * 
+     * @return
+     */
+    public int getPartitionsCompleted();
+
+    /**
+     * Get number of events delivered to processors.
+     * 
+     * @return
+     */
+    public long getEventsReplayed();
+
+    /**
+     * Get number of events that a processor failed to handle.
+     * 
+     * @return
+     */
+    public long getEventsFailed();
+
+    /**
+     * Get message for the last error, if any.
+     * 
+     * @return
+     */
+    public String getLastError();
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.spi.device.event.replay;
+
+import java.util.Date;
+import java.util.List;
+
+import com.sitewhere.spi.device.event.DeviceEventType;
+
+/**
+ * Parameters for replaying stored events through outbound event processors.
+ * 
+ * @author Derek
+ */
+public interface IEventReplayCreateRequest {
+
+    /**
+     * Get start of the date range to replay. If null, no lower bound is used.
+     * 
+     * @return
+     */
+    public Date getStartDate();
+
+    /**
+     * Get end of the date range to replay. If null, no upper bound is used.
+     * 
+     * @return
+     */
+    public Date getEndDate();
+
+    /**
+     * Get token for site whose assignments are replayed. Ignored if assignment
+     * tokens are specified. If neither is specified, all sites are replayed.
+     * 
+     * @return
+     */
+    public String getSiteToken();
+
+    /**
+     * Get tokens for assignments to replay.
+     * 
+     * @return
+     */
+    public List<String> getAssignmentTokens();
+
+    /**
+     * Get event types to replay. If empty, all event types are replayed.
+     * 
+     * @return
+     */
+    public List<DeviceEventType> getEventTypes();
+
+    /**
+     * Get component ids or names of outbound event processors that receive
+     * replayed events. If empty, all outbound event processors receive them.
+     * 
+     * @return
+     */
+    public List<String> getProcessors();
+
+    /**
+     * Get maximum number of events replayed per second. Zero or less disables
+     * rate limiting.
+     * 
+     * @return
+     */
+    public int getMaxEventsPerSecond();
+
+    /**
+     * Get number of threads scanning partitions in parallel.
+     * 
+     * @return
+     */
+    public int getThreadCount();
+
+    /**
+     * Get number of events loaded per query.
+     * 
+     * @return
+     */
+    public int getPageSize();
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.spi.device.event.replay;
+
+import java.util.List;
+
+import com.sitewhere.spi.SiteWhereException;
+import com.sitewhere.spi.server.lifecycle.ITenantLifecycleComponent;
+
+/**
+ * Reads stored events from device event management and passes them to
+ * outbound event processors without going through the inbound or outbound
+ * processing strategies. Used to populate a newly added outbound processor
+ * with historical data.
+ * 
+ * @author Derek
+ */
+public interface IEventReplayManager extends ITenantLifecycleComponent {
+
+    /**
+     * Start a new replay.
+     * 
+     * @param request
+     * @return
+     * @throws SiteWhereException
+     */
+    public IEventReplay startReplay(IEventReplayCreateRequest request) throws SiteWhereException;
+
+    /**
+     * Get a replay by unique id.
+     * 
+     * @param id
+     * @return
+     * @throws SiteWhereException
+     */
+    public IEventReplay getReplay(String id) throws SiteWhereException;
+
+    /**
+     * List replays known to this manager.
+     * 
+     * @return
+     * @throws SiteWhereException
+     */
+    public List<IEventReplay> listReplays() throws SiteWhereException;
+
+    /**
+     * Pause a running replay. Partitions keep their checkpoints so the replay
+     * can be resumed.
+     * 
+     * @param id
+     * @return
+     * @throws SiteWhereException
+     */
+    public IEventReplay pauseReplay(String id) throws SiteWhereException;
+
+    /**
+     * Resume a paused or failed replay from its checkpoints.
+     * 
+     * @param id
+     * @return
+     * @throws SiteWhereException
+     */
+    public IEventReplay resumeReplay(String id) throws SiteWhereException;
+
+    /**
+     * Cancel a replay.
+     * 
+     * @param id
+     * @return
+     * @throws SiteWhereException
+     */
+    public IEventReplay cancelReplay(String id) throws SiteWhereException;
+}
@@ -27,4 +27,12 @@ public interface ISendDeviceStreamDataRequest {
      * @return
      */
     public long getSequenceNumber();
+
+    /**
+     * Get number of consecutive chunks to send, starting with the chunk at
+     * the requested sequence number.
+     * 
+     * @return
+     */
+    public int getChunkCount();
 }
\ No newline at end of file
@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.spi.device.event.rollup;
+
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * Aggregate of the values of one measurement for a device assignment over a
+ * fixed time bucket.
+ * 
+ * @author Derek
+ */
+public interface IMeasurementRollup extends Serializable {
+
+    /**
+     * Get token of assignment the measurements belong to.
+     * 
+     * @return
+     */
+    public String getAssignmentToken();
+
+    /**
+     * Get measurement id.
+     * 
+     * @return
+     */
+    public String getMeasurementId();
+
+    /**
+     * Get width of the bucket in milliseconds.
+     * 
+     * @return
+     */
+    public long getIntervalMs();
+
+    /**
+     * Get start of the bucket.
+     * 
+     * @return
+     */
+    public Date getBucketStart();
+
+    /**
+     * Get number of values in the bucket.
+     * 
+     * @return
+     */
+    public long getCount();
+
+    /**
+     * Get smallest value in the bucket.
+     * 
+     * @return
+     */
+    public double getMin();
+
+    /**
+     * Get largest value in the bucket.
+     * 
+     * @return
+     */
+    public double getMax();
+
+    /**
+     * Get sum of values in the bucket.
+     * 
+     * @return
+     */
+    public double getSum();
+
+    /**
+     * Get most recent value in the bucket.
+     * 
+     * @return
+     */
+    public double getLast();
+
+    /**
+     * Get event date of the most recent value in the bucket.
+     * 
+     * @return
+     */
+    public Date getLastDate();
+}
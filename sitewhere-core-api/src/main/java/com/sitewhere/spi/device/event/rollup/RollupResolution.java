@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.spi.device.event.rollup;
+
+/**
+ * Resolution of a measurement rollup tier. Buckets are aligned to multiples of
+ * the interval since the epoch (UTC).
+ * 
+ * @author Derek
+ */
+public enum RollupResolution {
+
+    /** One minute buckets */
+    Minute(60L * 1000),
+
+    /** One hour buckets */
+    Hour(60L * 60 * 1000),
+
+    /** One day buckets */
+    Day(24L * 60 * 60 * 1000);
+
+    /** Bucket interval in ms */
+    private long intervalMs;
+
+    private RollupResolution(long intervalMs) {
+	this.intervalMs = intervalMs;
+    }
+
+    /**
+     * Get start of the bucket that contains the given timestamp.
+     * 
+     * @param timestamp
+     * @return
+     */
+    public long getBucketStart(long timestamp) {
+	return timestamp - Math.floorMod(timestamp, intervalMs);
+    }
+
+    /**
+     * Get the coarsest resolution whose buckets evenly divide the requested
+     * interval. Returns null if the interval is not a whole number of minutes.
+     * 
+     * @param intervalMs
+     * @return
+     */
+    public static RollupResolution getCoarsestFor(long intervalMs) {
+	RollupResolution[] values = RollupResolution.values();
+	for (int i = values.length - 1; i >= 0; i--) {
+	    if ((intervalMs >= values[i].getIntervalMs()) && ((intervalMs % values[i].getIntervalMs()) == 0)) {
+		return values[i];
+	    }
+	}
+	return null;
+    }
+
+    /**
+     * Get the resolution with the given interval. Returns null if none match.
+     * 
+     * @param intervalMs
+     * @return
+     */
+    public static RollupResolution getByIntervalMs(long intervalMs) {
+	for (RollupResolution value : RollupResolution.values()) {
+	    if (value.getIntervalMs() == intervalMs) {
+		return value;
+	    }
+	}
+	return null;
+    }
+
+    public long getIntervalMs() {
+	return intervalMs;
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.spi.device.group;
+
+import java.util.List;
+
+import com.sitewhere.spi.SiteWhereException;
+import com.sitewhere.spi.search.device.IDeviceSearchCriteria;
+
+/**
+ * Materialized view of device group membership. Nested groups are expanded so
+ * that the devices in a group can be resolved without walking the group
+ * hierarchy in the datastore. The index is kept current by the device
+ * management triggers as groups, devices and assignments change.
+ * 
+ * @author Derek
+ */
+public interface IDeviceGroupMembershipIndex {
+
+    /**
+     * Get hardware ids of the unique devices in a group (including devices in
+     * nested groups) that match the given criteria. Paging information in the
+     * criteria is ignored. Results are sorted by hardware id.
+     * 
+     * @param groupToken
+     * @param criteria
+     *            filter criteria or null for all devices
+     * @return
+     * @throws SiteWhereException
+     */
+    public List<String> getHardwareIdsInGroup(String groupToken, IDeviceSearchCriteria criteria)
+	    throws SiteWhereException;
+
+    /**
+     * Get hardware ids of the unique devices in all groups with the given role
+     * that match the given criteria. Paging information in the criteria is
+     * ignored. Results are sorted by hardware id.
+     * 
+     * @param role
+     * @param criteria
+     *            filter criteria or null for all devices
+     * @return
+     * @throws SiteWhereException
+     */
+    public List<String> getHardwareIdsInGroupsWithRole(String role, IDeviceSearchCriteria criteria)
+	    throws SiteWhereException;
+
+    /**
+     * Called after elements have been added to a group.
+     * 
+     * @param groupToken
+     * @param elements
+     * @throws SiteWhereException
+     */
+    public void groupElementsAdded(String groupToken, List<IDeviceGroupElement> elements) throws SiteWhereException;
+
+    /**
+     * Called after elements have been removed from a group.
+     * 
+     * @param groupToken
+     * @param elements
+     * @throws SiteWhereException
+     */
+    public void groupElementsRemoved(String groupToken, List<IDeviceGroupElement> elements)
+	    throws SiteWhereException;
+
+    /**
+     * Called after a group has been created or updated so that cached role
+     * lookups are refreshed.
+     * 
+     * @param groupToken
+     * @throws SiteWhereException
+     */
+    public void groupChanged(String groupToken) throws SiteWhereException;
+
+    /**
+     * Called after a group has been deleted.
+     * 
+     * @param groupToken
+     * @throws SiteWhereException
+     */
+    public void groupDeleted(String groupToken) throws SiteWhereException;
+
+    /**
+     * Called after a device or its assignment has changed so that cached
+     * filter attributes are refreshed.
+     * 
+     * @param hardwareId
+     * @throws SiteWhereException
+     */
+    public void deviceChanged(String hardwareId) throws SiteWhereException;
+
+    /**
+     * Discard all indexed data. Data is reloaded on demand.
+     * 
+     * @throws SiteWhereException
+     */
+    public void clear() throws SiteWhereException;
+}
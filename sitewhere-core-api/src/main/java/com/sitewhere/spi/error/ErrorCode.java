@@ -46,6 +46,12 @@ public enum ErrorCode {
     /** No user logged in for action that requires authorization */
     NotLoggedIn(130, "You must provide credentials to perform this action."),
 
+    /** Access token could not be verified or has expired */
+    InvalidAccessToken(131, "Access token is invalid or has expired."),
+
+    /** Action requires user to authenticate with a password */
+    PasswordRequired(132, "Password credentials are required to perform this action."),
+
     /** Invalid tenant reference */
     InvalidTenantId(140, "Tenant does not exist."),
 
@@ -137,6 +143,9 @@ public enum ErrorCode {
     /** Attempting to create a stream id that contains invalid characters */
     InvalidCharsInStreamId(531, "Stream id contains invalid characters."),
 
+    /** Invalid event replay id */
+    InvalidEventReplayId(532, "Event replay not found."),
+
     /** Invalid asset category id */
     InvalidAssetCategoryId(535, "Asset category not found."),
 
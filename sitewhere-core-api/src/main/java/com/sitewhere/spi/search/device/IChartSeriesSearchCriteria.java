@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.spi.search.device;
+
+import java.util.List;
+
+import com.sitewhere.spi.device.charting.ChartAggregation;
+import com.sitewhere.spi.search.IDateRangeSearchCriteria;
+
+/**
+ * Criteria for building downsampled chart series from measurements. Either a
+ * bucket width or a maximum number of points may be specified. If both are
+ * missing, the implementation chooses a default point count.
+ * 
+ * @author Derek
+ */
+public interface IChartSeriesSearchCriteria extends IDateRangeSearchCriteria {
+
+    /**
+     * Get ids of measurements to include. If empty, all measurements are
+     * included.
+     * 
+     * @return
+     */
+    public List<String> getMeasurementIds();
+
+    /**
+     * Get width of each time bucket in milliseconds.
+     * 
+     * @return
+     */
+    public Long getBucketWidthMs();
+
+    /**
+     * Get the maximum number of points returned for each series.
+     * 
+     * @return
+     */
+    public Integer getMaxPoints();
+
+    /**
+     * Get aggregations to calculate. A series is returned for each
+     * measurement and aggregation.
+     * 
+     * @return
+     */
+    public List<ChartAggregation> getAggregations();
+}
@@ -31,4 +31,7 @@ public interface ISiteWhereHazelcast {
 
     /** Queue name for all SiteWhere events */
     public static final String QUEUE_ALL_EVENTS = "sitewhere.queue.all.events";
+
+    /** Executor used to transfer inbound requests between members */
+    public static final String EXECUTOR_INBOUND_TRANSFER = "sitewhere.executor.inbound.transfer";
 }
\ No newline at end of file
@@ -86,6 +86,9 @@ public enum LifecycleComponentType {
     /** Outbound processing strategy */
     OutboundProcessingStrategy,
 
+    /** Event replay manager */
+    EventReplayManager,
+
     /** Registration manager */
     RegistrationManager,
 
@@ -104,6 +107,9 @@ public enum LifecycleComponentType {
     /** Device stream manager */
     DeviceStreamManager,
 
+    /** Device context manager */
+    DeviceContextManager,
+
     /** Schedule manager */
     ScheduleManager,
 
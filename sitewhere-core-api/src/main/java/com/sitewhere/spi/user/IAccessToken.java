@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.spi.user;
+
+import java.util.Date;
+
+/**
+ * Signed token that may be passed in place of user credentials on REST calls.
+ * 
+ * @author Derek
+ */
+public interface IAccessToken {
+
+    /**
+     * Get the token value.
+     * 
+     * @return
+     */
+    public String getToken();
+
+    /**
+     * Get the username the token was issued for.
+     * 
+     * @return
+     */
+    public String getUsername();
+
+    /**
+     * Get the date after which the token is no longer accepted.
+     * 
+     * @return
+     */
+    public Date getExpires();
+}
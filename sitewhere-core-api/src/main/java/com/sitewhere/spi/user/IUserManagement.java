@@ -7,6 +7,7 @@
  */
 package com.sitewhere.spi.user;
 
+import java.util.Date;
 import java.util.List;
 
 import com.sitewhere.spi.SiteWhereException;
@@ -42,7 +43,9 @@ public interface IUserManagement extends ILifecycleComponent {
     public IUser importUser(IUser user, boolean overwrite) throws SiteWhereException;
 
     /**
-     * Authenticate the given username and password.
+     * Authenticate the given username and password. The last login date is
+     * not changed. Callers record logins with
+     * {@link #updateLastLogin(String, Date)} so that writes can be batched.
      * 
      * @param username
      * @param password
@@ -51,6 +54,15 @@ public interface IUserManagement extends ILifecycleComponent {
      */
     public IUser authenticate(String username, String password) throws SiteWhereException;
 
+    /**
+     * Set the last login date for a user.
+     * 
+     * @param username
+     * @param lastLogin
+     * @throws SiteWhereException
+     */
+    public void updateLastLogin(String username, Date lastLogin) throws SiteWhereException;
+
     /**
      * Update details for a user.
      * 
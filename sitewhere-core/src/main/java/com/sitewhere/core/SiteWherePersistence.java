@@ -40,7 +40,6 @@ import com.sitewhere.rest.model.device.event.DeviceAlert;
 import com.sitewhere.rest.model.device.event.DeviceCommandInvocation;
 import com.sitewhere.rest.model.device.event.DeviceCommandResponse;
 import com.sitewhere.rest.model.device.event.DeviceEvent;
-import com.sitewhere.rest.model.device.event.DeviceEventBatchResponse;
 import com.sitewhere.rest.model.device.event.DeviceLocation;
 import com.sitewhere.rest.model.device.event.DeviceMeasurements;
 import com.sitewhere.rest.model.device.event.DeviceStateChange;
@@ -87,8 +86,6 @@ import com.sitewhere.spi.device.element.IDeviceElementSchema;
 import com.sitewhere.spi.device.event.AlertLevel;
 import com.sitewhere.spi.device.event.AlertSource;
 import com.sitewhere.spi.device.event.CommandStatus;
-import com.sitewhere.spi.device.event.IDeviceEventBatch;
-import com.sitewhere.spi.device.event.IDeviceEventManagement;
 import com.sitewhere.spi.device.event.request.IDeviceAlertCreateRequest;
 import com.sitewhere.spi.device.event.request.IDeviceCommandInvocationCreateRequest;
 import com.sitewhere.spi.device.event.request.IDeviceCommandResponseCreateRequest;
@@ -643,30 +640,6 @@ public class SiteWherePersistence {
 	return newAssignment;
     }
 
-    /**
-     * Executes logic to process a batch of device events.
-     * 
-     * @param assignmentToken
-     * @param batch
-     * @param management
-     * @return
-     * @throws SiteWhereException
-     */
-    public static DeviceEventBatchResponse deviceEventBatchLogic(String assignmentToken, IDeviceEventBatch batch,
-	    IDeviceEventManagement management) throws SiteWhereException {
-	DeviceEventBatchResponse response = new DeviceEventBatchResponse();
-	for (IDeviceMeasurementsCreateRequest measurements : batch.getMeasurements()) {
-	    response.getCreatedMeasurements().add(management.addDeviceMeasurements(assignmentToken, measurements));
-	}
-	for (IDeviceLocationCreateRequest location : batch.getLocations()) {
-	    response.getCreatedLocations().add(management.addDeviceLocation(assignmentToken, location));
-	}
-	for (IDeviceAlertCreateRequest alert : batch.getAlerts()) {
-	    response.getCreatedAlerts().add(management.addDeviceAlert(assignmentToken, alert));
-	}
-	return response;
-    }
-
     /**
      * Common creation logic for all device events.
      * 
@@ -153,6 +153,28 @@ public class AssignmentStateManager extends TenantLifecycleComponent implements
 	events.add(state);
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.IAssignmentStateManager#addEvents(java.lang.
+     * String, java.util.List)
+     */
+    @Override
+    public void addEvents(String token, List<IDeviceEvent> events) throws SiteWhereException {
+	if (events.isEmpty()) {
+	    return;
+	}
+	synchronized (eventsByAssignment) {
+	    List<IDeviceEvent> existing = eventsByAssignment.get(token);
+	    if (existing == null) {
+		existing = new ArrayList<IDeviceEvent>();
+		eventsByAssignment.put(token, existing);
+	    }
+	    existing.addAll(events);
+	}
+    }
+
     /**
      * Get state for a given assignment. Create if necessary.
      * 
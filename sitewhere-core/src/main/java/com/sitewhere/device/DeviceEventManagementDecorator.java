@@ -12,6 +12,7 @@ import java.util.List;
 import com.sitewhere.server.lifecycle.LifecycleComponentDecorator;
 import com.sitewhere.spi.SiteWhereException;
 import com.sitewhere.spi.device.IDeviceManagement;
+import com.sitewhere.spi.device.charting.ISampledChartSeries;
 import com.sitewhere.spi.device.command.IDeviceCommand;
 import com.sitewhere.spi.device.event.IDeviceAlert;
 import com.sitewhere.spi.device.event.IDeviceCommandInvocation;
@@ -31,8 +32,11 @@ import com.sitewhere.spi.device.event.request.IDeviceLocationCreateRequest;
 import com.sitewhere.spi.device.event.request.IDeviceMeasurementsCreateRequest;
 import com.sitewhere.spi.device.event.request.IDeviceStateChangeCreateRequest;
 import com.sitewhere.spi.device.event.request.IDeviceStreamDataCreateRequest;
+import com.sitewhere.spi.device.event.rollup.IMeasurementRollup;
+import com.sitewhere.spi.device.event.rollup.RollupResolution;
 import com.sitewhere.spi.search.IDateRangeSearchCriteria;
 import com.sitewhere.spi.search.ISearchResults;
+import com.sitewhere.spi.search.device.IChartSeriesSearchCriteria;
 import com.sitewhere.spi.tenant.ITenant;
 
 /**
@@ -134,6 +138,23 @@ public class DeviceEventManagementDecorator extends LifecycleComponentDecorator
 	return delegate.listDeviceMeasurementsForSite(siteToken, criteria);
     }
 
+    @Override
+    public List<ISampledChartSeries> listDeviceMeasurementsSeries(String assignmentToken,
+	    IChartSeriesSearchCriteria criteria) throws SiteWhereException {
+	return delegate.listDeviceMeasurementsSeries(assignmentToken, criteria);
+    }
+
+    @Override
+    public void addMeasurementRollups(List<IMeasurementRollup> rollups) throws SiteWhereException {
+	delegate.addMeasurementRollups(rollups);
+    }
+
+    @Override
+    public ISearchResults<IMeasurementRollup> listMeasurementRollups(String assignmentToken,
+	    RollupResolution resolution, IDateRangeSearchCriteria criteria) throws SiteWhereException {
+	return delegate.listMeasurementRollups(assignmentToken, resolution, criteria);
+    }
+
     @Override
     public IDeviceLocation addDeviceLocation(String assignmentToken, IDeviceLocationCreateRequest request)
 	    throws SiteWhereException {
@@ -194,6 +215,12 @@ public class DeviceEventManagementDecorator extends LifecycleComponentDecorator
 	return delegate.listDeviceStreamData(assignmentToken, streamId, criteria);
     }
 
+    @Override
+    public List<IDeviceStreamData> getDeviceStreamDataRange(String assignmentToken, String streamId,
+	    long firstSequenceNumber, int maxChunks) throws SiteWhereException {
+	return delegate.getDeviceStreamDataRange(assignmentToken, streamId, firstSequenceNumber, maxChunks);
+    }
+
     @Override
     public IDeviceCommandInvocation addDeviceCommandInvocation(String assignmentToken, IDeviceCommand command,
 	    IDeviceCommandInvocationCreateRequest request) throws SiteWhereException {
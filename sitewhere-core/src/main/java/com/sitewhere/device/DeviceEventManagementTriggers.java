@@ -11,7 +11,6 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import com.sitewhere.SiteWhere;
-import com.sitewhere.core.SiteWherePersistence;
 import com.sitewhere.spi.SiteWhereException;
 import com.sitewhere.spi.device.command.IDeviceCommand;
 import com.sitewhere.spi.device.communication.IOutboundProcessingStrategy;
@@ -59,7 +58,21 @@ public class DeviceEventManagementTriggers extends DeviceEventManagementDecorato
     @Override
     public IDeviceEventBatchResponse addDeviceEventBatch(String assignmentToken, IDeviceEventBatch batch)
 	    throws SiteWhereException {
-	return SiteWherePersistence.deviceEventBatchLogic(assignmentToken, batch, this);
+	IDeviceEventBatchResponse response = super.addDeviceEventBatch(assignmentToken, batch);
+	if (getOutboundProcessingStrategy().getLifecycleStatus() == LifecycleStatus.Started) {
+	    for (IDeviceMeasurements measurements : response.getCreatedMeasurements()) {
+		getOutboundProcessingStrategy().onMeasurements(measurements);
+	    }
+	    for (IDeviceLocation location : response.getCreatedLocations()) {
+		getOutboundProcessingStrategy().onLocation(location);
+	    }
+	    for (IDeviceAlert alert : response.getCreatedAlerts()) {
+		getOutboundProcessingStrategy().onAlert(alert);
+	    }
+	} else {
+	    handleOutboundProcessingNotAvailable(response);
+	}
+	return response;
     }
 
     /*
@@ -154,6 +154,11 @@ public class DeviceManagementDecorator extends LifecycleComponentDecorator imple
 	return delegate.getDeviceByHardwareId(hardwareId);
     }
 
+    @Override
+    public List<IDevice> getDevicesByHardwareIds(List<String> hardwareIds) throws SiteWhereException {
+	return delegate.getDevicesByHardwareIds(hardwareIds);
+    }
+
     @Override
     public IDevice updateDevice(String hardwareId, IDeviceCreateRequest request) throws SiteWhereException {
 	return delegate.updateDevice(hardwareId, request);
@@ -196,6 +201,11 @@ public class DeviceManagementDecorator extends LifecycleComponentDecorator imple
 	return delegate.getDeviceAssignmentByToken(token);
     }
 
+    @Override
+    public List<IDeviceAssignment> getDeviceAssignmentsByTokens(List<String> tokens) throws SiteWhereException {
+	return delegate.getDeviceAssignmentsByTokens(tokens);
+    }
+
     @Override
     public IDeviceAssignment deleteDeviceAssignment(String token, boolean force) throws SiteWhereException {
 	return delegate.deleteDeviceAssignment(token, force);
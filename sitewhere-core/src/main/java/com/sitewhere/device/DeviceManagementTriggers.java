@@ -7,18 +7,30 @@
  */
 package com.sitewhere.device;
 
+import java.util.List;
+
 import com.sitewhere.SiteWhere;
 import com.sitewhere.rest.model.device.event.request.DeviceStateChangeCreateRequest;
 import com.sitewhere.spi.SiteWhereException;
 import com.sitewhere.spi.common.IMetadataProvider;
+import com.sitewhere.spi.device.DeviceAssignmentStatus;
+import com.sitewhere.spi.device.IDevice;
 import com.sitewhere.spi.device.IDeviceAssignment;
+import com.sitewhere.spi.device.IDeviceElementMapping;
 import com.sitewhere.spi.device.IDeviceManagement;
 import com.sitewhere.spi.device.batch.IBatchOperation;
+import com.sitewhere.spi.device.communication.IDeviceCommunication;
 import com.sitewhere.spi.device.event.state.StateChangeCategory;
 import com.sitewhere.spi.device.event.state.StateChangeType;
+import com.sitewhere.spi.device.group.IDeviceGroup;
+import com.sitewhere.spi.device.group.IDeviceGroupElement;
+import com.sitewhere.spi.device.group.IDeviceGroupMembershipIndex;
 import com.sitewhere.spi.device.request.IBatchCommandInvocationRequest;
 import com.sitewhere.spi.device.request.IBatchOperationCreateRequest;
 import com.sitewhere.spi.device.request.IDeviceAssignmentCreateRequest;
+import com.sitewhere.spi.device.request.IDeviceCreateRequest;
+import com.sitewhere.spi.device.request.IDeviceGroupCreateRequest;
+import com.sitewhere.spi.device.request.IDeviceGroupElementCreateRequest;
 
 /**
  * Adds triggers for processing related to device management API calls.
@@ -27,8 +39,85 @@ import com.sitewhere.spi.device.request.IDeviceAssignmentCreateRequest;
  */
 public class DeviceManagementTriggers extends DeviceManagementDecorator {
 
-    public DeviceManagementTriggers(IDeviceManagement delegate) {
+    /** Index updated as group membership and devices change */
+    private IDeviceGroupMembershipIndex membershipIndex;
+
+    public DeviceManagementTriggers(IDeviceManagement delegate, IDeviceGroupMembershipIndex membershipIndex) {
 	super(delegate);
+	this.membershipIndex = membershipIndex;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.device.DeviceManagementDecorator#createDevice(com.sitewhere
+     * .spi.device.request.IDeviceCreateRequest)
+     */
+    @Override
+    public IDevice createDevice(IDeviceCreateRequest device) throws SiteWhereException {
+	IDevice created = super.createDevice(device);
+	membershipIndex.deviceChanged(created.getHardwareId());
+	evictDeviceContext(created.getHardwareId());
+	return created;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.device.DeviceManagementDecorator#updateDevice(java.lang.
+     * String, com.sitewhere.spi.device.request.IDeviceCreateRequest)
+     */
+    @Override
+    public IDevice updateDevice(String hardwareId, IDeviceCreateRequest request) throws SiteWhereException {
+	IDevice updated = super.updateDevice(hardwareId, request);
+	membershipIndex.deviceChanged(hardwareId);
+	evictDeviceContext(hardwareId);
+	return updated;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.device.DeviceManagementDecorator#deleteDevice(java.lang.
+     * String, boolean)
+     */
+    @Override
+    public IDevice deleteDevice(String hardwareId, boolean force) throws SiteWhereException {
+	IDevice deleted = super.deleteDevice(hardwareId, force);
+	membershipIndex.deviceChanged(hardwareId);
+	evictDeviceContext(hardwareId);
+	return deleted;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.device.DeviceManagementDecorator#
+     * createDeviceElementMapping(java.lang.String,
+     * com.sitewhere.spi.device.IDeviceElementMapping)
+     */
+    @Override
+    public IDevice createDeviceElementMapping(String hardwareId, IDeviceElementMapping mapping)
+	    throws SiteWhereException {
+	IDevice updated = super.createDeviceElementMapping(hardwareId, mapping);
+	evictDeviceContext(hardwareId);
+	return updated;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.device.DeviceManagementDecorator#
+     * deleteDeviceElementMapping(java.lang.String, java.lang.String)
+     */
+    @Override
+    public IDevice deleteDeviceElementMapping(String hardwareId, String path) throws SiteWhereException {
+	IDevice updated = super.deleteDeviceElementMapping(hardwareId, path);
+	evictDeviceContext(hardwareId);
+	return updated;
     }
 
     /*
@@ -41,6 +130,8 @@ public class DeviceManagementTriggers extends DeviceManagementDecorator {
     @Override
     public IDeviceAssignment createDeviceAssignment(IDeviceAssignmentCreateRequest request) throws SiteWhereException {
 	IDeviceAssignment created = super.createDeviceAssignment(request);
+	membershipIndex.deviceChanged(created.getDeviceHardwareId());
+	evictDeviceContext(created.getDeviceHardwareId());
 	DeviceStateChangeCreateRequest state = new DeviceStateChangeCreateRequest(StateChangeCategory.Assignment,
 		StateChangeType.Assignment_Created, null, null);
 	SiteWhere.getServer().getDeviceEventManagement(getTenant()).addDeviceStateChange(created.getToken(), state);
@@ -58,12 +149,28 @@ public class DeviceManagementTriggers extends DeviceManagementDecorator {
     public IDeviceAssignment updateDeviceAssignmentMetadata(String token, IMetadataProvider metadata)
 	    throws SiteWhereException {
 	IDeviceAssignment updated = super.updateDeviceAssignmentMetadata(token, metadata);
+	evictDeviceContext(updated.getDeviceHardwareId());
 	DeviceStateChangeCreateRequest state = new DeviceStateChangeCreateRequest(StateChangeCategory.Assignment,
 		StateChangeType.Assignment_Updated, null, null);
 	SiteWhere.getServer().getDeviceEventManagement(getTenant()).addDeviceStateChange(updated.getToken(), state);
 	return updated;
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.device.DeviceManagementDecorator#
+     * updateDeviceAssignmentStatus(java.lang.String,
+     * com.sitewhere.spi.device.DeviceAssignmentStatus)
+     */
+    @Override
+    public IDeviceAssignment updateDeviceAssignmentStatus(String token, DeviceAssignmentStatus status)
+	    throws SiteWhereException {
+	IDeviceAssignment updated = super.updateDeviceAssignmentStatus(token, status);
+	evictDeviceContext(updated.getDeviceHardwareId());
+	return updated;
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -74,12 +181,102 @@ public class DeviceManagementTriggers extends DeviceManagementDecorator {
     @Override
     public IDeviceAssignment endDeviceAssignment(String token) throws SiteWhereException {
 	IDeviceAssignment updated = super.endDeviceAssignment(token);
+	membershipIndex.deviceChanged(updated.getDeviceHardwareId());
+	evictDeviceContext(updated.getDeviceHardwareId());
 	DeviceStateChangeCreateRequest state = new DeviceStateChangeCreateRequest(StateChangeCategory.Assignment,
 		StateChangeType.Assignment_Released, null, null);
 	SiteWhere.getServer().getDeviceEventManagement(getTenant()).addDeviceStateChange(updated.getToken(), state);
 	return updated;
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.device.DeviceManagementDecorator#deleteDeviceAssignment(
+     * java.lang.String, boolean)
+     */
+    @Override
+    public IDeviceAssignment deleteDeviceAssignment(String token, boolean force) throws SiteWhereException {
+	IDeviceAssignment deleted = super.deleteDeviceAssignment(token, force);
+	membershipIndex.deviceChanged(deleted.getDeviceHardwareId());
+	evictDeviceContext(deleted.getDeviceHardwareId());
+	return deleted;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.device.DeviceManagementDecorator#createDeviceGroup(com.
+     * sitewhere.spi.device.request.IDeviceGroupCreateRequest)
+     */
+    @Override
+    public IDeviceGroup createDeviceGroup(IDeviceGroupCreateRequest request) throws SiteWhereException {
+	IDeviceGroup created = super.createDeviceGroup(request);
+	membershipIndex.groupChanged(created.getToken());
+	return created;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.device.DeviceManagementDecorator#updateDeviceGroup(java.
+     * lang.String, com.sitewhere.spi.device.request.IDeviceGroupCreateRequest)
+     */
+    @Override
+    public IDeviceGroup updateDeviceGroup(String token, IDeviceGroupCreateRequest request)
+	    throws SiteWhereException {
+	IDeviceGroup updated = super.updateDeviceGroup(token, request);
+	membershipIndex.groupChanged(token);
+	return updated;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.device.DeviceManagementDecorator#addDeviceGroupElements(
+     * java.lang.String, java.util.List, boolean)
+     */
+    @Override
+    public List<IDeviceGroupElement> addDeviceGroupElements(String groupToken,
+	    List<IDeviceGroupElementCreateRequest> elements, boolean ignoreDuplicates) throws SiteWhereException {
+	List<IDeviceGroupElement> added = super.addDeviceGroupElements(groupToken, elements, ignoreDuplicates);
+	membershipIndex.groupElementsAdded(groupToken, added);
+	return added;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.device.DeviceManagementDecorator#removeDeviceGroupElements(
+     * java.lang.String, java.util.List)
+     */
+    @Override
+    public List<IDeviceGroupElement> removeDeviceGroupElements(String groupToken,
+	    List<IDeviceGroupElementCreateRequest> elements) throws SiteWhereException {
+	List<IDeviceGroupElement> removed = super.removeDeviceGroupElements(groupToken, elements);
+	membershipIndex.groupElementsRemoved(groupToken, removed);
+	return removed;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.device.DeviceManagementDecorator#deleteDeviceGroup(java.
+     * lang.String, boolean)
+     */
+    @Override
+    public IDeviceGroup deleteDeviceGroup(String token, boolean force) throws SiteWhereException {
+	IDeviceGroup deleted = super.deleteDeviceGroup(token, force);
+	membershipIndex.groupDeleted(token);
+	return deleted;
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -96,7 +293,7 @@ public class DeviceManagementTriggers extends DeviceManagementDecorator {
 
     /*
      * (non-Javadoc)
-     *
+     * 
      * @see com.sitewhere.device.DeviceManagementDecorator#
      * createBatchCommandInvocation(com.sitewhere.
      * spi.device.request.IBatchCommandInvocationRequest)
@@ -108,4 +305,19 @@ public class DeviceManagementTriggers extends DeviceManagementDecorator {
 	SiteWhere.getServer().getDeviceCommunication(getTenant()).getBatchOperationManager().process(operation);
 	return operation;
     }
+
+    /**
+     * Evict the cached device context so that inbound processing picks up the
+     * current device and assignment. State updates are not evicted since they
+     * happen on every event and do not change which assignment is current.
+     * 
+     * @param hardwareId
+     * @throws SiteWhereException
+     */
+    protected void evictDeviceContext(String hardwareId) throws SiteWhereException {
+	IDeviceCommunication communication = SiteWhere.getServer().getDeviceCommunication(getTenant());
+	if ((communication != null) && (communication.getDeviceContextManager() != null)) {
+	    communication.getDeviceContextManager().evictDeviceContext(hardwareId);
+	}
+    }
 }
\ No newline at end of file
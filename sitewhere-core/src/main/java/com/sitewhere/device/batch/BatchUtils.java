@@ -58,14 +58,13 @@ public class BatchUtils {
 	IDeviceSearchCriteria deviceSearch = new DeviceSearchCriteria(criteria.getSpecificationToken(),
 		criteria.getSiteToken(), false, 1, 0, criteria.getStartDate(), criteria.getEndDate());
 
-	Collection<IDevice> matches;
 	if (hasGroup) {
-	    matches = DeviceGroupUtils.getDevicesInGroup(criteria.getGroupToken(), deviceSearch, tenant);
+	    return DeviceGroupUtils.getHardwareIdsInGroup(criteria.getGroupToken(), deviceSearch, tenant);
 	} else if (hasGroupsWithRole) {
-	    matches = DeviceGroupUtils.getDevicesInGroupsWithRole(criteria.getGroupsWithRole(), deviceSearch, tenant);
-	} else {
-	    matches = SiteWhere.getServer().getDeviceManagement(tenant).listDevices(false, deviceSearch).getResults();
+	    return DeviceGroupUtils.getHardwareIdsInGroupsWithRole(criteria.getGroupsWithRole(), deviceSearch, tenant);
 	}
+	Collection<IDevice> matches = SiteWhere.getServer().getDeviceManagement(tenant)
+		.listDevices(false, deviceSearch).getResults();
 	List<String> hardwareIds = new ArrayList<String>();
 	for (IDevice match : matches) {
 	    hardwareIds.add(match.getHardwareId());
@@ -0,0 +1,336 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.device.charting;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.sitewhere.spi.device.charting.ChartAggregation;
+import com.sitewhere.spi.device.charting.ISampledChartSeries;
+import com.sitewhere.spi.device.event.IDeviceMeasurements;
+import com.sitewhere.spi.search.device.IChartSeriesSearchCriteria;
+
+/**
+ * Builds downsampled chart series from raw measurement values. Values are
+ * collected into primitive buffers per measurement, then reduced to time
+ * buckets or to a fixed number of points with the Largest-Triangle-Three-
+ * Buckets algorithm. Datastores that can not aggregate natively stream raw
+ * values into an instance of this class.
+ * 
+ * <p>
+ * Buckets are aligned to multiples of the bucket width since the epoch, which
+ * matches the bucketing used by InfluxDB <code>GROUP BY time()</code>. Each
+ * point is stamped with the start of its bucket.
+ * </p>
+ * 
+ * @author Derek
+ */
+public class ChartDownsampler {
+
+    /** Number of points per series if neither width nor count is specified */
+    public static final int DEFAULT_MAX_POINTS = 500;
+
+    /** Search criteria */
+    private IChartSeriesSearchCriteria criteria;
+
+    /** Measurement ids to include or null for all */
+    private Set<String> measurementIds;
+
+    /** Raw points by measurement id */
+    private Map<String, ChartPointBuffer> pointsByMeasurementId = new HashMap<String, ChartPointBuffer>();
+
+    public ChartDownsampler(IChartSeriesSearchCriteria criteria) {
+	this.criteria = criteria;
+	if ((criteria.getMeasurementIds() != null) && (!criteria.getMeasurementIds().isEmpty())) {
+	    this.measurementIds = new HashSet<String>(criteria.getMeasurementIds());
+	}
+    }
+
+    /**
+     * Indicates whether values for the given measurement are included.
+     * 
+     * @param measurementId
+     * @return
+     */
+    public boolean includes(String measurementId) {
+	return (measurementIds == null) || (measurementIds.contains(measurementId));
+    }
+
+    /**
+     * Add all included values from a measurements event.
+     * 
+     * @param measurements
+     */
+    public void add(IDeviceMeasurements measurements) {
+	if (measurements.getEventDate() == null) {
+	    return;
+	}
+	long timestamp = measurements.getEventDate().getTime();
+	for (Map.Entry<String, Double> entry : measurements.getMeasurements().entrySet()) {
+	    if ((entry.getValue() != null) && (includes(entry.getKey()))) {
+		add(entry.getKey(), timestamp, entry.getValue());
+	    }
+	}
+    }
+
+    /**
+     * Add a single raw value.
+     * 
+     * @param measurementId
+     * @param timestamp
+     * @param value
+     */
+    public void add(String measurementId, long timestamp, double value) {
+	ChartPointBuffer points = pointsByMeasurementId.get(measurementId);
+	if (points == null) {
+	    points = new ChartPointBuffer();
+	    pointsByMeasurementId.put(measurementId, points);
+	}
+	points.add(timestamp, value);
+    }
+
+    /**
+     * Reduce collected values to chart series.
+     * 
+     * @return
+     */
+    public List<ISampledChartSeries> build() {
+	ChartSeriesCollector collector = new ChartSeriesCollector();
+	List<ChartAggregation> aggregations = getAggregations(criteria);
+	for (String measurementId : pointsByMeasurementId.keySet()) {
+	    ChartPointBuffer points = pointsByMeasurementId.get(measurementId);
+	    if (points.size() == 0) {
+		continue;
+	    }
+	    points.sort();
+	    long first = points.getTimestamp(0);
+	    long last = points.getTimestamp(points.size() - 1);
+	    long width = getBucketWidth(criteria, first, last);
+	    aggregate(measurementId, points, width, aggregations, collector);
+	    if (aggregations.contains(ChartAggregation.Lttb)) {
+		lttb(measurementId, points, getPointCount(criteria, first, last, width), collector);
+	    }
+	}
+	return collector.build();
+    }
+
+    /**
+     * Reduce sorted points to buckets for each of the bucketed aggregations.
+     * 
+     * @param measurementId
+     * @param points
+     * @param width
+     * @param aggregations
+     * @param collector
+     */
+    protected static void aggregate(String measurementId, ChartPointBuffer points, long width,
+	    List<ChartAggregation> aggregations, ChartSeriesCollector collector) {
+	boolean bucketed = false;
+	for (ChartAggregation aggregation : aggregations) {
+	    bucketed |= (aggregation != ChartAggregation.Lttb);
+	}
+	if (!bucketed) {
+	    return;
+	}
+	int size = points.size();
+	int start = 0;
+	while (start < size) {
+	    long bucket = getBucketStart(points.getTimestamp(start), width);
+	    double min = points.getValue(start);
+	    double max = min;
+	    double sum = 0;
+	    int end = start;
+	    while ((end < size) && (getBucketStart(points.getTimestamp(end), width) == bucket)) {
+		double value = points.getValue(end);
+		min = Math.min(min, value);
+		max = Math.max(max, value);
+		sum += value;
+		end++;
+	    }
+	    for (ChartAggregation aggregation : aggregations) {
+		switch (aggregation) {
+		case Min: {
+		    collector.add(measurementId, aggregation, bucket, min);
+		    break;
+		}
+		case Max: {
+		    collector.add(measurementId, aggregation, bucket, max);
+		    break;
+		}
+		case Avg: {
+		    collector.add(measurementId, aggregation, bucket, sum / (end - start));
+		    break;
+		}
+		case Last: {
+		    collector.add(measurementId, aggregation, bucket, points.getValue(end - 1));
+		    break;
+		}
+		default: {
+		    break;
+		}
+		}
+	    }
+	    start = end;
+	}
+    }
+
+    /**
+     * Downsample sorted points with Largest-Triangle-Three-Buckets, which
+     * keeps the points that best preserve the visual shape of the series.
+     * 
+     * @param measurementId
+     * @param points
+     * @param threshold
+     * @param collector
+     */
+    protected static void lttb(String measurementId, ChartPointBuffer points, int threshold,
+	    ChartSeriesCollector collector) {
+	int size = points.size();
+	if ((threshold >= size) || (threshold < 3)) {
+	    for (int i = 0; i < size; i++) {
+		collector.add(measurementId, ChartAggregation.Lttb, points.getTimestamp(i), points.getValue(i));
+	    }
+	    return;
+	}
+
+	// Timestamps are made relative to the first point to keep precision.
+	long origin = points.getTimestamp(0);
+	double every = (double) (size - 2) / (threshold - 2);
+	int selected = 0;
+	collector.add(measurementId, ChartAggregation.Lttb, origin, points.getValue(0));
+	for (int i = 0; i < threshold - 2; i++) {
+	    int avgStart = (int) Math.floor((i + 1) * every) + 1;
+	    int avgEnd = Math.min((int) Math.floor((i + 2) * every) + 1, size);
+	    double avgX = 0;
+	    double avgY = 0;
+	    for (int j = avgStart; j < avgEnd; j++) {
+		avgX += points.getTimestamp(j) - origin;
+		avgY += points.getValue(j);
+	    }
+	    avgX /= (avgEnd - avgStart);
+	    avgY /= (avgEnd - avgStart);
+
+	    int rangeStart = (int) Math.floor(i * every) + 1;
+	    int rangeEnd = (int) Math.floor((i + 1) * every) + 1;
+	    double ax = points.getTimestamp(selected) - origin;
+	    double ay = points.getValue(selected);
+	    double maxArea = -1;
+	    int next = rangeStart;
+	    for (int j = rangeStart; j < rangeEnd; j++) {
+		double area = Math.abs((ax - avgX) * (points.getValue(j) - ay)
+			- (ax - (points.getTimestamp(j) - origin)) * (avgY - ay));
+		if (area > maxArea) {
+		    maxArea = area;
+		    next = j;
+		}
+	    }
+	    collector.add(measurementId, ChartAggregation.Lttb, points.getTimestamp(next), points.getValue(next));
+	    selected = next;
+	}
+	collector.add(measurementId, ChartAggregation.Lttb, points.getTimestamp(size - 1),
+		points.getValue(size - 1));
+    }
+
+    /**
+     * Get aggregations requested by the criteria. Defaults to average.
+     * 
+     * @param criteria
+     * @return
+     */
+    public static List<ChartAggregation> getAggregations(IChartSeriesSearchCriteria criteria) {
+	List<ChartAggregation> aggregations = new ArrayList<ChartAggregation>();
+	if (criteria.getAggregations() != null) {
+	    for (ChartAggregation aggregation : criteria.getAggregations()) {
+		if ((aggregation != null) && (!aggregations.contains(aggregation))) {
+		    aggregations.add(aggregation);
+		}
+	    }
+	}
+	if (aggregations.isEmpty()) {
+	    aggregations.add(ChartAggregation.Avg);
+	}
+	return aggregations;
+    }
+
+    /**
+     * Get the bucket width for a series. Uses the width from the criteria if
+     * present. Otherwise the width is chosen so that the range covered by the
+     * criteria (or by the data if the criteria is open ended) fits in the
+     * maximum number of points.
+     * 
+     * @param criteria
+     * @param first
+     * @param last
+     * @return
+     */
+    public static long getBucketWidth(IChartSeriesSearchCriteria criteria, long first, long last) {
+	if ((criteria.getBucketWidthMs() != null) && (criteria.getBucketWidthMs() > 0)) {
+	    return criteria.getBucketWidthMs();
+	}
+	long start = (criteria.getStartDate() != null) ? criteria.getStartDate().getTime() : first;
+	long end = (criteria.getEndDate() != null) ? criteria.getEndDate().getTime() : last;
+	long span = Math.max(0, end - start);
+	int buckets = Math.max(1, getMaxPoints(criteria) - 1);
+	return Math.max(1, (span + buckets - 1) / buckets);
+    }
+
+    /**
+     * Indicates whether the bucket width can be calculated from the criteria
+     * alone, without looking at the data.
+     * 
+     * @param criteria
+     * @return
+     */
+    public static boolean isBucketWidthFixed(IChartSeriesSearchCriteria criteria) {
+	return ((criteria.getBucketWidthMs() != null) && (criteria.getBucketWidthMs() > 0))
+		|| ((criteria.getStartDate() != null) && (criteria.getEndDate() != null));
+    }
+
+    /**
+     * Get start of the bucket that contains the given timestamp.
+     * 
+     * @param timestamp
+     * @param width
+     * @return
+     */
+    public static long getBucketStart(long timestamp, long width) {
+	return timestamp - Math.floorMod(timestamp, width);
+    }
+
+    /**
+     * Get maximum number of points per series.
+     * 
+     * @param criteria
+     * @return
+     */
+    protected static int getMaxPoints(IChartSeriesSearchCriteria criteria) {
+	return ((criteria.getMaxPoints() != null) && (criteria.getMaxPoints() > 0)) ? criteria.getMaxPoints()
+		: DEFAULT_MAX_POINTS;
+    }
+
+    /**
+     * Get number of points to keep when downsampling with LTTB.
+     * 
+     * @param criteria
+     * @param first
+     * @param last
+     * @param width
+     * @return
+     */
+    protected static int getPointCount(IChartSeriesSearchCriteria criteria, long first, long last, long width) {
+	if ((criteria.getMaxPoints() != null) && (criteria.getMaxPoints() > 0)) {
+	    return criteria.getMaxPoints();
+	}
+	long count = ((last - first) / width) + 1;
+	return (int) Math.min(Integer.MAX_VALUE, count);
+    }
+}
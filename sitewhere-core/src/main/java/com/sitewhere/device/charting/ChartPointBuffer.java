@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.device.charting;
+
+import java.util.Arrays;
+
+/**
+ * Growable buffer of chart points stored as parallel primitive arrays so that
+ * large series can be collected and sorted without boxing each point.
+ * 
+ * @author Derek
+ */
+public class ChartPointBuffer {
+
+    /** Ranges smaller than this are sorted with insertion sort */
+    private static final int INSERTION_SORT_THRESHOLD = 16;
+
+    /** Point timestamps in ms */
+    private long[] timestamps;
+
+    /** Point values */
+    private double[] values;
+
+    /** Number of points in the buffer */
+    private int size;
+
+    public ChartPointBuffer() {
+	this(64);
+    }
+
+    public ChartPointBuffer(int capacity) {
+	this.timestamps = new long[Math.max(1, capacity)];
+	this.values = new double[Math.max(1, capacity)];
+    }
+
+    /**
+     * Add a point to the buffer.
+     * 
+     * @param timestamp
+     * @param value
+     */
+    public void add(long timestamp, double value) {
+	if (size == timestamps.length) {
+	    int capacity = size << 1;
+	    timestamps = Arrays.copyOf(timestamps, capacity);
+	    values = Arrays.copyOf(values, capacity);
+	}
+	timestamps[size] = timestamp;
+	values[size] = value;
+	size++;
+    }
+
+    /**
+     * Sort points by timestamp. Datastores usually return points already in
+     * ascending or descending order, so those cases are handled without a
+     * full sort.
+     */
+    public void sort() {
+	boolean ascending = true;
+	boolean descending = true;
+	for (int i = 1; i < size; i++) {
+	    if (timestamps[i - 1] > timestamps[i]) {
+		ascending = false;
+	    } else if (timestamps[i - 1] < timestamps[i]) {
+		descending = false;
+	    }
+	    if (!ascending && !descending) {
+		break;
+	    }
+	}
+	if (ascending) {
+	    return;
+	}
+	if (descending) {
+	    for (int i = 0, j = size - 1; i < j; i++, j--) {
+		swap(i, j);
+	    }
+	    return;
+	}
+	quicksort(0, size - 1);
+    }
+
+    /**
+     * Sort a range of points by timestamp.
+     * 
+     * @param low
+     * @param high
+     */
+    protected void quicksort(int low, int high) {
+	while (high - low >= INSERTION_SORT_THRESHOLD) {
+	    long pivot = timestamps[(low + high) >>> 1];
+	    int i = low;
+	    int j = high;
+	    while (i <= j) {
+		while (timestamps[i] < pivot) {
+		    i++;
+		}
+		while (timestamps[j] > pivot) {
+		    j--;
+		}
+		if (i <= j) {
+		    swap(i++, j--);
+		}
+	    }
+	    // Recurse into the smaller half to bound stack depth.
+	    if (j - low < high - i) {
+		quicksort(low, j);
+		low = i;
+	    } else {
+		quicksort(i, high);
+		high = j;
+	    }
+	}
+	for (int i = low + 1; i <= high; i++) {
+	    long timestamp = timestamps[i];
+	    double value = values[i];
+	    int j = i - 1;
+	    while ((j >= low) && (timestamps[j] > timestamp)) {
+		timestamps[j + 1] = timestamps[j];
+		values[j + 1] = values[j];
+		j--;
+	    }
+	    timestamps[j + 1] = timestamp;
+	    values[j + 1] = value;
+	}
+    }
+
+    /**
+     * Swap two points.
+     * 
+     * @param i
+     * @param j
+     */
+    protected void swap(int i, int j) {
+	long timestamp = timestamps[i];
+	timestamps[i] = timestamps[j];
+	timestamps[j] = timestamp;
+	double value = values[i];
+	values[i] = values[j];
+	values[j] = value;
+    }
+
+    /**
+     * Get number of points in the buffer.
+     * 
+     * @return
+     */
+    public int size() {
+	return size;
+    }
+
+    /**
+     * Get timestamp for a point.
+     * 
+     * @param index
+     * @return
+     */
+    public long getTimestamp(int index) {
+	return timestamps[index];
+    }
+
+    /**
+     * Get value for a point.
+     * 
+     * @param index
+     * @return
+     */
+    public double getValue(int index) {
+	return values[index];
+    }
+
+    /**
+     * Get a copy of the timestamps trimmed to the number of points.
+     * 
+     * @return
+     */
+    public long[] toTimestampArray() {
+	return Arrays.copyOf(timestamps, size);
+    }
+
+    /**
+     * Get a copy of the values trimmed to the number of points.
+     * 
+     * @return
+     */
+    public double[] toValueArray() {
+	return Arrays.copyOf(values, size);
+    }
+}
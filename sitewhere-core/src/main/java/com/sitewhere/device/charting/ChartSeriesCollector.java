@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.device.charting;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.sitewhere.rest.model.device.charting.SampledChartSeries;
+import com.sitewhere.spi.device.charting.ChartAggregation;
+import com.sitewhere.spi.device.charting.ISampledChartSeries;
+
+/**
+ * Collects aggregated chart points by measurement id and aggregation. Used by
+ * datastores that calculate buckets natively as well as by
+ * {@link ChartDownsampler}.
+ * 
+ * @author Derek
+ */
+public class ChartSeriesCollector {
+
+    /** Point buffers by measurement id and aggregation */
+    private Map<String, Map<ChartAggregation, ChartPointBuffer>> buffers = new TreeMap<String, Map<ChartAggregation, ChartPointBuffer>>();
+
+    /**
+     * Add a point to a series.
+     * 
+     * @param measurementId
+     * @param aggregation
+     * @param timestamp
+     * @param value
+     */
+    public void add(String measurementId, ChartAggregation aggregation, long timestamp, double value) {
+	Map<ChartAggregation, ChartPointBuffer> byAggregation = buffers.get(measurementId);
+	if (byAggregation == null) {
+	    byAggregation = new EnumMap<ChartAggregation, ChartPointBuffer>(ChartAggregation.class);
+	    buffers.put(measurementId, byAggregation);
+	}
+	ChartPointBuffer buffer = byAggregation.get(aggregation);
+	if (buffer == null) {
+	    buffer = new ChartPointBuffer();
+	    byAggregation.put(aggregation, buffer);
+	}
+	buffer.add(timestamp, value);
+    }
+
+    /**
+     * Build series ordered by measurement id and aggregation with points
+     * ordered by timestamp.
+     * 
+     * @return
+     */
+    public List<ISampledChartSeries> build() {
+	List<ISampledChartSeries> results = new ArrayList<ISampledChartSeries>();
+	for (String measurementId : buffers.keySet()) {
+	    Map<ChartAggregation, ChartPointBuffer> byAggregation = buffers.get(measurementId);
+	    for (ChartAggregation aggregation : byAggregation.keySet()) {
+		ChartPointBuffer buffer = byAggregation.get(aggregation);
+		buffer.sort();
+		results.add(new SampledChartSeries(measurementId, aggregation, buffer.toTimestampArray(),
+			buffer.toValueArray()));
+	    }
+	}
+	return results;
+    }
+}
@@ -0,0 +1,716 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.device.communication;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricFilter;
+import com.codahale.metrics.MetricRegistry;
+import com.sitewhere.SiteWhere;
+import com.sitewhere.server.SiteWhereServer;
+import com.sitewhere.server.lifecycle.TenantLifecycleComponent;
+import com.sitewhere.spi.SiteWhereException;
+import com.sitewhere.spi.device.communication.IOutboundProcessingStrategy;
+import com.sitewhere.spi.device.event.IDeviceAlert;
+import com.sitewhere.spi.device.event.IDeviceCommandInvocation;
+import com.sitewhere.spi.device.event.IDeviceCommandResponse;
+import com.sitewhere.spi.device.event.IDeviceEvent;
+import com.sitewhere.spi.device.event.IDeviceLocation;
+import com.sitewhere.spi.device.event.IDeviceMeasurements;
+import com.sitewhere.spi.device.event.IDeviceStateChange;
+import com.sitewhere.spi.device.event.processor.IOutboundEventProcessor;
+import com.sitewhere.spi.device.event.processor.IOutboundEventProcessorChain;
+import com.sitewhere.spi.server.lifecycle.ILifecycleProgressMonitor;
+import com.sitewhere.spi.server.lifecycle.LifecycleComponentType;
+import com.sitewhere.spi.server.lifecycle.LifecycleStatus;
+
+/**
+ * Implementation of {@link IOutboundProcessingStrategy} that gives each
+ * {@link IOutboundEventProcessor} in the {@link IOutboundEventProcessorChain}
+ * its own bounded queue and workers so that a slow processor does not hold up
+ * the others. When a queue is full, the configured
+ * {@link OutboundOverloadPolicy} decides what happens to the event. Events
+ * that are not delivered are counted and logged. Workers are added as the
+ * backlog for a processor grows and removed after they have been idle.
+ * Counters are published to the server metric registry.
+ * 
+ * @author Derek
+ */
+public class BackpressureOutboundProcessingStrategy extends TenantLifecycleComponent
+	implements IOutboundProcessingStrategy {
+
+    /** Static logger instance */
+    private static Logger LOGGER = LogManager.getLogger();
+
+    /** Default maximum size of each processor queue */
+    private static final int DEFAULT_MAX_QUEUE_SIZE = 1000;
+
+    /** Default minimum number of workers for each processor */
+    private static final int DEFAULT_MIN_WORKERS = 1;
+
+    /** Default maximum number of workers for each processor */
+    private static final int DEFAULT_MAX_WORKERS = 10;
+
+    /** Default time to wait for queue space with the block policy */
+    private static final long DEFAULT_BLOCK_TIMEOUT_MS = 5000;
+
+    /** Number of seconds an idle worker waits before exiting */
+    private static final int WORKER_IDLE_TIMEOUT_SECS = 30;
+
+    /** Minimum time between overload warnings for a queue */
+    private static final long OVERLOAD_WARNING_INTERVAL_MS = 10000;
+
+    /** Maximum number of events in each processor queue */
+    private int maxQueueSize = DEFAULT_MAX_QUEUE_SIZE;
+
+    /** Minimum number of workers for each processor */
+    private int minWorkers = DEFAULT_MIN_WORKERS;
+
+    /** Maximum number of workers for each processor */
+    private int maxWorkers = DEFAULT_MAX_WORKERS;
+
+    /** Action taken when a processor queue is full */
+    private OutboundOverloadPolicy overloadPolicy = OutboundOverloadPolicy.Block;
+
+    /** Time to wait for queue space with the block policy */
+    private long blockTimeoutMs = DEFAULT_BLOCK_TIMEOUT_MS;
+
+    /** Directory for spill files (defaults to temp directory) */
+    private String spillDirectory;
+
+    /** Chain that holds the processors */
+    private IOutboundEventProcessorChain chain;
+
+    /** Queue for each processor in the chain */
+    private List<ProcessorQueue> queues = new ArrayList<ProcessorQueue>();
+
+    /** Thread pool for workers */
+    private ExecutorService workerPool;
+
+    /** Prefix for metric names */
+    private String metricsPrefix;
+
+    public BackpressureOutboundProcessingStrategy() {
+	super(LifecycleComponentType.OutboundProcessingStrategy);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.server.lifecycle.ILifecycleComponent#start(com.
+     * sitewhere.spi.server.lifecycle.ILifecycleProgressMonitor)
+     */
+    @Override
+    public void start(ILifecycleProgressMonitor monitor) throws SiteWhereException {
+	if ((getMinWorkers() < 1) || (getMaxWorkers() < getMinWorkers())) {
+	    throw new SiteWhereException("Invalid worker counts for outbound processing strategy.");
+	}
+	this.chain = SiteWhere.getServer().getEventProcessing(getTenant()).getOutboundEventProcessorChain();
+	this.workerPool = Executors.newCachedThreadPool(new WorkersThreadFactory());
+	this.metricsPrefix = MetricRegistry.name("tenant", getTenant().getId(), "outbound");
+	removeMetrics();
+
+	List<ProcessorQueue> created = new ArrayList<ProcessorQueue>();
+	List<IOutboundEventProcessor> processors = (chain != null) ? chain.getProcessors()
+		: new ArrayList<IOutboundEventProcessor>();
+	for (int i = 0; i < processors.size(); i++) {
+	    ProcessorQueue queue = new ProcessorQueue(processors.get(i), i);
+	    queue.registerMetrics();
+	    for (int j = 0; j < getMinWorkers(); j++) {
+		queue.addWorker();
+	    }
+	    created.add(queue);
+	}
+	this.queues = created;
+	LOGGER.info("Started backpressure outbound processing strategy for " + queues.size()
+		+ " processors with queue size of " + getMaxQueueSize() + ", " + getMinWorkers() + " to "
+		+ getMaxWorkers() + " workers per processor and overload policy '"
+		+ getOverloadPolicy().getConfigValue() + "'.");
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.server.lifecycle.ILifecycleComponent#getLogger()
+     */
+    @Override
+    public Logger getLogger() {
+	return LOGGER;
+    }
+
+    /** Used for naming worker threads */
+    private class WorkersThreadFactory implements ThreadFactory {
+
+	/** Counts threads */
+	private AtomicInteger counter = new AtomicInteger();
+
+	public Thread newThread(Runnable r) {
+	    return new Thread(r,
+		    "SiteWhere BackpressureOutboundProcessingStrategy Worker " + counter.incrementAndGet());
+	}
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.server.lifecycle.ILifecycleComponent#stop(com.sitewhere
+     * .spi.server.lifecycle.ILifecycleProgressMonitor)
+     */
+    @Override
+    public void stop(ILifecycleProgressMonitor monitor) throws SiteWhereException {
+	if (workerPool != null) {
+	    workerPool.shutdownNow();
+	    try {
+		workerPool.awaitTermination(WORKER_IDLE_TIMEOUT_SECS, TimeUnit.SECONDS);
+	    } catch (InterruptedException e) {
+		Thread.currentThread().interrupt();
+	    }
+	}
+	for (ProcessorQueue queue : queues) {
+	    queue.close();
+	}
+	removeMetrics();
+	LOGGER.info("Stopped backpressure outbound processing strategy.");
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.event.processor.IOutboundEventProcessor#
+     * onMeasurements (com.sitewhere.spi.device.event.IDeviceMeasurements)
+     */
+    @Override
+    public void onMeasurements(IDeviceMeasurements measurements) throws SiteWhereException {
+	submit(measurements);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.event.processor.IOutboundEventProcessor#
+     * onLocation(com .sitewhere.spi.device.event.IDeviceLocation)
+     */
+    @Override
+    public void onLocation(IDeviceLocation location) throws SiteWhereException {
+	submit(location);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.event.processor.IOutboundEventProcessor#onAlert(
+     * com. sitewhere .spi.device.event.IDeviceAlert)
+     */
+    @Override
+    public void onAlert(IDeviceAlert alert) throws SiteWhereException {
+	submit(alert);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.event.processor.IOutboundEventProcessor#
+     * onCommandInvocation
+     * (com.sitewhere.spi.device.event.IDeviceCommandInvocation)
+     */
+    @Override
+    public void onCommandInvocation(IDeviceCommandInvocation invocation) throws SiteWhereException {
+	submit(invocation);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.event.processor.IOutboundEventProcessor#
+     * onCommandResponse (com.sitewhere.spi.device.event.IDeviceCommandResponse)
+     */
+    @Override
+    public void onCommandResponse(IDeviceCommandResponse response) throws SiteWhereException {
+	submit(response);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.event.processor.IOutboundEventProcessor#
+     * onStateChange(com. sitewhere.spi.device.event.IDeviceStateChange)
+     */
+    @Override
+    public void onStateChange(IDeviceStateChange state) throws SiteWhereException {
+	submit(state);
+    }
+
+    /**
+     * Add an event to the queue for each processor.
+     * 
+     * @param event
+     * @throws SiteWhereException
+     */
+    protected void submit(IDeviceEvent event) throws SiteWhereException {
+	if ((chain == null) || (!chain.isProcessingEnabled())) {
+	    return;
+	}
+	for (ProcessorQueue queue : queues) {
+	    queue.offer(event);
+	}
+    }
+
+    /**
+     * Pass an event to a processor based on its type.
+     * 
+     * @param processor
+     * @param event
+     * @throws SiteWhereException
+     */
+    protected void deliver(IOutboundEventProcessor processor, IDeviceEvent event) throws SiteWhereException {
+	switch (event.getEventType()) {
+	case Measurements: {
+	    processor.onMeasurements((IDeviceMeasurements) event);
+	    break;
+	}
+	case Location: {
+	    processor.onLocation((IDeviceLocation) event);
+	    break;
+	}
+	case Alert: {
+	    processor.onAlert((IDeviceAlert) event);
+	    break;
+	}
+	case CommandInvocation: {
+	    processor.onCommandInvocation((IDeviceCommandInvocation) event);
+	    break;
+	}
+	case CommandResponse: {
+	    processor.onCommandResponse((IDeviceCommandResponse) event);
+	    break;
+	}
+	case StateChange: {
+	    processor.onStateChange((IDeviceStateChange) event);
+	    break;
+	}
+	default: {
+	    throw new SiteWhereException(
+		    "Unknown device event type in outbound processing: " + event.getClass().getName());
+	}
+	}
+    }
+
+    /**
+     * Remove metrics published by this strategy.
+     */
+    protected void removeMetrics() {
+	if (metricsPrefix == null) {
+	    return;
+	}
+	SiteWhere.getServer().getMetricRegistry().removeMatching(new MetricFilter() {
+
+	    @Override
+	    public boolean matches(String name, Metric metric) {
+		return name.startsWith(metricsPrefix + ".");
+	    }
+	});
+    }
+
+    /**
+     * Get the number of events waiting to be processed across all processors.
+     * 
+     * @return
+     */
+    public long getBacklog() {
+	long total = 0;
+	for (ProcessorQueue queue : queues) {
+	    total += queue.getBacklog();
+	}
+	return total;
+    }
+
+    /**
+     * Get the number of events dropped across all processors.
+     * 
+     * @return
+     */
+    public long getDroppedCount() {
+	long total = 0;
+	for (ProcessorQueue queue : queues) {
+	    total += queue.dropped.get();
+	}
+	return total;
+    }
+
+    public int getMaxQueueSize() {
+	return maxQueueSize;
+    }
+
+    public void setMaxQueueSize(int maxQueueSize) {
+	this.maxQueueSize = maxQueueSize;
+    }
+
+    public int getMinWorkers() {
+	return minWorkers;
+    }
+
+    public void setMinWorkers(int minWorkers) {
+	this.minWorkers = minWorkers;
+    }
+
+    public int getMaxWorkers() {
+	return maxWorkers;
+    }
+
+    public void setMaxWorkers(int maxWorkers) {
+	this.maxWorkers = maxWorkers;
+    }
+
+    public OutboundOverloadPolicy getOverloadPolicy() {
+	return overloadPolicy;
+    }
+
+    public void setOverloadPolicy(OutboundOverloadPolicy overloadPolicy) {
+	this.overloadPolicy = overloadPolicy;
+    }
+
+    public long getBlockTimeoutMs() {
+	return blockTimeoutMs;
+    }
+
+    public void setBlockTimeoutMs(long blockTimeoutMs) {
+	this.blockTimeoutMs = blockTimeoutMs;
+    }
+
+    public String getSpillDirectory() {
+	return spillDirectory;
+    }
+
+    public void setSpillDirectory(String spillDirectory) {
+	this.spillDirectory = spillDirectory;
+    }
+
+    /**
+     * Queue, workers and counters for a single outbound processor.
+     * 
+     * @author Derek
+     */
+    private class ProcessorQueue {
+
+	/** Processor events are delivered to */
+	private IOutboundEventProcessor processor;
+
+	/** Name used for logging, metrics and spill file */
+	private String name;
+
+	/** Events waiting to be delivered */
+	private BlockingQueue<IDeviceEvent> queue;
+
+	/** Overflow file used by the spill policy */
+	private OutboundEventSpillFile spill;
+
+	/** Number of running workers */
+	private AtomicInteger workers = new AtomicInteger();
+
+	/** Number of events delivered */
+	private AtomicLong delivered = new AtomicLong();
+
+	/** Number of events where the processor failed */
+	private AtomicLong failed = new AtomicLong();
+
+	/** Number of events dropped */
+	private AtomicLong dropped = new AtomicLong();
+
+	/** Number of events written to the spill file */
+	private AtomicLong spilled = new AtomicLong();
+
+	/** Time of last overload warning */
+	private AtomicLong lastWarning = new AtomicLong();
+
+	public ProcessorQueue(IOutboundEventProcessor processor, int index) throws SiteWhereException {
+	    this.processor = processor;
+	    this.name = index + "-" + processor.getComponentName().replaceAll("[^A-Za-z0-9_-]", "_");
+	    this.queue = new ArrayBlockingQueue<IDeviceEvent>(getMaxQueueSize());
+	    if (getOverloadPolicy() == OutboundOverloadPolicy.SpillToDisk) {
+		String base = (getSpillDirectory() != null) ? getSpillDirectory()
+			: new File(System.getProperty("java.io.tmpdir"), "sitewhere-outbound-spill").getAbsolutePath();
+		File directory = new File(base, getTenant().getId());
+		this.spill = new OutboundEventSpillFile(new File(directory, name + ".spill"));
+	    }
+	}
+
+	/**
+	 * Add an event to the queue, applying the overload policy if it is full.
+	 * 
+	 * @param event
+	 * @throws SiteWhereException
+	 */
+	public void offer(IDeviceEvent event) throws SiteWhereException {
+	    switch (getOverloadPolicy()) {
+	    case Block: {
+		try {
+		    if (!queue.offer(event, getBlockTimeoutMs(), TimeUnit.MILLISECONDS)) {
+			drop("timed out waiting for queue space");
+		    }
+		} catch (InterruptedException e) {
+		    Thread.currentThread().interrupt();
+		    drop("interrupted waiting for queue space");
+		}
+		break;
+	    }
+	    case DropNewest: {
+		if (!queue.offer(event)) {
+		    drop("queue full");
+		}
+		break;
+	    }
+	    case DropOldest: {
+		while (!queue.offer(event)) {
+		    if (queue.poll() != null) {
+			drop("queue full");
+		    }
+		}
+		break;
+	    }
+	    case SpillToDisk: {
+		// Keep spilling until the file drains so that ordering is kept.
+		if ((spill.size() > 0) || (!queue.offer(event))) {
+		    spill.append(event);
+		    spilled.incrementAndGet();
+		    warn("Outbound queue for '" + name + "' is full. " + spill.size()
+			    + " events are waiting in " + spill.getFile().getAbsolutePath() + ".");
+		}
+		break;
+	    }
+	    }
+	    scale();
+	}
+
+	/**
+	 * Add a worker if the backlog per worker is above the threshold.
+	 */
+	protected void scale() {
+	    int current = workers.get();
+	    if (current >= getMaxWorkers()) {
+		return;
+	    }
+	    long threshold = Math.max(1, getMaxQueueSize() / getMaxWorkers());
+	    if (getBacklog() > current * threshold) {
+		addWorker();
+	    }
+	}
+
+	/**
+	 * Start a new worker unless the maximum has been reached.
+	 */
+	public void addWorker() {
+	    while (true) {
+		int current = workers.get();
+		if (current >= getMaxWorkers()) {
+		    return;
+		}
+		if (workers.compareAndSet(current, current + 1)) {
+		    break;
+		}
+	    }
+	    try {
+		workerPool.execute(new Worker());
+	    } catch (RuntimeException e) {
+		workers.decrementAndGet();
+	    }
+	}
+
+	/**
+	 * Called by an idle worker. Returns true if the worker should exit.
+	 * 
+	 * @return
+	 */
+	protected boolean retire() {
+	    while (true) {
+		int current = workers.get();
+		if (current <= getMinWorkers()) {
+		    return false;
+		}
+		if (workers.compareAndSet(current, current - 1)) {
+		    return true;
+		}
+	    }
+	}
+
+	/**
+	 * Move spilled events back into the queue while there is space.
+	 * 
+	 * @throws SiteWhereException
+	 */
+	protected void refill() throws SiteWhereException {
+	    if (spill == null) {
+		return;
+	    }
+	    synchronized (spill) {
+		// Only remove the head of the file once it is queued so ordering is
+		// kept and producers keep spilling until the file drains.
+		while (queue.remainingCapacity() > 0) {
+		    IDeviceEvent event = spill.peek();
+		    if ((event == null) || (!queue.offer(event))) {
+			break;
+		    }
+		    spill.remove();
+		}
+	    }
+	}
+
+	/**
+	 * Count a dropped event and log a warning.
+	 * 
+	 * @param reason
+	 */
+	protected void drop(String reason) {
+	    long total = dropped.incrementAndGet();
+	    warn("Dropped outbound event for '" + name + "' (" + reason + "). " + total
+		    + " events have been dropped for this processor.");
+	}
+
+	/**
+	 * Log a warning no more often than the warning interval.
+	 * 
+	 * @param message
+	 */
+	protected void warn(String message) {
+	    long now = System.currentTimeMillis();
+	    long last = lastWarning.get();
+	    if ((now - last >= OVERLOAD_WARNING_INTERVAL_MS) && (lastWarning.compareAndSet(last, now))) {
+		LOGGER.warn(message);
+	    }
+	}
+
+	/**
+	 * Get the number of events waiting in memory and on disk.
+	 * 
+	 * @return
+	 */
+	public long getBacklog() {
+	    return queue.size() + ((spill != null) ? spill.size() : 0);
+	}
+
+	/**
+	 * Publish counters for this queue.
+	 */
+	public void registerMetrics() {
+	    MetricRegistry registry = SiteWhere.getServer().getMetricRegistry();
+	    registry.register(MetricRegistry.name(metricsPrefix, name, "backlog"), new Gauge<Long>() {
+
+		@Override
+		public Long getValue() {
+		    return getBacklog();
+		}
+	    });
+	    registry.register(MetricRegistry.name(metricsPrefix, name, "workers"), new Gauge<Integer>() {
+
+		@Override
+		public Integer getValue() {
+		    return workers.get();
+		}
+	    });
+	    registerCounter(registry, "delivered", delivered);
+	    registerCounter(registry, "failed", failed);
+	    registerCounter(registry, "dropped", dropped);
+	    registerCounter(registry, "spilled", spilled);
+	}
+
+	/**
+	 * Publish a counter as a gauge.
+	 * 
+	 * @param registry
+	 * @param metric
+	 * @param counter
+	 */
+	protected void registerCounter(MetricRegistry registry, String metric, final AtomicLong counter) {
+	    registry.register(MetricRegistry.name(metricsPrefix, name, metric), new Gauge<Long>() {
+
+		@Override
+		public Long getValue() {
+		    return counter.get();
+		}
+	    });
+	}
+
+	/**
+	 * Release resources and report undelivered events.
+	 */
+	public void close() {
+	    if (queue.size() > 0) {
+		LOGGER.warn(queue.size() + " queued outbound events for '" + name + "' were not delivered.");
+	    }
+	    if (spill != null) {
+		spill.close();
+	    }
+	    if (dropped.get() > 0) {
+		LOGGER.warn(dropped.get() + " outbound events were dropped for '" + name + "'.");
+	    }
+	}
+
+	/**
+	 * Delivers events from the queue to the processor.
+	 * 
+	 * @author Derek
+	 */
+	private class Worker implements Runnable {
+
+	    @Override
+	    public void run() {
+		try {
+		    SecurityContextHolder.getContext().setAuthentication(SiteWhereServer.getSystemAuthentication());
+		} catch (SiteWhereException e) {
+		    workers.decrementAndGet();
+		    throw new RuntimeException(
+			    "Unable to use system authentication for outbound device event processor thread.", e);
+		}
+		while (true) {
+		    try {
+			refill();
+			IDeviceEvent event = queue.poll(WORKER_IDLE_TIMEOUT_SECS, TimeUnit.SECONDS);
+			if (event == null) {
+			    if ((getBacklog() == 0) && (retire())) {
+				return;
+			    }
+			    continue;
+			}
+			if (processor.getLifecycleStatus() != LifecycleStatus.Started) {
+			    drop("processor state is '" + processor.getLifecycleStatus() + "'");
+			    continue;
+			}
+			deliver(processor, event);
+			delivered.incrementAndGet();
+		    } catch (SiteWhereException e) {
+			failed.incrementAndGet();
+			LOGGER.error("Error processing outbound device event.", e);
+		    } catch (InterruptedException e) {
+			workers.decrementAndGet();
+			return;
+		    } catch (Throwable e) {
+			failed.incrementAndGet();
+			LOGGER.error("Unhandled exception in outbound event processing.", e);
+		    }
+		}
+	    }
+	}
+    }
+}
@@ -7,6 +7,7 @@
  */
 package com.sitewhere.device.communication;
 
+import java.util.Arrays;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
@@ -19,6 +20,8 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.springframework.security.core.context.SecurityContextHolder;
 
+import com.codahale.metrics.MetricRegistry;
+import com.sitewhere.SiteWhere;
 import com.sitewhere.server.SiteWhereServer;
 import com.sitewhere.spi.SiteWhereException;
 import com.sitewhere.spi.device.communication.IDecodedDeviceRequest;
@@ -39,7 +42,9 @@ import com.sitewhere.spi.server.lifecycle.ILifecycleProgressMonitor;
 /**
  * Implementation of {@link IInboundProcessingStrategy} that uses an
  * {@link ArrayBlockingQueue} to hold decoded events that are submitted into the
- * {@link IInboundEventProcessorChain}.
+ * {@link IInboundEventProcessorChain}. If a partition count is set, requests
+ * are instead hashed by hardware id onto a {@link PartitionedEventExecutor} so
+ * that requests for a device are processed in the order they were received.
  * 
  * @author Derek
  */
@@ -64,6 +69,9 @@ public class BlockingQueueInboundProcessingStrategy extends InboundProcessingStr
     /** Number of thread used for event processing */
     private int eventProcessorThreadCount = EVENT_PROCESSOR_THREAD_COUNT;
 
+    /** Number of ordered partitions (zero uses a single shared queue) */
+    private int partitionCount = 0;
+
     /** Indicates whether monitoring messages should be logged */
     private boolean enableMonitoring = false;
 
@@ -88,6 +96,9 @@ public class BlockingQueueInboundProcessingStrategy extends InboundProcessingStr
     /** Thread pool for processing events */
     private ExecutorService processorPool;
 
+    /** Executor used when partitioning is enabled */
+    private PartitionedEventExecutor<PerformanceWrapper> partitions;
+
     /** Pool for monitoring thread */
     private ExecutorService monitorPool = Executors.newSingleThreadExecutor();
 
@@ -99,13 +110,22 @@ public class BlockingQueueInboundProcessingStrategy extends InboundProcessingStr
      */
     @Override
     public void start(ILifecycleProgressMonitor monitor) throws SiteWhereException {
-	this.queue = new ArrayBlockingQueue<PerformanceWrapper>(getMaxQueueSize());
-	processorPool = Executors.newFixedThreadPool(getEventProcessorThreadCount(), new ProcessorsThreadFactory());
-	for (int i = 0; i < getEventProcessorThreadCount(); i++) {
-	    processorPool.execute(new BlockingMessageProcessor(queue));
+	if (getPartitionCount() > 0) {
+	    this.partitions = new InboundRequestPartitions();
+	    partitions.start();
+	    partitions.registerMetrics(SiteWhere.getServer().getMetricRegistry(), getMetricsPrefix());
+	    LOGGER.info("Started blocking queue inbound processing strategy with " + getPartitionCount()
+		    + " ordered partitions and queue size of " + getMaxQueueSize() + " per partition.");
+	} else {
+	    this.queue = new ArrayBlockingQueue<PerformanceWrapper>(getMaxQueueSize());
+	    processorPool = Executors.newFixedThreadPool(getEventProcessorThreadCount(),
+		    new ProcessorsThreadFactory());
+	    for (int i = 0; i < getEventProcessorThreadCount(); i++) {
+		processorPool.execute(new BlockingMessageProcessor(queue));
+	    }
+	    LOGGER.info("Started blocking queue inbound processing strategy with queue size of " + getMaxQueueSize()
+		    + " and " + getEventProcessorThreadCount() + " threads.");
 	}
-	LOGGER.info("Started blocking queue inbound processing strategy with queue size of " + getMaxQueueSize()
-		+ " and " + getEventProcessorThreadCount() + " threads.");
 
 	// Only show monitoring data if enabled.
 	if (isEnableMonitoring()) {
@@ -147,6 +167,11 @@ public class BlockingQueueInboundProcessingStrategy extends InboundProcessingStr
 	if (processorPool != null) {
 	    processorPool.shutdownNow();
 	}
+	if (partitions != null) {
+	    partitions.stop();
+	    partitions.removeMetrics(SiteWhere.getServer().getMetricRegistry(), getMetricsPrefix());
+	    partitions = null;
+	}
 	if (monitorPool != null) {
 	    monitorPool.shutdownNow();
 	}
@@ -296,7 +321,11 @@ public class BlockingQueueInboundProcessingStrategy extends InboundProcessingStr
 	    PerformanceWrapper wrapper = new PerformanceWrapper();
 	    wrapper.setRequest(request);
 	    wrapper.setStartTime(System.currentTimeMillis());
-	    queue.put(wrapper);
+	    if (partitions != null) {
+		partitions.put(wrapper);
+	    } else {
+		queue.put(wrapper);
+	    }
 	} catch (InterruptedException e) {
 	    errorCount.incrementAndGet();
 	    throw new SiteWhereException(e);
@@ -327,7 +356,45 @@ public class BlockingQueueInboundProcessingStrategy extends InboundProcessingStr
      * @return
      */
     public long getBacklog() {
-	return queue.size();
+	return (partitions != null) ? partitions.getBacklog() : queue.size();
+    }
+
+    /**
+     * Get the number of backlogged requests in each partition. Returns an
+     * empty array if partitioning is not enabled.
+     * 
+     * @return
+     */
+    public int[] getPartitionDepths() {
+	return (partitions != null) ? partitions.getPartitionDepths() : new int[0];
+    }
+
+    /**
+     * Send a queued request to the inbound processing chain, recording wait
+     * and processing times.
+     * 
+     * @param wrapper
+     * @throws SiteWhereException
+     */
+    protected void processQueuedRequest(PerformanceWrapper wrapper) throws SiteWhereException {
+	long wait = System.currentTimeMillis() - wrapper.getStartTime();
+	totalWaitTime.addAndGet(wait);
+
+	long processingStart = System.currentTimeMillis();
+
+	sendToInboundProcessingChain(wrapper.getRequest());
+
+	long processingTime = System.currentTimeMillis() - processingStart;
+	totalProcessingTime.addAndGet(processingTime);
+    }
+
+    /**
+     * Get prefix for metrics published by this strategy.
+     * 
+     * @return
+     */
+    protected String getMetricsPrefix() {
+	return MetricRegistry.name("tenant", getTenant().getId(), "inbound");
     }
 
     /**
@@ -383,6 +450,14 @@ public class BlockingQueueInboundProcessingStrategy extends InboundProcessingStr
 	this.eventProcessorThreadCount = eventProcessorThreadCount;
     }
 
+    public int getPartitionCount() {
+	return partitionCount;
+    }
+
+    public void setPartitionCount(int partitionCount) {
+	this.partitionCount = partitionCount;
+    }
+
     public boolean isEnableMonitoring() {
 	return enableMonitoring;
     }
@@ -424,6 +499,61 @@ public class BlockingQueueInboundProcessingStrategy extends InboundProcessingStr
 	}
     }
 
+    /**
+     * Partitions inbound requests by hardware id.
+     * 
+     * @author Derek
+     */
+    private class InboundRequestPartitions extends PartitionedEventExecutor<PerformanceWrapper> {
+
+	public InboundRequestPartitions() {
+	    super("BlockingQueueInboundProcessingStrategy", getPartitionCount(), getMaxQueueSize());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.sitewhere.device.communication.PartitionedEventExecutor#
+	 * getPartitionKey(java.lang.Object)
+	 */
+	@Override
+	protected String getPartitionKey(PerformanceWrapper wrapper) {
+	    return wrapper.getRequest().getHardwareId();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.sitewhere.device.communication.PartitionedEventExecutor#process(
+	 * java.lang.Object)
+	 */
+	@Override
+	protected void process(PerformanceWrapper wrapper) throws SiteWhereException {
+	    try {
+		processQueuedRequest(wrapper);
+	    } catch (SiteWhereException e) {
+		errorCount.incrementAndGet();
+		throw e;
+	    } catch (RuntimeException e) {
+		errorCount.incrementAndGet();
+		throw e;
+	    }
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.sitewhere.device.communication.PartitionedEventExecutor#
+	 * onPartitionStarted()
+	 */
+	@Override
+	protected void onPartitionStarted() throws SiteWhereException {
+	    SecurityContextHolder.getContext().setAuthentication(SiteWhereServer.getSystemAuthentication());
+	}
+    }
+
     /**
      * Logs monitor output at a given time interval.
      * 
@@ -444,6 +574,9 @@ public class BlockingQueueInboundProcessingStrategy extends InboundProcessingStr
 		    String message = String.format(
 			    "Count(%5d) Errors(%5d) Backlog(%5d) AvgWait(%5d ms) AvgProc(%5d ms) AvgDS(%5d ms)",
 			    eventCount, errorCount, backlog, avgWaitTime, avgProcessingTime, avgDownstreamTime);
+		    if (partitions != null) {
+			message += " Partitions" + Arrays.toString(getPartitionDepths());
+		    }
 		    LOGGER.info(message);
 		} catch (Throwable e) {
 		    LOGGER.error(e);
@@ -489,15 +622,7 @@ public class BlockingQueueInboundProcessingStrategy extends InboundProcessingStr
 	    while (true) {
 		try {
 		    PerformanceWrapper wrapper = queue.take();
-		    long wait = System.currentTimeMillis() - wrapper.getStartTime();
-		    totalWaitTime.addAndGet(wait);
-
-		    long processingStart = System.currentTimeMillis();
-
-		    sendToInboundProcessingChain(wrapper.getRequest());
-
-		    long processingTime = System.currentTimeMillis() - processingStart;
-		    totalProcessingTime.addAndGet(processingTime);
+		    processQueuedRequest(wrapper);
 		} catch (SiteWhereException e) {
 		    errorCount.incrementAndGet();
 		    LOGGER.error("Error processing inbound device event.", e);
@@ -13,11 +13,13 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.springframework.security.core.context.SecurityContextHolder;
 
+import com.codahale.metrics.MetricRegistry;
 import com.sitewhere.SiteWhere;
 import com.sitewhere.server.SiteWhereServer;
 import com.sitewhere.server.lifecycle.TenantLifecycleComponent;
@@ -37,7 +39,10 @@ import com.sitewhere.spi.server.lifecycle.LifecycleComponentType;
 /**
  * Implementation of {@link IOutboundProcessingStrategy} that uses an
  * {@link ArrayBlockingQueue} to hold events that are submitted into the
- * {@link IOutboundEventProcessorChain}.
+ * {@link IOutboundEventProcessorChain}. If a partition count is set, events
+ * are instead hashed by assignment token onto a
+ * {@link PartitionedEventExecutor} so that events for an assignment reach the
+ * chain in the order they were stored.
  * 
  * @author Derek
  */
@@ -53,18 +58,30 @@ public class BlockingQueueOutboundProcessingStrategy extends TenantLifecycleComp
     /** Number of threads used for event processing */
     private static final int EVENT_PROCESSOR_THREAD_COUNT = 10;
 
+    /** Number of dropped events between warning messages */
+    private static final int DROPPED_WARNING_INTERVAL = 1000;
+
     /** Number of events added before queue blocks */
     private int maxQueueSize = MAX_QUEUE_SIZE;
 
     /** Number of thread processing queue */
     private int eventProcessorThreadCount = EVENT_PROCESSOR_THREAD_COUNT;
 
+    /** Number of ordered partitions (zero uses a single shared queue) */
+    private int partitionCount = 0;
+
     /** Blocking queue of events waiting for outbound processing */
     private BlockingQueue<IDeviceEvent> queue;
 
     /** Thread pool for processing events */
     private ExecutorService processorPool;
 
+    /** Executor used when partitioning is enabled */
+    private PartitionedEventExecutor<IDeviceEvent> partitions;
+
+    /** Number of events dropped because the queue was full */
+    private AtomicLong droppedCount = new AtomicLong();
+
     public BlockingQueueOutboundProcessingStrategy() {
 	super(LifecycleComponentType.OutboundProcessingStrategy);
     }
@@ -77,6 +94,14 @@ public class BlockingQueueOutboundProcessingStrategy extends TenantLifecycleComp
      */
     @Override
     public void start(ILifecycleProgressMonitor monitor) throws SiteWhereException {
+	if (getPartitionCount() > 0) {
+	    this.partitions = new OutboundEventPartitions();
+	    partitions.start();
+	    partitions.registerMetrics(SiteWhere.getServer().getMetricRegistry(), getMetricsPrefix());
+	    LOGGER.info("Started blocking queue outbound processing strategy with " + getPartitionCount()
+		    + " ordered partitions and queue size of " + getMaxQueueSize() + " per partition.");
+	    return;
+	}
 	this.queue = new ArrayBlockingQueue<IDeviceEvent>(getMaxQueueSize());
 	processorPool = Executors.newFixedThreadPool(getEventProcessorThreadCount(), new ProcessorsThreadFactory());
 	for (int i = 0; i < getEventProcessorThreadCount(); i++) {
@@ -120,6 +145,11 @@ public class BlockingQueueOutboundProcessingStrategy extends TenantLifecycleComp
 	if (processorPool != null) {
 	    processorPool.shutdownNow();
 	}
+	if (partitions != null) {
+	    partitions.stop();
+	    partitions.removeMetrics(SiteWhere.getServer().getMetricRegistry(), getMetricsPrefix());
+	    partitions = null;
+	}
     }
 
     /*
@@ -130,7 +160,7 @@ public class BlockingQueueOutboundProcessingStrategy extends TenantLifecycleComp
      */
     @Override
     public void onMeasurements(IDeviceMeasurements measurements) throws SiteWhereException {
-	queue.offer(measurements);
+	addToQueue(measurements);
     }
 
     /*
@@ -141,7 +171,7 @@ public class BlockingQueueOutboundProcessingStrategy extends TenantLifecycleComp
      */
     @Override
     public void onLocation(IDeviceLocation location) throws SiteWhereException {
-	queue.offer(location);
+	addToQueue(location);
     }
 
     /*
@@ -153,7 +183,7 @@ public class BlockingQueueOutboundProcessingStrategy extends TenantLifecycleComp
      */
     @Override
     public void onAlert(IDeviceAlert alert) throws SiteWhereException {
-	queue.offer(alert);
+	addToQueue(alert);
     }
 
     /*
@@ -165,7 +195,7 @@ public class BlockingQueueOutboundProcessingStrategy extends TenantLifecycleComp
      */
     @Override
     public void onCommandInvocation(IDeviceCommandInvocation invocation) throws SiteWhereException {
-	queue.offer(invocation);
+	addToQueue(invocation);
     }
 
     /*
@@ -176,7 +206,7 @@ public class BlockingQueueOutboundProcessingStrategy extends TenantLifecycleComp
      */
     @Override
     public void onCommandResponse(IDeviceCommandResponse response) throws SiteWhereException {
-	queue.offer(response);
+	addToQueue(response);
     }
 
     /*
@@ -187,7 +217,100 @@ public class BlockingQueueOutboundProcessingStrategy extends TenantLifecycleComp
      */
     @Override
     public void onStateChange(IDeviceStateChange state) throws SiteWhereException {
-	queue.offer(state);
+	addToQueue(state);
+    }
+
+    /**
+     * Add an event to the queue. If the queue is full, the event is dropped
+     * and counted.
+     * 
+     * @param event
+     */
+    protected void addToQueue(IDeviceEvent event) {
+	boolean added = (partitions != null) ? partitions.offer(event) : queue.offer(event);
+	if (!added) {
+	    long dropped = droppedCount.incrementAndGet();
+	    if ((dropped == 1) || (dropped % DROPPED_WARNING_INTERVAL == 0)) {
+		LOGGER.warn("Outbound event queue is full. " + dropped + " events have been dropped.");
+	    }
+	}
+    }
+
+    /**
+     * Get the number of events dropped because the queue was full.
+     * 
+     * @return
+     */
+    public long getDroppedCount() {
+	return droppedCount.get();
+    }
+
+    /**
+     * Get the number of events waiting in each partition. Returns an empty
+     * array if partitioning is not enabled.
+     * 
+     * @return
+     */
+    public int[] getPartitionDepths() {
+	return (partitions != null) ? partitions.getPartitionDepths() : new int[0];
+    }
+
+    /**
+     * Pass an event to the outbound processor chain based on its type.
+     * 
+     * @param event
+     * @throws SiteWhereException
+     */
+    protected void sendToOutboundProcessorChain(IDeviceEvent event) throws SiteWhereException {
+	switch (event.getEventType()) {
+	case Measurements: {
+	    getOutboundProcessorChain().onMeasurements((IDeviceMeasurements) event);
+	    break;
+	}
+	case Location: {
+	    getOutboundProcessorChain().onLocation((IDeviceLocation) event);
+	    break;
+	}
+	case Alert: {
+	    getOutboundProcessorChain().onAlert((IDeviceAlert) event);
+	    break;
+	}
+	case CommandInvocation: {
+	    getOutboundProcessorChain().onCommandInvocation((IDeviceCommandInvocation) event);
+	    break;
+	}
+	case CommandResponse: {
+	    getOutboundProcessorChain().onCommandResponse((IDeviceCommandResponse) event);
+	    break;
+	}
+	case StateChange: {
+	    getOutboundProcessorChain().onStateChange((IDeviceStateChange) event);
+	    break;
+	}
+	default: {
+	    throw new RuntimeException(
+		    "Unknown device event type in outbound processing: " + event.getClass().getName());
+	}
+	}
+    }
+
+    /**
+     * Get the outbound processing chain implementation for this tenant.
+     * 
+     * @return
+     * @throws SiteWhereException
+     */
+    protected IOutboundEventProcessorChain getOutboundProcessorChain() throws SiteWhereException {
+	return SiteWhere.getServer().getEventProcessing(getTenant()).getOutboundEventProcessorChain();
+    }
+
+    /**
+     * Get prefix for metrics published by this strategy.
+     * 
+     * @return
+     */
+    protected String getMetricsPrefix() {
+	return MetricRegistry.name("tenant", getTenant().getId(), "outbound");
     }
 
     public int getMaxQueueSize() {
@@ -206,6 +329,61 @@ public class BlockingQueueOutboundProcessingStrategy extends TenantLifecycleComp
 	this.eventProcessorThreadCount = eventProcessorThreadCount;
     }
 
+    public int getPartitionCount() {
+	return partitionCount;
+    }
+
+    public void setPartitionCount(int partitionCount) {
+	this.partitionCount = partitionCount;
+    }
+
+    /**
+     * Partitions outbound events by assignment token.
+     * 
+     * @author Derek
+     */
+    private class OutboundEventPartitions extends PartitionedEventExecutor<IDeviceEvent> {
+
+	public OutboundEventPartitions() {
+	    super("BlockingQueueOutboundProcessingStrategy", getPartitionCount(), getMaxQueueSize());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.sitewhere.device.communication.PartitionedEventExecutor#
+	 * getPartitionKey(java.lang.Object)
+	 */
+	@Override
+	protected String getPartitionKey(IDeviceEvent event) {
+	    return event.getDeviceAssignmentToken();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.sitewhere.device.communication.PartitionedEventExecutor#process(
+	 * java.lang.Object)
+	 */
+	@Override
+	protected void process(IDeviceEvent event) throws SiteWhereException {
+	    sendToOutboundProcessorChain(event);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.sitewhere.device.communication.PartitionedEventExecutor#
+	 * onPartitionStarted()
+	 */
+	@Override
+	protected void onPartitionStarted() throws SiteWhereException {
+	    SecurityContextHolder.getContext().setAuthentication(SiteWhereServer.getSystemAuthentication());
+	}
+    }
+
     /**
      * Blocking thread that processes {@link IDeviceEvent} messages from a
      * queue.
@@ -243,36 +421,7 @@ public class BlockingQueueOutboundProcessingStrategy extends TenantLifecycleComp
 	    while (true) {
 		try {
 		    IDeviceEvent event = queue.take();
-		    switch (event.getEventType()) {
-		    case Measurements: {
-			getOutboundProcessorChain().onMeasurements((IDeviceMeasurements) event);
-			break;
-		    }
-		    case Location: {
-			getOutboundProcessorChain().onLocation((IDeviceLocation) event);
-			break;
-		    }
-		    case Alert: {
-			getOutboundProcessorChain().onAlert((IDeviceAlert) event);
-			break;
-		    }
-		    case CommandInvocation: {
-			getOutboundProcessorChain().onCommandInvocation((IDeviceCommandInvocation) event);
-			break;
-		    }
-		    case CommandResponse: {
-			getOutboundProcessorChain().onCommandResponse((IDeviceCommandResponse) event);
-			break;
-		    }
-		    case StateChange: {
-			getOutboundProcessorChain().onStateChange((IDeviceStateChange) event);
-			break;
-		    }
-		    default: {
-			throw new RuntimeException(
-				"Unknown device event type in outbound processing: " + event.getClass().getName());
-		    }
-		    }
+		    sendToOutboundProcessorChain(event);
 		} catch (SiteWhereException e) {
 		    LOGGER.error("Error processing outbound device event.", e);
 		} catch (InterruptedException e) {
@@ -282,15 +431,5 @@ public class BlockingQueueOutboundProcessingStrategy extends TenantLifecycleComp
 		}
 	    }
 	}
-
-	/**
-	 * Get the outbound processing chain implementation for this tenant.
-	 * 
-	 * @return
-	 * @throws SiteWhereException
-	 */
-	protected IOutboundEventProcessorChain getOutboundProcessorChain() throws SiteWhereException {
-	    return SiteWhere.getServer().getEventProcessing(getTenant()).getOutboundEventProcessorChain();
-	}
     }
 }
\ No newline at end of file
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.device.communication;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.sitewhere.common.MarshalUtils;
+import com.sitewhere.rest.model.device.communication.DecodedDeviceRequest;
+import com.sitewhere.spi.SiteWhereException;
+import com.sitewhere.spi.device.communication.IDecodedDeviceRequest;
+
+/**
+ * Converts {@link IDecodedDeviceRequest} instances to and from a compact
+ * binary form so they can be stored or sent to another server. The hardware
+ * id, originator and request class are written first, followed by the request
+ * as JSON.
+ * 
+ * @author Derek
+ */
+public class DecodedDeviceRequestMarshaler {
+
+    /** Request classes by name */
+    private ConcurrentMap<String, Class<?>> requestClasses = new ConcurrentHashMap<String, Class<?>>();
+
+    /**
+     * Encode a request.
+     * 
+     * @param request
+     * @return
+     * @throws SiteWhereException
+     */
+    public byte[] encode(IDecodedDeviceRequest<?> request) throws SiteWhereException {
+	byte[] json = MarshalUtils.marshalJson(request.getRequest());
+	try {
+	    ByteArrayOutputStream bytes = new ByteArrayOutputStream(json.length + 128);
+	    DataOutputStream out = new DataOutputStream(bytes);
+	    out.writeUTF((request.getHardwareId() != null) ? request.getHardwareId() : "");
+	    out.writeBoolean(request.getOriginator() != null);
+	    if (request.getOriginator() != null) {
+		out.writeUTF(request.getOriginator());
+	    }
+	    out.writeUTF(request.getRequest().getClass().getName());
+	    out.write(json);
+	    out.flush();
+	    return bytes.toByteArray();
+	} catch (IOException e) {
+	    throw new SiteWhereException("Unable to encode inbound request.", e);
+	}
+    }
+
+    /**
+     * Decode a request written by {@link #encode(IDecodedDeviceRequest)}.
+     * 
+     * @param payload
+     * @return
+     * @throws SiteWhereException
+     */
+    public IDecodedDeviceRequest<?> decode(byte[] payload) throws SiteWhereException {
+	try {
+	    ByteArrayInputStream bytes = new ByteArrayInputStream(payload);
+	    DataInputStream in = new DataInputStream(bytes);
+	    String hardwareId = in.readUTF();
+	    String originator = in.readBoolean() ? in.readUTF() : null;
+	    Class<?> type = getRequestClass(in.readUTF());
+	    byte[] json = Arrays.copyOfRange(payload, payload.length - bytes.available(), payload.length);
+	    Object request = MarshalUtils.unmarshalJson(json, type);
+	    return new DecodedDeviceRequest<Object>(hardwareId, originator, request);
+	} catch (IOException e) {
+	    throw new SiteWhereException("Unable to decode inbound request.", e);
+	}
+    }
+
+    /**
+     * Get a request class by name.
+     * 
+     * @param name
+     * @return
+     * @throws SiteWhereException
+     */
+    protected Class<?> getRequestClass(String name) throws SiteWhereException {
+	Class<?> type = requestClasses.get(name);
+	if (type == null) {
+	    try {
+		type = Class.forName(name);
+	    } catch (ClassNotFoundException e) {
+		throw new SiteWhereException("Unknown inbound request class: " + name, e);
+	    }
+	    requestClasses.put(name, type);
+	}
+	return type;
+    }
+}
@@ -18,6 +18,7 @@ import com.sitewhere.spi.device.batch.IBatchOperationManager;
 import com.sitewhere.spi.device.command.ISystemCommand;
 import com.sitewhere.spi.device.communication.ICommandDestination;
 import com.sitewhere.spi.device.communication.ICommandProcessingStrategy;
+import com.sitewhere.spi.device.communication.IDeviceContextManager;
 import com.sitewhere.spi.device.communication.IDeviceCommunication;
 import com.sitewhere.spi.device.communication.IDeviceStreamManager;
 import com.sitewhere.spi.device.communication.IInboundEventSource;
@@ -28,6 +29,7 @@ import com.sitewhere.spi.device.presence.IDevicePresenceManager;
 import com.sitewhere.spi.device.symbology.ISymbolGeneratorManager;
 import com.sitewhere.spi.server.lifecycle.ILifecycleProgressMonitor;
 import com.sitewhere.spi.server.lifecycle.LifecycleComponentType;
+import com.sitewhere.spi.server.lifecycle.LifecycleStatus;
 
 /**
  * Base class for implementations of {@link IDeviceCommunication}. Takes care of
@@ -37,6 +39,9 @@ import com.sitewhere.spi.server.lifecycle.LifecycleComponentType;
  */
 public abstract class DeviceCommunication extends TenantLifecycleComponent implements IDeviceCommunication {
 
+    /** Configured device context manager */
+    private IDeviceContextManager deviceContextManager = new DeviceContextManager();
+
     /** Configured registration manager */
     private IRegistrationManager registrationManager = new RegistrationManager();
 
@@ -64,6 +69,9 @@ public abstract class DeviceCommunication extends TenantLifecycleComponent imple
     /** Configured list of command destinations */
     private List<ICommandDestination<?, ?>> commandDestinations = new ArrayList<ICommandDestination<?, ?>>();
 
+    /** Indicates only inbound event sources are running */
+    private volatile boolean idle;
+
     public DeviceCommunication() {
 	super(LifecycleComponentType.DeviceCommunication);
     }
@@ -98,6 +106,12 @@ public abstract class DeviceCommunication extends TenantLifecycleComponent imple
 	getOutboundCommandRouter().initialize(getCommandDestinations());
 	startNestedComponent(getOutboundCommandRouter(), monitor, true);
 
+	// Start device context manager.
+	if (getDeviceContextManager() == null) {
+	    throw new SiteWhereException("No device context manager configured for communication subsystem.");
+	}
+	startNestedComponent(getDeviceContextManager(), monitor, true);
+
 	// Start registration manager.
 	if (getRegistrationManager() == null) {
 	    throw new SiteWhereException("No registration manager configured for communication subsystem.");
@@ -127,12 +141,17 @@ public abstract class DeviceCommunication extends TenantLifecycleComponent imple
 	    startNestedComponent(getDevicePresenceManager(), monitor, true);
 	}
 
-	// Start device event sources.
+	// Start device event sources. Sources left running while idle are kept.
 	if (getInboundEventSources() != null) {
 	    for (IInboundEventSource<?> processor : getInboundEventSources()) {
-		startNestedComponent(processor, monitor, false);
+		if (processor.getLifecycleStatus() == LifecycleStatus.Started) {
+		    getLifecycleComponents().put(processor.getComponentId(), processor);
+		} else {
+		    startNestedComponent(processor, monitor, false);
+		}
 	    }
 	}
+	idle = false;
     }
 
     /*
@@ -151,6 +170,55 @@ public abstract class DeviceCommunication extends TenantLifecycleComponent imple
 	    }
 	}
 
+	// Other components were already stopped if idle.
+	if (!idle) {
+	    stopProcessingComponents(monitor);
+	}
+	idle = false;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.communication.IDeviceCommunication#idle(com.
+     * sitewhere.spi.server.lifecycle.ILifecycleProgressMonitor)
+     */
+    @Override
+    public void idle(ILifecycleProgressMonitor monitor) throws SiteWhereException {
+	if (idle) {
+	    return;
+	}
+	if (getLifecycleStatus() == LifecycleStatus.Started) {
+	    stopProcessingComponents(monitor);
+	}
+	if (getInboundEventSources() != null) {
+	    for (IInboundEventSource<?> processor : getInboundEventSources()) {
+		if (processor.getLifecycleStatus() != LifecycleStatus.Started) {
+		    startNestedComponent(processor, monitor, false);
+		}
+	    }
+	}
+	idle = true;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.communication.IDeviceCommunication#isIdle()
+     */
+    @Override
+    public boolean isIdle() {
+	return idle;
+    }
+
+    /**
+     * Stop all nested components other than inbound event sources.
+     * 
+     * @param monitor
+     * @throws SiteWhereException
+     */
+    protected void stopProcessingComponents(ILifecycleProgressMonitor monitor) throws SiteWhereException {
 	// Stop device stream manager.
 	if (getDevicePresenceManager() != null) {
 	    getDevicePresenceManager().lifecycleStop(monitor);
@@ -176,6 +244,11 @@ public abstract class DeviceCommunication extends TenantLifecycleComponent imple
 	    getRegistrationManager().lifecycleStop(monitor);
 	}
 
+	// Stop device context manager.
+	if (getDeviceContextManager() != null) {
+	    getDeviceContextManager().lifecycleStop(monitor);
+	}
+
 	// Stop command processing strategy.
 	if (getCommandProcessingStrategy() != null) {
 	    getCommandProcessingStrategy().lifecycleStop(monitor);
@@ -212,6 +285,20 @@ public abstract class DeviceCommunication extends TenantLifecycleComponent imple
 	getCommandProcessingStrategy().deliverSystemCommand(this, hardwareId, command);
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.communication.IDeviceCommunication#
+     * getDeviceContextManager()
+     */
+    public IDeviceContextManager getDeviceContextManager() {
+	return deviceContextManager;
+    }
+
+    public void setDeviceContextManager(IDeviceContextManager deviceContextManager) {
+	this.deviceContextManager = deviceContextManager;
+    }
+
     /*
      * (non-Javadoc)
      * 
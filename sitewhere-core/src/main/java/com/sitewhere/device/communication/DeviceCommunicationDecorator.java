@@ -15,6 +15,7 @@ import com.sitewhere.spi.device.batch.IBatchOperationManager;
 import com.sitewhere.spi.device.command.ISystemCommand;
 import com.sitewhere.spi.device.communication.ICommandDestination;
 import com.sitewhere.spi.device.communication.ICommandProcessingStrategy;
+import com.sitewhere.spi.device.communication.IDeviceContextManager;
 import com.sitewhere.spi.device.communication.IDeviceCommunication;
 import com.sitewhere.spi.device.communication.IDeviceStreamManager;
 import com.sitewhere.spi.device.communication.IInboundEventSource;
@@ -23,6 +24,7 @@ import com.sitewhere.spi.device.communication.IRegistrationManager;
 import com.sitewhere.spi.device.event.IDeviceCommandInvocation;
 import com.sitewhere.spi.device.presence.IDevicePresenceManager;
 import com.sitewhere.spi.device.symbology.ISymbolGeneratorManager;
+import com.sitewhere.spi.server.lifecycle.ILifecycleProgressMonitor;
 import com.sitewhere.spi.tenant.ITenant;
 
 /**
@@ -119,6 +121,17 @@ public class DeviceCommunicationDecorator extends LifecycleComponentDecorator im
 	return delegate.getDeviceStreamManager();
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.communication.IDeviceCommunication#
+     * getDeviceContextManager()
+     */
+    @Override
+    public IDeviceContextManager getDeviceContextManager() {
+	return delegate.getDeviceContextManager();
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -185,4 +198,26 @@ public class DeviceCommunicationDecorator extends LifecycleComponentDecorator im
     public void deliverSystemCommand(String hardwareId, ISystemCommand command) throws SiteWhereException {
 	delegate.deliverSystemCommand(hardwareId, command);
     }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.communication.IDeviceCommunication#idle(com.
+     * sitewhere.spi.server.lifecycle.ILifecycleProgressMonitor)
+     */
+    @Override
+    public void idle(ILifecycleProgressMonitor monitor) throws SiteWhereException {
+	delegate.idle(monitor);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.communication.IDeviceCommunication#isIdle()
+     */
+    @Override
+    public boolean isIdle() {
+	return delegate.isIdle();
+    }
 }
\ No newline at end of file
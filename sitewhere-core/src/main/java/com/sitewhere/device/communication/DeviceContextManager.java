@@ -0,0 +1,395 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.device.communication;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.sitewhere.SiteWhere;
+import com.sitewhere.server.lifecycle.TenantLifecycleComponent;
+import com.sitewhere.spi.SiteWhereException;
+import com.sitewhere.spi.device.IDevice;
+import com.sitewhere.spi.device.IDeviceAssignment;
+import com.sitewhere.spi.device.IDeviceManagement;
+import com.sitewhere.spi.device.IDeviceSpecification;
+import com.sitewhere.spi.device.ISite;
+import com.sitewhere.spi.device.communication.IDeviceContext;
+import com.sitewhere.spi.device.communication.IDeviceContextManager;
+import com.sitewhere.spi.server.lifecycle.ILifecycleProgressMonitor;
+import com.sitewhere.spi.server.lifecycle.LifecycleComponentType;
+
+/**
+ * Default {@link IDeviceContextManager} implementation. Keeps a bounded,
+ * short-lived local cache in front of the tenant {@link IDeviceManagement}
+ * (which is itself backed by the distributed device management caches) so
+ * that repeated requests from the same devices do not hit the network.
+ * Device management triggers evict a device context when the device or its
+ * assignments change on this node. Changes made on other nodes are picked up
+ * when the cached entry expires.
+ * 
+ * @author Derek
+ */
+public class DeviceContextManager extends TenantLifecycleComponent implements IDeviceContextManager {
+
+    /** Static logger instance */
+    private static Logger LOGGER = LogManager.getLogger();
+
+    /** Default time in milliseconds that cached entries remain valid */
+    private static final long DEFAULT_CACHE_TTL_MS = 15 * 1000;
+
+    /** Default maximum number of cached device contexts */
+    private static final int DEFAULT_MAX_CACHED_CONTEXTS = 50000;
+
+    /** Maximum number of cached specifications and sites */
+    private static final int MAX_CACHED_REFERENCE_ENTITIES = 1000;
+
+    /** Time in milliseconds that cached entries remain valid */
+    private long cacheTtlMs = DEFAULT_CACHE_TTL_MS;
+
+    /** Maximum number of cached device contexts */
+    private int maxCachedContexts = DEFAULT_MAX_CACHED_CONTEXTS;
+
+    /** Device management resolved at startup */
+    private IDeviceManagement deviceManagement;
+
+    /** Cached device contexts by hardware id */
+    private LocalCache<IDeviceContext> contexts;
+
+    /** Cached specifications by token */
+    private LocalCache<IDeviceSpecification> specifications;
+
+    /** Cached sites by token */
+    private LocalCache<ISite> sites;
+
+    public DeviceContextManager() {
+	super(LifecycleComponentType.DeviceContextManager);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.server.lifecycle.LifecycleComponent#start(com.sitewhere.spi
+     * .server.lifecycle.ILifecycleProgressMonitor)
+     */
+    @Override
+    public void start(ILifecycleProgressMonitor monitor) throws SiteWhereException {
+	this.deviceManagement = SiteWhere.getServer().getDeviceManagement(getTenant());
+	this.contexts = new LocalCache<IDeviceContext>(getMaxCachedContexts());
+	this.specifications = new LocalCache<IDeviceSpecification>(MAX_CACHED_REFERENCE_ENTITIES);
+	this.sites = new LocalCache<ISite>(MAX_CACHED_REFERENCE_ENTITIES);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.server.lifecycle.LifecycleComponent#stop(com.sitewhere.spi.
+     * server.lifecycle.ILifecycleProgressMonitor)
+     */
+    @Override
+    public void stop(ILifecycleProgressMonitor monitor) throws SiteWhereException {
+	if (contexts != null) {
+	    contexts.clear();
+	    specifications.clear();
+	    sites.clear();
+	}
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.communication.IDeviceContextManager#
+     * getDeviceContext(java.lang.String)
+     */
+    @Override
+    public IDeviceContext getDeviceContext(String hardwareId) throws SiteWhereException {
+	IDeviceContext context = contexts.get(hardwareId);
+	if (context != null) {
+	    return context;
+	}
+	IDevice device = getDeviceManagement().getDeviceByHardwareId(hardwareId);
+	if (device == null) {
+	    return null;
+	}
+	IDeviceAssignment assignment = null;
+	if (device.getAssignmentToken() != null) {
+	    assignment = getDeviceManagement().getDeviceAssignmentByToken(device.getAssignmentToken());
+	}
+	context = new DeviceContext(device, assignment);
+	contexts.put(hardwareId, context);
+	return context;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.communication.IDeviceContextManager#
+     * getDeviceContexts(java.util.Collection)
+     */
+    @Override
+    public Map<String, IDeviceContext> getDeviceContexts(Collection<String> hardwareIds) throws SiteWhereException {
+	Map<String, IDeviceContext> results = new HashMap<String, IDeviceContext>();
+	Set<String> missing = new LinkedHashSet<String>();
+	for (String hardwareId : hardwareIds) {
+	    IDeviceContext context = contexts.get(hardwareId);
+	    if (context != null) {
+		results.put(hardwareId, context);
+	    } else {
+		missing.add(hardwareId);
+	    }
+	}
+	if (missing.isEmpty()) {
+	    return results;
+	}
+
+	// Load devices and then their assignments with one bulk call each.
+	List<IDevice> devices = getDeviceManagement().getDevicesByHardwareIds(new ArrayList<String>(missing));
+	List<String> tokens = new ArrayList<String>();
+	for (IDevice device : devices) {
+	    if (device.getAssignmentToken() != null) {
+		tokens.add(device.getAssignmentToken());
+	    }
+	}
+	Map<String, IDeviceAssignment> assignments = new HashMap<String, IDeviceAssignment>();
+	if (!tokens.isEmpty()) {
+	    for (IDeviceAssignment assignment : getDeviceManagement().getDeviceAssignmentsByTokens(tokens)) {
+		assignments.put(assignment.getToken(), assignment);
+	    }
+	}
+	for (IDevice device : devices) {
+	    IDeviceContext context = new DeviceContext(device, assignments.get(device.getAssignmentToken()));
+	    contexts.put(device.getHardwareId(), context);
+	    results.put(device.getHardwareId(), context);
+	}
+	return results;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.communication.IDeviceContextManager#
+     * getDeviceSpecification(java.lang.String)
+     */
+    @Override
+    public IDeviceSpecification getDeviceSpecification(String token) throws SiteWhereException {
+	IDeviceSpecification specification = specifications.get(token);
+	if (specification == null) {
+	    specification = getDeviceManagement().getDeviceSpecificationByToken(token);
+	    if (specification != null) {
+		specifications.put(token, specification);
+	    }
+	}
+	return specification;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.communication.IDeviceContextManager#getSite(java
+     * .lang.String)
+     */
+    @Override
+    public ISite getSite(String token) throws SiteWhereException {
+	ISite site = sites.get(token);
+	if (site == null) {
+	    site = getDeviceManagement().getSiteByToken(token);
+	    if (site != null) {
+		sites.put(token, site);
+	    }
+	}
+	return site;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.communication.IDeviceContextManager#
+     * evictDeviceContext(java.lang.String)
+     */
+    @Override
+    public void evictDeviceContext(String hardwareId) throws SiteWhereException {
+	if ((contexts != null) && (hardwareId != null)) {
+	    contexts.remove(hardwareId);
+	}
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.server.lifecycle.ILifecycleComponent#getLogger()
+     */
+    @Override
+    public Logger getLogger() {
+	return LOGGER;
+    }
+
+    /**
+     * Get device management, resolving it if called before startup.
+     * 
+     * @return
+     * @throws SiteWhereException
+     */
+    protected IDeviceManagement getDeviceManagement() throws SiteWhereException {
+	if (deviceManagement == null) {
+	    deviceManagement = SiteWhere.getServer().getDeviceManagement(getTenant());
+	}
+	return deviceManagement;
+    }
+
+    public long getCacheTtlMs() {
+	return cacheTtlMs;
+    }
+
+    public void setCacheTtlMs(long cacheTtlMs) {
+	this.cacheTtlMs = cacheTtlMs;
+    }
+
+    public int getMaxCachedContexts() {
+	return maxCachedContexts;
+    }
+
+    public void setMaxCachedContexts(int maxCachedContexts) {
+	this.maxCachedContexts = maxCachedContexts;
+    }
+
+    /**
+     * Default {@link IDeviceContext} implementation.
+     * 
+     * @author Derek
+     */
+    private static class DeviceContext implements IDeviceContext {
+
+	/** Device */
+	private IDevice device;
+
+	/** Current assignment */
+	private IDeviceAssignment deviceAssignment;
+
+	public DeviceContext(IDevice device, IDeviceAssignment deviceAssignment) {
+	    this.device = device;
+	    this.deviceAssignment = deviceAssignment;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.sitewhere.spi.device.communication.IDeviceContext#getDevice()
+	 */
+	@Override
+	public IDevice getDevice() {
+	    return device;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.sitewhere.spi.device.communication.IDeviceContext#
+	 * getDeviceAssignment()
+	 */
+	@Override
+	public IDeviceAssignment getDeviceAssignment() {
+	    return deviceAssignment;
+	}
+    }
+
+    /**
+     * Bounded cache of values that expire after the configured TTL. When full,
+     * expired entries are purged and, if that is not enough, the cache is
+     * cleared rather than tracking access order on the hot path.
+     * 
+     * @author Derek
+     * 
+     * @param <V>
+     */
+    private class LocalCache<V> {
+
+	/** Entries by key */
+	private ConcurrentHashMap<String, CacheEntry<V>> entries = new ConcurrentHashMap<String, CacheEntry<V>>();
+
+	/** Maximum number of entries */
+	private int maxEntries;
+
+	public LocalCache(int maxEntries) {
+	    this.maxEntries = maxEntries;
+	}
+
+	public V get(String key) {
+	    CacheEntry<V> entry = entries.get(key);
+	    if (entry == null) {
+		return null;
+	    }
+	    if (entry.expires < System.currentTimeMillis()) {
+		entries.remove(key, entry);
+		return null;
+	    }
+	    return entry.value;
+	}
+
+	public void put(String key, V value) {
+	    if (entries.size() >= maxEntries) {
+		purge();
+	    }
+	    entries.put(key, new CacheEntry<V>(value, System.currentTimeMillis() + getCacheTtlMs()));
+	}
+
+	public void remove(String key) {
+	    entries.remove(key);
+	}
+
+	public void clear() {
+	    entries.clear();
+	}
+
+	protected void purge() {
+	    long now = System.currentTimeMillis();
+	    Iterator<CacheEntry<V>> it = entries.values().iterator();
+	    while (it.hasNext()) {
+		if (it.next().expires < now) {
+		    it.remove();
+		}
+	    }
+	    if (entries.size() >= maxEntries) {
+		LOGGER.debug("Device context cache full. Clearing " + entries.size() + " entries.");
+		entries.clear();
+	    }
+	}
+    }
+
+    /**
+     * Value held in a {@link LocalCache}.
+     * 
+     * @author Derek
+     * 
+     * @param <V>
+     */
+    private static class CacheEntry<V> {
+
+	/** Cached value */
+	private final V value;
+
+	/** Time at which entry expires */
+	private final long expires;
+
+	public CacheEntry(V value, long expires) {
+	    this.value = value;
+	    this.expires = expires;
+	}
+    }
+}
\ No newline at end of file
@@ -7,6 +7,8 @@
  */
 package com.sitewhere.device.communication;
 
+import java.util.List;
+
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -16,9 +18,9 @@ import com.sitewhere.rest.model.device.command.SendDeviceStreamDataCommand;
 import com.sitewhere.server.lifecycle.TenantLifecycleComponent;
 import com.sitewhere.spi.SiteWhereException;
 import com.sitewhere.spi.SiteWhereSystemException;
-import com.sitewhere.spi.device.IDevice;
 import com.sitewhere.spi.device.IDeviceAssignment;
 import com.sitewhere.spi.device.command.DeviceStreamStatus;
+import com.sitewhere.spi.device.communication.IDeviceContext;
 import com.sitewhere.spi.device.communication.IDeviceStreamManager;
 import com.sitewhere.spi.device.event.IDeviceStreamData;
 import com.sitewhere.spi.device.event.request.IDeviceStreamCreateRequest;
@@ -39,6 +41,18 @@ public class DeviceStreamManager extends TenantLifecycleComponent implements IDe
     /** Static logger instance */
     private static Logger LOGGER = LogManager.getLogger();
 
+    /** Default number of chunks read from the datastore at a time */
+    private static final int DEFAULT_FETCH_SIZE = 16;
+
+    /** Default maximum number of chunks a device may request at once */
+    private static final int DEFAULT_MAX_CHUNKS_PER_REQUEST = 256;
+
+    /** Number of chunks read from the datastore at a time */
+    private int fetchSize = DEFAULT_FETCH_SIZE;
+
+    /** Maximum number of chunks a device may request at once */
+    private int maxChunksPerRequest = DEFAULT_MAX_CHUNKS_PER_REQUEST;
+
     public DeviceStreamManager() {
 	super(LifecycleComponentType.DeviceStreamManager);
     }
@@ -99,17 +113,55 @@ public class DeviceStreamManager extends TenantLifecycleComponent implements IDe
     public void handleSendDeviceStreamDataRequest(String hardwareId, ISendDeviceStreamDataRequest request)
 	    throws SiteWhereException {
 	IDeviceAssignment assignment = getCurrentAssignment(hardwareId);
-	IDeviceStreamData data = SiteWhere.getServer().getDeviceEventManagement(getTenant())
-		.getDeviceStreamData(assignment.getToken(), request.getStreamId(), request.getSequenceNumber());
+	int remaining = Math.min(Math.max(request.getChunkCount(), 1), getMaxChunksPerRequest());
+	long next = request.getSequenceNumber();
+
+	// Chunks are fetched a window at a time so that large ranges never need
+	// to be held in memory at once.
+	while (remaining > 0) {
+	    int fetch = Math.min(remaining, getFetchSize());
+	    List<IDeviceStreamData> chunks = SiteWhere.getServer().getDeviceEventManagement(getTenant())
+		    .getDeviceStreamDataRange(assignment.getToken(), request.getStreamId(), next, fetch);
+	    int sent = 0;
+	    for (IDeviceStreamData chunk : chunks) {
+		if (chunk.getSequenceNumber().longValue() != next) {
+		    break;
+		}
+		sendDeviceStreamData(hardwareId, request.getStreamId(), next, chunk.getData());
+		next++;
+		sent++;
+	    }
+	    remaining -= sent;
+
+	    // Stop at the end of the stream or the first missing chunk.
+	    if (sent < fetch) {
+		break;
+	    }
+	}
+
+	// An empty chunk tells the device the stream has no data at the next
+	// sequence number.
+	if (remaining > 0) {
+	    sendDeviceStreamData(hardwareId, request.getStreamId(), next, new byte[0]);
+	}
+    }
+
+    /**
+     * Deliver a single chunk of stream data to a device.
+     * 
+     * @param hardwareId
+     * @param streamId
+     * @param sequenceNumber
+     * @param data
+     * @throws SiteWhereException
+     */
+    protected void sendDeviceStreamData(String hardwareId, String streamId, long sequenceNumber, byte[] data)
+	    throws SiteWhereException {
 	SendDeviceStreamDataCommand command = new SendDeviceStreamDataCommand();
-	command.setStreamId(request.getStreamId());
-	command.setSequenceNumber(request.getSequenceNumber());
+	command.setStreamId(streamId);
+	command.setSequenceNumber(sequenceNumber);
 	command.setHardwareId(hardwareId);
-	if (data != null) {
-	    command.setData(data.getData());
-	} else {
-	    command.setData(new byte[0]);
-	}
+	command.setData(data);
 	SiteWhere.getServer().getDeviceCommunication(getTenant()).deliverSystemCommand(hardwareId, command);
     }
 
@@ -131,14 +183,30 @@ public class DeviceStreamManager extends TenantLifecycleComponent implements IDe
      * @throws SiteWhereException
      */
     protected IDeviceAssignment getCurrentAssignment(String hardwareId) throws SiteWhereException {
-	IDevice device = SiteWhere.getServer().getDeviceManagement(getTenant()).getDeviceByHardwareId(hardwareId);
-	if (device == null) {
+	IDeviceContext context = SiteWhere.getServer().getDeviceCommunication(getTenant()).getDeviceContextManager()
+		.getDeviceContext(hardwareId);
+	if (context == null) {
 	    throw new SiteWhereSystemException(ErrorCode.InvalidHardwareId, ErrorLevel.ERROR);
 	}
-	if (device.getAssignmentToken() == null) {
+	if (context.getDeviceAssignment() == null) {
 	    throw new SiteWhereSystemException(ErrorCode.DeviceNotAssigned, ErrorLevel.ERROR);
 	}
-	return SiteWhere.getServer().getDeviceManagement(getTenant())
-		.getDeviceAssignmentByToken(device.getAssignmentToken());
+	return context.getDeviceAssignment();
+    }
+
+    public int getFetchSize() {
+	return fetchSize;
+    }
+
+    public void setFetchSize(int fetchSize) {
+	this.fetchSize = fetchSize;
+    }
+
+    public int getMaxChunksPerRequest() {
+	return maxChunksPerRequest;
+    }
+
+    public void setMaxChunksPerRequest(int maxChunksPerRequest) {
+	this.maxChunksPerRequest = maxChunksPerRequest;
     }
-}
\ No newline at end of file
+}
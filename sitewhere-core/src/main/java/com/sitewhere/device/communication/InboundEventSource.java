@@ -35,6 +35,7 @@ import com.sitewhere.spi.device.event.request.IDeviceStreamDataCreateRequest;
 import com.sitewhere.spi.device.event.request.ISendDeviceStreamDataRequest;
 import com.sitewhere.spi.server.lifecycle.ILifecycleProgressMonitor;
 import com.sitewhere.spi.server.lifecycle.LifecycleComponentType;
+import com.sitewhere.spi.server.tenant.ISiteWhereTenantEngine;
 
 /**
  * Default implementation of {@link IInboundEventSource}.
@@ -60,6 +61,9 @@ public class InboundEventSource<T> extends TenantLifecycleComponent implements I
     /** List of {@link IInboundEventReceiver} that supply this processor */
     private List<IInboundEventReceiver<T>> inboundEventReceivers = new ArrayList<IInboundEventReceiver<T>>();
 
+    /** Tenant engine notified of inbound activity */
+    private ISiteWhereTenantEngine tenantEngine;
+
     public InboundEventSource() {
 	super(LifecycleComponentType.InboundEventSource);
     }
@@ -80,6 +84,7 @@ public class InboundEventSource<T> extends TenantLifecycleComponent implements I
 	    setInboundProcessingStrategy(
 		    SiteWhere.getServer().getEventProcessing(getTenant()).getInboundProcessingStrategy());
 	}
+	tenantEngine = SiteWhere.getServer().getTenantEngine(getTenant().getId());
 	if ((getInboundEventReceivers() == null) || (getInboundEventReceivers().size() == 0)) {
 	    throw new SiteWhereException("No inbound event receivers registered for event source.");
 	}
@@ -144,6 +149,12 @@ public class InboundEventSource<T> extends TenantLifecycleComponent implements I
     public void onEncodedEventReceived(IInboundEventReceiver<T> receiver, T encodedPayload,
 	    Map<String, Object> metadata) throws EventDecodeException {
 	LOGGER.debug("Device event receiver thread picked up event.");
+	if (tenantEngine != null) {
+	    if (tenantEngine.isIdle()) {
+		wakeTenantEngine();
+	    }
+	    tenantEngine.recordActivity();
+	}
 	List<IDecodedDeviceRequest<?>> requests = decodePayload(encodedPayload, metadata);
 	try {
 	    if (requests != null) {
@@ -191,6 +202,18 @@ public class InboundEventSource<T> extends TenantLifecycleComponent implements I
 	}
     }
 
+    /**
+     * Start the tenant engine if it was stopped due to inactivity. Blocks until
+     * the engine has started so that the event is processed normally.
+     */
+    protected void wakeTenantEngine() {
+	try {
+	    SiteWhere.getServer().activateTenantEngine(getTenant().getId());
+	} catch (SiteWhereException e) {
+	    LOGGER.error("Unable to start idle tenant engine for inbound event.", e);
+	}
+    }
+
     /**
      * Decode a payload into individual events.
      * 
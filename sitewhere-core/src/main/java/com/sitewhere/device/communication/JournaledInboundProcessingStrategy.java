@@ -0,0 +1,582 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.device.communication;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import com.sitewhere.device.communication.journal.JournalEntry;
+import com.sitewhere.device.communication.journal.JournalReader;
+import com.sitewhere.device.communication.journal.SegmentJournal;
+import com.sitewhere.server.SiteWhereServer;
+import com.sitewhere.spi.SiteWhereException;
+import com.sitewhere.spi.device.communication.IDecodedDeviceRequest;
+import com.sitewhere.spi.device.communication.IInboundProcessingStrategy;
+import com.sitewhere.spi.device.event.request.IDeviceAlertCreateRequest;
+import com.sitewhere.spi.device.event.request.IDeviceCommandResponseCreateRequest;
+import com.sitewhere.spi.device.event.request.IDeviceLocationCreateRequest;
+import com.sitewhere.spi.device.event.request.IDeviceMappingCreateRequest;
+import com.sitewhere.spi.device.event.request.IDeviceMeasurementsCreateRequest;
+import com.sitewhere.spi.device.event.request.IDeviceRegistrationRequest;
+import com.sitewhere.spi.device.event.request.IDeviceStateChangeCreateRequest;
+import com.sitewhere.spi.device.event.request.IDeviceStreamCreateRequest;
+import com.sitewhere.spi.device.event.request.IDeviceStreamDataCreateRequest;
+import com.sitewhere.spi.device.event.request.ISendDeviceStreamDataRequest;
+import com.sitewhere.spi.server.lifecycle.ILifecycleProgressMonitor;
+
+/**
+ * Implementation of {@link IInboundProcessingStrategy} that writes decoded
+ * requests to a memory-mapped {@link SegmentJournal} before they are
+ * processed, so requests accepted from event sources are not lost if the
+ * server stops or crashes. Requests are split across consumers by hardware
+ * id. Each consumer reads its share of the journal in batches, processes it
+ * and saves a checkpoint. Entries after the last checkpoint are processed
+ * again on startup, so a request may be processed more than once after a
+ * crash. Mapped pages are written to disk at a fixed interval. If the
+ * interval is zero, pages are never forced and the operating system decides
+ * when they are written, so an operating system failure may lose requests.
+ * Segments are deleted once all consumers have moved past them. Disk use is
+ * capped at a maximum number of segments. When the journal is full, event
+ * sources block in {@link #append(IDecodedDeviceRequest)} until consumers free
+ * a segment, and the request is rejected if none is freed in time.
+ * 
+ * @author Derek
+ */
+public class JournaledInboundProcessingStrategy extends InboundProcessingStrategy
+	implements IInboundProcessingStrategy {
+
+    /** Static logger instance */
+    private static Logger LOGGER = LogManager.getLogger();
+
+    /** Default segment size in megabytes */
+    private static final int DEFAULT_SEGMENT_SIZE_MB = 64;
+
+    /** Default number of consumers */
+    private static final int DEFAULT_CONSUMER_COUNT = 4;
+
+    /** Default maximum number of entries processed between checkpoints */
+    private static final int DEFAULT_BATCH_SIZE = 100;
+
+    /** Default interval between writing mapped pages to disk */
+    private static final long DEFAULT_FLUSH_INTERVAL_MS = 1000;
+
+    /** Default maximum number of segments on disk */
+    private static final int DEFAULT_MAX_SEGMENTS = 16;
+
+    /** Default time a request waits for journal space */
+    private static final long DEFAULT_APPEND_TIMEOUT_MS = 30 * 1000;
+
+    /** Interval between deleting consumed segments */
+    private static final long RECLAIM_INTERVAL_MS = 5 * 1000;
+
+    /** Nanoseconds an idle consumer waits before reading again */
+    private static final long CONSUMER_IDLE_NANOS = 500 * 1000;
+
+    /** Directory for journal files (defaults to temp directory) */
+    private String journalDirectory;
+
+    /** Segment size in megabytes */
+    private int segmentSizeMb = DEFAULT_SEGMENT_SIZE_MB;
+
+    /** Number of consumers */
+    private int consumerCount = DEFAULT_CONSUMER_COUNT;
+
+    /** Maximum number of entries processed between checkpoints */
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    /** Interval between writing mapped pages to disk */
+    private long flushIntervalMs = DEFAULT_FLUSH_INTERVAL_MS;
+
+    /** Maximum number of segments on disk (zero for no limit) */
+    private int maxSegments = DEFAULT_MAX_SEGMENTS;
+
+    /** Time a request waits for journal space */
+    private long appendTimeoutMs = DEFAULT_APPEND_TIMEOUT_MS;
+
+    /** Journal holding requests */
+    private SegmentJournal journal;
+
+    /** Readers used by consumers */
+    private JournalReader[] readers;
+
+    /** Thread pool for consumers */
+    private ExecutorService consumerPool;
+
+    /** Flushes journal and reclaims segments */
+    private ScheduledExecutorService maintenance;
+
+    /** Number of requests written to the journal */
+    private AtomicLong appendedCount = new AtomicLong();
+
+    /** Number of requests processed */
+    private AtomicLong processedCount = new AtomicLong();
+
+    /** Number of requests that failed */
+    private AtomicLong errorCount = new AtomicLong();
+
+    /** Converts requests to and from journal entries */
+    private DecodedDeviceRequestMarshaler marshaler = new DecodedDeviceRequestMarshaler();
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.server.lifecycle.ILifecycleComponent#start(com.
+     * sitewhere.spi.server.lifecycle.ILifecycleProgressMonitor)
+     */
+    @Override
+    public void start(ILifecycleProgressMonitor monitor) throws SiteWhereException {
+	String base = (getJournalDirectory() != null) ? getJournalDirectory()
+		: new File(System.getProperty("java.io.tmpdir"), "sitewhere-journal").getAbsolutePath();
+	File directory = new File(new File(base, getTenant().getId()), "inbound");
+	this.journal = new SegmentJournal(directory, getSegmentSizeMb() * 1024 * 1024);
+	journal.setMaxSegments(getMaxSegments());
+	journal.setAppendTimeoutMs(getAppendTimeoutMs());
+	journal.open();
+
+	this.readers = new JournalReader[getConsumerCount()];
+	this.consumerPool = Executors.newFixedThreadPool(getConsumerCount(), new ConsumersThreadFactory());
+	long backlog = 0;
+	for (int i = 0; i < getConsumerCount(); i++) {
+	    readers[i] = journal.getReader("consumer-" + i + "-of-" + getConsumerCount());
+	    readers[i].setPartition(getConsumerCount(), i);
+	    backlog = Math.max(backlog, readers[i].getLag());
+	    consumerPool.execute(new JournalConsumer(readers[i]));
+	}
+
+	this.maintenance = Executors.newSingleThreadScheduledExecutor(new MaintenanceThreadFactory());
+	if (getFlushIntervalMs() > 0) {
+	    maintenance.scheduleWithFixedDelay(new JournalFlusher(), getFlushIntervalMs(), getFlushIntervalMs(),
+		    TimeUnit.MILLISECONDS);
+	}
+	maintenance.scheduleWithFixedDelay(new JournalReclaimer(), RECLAIM_INTERVAL_MS, RECLAIM_INTERVAL_MS,
+		TimeUnit.MILLISECONDS);
+	LOGGER.info("Started journaled inbound processing strategy with " + getConsumerCount()
+		+ " consumers. Replaying up to " + backlog + " bytes of unprocessed requests.");
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.server.lifecycle.ILifecycleComponent#getLogger()
+     */
+    @Override
+    public Logger getLogger() {
+	return LOGGER;
+    }
+
+    /** Used for naming consumer threads */
+    private class ConsumersThreadFactory implements ThreadFactory {
+
+	/** Counts threads */
+	private AtomicInteger counter = new AtomicInteger();
+
+	public Thread newThread(Runnable r) {
+	    return new Thread(r, "SiteWhere JournaledInboundProcessingStrategy Consumer " + counter.incrementAndGet());
+	}
+    }
+
+    /** Used for naming maintenance thread */
+    private class MaintenanceThreadFactory implements ThreadFactory {
+
+	public Thread newThread(Runnable r) {
+	    Thread thread = new Thread(r, "SiteWhere JournaledInboundProcessingStrategy Maintenance");
+	    thread.setDaemon(true);
+	    return thread;
+	}
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.server.lifecycle.ILifecycleComponent#stop(com.sitewhere
+     * .spi.server.lifecycle.ILifecycleProgressMonitor)
+     */
+    @Override
+    public void stop(ILifecycleProgressMonitor monitor) throws SiteWhereException {
+	if (consumerPool != null) {
+	    consumerPool.shutdownNow();
+	    try {
+		consumerPool.awaitTermination(30, TimeUnit.SECONDS);
+	    } catch (InterruptedException e) {
+		Thread.currentThread().interrupt();
+	    }
+	}
+	if (maintenance != null) {
+	    maintenance.shutdownNow();
+	}
+	if (journal != null) {
+	    journal.close();
+	}
+	LOGGER.info("Stopped journaled inbound processing strategy.");
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.communication.IInboundProcessingStrategy#
+     * processRegistration
+     * (com.sitewhere.spi.device.communication.IDecodedDeviceRequest)
+     */
+    @Override
+    public void processRegistration(IDecodedDeviceRequest<IDeviceRegistrationRequest> request)
+	    throws SiteWhereException {
+	append(request);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.communication.IInboundProcessingStrategy#
+     * processDeviceCommandResponse
+     * (com.sitewhere.spi.device.communication.IDecodedDeviceRequest)
+     */
+    @Override
+    public void processDeviceCommandResponse(IDecodedDeviceRequest<IDeviceCommandResponseCreateRequest> request)
+	    throws SiteWhereException {
+	append(request);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.communication.IInboundProcessingStrategy#
+     * processDeviceMeasurements
+     * (com.sitewhere.spi.device.communication.IDecodedDeviceRequest)
+     */
+    @Override
+    public void processDeviceMeasurements(IDecodedDeviceRequest<IDeviceMeasurementsCreateRequest> request)
+	    throws SiteWhereException {
+	append(request);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.communication.IInboundProcessingStrategy#
+     * processDeviceLocation
+     * (com.sitewhere.spi.device.communication.IDecodedDeviceRequest)
+     */
+    @Override
+    public void processDeviceLocation(IDecodedDeviceRequest<IDeviceLocationCreateRequest> request)
+	    throws SiteWhereException {
+	append(request);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.communication.IInboundProcessingStrategy#
+     * processDeviceAlert
+     * (com.sitewhere.spi.device.communication.IDecodedDeviceRequest)
+     */
+    @Override
+    public void processDeviceAlert(IDecodedDeviceRequest<IDeviceAlertCreateRequest> request) throws SiteWhereException {
+	append(request);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.communication.IInboundProcessingStrategy#
+     * processDeviceStateChange(com.sitewhere.spi.device.communication.
+     * IDecodedDeviceRequest)
+     */
+    @Override
+    public void processDeviceStateChange(IDecodedDeviceRequest<IDeviceStateChangeCreateRequest> request)
+	    throws SiteWhereException {
+	append(request);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.communication.IInboundProcessingStrategy#
+     * processDeviceStream
+     * (com.sitewhere.spi.device.communication.IDecodedDeviceRequest)
+     */
+    @Override
+    public void processDeviceStream(IDecodedDeviceRequest<IDeviceStreamCreateRequest> request)
+	    throws SiteWhereException {
+	append(request);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.communication.IInboundProcessingStrategy#
+     * processDeviceStreamData
+     * (com.sitewhere.spi.device.communication.IDecodedDeviceRequest)
+     */
+    @Override
+    public void processDeviceStreamData(IDecodedDeviceRequest<IDeviceStreamDataCreateRequest> request)
+	    throws SiteWhereException {
+	append(request);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.communication.IInboundProcessingStrategy#
+     * processSendDeviceStreamData
+     * (com.sitewhere.spi.device.communication.IDecodedDeviceRequest)
+     */
+    @Override
+    public void processSendDeviceStreamData(IDecodedDeviceRequest<ISendDeviceStreamDataRequest> request)
+	    throws SiteWhereException {
+	append(request);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.communication.IInboundProcessingStrategy#
+     * processCreateDeviceMapping(com.sitewhere.spi.device.communication.
+     * IDecodedDeviceRequest)
+     */
+    @Override
+    public void processCreateDeviceMapping(IDecodedDeviceRequest<IDeviceMappingCreateRequest> request)
+	    throws SiteWhereException {
+	append(request);
+    }
+
+    /**
+     * Write a request to the journal. The request is encoded before the
+     * journal lock is taken, so only the copy into the mapped segment is
+     * serialized between threads.
+     * 
+     * @param request
+     * @throws SiteWhereException
+     */
+    protected void append(IDecodedDeviceRequest<?> request) throws SiteWhereException {
+	if (journal == null) {
+	    throw new SiteWhereException("Journaled inbound processing strategy is not started.");
+	}
+	String hardwareId = request.getHardwareId();
+	int keyHash = (hardwareId != null) ? hardwareId.hashCode() : 0;
+	journal.append(keyHash, encode(request));
+	appendedCount.incrementAndGet();
+    }
+
+    /**
+     * Encode a request for the journal.
+     * 
+     * @param request
+     * @return
+     * @throws SiteWhereException
+     */
+    protected byte[] encode(IDecodedDeviceRequest<?> request) throws SiteWhereException {
+	return marshaler.encode(request);
+    }
+
+    /**
+     * Decode a request read from the journal.
+     * 
+     * @param payload
+     * @return
+     * @throws SiteWhereException
+     */
+    protected IDecodedDeviceRequest<?> decode(byte[] payload) throws SiteWhereException {
+	return marshaler.decode(payload);
+    }
+
+    /**
+     * Get the number of requests written to the journal.
+     * 
+     * @return
+     */
+    public long getAppendedCount() {
+	return appendedCount.get();
+    }
+
+    /**
+     * Get the number of requests processed.
+     * 
+     * @return
+     */
+    public long getProcessedCount() {
+	return processedCount.get();
+    }
+
+    /**
+     * Get the number of requests that failed.
+     * 
+     * @return
+     */
+    public long getErrorCount() {
+	return errorCount.get();
+    }
+
+    /**
+     * Get the number of unprocessed journal bytes for each consumer.
+     * 
+     * @return
+     */
+    public long[] getConsumerLag() {
+	long[] lag = new long[readers.length];
+	for (int i = 0; i < readers.length; i++) {
+	    lag[i] = readers[i].getLag();
+	}
+	return lag;
+    }
+
+    public String getJournalDirectory() {
+	return journalDirectory;
+    }
+
+    public void setJournalDirectory(String journalDirectory) {
+	this.journalDirectory = journalDirectory;
+    }
+
+    public int getSegmentSizeMb() {
+	return segmentSizeMb;
+    }
+
+    public void setSegmentSizeMb(int segmentSizeMb) {
+	this.segmentSizeMb = segmentSizeMb;
+    }
+
+    public int getConsumerCount() {
+	return consumerCount;
+    }
+
+    public void setConsumerCount(int consumerCount) {
+	this.consumerCount = consumerCount;
+    }
+
+    public int getBatchSize() {
+	return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+	this.batchSize = batchSize;
+    }
+
+    public long getFlushIntervalMs() {
+	return flushIntervalMs;
+    }
+
+    public void setFlushIntervalMs(long flushIntervalMs) {
+	this.flushIntervalMs = flushIntervalMs;
+    }
+
+    public int getMaxSegments() {
+	return maxSegments;
+    }
+
+    public void setMaxSegments(int maxSegments) {
+	this.maxSegments = maxSegments;
+    }
+
+    public long getAppendTimeoutMs() {
+	return appendTimeoutMs;
+    }
+
+    public void setAppendTimeoutMs(long appendTimeoutMs) {
+	this.appendTimeoutMs = appendTimeoutMs;
+    }
+
+    /**
+     * Reads a partition of the journal and sends requests to the inbound
+     * processing chain.
+     * 
+     * @author Derek
+     */
+    private class JournalConsumer implements Runnable {
+
+	/** Reader for the partition */
+	private JournalReader reader;
+
+	public JournalConsumer(JournalReader reader) {
+	    this.reader = reader;
+	}
+
+	@Override
+	public void run() {
+	    try {
+		SecurityContextHolder.getContext().setAuthentication(SiteWhereServer.getSystemAuthentication());
+	    } catch (SiteWhereException e) {
+		throw new RuntimeException("Unable to use system authentication for inbound journal consumer.", e);
+	    }
+	    while (!Thread.currentThread().isInterrupted()) {
+		List<JournalEntry> entries = reader.read(getBatchSize());
+		if (entries.isEmpty()) {
+		    reader.commit();
+		    LockSupport.parkNanos(CONSUMER_IDLE_NANOS);
+		    continue;
+		}
+		for (JournalEntry entry : entries) {
+		    try {
+			sendToInboundProcessingChain(decode(entry.getPayload()));
+			processedCount.incrementAndGet();
+		    } catch (SiteWhereException e) {
+			errorCount.incrementAndGet();
+			LOGGER.error("Error processing inbound request at journal offset " + entry.getOffset() + ".",
+				e);
+		    } catch (Throwable e) {
+			errorCount.incrementAndGet();
+			LOGGER.error("Unhandled exception processing inbound request at journal offset "
+				+ entry.getOffset() + ".", e);
+		    }
+		}
+		reader.commit();
+	    }
+	}
+    }
+
+    /**
+     * Writes mapped journal pages to disk.
+     * 
+     * @author Derek
+     */
+    private class JournalFlusher implements Runnable {
+
+	@Override
+	public void run() {
+	    try {
+		journal.flush();
+	    } catch (Throwable e) {
+		LOGGER.error("Error flushing inbound journal.", e);
+	    }
+	}
+    }
+
+    /**
+     * Deletes journal segments that all consumers have processed. Runs on its
+     * own schedule so segments are still reclaimed when the flush interval is
+     * zero and no flush task is scheduled.
+     * 
+     * @author Derek
+     */
+    private class JournalReclaimer implements Runnable {
+
+	@Override
+	public void run() {
+	    try {
+		int deleted = journal.reclaim();
+		if (deleted > 0) {
+		    LOGGER.debug("Deleted " + deleted + " consumed journal segments.");
+		}
+	    } catch (Throwable e) {
+		LOGGER.error("Error reclaiming inbound journal segments.", e);
+	    }
+	}
+    }
+}
@@ -0,0 +1,296 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.device.communication;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.sitewhere.common.MarshalUtils;
+import com.sitewhere.rest.model.device.event.DeviceAlert;
+import com.sitewhere.rest.model.device.event.DeviceCommandInvocation;
+import com.sitewhere.rest.model.device.event.DeviceCommandResponse;
+import com.sitewhere.rest.model.device.event.DeviceLocation;
+import com.sitewhere.rest.model.device.event.DeviceMeasurements;
+import com.sitewhere.rest.model.device.event.DeviceStateChange;
+import com.sitewhere.spi.SiteWhereException;
+import com.sitewhere.spi.device.event.DeviceEventType;
+import com.sitewhere.spi.device.event.IDeviceEvent;
+
+/**
+ * First-in, first-out file of outbound events that could not be queued in
+ * memory. Each record holds the event type followed by the JSON for the event.
+ * The file is truncated whenever all records have been read. If records keep
+ * arriving so the file never empties, unread records are copied to a new file
+ * once enough of the file has been read, so disk use stays bounded by the
+ * number of unread events. Records left in
+ * the file when the server stops are read again on the next start, so events
+ * may be delivered more than once but are not lost.
+ * 
+ * @author Derek
+ */
+public class OutboundEventSpillFile {
+
+    /** Static logger instance */
+    private static Logger LOGGER = LogManager.getLogger();
+
+    /** Number of bytes read before the file is compacted */
+    private static final long COMPACTION_THRESHOLD_BYTES = 64 * 1024 * 1024;
+
+    /** Buffer size used when copying unread records */
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    /** File holding records */
+    private File file;
+
+    /** Used to read and write records */
+    private RandomAccessFile data;
+
+    /** Offset of the next record to be read */
+    private long readPosition;
+
+    /** Number of records not yet read */
+    private long count;
+
+    /** Oldest event if already read by {@link #peek()} */
+    private IDeviceEvent peeked;
+
+    /** Offset of the record after the peeked event */
+    private long peekedNextPosition;
+
+    public OutboundEventSpillFile(File file) throws SiteWhereException {
+	this.file = file;
+	try {
+	    if (!file.getParentFile().exists()) {
+		file.getParentFile().mkdirs();
+	    }
+	    this.data = new RandomAccessFile(file, "rw");
+	    recover();
+	} catch (IOException e) {
+	    throw new SiteWhereException("Unable to open outbound spill file: " + file.getAbsolutePath(), e);
+	}
+    }
+
+    /**
+     * Count records left from a previous run and drop a partially written
+     * record at the end of the file.
+     * 
+     * @throws IOException
+     */
+    protected void recover() throws IOException {
+	long length = data.length();
+	long position = 0;
+	data.seek(0);
+	try {
+	    while (position < length) {
+		data.readUTF();
+		int size = data.readInt();
+		if (data.getFilePointer() + size > length) {
+		    break;
+		}
+		data.seek(data.getFilePointer() + size);
+		position = data.getFilePointer();
+		count++;
+	    }
+	} catch (EOFException e) {
+	    // Partial record at end of file.
+	}
+	if (position < length) {
+	    LOGGER.warn("Discarding partial record at end of outbound spill file: " + file.getAbsolutePath());
+	    data.setLength(position);
+	}
+	readPosition = 0;
+	if (count > 0) {
+	    LOGGER.info("Found " + count + " spilled outbound events in " + file.getAbsolutePath());
+	}
+    }
+
+    /**
+     * Add an event to the end of the file.
+     * 
+     * @param event
+     * @throws SiteWhereException
+     */
+    public synchronized void append(IDeviceEvent event) throws SiteWhereException {
+	byte[] json = MarshalUtils.marshalJson(event);
+	try {
+	    ByteArrayOutputStream bytes = new ByteArrayOutputStream(json.length + 32);
+	    DataOutputStream record = new DataOutputStream(bytes);
+	    record.writeUTF(event.getEventType().name());
+	    record.writeInt(json.length);
+	    record.write(json);
+	    record.flush();
+
+	    data.seek(data.length());
+	    data.write(bytes.toByteArray());
+	    count++;
+	} catch (IOException e) {
+	    throw new SiteWhereException("Unable to write to outbound spill file: " + file.getAbsolutePath(), e);
+	}
+    }
+
+    /**
+     * Remove the oldest event from the file. Returns null if the file is empty.
+     * 
+     * @return
+     * @throws SiteWhereException
+     */
+    public synchronized IDeviceEvent poll() throws SiteWhereException {
+	IDeviceEvent event = peek();
+	if (event != null) {
+	    remove();
+	}
+	return event;
+    }
+
+    /**
+     * Get the oldest event without removing it from the file. Returns null if
+     * the file is empty.
+     * 
+     * @return
+     * @throws SiteWhereException
+     */
+    public synchronized IDeviceEvent peek() throws SiteWhereException {
+	if (count == 0) {
+	    return null;
+	}
+	if (peeked == null) {
+	    DeviceEventType type;
+	    byte[] json;
+	    try {
+		data.seek(readPosition);
+		type = DeviceEventType.valueOf(data.readUTF());
+		json = new byte[data.readInt()];
+		data.readFully(json);
+		peekedNextPosition = data.getFilePointer();
+	    } catch (IOException e) {
+		throw new SiteWhereException("Unable to read from outbound spill file: " + file.getAbsolutePath(),
+			e);
+	    }
+	    peeked = MarshalUtils.unmarshalJson(json, getEventClass(type));
+	}
+	return peeked;
+    }
+
+    /**
+     * Remove the oldest event from the file without returning it.
+     * 
+     * @throws SiteWhereException
+     */
+    public synchronized void remove() throws SiteWhereException {
+	if ((peeked == null) && (peek() == null)) {
+	    return;
+	}
+	readPosition = peekedNextPosition;
+	peeked = null;
+	count--;
+	try {
+	    if (count == 0) {
+		data.setLength(0);
+		readPosition = 0;
+	    } else if ((readPosition >= COMPACTION_THRESHOLD_BYTES) && (readPosition >= data.length() / 2)) {
+		compact();
+	    }
+	} catch (IOException e) {
+	    throw new SiteWhereException("Unable to update outbound spill file: " + file.getAbsolutePath(), e);
+	}
+    }
+
+    /**
+     * Copy unread records to a new file and replace the existing file with it.
+     * The new file is written completely before it replaces the old one, so a
+     * crash during compaction leaves a valid file.
+     * 
+     * @throws IOException
+     */
+    protected void compact() throws IOException {
+	File compacted = new File(file.getParentFile(), file.getName() + ".compact");
+	RandomAccessFile output = new RandomAccessFile(compacted, "rw");
+	try {
+	    output.setLength(0);
+	    byte[] buffer = new byte[COPY_BUFFER_SIZE];
+	    data.seek(readPosition);
+	    int read;
+	    while ((read = data.read(buffer)) > 0) {
+		output.write(buffer, 0, read);
+	    }
+	    output.getFD().sync();
+	} finally {
+	    output.close();
+	}
+	data.close();
+	try {
+	    Files.move(compacted.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+		    StandardCopyOption.ATOMIC_MOVE);
+	    readPosition = 0;
+	    LOGGER.debug("Compacted outbound spill file " + file.getAbsolutePath() + " with " + count
+		    + " unread events.");
+	} finally {
+	    // Reopens the original file if it could not be replaced.
+	    data = new RandomAccessFile(file, "rw");
+	}
+    }
+
+    /**
+     * Get the number of events waiting in the file.
+     * 
+     * @return
+     */
+    public synchronized long size() {
+	return count;
+    }
+
+    /**
+     * Close the file. Unread events remain on disk.
+     */
+    public synchronized void close() {
+	try {
+	    data.close();
+	} catch (IOException e) {
+	    LOGGER.warn("Unable to close outbound spill file: " + file.getAbsolutePath(), e);
+	}
+    }
+
+    /**
+     * Get the class used to unmarshal an event of the given type.
+     * 
+     * @param type
+     * @return
+     * @throws SiteWhereException
+     */
+    protected Class<? extends IDeviceEvent> getEventClass(DeviceEventType type) throws SiteWhereException {
+	switch (type) {
+	case Measurements:
+	    return DeviceMeasurements.class;
+	case Location:
+	    return DeviceLocation.class;
+	case Alert:
+	    return DeviceAlert.class;
+	case CommandInvocation:
+	    return DeviceCommandInvocation.class;
+	case CommandResponse:
+	    return DeviceCommandResponse.class;
+	case StateChange:
+	    return DeviceStateChange.class;
+	default:
+	    throw new SiteWhereException("Unsupported event type in outbound spill file: " + type);
+	}
+    }
+
+    public File getFile() {
+	return file;
+    }
+}
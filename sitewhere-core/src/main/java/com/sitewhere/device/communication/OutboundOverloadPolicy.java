@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.device.communication;
+
+/**
+ * Indicates what happens to outbound events when the queue for an outbound
+ * event processor is full.
+ * 
+ * @author Derek
+ */
+public enum OutboundOverloadPolicy {
+
+    /** Wait for space in the queue, dropping the event after a timeout */
+    Block("block"),
+
+    /** Remove the oldest queued event to make room for the new one */
+    DropOldest("drop-oldest"),
+
+    /** Discard the new event */
+    DropNewest("drop-newest"),
+
+    /** Write the event to a file on disk to be processed later */
+    SpillToDisk("spill-to-disk");
+
+    /** Value used in configuration */
+    private String configValue;
+
+    private OutboundOverloadPolicy(String configValue) {
+	this.configValue = configValue;
+    }
+
+    public static OutboundOverloadPolicy getByConfigValue(String configValue) {
+	for (OutboundOverloadPolicy value : OutboundOverloadPolicy.values()) {
+	    if (value.getConfigValue().equals(configValue)) {
+		return value;
+	    }
+	}
+	return null;
+    }
+
+    public String getConfigValue() {
+	return configValue;
+    }
+}
@@ -0,0 +1,307 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.device.communication;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.sitewhere.spi.SiteWhereException;
+
+/**
+ * Processes items on a fixed number of partitions, each with its own queue and
+ * a single consumer thread. Items with the same partition key always go to the
+ * same partition, so they are processed in the order they were submitted.
+ * Queues are lock-free so producers and consumers for different partitions do
+ * not contend. The capacity of each partition is enforced on submission but
+ * may be exceeded slightly when many producers submit at once.
+ * 
+ * @author Derek
+ * 
+ * @param <T>
+ */
+public abstract class PartitionedEventExecutor<T> {
+
+    /** Static logger instance */
+    private static Logger LOGGER = LogManager.getLogger();
+
+    /** Nanoseconds a producer waits between checks for queue space */
+    private static final long PRODUCER_BACKOFF_NANOS = 50 * 1000;
+
+    /** Nanoseconds an idle consumer waits before checking its queue again */
+    private static final long CONSUMER_PARK_NANOS = 100 * 1000 * 1000;
+
+    /** Name used for threads */
+    private String name;
+
+    /** Number of partitions */
+    private int partitionCount;
+
+    /** Maximum number of items queued in each partition */
+    private int partitionCapacity;
+
+    /** Partitions */
+    private List<Partition> partitions = new ArrayList<Partition>();
+
+    /** Thread pool with one thread per partition */
+    private ExecutorService pool;
+
+    public PartitionedEventExecutor(String name, int partitionCount, int partitionCapacity) {
+	this.name = name;
+	this.partitionCount = partitionCount;
+	this.partitionCapacity = partitionCapacity;
+    }
+
+    /**
+     * Get key used to choose the partition for an item. Items with a null key
+     * go to the first partition.
+     * 
+     * @param item
+     * @return
+     */
+    protected abstract String getPartitionKey(T item);
+
+    /**
+     * Process an item on the consumer thread for its partition.
+     * 
+     * @param item
+     * @throws SiteWhereException
+     */
+    protected abstract void process(T item) throws SiteWhereException;
+
+    /**
+     * Called on each consumer thread before it starts processing items.
+     * 
+     * @throws SiteWhereException
+     */
+    protected void onPartitionStarted() throws SiteWhereException {
+    }
+
+    /**
+     * Create partitions and start consumer threads.
+     */
+    public void start() {
+	List<Partition> created = new ArrayList<Partition>();
+	for (int i = 0; i < partitionCount; i++) {
+	    created.add(new Partition());
+	}
+	this.partitions = created;
+	this.pool = Executors.newFixedThreadPool(partitionCount, new PartitionsThreadFactory());
+	for (Partition partition : partitions) {
+	    pool.execute(partition);
+	}
+    }
+
+    /**
+     * Stop consumer threads. Items still queued are discarded.
+     */
+    public void stop() {
+	if (pool != null) {
+	    pool.shutdownNow();
+	}
+    }
+
+    /**
+     * Add an item to its partition if there is space. Returns false if the
+     * partition is full.
+     * 
+     * @param item
+     * @return
+     */
+    public boolean offer(T item) {
+	Partition partition = getPartition(item);
+	if (partition.size.get() >= partitionCapacity) {
+	    return false;
+	}
+	partition.add(item);
+	return true;
+    }
+
+    /**
+     * Add an item to its partition, waiting for space if the partition is
+     * full.
+     * 
+     * @param item
+     * @throws InterruptedException
+     */
+    public void put(T item) throws InterruptedException {
+	Partition partition = getPartition(item);
+	while (partition.size.get() >= partitionCapacity) {
+	    LockSupport.parkNanos(this, PRODUCER_BACKOFF_NANOS);
+	    if (Thread.interrupted()) {
+		throw new InterruptedException();
+	    }
+	}
+	partition.add(item);
+    }
+
+    /**
+     * Get the number of items waiting in each partition.
+     * 
+     * @return
+     */
+    public int[] getPartitionDepths() {
+	int[] depths = new int[partitions.size()];
+	for (int i = 0; i < partitions.size(); i++) {
+	    depths[i] = partitions.get(i).size.get();
+	}
+	return depths;
+    }
+
+    /**
+     * Get the number of items waiting across all partitions.
+     * 
+     * @return
+     */
+    public long getBacklog() {
+	long total = 0;
+	for (Partition partition : partitions) {
+	    total += partition.size.get();
+	}
+	return total;
+    }
+
+    /**
+     * Publish a depth gauge for each partition.
+     * 
+     * @param registry
+     * @param prefix
+     */
+    public void registerMetrics(MetricRegistry registry, String prefix) {
+	for (int i = 0; i < partitions.size(); i++) {
+	    final Partition partition = partitions.get(i);
+	    registry.register(MetricRegistry.name(prefix, "partition", String.valueOf(i), "depth"),
+		    new Gauge<Integer>() {
+
+			@Override
+			public Integer getValue() {
+			    return partition.size.get();
+			}
+		    });
+	}
+    }
+
+    /**
+     * Remove gauges published by
+     * {@link #registerMetrics(MetricRegistry, String)}.
+     * 
+     * @param registry
+     * @param prefix
+     */
+    public void removeMetrics(MetricRegistry registry, String prefix) {
+	for (int i = 0; i < partitionCount; i++) {
+	    registry.remove(MetricRegistry.name(prefix, "partition", String.valueOf(i), "depth"));
+	}
+    }
+
+    /**
+     * Choose the partition for an item.
+     * 
+     * @param item
+     * @return
+     */
+    protected Partition getPartition(T item) {
+	String key = getPartitionKey(item);
+	if (key == null) {
+	    return partitions.get(0);
+	}
+	return partitions.get((key.hashCode() & Integer.MAX_VALUE) % partitions.size());
+    }
+
+    public int getPartitionCount() {
+	return partitionCount;
+    }
+
+    public int getPartitionCapacity() {
+	return partitionCapacity;
+    }
+
+    /** Used for naming partition threads */
+    private class PartitionsThreadFactory implements ThreadFactory {
+
+	/** Counts threads */
+	private AtomicInteger counter = new AtomicInteger();
+
+	public Thread newThread(Runnable r) {
+	    return new Thread(r, "SiteWhere " + name + " Partition " + counter.incrementAndGet());
+	}
+    }
+
+    /**
+     * Queue and consumer for a single partition.
+     * 
+     * @author Derek
+     */
+    private class Partition implements Runnable {
+
+	/** Items waiting to be processed */
+	private ConcurrentLinkedQueue<T> queue = new ConcurrentLinkedQueue<T>();
+
+	/** Number of items in queue */
+	private AtomicInteger size = new AtomicInteger();
+
+	/** Consumer thread */
+	private volatile Thread consumer;
+
+	/** Indicates consumer is waiting for items */
+	private volatile boolean waiting;
+
+	/**
+	 * Add an item and wake the consumer if it is waiting.
+	 * 
+	 * @param item
+	 */
+	public void add(T item) {
+	    size.incrementAndGet();
+	    queue.offer(item);
+	    if (waiting) {
+		LockSupport.unpark(consumer);
+	    }
+	}
+
+	@Override
+	public void run() {
+	    this.consumer = Thread.currentThread();
+	    try {
+		onPartitionStarted();
+	    } catch (SiteWhereException e) {
+		LOGGER.error("Unable to start partition for " + name + ".", e);
+		return;
+	    }
+	    while (!Thread.currentThread().isInterrupted()) {
+		T item = queue.poll();
+		if (item == null) {
+		    waiting = true;
+		    if (queue.isEmpty()) {
+			LockSupport.parkNanos(this, CONSUMER_PARK_NANOS);
+		    }
+		    waiting = false;
+		    continue;
+		}
+		size.decrementAndGet();
+		try {
+		    process(item);
+		} catch (SiteWhereException e) {
+		    LOGGER.error("Error processing item in " + name + ".", e);
+		} catch (Throwable e) {
+		    LOGGER.error("Unhandled exception processing item in " + name + ".", e);
+		}
+	    }
+	}
+    }
+}
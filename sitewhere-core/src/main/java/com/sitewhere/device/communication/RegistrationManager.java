@@ -7,8 +7,19 @@
  */
 package com.sitewhere.device.communication;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.springframework.security.core.context.SecurityContextHolder;
 
 import com.sitewhere.SiteWhere;
 import com.sitewhere.rest.model.device.DeviceElementMapping;
@@ -18,15 +29,20 @@ import com.sitewhere.rest.model.device.command.RegistrationFailureCommand;
 import com.sitewhere.rest.model.device.request.DeviceAssignmentCreateRequest;
 import com.sitewhere.rest.model.device.request.DeviceCreateRequest;
 import com.sitewhere.rest.model.search.SearchCriteria;
+import com.sitewhere.server.SiteWhereServer;
 import com.sitewhere.server.lifecycle.TenantLifecycleComponent;
 import com.sitewhere.spi.SiteWhereException;
 import com.sitewhere.spi.device.DeviceAssignmentType;
 import com.sitewhere.spi.device.IDevice;
+import com.sitewhere.spi.device.IDeviceManagement;
 import com.sitewhere.spi.device.IDeviceSpecification;
 import com.sitewhere.spi.device.ISite;
 import com.sitewhere.spi.device.command.DeviceMappingResult;
+import com.sitewhere.spi.device.command.ISystemCommand;
 import com.sitewhere.spi.device.command.RegistrationFailureReason;
 import com.sitewhere.spi.device.command.RegistrationSuccessReason;
+import com.sitewhere.spi.device.communication.IDeviceContext;
+import com.sitewhere.spi.device.communication.IDeviceContextManager;
 import com.sitewhere.spi.device.communication.IRegistrationManager;
 import com.sitewhere.spi.device.event.request.IDeviceMappingCreateRequest;
 import com.sitewhere.spi.device.event.request.IDeviceRegistrationRequest;
@@ -44,6 +60,9 @@ public class RegistrationManager extends TenantLifecycleComponent implements IRe
     /** Static logger instance */
     private static Logger LOGGER = LogManager.getLogger();
 
+    /** Number of batches that may be queued before callers block */
+    private static final int BATCH_QUEUE_FACTOR = 10;
+
     /** Indicates if new devices can register with the system */
     private boolean allowNewDevices = true;
 
@@ -53,6 +72,21 @@ public class RegistrationManager extends TenantLifecycleComponent implements IRe
     /** Token used if autoAssignSite is enabled */
     private String autoAssignSiteToken = null;
 
+    /** Maximum number of requests processed per batch (1 disables batching) */
+    private int batchSize = 1;
+
+    /** Device management implementation */
+    private IDeviceManagement deviceManagement;
+
+    /** Shared device context manager */
+    private IDeviceContextManager deviceContextManager;
+
+    /** Queue of registration requests waiting for batch processing */
+    private BlockingQueue<IDeviceRegistrationRequest> batchQueue;
+
+    /** Executor for batch processing thread */
+    private ExecutorService batchExecutor;
+
     public RegistrationManager() {
 	super(LifecycleComponentType.RegistrationManager);
     }
@@ -66,32 +100,111 @@ public class RegistrationManager extends TenantLifecycleComponent implements IRe
      */
     @Override
     public void handleDeviceRegistration(IDeviceRegistrationRequest request) throws SiteWhereException {
+	if (batchQueue != null) {
+	    try {
+		batchQueue.put(request);
+	    } catch (InterruptedException e) {
+		throw new SiteWhereException("Interrupted while queueing device registration request.", e);
+	    }
+	    return;
+	}
 	LOGGER.debug("Handling device registration request.");
-	IDevice device = SiteWhere.getServer().getDeviceManagement(getTenant())
-		.getDeviceByHardwareId(request.getHardwareId());
-	IDeviceSpecification specification = SiteWhere.getServer().getDeviceManagement(getTenant())
-		.getDeviceSpecificationByToken(request.getSpecificationToken());
+	IDeviceContext context = getDeviceContextManager().getDeviceContext(request.getHardwareId());
+	processRegistration(request, context);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.communication.IRegistrationManager#
+     * handleDeviceRegistrations(java.util.List)
+     */
+    @Override
+    public void handleDeviceRegistrations(List<IDeviceRegistrationRequest> requests) throws SiteWhereException {
+	LOGGER.debug("Handling batch of " + requests.size() + " device registration requests.");
+
+	// Devices often repeat registration while reconnecting, so only the
+	// latest request for each hardware id is processed. Earlier duplicates
+	// still get a response so every request the device sent is answered.
+	Map<String, IDeviceRegistrationRequest> latest = new LinkedHashMap<String, IDeviceRegistrationRequest>();
+	Map<String, Integer> duplicates = new HashMap<String, Integer>();
+	for (IDeviceRegistrationRequest request : requests) {
+	    if (latest.remove(request.getHardwareId()) != null) {
+		Integer count = duplicates.get(request.getHardwareId());
+		duplicates.put(request.getHardwareId(), (count != null) ? count + 1 : 1);
+	    }
+	    latest.put(request.getHardwareId(), request);
+	}
+	Map<String, IDeviceContext> contexts = getDeviceContextManager().getDeviceContexts(latest.keySet());
+	for (IDeviceRegistrationRequest request : latest.values()) {
+	    try {
+		ISystemCommand response = processRegistration(request, contexts.get(request.getHardwareId()));
+		Integer count = duplicates.get(request.getHardwareId());
+		if ((response != null) && (count != null)) {
+		    sendDuplicateResponses(request.getHardwareId(), response, count);
+		}
+	    } catch (SiteWhereException e) {
+		LOGGER.error("Unable to process registration for device '" + request.getHardwareId() + "'.", e);
+	    }
+	}
+    }
+
+    /**
+     * Answer registration requests that were collapsed into a later request
+     * for the same device. A successful registration is acknowledged as
+     * already registered. Failures are repeated as sent.
+     * 
+     * @param hardwareId
+     * @param response
+     * @param count
+     * @throws SiteWhereException
+     */
+    protected void sendDuplicateResponses(String hardwareId, ISystemCommand response, int count)
+	    throws SiteWhereException {
+	ISystemCommand duplicate = (response instanceof RegistrationAckCommand) ? createRegistrationAck(false)
+		: response;
+	for (int i = 0; i < count; i++) {
+	    SiteWhere.getServer().getDeviceCommunication(getTenant()).deliverSystemCommand(hardwareId, duplicate);
+	}
+    }
+
+    /**
+     * Process a registration request given the current context for the device.
+     * 
+     * @param request
+     * @param context
+     *            device context or null if device does not exist
+     * @return response sent to the device or null if request was ignored
+     * @throws SiteWhereException
+     */
+    protected ISystemCommand processRegistration(IDeviceRegistrationRequest request, IDeviceContext context)
+	    throws SiteWhereException {
+	IDeviceContextManager contextManager = getDeviceContextManager();
 
 	// If a site token is passed, verify it is valid.
 	if (request.getSiteToken() != null) {
-	    if (SiteWhere.getServer().getDeviceManagement(getTenant()).getSiteByToken(request.getSiteToken()) == null) {
+	    if (contextManager.getSite(request.getSiteToken()) == null) {
 		LOGGER.warn("Ignoring device registration request because of invalid site token.");
-		return;
+		return null;
 	    }
 	}
+
+	IDevice device = (context != null) ? context.getDevice() : null;
+	boolean isNewRegistration = (device == null);
+
 	// Create device if it does not already exist.
 	if (device == null) {
 	    if (!isAllowNewDevices()) {
 		LOGGER.warn("Ignoring device registration request since new devices are not allowed.");
-		return;
+		return null;
 	    }
+	    IDeviceSpecification specification = contextManager
+		    .getDeviceSpecification(request.getSpecificationToken());
 	    if (specification == null) {
-		sendInvalidSpecification(request.getHardwareId());
-		return;
+		return sendInvalidSpecification(request.getHardwareId());
 	    }
 	    if ((!isAutoAssignSite()) && (request.getSiteToken() == null)) {
-		sendSiteTokenRequired(request.getHardwareId());
-		return;
+		return sendSiteTokenRequired(request.getHardwareId());
 	    }
 	    if (isAutoAssignSite() && (getAutoAssignSiteToken() == null)) {
 		updateAutoAssignToFirstSite();
@@ -107,17 +220,19 @@ public class RegistrationManager extends TenantLifecycleComponent implements IRe
 	    deviceCreate.setSiteToken(siteToken);
 	    deviceCreate.setComments("Device created by on-demand registration.");
 	    deviceCreate.setMetadata(request.getMetadata());
-	    device = SiteWhere.getServer().getDeviceManagement(getTenant()).createDevice(deviceCreate);
+	    device = getDeviceManagement().createDevice(deviceCreate);
+	    contextManager.evictDeviceContext(request.getHardwareId());
 	} else if (!device.getSpecificationToken().equals(request.getSpecificationToken())) {
 	    LOGGER.info("Found existing device registration, but specification does not match.");
-	    sendInvalidSpecification(request.getHardwareId());
-	    return;
-	} else {
+	    return sendInvalidSpecification(request.getHardwareId());
+	} else if ((request.getMetadata() != null) && (!request.getMetadata().equals(device.getMetadata()))) {
 	    LOGGER.info("Found existing device registration. Updating metadata.");
 	    DeviceCreateRequest deviceUpdate = new DeviceCreateRequest();
 	    deviceUpdate.setMetadata(request.getMetadata());
-	    device = SiteWhere.getServer().getDeviceManagement(getTenant()).updateDevice(request.getHardwareId(),
-		    deviceUpdate);
+	    device = getDeviceManagement().updateDevice(request.getHardwareId(), deviceUpdate);
+	    contextManager.evictDeviceContext(request.getHardwareId());
+	} else {
+	    LOGGER.debug("Found existing device registration with unchanged metadata.");
 	}
 
 	// Make sure device is assigned.
@@ -126,10 +241,10 @@ public class RegistrationManager extends TenantLifecycleComponent implements IRe
 	    DeviceAssignmentCreateRequest assnCreate = new DeviceAssignmentCreateRequest();
 	    assnCreate.setDeviceHardwareId(device.getHardwareId());
 	    assnCreate.setAssignmentType(DeviceAssignmentType.Unassociated);
-	    SiteWhere.getServer().getDeviceManagement(getTenant()).createDeviceAssignment(assnCreate);
+	    getDeviceManagement().createDeviceAssignment(assnCreate);
+	    contextManager.evictDeviceContext(request.getHardwareId());
 	}
-	boolean isNewRegistration = (device != null);
-	sendRegistrationAck(request.getHardwareId(), isNewRegistration);
+	return sendRegistrationAck(request.getHardwareId(), isNewRegistration);
     }
 
     /**
@@ -137,13 +252,27 @@ public class RegistrationManager extends TenantLifecycleComponent implements IRe
      * 
      * @param hardwareId
      * @param newRegistration
+     * @return
      * @throws SiteWhereException
      */
-    protected void sendRegistrationAck(String hardwareId, boolean newRegistration) throws SiteWhereException {
+    protected ISystemCommand sendRegistrationAck(String hardwareId, boolean newRegistration)
+	    throws SiteWhereException {
+	RegistrationAckCommand command = createRegistrationAck(newRegistration);
+	SiteWhere.getServer().getDeviceCommunication(getTenant()).deliverSystemCommand(hardwareId, command);
+	return command;
+    }
+
+    /**
+     * Create a registration ack message.
+     * 
+     * @param newRegistration
+     * @return
+     */
+    protected RegistrationAckCommand createRegistrationAck(boolean newRegistration) {
 	RegistrationAckCommand command = new RegistrationAckCommand();
 	command.setReason((newRegistration) ? RegistrationSuccessReason.NewRegistration
 		: RegistrationSuccessReason.AlreadyRegistered);
-	SiteWhere.getServer().getDeviceCommunication(getTenant()).deliverSystemCommand(hardwareId, command);
+	return command;
     }
 
     /**
@@ -165,13 +294,15 @@ public class RegistrationManager extends TenantLifecycleComponent implements IRe
      * match existing device.
      * 
      * @param hardwareId
+     * @return
      * @throws SiteWhereException
      */
-    protected void sendInvalidSpecification(String hardwareId) throws SiteWhereException {
+    protected ISystemCommand sendInvalidSpecification(String hardwareId) throws SiteWhereException {
 	RegistrationFailureCommand command = new RegistrationFailureCommand();
 	command.setReason(RegistrationFailureReason.InvalidSpecificationToken);
 	command.setErrorMessage("Specification token passed in registration was invalid.");
 	SiteWhere.getServer().getDeviceCommunication(getTenant()).deliverSystemCommand(hardwareId, command);
+	return command;
     }
 
     /**
@@ -179,13 +310,15 @@ public class RegistrationManager extends TenantLifecycleComponent implements IRe
      * auto-assigned).
      * 
      * @param hardwareId
+     * @return
      * @throws SiteWhereException
      */
-    protected void sendSiteTokenRequired(String hardwareId) throws SiteWhereException {
+    protected ISystemCommand sendSiteTokenRequired(String hardwareId) throws SiteWhereException {
 	RegistrationFailureCommand command = new RegistrationFailureCommand();
 	command.setReason(RegistrationFailureReason.SiteTokenRequired);
 	command.setErrorMessage("Automatic site assignment disabled. Site token required.");
 	SiteWhere.getServer().getDeviceCommunication(getTenant()).deliverSystemCommand(hardwareId, command);
+	return command;
     }
 
     /*
@@ -220,17 +353,43 @@ public class RegistrationManager extends TenantLifecycleComponent implements IRe
      */
     @Override
     public void start(ILifecycleProgressMonitor monitor) throws SiteWhereException {
+	this.deviceManagement = SiteWhere.getServer().getDeviceManagement(getTenant());
+	this.deviceContextManager = SiteWhere.getServer().getDeviceCommunication(getTenant())
+		.getDeviceContextManager();
 	if (isAutoAssignSite()) {
 	    if (getAutoAssignSiteToken() == null) {
 		updateAutoAssignToFirstSite();
 	    } else {
-		ISite site = SiteWhere.getServer().getDeviceManagement(getTenant())
-			.getSiteByToken(getAutoAssignSiteToken());
+		ISite site = getDeviceManagement().getSiteByToken(getAutoAssignSiteToken());
 		if (site == null) {
 		    throw new SiteWhereException("Registration manager auto assignment site token is invalid.");
 		}
 	    }
 	}
+
+	// Process registrations in batches if enabled.
+	if (getBatchSize() > 1) {
+	    this.batchQueue = new ArrayBlockingQueue<IDeviceRegistrationRequest>(getBatchSize() * BATCH_QUEUE_FACTOR);
+	    this.batchExecutor = Executors.newSingleThreadExecutor();
+	    batchExecutor.execute(new BatchProcessor());
+	    LOGGER.info("Registration manager processing requests in batches of up to " + getBatchSize() + ".");
+	}
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.server.lifecycle.LifecycleComponent#stop(com.sitewhere.spi.
+     * server.lifecycle.ILifecycleProgressMonitor)
+     */
+    @Override
+    public void stop(ILifecycleProgressMonitor monitor) throws SiteWhereException {
+	if (batchExecutor != null) {
+	    batchExecutor.shutdownNow();
+	    batchExecutor = null;
+	}
+	batchQueue = null;
     }
 
     /*
@@ -249,8 +408,7 @@ public class RegistrationManager extends TenantLifecycleComponent implements IRe
      * @throws SiteWhereException
      */
     protected void updateAutoAssignToFirstSite() throws SiteWhereException {
-	ISearchResults<ISite> sites = SiteWhere.getServer().getDeviceManagement(getTenant())
-		.listSites(new SearchCriteria(1, 1));
+	ISearchResults<ISite> sites = getDeviceManagement().listSites(new SearchCriteria(1, 1));
 	if (sites.getResults().isEmpty()) {
 	    LOGGER.warn("Registration manager configured for auto-assign site, but no sites were found.");
 	    setAutoAssignSiteToken(null);
@@ -259,6 +417,68 @@ public class RegistrationManager extends TenantLifecycleComponent implements IRe
 	}
     }
 
+    /**
+     * Get device management, resolving it if called before startup.
+     * 
+     * @return
+     * @throws SiteWhereException
+     */
+    protected IDeviceManagement getDeviceManagement() throws SiteWhereException {
+	if (deviceManagement == null) {
+	    deviceManagement = SiteWhere.getServer().getDeviceManagement(getTenant());
+	}
+	return deviceManagement;
+    }
+
+    /**
+     * Get the shared device context manager.
+     * 
+     * @return
+     * @throws SiteWhereException
+     */
+    protected IDeviceContextManager getDeviceContextManager() throws SiteWhereException {
+	if (deviceContextManager == null) {
+	    deviceContextManager = SiteWhere.getServer().getDeviceCommunication(getTenant())
+		    .getDeviceContextManager();
+	}
+	return deviceContextManager;
+    }
+
+    /**
+     * Takes queued registration requests and processes them in batches.
+     * 
+     * @author Derek
+     */
+    private class BatchProcessor implements Runnable {
+
+	@Override
+	public void run() {
+	    // Device management APIs expect an authenticated user.
+	    try {
+		SecurityContextHolder.getContext().setAuthentication(SiteWhereServer.getSystemAuthentication());
+	    } catch (SiteWhereException e) {
+		throw new RuntimeException("Unable to use system authentication for registration batch processor.",
+			e);
+	    }
+	    BlockingQueue<IDeviceRegistrationRequest> queue = batchQueue;
+	    List<IDeviceRegistrationRequest> batch = new ArrayList<IDeviceRegistrationRequest>(getBatchSize());
+	    while (true) {
+		try {
+		    batch.add(queue.take());
+		    queue.drainTo(batch, getBatchSize() - 1);
+		    handleDeviceRegistrations(batch);
+		} catch (InterruptedException e) {
+		    LOGGER.info("Registration batch processor shut down.");
+		    return;
+		} catch (Throwable e) {
+		    LOGGER.error("Unhandled exception processing registration batch.", e);
+		} finally {
+		    batch.clear();
+		}
+	    }
+	}
+    }
+
     public boolean isAllowNewDevices() {
 	return allowNewDevices;
     }
@@ -282,4 +502,12 @@ public class RegistrationManager extends TenantLifecycleComponent implements IRe
     public void setAutoAssignSiteToken(String autoAssignSiteToken) {
 	this.autoAssignSiteToken = autoAssignSiteToken;
     }
+
+    public int getBatchSize() {
+	return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+	this.batchSize = batchSize;
+    }
 }
\ No newline at end of file
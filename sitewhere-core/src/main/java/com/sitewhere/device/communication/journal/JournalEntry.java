@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.device.communication.journal;
+
+/**
+ * Entry read from a {@link SegmentJournal}.
+ * 
+ * @author Derek
+ */
+public class JournalEntry {
+
+    /** Journal offset of the entry */
+    private long offset;
+
+    /** Hash of the key used to partition entries */
+    private int keyHash;
+
+    /** Entry data */
+    private byte[] payload;
+
+    public JournalEntry(long offset, int keyHash, byte[] payload) {
+	this.offset = offset;
+	this.keyHash = keyHash;
+	this.payload = payload;
+    }
+
+    public long getOffset() {
+	return offset;
+    }
+
+    public int getKeyHash() {
+	return keyHash;
+    }
+
+    public byte[] getPayload() {
+	return payload;
+    }
+}
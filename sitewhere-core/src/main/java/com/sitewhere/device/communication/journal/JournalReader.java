@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.device.communication.journal;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.sitewhere.spi.SiteWhereException;
+
+/**
+ * Reads entries from a {@link SegmentJournal} in order. The reader keeps its
+ * own offset and saves it to a memory-mapped checkpoint file when
+ * {@link #commit()} is called. A reader may be limited to one partition of the
+ * key space so that several readers can share the work while entries with the
+ * same key are still read in order.
+ * 
+ * @author Derek
+ */
+public class JournalReader {
+
+    /** Suffix for checkpoint file names */
+    public static final String SUFFIX = ".checkpoint";
+
+    /** Journal being read */
+    private SegmentJournal journal;
+
+    /** Reader name */
+    private String name;
+
+    /** Checkpoint file */
+    private File file;
+
+    /** Mapped checkpoint value */
+    private MappedByteBuffer checkpointBuffer;
+
+    /** Last committed offset */
+    private volatile long checkpoint;
+
+    /** Offset of next entry to read */
+    private long offset;
+
+    /** Segment being read */
+    private JournalSegment segment;
+
+    /** View of the segment being read */
+    private ByteBuffer view;
+
+    /** Number of partitions (zero reads all entries) */
+    private int partitionCount;
+
+    /** Partition read by this reader */
+    private int partition;
+
+    public JournalReader(SegmentJournal journal, String name) throws SiteWhereException {
+	this.journal = journal;
+	this.name = name;
+	this.file = new File(journal.getDirectory(), name + SUFFIX);
+	try {
+	    RandomAccessFile data = new RandomAccessFile(file, "rw");
+	    try {
+		boolean existing = (data.length() >= 8);
+		this.checkpointBuffer = data.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, 8);
+		long saved = existing ? checkpointBuffer.getLong(0) : journal.getStartOffset();
+		saved = Math.max(saved, journal.getStartOffset());
+		saved = Math.min(saved, journal.getWriteOffset());
+		this.offset = saved;
+		this.checkpoint = saved;
+		checkpointBuffer.putLong(0, saved);
+	    } finally {
+		data.close();
+	    }
+	} catch (IOException e) {
+	    throw new SiteWhereException("Unable to open journal checkpoint: " + file.getAbsolutePath(), e);
+	}
+    }
+
+    /**
+     * Limit the reader to entries where the key hash modulo the partition
+     * count matches the partition.
+     * 
+     * @param partitionCount
+     * @param partition
+     */
+    public void setPartition(int partitionCount, int partition) {
+	this.partitionCount = partitionCount;
+	this.partition = partition;
+    }
+
+    /**
+     * Read up to the given number of entries after the current offset. Entries
+     * in other partitions are skipped without being copied.
+     * 
+     * @param max
+     * @return
+     */
+    public List<JournalEntry> read(int max) {
+	List<JournalEntry> entries = new ArrayList<JournalEntry>();
+	long limit = journal.getWriteOffset();
+	while ((entries.size() < max) && (offset < limit)) {
+	    if ((segment == null) || (offset >= segment.getEnd())) {
+		segment = journal.getSegment(offset);
+		if (segment == null) {
+		    break;
+		}
+		view = segment.getBuffer().duplicate();
+	    }
+	    int pos = (int) (offset - segment.getBase());
+	    if (pos + SegmentJournal.HEADER_SIZE > segment.getCapacity()) {
+		offset = segment.getEnd();
+		continue;
+	    }
+	    int length = view.getInt(pos);
+	    if (length == SegmentJournal.END_OF_SEGMENT) {
+		offset = segment.getEnd();
+		continue;
+	    }
+	    if (length <= 0) {
+		break;
+	    }
+	    int keyHash = view.getInt(pos + 8);
+	    if (isInPartition(keyHash)) {
+		byte[] payload = new byte[length];
+		view.position(pos + SegmentJournal.HEADER_SIZE);
+		view.get(payload);
+		entries.add(new JournalEntry(offset, keyHash, payload));
+	    }
+	    offset += SegmentJournal.HEADER_SIZE + length;
+	}
+	return entries;
+    }
+
+    /**
+     * Save the current offset as the checkpoint. Entries before the checkpoint
+     * are not read again after a restart.
+     */
+    public void commit() {
+	checkpointBuffer.putLong(0, offset);
+	checkpoint = offset;
+    }
+
+    /**
+     * Get number of journal bytes between the checkpoint and the end of the
+     * journal.
+     * 
+     * @return
+     */
+    public long getLag() {
+	return Math.max(0, journal.getWriteOffset() - checkpoint);
+    }
+
+    /**
+     * Write checkpoint to disk.
+     */
+    public void force() {
+	checkpointBuffer.force();
+    }
+
+    /**
+     * Save checkpoint and release segment references.
+     */
+    public void close() {
+	force();
+	segment = null;
+	view = null;
+    }
+
+    /**
+     * Indicates whether an entry with the given key hash belongs to this
+     * reader.
+     * 
+     * @param keyHash
+     * @return
+     */
+    protected boolean isInPartition(int keyHash) {
+	if (partitionCount <= 0) {
+	    return true;
+	}
+	return ((keyHash & Integer.MAX_VALUE) % partitionCount) == partition;
+    }
+
+    public String getName() {
+	return name;
+    }
+
+    public long getOffset() {
+	return offset;
+    }
+
+    public long getCheckpoint() {
+	return checkpoint;
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.device.communication.journal;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Fixed-size file in a {@link SegmentJournal} that is mapped into memory. The
+ * file name is the journal offset of the first byte in the segment.
+ * 
+ * @author Derek
+ */
+public class JournalSegment {
+
+    /** Suffix for segment file names */
+    public static final String SUFFIX = ".segment";
+
+    /** Segment file */
+    private File file;
+
+    /** Journal offset of first byte */
+    private long base;
+
+    /** Size of segment in bytes */
+    private int capacity;
+
+    /** Mapped file contents */
+    private MappedByteBuffer buffer;
+
+    /** View used by the journal writer */
+    private ByteBuffer writeView;
+
+    public JournalSegment(File directory, long base, int capacity) throws IOException {
+	this.file = new File(directory, getFileName(base));
+	this.base = base;
+	RandomAccessFile data = new RandomAccessFile(file, "rw");
+	try {
+	    if (data.length() > 0) {
+		capacity = (int) data.length();
+	    } else {
+		data.setLength(capacity);
+	    }
+	    this.capacity = capacity;
+	    this.buffer = data.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+	    this.writeView = buffer.duplicate();
+	} finally {
+	    data.close();
+	}
+    }
+
+    /**
+     * Get file name for a segment starting at the given offset.
+     * 
+     * @param base
+     * @return
+     */
+    public static String getFileName(long base) {
+	return String.format("%020d", base) + SUFFIX;
+    }
+
+    /**
+     * Get the journal offset just past the end of the segment.
+     * 
+     * @return
+     */
+    public long getEnd() {
+	return base + capacity;
+    }
+
+    /**
+     * Write changes to disk.
+     */
+    public void force() {
+	buffer.force();
+    }
+
+    /**
+     * Delete the segment file. The mapping is released when the buffer is
+     * garbage collected.
+     * 
+     * @return
+     */
+    public boolean delete() {
+	return file.delete();
+    }
+
+    public File getFile() {
+	return file;
+    }
+
+    public long getBase() {
+	return base;
+    }
+
+    public int getCapacity() {
+	return capacity;
+    }
+
+    public MappedByteBuffer getBuffer() {
+	return buffer;
+    }
+
+    public ByteBuffer getWriteView() {
+	return writeView;
+    }
+}
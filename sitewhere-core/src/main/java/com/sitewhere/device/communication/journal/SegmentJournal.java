@@ -0,0 +1,443 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.device.communication.journal;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.sitewhere.spi.SiteWhereException;
+
+/**
+ * Append-only log of binary entries stored in memory-mapped segment files.
+ * Appending an entry copies it into the mapped segment, so entries survive a
+ * crash of the server process without a disk write per entry. Calling
+ * {@link #flush()} writes mapped pages to disk to protect against an operating
+ * system failure. Each entry is stored as a header holding the payload
+ * length, a CRC32 of the payload and a key hash, followed by the payload.
+ * Entries are addressed by offset, which increases across segments. Readers
+ * track their own offset and save it as a checkpoint. Segments are deleted
+ * once every reader has checkpointed past them. If a maximum number of
+ * segments is set, an append that needs a new segment while the journal is
+ * full waits for readers to free one, and fails if none is freed in time. When
+ * the journal is opened, the last segment is scanned and any partially written
+ * entry at the end is discarded.
+ * 
+ * @author Derek
+ */
+public class SegmentJournal {
+
+    /** Static logger instance */
+    private static Logger LOGGER = LogManager.getLogger();
+
+    /** Size of the entry header (length, checksum and key hash) */
+    public static final int HEADER_SIZE = 12;
+
+    /** Length value that marks the end of the entries in a segment */
+    public static final int END_OF_SEGMENT = -1;
+
+    /** Size of chunk used when clearing a damaged segment */
+    private static final int CLEAR_CHUNK_SIZE = 64 * 1024;
+
+    /** Milliseconds between checks for a free segment while full */
+    private static final long FULL_POLL_INTERVAL_MS = 10;
+
+    /** Directory holding segment and checkpoint files */
+    private File directory;
+
+    /** Size of newly created segments */
+    private int segmentSize;
+
+    /** Segments by base offset */
+    private TreeMap<Long, JournalSegment> segments = new TreeMap<Long, JournalSegment>();
+
+    /** Segment being written */
+    private JournalSegment current;
+
+    /** Write position within the current segment */
+    private int position;
+
+    /** Offset after the last complete entry */
+    private volatile long writeOffset;
+
+    /** Base of first segment not yet flushed */
+    private long unflushedBase;
+
+    /** Readers by name */
+    private Map<String, JournalReader> readers = new TreeMap<String, JournalReader>();
+
+    /** Maximum number of segments on disk (zero for no limit) */
+    private int maxSegments;
+
+    /** Milliseconds an append waits for a free segment */
+    private long appendTimeoutMs;
+
+    public SegmentJournal(File directory, int segmentSize) {
+	this.directory = directory;
+	this.segmentSize = segmentSize;
+    }
+
+    /**
+     * Open existing segments or create the first one.
+     * 
+     * @throws SiteWhereException
+     */
+    public synchronized void open() throws SiteWhereException {
+	try {
+	    if (!directory.exists()) {
+		directory.mkdirs();
+	    }
+	    String[] names = directory.list(new FilenameFilter() {
+
+		@Override
+		public boolean accept(File dir, String name) {
+		    return name.endsWith(JournalSegment.SUFFIX);
+		}
+	    });
+	    for (String name : names) {
+		long base = Long.parseLong(name.substring(0, name.length() - JournalSegment.SUFFIX.length()));
+		segments.put(base, new JournalSegment(directory, base, segmentSize));
+	    }
+	    if (segments.isEmpty()) {
+		segments.put(0L, new JournalSegment(directory, 0, segmentSize));
+	    }
+	    this.current = segments.lastEntry().getValue();
+	    recover();
+	    this.unflushedBase = current.getBase();
+	    LOGGER.info("Opened journal in " + directory.getAbsolutePath() + " with " + segments.size()
+		    + " segments. Write offset is " + writeOffset + ".");
+	} catch (IOException e) {
+	    throw new SiteWhereException("Unable to open journal in " + directory.getAbsolutePath(), e);
+	} catch (NumberFormatException e) {
+	    throw new SiteWhereException("Invalid segment file name in " + directory.getAbsolutePath(), e);
+	}
+    }
+
+    /**
+     * Find the end of the valid entries in the current segment.
+     * 
+     * @throws IOException
+     */
+    protected void recover() throws IOException {
+	ByteBuffer view = current.getBuffer().duplicate();
+	int pos = 0;
+	boolean damaged = false;
+	while (pos + HEADER_SIZE <= current.getCapacity()) {
+	    int length = view.getInt(pos);
+	    if (length == 0) {
+		break;
+	    }
+	    if (length == END_OF_SEGMENT) {
+		// Segment was finished but the next one was not created.
+		this.position = pos;
+		roll();
+		return;
+	    }
+	    if ((length < 0) || (pos + HEADER_SIZE + length > current.getCapacity())) {
+		damaged = true;
+		break;
+	    }
+	    byte[] payload = new byte[length];
+	    view.position(pos + HEADER_SIZE);
+	    view.get(payload);
+	    if (view.getInt(pos + 4) != checksum(payload)) {
+		damaged = true;
+		break;
+	    }
+	    pos += HEADER_SIZE + length;
+	}
+	if (damaged) {
+	    LOGGER.warn("Discarding damaged journal data at offset " + (current.getBase() + pos) + " in "
+		    + current.getFile().getAbsolutePath());
+	    clear(current, pos);
+	}
+	this.position = pos;
+	this.writeOffset = current.getBase() + pos;
+    }
+
+    /**
+     * Append an entry to the journal.
+     * 
+     * @param keyHash
+     * @param payload
+     * @return offset of the entry
+     * @throws SiteWhereException
+     */
+    public long append(int keyHash, byte[] payload) throws SiteWhereException {
+	int checksum = checksum(payload);
+	int size = HEADER_SIZE + payload.length;
+	synchronized (this) {
+	    if (current == null) {
+		throw new SiteWhereException("Journal is not open.");
+	    }
+	    while (position + size + 4 > current.getCapacity()) {
+		if (size + 4 > segmentSize) {
+		    throw new SiteWhereException(
+			    "Journal entry of " + payload.length + " bytes exceeds segment size.");
+		}
+		if (awaitFreeSegment()) {
+		    // Lock was released while waiting, so check again.
+		    continue;
+		}
+		try {
+		    roll();
+		} catch (IOException e) {
+		    throw new SiteWhereException("Unable to create journal segment.", e);
+		}
+	    }
+	    long offset = current.getBase() + position;
+	    ByteBuffer view = current.getWriteView();
+	    view.putInt(position + 4, checksum);
+	    view.putInt(position + 8, keyHash);
+	    view.position(position + HEADER_SIZE);
+	    view.put(payload);
+	    view.putInt(position, payload.length);
+	    position += size;
+	    writeOffset = current.getBase() + position;
+	    return offset;
+	}
+    }
+
+    /**
+     * Wait until there is room for another segment. Consumed segments are
+     * reclaimed while waiting. Must be called while holding the journal lock,
+     * which is released while waiting so readers can make progress.
+     * 
+     * @return true if the lock was released while waiting
+     * @throws SiteWhereException
+     */
+    protected boolean awaitFreeSegment() throws SiteWhereException {
+	if ((maxSegments <= 0) || (segments.size() < maxSegments)) {
+	    return false;
+	}
+	reclaim();
+	if (segments.size() < maxSegments) {
+	    return false;
+	}
+	long deadline = System.currentTimeMillis() + appendTimeoutMs;
+	while (segments.size() >= maxSegments) {
+	    long remaining = deadline - System.currentTimeMillis();
+	    if (remaining <= 0) {
+		throw new SiteWhereException("Journal is full (" + maxSegments + " segments). Readers did not free "
+			+ "a segment within " + appendTimeoutMs + "ms.");
+	    }
+	    try {
+		wait(Math.min(remaining, FULL_POLL_INTERVAL_MS));
+	    } catch (InterruptedException e) {
+		Thread.currentThread().interrupt();
+		throw new SiteWhereException("Interrupted while waiting for journal space.", e);
+	    }
+	    if (current == null) {
+		throw new SiteWhereException("Journal is not open.");
+	    }
+	    reclaim();
+	}
+	return true;
+    }
+
+    /**
+     * Mark the end of the current segment and start a new one.
+     * 
+     * @throws IOException
+     */
+    protected void roll() throws IOException {
+	if (position + 4 <= current.getCapacity()) {
+	    current.getWriteView().putInt(position, END_OF_SEGMENT);
+	}
+	long base = current.getEnd();
+	JournalSegment next = segments.get(base);
+	if (next == null) {
+	    next = new JournalSegment(directory, base, segmentSize);
+	    segments.put(base, next);
+	}
+	this.current = next;
+	this.position = 0;
+	this.writeOffset = base;
+    }
+
+    /**
+     * Get a reader with the given name, creating it if necessary. The reader
+     * starts from its last checkpoint.
+     * 
+     * @param name
+     * @return
+     * @throws SiteWhereException
+     */
+    public synchronized JournalReader getReader(String name) throws SiteWhereException {
+	JournalReader reader = readers.get(name);
+	if (reader == null) {
+	    reader = new JournalReader(this, name);
+	    readers.put(name, reader);
+	}
+	return reader;
+    }
+
+    /**
+     * Get the segment containing the given offset.
+     * 
+     * @param offset
+     * @return
+     */
+    public synchronized JournalSegment getSegment(long offset) {
+	Map.Entry<Long, JournalSegment> entry = segments.floorEntry(offset);
+	if ((entry == null) || (offset >= entry.getValue().getEnd())) {
+	    return null;
+	}
+	return entry.getValue();
+    }
+
+    /**
+     * Get offset of the oldest data still held in the journal.
+     * 
+     * @return
+     */
+    public synchronized long getStartOffset() {
+	return segments.firstKey();
+    }
+
+    /**
+     * Get offset just after the last complete entry.
+     * 
+     * @return
+     */
+    public long getWriteOffset() {
+	return writeOffset;
+    }
+
+    /**
+     * Get lowest checkpoint across all readers.
+     * 
+     * @return
+     */
+    public synchronized long getMinimumCheckpoint() {
+	long minimum = writeOffset;
+	for (JournalReader reader : readers.values()) {
+	    minimum = Math.min(minimum, reader.getCheckpoint());
+	}
+	return minimum;
+    }
+
+    /**
+     * Write mapped pages for segments and checkpoints to disk.
+     */
+    public void flush() {
+	List<JournalSegment> dirty = new ArrayList<JournalSegment>();
+	List<JournalReader> all;
+	synchronized (this) {
+	    if (current == null) {
+		return;
+	    }
+	    dirty.addAll(segments.tailMap(unflushedBase, true).values());
+	    unflushedBase = current.getBase();
+	    all = new ArrayList<JournalReader>(readers.values());
+	}
+	for (JournalSegment segment : dirty) {
+	    segment.force();
+	}
+	for (JournalReader reader : all) {
+	    reader.force();
+	}
+    }
+
+    /**
+     * Delete segments that every reader has moved past.
+     * 
+     * @return number of segments deleted
+     */
+    public synchronized int reclaim() {
+	long minimum = getMinimumCheckpoint();
+	int deleted = 0;
+	while (segments.size() > 1) {
+	    JournalSegment oldest = segments.firstEntry().getValue();
+	    if ((oldest == current) || (oldest.getEnd() > minimum)) {
+		break;
+	    }
+	    segments.remove(oldest.getBase());
+	    if (!oldest.delete()) {
+		LOGGER.warn("Unable to delete journal segment: " + oldest.getFile().getAbsolutePath());
+	    }
+	    deleted++;
+	}
+	return deleted;
+    }
+
+    /**
+     * Flush and release all segments and readers.
+     */
+    public void close() {
+	flush();
+	synchronized (this) {
+	    for (JournalReader reader : readers.values()) {
+		reader.close();
+	    }
+	    readers.clear();
+	    segments.clear();
+	    current = null;
+	}
+    }
+
+    /**
+     * Zero a segment from the given position to the end.
+     * 
+     * @param segment
+     * @param from
+     */
+    protected void clear(JournalSegment segment, int from) {
+	ByteBuffer view = segment.getBuffer().duplicate();
+	byte[] zeros = new byte[CLEAR_CHUNK_SIZE];
+	view.position(from);
+	while (view.remaining() > 0) {
+	    view.put(zeros, 0, Math.min(zeros.length, view.remaining()));
+	}
+    }
+
+    /**
+     * Compute checksum for an entry payload.
+     * 
+     * @param payload
+     * @return
+     */
+    protected static int checksum(byte[] payload) {
+	CRC32 crc = new CRC32();
+	crc.update(payload, 0, payload.length);
+	return (int) crc.getValue();
+    }
+
+    public File getDirectory() {
+	return directory;
+    }
+
+    public int getSegmentSize() {
+	return segmentSize;
+    }
+
+    public int getMaxSegments() {
+	return maxSegments;
+    }
+
+    public void setMaxSegments(int maxSegments) {
+	this.maxSegments = maxSegments;
+    }
+
+    public long getAppendTimeoutMs() {
+	return appendTimeoutMs;
+    }
+
+    public void setAppendTimeoutMs(long appendTimeoutMs) {
+	this.appendTimeoutMs = appendTimeoutMs;
+    }
+}
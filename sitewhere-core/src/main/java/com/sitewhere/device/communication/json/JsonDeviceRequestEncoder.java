@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.device.communication.json;
+
+import com.sitewhere.common.MarshalUtils;
+import com.sitewhere.rest.model.device.communication.DeviceRequest;
+import com.sitewhere.spi.SiteWhereException;
+import com.sitewhere.spi.device.communication.IDecodedDeviceRequest;
+import com.sitewhere.spi.device.communication.IDeviceEventEncoder;
+import com.sitewhere.spi.device.event.request.IDeviceAlertCreateRequest;
+import com.sitewhere.spi.device.event.request.IDeviceLocationCreateRequest;
+import com.sitewhere.spi.device.event.request.IDeviceMeasurementsCreateRequest;
+import com.sitewhere.spi.device.event.request.IDeviceRegistrationRequest;
+
+/**
+ * Implementation of {@link IDeviceEventEncoder} that encodes device events in
+ * the JSON request format read by {@link JsonDeviceRequestDecoder}.
+ * 
+ * @author Derek
+ */
+public class JsonDeviceRequestEncoder implements IDeviceEventEncoder<byte[]> {
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.communication.IDeviceEventEncoder#encode(com.
+     * sitewhere.spi.device.communication.IDecodedDeviceRequest)
+     */
+    @Override
+    public byte[] encode(IDecodedDeviceRequest<?> event) throws SiteWhereException {
+	DeviceRequest request = new DeviceRequest();
+	request.setHardwareId(event.getHardwareId());
+	request.setOriginator(event.getOriginator());
+	request.setType(getType(event.getRequest()));
+	request.setRequest(event.getRequest());
+	return MarshalUtils.marshalJson(request);
+    }
+
+    /**
+     * Get JSON request type for a request object.
+     * 
+     * @param request
+     * @return
+     * @throws SiteWhereException
+     */
+    protected DeviceRequest.Type getType(Object request) throws SiteWhereException {
+	if (request instanceof IDeviceMeasurementsCreateRequest) {
+	    return DeviceRequest.Type.DeviceMeasurements;
+	} else if (request instanceof IDeviceAlertCreateRequest) {
+	    return DeviceRequest.Type.DeviceAlert;
+	} else if (request instanceof IDeviceLocationCreateRequest) {
+	    return DeviceRequest.Type.DeviceLocation;
+	} else if (request instanceof IDeviceRegistrationRequest) {
+	    return DeviceRequest.Type.RegisterDevice;
+	}
+	throw new SiteWhereException("JSON encoder encountered unknown event type: " + request.getClass().getName());
+    }
+}
@@ -0,0 +1,234 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.device.communication.loadgen;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SlidingTimeWindowReservoir;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
+import com.sitewhere.SiteWhere;
+import com.sitewhere.device.event.processor.FilteredOutboundEventProcessor;
+import com.sitewhere.spi.SiteWhereException;
+import com.sitewhere.spi.device.event.IDeviceAlert;
+import com.sitewhere.spi.device.event.IDeviceEvent;
+import com.sitewhere.spi.device.event.IDeviceLocation;
+import com.sitewhere.spi.device.event.IDeviceMeasurements;
+import com.sitewhere.spi.server.lifecycle.ILifecycleProgressMonitor;
+
+/**
+ * Outbound event processor that measures end-to-end latency of events and
+ * periodically logs throughput and latency percentiles. Latency is measured
+ * from the event date, which {@link LoadGeneratorEventReceiver} sets to the time
+ * the event was emitted. Two stages are reported:
+ * <ul>
+ * <li>persisted - from emit until the event was stored (the received date)</li>
+ * <li>delivered - from emit until the event reached the outbound chain</li>
+ * </ul>
+ * Latency percentiles cover the events of the last report interval. Timers
+ * are also published in the server metric registry so they can be read by
+ * external monitoring while a soak test runs. Only use this processor
+ * with event sources that set the event date on emit, since device-supplied
+ * event dates would include clock skew and transport delays.
+ * 
+ * @author Derek
+ */
+public class LatencyReportEventProcessor extends FilteredOutboundEventProcessor {
+
+    /** Static logger instance */
+    private static Logger LOGGER = LogManager.getLogger();
+
+    /** Default number of seconds between reports */
+    private static final int DEFAULT_REPORT_INTERVAL_SECS = 30;
+
+    /** Number of seconds between reports */
+    private int reportIntervalSecs = DEFAULT_REPORT_INTERVAL_SECS;
+
+    /** Time from emit until event was persisted */
+    private Timer persisted;
+
+    /** Time from emit until event reached the outbound chain */
+    private Timer delivered;
+
+    /** Logs reports on an interval */
+    private ScheduledExecutorService reporter;
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.device.event.processor.FilteredOutboundEventProcessor#start
+     * (com.sitewhere.spi.server.lifecycle.ILifecycleProgressMonitor)
+     */
+    @Override
+    public void start(ILifecycleProgressMonitor monitor) throws SiteWhereException {
+	// Required for filters.
+	super.start(monitor);
+
+	MetricRegistry registry = SiteWhere.getServer().getMetricRegistry();
+	this.persisted = createTimer(registry, MetricRegistry.name(getMetricsPrefix(), "persisted"));
+	this.delivered = createTimer(registry, MetricRegistry.name(getMetricsPrefix(), "delivered"));
+
+	this.reporter = Executors.newSingleThreadScheduledExecutor();
+	reporter.scheduleAtFixedRate(new Runnable() {
+
+	    @Override
+	    public void run() {
+		report();
+	    }
+	}, getReportIntervalSecs(), getReportIntervalSecs(), TimeUnit.SECONDS);
+	LOGGER.info("Event latency will be reported every " + getReportIntervalSecs() + " seconds.");
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.device.event.processor.FilteredOutboundEventProcessor#stop(
+     * com.sitewhere.spi.server.lifecycle.ILifecycleProgressMonitor)
+     */
+    @Override
+    public void stop(ILifecycleProgressMonitor monitor) throws SiteWhereException {
+	if (reporter != null) {
+	    reporter.shutdownNow();
+	    reporter = null;
+	    report();
+	}
+	MetricRegistry registry = SiteWhere.getServer().getMetricRegistry();
+	registry.remove(MetricRegistry.name(getMetricsPrefix(), "persisted"));
+	registry.remove(MetricRegistry.name(getMetricsPrefix(), "delivered"));
+	super.stop(monitor);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.server.lifecycle.ILifecycleComponent#getLogger()
+     */
+    @Override
+    public Logger getLogger() {
+	return LOGGER;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.device.event.processor.FilteredOutboundEventProcessor#
+     * onMeasurementsNotFiltered(com.sitewhere.spi.device.event.
+     * IDeviceMeasurements)
+     */
+    @Override
+    public void onMeasurementsNotFiltered(IDeviceMeasurements measurements) throws SiteWhereException {
+	record(measurements);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.device.event.processor.FilteredOutboundEventProcessor#
+     * onLocationNotFiltered(com.sitewhere.spi.device.event.IDeviceLocation)
+     */
+    @Override
+    public void onLocationNotFiltered(IDeviceLocation location) throws SiteWhereException {
+	record(location);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.device.event.processor.FilteredOutboundEventProcessor#
+     * onAlertNotFiltered(com.sitewhere.spi.device.event.IDeviceAlert)
+     */
+    @Override
+    public void onAlertNotFiltered(IDeviceAlert alert) throws SiteWhereException {
+	record(alert);
+    }
+
+    /**
+     * Record latency for an event.
+     * 
+     * @param event
+     */
+    protected void record(IDeviceEvent event) {
+	if ((event.getEventDate() == null) || (delivered == null)) {
+	    return;
+	}
+	long emitted = event.getEventDate().getTime();
+	if (event.getReceivedDate() != null) {
+	    persisted.update(Math.max(0, event.getReceivedDate().getTime() - emitted), TimeUnit.MILLISECONDS);
+	}
+	delivered.update(Math.max(0, System.currentTimeMillis() - emitted), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Create a timer and register it in the metric registry. The default timer
+     * reservoir keeps a small random sample biased toward recent values, which
+     * hides rare slow events. Timers instead keep every sample from the last
+     * report interval so that reported tail percentiles are exact.
+     * 
+     * @param registry
+     * @param name
+     * @return
+     */
+    protected Timer createTimer(MetricRegistry registry, String name) {
+	registry.remove(name);
+	Timer timer = new Timer(new SlidingTimeWindowReservoir(getReportIntervalSecs(), TimeUnit.SECONDS));
+	return registry.register(name, timer);
+    }
+
+    /**
+     * Log throughput and latency percentiles.
+     */
+    protected void report() {
+	if ((delivered == null) || (delivered.getCount() == 0)) {
+	    LOGGER.info("No events received for latency report.");
+	    return;
+	}
+	LOGGER.info("Event throughput: " + delivered.getCount() + " total, "
+		+ String.format("%.1f", delivered.getOneMinuteRate()) + "/s (1 min), "
+		+ String.format("%.1f", delivered.getMeanRate()) + "/s (mean).");
+	LOGGER.info("Latency to persisted: " + format(persisted.getSnapshot()));
+	LOGGER.info("Latency to delivered: " + format(delivered.getSnapshot()));
+    }
+
+    /**
+     * Format latency percentiles in milliseconds.
+     * 
+     * @param snapshot
+     * @return
+     */
+    protected String format(Snapshot snapshot) {
+	double scale = TimeUnit.MILLISECONDS.toNanos(1);
+	return String.format("p50=%.1fms p95=%.1fms p99=%.1fms p99.9=%.1fms max=%.1fms", snapshot.getMedian() / scale,
+		snapshot.get95thPercentile() / scale, snapshot.get99thPercentile() / scale,
+		snapshot.get999thPercentile() / scale, snapshot.getMax() / scale);
+    }
+
+    /**
+     * Get prefix for published metrics.
+     * 
+     * @return
+     */
+    protected String getMetricsPrefix() {
+	return MetricRegistry.name("tenant", getTenant().getId(), "latency");
+    }
+
+    public int getReportIntervalSecs() {
+	return reportIntervalSecs;
+    }
+
+    public void setReportIntervalSecs(int reportIntervalSecs) {
+	this.reportIntervalSecs = reportIntervalSecs;
+    }
+}
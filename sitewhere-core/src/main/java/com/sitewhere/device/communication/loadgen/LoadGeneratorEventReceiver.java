@@ -0,0 +1,567 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.device.communication.loadgen;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.sitewhere.device.communication.InboundEventReceiver;
+import com.sitewhere.rest.model.device.communication.DecodedDeviceRequest;
+import com.sitewhere.rest.model.device.event.request.DeviceAlertCreateRequest;
+import com.sitewhere.rest.model.device.event.request.DeviceLocationCreateRequest;
+import com.sitewhere.rest.model.device.event.request.DeviceMeasurementsCreateRequest;
+import com.sitewhere.rest.model.device.event.request.DeviceRegistrationRequest;
+import com.sitewhere.spi.SiteWhereException;
+import com.sitewhere.spi.device.communication.IDeviceEventEncoder;
+import com.sitewhere.spi.device.event.AlertLevel;
+import com.sitewhere.spi.device.event.AlertSource;
+import com.sitewhere.spi.server.lifecycle.ILifecycleProgressMonitor;
+
+/**
+ * Event receiver that simulates a fleet of devices for load and soak testing.
+ * Each simulated device registers itself and then sends a mix of measurements,
+ * locations and alerts at a configured aggregate rate. Payloads are encoded
+ * with the configured {@link IDeviceEventEncoder} and delivered to the parent
+ * event source exactly as a transport receiver would, so the full decode,
+ * inbound, persistence and outbound path is exercised.
+ * 
+ * Events are scheduled open-loop: if the pipeline falls behind, the generator
+ * does not slow down, so queueing delay shows up in measured latency. The
+ * event date of each event is set to the time it was scheduled to be emitted,
+ * not the time it was actually sent, so that
+ * {@link LatencyReportEventProcessor} measures end-to-end latency including
+ * any delay in the generator itself.
+ * 
+ * @author Derek
+ */
+public class LoadGeneratorEventReceiver extends InboundEventReceiver<byte[]> {
+
+    /** Static logger instance */
+    private static Logger LOGGER = LogManager.getLogger();
+
+    /** Default number of simulated devices */
+    private static final int DEFAULT_DEVICE_COUNT = 100;
+
+    /** Default aggregate number of events sent per second */
+    private static final int DEFAULT_EVENTS_PER_SECOND = 100;
+
+    /** Default number of generator threads */
+    private static final int DEFAULT_NUM_THREADS = 1;
+
+    /** Default number of values in each measurements event */
+    private static final int DEFAULT_MEASUREMENTS_PER_EVENT = 3;
+
+    /** Default prefix for simulated hardware ids */
+    private static final String DEFAULT_HARDWARE_ID_PREFIX = "loadgen-";
+
+    /** Default seconds to wait after registration before sending events */
+    private static final int DEFAULT_REGISTRATION_WAIT_SECS = 5;
+
+    /** Latitude around which locations are generated */
+    private static final double CENTER_LATITUDE = 33.75;
+
+    /** Longitude around which locations are generated */
+    private static final double CENTER_LONGITUDE = -84.39;
+
+    /** Metadata passed with each payload */
+    private static final Map<String, Object> METADATA = new HashMap<String, Object>();
+
+    /** Number of simulated devices */
+    private int deviceCount = DEFAULT_DEVICE_COUNT;
+
+    /** Comma-separated specification tokens assigned to devices in turn */
+    private String specificationTokens;
+
+    /** Site token used when registering devices */
+    private String siteToken;
+
+    /** Prefix for simulated hardware ids */
+    private String hardwareIdPrefix = DEFAULT_HARDWARE_ID_PREFIX;
+
+    /** Aggregate number of events sent per second */
+    private int eventsPerSecond = DEFAULT_EVENTS_PER_SECOND;
+
+    /** Number of generator threads */
+    private int numThreads = DEFAULT_NUM_THREADS;
+
+    /** Number of values in each measurements event */
+    private int measurementsPerEvent = DEFAULT_MEASUREMENTS_PER_EVENT;
+
+    /** Relative weight of measurements events */
+    private int measurementsWeight = 80;
+
+    /** Relative weight of location events */
+    private int locationsWeight = 15;
+
+    /** Relative weight of alert events */
+    private int alertsWeight = 5;
+
+    /** Distribution of time between events */
+    private ArrivalDistribution arrivalDistribution = ArrivalDistribution.Constant;
+
+    /** Number of seconds to send events (zero runs until stopped) */
+    private int durationSecs = 0;
+
+    /** Indicates whether devices are registered before sending events */
+    private boolean registerDevices = true;
+
+    /** Seconds to wait after registration before sending events */
+    private int registrationWaitSecs = DEFAULT_REGISTRATION_WAIT_SECS;
+
+    /** Encodes generated events into payloads */
+    private IDeviceEventEncoder<byte[]> encoder;
+
+    /** Executor for generator threads */
+    private ExecutorService executor;
+
+    /** Number of events sent to the event source */
+    private AtomicLong emittedCount = new AtomicLong();
+
+    /** Number of events that could not be encoded or delivered */
+    private AtomicLong failedCount = new AtomicLong();
+
+    /** Time when event generation started */
+    private long startTime;
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.server.lifecycle.LifecycleComponent#start(com.sitewhere.spi
+     * .server.lifecycle.ILifecycleProgressMonitor)
+     */
+    @Override
+    public void start(ILifecycleProgressMonitor monitor) throws SiteWhereException {
+	if (getEncoder() == null) {
+	    throw new SiteWhereException("No event encoder configured for load generator.");
+	}
+	if ((getEventsPerSecond() <= 0) || (getNumThreads() <= 0) || (getDeviceCount() < getNumThreads())) {
+	    throw new SiteWhereException(
+		    "Load generator requires a positive event rate and at least one device per thread.");
+	}
+	if ((getMeasurementsWeight() + getLocationsWeight() + getAlertsWeight()) <= 0) {
+	    throw new SiteWhereException("Load generator event weights must not all be zero.");
+	}
+	emittedCount.set(0);
+	failedCount.set(0);
+	startTime = System.currentTimeMillis();
+
+	String[] specifications = (getSpecificationTokens() != null) ? getSpecificationTokens().split(",")
+		: new String[0];
+	this.executor = Executors.newFixedThreadPool(getNumThreads(), new GeneratorThreadFactory());
+	for (int i = 0; i < getNumThreads(); i++) {
+	    List<SimulatedDevice> devices = new ArrayList<SimulatedDevice>();
+	    for (int j = i; j < getDeviceCount(); j += getNumThreads()) {
+		String specification = (specifications.length > 0) ? specifications[j % specifications.length].trim()
+			: null;
+		devices.add(new SimulatedDevice(getHardwareIdPrefix() + j, specification));
+	    }
+	    executor.execute(new Generator(devices));
+	}
+	LOGGER.info("Load generator simulating " + getDeviceCount() + " devices at " + getEventsPerSecond()
+		+ " events/second using " + getNumThreads() + " threads.");
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.server.lifecycle.LifecycleComponent#stop(com.sitewhere.spi.
+     * server.lifecycle.ILifecycleProgressMonitor)
+     */
+    @Override
+    public void stop(ILifecycleProgressMonitor monitor) throws SiteWhereException {
+	if (executor != null) {
+	    executor.shutdownNow();
+	    executor = null;
+	    long elapsed = Math.max(1, System.currentTimeMillis() - startTime);
+	    LOGGER.info("Load generator sent " + emittedCount.get() + " events in " + (elapsed / 1000) + " seconds ("
+		    + ((emittedCount.get() * 1000) / elapsed) + " events/second). " + failedCount.get()
+		    + " events failed.");
+	}
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.device.communication.InboundEventReceiver#getLogger()
+     */
+    @Override
+    public Logger getLogger() {
+	return LOGGER;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.device.communication.InboundEventReceiver#getDisplayName()
+     */
+    @Override
+    public String getDisplayName() {
+	return "Load Generator (" + getDeviceCount() + " devices)";
+    }
+
+    /**
+     * Encode a request and deliver it to the event source.
+     * 
+     * @param hardwareId
+     * @param request
+     */
+    protected void send(String hardwareId, Object request) {
+	try {
+	    byte[] payload = getEncoder().encode(new DecodedDeviceRequest<Object>(hardwareId, null, request));
+	    onEventPayloadReceived(payload, METADATA);
+	    emittedCount.incrementAndGet();
+	} catch (Throwable e) {
+	    failedCount.incrementAndGet();
+	    LOGGER.debug("Load generator unable to send event.", e);
+	}
+    }
+
+    /**
+     * Create a registration request for a simulated device.
+     * 
+     * @param device
+     * @return
+     */
+    protected DeviceRegistrationRequest createRegistration(SimulatedDevice device) {
+	DeviceRegistrationRequest request = new DeviceRegistrationRequest();
+	request.setHardwareId(device.getHardwareId());
+	request.setSpecificationToken(device.getSpecificationToken());
+	request.setSiteToken(getSiteToken());
+	request.setEventDate(new Date());
+	return request;
+    }
+
+    /**
+     * Create a measurements request with random values.
+     * 
+     * @param random
+     * @param eventDate
+     * @return
+     */
+    protected DeviceMeasurementsCreateRequest createMeasurements(Random random, Date eventDate) {
+	DeviceMeasurementsCreateRequest request = new DeviceMeasurementsCreateRequest();
+	for (int i = 0; i < getMeasurementsPerEvent(); i++) {
+	    request.addOrReplaceMeasurement("mx" + i, 50.0 + (random.nextGaussian() * 10.0));
+	}
+	request.setEventDate(eventDate);
+	return request;
+    }
+
+    /**
+     * Create a location request near the center point.
+     * 
+     * @param random
+     * @param eventDate
+     * @return
+     */
+    protected DeviceLocationCreateRequest createLocation(Random random, Date eventDate) {
+	DeviceLocationCreateRequest request = new DeviceLocationCreateRequest();
+	request.setLatitude(CENTER_LATITUDE + ((random.nextDouble() - 0.5) * 0.1));
+	request.setLongitude(CENTER_LONGITUDE + ((random.nextDouble() - 0.5) * 0.1));
+	request.setElevation(0.0);
+	request.setEventDate(eventDate);
+	return request;
+    }
+
+    /**
+     * Create an alert request with a random level.
+     * 
+     * @param random
+     * @param eventDate
+     * @return
+     */
+    protected DeviceAlertCreateRequest createAlert(Random random, Date eventDate) {
+	DeviceAlertCreateRequest request = new DeviceAlertCreateRequest();
+	request.setSource(AlertSource.Device);
+	request.setLevel(AlertLevel.values()[random.nextInt(AlertLevel.values().length)]);
+	request.setType("loadgen.alert");
+	request.setMessage("Alert generated by load generator.");
+	request.setEventDate(eventDate);
+	return request;
+    }
+
+    /**
+     * Sends events for a subset of the simulated devices at its share of the
+     * aggregate rate.
+     * 
+     * @author Derek
+     */
+    private class Generator implements Runnable {
+
+	/** Devices handled by this generator */
+	private List<SimulatedDevice> devices;
+
+	/** Random source for this thread */
+	private Random random = new Random();
+
+	public Generator(List<SimulatedDevice> devices) {
+	    this.devices = devices;
+	}
+
+	@Override
+	public void run() {
+	    try {
+		if (isRegisterDevices()) {
+		    for (SimulatedDevice device : devices) {
+			send(device.getHardwareId(), createRegistration(device));
+		    }
+		    TimeUnit.SECONDS.sleep(getRegistrationWaitSecs());
+		}
+
+		double intervalNanos = (1000000000.0 * getNumThreads()) / getEventsPerSecond();
+		int totalWeight = getMeasurementsWeight() + getLocationsWeight() + getAlertsWeight();
+		long end = (getDurationSecs() > 0) ? System.nanoTime() + TimeUnit.SECONDS.toNanos(getDurationSecs())
+			: Long.MAX_VALUE;
+
+		// Schedule is kept on the monotonic clock and mapped to wall clock
+		// time for event dates.
+		long originMillis = System.currentTimeMillis();
+		long origin = System.nanoTime();
+		long next = origin;
+		while (!Thread.currentThread().isInterrupted()) {
+		    long now = System.nanoTime();
+		    if (now >= end) {
+			LOGGER.info("Load generator thread finished after " + getDurationSecs() + " seconds.");
+			return;
+		    }
+		    if (next > now) {
+			TimeUnit.NANOSECONDS.sleep(next - now);
+			continue;
+		    }
+		    SimulatedDevice device = devices.get(random.nextInt(devices.size()));
+		    Date scheduled = new Date(originMillis + TimeUnit.NANOSECONDS.toMillis(next - origin));
+		    int choice = random.nextInt(totalWeight);
+		    if (choice < getMeasurementsWeight()) {
+			send(device.getHardwareId(), createMeasurements(random, scheduled));
+		    } else if (choice < getMeasurementsWeight() + getLocationsWeight()) {
+			send(device.getHardwareId(), createLocation(random, scheduled));
+		    } else {
+			send(device.getHardwareId(), createAlert(random, scheduled));
+		    }
+		    next += getArrivalDistribution().nextInterval(random, intervalNanos);
+		}
+	    } catch (InterruptedException e) {
+		LOGGER.debug("Load generator thread interrupted.");
+	    }
+	}
+    }
+
+    /**
+     * Device simulated by the load generator.
+     * 
+     * @author Derek
+     */
+    private static class SimulatedDevice {
+
+	/** Hardware id */
+	private String hardwareId;
+
+	/** Specification token */
+	private String specificationToken;
+
+	public SimulatedDevice(String hardwareId, String specificationToken) {
+	    this.hardwareId = hardwareId;
+	    this.specificationToken = specificationToken;
+	}
+
+	public String getHardwareId() {
+	    return hardwareId;
+	}
+
+	public String getSpecificationToken() {
+	    return specificationToken;
+	}
+    }
+
+    /** Used for naming generator threads */
+    private class GeneratorThreadFactory implements ThreadFactory {
+
+	/** Counts threads */
+	private AtomicInteger counter = new AtomicInteger();
+
+	public Thread newThread(Runnable r) {
+	    return new Thread(r, "SiteWhere Load Generator " + counter.incrementAndGet());
+	}
+    }
+
+    /**
+     * Distribution of time between generated events.
+     * 
+     * @author Derek
+     */
+    public static enum ArrivalDistribution {
+
+	/** Events are evenly spaced */
+	Constant,
+
+	/** Events arrive as a Poisson process with exponential gaps */
+	Poisson;
+
+	/**
+	 * Get nanoseconds until the next event.
+	 * 
+	 * @param random
+	 * @param meanNanos
+	 * @return
+	 */
+	public long nextInterval(Random random, double meanNanos) {
+	    switch (this) {
+	    case Poisson: {
+		return (long) (-Math.log(1.0 - random.nextDouble()) * meanNanos);
+	    }
+	    default: {
+		return (long) meanNanos;
+	    }
+	    }
+	}
+    }
+
+    public int getDeviceCount() {
+	return deviceCount;
+    }
+
+    public void setDeviceCount(int deviceCount) {
+	this.deviceCount = deviceCount;
+    }
+
+    public String getSpecificationTokens() {
+	return specificationTokens;
+    }
+
+    public void setSpecificationTokens(String specificationTokens) {
+	this.specificationTokens = specificationTokens;
+    }
+
+    public String getSiteToken() {
+	return siteToken;
+    }
+
+    public void setSiteToken(String siteToken) {
+	this.siteToken = siteToken;
+    }
+
+    public String getHardwareIdPrefix() {
+	return hardwareIdPrefix;
+    }
+
+    public void setHardwareIdPrefix(String hardwareIdPrefix) {
+	this.hardwareIdPrefix = hardwareIdPrefix;
+    }
+
+    public int getEventsPerSecond() {
+	return eventsPerSecond;
+    }
+
+    public void setEventsPerSecond(int eventsPerSecond) {
+	this.eventsPerSecond = eventsPerSecond;
+    }
+
+    public int getNumThreads() {
+	return numThreads;
+    }
+
+    public void setNumThreads(int numThreads) {
+	this.numThreads = numThreads;
+    }
+
+    public int getMeasurementsPerEvent() {
+	return measurementsPerEvent;
+    }
+
+    public void setMeasurementsPerEvent(int measurementsPerEvent) {
+	this.measurementsPerEvent = measurementsPerEvent;
+    }
+
+    public int getMeasurementsWeight() {
+	return measurementsWeight;
+    }
+
+    public void setMeasurementsWeight(int measurementsWeight) {
+	this.measurementsWeight = measurementsWeight;
+    }
+
+    public int getLocationsWeight() {
+	return locationsWeight;
+    }
+
+    public void setLocationsWeight(int locationsWeight) {
+	this.locationsWeight = locationsWeight;
+    }
+
+    public int getAlertsWeight() {
+	return alertsWeight;
+    }
+
+    public void setAlertsWeight(int alertsWeight) {
+	this.alertsWeight = alertsWeight;
+    }
+
+    public ArrivalDistribution getArrivalDistribution() {
+	return arrivalDistribution;
+    }
+
+    public void setArrivalDistribution(ArrivalDistribution arrivalDistribution) {
+	this.arrivalDistribution = arrivalDistribution;
+    }
+
+    public int getDurationSecs() {
+	return durationSecs;
+    }
+
+    public void setDurationSecs(int durationSecs) {
+	this.durationSecs = durationSecs;
+    }
+
+    public boolean isRegisterDevices() {
+	return registerDevices;
+    }
+
+    public void setRegisterDevices(boolean registerDevices) {
+	this.registerDevices = registerDevices;
+    }
+
+    public int getRegistrationWaitSecs() {
+	return registrationWaitSecs;
+    }
+
+    public void setRegistrationWaitSecs(int registrationWaitSecs) {
+	this.registrationWaitSecs = registrationWaitSecs;
+    }
+
+    public IDeviceEventEncoder<byte[]> getEncoder() {
+	return encoder;
+    }
+
+    public void setEncoder(IDeviceEventEncoder<byte[]> encoder) {
+	this.encoder = encoder;
+    }
+
+    public long getEmittedCount() {
+	return emittedCount.get();
+    }
+
+    public long getFailedCount() {
+	return failedCount.get();
+    }
+}
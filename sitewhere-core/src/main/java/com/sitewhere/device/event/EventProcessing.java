@@ -12,6 +12,7 @@ import org.apache.logging.log4j.Logger;
 
 import com.sitewhere.device.communication.BlockingQueueInboundProcessingStrategy;
 import com.sitewhere.device.communication.BlockingQueueOutboundProcessingStrategy;
+import com.sitewhere.device.event.replay.EventReplayManager;
 import com.sitewhere.server.lifecycle.TenantLifecycleComponent;
 import com.sitewhere.spi.SiteWhereException;
 import com.sitewhere.spi.device.communication.IInboundProcessingStrategy;
@@ -19,6 +20,7 @@ import com.sitewhere.spi.device.communication.IOutboundProcessingStrategy;
 import com.sitewhere.spi.device.event.IEventProcessing;
 import com.sitewhere.spi.device.event.processor.IInboundEventProcessorChain;
 import com.sitewhere.spi.device.event.processor.IOutboundEventProcessorChain;
+import com.sitewhere.spi.device.event.replay.IEventReplayManager;
 import com.sitewhere.spi.server.lifecycle.ILifecycleProgressMonitor;
 import com.sitewhere.spi.server.lifecycle.LifecycleComponentType;
 
@@ -44,6 +46,9 @@ public class EventProcessing extends TenantLifecycleComponent implements IEventP
     /** Configured outbound event processor chain */
     private IOutboundEventProcessorChain outboundEventProcessorChain;
 
+    /** Manager for replaying stored events */
+    private IEventReplayManager eventReplayManager = new EventReplayManager();
+
     public EventProcessing() {
 	super(LifecycleComponentType.EventProcessing);
     }
@@ -81,6 +86,11 @@ public class EventProcessing extends TenantLifecycleComponent implements IEventP
 	    throw new SiteWhereException("No inbound processing strategy configured for communication subsystem.");
 	}
 	startNestedComponent(getInboundProcessingStrategy(), monitor, true);
+
+	// Start event replay manager.
+	if (getEventReplayManager() != null) {
+	    startNestedComponent(getEventReplayManager(), monitor, "Event replay manager startup failed.", true);
+	}
     }
 
     /*
@@ -93,6 +103,11 @@ public class EventProcessing extends TenantLifecycleComponent implements IEventP
     @Override
     public void stop(ILifecycleProgressMonitor monitor) throws SiteWhereException {
 
+	// Stop event replays before the processors they feed.
+	if (getEventReplayManager() != null) {
+	    getEventReplayManager().lifecycleStop(monitor);
+	}
+
 	// Stop inbound processing strategy.
 	if (getInboundProcessingStrategy() != null) {
 	    getInboundProcessingStrategy().lifecycleStop(monitor);
@@ -154,4 +169,12 @@ public class EventProcessing extends TenantLifecycleComponent implements IEventP
     public void setOutboundEventProcessorChain(IOutboundEventProcessorChain outboundEventProcessorChain) {
 	this.outboundEventProcessorChain = outboundEventProcessorChain;
     }
+
+    public IEventReplayManager getEventReplayManager() {
+	return eventReplayManager;
+    }
+
+    public void setEventReplayManager(IEventReplayManager eventReplayManager) {
+	this.eventReplayManager = eventReplayManager;
+    }
 }
\ No newline at end of file
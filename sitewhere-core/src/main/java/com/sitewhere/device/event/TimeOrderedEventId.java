@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.device.event;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates and decodes event ids that embed the event time and device
+ * assignment token. Ids have the form
+ * <code>{time}{sequence}.{assignmentToken}</code> where time is 12 hex digits
+ * of epoch milliseconds and sequence is 6 hex digits that separate events for
+ * the same assignment and millisecond. Ids for the same assignment sort in time
+ * order, and the time can be read back without allocating. Event stores that
+ * can not look up an event directly by id can use the embedded values to limit
+ * the search to a single assignment and instant.
+ * 
+ * @author Derek
+ */
+public class TimeOrderedEventId {
+
+    /** Number of hex digits for event time */
+    private static final int TIME_DIGITS = 12;
+
+    /** Number of hex digits for sequence number */
+    private static final int SEQUENCE_DIGITS = 6;
+
+    /** Length of time and sequence prefix */
+    private static final int PREFIX_LENGTH = TIME_DIGITS + SEQUENCE_DIGITS;
+
+    /** Separates prefix from assignment token */
+    public static final char SEPARATOR = '.';
+
+    /** Characters used for hex digits */
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /** Sequence starts at a random value so nodes are unlikely to collide */
+    private static final AtomicInteger SEQUENCE = new AtomicInteger(new Random().nextInt());
+
+    /**
+     * Create a new id for an event.
+     * 
+     * @param time
+     * @param assignmentToken
+     * @return
+     */
+    public static String create(long time, String assignmentToken) {
+	char[] chars = new char[PREFIX_LENGTH + 1 + assignmentToken.length()];
+	writeHex(chars, 0, time, TIME_DIGITS);
+	writeHex(chars, TIME_DIGITS, SEQUENCE.getAndIncrement(), SEQUENCE_DIGITS);
+	chars[PREFIX_LENGTH] = SEPARATOR;
+	assignmentToken.getChars(0, assignmentToken.length(), chars, PREFIX_LENGTH + 1);
+	return new String(chars);
+    }
+
+    /**
+     * Indicates whether an id was created by this class. Ids in other formats
+     * such as UUIDs return false.
+     * 
+     * @param id
+     * @return
+     */
+    public static boolean isTimeOrdered(String id) {
+	if ((id == null) || (id.length() <= PREFIX_LENGTH + 1) || (id.charAt(PREFIX_LENGTH) != SEPARATOR)) {
+	    return false;
+	}
+	for (int i = 0; i < PREFIX_LENGTH; i++) {
+	    if (Character.digit(id.charAt(i), 16) < 0) {
+		return false;
+	    }
+	}
+	return true;
+    }
+
+    /**
+     * Get event time in epoch milliseconds from a time-ordered id.
+     * 
+     * @param id
+     * @return
+     */
+    public static long getTime(String id) {
+	return readHex(id, 0, TIME_DIGITS);
+    }
+
+    /**
+     * Get sequence number from a time-ordered id.
+     * 
+     * @param id
+     * @return
+     */
+    public static int getSequence(String id) {
+	return (int) readHex(id, TIME_DIGITS, SEQUENCE_DIGITS);
+    }
+
+    /**
+     * Get device assignment token from a time-ordered id.
+     * 
+     * @param id
+     * @return
+     */
+    public static String getAssignmentToken(String id) {
+	return id.substring(PREFIX_LENGTH + 1);
+    }
+
+    /**
+     * Write the low digits of a value as lowercase hex.
+     * 
+     * @param chars
+     * @param offset
+     * @param value
+     * @param digits
+     */
+    protected static void writeHex(char[] chars, int offset, long value, int digits) {
+	for (int i = digits - 1; i >= 0; i--) {
+	    chars[offset + i] = HEX[(int) (value & 0xf)];
+	    value >>>= 4;
+	}
+    }
+
+    /**
+     * Read a hex value from part of a string.
+     * 
+     * @param id
+     * @param offset
+     * @param digits
+     * @return
+     */
+    protected static long readHex(String id, int offset, int digits) {
+	long value = 0;
+	for (int i = offset; i < offset + digits; i++) {
+	    value = (value << 4) | Character.digit(id.charAt(i), 16);
+	}
+	return value;
+    }
+}
@@ -0,0 +1,679 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.device.event.replay;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import com.google.common.util.concurrent.RateLimiter;
+import com.sitewhere.rest.model.device.event.replay.EventReplayCreateRequest;
+import com.sitewhere.rest.model.search.DateRangeSearchCriteria;
+import com.sitewhere.rest.model.search.SearchCriteria;
+import com.sitewhere.rest.model.search.device.AssignmentSearchCriteria;
+import com.sitewhere.server.SiteWhereServer;
+import com.sitewhere.spi.SiteWhereException;
+import com.sitewhere.spi.device.IDeviceAssignment;
+import com.sitewhere.spi.device.IDeviceManagement;
+import com.sitewhere.spi.device.ISite;
+import com.sitewhere.spi.device.event.DeviceEventType;
+import com.sitewhere.spi.device.event.IDeviceAlert;
+import com.sitewhere.spi.device.event.IDeviceCommandInvocation;
+import com.sitewhere.spi.device.event.IDeviceCommandResponse;
+import com.sitewhere.spi.device.event.IDeviceEvent;
+import com.sitewhere.spi.device.event.IDeviceEventManagement;
+import com.sitewhere.spi.device.event.IDeviceLocation;
+import com.sitewhere.spi.device.event.IDeviceMeasurements;
+import com.sitewhere.spi.device.event.IDeviceStateChange;
+import com.sitewhere.spi.device.event.processor.IOutboundEventProcessor;
+import com.sitewhere.spi.device.event.replay.EventReplayStatus;
+import com.sitewhere.spi.device.event.replay.IEventReplay;
+import com.sitewhere.spi.device.event.replay.IEventReplayCreateRequest;
+import com.sitewhere.spi.search.ISearchResults;
+import com.sitewhere.spi.server.lifecycle.LifecycleStatus;
+
+/**
+ * Replays stored events for one {@link IEventReplayCreateRequest}. The work is
+ * split into a partition for each assignment and event type. Worker threads
+ * take partitions from a shared queue and replay their events oldest first.
+ * Event queries return the newest events first, so each partition walks
+ * forward through time windows that start at the date of the last delivered
+ * event. A window whose events fit in one page is reversed and delivered. A
+ * window with more events than a page is halved and read again, and a window
+ * with few events is doubled for the next read. Events at the start date that
+ * were already delivered are skipped, so events stored while the replay runs
+ * do not shift the position. If the request has no start date, the replay
+ * starts at the oldest stored event. If it has no end date, the replay ends
+ * at the time it was created.
+ * 
+ * Each partition records the date of the last delivered event, so a paused or
+ * failed replay resumes where it stopped. These checkpoints are held in memory
+ * only. A replay that is interrupted by a server restart is lost and must be
+ * started again, and events it already delivered will be delivered again.
+ * 
+ * @author Derek
+ */
+public class EventReplayJob implements IEventReplay {
+
+    /** Static logger instance */
+    private static Logger LOGGER = LogManager.getLogger();
+
+    /** Event types replayed when none are specified */
+    public static final List<DeviceEventType> SUPPORTED_TYPES = Arrays.asList(DeviceEventType.Measurements,
+	    DeviceEventType.Location, DeviceEventType.Alert, DeviceEventType.CommandInvocation,
+	    DeviceEventType.CommandResponse, DeviceEventType.StateChange);
+
+    /** Page size used when resolving assignments */
+    private static final int ASSIGNMENT_PAGE_SIZE = 500;
+
+    /** Length of the first time window read for a partition */
+    private static final long INITIAL_WINDOW_MS = 60 * 60 * 1000;
+
+    /** Longest time window read for a partition */
+    private static final long MAX_WINDOW_MS = 365L * 24 * 60 * 60 * 1000;
+
+    /** Unique id */
+    private String id;
+
+    /** Request that started the replay */
+    private EventReplayCreateRequest request;
+
+    /** Device management implementation */
+    private IDeviceManagement deviceManagement;
+
+    /** Device event management implementation */
+    private IDeviceEventManagement eventManagement;
+
+    /** Processors that receive events */
+    private List<IOutboundEventProcessor> processors;
+
+    /** Current status */
+    private volatile EventReplayStatus status = EventReplayStatus.Initializing;
+
+    /** Date replay was created */
+    private Date createdDate = new Date();
+
+    /** Date replay ended */
+    private volatile Date endedDate;
+
+    /** All partitions */
+    private List<Partition> partitions = new ArrayList<Partition>();
+
+    /** Partitions not yet completed */
+    private Queue<Partition> pending = new ConcurrentLinkedQueue<Partition>();
+
+    /** Indicates partitions have been resolved */
+    private boolean planned;
+
+    /** Number of partitions completed */
+    private AtomicInteger partitionsCompleted = new AtomicInteger();
+
+    /** Number of workers currently running */
+    private AtomicInteger activeWorkers = new AtomicInteger();
+
+    /** Number of events replayed */
+    private AtomicLong eventsReplayed = new AtomicLong();
+
+    /** Number of events that failed */
+    private AtomicLong eventsFailed = new AtomicLong();
+
+    /** Last error message */
+    private volatile String lastError;
+
+    /** Limits events per second (null if unlimited) */
+    private RateLimiter rateLimiter;
+
+    /** Threads used by the replay */
+    private ExecutorService pool;
+
+    public EventReplayJob(String id, IEventReplayCreateRequest request, IDeviceManagement deviceManagement,
+	    IDeviceEventManagement eventManagement, List<IOutboundEventProcessor> processors) {
+	this.id = id;
+	this.request = EventReplayCreateRequest.copy(request);
+	this.deviceManagement = deviceManagement;
+	this.eventManagement = eventManagement;
+	this.processors = processors;
+	if (request.getMaxEventsPerSecond() > 0) {
+	    this.rateLimiter = RateLimiter.create(request.getMaxEventsPerSecond());
+	}
+	this.pool = Executors.newCachedThreadPool(new WorkersThreadFactory());
+    }
+
+    /**
+     * Start resolving partitions. Workers are started once all partitions are
+     * known.
+     */
+    public synchronized void start() {
+	status = EventReplayStatus.Initializing;
+	pool.execute(new Planner());
+    }
+
+    /**
+     * Pause the replay. Workers stop after delivering the current event.
+     */
+    public synchronized void pause() {
+	if ((status == EventReplayStatus.Running) || (status == EventReplayStatus.Initializing)) {
+	    status = EventReplayStatus.Paused;
+	    LOGGER.info("Paused event replay " + getId() + ".");
+	}
+    }
+
+    /**
+     * Resume a paused or failed replay from partition checkpoints.
+     */
+    public synchronized void resume() {
+	if ((status != EventReplayStatus.Paused) && (status != EventReplayStatus.Failed)) {
+	    return;
+	}
+	if (planned) {
+	    status = EventReplayStatus.Running;
+	    startWorkers();
+	} else if (status == EventReplayStatus.Failed) {
+	    start();
+	} else {
+	    status = EventReplayStatus.Initializing;
+	}
+	LOGGER.info("Resumed event replay " + getId() + ".");
+    }
+
+    /**
+     * Cancel the replay and release its threads.
+     */
+    public synchronized void cancel() {
+	if ((status == EventReplayStatus.Completed) || (status == EventReplayStatus.Canceled)) {
+	    return;
+	}
+	status = EventReplayStatus.Canceled;
+	endedDate = new Date();
+	pool.shutdownNow();
+	LOGGER.info("Canceled event replay " + getId() + ".");
+    }
+
+    /**
+     * Indicates whether the replay has ended and will not run again.
+     * 
+     * @return
+     */
+    public boolean isEnded() {
+	return (status == EventReplayStatus.Completed) || (status == EventReplayStatus.Canceled);
+    }
+
+    /**
+     * Start workers for pending partitions.
+     */
+    protected void startWorkers() {
+	int count = Math.min(Math.max(1, request.getThreadCount()), Math.max(1, pending.size()));
+	for (int i = 0; i < count; i++) {
+	    activeWorkers.incrementAndGet();
+	    pool.execute(new Worker());
+	}
+    }
+
+    /**
+     * Called as each worker exits. The last worker marks the replay complete
+     * if every partition was replayed.
+     */
+    protected synchronized void onWorkerFinished() {
+	if ((activeWorkers.decrementAndGet() == 0) && (status == EventReplayStatus.Running)
+		&& (partitionsCompleted.get() == partitions.size())) {
+	    status = EventReplayStatus.Completed;
+	    endedDate = new Date();
+	    pool.shutdown();
+	    LOGGER.info("Completed event replay " + getId() + ". Replayed " + eventsReplayed.get() + " events with "
+		    + eventsFailed.get() + " failures.");
+	}
+    }
+
+    /**
+     * Record an error that stops the replay.
+     * 
+     * @param message
+     * @param e
+     */
+    protected synchronized void fail(String message, Throwable e) {
+	LOGGER.error(message, e);
+	lastError = message + " " + e.getMessage();
+	if ((status == EventReplayStatus.Running) || (status == EventReplayStatus.Initializing)) {
+	    status = EventReplayStatus.Failed;
+	}
+    }
+
+    /**
+     * Resolve the assignment tokens to be replayed.
+     * 
+     * @return
+     * @throws SiteWhereException
+     */
+    protected List<String> resolveAssignmentTokens() throws SiteWhereException {
+	if ((request.getAssignmentTokens() != null) && (!request.getAssignmentTokens().isEmpty())) {
+	    return request.getAssignmentTokens();
+	}
+	List<String> tokens = new ArrayList<String>();
+	if (request.getSiteToken() != null) {
+	    addAssignmentTokens(request.getSiteToken(), tokens);
+	    return tokens;
+	}
+	int page = 1;
+	while (true) {
+	    ISearchResults<ISite> sites = deviceManagement
+		    .listSites(new SearchCriteria(page++, ASSIGNMENT_PAGE_SIZE));
+	    for (ISite site : sites.getResults()) {
+		addAssignmentTokens(site.getToken(), tokens);
+	    }
+	    if (sites.getResults().size() < ASSIGNMENT_PAGE_SIZE) {
+		return tokens;
+	    }
+	}
+    }
+
+    /**
+     * Add tokens for all current and past assignments for a site.
+     * 
+     * @param siteToken
+     * @param tokens
+     * @throws SiteWhereException
+     */
+    protected void addAssignmentTokens(String siteToken, List<String> tokens) throws SiteWhereException {
+	int page = 1;
+	while (true) {
+	    ISearchResults<IDeviceAssignment> assignments = deviceManagement.getDeviceAssignmentsForSite(siteToken,
+		    new AssignmentSearchCriteria(page++, ASSIGNMENT_PAGE_SIZE));
+	    for (IDeviceAssignment assignment : assignments.getResults()) {
+		tokens.add(assignment.getToken());
+	    }
+	    if (assignments.getResults().size() < ASSIGNMENT_PAGE_SIZE) {
+		return;
+	    }
+	}
+    }
+
+    /**
+     * Replay events for a partition starting at its checkpoint. Events are
+     * delivered oldest first by reading one time window at a time.
+     * 
+     * @param partition
+     * @return true if all events were replayed, false if the replay was
+     *         stopped
+     * @throws SiteWhereException
+     */
+    protected boolean replay(Partition partition) throws SiteWhereException {
+	while (!partition.startDate.after(partition.endDate)) {
+	    long start = partition.startDate.getTime();
+	    long windowEnd = Math.min(partition.endDate.getTime(), start + partition.windowMs - 1);
+	    int requested = request.getPageSize() + partition.deliveredAtStartDate.size();
+	    DateRangeSearchCriteria criteria = new DateRangeSearchCriteria(1, requested, partition.startDate,
+		    new Date(windowEnd));
+	    List<? extends IDeviceEvent> events = listEvents(partition, criteria).getResults();
+
+	    // Window holds more than a page, so read a shorter one. Events that
+	    // share a single millisecond are read by growing the page instead.
+	    boolean complete = (events.size() < requested);
+	    if ((!complete) && (windowEnd > start)) {
+		partition.windowMs = Math.max(1, (windowEnd - start + 1) / 2);
+		continue;
+	    }
+	    for (int i = events.size() - 1; i >= 0; i--) {
+		IDeviceEvent event = events.get(i);
+		if (partition.startDate.equals(event.getEventDate())
+			&& partition.deliveredAtStartDate.contains(event.getId())) {
+		    continue;
+		}
+		if (status != EventReplayStatus.Running) {
+		    return false;
+		}
+		if (rateLimiter != null) {
+		    rateLimiter.acquire();
+		}
+		deliver(event);
+		if (!partition.startDate.equals(event.getEventDate())) {
+		    partition.startDate = event.getEventDate();
+		    partition.deliveredAtStartDate.clear();
+		}
+		partition.deliveredAtStartDate.add(event.getId());
+	    }
+	    if (complete) {
+		if (windowEnd >= partition.endDate.getTime()) {
+		    return true;
+		}
+		partition.startDate = new Date(windowEnd + 1);
+		partition.deliveredAtStartDate.clear();
+		if (events.size() < (request.getPageSize() / 2)) {
+		    partition.windowMs = Math.min(MAX_WINDOW_MS, partition.windowMs * 2);
+		}
+	    }
+	}
+	return true;
+    }
+
+    /**
+     * List a page of events for a partition.
+     * 
+     * @param partition
+     * @param criteria
+     * @return
+     * @throws SiteWhereException
+     */
+    protected ISearchResults<? extends IDeviceEvent> listEvents(Partition partition,
+	    DateRangeSearchCriteria criteria) throws SiteWhereException {
+	switch (partition.eventType) {
+	case Measurements: {
+	    return eventManagement.listDeviceMeasurements(partition.assignmentToken, criteria);
+	}
+	case Location: {
+	    return eventManagement.listDeviceLocations(partition.assignmentToken, criteria);
+	}
+	case Alert: {
+	    return eventManagement.listDeviceAlerts(partition.assignmentToken, criteria);
+	}
+	case CommandInvocation: {
+	    return eventManagement.listDeviceCommandInvocations(partition.assignmentToken, criteria);
+	}
+	case CommandResponse: {
+	    return eventManagement.listDeviceCommandResponses(partition.assignmentToken, criteria);
+	}
+	case StateChange: {
+	    return eventManagement.listDeviceStateChanges(partition.assignmentToken, criteria);
+	}
+	default: {
+	    throw new SiteWhereException("Event type can not be replayed: " + partition.eventType);
+	}
+	}
+    }
+
+    /**
+     * Pass an event to each processor. Processor failures are counted but do
+     * not stop the replay.
+     * 
+     * @param event
+     */
+    protected void deliver(IDeviceEvent event) {
+	for (IOutboundEventProcessor processor : processors) {
+	    if (processor.getLifecycleStatus() != LifecycleStatus.Started) {
+		continue;
+	    }
+	    try {
+		switch (event.getEventType()) {
+		case Measurements: {
+		    processor.onMeasurements((IDeviceMeasurements) event);
+		    break;
+		}
+		case Location: {
+		    processor.onLocation((IDeviceLocation) event);
+		    break;
+		}
+		case Alert: {
+		    processor.onAlert((IDeviceAlert) event);
+		    break;
+		}
+		case CommandInvocation: {
+		    processor.onCommandInvocation((IDeviceCommandInvocation) event);
+		    break;
+		}
+		case CommandResponse: {
+		    processor.onCommandResponse((IDeviceCommandResponse) event);
+		    break;
+		}
+		case StateChange: {
+		    processor.onStateChange((IDeviceStateChange) event);
+		    break;
+		}
+		default: {
+		    throw new SiteWhereException("Unknown device event type in replay: " + event.getClass().getName());
+		}
+		}
+	    } catch (Throwable e) {
+		eventsFailed.incrementAndGet();
+		lastError = processor.getComponentName() + ": " + e.getMessage();
+		LOGGER.debug("Event replay " + getId() + " failed for processor " + processor.getComponentName() + ".",
+			e);
+	    }
+	}
+	eventsReplayed.incrementAndGet();
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.event.replay.IEventReplay#getId()
+     */
+    public String getId() {
+	return id;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.event.replay.IEventReplay#getRequest()
+     */
+    public IEventReplayCreateRequest getRequest() {
+	return request;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.event.replay.IEventReplay#getStatus()
+     */
+    public EventReplayStatus getStatus() {
+	return status;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.event.replay.IEventReplay#getCreatedDate()
+     */
+    public Date getCreatedDate() {
+	return createdDate;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.event.replay.IEventReplay#getEndedDate()
+     */
+    public Date getEndedDate() {
+	return endedDate;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.event.replay.IEventReplay#getProcessorNames()
+     */
+    public List<String> getProcessorNames() {
+	List<String> names = new ArrayList<String>();
+	for (IOutboundEventProcessor processor : processors) {
+	    names.add(processor.getComponentName());
+	}
+	return names;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.event.replay.IEventReplay#getPartitionCount()
+     */
+    public synchronized int getPartitionCount() {
+	return partitions.size();
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.event.replay.IEventReplay#
+     * getPartitionsCompleted()
+     */
+    public int getPartitionsCompleted() {
+	return partitionsCompleted.get();
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.event.replay.IEventReplay#getEventsReplayed()
+     */
+    public long getEventsReplayed() {
+	return eventsReplayed.get();
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.event.replay.IEventReplay#getEventsFailed()
+     */
+    public long getEventsFailed() {
+	return eventsFailed.get();
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.event.replay.IEventReplay#getLastError()
+     */
+    public String getLastError() {
+	return lastError;
+    }
+
+    /**
+     * Events for one assignment and event type, along with the position of the
+     * last delivered event.
+     * 
+     * @author Derek
+     */
+    private static class Partition {
+
+	/** Assignment token */
+	private String assignmentToken;
+
+	/** Event type */
+	private DeviceEventType eventType;
+
+	/** Date of the last delivered event or start of the next window */
+	private Date startDate;
+
+	/** Date of the last event to replay */
+	private Date endDate;
+
+	/** Ids of delivered events with a date equal to the start date */
+	private Set<String> deliveredAtStartDate = new HashSet<String>();
+
+	/** Length of the next time window to read */
+	private long windowMs = INITIAL_WINDOW_MS;
+
+	public Partition(String assignmentToken, DeviceEventType eventType, Date startDate, Date endDate) {
+	    this.assignmentToken = assignmentToken;
+	    this.eventType = eventType;
+	    this.startDate = startDate;
+	    this.endDate = endDate;
+	}
+    }
+
+    /** Used for naming replay threads */
+    private class WorkersThreadFactory implements ThreadFactory {
+
+	/** Counts threads */
+	private AtomicInteger counter = new AtomicInteger();
+
+	public Thread newThread(Runnable r) {
+	    return new Thread(r, "SiteWhere Event Replay " + getId() + " Worker " + counter.incrementAndGet());
+	}
+    }
+
+    /**
+     * Resolves partitions and starts workers.
+     * 
+     * @author Derek
+     */
+    private class Planner implements Runnable {
+
+	@Override
+	public void run() {
+	    try {
+		SecurityContextHolder.getContext().setAuthentication(SiteWhereServer.getSystemAuthentication());
+		List<DeviceEventType> types = ((request.getEventTypes() != null)
+			&& (!request.getEventTypes().isEmpty())) ? request.getEventTypes() : SUPPORTED_TYPES;
+		Date startDate = (request.getStartDate() != null) ? request.getStartDate() : new Date(0);
+		Date endDate = (request.getEndDate() != null) ? request.getEndDate() : createdDate;
+		List<Partition> resolved = new ArrayList<Partition>();
+		for (String token : resolveAssignmentTokens()) {
+		    for (DeviceEventType type : types) {
+			resolved.add(new Partition(token, type, startDate, endDate));
+		    }
+		}
+		synchronized (EventReplayJob.this) {
+		    partitions.addAll(resolved);
+		    pending.addAll(resolved);
+		    planned = true;
+		    LOGGER.info("Event replay " + getId() + " will scan " + partitions.size() + " partitions.");
+		    if (status == EventReplayStatus.Initializing) {
+			status = EventReplayStatus.Running;
+			activeWorkers.incrementAndGet();
+			startWorkers();
+			onWorkerFinished();
+		    }
+		}
+	    } catch (Throwable e) {
+		fail("Unable to resolve partitions for event replay " + getId() + ".", e);
+	    }
+	}
+    }
+
+    /**
+     * Replays partitions until none are left or the replay is stopped.
+     * 
+     * @author Derek
+     */
+    private class Worker implements Runnable {
+
+	@Override
+	public void run() {
+	    try {
+		SecurityContextHolder.getContext().setAuthentication(SiteWhereServer.getSystemAuthentication());
+		while (status == EventReplayStatus.Running) {
+		    Partition partition = pending.poll();
+		    if (partition == null) {
+			break;
+		    }
+		    try {
+			if (replay(partition)) {
+			    partitionsCompleted.incrementAndGet();
+			} else {
+			    pending.add(partition);
+			}
+		    } catch (Throwable e) {
+			pending.add(partition);
+			fail("Unable to read events for assignment '" + partition.assignmentToken + "' in event replay "
+				+ getId() + ".", e);
+		    }
+		}
+	    } catch (SiteWhereException e) {
+		fail("Unable to use system authentication for event replay " + getId() + ".", e);
+	    } finally {
+		onWorkerFinished();
+	    }
+	}
+    }
+}
@@ -0,0 +1,268 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.device.event.replay;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.sitewhere.SiteWhere;
+import com.sitewhere.server.lifecycle.TenantLifecycleComponent;
+import com.sitewhere.spi.SiteWhereException;
+import com.sitewhere.spi.SiteWhereSystemException;
+import com.sitewhere.spi.device.event.DeviceEventType;
+import com.sitewhere.spi.device.event.processor.IOutboundEventProcessor;
+import com.sitewhere.spi.device.event.processor.IOutboundEventProcessorChain;
+import com.sitewhere.spi.device.event.replay.IEventReplay;
+import com.sitewhere.spi.device.event.replay.IEventReplayCreateRequest;
+import com.sitewhere.spi.device.event.replay.IEventReplayManager;
+import com.sitewhere.spi.error.ErrorCode;
+import com.sitewhere.spi.error.ErrorLevel;
+import com.sitewhere.spi.server.lifecycle.ILifecycleProgressMonitor;
+import com.sitewhere.spi.server.lifecycle.LifecycleComponentType;
+
+/**
+ * Default implementation of {@link IEventReplayManager}. Each replay runs on
+ * its own threads and reads events directly from device event management, so
+ * the inbound pipeline and outbound processing strategy are not involved.
+ * Replays are kept in memory on the node where they were started.
+ * 
+ * @author Derek
+ */
+public class EventReplayManager extends TenantLifecycleComponent implements IEventReplayManager {
+
+    /** Static logger instance */
+    private static Logger LOGGER = LogManager.getLogger();
+
+    /** Maximum number of ended replays kept for monitoring */
+    private static final int MAX_ENDED_REPLAYS = 50;
+
+    /** Replays by id in order created */
+    private Map<String, EventReplayJob> replays = new LinkedHashMap<String, EventReplayJob>();
+
+    public EventReplayManager() {
+	super(LifecycleComponentType.EventReplayManager);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.server.lifecycle.ILifecycleComponent#start(com.
+     * sitewhere.spi.server.lifecycle.ILifecycleProgressMonitor)
+     */
+    @Override
+    public void start(ILifecycleProgressMonitor monitor) throws SiteWhereException {
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.server.lifecycle.ILifecycleComponent#stop(com.sitewhere
+     * .spi.server.lifecycle.ILifecycleProgressMonitor)
+     */
+    @Override
+    public void stop(ILifecycleProgressMonitor monitor) throws SiteWhereException {
+	synchronized (replays) {
+	    for (EventReplayJob replay : replays.values()) {
+		replay.cancel();
+	    }
+	    replays.clear();
+	}
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.server.lifecycle.ILifecycleComponent#getLogger()
+     */
+    @Override
+    public Logger getLogger() {
+	return LOGGER;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.event.replay.IEventReplayManager#
+     * startReplay(com.sitewhere.spi.device.event.replay.
+     * IEventReplayCreateRequest)
+     */
+    @Override
+    public IEventReplay startReplay(IEventReplayCreateRequest request) throws SiteWhereException {
+	if (request.getPageSize() <= 0) {
+	    throw new SiteWhereException("Event replay page size must be greater than zero.");
+	}
+	if (request.getEventTypes() != null) {
+	    for (DeviceEventType type : request.getEventTypes()) {
+		if (!EventReplayJob.SUPPORTED_TYPES.contains(type)) {
+		    throw new SiteWhereException("Event type can not be replayed: " + type);
+		}
+	    }
+	}
+	List<IOutboundEventProcessor> processors = resolveProcessors(request.getProcessors());
+	if (processors.isEmpty()) {
+	    throw new SiteWhereException("No outbound event processors available for event replay.");
+	}
+	EventReplayJob replay = new EventReplayJob(UUID.randomUUID().toString(), request,
+		SiteWhere.getServer().getDeviceManagement(getTenant()),
+		SiteWhere.getServer().getDeviceEventManagement(getTenant()), processors);
+	synchronized (replays) {
+	    replays.put(replay.getId(), replay);
+	    removeEndedReplays();
+	}
+	replay.start();
+	LOGGER.info("Started event replay " + replay.getId() + " for processors " + replay.getProcessorNames() + ".");
+	return replay;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.event.replay.IEventReplayManager#getReplay(java.
+     * lang.String)
+     */
+    @Override
+    public IEventReplay getReplay(String id) throws SiteWhereException {
+	synchronized (replays) {
+	    return replays.get(id);
+	}
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.event.replay.IEventReplayManager#listReplays()
+     */
+    @Override
+    public List<IEventReplay> listReplays() throws SiteWhereException {
+	synchronized (replays) {
+	    return new ArrayList<IEventReplay>(replays.values());
+	}
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.event.replay.IEventReplayManager#pauseReplay(
+     * java.lang.String)
+     */
+    @Override
+    public IEventReplay pauseReplay(String id) throws SiteWhereException {
+	EventReplayJob replay = assertReplay(id);
+	replay.pause();
+	return replay;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.event.replay.IEventReplayManager#resumeReplay(
+     * java.lang.String)
+     */
+    @Override
+    public IEventReplay resumeReplay(String id) throws SiteWhereException {
+	EventReplayJob replay = assertReplay(id);
+	replay.resume();
+	return replay;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.event.replay.IEventReplayManager#cancelReplay(
+     * java.lang.String)
+     */
+    @Override
+    public IEventReplay cancelReplay(String id) throws SiteWhereException {
+	EventReplayJob replay = assertReplay(id);
+	replay.cancel();
+	return replay;
+    }
+
+    /**
+     * Find the outbound event processors matching the given component ids or
+     * names. All processors are returned if none are specified.
+     * 
+     * @param selectors
+     * @return
+     * @throws SiteWhereException
+     */
+    protected List<IOutboundEventProcessor> resolveProcessors(List<String> selectors) throws SiteWhereException {
+	IOutboundEventProcessorChain chain = SiteWhere.getServer().getEventProcessing(getTenant())
+		.getOutboundEventProcessorChain();
+	List<IOutboundEventProcessor> all = (chain != null) ? chain.getProcessors()
+		: new ArrayList<IOutboundEventProcessor>();
+	if ((selectors == null) || (selectors.isEmpty())) {
+	    return new ArrayList<IOutboundEventProcessor>(all);
+	}
+	List<IOutboundEventProcessor> matches = new ArrayList<IOutboundEventProcessor>();
+	for (String selector : selectors) {
+	    boolean found = false;
+	    for (IOutboundEventProcessor processor : all) {
+		if (selector.equals(processor.getComponentId()) || selector.equals(processor.getComponentName())) {
+		    if (!matches.contains(processor)) {
+			matches.add(processor);
+		    }
+		    found = true;
+		}
+	    }
+	    if (!found) {
+		throw new SiteWhereException("No outbound event processor found for '" + selector + "'.");
+	    }
+	}
+	return matches;
+    }
+
+    /**
+     * Get a replay by id or throw an exception if not found.
+     * 
+     * @param id
+     * @return
+     * @throws SiteWhereException
+     */
+    protected EventReplayJob assertReplay(String id) throws SiteWhereException {
+	synchronized (replays) {
+	    EventReplayJob replay = replays.get(id);
+	    if (replay == null) {
+		throw new SiteWhereSystemException(ErrorCode.InvalidEventReplayId, ErrorLevel.ERROR);
+	    }
+	    return replay;
+	}
+    }
+
+    /**
+     * Remove the oldest ended replays once the limit is exceeded.
+     */
+    protected void removeEndedReplays() {
+	int ended = 0;
+	for (EventReplayJob replay : replays.values()) {
+	    if (replay.isEnded()) {
+		ended++;
+	    }
+	}
+	Iterator<EventReplayJob> it = replays.values().iterator();
+	while ((ended > MAX_ENDED_REPLAYS) && (it.hasNext())) {
+	    if (it.next().isEnded()) {
+		it.remove();
+		ended--;
+	    }
+	}
+    }
+}
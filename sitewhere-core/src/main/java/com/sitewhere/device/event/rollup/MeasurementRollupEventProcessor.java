@@ -0,0 +1,264 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.device.event.rollup;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.sitewhere.device.event.processor.FilteredOutboundEventProcessor;
+import com.sitewhere.rest.model.device.event.rollup.MeasurementRollup;
+import com.sitewhere.spi.SiteWhereException;
+import com.sitewhere.spi.device.event.IDeviceMeasurements;
+import com.sitewhere.spi.device.event.rollup.IMeasurementRollup;
+import com.sitewhere.spi.device.event.rollup.RollupResolution;
+import com.sitewhere.spi.server.lifecycle.ILifecycleProgressMonitor;
+
+/**
+ * Outbound event processor that maintains per-assignment, per-measurement
+ * rollups at each {@link RollupResolution}. Values are aggregated in memory and
+ * flushed to the datastore in bulk on a fixed interval, where they are merged
+ * into the stored rollups. Analytics queries can then read a few rollup rows
+ * instead of scanning raw measurement events.
+ * 
+ * @author Derek
+ */
+public class MeasurementRollupEventProcessor extends FilteredOutboundEventProcessor {
+
+    /** Static logger instance */
+    private static Logger LOGGER = LogManager.getLogger();
+
+    /** Default number of seconds between flushes */
+    private static final int DEFAULT_FLUSH_INTERVAL_SECS = 30;
+
+    /** Default maximum number of rollups sent to the datastore per call */
+    private static final int DEFAULT_FLUSH_BATCH_SIZE = 1000;
+
+    /** Number of seconds between flushes */
+    private int flushIntervalSecs = DEFAULT_FLUSH_INTERVAL_SECS;
+
+    /** Maximum number of rollups sent to the datastore per call */
+    private int flushBatchSize = DEFAULT_FLUSH_BATCH_SIZE;
+
+    /** Rollups updated since the last flush */
+    private Map<String, MeasurementRollup> pending = new ConcurrentHashMap<String, MeasurementRollup>();
+
+    /** Allows concurrent updates while blocking them when pending is swapped */
+    private ReadWriteLock pendingLock = new ReentrantReadWriteLock();
+
+    /** Executor for flush thread */
+    private ExecutorService executor;
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.device.event.processor.FilteredOutboundEventProcessor#start
+     * (com.sitewhere.spi.server.lifecycle.ILifecycleProgressMonitor)
+     */
+    @Override
+    public void start(ILifecycleProgressMonitor monitor) throws SiteWhereException {
+	// Required for filters.
+	super.start(monitor);
+
+	this.executor = Executors.newSingleThreadExecutor();
+	executor.execute(new Flusher());
+	LOGGER.info("Measurement rollups will be flushed every " + getFlushIntervalSecs() + " seconds.");
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.device.event.processor.FilteredOutboundEventProcessor#stop(
+     * com.sitewhere.spi.server.lifecycle.ILifecycleProgressMonitor)
+     */
+    @Override
+    public void stop(ILifecycleProgressMonitor monitor) throws SiteWhereException {
+	if (executor != null) {
+	    executor.shutdownNow();
+	}
+	flush();
+	super.stop(monitor);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.server.lifecycle.ILifecycleComponent#getLogger()
+     */
+    @Override
+    public Logger getLogger() {
+	return LOGGER;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.device.event.processor.FilteredOutboundEventProcessor#
+     * onMeasurementsNotFiltered(com.sitewhere.spi.device.event.
+     * IDeviceMeasurements)
+     */
+    @Override
+    public void onMeasurementsNotFiltered(IDeviceMeasurements measurements) throws SiteWhereException {
+	Date eventDate = measurements.getEventDate();
+	if ((eventDate == null) || (measurements.getDeviceAssignmentToken() == null)) {
+	    return;
+	}
+	pendingLock.readLock().lock();
+	try {
+	    for (Map.Entry<String, Double> entry : measurements.getMeasurements().entrySet()) {
+		if (entry.getValue() == null) {
+		    continue;
+		}
+		for (RollupResolution resolution : RollupResolution.values()) {
+		    MeasurementRollup rollup = getPendingRollup(measurements.getDeviceAssignmentToken(),
+			    entry.getKey(), resolution, eventDate.getTime());
+		    synchronized (rollup) {
+			rollup.addValue(entry.getValue(), eventDate);
+		    }
+		}
+	    }
+	} finally {
+	    pendingLock.readLock().unlock();
+	}
+    }
+
+    /**
+     * Get the pending rollup for a bucket, creating it if necessary.
+     * 
+     * @param assignmentToken
+     * @param measurementId
+     * @param resolution
+     * @param timestamp
+     * @return
+     */
+    protected MeasurementRollup getPendingRollup(String assignmentToken, String measurementId,
+	    RollupResolution resolution, long timestamp) {
+	long bucket = resolution.getBucketStart(timestamp);
+	String key = MeasurementRollups.getKey(assignmentToken, measurementId, resolution.getIntervalMs(), bucket);
+	MeasurementRollup rollup = pending.get(key);
+	if (rollup == null) {
+	    rollup = new MeasurementRollup(assignmentToken, measurementId, resolution.getIntervalMs(),
+		    new Date(bucket));
+	    MeasurementRollup existing = ((ConcurrentHashMap<String, MeasurementRollup>) pending).putIfAbsent(key,
+		    rollup);
+	    if (existing != null) {
+		rollup = existing;
+	    }
+	}
+	return rollup;
+    }
+
+    /**
+     * Send pending rollups to the datastore. Rollups that fail to save are
+     * merged back so that they are retried on the next flush.
+     */
+    protected void flush() {
+	Map<String, MeasurementRollup> flushing;
+	pendingLock.writeLock().lock();
+	try {
+	    if (pending.isEmpty()) {
+		return;
+	    }
+	    flushing = pending;
+	    pending = new ConcurrentHashMap<String, MeasurementRollup>();
+	} finally {
+	    pendingLock.writeLock().unlock();
+	}
+
+	List<IMeasurementRollup> batch = new ArrayList<IMeasurementRollup>(getFlushBatchSize());
+	for (MeasurementRollup rollup : flushing.values()) {
+	    batch.add(rollup);
+	    if (batch.size() >= getFlushBatchSize()) {
+		save(batch);
+		batch = new ArrayList<IMeasurementRollup>(getFlushBatchSize());
+	    }
+	}
+	if (!batch.isEmpty()) {
+	    save(batch);
+	}
+	LOGGER.debug("Flushed " + flushing.size() + " measurement rollups.");
+    }
+
+    /**
+     * Save a batch of rollups, requeueing them if the datastore call fails.
+     * 
+     * @param batch
+     */
+    protected void save(List<IMeasurementRollup> batch) {
+	try {
+	    getEventManagement().addMeasurementRollups(batch);
+	} catch (Throwable e) {
+	    LOGGER.error("Unable to save measurement rollups. Will retry on next flush.", e);
+	    pendingLock.readLock().lock();
+	    try {
+		for (IMeasurementRollup rollup : batch) {
+		    MeasurementRollup target = getPendingRollup(rollup.getAssignmentToken(),
+			    rollup.getMeasurementId(), RollupResolution.getByIntervalMs(rollup.getIntervalMs()),
+			    rollup.getBucketStart().getTime());
+		    synchronized (target) {
+			target.merge(rollup);
+		    }
+		}
+	    } finally {
+		pendingLock.readLock().unlock();
+	    }
+	}
+    }
+
+    /**
+     * Periodically flushes pending rollups.
+     * 
+     * @author Derek
+     */
+    private class Flusher implements Runnable {
+
+	@Override
+	public void run() {
+	    while (true) {
+		try {
+		    Thread.sleep(getFlushIntervalSecs() * 1000L);
+		} catch (InterruptedException e) {
+		    LOGGER.info("Measurement rollup flush thread shut down.");
+		    return;
+		}
+		try {
+		    flush();
+		} catch (Throwable e) {
+		    LOGGER.error("Unhandled exception flushing measurement rollups.", e);
+		}
+	    }
+	}
+    }
+
+    public int getFlushIntervalSecs() {
+	return flushIntervalSecs;
+    }
+
+    public void setFlushIntervalSecs(int flushIntervalSecs) {
+	this.flushIntervalSecs = flushIntervalSecs;
+    }
+
+    public int getFlushBatchSize() {
+	return flushBatchSize;
+    }
+
+    public void setFlushBatchSize(int flushBatchSize) {
+	this.flushBatchSize = flushBatchSize;
+    }
+}
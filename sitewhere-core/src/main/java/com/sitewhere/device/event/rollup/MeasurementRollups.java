@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.device.event.rollup;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.sitewhere.rest.model.device.event.rollup.MeasurementRollup;
+import com.sitewhere.spi.device.event.rollup.IMeasurementRollup;
+
+/**
+ * Helper methods for working with measurement rollups.
+ * 
+ * @author Derek
+ */
+public class MeasurementRollups {
+
+    /**
+     * Combine rollups from a finer tier into buckets of the given interval.
+     * The interval should be a multiple of the interval of the input rollups.
+     * Input is expected to be ordered by bucket start and the output keeps
+     * that order.
+     * 
+     * @param rollups
+     * @param intervalMs
+     * @return
+     */
+    public static List<IMeasurementRollup> combine(List<IMeasurementRollup> rollups, long intervalMs) {
+	Map<String, MeasurementRollup> combined = new LinkedHashMap<String, MeasurementRollup>();
+	for (IMeasurementRollup rollup : rollups) {
+	    long time = rollup.getBucketStart().getTime();
+	    long bucket = time - Math.floorMod(time, intervalMs);
+	    String key = bucket + ":" + rollup.getMeasurementId();
+	    MeasurementRollup target = combined.get(key);
+	    if (target == null) {
+		target = new MeasurementRollup(rollup.getAssignmentToken(), rollup.getMeasurementId(), intervalMs,
+			new Date(bucket));
+		combined.put(key, target);
+	    }
+	    target.merge(rollup);
+	}
+	return new ArrayList<IMeasurementRollup>(combined.values());
+    }
+
+    /**
+     * Get a key that uniquely identifies a rollup bucket.
+     * 
+     * @param assignmentToken
+     * @param measurementId
+     * @param intervalMs
+     * @param bucketStart
+     * @return
+     */
+    public static String getKey(String assignmentToken, String measurementId, long intervalMs, long bucketStart) {
+	return assignmentToken + ":" + intervalMs + ":" + bucketStart + ":" + measurementId;
+    }
+}
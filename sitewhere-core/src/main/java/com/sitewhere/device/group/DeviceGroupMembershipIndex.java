@@ -0,0 +1,608 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.device.group;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.sitewhere.rest.model.search.SearchCriteria;
+import com.sitewhere.spi.SiteWhereException;
+import com.sitewhere.spi.device.IDevice;
+import com.sitewhere.spi.device.IDeviceManagement;
+import com.sitewhere.spi.device.group.IDeviceGroup;
+import com.sitewhere.spi.device.group.IDeviceGroupElement;
+import com.sitewhere.spi.device.group.IDeviceGroupMembershipIndex;
+import com.sitewhere.spi.search.ISearchResults;
+import com.sitewhere.spi.search.device.IDeviceSearchCriteria;
+
+/**
+ * Implementation of {@link IDeviceGroupMembershipIndex} that keeps membership
+ * for a single tenant in memory. Direct group elements are loaded from the
+ * datastore the first time a group is requested and are then maintained
+ * incrementally. Flattened membership is stored as a sorted array of hardware
+ * ids per group and is dropped for a group and all of its ancestors when any
+ * of them changes. Device attributes used for filtering are held in a compact
+ * form so that criteria can be applied without loading full devices. Devices
+ * are only loaded when the criteria filters on device attributes, and missing
+ * devices are then loaded in bulk. Group tokens for each role are cached.
+ * 
+ * Groups are loaded from the datastore without holding the index lock so a
+ * slow load does not block lookups of other groups. Changes made on this node
+ * are applied immediately. Loaded data expires after a configurable time so
+ * that changes made on other nodes are picked up.
+ * 
+ * @author Derek
+ */
+public class DeviceGroupMembershipIndex implements IDeviceGroupMembershipIndex {
+
+    /** Empty membership */
+    private static final String[] NO_DEVICES = new String[0];
+
+    /** Maximum number of devices requested in a single bulk load */
+    private static final int DEVICE_LOAD_BATCH_SIZE = 500;
+
+    /** Default time in milliseconds that loaded data remains valid */
+    public static final long DEFAULT_ENTRY_TTL_MS = 60 * 1000;
+
+    /** Time in milliseconds that loaded data remains valid */
+    private long entryTtlMs = DEFAULT_ENTRY_TTL_MS;
+
+    /** Device management implementation used to load data */
+    private IDeviceManagement deviceManagement;
+
+    /** Hardware ids of devices directly contained in each loaded group */
+    private Map<String, Set<String>> devicesByGroup = new HashMap<String, Set<String>>();
+
+    /** Tokens of groups directly contained in each loaded group */
+    private Map<String, Set<String>> subgroupsByGroup = new HashMap<String, Set<String>>();
+
+    /** Tokens of loaded groups that directly contain each group */
+    private Map<String, Set<String>> parentsByGroup = new HashMap<String, Set<String>>();
+
+    /** Time at which direct elements of each loaded group expire */
+    private Map<String, Long> expiresByGroup = new HashMap<String, Long>();
+
+    /** Sorted hardware ids of all devices in a group including nested groups */
+    private Map<String, Flattened> flattened = new HashMap<String, Flattened>();
+
+    /** Incremented whenever group membership changes on this node */
+    private long generation;
+
+    /** Filter attributes by device hardware id */
+    private Map<String, DeviceEntry> devices = new ConcurrentHashMap<String, DeviceEntry>();
+
+    /** Tokens of groups with each role */
+    private Map<String, RoleEntry> groupsByRole = new ConcurrentHashMap<String, RoleEntry>();
+
+    public DeviceGroupMembershipIndex(IDeviceManagement deviceManagement) {
+	this.deviceManagement = deviceManagement;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.group.IDeviceGroupMembershipIndex#
+     * getHardwareIdsInGroup(java.lang.String,
+     * com.sitewhere.spi.search.device.IDeviceSearchCriteria)
+     */
+    @Override
+    public List<String> getHardwareIdsInGroup(String groupToken, IDeviceSearchCriteria criteria)
+	    throws SiteWhereException {
+	return filter(getFlattened(groupToken), criteria);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.group.IDeviceGroupMembershipIndex#
+     * getHardwareIdsInGroupsWithRole(java.lang.String,
+     * com.sitewhere.spi.search.device.IDeviceSearchCriteria)
+     */
+    @Override
+    public List<String> getHardwareIdsInGroupsWithRole(String role, IDeviceSearchCriteria criteria)
+	    throws SiteWhereException {
+	List<String> groupTokens = getGroupTokensWithRole(role);
+	if (groupTokens.size() == 1) {
+	    return getHardwareIdsInGroup(groupTokens.get(0), criteria);
+	}
+	TreeSet<String> merged = new TreeSet<String>();
+	for (String groupToken : groupTokens) {
+	    merged.addAll(Arrays.asList(getFlattened(groupToken)));
+	}
+	return filter(merged.toArray(new String[merged.size()]), criteria);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.group.IDeviceGroupMembershipIndex#groupChanged(
+     * java.lang.String)
+     */
+    @Override
+    public void groupChanged(String groupToken) throws SiteWhereException {
+	groupsByRole.clear();
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.group.IDeviceGroupMembershipIndex#
+     * groupElementsAdded(java.lang.String, java.util.List)
+     */
+    @Override
+    public synchronized void groupElementsAdded(String groupToken, List<IDeviceGroupElement> elements)
+	    throws SiteWhereException {
+	generation++;
+	if (devicesByGroup.containsKey(groupToken)) {
+	    for (IDeviceGroupElement element : elements) {
+		addElement(groupToken, element);
+	    }
+	}
+	invalidate(groupToken);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.group.IDeviceGroupMembershipIndex#
+     * groupElementsRemoved(java.lang.String, java.util.List)
+     */
+    @Override
+    public synchronized void groupElementsRemoved(String groupToken, List<IDeviceGroupElement> elements)
+	    throws SiteWhereException {
+	generation++;
+	if (devicesByGroup.containsKey(groupToken)) {
+	    for (IDeviceGroupElement element : elements) {
+		switch (element.getType()) {
+		case Device: {
+		    devicesByGroup.get(groupToken).remove(element.getElementId());
+		    break;
+		}
+		case Group: {
+		    subgroupsByGroup.get(groupToken).remove(element.getElementId());
+		    Set<String> parents = parentsByGroup.get(element.getElementId());
+		    if (parents != null) {
+			parents.remove(groupToken);
+		    }
+		    break;
+		}
+		}
+	    }
+	}
+	invalidate(groupToken);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.group.IDeviceGroupMembershipIndex#groupDeleted(
+     * java.lang.String)
+     */
+    @Override
+    public synchronized void groupDeleted(String groupToken) throws SiteWhereException {
+	generation++;
+	invalidate(groupToken);
+	unload(groupToken);
+	groupsByRole.clear();
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.group.IDeviceGroupMembershipIndex#deviceChanged(
+     * java.lang.String)
+     */
+    @Override
+    public void deviceChanged(String hardwareId) throws SiteWhereException {
+	if (hardwareId != null) {
+	    devices.remove(hardwareId);
+	}
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.group.IDeviceGroupMembershipIndex#clear()
+     */
+    @Override
+    public synchronized void clear() throws SiteWhereException {
+	generation++;
+	devicesByGroup.clear();
+	subgroupsByGroup.clear();
+	parentsByGroup.clear();
+	expiresByGroup.clear();
+	flattened.clear();
+	devices.clear();
+	groupsByRole.clear();
+    }
+
+    /**
+     * Get tokens of groups that have the given role, loading them if not
+     * cached. Cached lookups are dropped whenever a group is created, updated
+     * or deleted on this node and expire so changes on other nodes are seen.
+     * 
+     * @param role
+     * @return
+     * @throws SiteWhereException
+     */
+    protected List<String> getGroupTokensWithRole(String role) throws SiteWhereException {
+	RoleEntry entry = groupsByRole.get(role);
+	if ((entry == null) || (entry.expires <= System.currentTimeMillis())) {
+	    long expires = System.currentTimeMillis() + getEntryTtlMs();
+	    ISearchResults<IDeviceGroup> groups = deviceManagement.listDeviceGroupsWithRole(role, false,
+		    new SearchCriteria(1, 0));
+	    List<String> tokens = new ArrayList<String>();
+	    for (IDeviceGroup group : groups.getResults()) {
+		tokens.add(group.getToken());
+	    }
+	    entry = new RoleEntry(tokens, expires);
+	    groupsByRole.put(role, entry);
+	}
+	return entry.groupTokens;
+    }
+
+    /**
+     * Get sorted hardware ids for all devices in a group, expanding nested
+     * groups. Groups that have not been indexed or have expired are loaded
+     * from the datastore outside of the index lock. If the index changes while
+     * loading, the loaded data is discarded and the lookup is retried.
+     * 
+     * @param groupToken
+     * @return
+     * @throws SiteWhereException
+     */
+    protected String[] getFlattened(String groupToken) throws SiteWhereException {
+	while (true) {
+	    Set<String> missing = new HashSet<String>();
+	    long loadGeneration;
+	    synchronized (this) {
+		long now = System.currentTimeMillis();
+		Flattened existing = flattened.get(groupToken);
+		if ((existing != null) && (existing.expires > now)) {
+		    return existing.hardwareIds;
+		}
+		TreeSet<String> all = new TreeSet<String>();
+		long expires = collect(groupToken, all, new HashSet<String>(), missing, now);
+		if (missing.isEmpty()) {
+		    String[] result = all.isEmpty() ? NO_DEVICES : all.toArray(new String[all.size()]);
+		    flattened.put(groupToken, new Flattened(result, expires));
+		    return result;
+		}
+		loadGeneration = generation;
+	    }
+
+	    long loadStarted = System.currentTimeMillis();
+	    Map<String, List<IDeviceGroupElement>> loaded = new HashMap<String, List<IDeviceGroupElement>>();
+	    for (String token : missing) {
+		loaded.put(token, deviceManagement.listDeviceGroupElements(token, SearchCriteria.ALL).getResults());
+	    }
+
+	    synchronized (this) {
+		if (loadGeneration == generation) {
+		    long expires = loadStarted + getEntryTtlMs();
+		    for (Map.Entry<String, List<IDeviceGroupElement>> entry : loaded.entrySet()) {
+			install(entry.getKey(), entry.getValue(), expires);
+		    }
+		}
+	    }
+	}
+    }
+
+    /**
+     * Collect devices for a group and its descendants. Groups already visited
+     * are skipped so that cyclic nesting does not recurse forever. Groups that
+     * need to be loaded are added to the missing set.
+     * 
+     * @param groupToken
+     * @param all
+     * @param visited
+     * @param missing
+     * @param now
+     * @return earliest expiration time of the data that was collected
+     */
+    protected long collect(String groupToken, Set<String> all, Set<String> visited, Set<String> missing,
+	    long now) {
+	if (!visited.add(groupToken)) {
+	    return Long.MAX_VALUE;
+	}
+	Flattened existing = flattened.get(groupToken);
+	if ((existing != null) && (existing.expires > now)) {
+	    all.addAll(Arrays.asList(existing.hardwareIds));
+	    return existing.expires;
+	}
+	Long expires = expiresByGroup.get(groupToken);
+	if ((expires == null) || (expires <= now)) {
+	    missing.add(groupToken);
+	    return Long.MAX_VALUE;
+	}
+	long earliest = expires;
+	all.addAll(devicesByGroup.get(groupToken));
+	for (String subgroup : subgroupsByGroup.get(groupToken)) {
+	    earliest = Math.min(earliest, collect(subgroup, all, visited, missing, now));
+	}
+	return earliest;
+    }
+
+    /**
+     * Replace direct elements for a group with data loaded from the datastore.
+     * 
+     * @param groupToken
+     * @param elements
+     * @param expires
+     */
+    protected void install(String groupToken, List<IDeviceGroupElement> elements, long expires) {
+	unload(groupToken);
+	devicesByGroup.put(groupToken, new HashSet<String>());
+	subgroupsByGroup.put(groupToken, new HashSet<String>());
+	expiresByGroup.put(groupToken, expires);
+	for (IDeviceGroupElement element : elements) {
+	    addElement(groupToken, element);
+	}
+	invalidate(groupToken);
+    }
+
+    /**
+     * Remove direct elements for a group and its links to subgroups.
+     * 
+     * @param groupToken
+     */
+    protected void unload(String groupToken) {
+	devicesByGroup.remove(groupToken);
+	expiresByGroup.remove(groupToken);
+	Set<String> subgroups = subgroupsByGroup.remove(groupToken);
+	if (subgroups != null) {
+	    for (String subgroup : subgroups) {
+		Set<String> parents = parentsByGroup.get(subgroup);
+		if (parents != null) {
+		    parents.remove(groupToken);
+		}
+	    }
+	}
+    }
+
+    /**
+     * Add a single element to the direct membership of a loaded group.
+     * 
+     * @param groupToken
+     * @param element
+     */
+    protected void addElement(String groupToken, IDeviceGroupElement element) {
+	switch (element.getType()) {
+	case Device: {
+	    devicesByGroup.get(groupToken).add(element.getElementId());
+	    break;
+	}
+	case Group: {
+	    subgroupsByGroup.get(groupToken).add(element.getElementId());
+	    Set<String> parents = parentsByGroup.get(element.getElementId());
+	    if (parents == null) {
+		parents = new HashSet<String>();
+		parentsByGroup.put(element.getElementId(), parents);
+	    }
+	    parents.add(groupToken);
+	    break;
+	}
+	}
+    }
+
+    /**
+     * Drop flattened membership for a group and every group that contains it.
+     * 
+     * @param groupToken
+     */
+    protected void invalidate(String groupToken) {
+	List<String> pending = new ArrayList<String>();
+	Set<String> visited = new HashSet<String>();
+	pending.add(groupToken);
+	while (!pending.isEmpty()) {
+	    String current = pending.remove(pending.size() - 1);
+	    if (visited.add(current)) {
+		flattened.remove(current);
+		Set<String> parents = parentsByGroup.get(current);
+		if (parents != null) {
+		    pending.addAll(parents);
+		}
+	    }
+	}
+    }
+
+    /**
+     * Apply search criteria to a sorted list of hardware ids. If the criteria
+     * does not filter on device attributes, all hardware ids are returned
+     * without loading devices. Devices that were deleted without the group
+     * being updated are then skipped when the devices are loaded.
+     * 
+     * @param hardwareIds
+     * @param criteria
+     * @return
+     * @throws SiteWhereException
+     */
+    protected List<String> filter(String[] hardwareIds, IDeviceSearchCriteria criteria) throws SiteWhereException {
+	if (!hasDeviceFilter(criteria)) {
+	    return new ArrayList<String>(Arrays.asList(hardwareIds));
+	}
+	Map<String, DeviceEntry> entries = getDeviceEntries(hardwareIds);
+	List<String> matches = new ArrayList<String>();
+	for (String hardwareId : hardwareIds) {
+	    DeviceEntry entry = entries.get(hardwareId);
+	    if ((entry != null) && (entry.matches(criteria))) {
+		matches.add(hardwareId);
+	    }
+	}
+	return matches;
+    }
+
+    /**
+     * Indicates if criteria filters on any device attribute.
+     * 
+     * @param criteria
+     * @return
+     */
+    protected boolean hasDeviceFilter(IDeviceSearchCriteria criteria) {
+	if (criteria == null) {
+	    return false;
+	}
+	return (criteria.getSpecificationToken() != null) || (criteria.getSiteToken() != null)
+		|| (criteria.isExcludeAssigned()) || (criteria.getStartDate() != null)
+		|| (criteria.getEndDate() != null);
+    }
+
+    /**
+     * Get filter attributes for devices. Entries that are not cached or have
+     * expired are loaded with bulk requests. Devices that do not exist are not
+     * included in the result.
+     * 
+     * @param hardwareIds
+     * @return
+     * @throws SiteWhereException
+     */
+    protected Map<String, DeviceEntry> getDeviceEntries(String[] hardwareIds) throws SiteWhereException {
+	Map<String, DeviceEntry> entries = new HashMap<String, DeviceEntry>();
+	List<String> missing = new ArrayList<String>();
+	long now = System.currentTimeMillis();
+	for (String hardwareId : hardwareIds) {
+	    DeviceEntry entry = devices.get(hardwareId);
+	    if ((entry == null) || (entry.expires <= now)) {
+		missing.add(hardwareId);
+	    } else {
+		entries.put(hardwareId, entry);
+	    }
+	}
+	for (int i = 0; i < missing.size(); i += DEVICE_LOAD_BATCH_SIZE) {
+	    List<String> batch = missing.subList(i, Math.min(missing.size(), i + DEVICE_LOAD_BATCH_SIZE));
+	    long expires = System.currentTimeMillis() + getEntryTtlMs();
+	    for (IDevice device : deviceManagement.getDevicesByHardwareIds(batch)) {
+		DeviceEntry entry = new DeviceEntry(device, expires);
+		devices.put(device.getHardwareId(), entry);
+		entries.put(device.getHardwareId(), entry);
+	    }
+	    for (String hardwareId : batch) {
+		if (!entries.containsKey(hardwareId)) {
+		    devices.remove(hardwareId);
+		}
+	    }
+	}
+	return entries;
+    }
+
+    public long getEntryTtlMs() {
+	return entryTtlMs;
+    }
+
+    public void setEntryTtlMs(long entryTtlMs) {
+	this.entryTtlMs = entryTtlMs;
+    }
+
+    /**
+     * Flattened membership for a group.
+     * 
+     * @author Derek
+     */
+    private static class Flattened {
+
+	/** Sorted hardware ids */
+	private final String[] hardwareIds;
+
+	/** Time at which entry expires */
+	private final long expires;
+
+	public Flattened(String[] hardwareIds, long expires) {
+	    this.hardwareIds = hardwareIds;
+	    this.expires = expires;
+	}
+    }
+
+    /**
+     * Tokens of groups with a role.
+     * 
+     * @author Derek
+     */
+    private static class RoleEntry {
+
+	/** Group tokens */
+	private final List<String> groupTokens;
+
+	/** Time at which entry expires */
+	private final long expires;
+
+	public RoleEntry(List<String> groupTokens, long expires) {
+	    this.groupTokens = groupTokens;
+	    this.expires = expires;
+	}
+    }
+
+    /**
+     * Device attributes that may be used in search criteria.
+     * 
+     * @author Derek
+     */
+    private static class DeviceEntry {
+
+	/** Specification token */
+	private final String specificationToken;
+
+	/** Site token */
+	private final String siteToken;
+
+	/** Indicates if device is assigned */
+	private final boolean assigned;
+
+	/** Created date in ms */
+	private final long createdDate;
+
+	/** Time at which entry expires */
+	private final long expires;
+
+	public DeviceEntry(IDevice device, long expires) {
+	    this.specificationToken = device.getSpecificationToken();
+	    this.siteToken = device.getSiteToken();
+	    this.assigned = (device.getAssignmentToken() != null);
+	    this.createdDate = (device.getCreatedDate() != null) ? device.getCreatedDate().getTime() : 0;
+	    this.expires = expires;
+	}
+
+	/**
+	 * Indicates if the device matches the given criteria.
+	 * 
+	 * @param criteria
+	 * @return
+	 */
+	public boolean matches(IDeviceSearchCriteria criteria) {
+	    if (criteria == null) {
+		return true;
+	    }
+	    if ((criteria.getSpecificationToken() != null)
+		    && (!criteria.getSpecificationToken().equals(specificationToken))) {
+		return false;
+	    }
+	    if ((criteria.getSiteToken() != null) && (!criteria.getSiteToken().equals(siteToken))) {
+		return false;
+	    }
+	    if (criteria.isExcludeAssigned() && assigned) {
+		return false;
+	    }
+	    if ((criteria.getStartDate() != null) && (createdDate < criteria.getStartDate().getTime())) {
+		return false;
+	    }
+	    if ((criteria.getEndDate() != null) && (createdDate > criteria.getEndDate().getTime())) {
+		return false;
+	    }
+	    return true;
+	}
+    }
+}
@@ -14,23 +14,58 @@ import java.util.List;
 import java.util.Map;
 
 import com.sitewhere.SiteWhere;
-import com.sitewhere.rest.model.search.SearchCriteria;
+import com.sitewhere.rest.model.search.SearchResults;
 import com.sitewhere.spi.SiteWhereException;
 import com.sitewhere.spi.device.IDevice;
-import com.sitewhere.spi.device.group.IDeviceGroup;
-import com.sitewhere.spi.device.group.IDeviceGroupElement;
+import com.sitewhere.spi.device.IDeviceManagement;
 import com.sitewhere.spi.search.ISearchCriteria;
 import com.sitewhere.spi.search.ISearchResults;
 import com.sitewhere.spi.search.device.IDeviceSearchCriteria;
 import com.sitewhere.spi.tenant.ITenant;
 
 /**
- * Utility methods for maniupulating device groups.
+ * Utility methods for maniupulating device groups. Membership is resolved
+ * using the tenant {@link DeviceGroupMembershipIndex} so nested groups are not
+ * walked in the datastore on each request.
  * 
  * @author Derek
  */
 public class DeviceGroupUtils {
 
+    /** Maximum number of devices requested in a single bulk load */
+    private static final int DEVICE_LOAD_BATCH_SIZE = 500;
+
+    /**
+     * Get hardware ids for devices in a group that match the given criteria.
+     * 
+     * @param groupToken
+     * @param criteria
+     * @param tenant
+     * @return
+     * @throws SiteWhereException
+     */
+    public static List<String> getHardwareIdsInGroup(String groupToken, IDeviceSearchCriteria criteria,
+	    ITenant tenant) throws SiteWhereException {
+	return SiteWhere.getServer().getDeviceGroupMembershipIndex(tenant).getHardwareIdsInGroup(groupToken,
+		criteria);
+    }
+
+    /**
+     * Get hardware ids for devices in all groups that have the given role.
+     * Duplicates are removed.
+     * 
+     * @param groupRole
+     * @param criteria
+     * @param tenant
+     * @return
+     * @throws SiteWhereException
+     */
+    public static List<String> getHardwareIdsInGroupsWithRole(String groupRole, IDeviceSearchCriteria criteria,
+	    ITenant tenant) throws SiteWhereException {
+	return SiteWhere.getServer().getDeviceGroupMembershipIndex(tenant).getHardwareIdsInGroupsWithRole(groupRole,
+		criteria);
+    }
+
     /**
      * Get devices in a group that match the given criteria.
      * 
@@ -41,37 +76,7 @@ public class DeviceGroupUtils {
      */
     public static List<IDevice> getDevicesInGroup(String groupToken, IDeviceSearchCriteria criteria, ITenant tenant)
 	    throws SiteWhereException {
-	Collection<IDevice> devices = getDevicesInGroup(groupToken, tenant);
-	List<IDevice> matches = new ArrayList<IDevice>();
-	for (IDevice device : devices) {
-
-	    // Handle filter by specification.
-	    if (criteria.getSpecificationToken() != null) {
-		if (!device.getSpecificationToken().equals(criteria.getSpecificationToken())) {
-		    continue;
-		}
-	    }
-
-	    // Handle filter by site.
-	    if (criteria.getSiteToken() != null) {
-		if (!device.getSiteToken().equals(criteria.getSiteToken())) {
-		    continue;
-		}
-	    }
-
-	    // Handle exclude assigned.
-	    if (criteria.isExcludeAssigned() && (device.getAssignmentToken() != null)) {
-		continue;
-	    }
-	    if ((criteria.getStartDate() != null) && (device.getCreatedDate().before(criteria.getStartDate()))) {
-		continue;
-	    }
-	    if ((criteria.getEndDate() != null) && (device.getCreatedDate().after(criteria.getEndDate()))) {
-		continue;
-	    }
-	    matches.add(device);
-	}
-	return matches;
+	return getDevices(getHardwareIdsInGroup(groupToken, criteria, tenant), tenant);
     }
 
     /**
@@ -83,26 +88,7 @@ public class DeviceGroupUtils {
      * @throws SiteWhereException
      */
     public static Collection<IDevice> getDevicesInGroup(String groupToken, ITenant tenant) throws SiteWhereException {
-	Map<String, IDevice> devices = new HashMap<String, IDevice>();
-	ISearchResults<IDeviceGroupElement> elements = SiteWhere.getServer().getDeviceManagement(tenant)
-		.listDeviceGroupElements(groupToken, SearchCriteria.ALL);
-	for (IDeviceGroupElement element : elements.getResults()) {
-	    switch (element.getType()) {
-	    case Device: {
-		devices.put(element.getElementId(), SiteWhere.getServer().getDeviceManagement(tenant)
-			.getDeviceByHardwareId(element.getElementId()));
-		break;
-	    }
-	    case Group: {
-		Collection<IDevice> subDevices = getDevicesInGroup(element.getElementId(), tenant);
-		for (IDevice subDevice : subDevices) {
-		    devices.put(subDevice.getHardwareId(), subDevice);
-		}
-		break;
-	    }
-	    }
-	}
-	return devices.values();
+	return getDevices(getHardwareIdsInGroup(groupToken, null, tenant), tenant);
     }
 
     /**
@@ -116,16 +102,88 @@ public class DeviceGroupUtils {
      */
     public static Collection<IDevice> getDevicesInGroupsWithRole(String groupRole, IDeviceSearchCriteria criteria,
 	    ITenant tenant) throws SiteWhereException {
-	Map<String, IDevice> devices = new HashMap<String, IDevice>();
-	ISearchCriteria groupCriteria = new SearchCriteria(1, 0);
-	ISearchResults<IDeviceGroup> groups = SiteWhere.getServer().getDeviceManagement(tenant)
-		.listDeviceGroupsWithRole(groupRole, false, groupCriteria);
-	for (IDeviceGroup group : groups.getResults()) {
-	    List<IDevice> groupDevices = getDevicesInGroup(group.getToken(), criteria, tenant);
-	    for (IDevice groupDevice : groupDevices) {
-		devices.put(groupDevice.getHardwareId(), groupDevice);
+	return getDevices(getHardwareIdsInGroupsWithRole(groupRole, criteria, tenant), tenant);
+    }
+
+    /**
+     * Get a page of devices in a group that match the given criteria. Only
+     * devices on the requested page are loaded.
+     * 
+     * @param groupToken
+     * @param criteria
+     * @param tenant
+     * @return
+     * @throws SiteWhereException
+     */
+    public static ISearchResults<IDevice> searchDevicesInGroup(String groupToken, IDeviceSearchCriteria criteria,
+	    ITenant tenant) throws SiteWhereException {
+	return getPage(getHardwareIdsInGroup(groupToken, criteria, tenant), criteria, tenant);
+    }
+
+    /**
+     * Get a page of devices in all groups that have the given role. Only
+     * devices on the requested page are loaded.
+     * 
+     * @param groupRole
+     * @param criteria
+     * @param tenant
+     * @return
+     * @throws SiteWhereException
+     */
+    public static ISearchResults<IDevice> searchDevicesInGroupsWithRole(String groupRole,
+	    IDeviceSearchCriteria criteria, ITenant tenant) throws SiteWhereException {
+	return getPage(getHardwareIdsInGroupsWithRole(groupRole, criteria, tenant), criteria, tenant);
+    }
+
+    /**
+     * Load the devices on the page indicated by the criteria.
+     * 
+     * @param hardwareIds
+     * @param criteria
+     * @param tenant
+     * @return
+     * @throws SiteWhereException
+     */
+    protected static ISearchResults<IDevice> getPage(List<String> hardwareIds, ISearchCriteria criteria,
+	    ITenant tenant) throws SiteWhereException {
+	int total = hardwareIds.size();
+	int start = 0;
+	int end = total;
+	if ((criteria.getPageSize() != null) && (criteria.getPageSize() > 0)) {
+	    int page = ((criteria.getPageNumber() != null) && (criteria.getPageNumber() > 0))
+		    ? criteria.getPageNumber() : 1;
+	    start = (int) Math.min((long) (page - 1) * criteria.getPageSize(), total);
+	    end = Math.min(start + criteria.getPageSize(), total);
+	}
+	return new SearchResults<IDevice>(getDevices(hardwareIds.subList(start, end), tenant), total);
+    }
+
+    /**
+     * Load devices for a list of hardware ids with bulk requests. Devices are
+     * returned in the order of the hardware ids and devices that no longer
+     * exist are skipped.
+     * 
+     * @param hardwareIds
+     * @param tenant
+     * @return
+     * @throws SiteWhereException
+     */
+    protected static List<IDevice> getDevices(List<String> hardwareIds, ITenant tenant) throws SiteWhereException {
+	IDeviceManagement management = SiteWhere.getServer().getDeviceManagement(tenant);
+	Map<String, IDevice> loaded = new HashMap<String, IDevice>();
+	for (int i = 0; i < hardwareIds.size(); i += DEVICE_LOAD_BATCH_SIZE) {
+	    for (IDevice device : management.getDevicesByHardwareIds(
+		    hardwareIds.subList(i, Math.min(hardwareIds.size(), i + DEVICE_LOAD_BATCH_SIZE)))) {
+		loaded.put(device.getHardwareId(), device);
+	    }
+	}
+	List<IDevice> devices = new ArrayList<IDevice>();
+	for (String hardwareId : hardwareIds) {
+	    IDevice device = loaded.get(hardwareId);
+	    if (device != null) {
+		devices.add(device);
 	    }
 	}
-	return devices.values();
+	return devices;
     }
-}
\ No newline at end of file
+}
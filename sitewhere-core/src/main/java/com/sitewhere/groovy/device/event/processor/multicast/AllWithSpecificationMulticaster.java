@@ -8,7 +8,11 @@
 package com.sitewhere.groovy.device.event.processor.multicast;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
@@ -34,8 +38,11 @@ import groovy.util.ResourceException;
 import groovy.util.ScriptException;
 
 /**
- * Routes events to all devices that use a given specification. The list of
- * devices is cached and refreshed at an interval to improve performance.
+ * Routes events to all devices that use a given specification. A route table
+ * is rebuilt at an interval by running the script once per target device.
+ * Scripts that only use target information produce fixed routes that are
+ * returned without further evaluation. Scripts that read the event or its
+ * source device are evaluated per event, but without datastore lookups.
  * 
  * @author Derek
  *
@@ -50,6 +57,10 @@ public abstract class AllWithSpecificationMulticaster<T> extends TenantLifecycle
     /** Interval between refreshing list of devices with specification */
     private static final long REFRESH_INTERVAL_SECS = 60;
 
+    /** Script variables whose values depend on the event being routed */
+    private static final Set<String> EVENT_VARIABLES = new HashSet<String>(
+	    Arrays.asList("event", "device", "assignment"));
+
     /** Token for specification */
     private String specificationToken;
 
@@ -59,8 +70,8 @@ public abstract class AllWithSpecificationMulticaster<T> extends TenantLifecycle
     /** Executor for refresh thread */
     private ExecutorService executor;
 
-    /** Cached list of matches that determine routes */
-    private List<IDevice> matches = new ArrayList<IDevice>();
+    /** Route table rebuilt by the update thread */
+    private volatile List<RouteEntry<T>> routeTable = Collections.emptyList();
 
     public AllWithSpecificationMulticaster() {
 	super(LifecycleComponentType.OutboundEventProcessorFilter);
@@ -93,35 +104,106 @@ public abstract class AllWithSpecificationMulticaster<T> extends TenantLifecycle
     public List<T> calculateRoutes(IDeviceEvent event, IDevice device, IDeviceAssignment assignment)
 	    throws SiteWhereException {
 	List<T> routes = new ArrayList<T>();
-	IDeviceManagement dm = SiteWhere.getServer().getDeviceManagement(getTenant());
-	for (IDevice targetDevice : matches) {
-	    if (getScriptPath() != null) {
-		IDeviceAssignment targetAssignment = dm.getDeviceAssignmentByToken(targetDevice.getAssignmentToken());
-		Binding binding = new Binding();
-		binding.setVariable("logger", getLogger());
-		binding.setVariable("event", event);
-		binding.setVariable("device", device);
-		binding.setVariable("assignment", assignment);
-		if (device.getAssignmentToken() != null) {
-		    binding.setVariable("targetAssignment", targetAssignment);
-		    binding.setVariable("targetDevice", targetDevice);
-		}
-		try {
-		    Object result = SiteWhere.getServer().getTenantGroovyConfiguration(getTenant())
-			    .getGroovyScriptEngine().run(getScriptPath(), binding);
-		    if (result != null) {
-			routes.add(convertRoute(result));
-		    }
-		} catch (ResourceException e) {
-		    LOGGER.error("Unable to access Groovy decoder script.", e);
-		} catch (ScriptException e) {
-		    LOGGER.error("Unable to run Groovy decoder script.", e);
+	for (RouteEntry<T> entry : routeTable) {
+	    if (!entry.isEventDependent()) {
+		routes.add(entry.getRoute());
+		continue;
+	    }
+	    Binding binding = createBinding(entry.getTargetDevice(), entry.getTargetAssignment());
+	    binding.setVariable("event", event);
+	    binding.setVariable("device", device);
+	    binding.setVariable("assignment", assignment);
+	    try {
+		Object result = runScript(binding);
+		if (result != null) {
+		    routes.add(convertRoute(result));
 		}
+	    } catch (ResourceException e) {
+		LOGGER.error("Unable to access Groovy decoder script.", e);
+	    } catch (ScriptException e) {
+		LOGGER.error("Unable to run Groovy decoder script.", e);
 	    }
 	}
 	return routes;
     }
 
+    /**
+     * Build the route table for the given target devices. The script is run
+     * once for each target without event information. If the script reads any
+     * event variable, the target is marked for per-event evaluation. Otherwise
+     * the route it returned is stored.
+     * 
+     * @param targets
+     * @return
+     * @throws SiteWhereException
+     */
+    protected List<RouteEntry<T>> buildRouteTable(List<IDevice> targets) throws SiteWhereException {
+	List<RouteEntry<T>> table = new ArrayList<RouteEntry<T>>();
+	if (getScriptPath() == null) {
+	    return table;
+	}
+	IDeviceManagement dm = SiteWhere.getServer().getDeviceManagement(getTenant());
+	for (IDevice targetDevice : targets) {
+	    IDeviceAssignment targetAssignment = (targetDevice.getAssignmentToken() != null)
+		    ? dm.getDeviceAssignmentByToken(targetDevice.getAssignmentToken()) : null;
+	    EventTrackingBinding binding = new EventTrackingBinding();
+	    populateBinding(binding, targetDevice, targetAssignment);
+	    try {
+		Object result = runScript(binding);
+		if (result != null) {
+		    table.add(new RouteEntry<T>(targetDevice, targetAssignment, convertRoute(result)));
+		}
+	    } catch (EventVariableAccessException e) {
+		table.add(new RouteEntry<T>(targetDevice, targetAssignment, null));
+	    } catch (ResourceException e) {
+		LOGGER.error("Unable to access Groovy decoder script.", e);
+	    } catch (ScriptException e) {
+		LOGGER.error("Unable to run Groovy decoder script.", e);
+	    }
+	}
+	return table;
+    }
+
+    /**
+     * Create binding with variables for the route target.
+     * 
+     * @param targetDevice
+     * @param targetAssignment
+     * @return
+     */
+    protected Binding createBinding(IDevice targetDevice, IDeviceAssignment targetAssignment) {
+	Binding binding = new Binding();
+	populateBinding(binding, targetDevice, targetAssignment);
+	return binding;
+    }
+
+    /**
+     * Add variables for the route target to a binding.
+     * 
+     * @param binding
+     * @param targetDevice
+     * @param targetAssignment
+     */
+    protected void populateBinding(Binding binding, IDevice targetDevice, IDeviceAssignment targetAssignment) {
+	binding.setVariable("logger", getLogger());
+	binding.setVariable("targetDevice", targetDevice);
+	binding.setVariable("targetAssignment", targetAssignment);
+    }
+
+    /**
+     * Run the routing script with the given binding.
+     * 
+     * @param binding
+     * @return
+     * @throws SiteWhereException
+     * @throws ResourceException
+     * @throws ScriptException
+     */
+    protected Object runScript(Binding binding) throws SiteWhereException, ResourceException, ScriptException {
+	return SiteWhere.getServer().getTenantGroovyConfiguration(getTenant()).getGroovyScriptEngine()
+		.run(getScriptPath(), binding);
+    }
+
     /**
      * Converts script response into route.
      * 
@@ -173,10 +255,10 @@ public abstract class AllWithSpecificationMulticaster<T> extends TenantLifecycle
 		    DeviceSearchCriteria criteria = new DeviceSearchCriteria(token, null, false, 1, 0, null, null);
 		    ISearchResults<IDevice> results = SiteWhere.getServer().getDeviceManagement(tenant)
 			    .listDevices(false, criteria);
-		    matches = results.getResults();
-		    LOGGER.debug("Found " + matches.size() + " matches for routing.");
+		    routeTable = buildRouteTable(results.getResults());
+		    LOGGER.debug("Found " + results.getResults().size() + " matches for routing.");
 		} catch (SiteWhereException e) {
-		    LOGGER.error("Unable to list devices for specification.", e);
+		    LOGGER.error("Unable to build route table for specification.", e);
 		}
 		try {
 		    Thread.sleep(REFRESH_INTERVAL_SECS * 1000);
@@ -187,4 +269,95 @@ public abstract class AllWithSpecificationMulticaster<T> extends TenantLifecycle
 	    }
 	}
     }
-}
\ No newline at end of file
+
+    /**
+     * Entry in the route table for a single target device.
+     * 
+     * @author Derek
+     *
+     * @param <T>
+     */
+    protected static class RouteEntry<T> {
+
+	/** Target device */
+	private final IDevice targetDevice;
+
+	/** Current assignment for target device */
+	private final IDeviceAssignment targetAssignment;
+
+	/** Precomputed route or null if route depends on event */
+	private final T route;
+
+	public RouteEntry(IDevice targetDevice, IDeviceAssignment targetAssignment, T route) {
+	    this.targetDevice = targetDevice;
+	    this.targetAssignment = targetAssignment;
+	    this.route = route;
+	}
+
+	public boolean isEventDependent() {
+	    return route == null;
+	}
+
+	public IDevice getTargetDevice() {
+	    return targetDevice;
+	}
+
+	public IDeviceAssignment getTargetAssignment() {
+	    return targetAssignment;
+	}
+
+	public T getRoute() {
+	    return route;
+	}
+    }
+
+    /**
+     * Binding that aborts the script as soon as an event variable is read.
+     * 
+     * @author Derek
+     */
+    private static class EventTrackingBinding extends Binding {
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see groovy.lang.Binding#getVariable(java.lang.String)
+	 */
+	@Override
+	public Object getVariable(String name) {
+	    if (EVENT_VARIABLES.contains(name)) {
+		throw new EventVariableAccessException();
+	    }
+	    return super.getVariable(name);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see groovy.lang.Binding#hasVariable(java.lang.String)
+	 */
+	@Override
+	public boolean hasVariable(String name) {
+	    if (EVENT_VARIABLES.contains(name)) {
+		throw new EventVariableAccessException();
+	    }
+	    return super.hasVariable(name);
+	}
+    }
+
+    /**
+     * Thrown when a script reads an event variable while building the route
+     * table.
+     * 
+     * @author Derek
+     */
+    private static class EventVariableAccessException extends RuntimeException {
+
+	/** Serial version UID */
+	private static final long serialVersionUID = -2398561273917326184L;
+
+	public EventVariableAccessException() {
+	    super(null, null, false, false);
+	}
+    }
+}
@@ -7,6 +7,12 @@
  */
 package com.sitewhere.hazelcast;
 
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -24,7 +30,10 @@ import com.sitewhere.spi.server.lifecycle.LifecycleComponentType;
 
 /**
  * Implements {@link IDeviceManagementCacheProvider} using Hazelcast as a
- * distributed cache.
+ * distributed cache. Each cache keeps a bounded near cache in the local JVM so
+ * that repeated lookups on the inbound path do not require a network call.
+ * Writes are sent to Hazelcast immediately unless a write interval is set, in
+ * which case they are batched and sent on that interval.
  * 
  * @author Derek
  */
@@ -45,21 +54,36 @@ public class DeviceManagementCacheProvider extends TenantLifecycleComponent impl
     /** Name of assignment cache */
     private static final String ASSIGNMENT_CACHE = "assignmentCache";
 
+    /** Default interval in milliseconds between write-behind flushes */
+    private static final int DEFAULT_WRITE_INTERVAL_MS = 0;
+
     public DeviceManagementCacheProvider() {
 	super(LifecycleComponentType.CacheProvider);
     }
 
+    /** Maximum number of entries held locally for each cache */
+    private int nearCacheSize = NearCachedHazelcastCache.DEFAULT_NEAR_CACHE_SIZE;
+
+    /** Maximum age in milliseconds of near cache entries */
+    private long nearCacheMaxAgeMs = NearCachedHazelcastCache.DEFAULT_NEAR_CACHE_MAX_AGE_MS;
+
+    /** Interval between write-behind flushes (zero writes through) */
+    private int writeIntervalMs = DEFAULT_WRITE_INTERVAL_MS;
+
     /** Cache for sites */
-    private HazelcastCache<ISite> siteCache;
+    private NearCachedHazelcastCache<ISite> siteCache;
 
     /** Cache for device specifications */
-    private HazelcastCache<IDeviceSpecification> specificationCache;
+    private NearCachedHazelcastCache<IDeviceSpecification> specificationCache;
 
     /** Cache for devices */
-    private HazelcastCache<IDevice> deviceCache;
+    private NearCachedHazelcastCache<IDevice> deviceCache;
 
     /** Cache for device assignments */
-    private HazelcastCache<IDeviceAssignment> assignmentCache;
+    private NearCachedHazelcastCache<IDeviceAssignment> assignmentCache;
+
+    /** Flushes pending writes */
+    private ScheduledExecutorService writer;
 
     /*
      * (non-Javadoc)
@@ -69,16 +93,19 @@ public class DeviceManagementCacheProvider extends TenantLifecycleComponent impl
      */
     @Override
     public void initialize(ILifecycleProgressMonitor monitor) throws SiteWhereException {
-	this.siteCache = new HazelcastCache<ISite>(this, HazelcastCache.getNameForTenantCache(getTenant(), SITE_CACHE),
-		CacheType.SiteCache, false);
-	this.specificationCache = new HazelcastCache<IDeviceSpecification>(this,
+	boolean writeBehind = (getWriteIntervalMs() > 0);
+	this.siteCache = new NearCachedHazelcastCache<ISite>(this,
+		HazelcastCache.getNameForTenantCache(getTenant(), SITE_CACHE), CacheType.SiteCache, getNearCacheSize(),
+		getNearCacheMaxAgeMs(), writeBehind);
+	this.specificationCache = new NearCachedHazelcastCache<IDeviceSpecification>(this,
 		HazelcastCache.getNameForTenantCache(getTenant(), SPECIFICATION_CACHE),
-		CacheType.DeviceSpecificationCache, false);
-	this.deviceCache = new HazelcastCache<IDevice>(this,
-		HazelcastCache.getNameForTenantCache(getTenant(), DEVICE_CACHE), CacheType.DeviceCache, false);
-	this.assignmentCache = new HazelcastCache<IDeviceAssignment>(this,
+		CacheType.DeviceSpecificationCache, getNearCacheSize(), getNearCacheMaxAgeMs(), writeBehind);
+	this.deviceCache = new NearCachedHazelcastCache<IDevice>(this,
+		HazelcastCache.getNameForTenantCache(getTenant(), DEVICE_CACHE), CacheType.DeviceCache,
+		getNearCacheSize(), getNearCacheMaxAgeMs(), writeBehind);
+	this.assignmentCache = new NearCachedHazelcastCache<IDeviceAssignment>(this,
 		HazelcastCache.getNameForTenantCache(getTenant(), ASSIGNMENT_CACHE), CacheType.DeviceAssignmentCache,
-		false);
+		getNearCacheSize(), getNearCacheMaxAgeMs(), writeBehind);
     }
 
     /*
@@ -90,6 +117,68 @@ public class DeviceManagementCacheProvider extends TenantLifecycleComponent impl
      */
     @Override
     public void start(ILifecycleProgressMonitor monitor) throws SiteWhereException {
+	if (getWriteIntervalMs() > 0) {
+	    this.writer = Executors.newSingleThreadScheduledExecutor(new CacheWriterThreadFactory());
+	    writer.scheduleWithFixedDelay(new Runnable() {
+
+		@Override
+		public void run() {
+		    flush();
+		}
+	    }, getWriteIntervalMs(), getWriteIntervalMs(), TimeUnit.MILLISECONDS);
+	}
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.server.lifecycle.LifecycleComponent#stop(com.sitewhere.spi.
+     * server.lifecycle.ILifecycleProgressMonitor)
+     */
+    @Override
+    public void stop(ILifecycleProgressMonitor monitor) throws SiteWhereException {
+	if (writer != null) {
+	    writer.shutdown();
+	    try {
+		writer.awaitTermination(5, TimeUnit.SECONDS);
+	    } catch (InterruptedException e) {
+		LOGGER.warn("Interrupted waiting for cache writer to stop.");
+	    }
+	    writer = null;
+	}
+	flush();
+	logStatistics(deviceCache);
+	logStatistics(assignmentCache);
+    }
+
+    /**
+     * Send pending writes for all caches to Hazelcast.
+     */
+    protected void flush() {
+	try {
+	    siteCache.flush();
+	    specificationCache.flush();
+	    deviceCache.flush();
+	    assignmentCache.flush();
+	} catch (Throwable e) {
+	    LOGGER.error("Unable to flush device management cache writes.", e);
+	}
+    }
+
+    /**
+     * Log statistics for a cache.
+     * 
+     * @param cache
+     */
+    protected void logStatistics(NearCachedHazelcastCache<?> cache) {
+	try {
+	    LOGGER.info("Cache " + cache.getType() + ": " + cache.getRequestCount() + " requests, "
+		    + cache.getHitCount() + " hits (" + cache.getNearHitCount() + " local), " + cache.getLoadCount()
+		    + " loads averaging " + String.format("%.2f", cache.getAverageLoadTime()) + "ms.");
+	} catch (SiteWhereException e) {
+	    LOGGER.warn("Unable to read cache statistics.", e);
+	}
     }
 
     /*
@@ -145,4 +234,41 @@ public class DeviceManagementCacheProvider extends TenantLifecycleComponent impl
     public ICache<String, IDeviceAssignment> getDeviceAssignmentCache() throws SiteWhereException {
 	return assignmentCache;
     }
-}
\ No newline at end of file
+
+    public int getNearCacheSize() {
+	return nearCacheSize;
+    }
+
+    public void setNearCacheSize(int nearCacheSize) {
+	this.nearCacheSize = nearCacheSize;
+    }
+
+    public long getNearCacheMaxAgeMs() {
+	return nearCacheMaxAgeMs;
+    }
+
+    public void setNearCacheMaxAgeMs(long nearCacheMaxAgeMs) {
+	this.nearCacheMaxAgeMs = nearCacheMaxAgeMs;
+    }
+
+    public int getWriteIntervalMs() {
+	return writeIntervalMs;
+    }
+
+    public void setWriteIntervalMs(int writeIntervalMs) {
+	this.writeIntervalMs = writeIntervalMs;
+    }
+
+    /** Used for naming cache writer threads */
+    private class CacheWriterThreadFactory implements ThreadFactory {
+
+	/** Counts threads */
+	private AtomicInteger counter = new AtomicInteger();
+
+	public Thread newThread(Runnable r) {
+	    Thread thread = new Thread(r, "SiteWhere Cache Writer " + counter.incrementAndGet());
+	    thread.setDaemon(true);
+	    return thread;
+	}
+    }
+}
@@ -13,6 +13,7 @@ import com.sitewhere.SiteWhere;
 import com.sitewhere.spi.SiteWhereException;
 import com.sitewhere.spi.cache.CacheType;
 import com.sitewhere.spi.cache.ICache;
+import com.sitewhere.spi.cache.ICacheLoader;
 import com.sitewhere.spi.cache.ICacheListener;
 import com.sitewhere.spi.server.lifecycle.ILifecycleComponent;
 import com.sitewhere.spi.server.lifecycle.LifecycleStatus;
@@ -47,17 +48,28 @@ public class HazelcastCache<T> implements ICache<String, T>, EntryAddedListener<
     /** Count of total cache hits */
     private AtomicLong hitCount = new AtomicLong();
 
+    /** Count of values loaded on a miss */
+    private AtomicLong loadCount = new AtomicLong();
+
+    /** Total time spent loading values in nanoseconds */
+    private AtomicLong loadTime = new AtomicLong();
+
     /** List of cache listeners */
     private List<ICacheListener<T>> listeners = new ArrayList<ICacheListener<T>>();
 
     public HazelcastCache(ILifecycleComponent parent, String name, CacheType type, boolean monitorUpdates) {
+	this(parent, name, type, monitorUpdates, true);
+    }
+
+    protected HazelcastCache(ILifecycleComponent parent, String name, CacheType type, boolean monitorUpdates,
+	    boolean includeValue) {
 	this.parent = parent;
 	this.name = name;
 	this.type = type;
 	this.hMap = SiteWhere.getServer().getHazelcastConfiguration().getHazelcastInstance().getMap(name);
 
 	if (monitorUpdates) {
-	    hMap.addEntryListener(this, true);
+	    hMap.addEntryListener(this, includeValue);
 	}
     }
 
@@ -80,16 +92,61 @@ public class HazelcastCache<T> implements ICache<String, T>, EntryAddedListener<
     public T get(String key) throws SiteWhereException {
 	if (getParent().getLifecycleStatus() == LifecycleStatus.Started) {
 	    T result = (T) hMap.get(key);
-	    requestCount.incrementAndGet();
-	    if (result != null) {
-		hitCount.incrementAndGet();
-	    }
+	    recordRequest(result != null);
 	    return result;
 	} else {
 	    throw new SiteWhereException("Cache get() called after shutdown.");
 	}
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.cache.ICache#get(java.lang.Object,
+     * com.sitewhere.spi.cache.ICacheLoader)
+     */
+    @Override
+    public T get(String key, ICacheLoader<String, T> loader) throws SiteWhereException {
+	T result = get(key);
+	if (result == null) {
+	    result = load(key, loader);
+	    if (result != null) {
+		put(key, result);
+	    }
+	}
+	return result;
+    }
+
+    /**
+     * Load a value and record load statistics.
+     * 
+     * @param key
+     * @param loader
+     * @return
+     * @throws SiteWhereException
+     */
+    protected T load(String key, ICacheLoader<String, T> loader) throws SiteWhereException {
+	long start = System.nanoTime();
+	try {
+	    return loader.load(key);
+	} finally {
+	    loadCount.incrementAndGet();
+	    loadTime.addAndGet(System.nanoTime() - start);
+	}
+    }
+
+    /**
+     * Record a cache request.
+     * 
+     * @param hit
+     */
+    protected void recordRequest(boolean hit) {
+	requestCount.incrementAndGet();
+	if (hit) {
+	    hitCount.incrementAndGet();
+	}
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -218,6 +275,37 @@ public class HazelcastCache<T> implements ICache<String, T>, EntryAddedListener<
 	return hitCount.get();
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.cache.ICache#getMissCount()
+     */
+    @Override
+    public long getMissCount() throws SiteWhereException {
+	return requestCount.get() - hitCount.get();
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.cache.ICache#getLoadCount()
+     */
+    @Override
+    public long getLoadCount() throws SiteWhereException {
+	return loadCount.get();
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.cache.ICache#getAverageLoadTime()
+     */
+    @Override
+    public double getAverageLoadTime() throws SiteWhereException {
+	long loads = loadCount.get();
+	return (loads == 0) ? 0 : (loadTime.get() / 1000000.0) / loads;
+    }
+
     /**
      * Get unique name for cache.
      * 
@@ -229,6 +317,18 @@ public class HazelcastCache<T> implements ICache<String, T>, EntryAddedListener<
 	return HazelcastCache.class.getName() + ":" + tenant.getId() + ":" + name;
     }
 
+    public String getName() {
+	return name;
+    }
+
+    protected IMap getMap() {
+	return hMap;
+    }
+
+    protected List<ICacheListener<T>> getListeners() {
+	return listeners;
+    }
+
     public ILifecycleComponent getParent() {
 	return parent;
     }
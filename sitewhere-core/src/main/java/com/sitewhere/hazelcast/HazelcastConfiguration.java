@@ -24,6 +24,7 @@ import com.sitewhere.server.lifecycle.LifecycleComponent;
 import com.sitewhere.spi.SiteWhereException;
 import com.sitewhere.spi.resource.IResource;
 import com.sitewhere.spi.server.hazelcast.IHazelcastConfiguration;
+import com.sitewhere.spi.server.hazelcast.ISiteWhereHazelcast;
 import com.sitewhere.spi.server.lifecycle.ILifecycleProgressMonitor;
 import com.sitewhere.spi.server.lifecycle.LifecycleComponentType;
 
@@ -50,6 +51,12 @@ public class HazelcastConfiguration extends LifecycleComponent implements IHazel
     /** Overrides group password from configuration file */
     private String groupPassword = "sitewhere";
 
+    /** Number of threads that queue inbound batches from other members */
+    private static final int INBOUND_TRANSFER_POOL_SIZE = 4;
+
+    /** Maximum number of inbound batches waiting to be queued */
+    private static final int INBOUND_TRANSFER_QUEUE_CAPACITY = 1000;
+
     /** Singleton hazelcast instance */
     private HazelcastInstance instance;
 
@@ -74,6 +81,7 @@ public class HazelcastConfiguration extends LifecycleComponent implements IHazel
 	    HazelcastConfiguration.performGroupOverrides(config, getGroupName(), getGroupPassword());
 	    HazelcastConfiguration.performSerializationOverrides(config);
 	    HazelcastConfiguration.performPropertyOverrides(config);
+	    HazelcastConfiguration.performExecutorOverrides(config);
 
 	    ClassLoader loader = Thread.currentThread().getContextClassLoader();
 	    try {
@@ -166,6 +174,19 @@ public class HazelcastConfiguration extends LifecycleComponent implements IHazel
 	config.setProperty(GroupProperties.PROP_SHUTDOWNHOOK_ENABLED, "false");
     }
 
+    /**
+     * Override executor settings. Inbound batch tasks never wait for space in
+     * the local partitions, so a small pool serves all tenants. The queue is
+     * bounded so that a slow member rejects batches rather than buffering
+     * them without limit.
+     * 
+     * @param config
+     */
+    public static void performExecutorOverrides(Config config) {
+	config.getExecutorConfig(ISiteWhereHazelcast.EXECUTOR_INBOUND_TRANSFER).setPoolSize(INBOUND_TRANSFER_POOL_SIZE)
+		.setQueueCapacity(INBOUND_TRANSFER_QUEUE_CAPACITY);
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -0,0 +1,899 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.hazelcast;
+
+import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import com.hazelcast.core.ExecutionCallback;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.IExecutorService;
+import com.hazelcast.core.Member;
+import com.hazelcast.core.MembershipAdapter;
+import com.hazelcast.core.MembershipEvent;
+import com.sitewhere.SiteWhere;
+import com.sitewhere.device.communication.DecodedDeviceRequestMarshaler;
+import com.sitewhere.device.communication.InboundProcessingStrategy;
+import com.sitewhere.device.communication.PartitionedEventExecutor;
+import com.sitewhere.server.SiteWhereServer;
+import com.sitewhere.spi.SiteWhereException;
+import com.sitewhere.spi.device.communication.IDecodedDeviceRequest;
+import com.sitewhere.spi.device.communication.IInboundProcessingStrategy;
+import com.sitewhere.spi.device.event.request.IDeviceAlertCreateRequest;
+import com.sitewhere.spi.device.event.request.IDeviceCommandResponseCreateRequest;
+import com.sitewhere.spi.device.event.request.IDeviceLocationCreateRequest;
+import com.sitewhere.spi.device.event.request.IDeviceMappingCreateRequest;
+import com.sitewhere.spi.device.event.request.IDeviceMeasurementsCreateRequest;
+import com.sitewhere.spi.device.event.request.IDeviceRegistrationRequest;
+import com.sitewhere.spi.device.event.request.IDeviceStateChangeCreateRequest;
+import com.sitewhere.spi.device.event.request.IDeviceStreamCreateRequest;
+import com.sitewhere.spi.device.event.request.IDeviceStreamDataCreateRequest;
+import com.sitewhere.spi.device.event.request.ISendDeviceStreamDataRequest;
+import com.sitewhere.spi.server.hazelcast.ISiteWhereHazelcast;
+import com.sitewhere.spi.server.lifecycle.ILifecycleProgressMonitor;
+
+/**
+ * Implementation of {@link IInboundProcessingStrategy} that spreads inbound
+ * processing across a Hazelcast cluster by device. Each request is sent to the
+ * member that owns the Hazelcast partition for its hardware id, so all
+ * requests for a device are processed on one member. On that member requests
+ * are hashed by hardware id onto single-threaded partitions, so state kept for
+ * a device by the inbound chain is only touched by one thread.
+ * 
+ * Requests for other members are buffered and sent in batches on the
+ * Hazelcast executor service. Only one batch per member is in flight at a
+ * time, so batches are queued on the receiving member in the order they were
+ * sent. The receiving member never waits for space in its local partitions.
+ * It queues requests in order until a partition is full and reports how many
+ * it took, and the rest are sent again on the next interval. Requests waiting
+ * for a member are bounded by the partition capacity, so a busy member slows
+ * the event sources that feed it rather than the other tenants sharing the
+ * executor.
+ * 
+ * When members join or leave, Hazelcast moves partitions and new requests
+ * follow the new owner. Batches that can not be delivered are routed again or
+ * processed locally. Requests for a device may be processed out of order for
+ * a short time while partitions are moving.
+ * 
+ * @author Derek
+ */
+public class HazelcastPartitionedInboundProcessingStrategy extends InboundProcessingStrategy
+	implements IInboundProcessingStrategy {
+
+    /** Static logger instance */
+    private static Logger LOGGER = LogManager.getLogger();
+
+    /** Default number of local partitions */
+    private static final int DEFAULT_PARTITION_COUNT = 8;
+
+    /** Default maximum number of requests queued in each local partition */
+    private static final int DEFAULT_PARTITION_CAPACITY = 10000;
+
+    /** Default maximum number of requests sent to a member in one batch */
+    private static final int DEFAULT_BATCH_SIZE = 100;
+
+    /** Default maximum milliseconds a request waits before its batch is sent */
+    private static final long DEFAULT_BATCH_INTERVAL_MS = 5;
+
+    /** Started strategies by tenant id, used to deliver batches from other members */
+    private static Map<String, HazelcastPartitionedInboundProcessingStrategy> STRATEGIES =
+	    new ConcurrentHashMap<String, HazelcastPartitionedInboundProcessingStrategy>();
+
+    /** Number of local partitions */
+    private int partitionCount = DEFAULT_PARTITION_COUNT;
+
+    /** Maximum number of requests queued in each local partition */
+    private int partitionCapacity = DEFAULT_PARTITION_CAPACITY;
+
+    /** Maximum number of requests sent to a member in one batch */
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    /** Maximum milliseconds a request waits before its batch is sent */
+    private long batchIntervalMs = DEFAULT_BATCH_INTERVAL_MS;
+
+    /** Hazelcast instance */
+    private HazelcastInstance hazelcast;
+
+    /** Executor used to send batches to other members */
+    private IExecutorService transfer;
+
+    /** Processes requests owned by this member */
+    private LocalPartitions local;
+
+    /** Requests waiting to be sent, by member uuid */
+    private ConcurrentHashMap<String, PendingBatch> pending = new ConcurrentHashMap<String, PendingBatch>();
+
+    /** Sends batches on an interval */
+    private ScheduledExecutorService sender;
+
+    /** Id of registered membership listener */
+    private String membershipListenerId;
+
+    /** Converts requests to and from bytes for transfer */
+    private DecodedDeviceRequestMarshaler marshaler = new DecodedDeviceRequestMarshaler();
+
+    /** Number of requests processed locally */
+    private AtomicLong processedCount = new AtomicLong();
+
+    /** Number of requests sent to other members */
+    private AtomicLong forwardedCount = new AtomicLong();
+
+    /** Number of requests received from other members */
+    private AtomicLong receivedCount = new AtomicLong();
+
+    /** Number of requests that failed */
+    private AtomicLong errorCount = new AtomicLong();
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.server.lifecycle.ILifecycleComponent#start(com.
+     * sitewhere.spi.server.lifecycle.ILifecycleProgressMonitor)
+     */
+    @Override
+    public void start(ILifecycleProgressMonitor monitor) throws SiteWhereException {
+	this.hazelcast = SiteWhere.getServer().getHazelcastConfiguration().getHazelcastInstance();
+	this.transfer = hazelcast.getExecutorService(ISiteWhereHazelcast.EXECUTOR_INBOUND_TRANSFER);
+
+	this.local = new LocalPartitions();
+	local.start();
+	STRATEGIES.put(getTenant().getId(), this);
+
+	this.membershipListenerId = hazelcast.getCluster().addMembershipListener(new MembershipAdapter() {
+
+	    @Override
+	    public void memberAdded(MembershipEvent event) {
+		LOGGER.info("Member " + event.getMember().getAddress()
+			+ " joined. Inbound requests will follow partition ownership.");
+	    }
+
+	    @Override
+	    public void memberRemoved(MembershipEvent event) {
+		LOGGER.info("Member " + event.getMember().getAddress()
+			+ " left. Routing its pending inbound requests again.");
+		PendingBatch batch = pending.remove(event.getMember().getUuid());
+		if (batch != null) {
+		    reroute(batch.close(), event.getMember());
+		}
+	    }
+	});
+
+	this.sender = Executors.newSingleThreadScheduledExecutor(new SenderThreadFactory());
+	sender.scheduleWithFixedDelay(new Runnable() {
+
+	    @Override
+	    public void run() {
+		sendAll();
+	    }
+	}, getBatchIntervalMs(), getBatchIntervalMs(), TimeUnit.MILLISECONDS);
+
+	LOGGER.info("Started partitioned inbound processing strategy on member "
+		+ hazelcast.getCluster().getLocalMember().getAddress() + " with " + getPartitionCount()
+		+ " local partitions. Cluster has " + hazelcast.getCluster().getMembers().size() + " members.");
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.server.lifecycle.ILifecycleComponent#getLogger()
+     */
+    @Override
+    public Logger getLogger() {
+	return LOGGER;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.server.lifecycle.ILifecycleComponent#stop(com.sitewhere
+     * .spi.server.lifecycle.ILifecycleProgressMonitor)
+     */
+    @Override
+    public void stop(ILifecycleProgressMonitor monitor) throws SiteWhereException {
+	if (getTenant() != null) {
+	    STRATEGIES.remove(getTenant().getId());
+	}
+	if (sender != null) {
+	    sender.shutdownNow();
+	    for (PendingBatch batch : pending.values()) {
+		List<byte[]> remaining = batch.close();
+		if (!remaining.isEmpty()) {
+		    send(batch, remaining);
+		}
+	    }
+	}
+	if ((hazelcast != null) && (membershipListenerId != null)) {
+	    hazelcast.getCluster().removeMembershipListener(membershipListenerId);
+	}
+	if (local != null) {
+	    local.stop();
+	}
+	LOGGER.info("Stopped partitioned inbound processing strategy. Processed " + processedCount.get()
+		+ " requests locally, sent " + forwardedCount.get() + " and received " + receivedCount.get()
+		+ " from other members with " + errorCount.get() + " errors.");
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.communication.IInboundProcessingStrategy#
+     * processRegistration
+     * (com.sitewhere.spi.device.communication.IDecodedDeviceRequest)
+     */
+    @Override
+    public void processRegistration(IDecodedDeviceRequest<IDeviceRegistrationRequest> request)
+	    throws SiteWhereException {
+	route(request);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.communication.IInboundProcessingStrategy#
+     * processDeviceCommandResponse
+     * (com.sitewhere.spi.device.communication.IDecodedDeviceRequest)
+     */
+    @Override
+    public void processDeviceCommandResponse(IDecodedDeviceRequest<IDeviceCommandResponseCreateRequest> request)
+	    throws SiteWhereException {
+	route(request);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.communication.IInboundProcessingStrategy#
+     * processDeviceMeasurements
+     * (com.sitewhere.spi.device.communication.IDecodedDeviceRequest)
+     */
+    @Override
+    public void processDeviceMeasurements(IDecodedDeviceRequest<IDeviceMeasurementsCreateRequest> request)
+	    throws SiteWhereException {
+	route(request);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.communication.IInboundProcessingStrategy#
+     * processDeviceLocation
+     * (com.sitewhere.spi.device.communication.IDecodedDeviceRequest)
+     */
+    @Override
+    public void processDeviceLocation(IDecodedDeviceRequest<IDeviceLocationCreateRequest> request)
+	    throws SiteWhereException {
+	route(request);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.communication.IInboundProcessingStrategy#
+     * processDeviceAlert
+     * (com.sitewhere.spi.device.communication.IDecodedDeviceRequest)
+     */
+    @Override
+    public void processDeviceAlert(IDecodedDeviceRequest<IDeviceAlertCreateRequest> request) throws SiteWhereException {
+	route(request);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.communication.IInboundProcessingStrategy#
+     * processDeviceStateChange(com.sitewhere.spi.device.communication.
+     * IDecodedDeviceRequest)
+     */
+    @Override
+    public void processDeviceStateChange(IDecodedDeviceRequest<IDeviceStateChangeCreateRequest> request)
+	    throws SiteWhereException {
+	route(request);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.communication.IInboundProcessingStrategy#
+     * processDeviceStream
+     * (com.sitewhere.spi.device.communication.IDecodedDeviceRequest)
+     */
+    @Override
+    public void processDeviceStream(IDecodedDeviceRequest<IDeviceStreamCreateRequest> request)
+	    throws SiteWhereException {
+	route(request);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.communication.IInboundProcessingStrategy#
+     * processDeviceStreamData
+     * (com.sitewhere.spi.device.communication.IDecodedDeviceRequest)
+     */
+    @Override
+    public void processDeviceStreamData(IDecodedDeviceRequest<IDeviceStreamDataCreateRequest> request)
+	    throws SiteWhereException {
+	route(request);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.communication.IInboundProcessingStrategy#
+     * processSendDeviceStreamData
+     * (com.sitewhere.spi.device.communication.IDecodedDeviceRequest)
+     */
+    @Override
+    public void processSendDeviceStreamData(IDecodedDeviceRequest<ISendDeviceStreamDataRequest> request)
+	    throws SiteWhereException {
+	route(request);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.communication.IInboundProcessingStrategy#
+     * processCreateDeviceMapping(com.sitewhere.spi.device.communication.
+     * IDecodedDeviceRequest)
+     */
+    @Override
+    public void processCreateDeviceMapping(IDecodedDeviceRequest<IDeviceMappingCreateRequest> request)
+	    throws SiteWhereException {
+	route(request);
+    }
+
+    /**
+     * Process a request locally if this member owns the partition for its
+     * hardware id. Otherwise add it to the batch for the owning member.
+     * 
+     * @param request
+     * @throws SiteWhereException
+     */
+    protected void route(IDecodedDeviceRequest<?> request) throws SiteWhereException {
+	if (local == null) {
+	    throw new SiteWhereException("Partitioned inbound processing strategy is not started.");
+	}
+	Member owner = getOwner(request);
+	if ((owner == null) || (owner.localMember())) {
+	    processLocally(request);
+	} else {
+	    addToBatch(owner, marshaler.encode(request));
+	}
+    }
+
+    /**
+     * Get the member that owns the Hazelcast partition for a request. Returns
+     * null if ownership is not known, for instance while partitions are being
+     * assigned.
+     * 
+     * @param request
+     * @return
+     */
+    protected Member getOwner(IDecodedDeviceRequest<?> request) {
+	if (request.getHardwareId() == null) {
+	    return null;
+	}
+	return hazelcast.getPartitionService().getPartition(request.getHardwareId()).getOwner();
+    }
+
+    /**
+     * Queue a request on the local partition for its hardware id, waiting if
+     * the partition is full.
+     * 
+     * @param request
+     * @throws SiteWhereException
+     */
+    protected void processLocally(IDecodedDeviceRequest<?> request) throws SiteWhereException {
+	try {
+	    local.put(request);
+	} catch (InterruptedException e) {
+	    errorCount.incrementAndGet();
+	    Thread.currentThread().interrupt();
+	    throw new SiteWhereException("Interrupted while queueing inbound request.", e);
+	}
+    }
+
+    /**
+     * Add an encoded request to the batch for a member, waiting if too many
+     * requests are already waiting for it. The batch is sent immediately once
+     * it is full and no other batch is in flight.
+     * 
+     * @param member
+     * @param payload
+     * @throws SiteWhereException
+     */
+    protected void addToBatch(Member member, byte[] payload) throws SiteWhereException {
+	PendingBatch batch = pending.get(member.getUuid());
+	if (batch == null) {
+	    PendingBatch created = new PendingBatch(member);
+	    batch = pending.putIfAbsent(member.getUuid(), created);
+	    if (batch == null) {
+		batch = created;
+	    }
+	}
+	try {
+	    if (!batch.add(payload, getPartitionCapacity())) {
+		reroute(Collections.singletonList(payload), member);
+		return;
+	    }
+	} catch (InterruptedException e) {
+	    errorCount.incrementAndGet();
+	    Thread.currentThread().interrupt();
+	    throw new SiteWhereException("Interrupted while waiting to send inbound request.", e);
+	}
+	sendNext(batch, true);
+    }
+
+    /**
+     * Send all pending batches that are not already in flight.
+     */
+    protected void sendAll() {
+	for (PendingBatch batch : pending.values()) {
+	    sendNext(batch, false);
+	}
+    }
+
+    /**
+     * Send the next batch for a member unless one is already in flight.
+     * 
+     * @param batch
+     * @param onlyFull
+     *            only send if a full batch is waiting
+     */
+    protected void sendNext(PendingBatch batch, boolean onlyFull) {
+	List<byte[]> payloads = batch.take(getBatchSize(), onlyFull);
+	if (payloads != null) {
+	    send(batch, payloads);
+	}
+    }
+
+    /**
+     * Send a batch of encoded requests to a member. Requests the member did
+     * not have room for are put back at the front of the batch.
+     * 
+     * @param batch
+     * @param payloads
+     */
+    protected void send(final PendingBatch batch, final List<byte[]> payloads) {
+	try {
+	    transfer.submitToMember(new InboundBatch(getTenant().getId(), payloads), batch.getMember(),
+		    new ExecutionCallback<Integer>() {
+
+			@Override
+			public void onResponse(Integer queued) {
+			    forwardedCount.addAndGet(queued);
+			    onSent(batch, payloads.subList(queued, payloads.size()));
+			}
+
+			@Override
+			public void onFailure(Throwable t) {
+			    onSendFailed(batch, payloads, t);
+			}
+		    });
+	} catch (Throwable t) {
+	    onSendFailed(batch, payloads, t);
+	}
+    }
+
+    /**
+     * Called when a member has queued the start of a batch. Requests it had
+     * no room for wait for the next interval. Otherwise the next batch is
+     * sent if one is full.
+     * 
+     * @param batch
+     * @param unsent
+     */
+    protected void onSent(PendingBatch batch, List<byte[]> unsent) {
+	if (!batch.complete(unsent)) {
+	    reroute(unsent, batch.getMember());
+	} else if (unsent.isEmpty()) {
+	    sendNext(batch, true);
+	}
+    }
+
+    /**
+     * Called when a batch could not be delivered. If the member rejected it
+     * because its transfer queue is full, nothing was queued and the batch is
+     * sent again later. Otherwise its requests are routed again. Requests a
+     * member that left had already queued were lost with it, so routing the
+     * whole batch again does not duplicate work.
+     * 
+     * @param batch
+     * @param payloads
+     * @param t
+     */
+    protected void onSendFailed(PendingBatch batch, List<byte[]> payloads, Throwable t) {
+	Member member = batch.getMember();
+	if (isRejected(t) && hazelcast.getCluster().getMembers().contains(member)) {
+	    LOGGER.debug("Member " + member.getAddress() + " is busy. Sending " + payloads.size()
+		    + " inbound requests again later.");
+	    if (batch.complete(payloads)) {
+		return;
+	    }
+	} else {
+	    LOGGER.warn("Unable to send " + payloads.size() + " inbound requests to member " + member.getAddress()
+		    + ". Routing them again.", t);
+	    batch.complete(Collections.<byte[]> emptyList());
+	}
+	reroute(payloads, member);
+    }
+
+    /**
+     * Indicates whether an error was caused by a full executor queue.
+     * 
+     * @param t
+     * @return
+     */
+    protected boolean isRejected(Throwable t) {
+	while (t != null) {
+	    if (t instanceof RejectedExecutionException) {
+		return true;
+	    }
+	    t = t.getCause();
+	}
+	return false;
+    }
+
+    /**
+     * Route requests that could not be delivered to a member. Requests whose
+     * partition is still owned by that member are processed locally so they
+     * are not retried indefinitely.
+     * 
+     * @param payloads
+     * @param failed
+     */
+    protected void reroute(List<byte[]> payloads, Member failed) {
+	for (byte[] payload : payloads) {
+	    try {
+		IDecodedDeviceRequest<?> request = marshaler.decode(payload);
+		Member owner = getOwner(request);
+		if ((owner == null) || (owner.localMember()) || (owner.getUuid().equals(failed.getUuid()))) {
+		    processLocally(request);
+		} else {
+		    addToBatch(owner, payload);
+		}
+	    } catch (Throwable e) {
+		errorCount.incrementAndGet();
+		LOGGER.error("Unable to route inbound request again.", e);
+	    }
+	}
+    }
+
+    /**
+     * Queue requests sent from another member without waiting for space in
+     * the local partitions, so one busy tenant does not hold up the transfer
+     * executor. Requests are queued in order until one does not fit. Requests
+     * are processed here even if partition ownership has changed since they
+     * were sent.
+     * 
+     * @param payloads
+     * @return number of requests taken from the start of the batch
+     */
+    protected int receive(List<byte[]> payloads) {
+	int taken = 0;
+	for (byte[] payload : payloads) {
+	    IDecodedDeviceRequest<?> request;
+	    try {
+		request = marshaler.decode(payload);
+	    } catch (SiteWhereException e) {
+		errorCount.incrementAndGet();
+		LOGGER.error("Unable to decode inbound request from another member.", e);
+		taken++;
+		continue;
+	    }
+	    if (!local.offer(request)) {
+		break;
+	    }
+	    receivedCount.incrementAndGet();
+	    taken++;
+	}
+	return taken;
+    }
+
+    /**
+     * Get the number of requests processed on this member.
+     * 
+     * @return
+     */
+    public long getProcessedCount() {
+	return processedCount.get();
+    }
+
+    /**
+     * Get the number of requests sent to other members.
+     * 
+     * @return
+     */
+    public long getForwardedCount() {
+	return forwardedCount.get();
+    }
+
+    /**
+     * Get the number of requests received from other members.
+     * 
+     * @return
+     */
+    public long getReceivedCount() {
+	return receivedCount.get();
+    }
+
+    /**
+     * Get the number of requests that failed.
+     * 
+     * @return
+     */
+    public long getErrorCount() {
+	return errorCount.get();
+    }
+
+    /**
+     * Get the number of requests waiting in each local partition.
+     * 
+     * @return
+     */
+    public int[] getPartitionDepths() {
+	return (local != null) ? local.getPartitionDepths() : new int[0];
+    }
+
+    public int getPartitionCount() {
+	return partitionCount;
+    }
+
+    public void setPartitionCount(int partitionCount) {
+	this.partitionCount = partitionCount;
+    }
+
+    public int getPartitionCapacity() {
+	return partitionCapacity;
+    }
+
+    public void setPartitionCapacity(int partitionCapacity) {
+	this.partitionCapacity = partitionCapacity;
+    }
+
+    public int getBatchSize() {
+	return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+	this.batchSize = batchSize;
+    }
+
+    public long getBatchIntervalMs() {
+	return batchIntervalMs;
+    }
+
+    public void setBatchIntervalMs(long batchIntervalMs) {
+	this.batchIntervalMs = batchIntervalMs;
+    }
+
+    /** Used for naming batch sender thread */
+    private class SenderThreadFactory implements ThreadFactory {
+
+	public Thread newThread(Runnable r) {
+	    Thread thread = new Thread(r, "SiteWhere HazelcastPartitionedInboundProcessingStrategy Sender");
+	    thread.setDaemon(true);
+	    return thread;
+	}
+    }
+
+    /**
+     * Encoded requests waiting to be sent to a member. At most one batch is
+     * taken at a time until the member reports how far it got.
+     * 
+     * @author Derek
+     */
+    private static class PendingBatch {
+
+	/** Member requests are sent to */
+	private Member member;
+
+	/** Encoded requests */
+	private ArrayDeque<byte[]> payloads = new ArrayDeque<byte[]>();
+
+	/** Indicates a batch is in flight */
+	private boolean sending;
+
+	/** Indicates member has left or strategy has stopped */
+	private boolean closed;
+
+	public PendingBatch(Member member) {
+	    this.member = member;
+	}
+
+	/**
+	 * Add a request, waiting while the maximum number of requests are
+	 * waiting. Returns false if the batch was closed.
+	 * 
+	 * @param payload
+	 * @param capacity
+	 * @return
+	 * @throws InterruptedException
+	 */
+	public synchronized boolean add(byte[] payload, int capacity) throws InterruptedException {
+	    while ((!closed) && (payloads.size() >= capacity)) {
+		wait();
+	    }
+	    if (closed) {
+		return false;
+	    }
+	    payloads.addLast(payload);
+	    return true;
+	}
+
+	/**
+	 * Take up to the maximum number of requests from the front. Returns
+	 * null if a batch is already in flight or there is nothing to send.
+	 * 
+	 * @param maxSize
+	 * @param onlyFull
+	 * @return
+	 */
+	public synchronized List<byte[]> take(int maxSize, boolean onlyFull) {
+	    if (sending || closed || payloads.isEmpty() || (onlyFull && (payloads.size() < maxSize))) {
+		return null;
+	    }
+	    List<byte[]> taken = new ArrayList<byte[]>(Math.min(maxSize, payloads.size()));
+	    while ((taken.size() < maxSize) && (!payloads.isEmpty())) {
+		taken.add(payloads.pollFirst());
+	    }
+	    sending = true;
+	    notifyAll();
+	    return taken;
+	}
+
+	/**
+	 * Mark the batch in flight as finished and put requests that were not
+	 * queued back at the front. Returns false if the batch was closed, in
+	 * which case the caller must route the requests.
+	 * 
+	 * @param unsent
+	 * @return
+	 */
+	public synchronized boolean complete(List<byte[]> unsent) {
+	    sending = false;
+	    if (closed) {
+		return false;
+	    }
+	    ListIterator<byte[]> it = unsent.listIterator(unsent.size());
+	    while (it.hasPrevious()) {
+		payloads.addFirst(it.previous());
+	    }
+	    return true;
+	}
+
+	/**
+	 * Close the batch and return all waiting requests.
+	 * 
+	 * @return
+	 */
+	public synchronized List<byte[]> close() {
+	    closed = true;
+	    List<byte[]> remaining = new ArrayList<byte[]>(payloads);
+	    payloads.clear();
+	    notifyAll();
+	    return remaining;
+	}
+
+	public Member getMember() {
+	    return member;
+	}
+    }
+
+    /**
+     * Task executed on the owning member to queue a batch of requests. Returns
+     * the number of requests taken from the start of the batch.
+     * 
+     * @author Derek
+     */
+    public static class InboundBatch implements Callable<Integer>, Serializable {
+
+	/** Serial version UID */
+	private static final long serialVersionUID = 4418624150382207517L;
+
+	/** Tenant the requests belong to */
+	private String tenantId;
+
+	/** Encoded requests */
+	private ArrayList<byte[]> payloads;
+
+	public InboundBatch(String tenantId, List<byte[]> payloads) {
+	    this.tenantId = tenantId;
+	    this.payloads = new ArrayList<byte[]>(payloads);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.util.concurrent.Callable#call()
+	 */
+	@Override
+	public Integer call() throws Exception {
+	    HazelcastPartitionedInboundProcessingStrategy strategy = STRATEGIES.get(tenantId);
+	    if (strategy == null) {
+		throw new IllegalStateException(
+			"Partitioned inbound processing strategy is not started for tenant '" + tenantId + "'.");
+	    }
+	    return strategy.receive(payloads);
+	}
+    }
+
+    /**
+     * Partitions requests owned by this member by hardware id.
+     * 
+     * @author Derek
+     */
+    private class LocalPartitions extends PartitionedEventExecutor<IDecodedDeviceRequest<?>> {
+
+	public LocalPartitions() {
+	    super("HazelcastPartitionedInboundProcessingStrategy", getPartitionCount(), getPartitionCapacity());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.sitewhere.device.communication.PartitionedEventExecutor#
+	 * getPartitionKey(java.lang.Object)
+	 */
+	@Override
+	protected String getPartitionKey(IDecodedDeviceRequest<?> request) {
+	    return request.getHardwareId();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.sitewhere.device.communication.PartitionedEventExecutor#process(
+	 * java.lang.Object)
+	 */
+	@Override
+	protected void process(IDecodedDeviceRequest<?> request) throws SiteWhereException {
+	    try {
+		sendToInboundProcessingChain(request);
+		processedCount.incrementAndGet();
+	    } catch (SiteWhereException e) {
+		errorCount.incrementAndGet();
+		throw e;
+	    } catch (RuntimeException e) {
+		errorCount.incrementAndGet();
+		throw e;
+	    }
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.sitewhere.device.communication.PartitionedEventExecutor#
+	 * onPartitionStarted()
+	 */
+	@Override
+	protected void onPartitionStarted() throws SiteWhereException {
+	    SecurityContextHolder.getContext().setAuthentication(SiteWhereServer.getSystemAuthentication());
+	}
+    }
+}
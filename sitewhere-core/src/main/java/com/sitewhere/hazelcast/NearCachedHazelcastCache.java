@@ -0,0 +1,469 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.hazelcast;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.apache.commons.collections.map.LRUMap;
+import org.apache.commons.lang.SerializationUtils;
+
+import com.hazelcast.core.EntryEvent;
+import com.sitewhere.spi.SiteWhereException;
+import com.sitewhere.spi.cache.CacheType;
+import com.sitewhere.spi.cache.ICacheLoader;
+import com.sitewhere.spi.server.lifecycle.ILifecycleComponent;
+import com.sitewhere.spi.server.lifecycle.LifecycleStatus;
+
+/**
+ * Two-level cache with a bounded near cache in the local JVM in front of the
+ * distributed Hazelcast map. Reads that hit the near cache avoid a network hop
+ * to the partition owner. Near cache entries are invalidated when entry events
+ * show that another member changed the distributed map, and expire after a
+ * maximum age so that missed events do not leave stale entries forever.
+ * 
+ * Near cache entries are held in serialized form and each read returns a new
+ * copy, as reads from the distributed map do, so callers that modify a
+ * returned value do not change the value seen by other callers.
+ * 
+ * Concurrent misses for the same key share a single load. If write-behind is
+ * enabled, writes update the near cache immediately and are sent to the
+ * distributed map in batches by {@link #flush()}, so repeated writes of the
+ * same key between flushes are coalesced into one. The remote write happens
+ * outside the lock that guards pending writes so that it does not block misses.
+ * 
+ * Entry events are registered without values since only the key is needed to
+ * invalidate the near cache. Cache listeners are passed a null value.
+ * 
+ * @author Derek
+ * 
+ * @param <T>
+ */
+@SuppressWarnings({ "unchecked" })
+public class NearCachedHazelcastCache<T> extends HazelcastCache<T> {
+
+    /** Default maximum number of entries held in the near cache */
+    public static final int DEFAULT_NEAR_CACHE_SIZE = 10000;
+
+    /** Default maximum age in milliseconds of near cache entries */
+    public static final long DEFAULT_NEAR_CACHE_MAX_AGE_MS = 60 * 1000;
+
+    /** Number of generation counters keys are spread across */
+    private static final int GENERATION_STRIPES = 64;
+
+    /** Serialized values held in the local JVM */
+    private Map<String, NearEntry> near;
+
+    /** Maximum age of near cache entries in milliseconds */
+    private long maxAgeMs;
+
+    /** Loads in progress by key */
+    private ConcurrentHashMap<String, FutureTask<T>> loading = new ConcurrentHashMap<String, FutureTask<T>>();
+
+    /** Writes waiting to be sent to the distributed map */
+    private Map<String, T> pendingWrites = new HashMap<String, T>();
+
+    /** Writes being sent to the distributed map by a flush */
+    private Map<String, T> flushing = Collections.emptyMap();
+
+    /** Guards pending and flushing writes */
+    private Object writeLock = new Object();
+
+    /** Orders flushes with removes */
+    private Object flushLock = new Object();
+
+    /** Incremented when near cache entries for a stripe of keys change */
+    private AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+
+    /** Count of requests served from the near cache */
+    private AtomicLong nearHitCount = new AtomicLong();
+
+    /** Indicates whether writes are batched */
+    private boolean writeBehind;
+
+    public NearCachedHazelcastCache(ILifecycleComponent parent, String name, CacheType type, int nearCacheSize,
+	    long maxAgeMs, boolean writeBehind) {
+	super(parent, name, type, true, false);
+	this.near = Collections.synchronizedMap(new LRUMap(nearCacheSize));
+	this.maxAgeMs = maxAgeMs;
+	this.writeBehind = writeBehind;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.hazelcast.HazelcastCache#get(java.lang.String)
+     */
+    @Override
+    public T get(String key) throws SiteWhereException {
+	assertStarted("get");
+	T result = getNear(key);
+	if (result != null) {
+	    nearHitCount.incrementAndGet();
+	    recordRequest(true);
+	    return result;
+	}
+	long current = generations.get(getStripe(key));
+	synchronized (writeLock) {
+	    result = pendingWrites.get(key);
+	    if (result == null) {
+		result = flushing.get(key);
+	    }
+	}
+	if (result != null) {
+	    result = copy(result);
+	} else {
+	    result = (T) getMap().get(key);
+	}
+	recordRequest(result != null);
+	if (result != null) {
+	    putNear(key, result, current);
+	}
+	return result;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.hazelcast.HazelcastCache#get(java.lang.String,
+     * com.sitewhere.spi.cache.ICacheLoader)
+     */
+    @Override
+    public T get(final String key, final ICacheLoader<String, T> loader) throws SiteWhereException {
+	T result = get(key);
+	if (result != null) {
+	    return result;
+	}
+	FutureTask<T> task = new FutureTask<T>(new Callable<T>() {
+
+	    @Override
+	    public T call() throws Exception {
+		long current = generations.get(getStripe(key));
+		T loaded = load(key, loader);
+		if (loaded != null) {
+		    // Do not replace a newer value written while loading.
+		    getMap().putIfAbsent(key, loaded);
+		    putNear(key, loaded, current);
+		}
+		return loaded;
+	    }
+	});
+	FutureTask<T> existing = loading.putIfAbsent(key, task);
+	if (existing == null) {
+	    try {
+		task.run();
+	    } finally {
+		loading.remove(key, task);
+	    }
+	} else {
+	    task = existing;
+	}
+	try {
+	    // Callers that shared another caller's load get their own copy.
+	    T loaded = task.get();
+	    return (existing == null) ? loaded : copy(loaded);
+	} catch (ExecutionException e) {
+	    if (e.getCause() instanceof SiteWhereException) {
+		throw (SiteWhereException) e.getCause();
+	    }
+	    throw new SiteWhereException("Unable to load cache value.", e.getCause());
+	} catch (InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	    throw new SiteWhereException("Interrupted while waiting for cache value to load.", e);
+	}
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.hazelcast.HazelcastCache#put(java.lang.String,
+     * java.lang.Object)
+     */
+    @Override
+    public void put(String key, T value) throws SiteWhereException {
+	assertStarted("put");
+	byte[] serialized = SerializationUtils.serialize((Serializable) value);
+	synchronized (near) {
+	    generations.incrementAndGet(getStripe(key));
+	    near.put(key, new NearEntry(serialized));
+	}
+	if (writeBehind) {
+	    // Queue a copy so later changes by the caller are not written.
+	    T queued = (T) SerializationUtils.deserialize(serialized);
+	    synchronized (writeLock) {
+		pendingWrites.put(key, queued);
+	    }
+	} else {
+	    getMap().set(key, value);
+	}
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.hazelcast.HazelcastCache#remove(java.lang.String)
+     */
+    @Override
+    public void remove(String key) throws SiteWhereException {
+	assertStarted("remove");
+	synchronized (flushLock) {
+	    synchronized (writeLock) {
+		pendingWrites.remove(key);
+	    }
+	    getMap().delete(key);
+	}
+	invalidate(key);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.hazelcast.HazelcastCache#clear()
+     */
+    @Override
+    public void clear() throws SiteWhereException {
+	assertStarted("clear");
+	synchronized (flushLock) {
+	    synchronized (writeLock) {
+		pendingWrites.clear();
+	    }
+	    getMap().clear();
+	}
+	synchronized (near) {
+	    for (int i = 0; i < GENERATION_STRIPES; i++) {
+		generations.incrementAndGet(i);
+	    }
+	    near.clear();
+	}
+    }
+
+    /**
+     * Send pending writes to the distributed map. Writes taken by the flush
+     * stay visible to {@link #get(String)} until the remote write completes.
+     * Removes wait for an in-progress flush so a removed key is not written
+     * back afterward.
+     */
+    public void flush() {
+	synchronized (flushLock) {
+	    Map<String, T> batch;
+	    synchronized (writeLock) {
+		if (pendingWrites.isEmpty()) {
+		    return;
+		}
+		batch = pendingWrites;
+		pendingWrites = new HashMap<String, T>();
+		flushing = batch;
+	    }
+	    try {
+		getMap().putAll(batch);
+	    } finally {
+		synchronized (writeLock) {
+		    flushing = Collections.emptyMap();
+		}
+	    }
+	}
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.hazelcast.HazelcastCache#entryAdded(com.hazelcast.core.
+     * EntryEvent)
+     */
+    @Override
+    public void entryAdded(EntryEvent<String, T> event) {
+	invalidateIfRemote(event);
+	super.entryAdded(event);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.hazelcast.HazelcastCache#entryUpdated(com.hazelcast.core.
+     * EntryEvent)
+     */
+    @Override
+    public void entryUpdated(EntryEvent<String, T> event) {
+	invalidateIfRemote(event);
+	super.entryUpdated(event);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.hazelcast.HazelcastCache#entryRemoved(com.hazelcast.core.
+     * EntryEvent)
+     */
+    @Override
+    public void entryRemoved(EntryEvent<String, T> event) {
+	invalidateIfRemote(event);
+	super.entryRemoved(event);
+    }
+
+    /**
+     * Invalidate near cache entry if change was made by another member. Changes
+     * made locally have already been applied to the near cache.
+     * 
+     * @param event
+     */
+    protected void invalidateIfRemote(EntryEvent<String, T> event) {
+	if ((event.getMember() == null) || (!event.getMember().localMember())) {
+	    invalidate(event.getKey());
+	}
+    }
+
+    /**
+     * Remove an entry from the near cache.
+     * 
+     * @param key
+     */
+    protected void invalidate(String key) {
+	synchronized (near) {
+	    generations.incrementAndGet(getStripe(key));
+	    near.remove(key);
+	}
+    }
+
+    /**
+     * Add a value read from the distributed map or datastore to the near cache
+     * unless entries in the same stripe changed since the read started.
+     * 
+     * @param key
+     * @param value
+     * @param readGeneration
+     */
+    protected void putNear(String key, T value, long readGeneration) {
+	NearEntry entry = new NearEntry(SerializationUtils.serialize((Serializable) value));
+	synchronized (near) {
+	    if (generations.get(getStripe(key)) == readGeneration) {
+		near.put(key, entry);
+	    }
+	}
+    }
+
+    /**
+     * Get a copy of a value from the near cache. Returns null if not present or
+     * if the entry is older than the maximum age.
+     * 
+     * @param key
+     * @return
+     */
+    protected T getNear(String key) {
+	NearEntry entry = near.get(key);
+	if (entry == null) {
+	    return null;
+	}
+	if (System.currentTimeMillis() - entry.getCreated() >= maxAgeMs) {
+	    synchronized (near) {
+		if (near.get(key) == entry) {
+		    near.remove(key);
+		}
+	    }
+	    return null;
+	}
+	return (T) SerializationUtils.deserialize(entry.getValue());
+    }
+
+    /**
+     * Create a copy of a value so that it is not shared between callers.
+     * 
+     * @param value
+     * @return
+     */
+    protected T copy(T value) {
+	if (value == null) {
+	    return null;
+	}
+	return (T) SerializationUtils.clone((Serializable) value);
+    }
+
+    /**
+     * Get generation stripe for a key.
+     * 
+     * @param key
+     * @return
+     */
+    protected int getStripe(String key) {
+	return (key.hashCode() & Integer.MAX_VALUE) % GENERATION_STRIPES;
+    }
+
+    /**
+     * Verify that the parent component is started.
+     * 
+     * @param operation
+     * @throws SiteWhereException
+     */
+    protected void assertStarted(String operation) throws SiteWhereException {
+	if (getParent().getLifecycleStatus() != LifecycleStatus.Started) {
+	    throw new SiteWhereException("Cache " + operation + "() called after shutdown.");
+	}
+    }
+
+    /**
+     * Get number of entries in the near cache.
+     * 
+     * @return
+     */
+    public int getNearCacheSize() {
+	return near.size();
+    }
+
+    /**
+     * Get number of requests served from the near cache.
+     * 
+     * @return
+     */
+    public long getNearHitCount() {
+	return nearHitCount.get();
+    }
+
+    public boolean isWriteBehind() {
+	return writeBehind;
+    }
+
+    public long getMaxAgeMs() {
+	return maxAgeMs;
+    }
+
+    /**
+     * Serialized near cache value with the time it was added.
+     * 
+     * @author Derek
+     */
+    private static class NearEntry {
+
+	/** Serialized value */
+	private byte[] value;
+
+	/** Time entry was created */
+	private long created = System.currentTimeMillis();
+
+	public NearEntry(byte[] value) {
+	    this.value = value;
+	}
+
+	public byte[] getValue() {
+	    return value;
+	}
+
+	public long getCreated() {
+	    return created;
+	}
+    }
+}
@@ -40,4 +40,20 @@ public class LoginManager {
 	}
 	return (IUser) ((SitewhereAuthentication) auth).getPrincipal();
     }
+
+    /**
+     * Verify that the current user authenticated with a password rather than
+     * an access token.
+     * 
+     * @throws SiteWhereException
+     */
+    public static void assertPasswordAuthentication() throws SiteWhereException {
+	Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+	if (auth == null) {
+	    throw new SiteWhereSystemException(ErrorCode.NotLoggedIn, ErrorLevel.ERROR, 401);
+	}
+	if (auth.getCredentials() == null) {
+	    throw new SiteWhereSystemException(ErrorCode.PasswordRequired, ErrorLevel.ERROR, 403);
+	}
+    }
 }
\ No newline at end of file
@@ -7,32 +7,86 @@
  */
 package com.sitewhere.security;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import org.springframework.security.authentication.AuthenticationProvider;
 import org.springframework.security.authentication.AuthenticationServiceException;
 import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.DisabledException;
+import org.springframework.security.authentication.LockedException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.AuthenticationException;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.sitewhere.spi.SiteWhereException;
 import com.sitewhere.spi.user.IGrantedAuthority;
 import com.sitewhere.spi.user.IUser;
 import com.sitewhere.spi.user.IUserManagement;
 
 /**
- * Spring authentication provider backed by Atlas.
+ * Spring authentication provider backed by Atlas. Successful authentications
+ * are cached for a short interval so that repeated requests with the same
+ * credentials do not hit the user datastore. Last login dates are collected
+ * in memory and written in the background. Account status is checked on
+ * every request for both password and token authentication, so a locked or
+ * disabled account is rejected once its cached details expire.
  * 
  * @author Derek
  */
 public class SitewhereAuthenticationProvider implements AuthenticationProvider {
 
+    /** Static logger instance */
+    private static Logger LOGGER = LogManager.getLogger();
+
+    /** Default number of seconds an authenticated principal is cached */
+    private static final long DEFAULT_CACHE_EXPIRATION_SECS = 300;
+
+    /** Default maximum number of cached principals */
+    private static final long DEFAULT_CACHE_MAX_SIZE = 1000;
+
+    /** Interval between writing last login dates */
+    private static final long LAST_LOGIN_FLUSH_INTERVAL_SECS = 30;
+
     /** User management implementation */
     private IUserManagement userManagement;
 
+    /** Authenticated principals by credential digest */
+    private Cache<String, SitewhereUserDetails> credentialsCache;
+
+    /** Authenticated principals by username for token access */
+    private Cache<String, SitewhereUserDetails> usersCache;
+
+    /** Last login dates not yet written */
+    private ConcurrentMap<String, Date> pendingLogins = new ConcurrentHashMap<String, Date>();
+
+    /** Writes last login dates in the background */
+    private ScheduledExecutorService lastLoginUpdater;
+
     public SitewhereAuthenticationProvider(IUserManagement userManagement) {
 	this.userManagement = userManagement;
+	this.credentialsCache = CacheBuilder.newBuilder().maximumSize(DEFAULT_CACHE_MAX_SIZE)
+		.expireAfterWrite(DEFAULT_CACHE_EXPIRATION_SECS, TimeUnit.SECONDS).build();
+	this.usersCache = CacheBuilder.newBuilder().maximumSize(DEFAULT_CACHE_MAX_SIZE)
+		.expireAfterWrite(DEFAULT_CACHE_EXPIRATION_SECS, TimeUnit.SECONDS).build();
+	this.lastLoginUpdater = Executors.newSingleThreadScheduledExecutor(new LastLoginThreadFactory());
+	lastLoginUpdater.scheduleWithFixedDelay(new LastLoginFlusher(), LAST_LOGIN_FLUSH_INTERVAL_SECS,
+		LAST_LOGIN_FLUSH_INTERVAL_SECS, TimeUnit.SECONDS);
     }
 
     /*
@@ -49,9 +103,15 @@ public class SitewhereAuthenticationProvider implements AuthenticationProvider {
 		if (getUserManagement() == null) {
 		    throw new AuthenticationServiceException("User management not available. Check logs for details.");
 		}
-		IUser user = getUserManagement().authenticate(username, password);
-		List<IGrantedAuthority> auths = getUserManagement().getGrantedAuthorities(user.getUsername());
-		SitewhereUserDetails details = new SitewhereUserDetails(user, auths);
+		String key = getCredentialsKey(username, password);
+		SitewhereUserDetails details = credentialsCache.getIfPresent(key);
+		if (details == null) {
+		    IUser user = getUserManagement().authenticate(username, password);
+		    details = loadUserDetails(user);
+		    credentialsCache.put(key, details);
+		    pendingLogins.put(user.getUsername(), new Date());
+		}
+		checkAccountStatus(details);
 		return new SitewhereAuthentication(details, password);
 	    } else if (input instanceof SitewhereAuthentication) {
 		return input;
@@ -63,6 +123,83 @@ public class SitewhereAuthenticationProvider implements AuthenticationProvider {
 	}
     }
 
+    /**
+     * Authenticate using an access token issued by {@link TokenManagement}.
+     * 
+     * @param token
+     * @return
+     * @throws AuthenticationException
+     */
+    public Authentication authenticateToken(String token) throws AuthenticationException {
+	try {
+	    String username = TokenManagement.getUsernameFromToken(token);
+	    SitewhereUserDetails details = usersCache.getIfPresent(username);
+	    if (details == null) {
+		if (getUserManagement() == null) {
+		    throw new AuthenticationServiceException("User management not available. Check logs for details.");
+		}
+		IUser user = getUserManagement().getUserByUsername(username);
+		if (user == null) {
+		    throw new BadCredentialsException("Token issued for unknown user.");
+		}
+		details = loadUserDetails(user);
+		usersCache.put(username, details);
+	    }
+	    checkAccountStatus(details);
+	    return new SitewhereAuthentication(details, null);
+	} catch (SiteWhereException e) {
+	    throw new BadCredentialsException("Unable to authenticate.", e);
+	}
+    }
+
+    /**
+     * Reject accounts that are locked or otherwise not active.
+     * 
+     * @param details
+     * @throws AuthenticationException
+     */
+    protected void checkAccountStatus(SitewhereUserDetails details) throws AuthenticationException {
+	if (!details.isAccountNonLocked()) {
+	    throw new LockedException("User account is locked.");
+	}
+	if (!details.isEnabled()) {
+	    throw new DisabledException("User account is disabled.");
+	}
+    }
+
+    /**
+     * Load details including granted authorities for a user.
+     * 
+     * @param user
+     * @return
+     * @throws SiteWhereException
+     */
+    protected SitewhereUserDetails loadUserDetails(IUser user) throws SiteWhereException {
+	List<IGrantedAuthority> auths = getUserManagement().getGrantedAuthorities(user.getUsername());
+	return new SitewhereUserDetails(user, auths);
+    }
+
+    /**
+     * Get cache key for a username/password combination. The password is
+     * digested so that it is not retained in memory.
+     * 
+     * @param username
+     * @param password
+     * @return
+     * @throws SiteWhereException
+     */
+    protected String getCredentialsKey(String username, String password) throws SiteWhereException {
+	try {
+	    MessageDigest digest = MessageDigest.getInstance("SHA-256");
+	    digest.update(String.valueOf(username).getBytes(StandardCharsets.UTF_8));
+	    digest.update((byte) 0);
+	    digest.update(String.valueOf(password).getBytes(StandardCharsets.UTF_8));
+	    return Base64.getEncoder().encodeToString(digest.digest());
+	} catch (NoSuchAlgorithmException e) {
+	    throw new SiteWhereException("Unable to digest credentials.", e);
+	}
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -82,4 +219,39 @@ public class SitewhereAuthenticationProvider implements AuthenticationProvider {
     public void setUserManagement(IUserManagement userManagement) {
 	this.userManagement = userManagement;
     }
-}
\ No newline at end of file
+
+    /** Used for naming last login updater thread */
+    private class LastLoginThreadFactory implements ThreadFactory {
+
+	public Thread newThread(Runnable r) {
+	    Thread thread = new Thread(r, "User Last Login Updater");
+	    thread.setDaemon(true);
+	    return thread;
+	}
+    }
+
+    /**
+     * Writes pending last login dates. Multiple logins by the same user between
+     * flushes result in a single write.
+     * 
+     * @author Derek
+     */
+    private class LastLoginFlusher implements Runnable {
+
+	@Override
+	public void run() {
+	    for (Map.Entry<String, Date> entry : pendingLogins.entrySet()) {
+		if (!pendingLogins.remove(entry.getKey(), entry.getValue())) {
+		    continue;
+		}
+		try {
+		    getUserManagement().updateLastLogin(entry.getKey(), entry.getValue());
+		} catch (SiteWhereException e) {
+		    LOGGER.warn("Unable to update last login for user: " + entry.getKey(), e);
+		} catch (Throwable e) {
+		    LOGGER.error("Unhandled exception updating last login.", e);
+		}
+	    }
+	}
+    }
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.security;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.sitewhere.server.resource.SiteWhereHomeResourceManager;
+import com.sitewhere.spi.SiteWhereException;
+import com.sitewhere.spi.SiteWhereSystemException;
+import com.sitewhere.spi.error.ErrorCode;
+import com.sitewhere.spi.error.ErrorLevel;
+
+/**
+ * Issues and verifies signed access tokens. A token carries the username and
+ * an expiration date and is signed with HMAC-SHA256 so that it can be checked
+ * without a datastore lookup. The signing key is read from the
+ * 'sitewhere.token.key' system property (Base64) if set. Otherwise it is read
+ * from 'conf/security/token-signing.key' under SiteWhere home, which is
+ * created with a random key the first time it is needed. Copy the file or set
+ * the property on every instance so that tokens are accepted across a cluster
+ * and survive restarts.
+ * 
+ * @author Derek
+ */
+public class TokenManagement {
+
+    /** Static logger instance */
+    private static Logger LOGGER = LogManager.getLogger();
+
+    /** System property that holds a Base64 encoded signing key */
+    public static final String PROP_SIGNING_KEY = "sitewhere.token.key";
+
+    /** Folder under configuration root that holds the signing key file */
+    public static final String SIGNING_KEY_FOLDER = "security";
+
+    /** File that holds the Base64 encoded signing key */
+    public static final String SIGNING_KEY_FILE = "token-signing.key";
+
+    /** Number of bytes in a generated signing key */
+    private static final int SIGNING_KEY_LENGTH = 32;
+
+    /** Default lifetime for issued tokens */
+    public static final long DEFAULT_EXPIRATION_MS = 60 * 60 * 1000;
+
+    /** Algorithm used to sign tokens */
+    private static final String SIGNATURE_ALGORITHM = "HmacSHA256";
+
+    /** Separator between token sections */
+    private static final String SEPARATOR = ".";
+
+    /** Key used to sign tokens */
+    private static SecretKeySpec signingKey;
+
+    /**
+     * Create a token for the given user that expires after the given interval.
+     * 
+     * @param username
+     * @param expirationMs
+     * @return
+     * @throws SiteWhereException
+     */
+    public static String generateToken(String username, long expirationMs) throws SiteWhereException {
+	long expires = System.currentTimeMillis() + expirationMs;
+	String payload = Base64.getUrlEncoder().withoutPadding()
+		.encodeToString(username.getBytes(StandardCharsets.UTF_8)) + SEPARATOR + expires;
+	return payload + SEPARATOR + Base64.getUrlEncoder().withoutPadding().encodeToString(sign(payload));
+    }
+
+    /**
+     * Get the expiration date (in ms) encoded in a token that has already been
+     * verified.
+     * 
+     * @param token
+     * @return
+     * @throws SiteWhereException
+     */
+    public static long getExpiration(String token) throws SiteWhereException {
+	String[] parts = split(token);
+	try {
+	    return Long.parseLong(parts[1]);
+	} catch (NumberFormatException e) {
+	    throw invalidToken();
+	}
+    }
+
+    /**
+     * Verify the signature and expiration of a token and return the username
+     * it was issued for.
+     * 
+     * @param token
+     * @return
+     * @throws SiteWhereException
+     */
+    public static String getUsernameFromToken(String token) throws SiteWhereException {
+	String[] parts = split(token);
+	String payload = parts[0] + SEPARATOR + parts[1];
+	byte[] signature;
+	try {
+	    signature = Base64.getUrlDecoder().decode(parts[2]);
+	} catch (IllegalArgumentException e) {
+	    throw invalidToken();
+	}
+	if (!MessageDigest.isEqual(sign(payload), signature)) {
+	    throw invalidToken();
+	}
+	if (getExpiration(token) < System.currentTimeMillis()) {
+	    throw invalidToken();
+	}
+	try {
+	    return new String(Base64.getUrlDecoder().decode(parts[0]), StandardCharsets.UTF_8);
+	} catch (IllegalArgumentException e) {
+	    throw invalidToken();
+	}
+    }
+
+    /**
+     * Split a token into its sections.
+     * 
+     * @param token
+     * @return
+     * @throws SiteWhereException
+     */
+    protected static String[] split(String token) throws SiteWhereException {
+	String[] parts = (token != null) ? token.split("\\.") : null;
+	if ((parts == null) || (parts.length != 3)) {
+	    throw invalidToken();
+	}
+	return parts;
+    }
+
+    /**
+     * Compute the signature for a token payload.
+     * 
+     * @param payload
+     * @return
+     * @throws SiteWhereException
+     */
+    protected static byte[] sign(String payload) throws SiteWhereException {
+	try {
+	    Mac mac = Mac.getInstance(SIGNATURE_ALGORITHM);
+	    mac.init(getSigningKey());
+	    return mac.doFinal(payload.getBytes(StandardCharsets.UTF_8));
+	} catch (GeneralSecurityException e) {
+	    throw new SiteWhereException("Unable to sign access token.", e);
+	}
+    }
+
+    /**
+     * Create exception for a token that can not be accepted.
+     * 
+     * @return
+     */
+    protected static SiteWhereException invalidToken() {
+	return new SiteWhereSystemException(ErrorCode.InvalidAccessToken, ErrorLevel.ERROR, 401);
+    }
+
+    /**
+     * Get the key used to sign tokens, loading it from configuration the first
+     * time it is needed.
+     * 
+     * @return
+     * @throws SiteWhereException
+     */
+    protected static synchronized SecretKeySpec getSigningKey() throws SiteWhereException {
+	if (signingKey == null) {
+	    signingKey = new SecretKeySpec(loadSigningKey(), SIGNATURE_ALGORITHM);
+	}
+	return signingKey;
+    }
+
+    /**
+     * Load the signing key from the system property or the key file. If the
+     * configuration folder is not available, a random key is used and tokens
+     * will only be accepted until the server restarts.
+     * 
+     * @return
+     * @throws SiteWhereException
+     */
+    protected static byte[] loadSigningKey() throws SiteWhereException {
+	String configured = System.getProperty(PROP_SIGNING_KEY);
+	if (configured != null) {
+	    return decodeSigningKey(configured);
+	}
+	File confDir;
+	try {
+	    confDir = SiteWhereHomeResourceManager.calculateConfigurationPath();
+	} catch (SiteWhereException e) {
+	    LOGGER.warn("Configuration folder not available. Access tokens will not survive a restart.", e);
+	    return generateSigningKey();
+	}
+	File file = new File(new File(confDir, SIGNING_KEY_FOLDER), SIGNING_KEY_FILE);
+	try {
+	    if (!file.exists()) {
+		file.getParentFile().mkdirs();
+		try {
+		    Files.write(file.toPath(), Base64.getEncoder().encode(generateSigningKey()),
+			    StandardOpenOption.CREATE_NEW);
+		    LOGGER.info("Created access token signing key in " + file.getAbsolutePath());
+		} catch (FileAlreadyExistsException e) {
+		    // Created by another instance sharing the folder.
+		}
+	    }
+	    return decodeSigningKey(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+	} catch (IOException e) {
+	    throw new SiteWhereException("Unable to load access token signing key.", e);
+	}
+    }
+
+    /**
+     * Decode a Base64 signing key.
+     * 
+     * @param encoded
+     * @return
+     * @throws SiteWhereException
+     */
+    protected static byte[] decodeSigningKey(String encoded) throws SiteWhereException {
+	try {
+	    byte[] key = Base64.getDecoder().decode(encoded.trim());
+	    if (key.length < SIGNING_KEY_LENGTH) {
+		throw new SiteWhereException(
+			"Access token signing key must be at least " + SIGNING_KEY_LENGTH + " bytes.");
+	    }
+	    return key;
+	} catch (IllegalArgumentException e) {
+	    throw new SiteWhereException("Access token signing key is not valid Base64.", e);
+	}
+    }
+
+    /**
+     * Generate a random signing key.
+     * 
+     * @return
+     */
+    protected static byte[] generateSigningKey() {
+	byte[] key = new byte[SIGNING_KEY_LENGTH];
+	new SecureRandom().nextBytes(key);
+	return key;
+    }
+}
@@ -9,12 +9,24 @@ package com.sitewhere.server;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -48,6 +60,7 @@ import com.sitewhere.server.lifecycle.SimpleLifecycleStep;
 import com.sitewhere.server.lifecycle.StartComponentLifecycleStep;
 import com.sitewhere.server.lifecycle.StopComponentLifecycleStep;
 import com.sitewhere.server.resource.SiteWhereHomeResourceManager;
+import com.sitewhere.server.tenant.TenantEngineSettings;
 import com.sitewhere.server.tenant.TenantManagementTriggers;
 import com.sitewhere.server.tenant.TenantTemplateManager;
 import com.sitewhere.spi.ServerStartupException;
@@ -55,12 +68,14 @@ import com.sitewhere.spi.SiteWhereException;
 import com.sitewhere.spi.SiteWhereSystemException;
 import com.sitewhere.spi.asset.IAssetManagement;
 import com.sitewhere.spi.asset.IAssetModuleManager;
+import com.sitewhere.spi.configuration.IDefaultResourcePaths;
 import com.sitewhere.spi.configuration.IGlobalConfigurationResolver;
 import com.sitewhere.spi.device.IDeviceManagement;
 import com.sitewhere.spi.device.IDeviceManagementCacheProvider;
 import com.sitewhere.spi.device.communication.IDeviceCommunication;
 import com.sitewhere.spi.device.event.IDeviceEventManagement;
 import com.sitewhere.spi.device.event.IEventProcessing;
+import com.sitewhere.spi.device.group.IDeviceGroupMembershipIndex;
 import com.sitewhere.spi.error.ErrorCode;
 import com.sitewhere.spi.error.ErrorLevel;
 import com.sitewhere.spi.resource.IResource;
@@ -84,6 +99,7 @@ import com.sitewhere.spi.server.lifecycle.ILifecycleProgressMonitor;
 import com.sitewhere.spi.server.lifecycle.LifecycleComponentType;
 import com.sitewhere.spi.server.lifecycle.LifecycleStatus;
 import com.sitewhere.spi.server.tenant.ISiteWhereTenantEngine;
+import com.sitewhere.spi.server.tenant.ITenantEngineSettings;
 import com.sitewhere.spi.server.tenant.ITenantModelInitializer;
 import com.sitewhere.spi.server.tenant.ITenantPersistentState;
 import com.sitewhere.spi.server.tenant.ITenantTemplateManager;
@@ -103,12 +119,12 @@ import com.sitewhere.version.VersionHelper;
  */
 public class SiteWhereServer extends LifecycleComponent implements ISiteWhereServer {
 
-    /** Number of threads in pool for starting tenants */
-    private static final int TENANT_STARTUP_PARALLELISM = 5;
-
     /** Private logger instance */
     private static Logger LOGGER = LogManager.getLogger();
 
+    /** Interval between checks for idle tenant engines */
+    private static final int IDLE_CHECK_INTERVAL_SECS = 60;
+
     /** Spring context for server */
     public static ApplicationContext SERVER_SPRING_CONTEXT;
 
@@ -161,10 +177,19 @@ public class SiteWhereServer extends LifecycleComponent implements ISiteWhereSer
     private Map<String, ILifecycleComponent> lifecycleComponentsById = new HashMap<String, ILifecycleComponent>();
 
     /** Map of tenants by authentication token */
-    private Map<String, ITenant> tenantsByAuthToken = new HashMap<String, ITenant>();
+    private Map<String, ITenant> tenantsByAuthToken = new ConcurrentHashMap<String, ITenant>();
 
     /** Map of tenant engines by tenant id */
-    private Map<String, ISiteWhereTenantEngine> tenantEnginesById = new HashMap<String, ISiteWhereTenantEngine>();
+    private Map<String, ISiteWhereTenantEngine> tenantEnginesById = new ConcurrentHashMap<String, ISiteWhereTenantEngine>();
+
+    /** Locks that prevent a tenant engine from being started and stopped at once */
+    private ConcurrentMap<String, Object> tenantLocks = new ConcurrentHashMap<String, Object>();
+
+    /** Tenant engines being started on demand by tenant id */
+    private ConcurrentMap<String, Future<ISiteWhereTenantEngine>> pendingStarts = new ConcurrentHashMap<String, Future<ISiteWhereTenantEngine>>();
+
+    /** Settings for initializing and starting tenant engines */
+    private ITenantEngineSettings tenantEngineSettings = new TenantEngineSettings();
 
     /** Metric regsitry */
     private MetricRegistry metricRegistry = new MetricRegistry();
@@ -184,11 +209,17 @@ public class SiteWhereServer extends LifecycleComponent implements ISiteWhereSer
     /** Thread pool for starting tenants in parallel */
     private ExecutorService tenantStarters;
 
+    /** Stops idle tenant engines if lazy start is enabled */
+    private ScheduledExecutorService idleTenantMonitor;
+
     /** Supports migrating old server version to new format */
     private IBackwardCompatibilityService backwardCompatibilityService = new BackwardCompatibilityService();
 
     public SiteWhereServer() {
 	super(LifecycleComponentType.System);
+
+	// Tenant engines are registered from multiple threads.
+	setLifecycleComponents(new ConcurrentHashMap<String, ILifecycleComponent>());
     }
 
     /**
@@ -356,11 +387,8 @@ public class SiteWhereServer extends LifecycleComponent implements ISiteWhereSer
 	List<ITenant> matches = new ArrayList<ITenant>();
 	for (ITenant tenant : tenants.getResults()) {
 	    if (tenant.getAuthorizedUserIds().contains(userId)) {
-		if (requireStarted) {
-		    ISiteWhereTenantEngine engine = getTenantEngine(tenant.getId());
-		    if ((engine == null) || (engine.getLifecycleStatus() != LifecycleStatus.Started)) {
-			continue;
-		    }
+		if ((requireStarted) && (!isTenantAvailable(tenant))) {
+		    continue;
 		}
 		matches.add(tenant);
 	    }
@@ -378,15 +406,61 @@ public class SiteWhereServer extends LifecycleComponent implements ISiteWhereSer
     public ISiteWhereTenantEngine getTenantEngine(String tenantId) throws SiteWhereException {
 	ISiteWhereTenantEngine engine = tenantEnginesById.get(tenantId);
 	if (engine == null) {
-	    ITenant tenant = getTenantManagement().getTenantById(tenantId);
-	    if (tenant == null) {
-		return null;
+	    synchronized (getTenantLock(tenantId)) {
+		engine = tenantEnginesById.get(tenantId);
+		if (engine == null) {
+		    ITenant tenant = getTenantManagement().getTenantById(tenantId);
+		    if (tenant == null) {
+			return null;
+		    }
+		    engine = initializeTenantEngine(tenant);
+		}
 	    }
-	    engine = initializeTenantEngine(tenant);
 	}
 	return engine;
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.server.ISiteWhereServer#activateTenantEngine(java.lang.
+     * String)
+     */
+    @Override
+    public ISiteWhereTenantEngine activateTenantEngine(String tenantId) throws SiteWhereException {
+	ISiteWhereTenantEngine engine = tenantEnginesById.get(tenantId);
+	if ((engine == null) || (engine.getLifecycleStatus() != LifecycleStatus.Started)) {
+	    if (getTenantEngineSettings().isLazyStartEnabled()) {
+		engine = startTenantEngineOnDemand(tenantId);
+	    } else if (engine == null) {
+		engine = getTenantEngine(tenantId);
+	    }
+	}
+	if (engine != null) {
+	    engine.recordActivity();
+	}
+	return engine;
+    }
+
+    /**
+     * Indicates whether a tenant can accept requests. If lazy start is enabled,
+     * tenants that are not running are considered available since they will be
+     * started on demand.
+     * 
+     * @param tenant
+     * @return
+     * @throws SiteWhereException
+     */
+    protected boolean isTenantAvailable(ITenant tenant) throws SiteWhereException {
+	if (getTenantEngineSettings().isLazyStartEnabled()) {
+	    ISiteWhereTenantEngine engine = tenantEnginesById.get(tenant.getId());
+	    return (engine == null) || (engine.getLifecycleStatus() != LifecycleStatus.Error);
+	}
+	ISiteWhereTenantEngine engine = getTenantEngine(tenant.getId());
+	return (engine != null) && (engine.getLifecycleStatus() == LifecycleStatus.Started);
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -467,6 +541,18 @@ public class SiteWhereServer extends LifecycleComponent implements ISiteWhereSer
 	return engine.getDeviceManagementCacheProvider();
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.server.ISiteWhereServer#
+     * getDeviceGroupMembershipIndex(com.sitewhere.spi.tenant.ITenant)
+     */
+    @Override
+    public IDeviceGroupMembershipIndex getDeviceGroupMembershipIndex(ITenant tenant) throws SiteWhereException {
+	ISiteWhereTenantEngine engine = assureTenantEngine(tenant);
+	return engine.getDeviceGroupMembershipIndex();
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -575,6 +661,9 @@ public class SiteWhereServer extends LifecycleComponent implements ISiteWhereSer
      */
     protected ISiteWhereTenantEngine assureTenantEngine(ITenant tenant) throws SiteWhereException {
 	ISiteWhereTenantEngine engine = tenantEnginesById.get(tenant.getId());
+	if ((engine == null) && (getTenantEngineSettings().isLazyStartEnabled())) {
+	    engine = activateTenantEngine(tenant.getId());
+	}
 	if (engine == null) {
 	    throw new SiteWhereException("No engine registered for tenant.");
 	}
@@ -595,6 +684,9 @@ public class SiteWhereServer extends LifecycleComponent implements ISiteWhereSer
 	    throw new SiteWhereSystemException(ErrorCode.InvalidTenantAuthToken, ErrorLevel.ERROR);
 	}
 	ISiteWhereTenantEngine engine = tenantEnginesById.get(tenant.getId());
+	if ((engine == null) && (getTenantEngineSettings().isLazyStartEnabled())) {
+	    engine = activateTenantEngine(tenant.getId());
+	}
 	if (engine == null) {
 	    throw new SiteWhereException("Tenant found for auth token, but no engine registered for tenant.");
 	}
@@ -724,6 +816,14 @@ public class SiteWhereServer extends LifecycleComponent implements ISiteWhereSer
 		    executor.execute(versionChecker);
 		}
 
+		// Stop idle tenant engines if started on demand.
+		if (getTenantEngineSettings().isLazyStartEnabled()) {
+		    idleTenantMonitor = Executors
+			    .newSingleThreadScheduledExecutor(new TenantThreadFactory("Idle Tenant Monitor"));
+		    idleTenantMonitor.scheduleWithFixedDelay(new IdleTenantMonitor(), IDLE_CHECK_INTERVAL_SECS,
+			    IDLE_CHECK_INTERVAL_SECS, TimeUnit.SECONDS);
+		}
+
 		// Handle backward compatibility.
 		backwardCompatibilityService.afterServerStart(monitor);
 	    }
@@ -760,7 +860,9 @@ public class SiteWhereServer extends LifecycleComponent implements ISiteWhereSer
     }
 
     /**
-     * Initialize and start tenants.
+     * Initialize and start tenants. Tenants with the most recent activity are
+     * handled first. If lazy start is enabled, only recently active tenants
+     * are started and the others are started on demand.
      * 
      * @param start
      * @throws SiteWhereException
@@ -771,16 +873,37 @@ public class SiteWhereServer extends LifecycleComponent implements ISiteWhereSer
 
 	    @Override
 	    public void execute(ILifecycleProgressMonitor monitor) throws SiteWhereException {
-		initializeTenantEngines();
+		List<ITenant> tenants = getTenantsByPriority();
+		List<ITenant> eager = new ArrayList<ITenant>();
+		List<ITenant> idle = new ArrayList<ITenant>();
+		for (ITenant tenant : tenants) {
+		    tenantsByAuthToken.put(tenant.getAuthenticationToken(), tenant);
+		    if (isStartedWithServer(tenant)) {
+			eager.add(tenant);
+		    } else if (isIdleWithServer(tenant)) {
+			idle.add(tenant);
+		    }
+		}
+		if (getTenantEngineSettings().isLazyStartEnabled()) {
+		    LOGGER.info("Starting " + eager.size() + " of " + tenants.size() + " tenant engines. Event sources for "
+			    + idle.size() + " others will be started to wake them on demand.");
+		}
+		List<ITenant> initialized = new ArrayList<ITenant>(eager);
+		initialized.addAll(idle);
+		initializeTenantEngines(initialized);
 
 		// Create thread pool for starting tenants in parallel.
 		if (tenantStarters != null) {
 		    tenantStarters.shutdownNow();
+		    tenantStarters = null;
 		}
-		tenantStarters = Executors.newFixedThreadPool(TENANT_STARTUP_PARALLELISM);
 
 		// Start tenant engines.
-		for (ISiteWhereTenantEngine engine : tenantEnginesById.values()) {
+		for (ITenant tenant : eager) {
+		    final ISiteWhereTenantEngine engine = tenantEnginesById.get(tenant.getId());
+		    if (engine == null) {
+			continue;
+		    }
 
 		    // Find state or create initial state as needed.
 		    ITenantPersistentState state = engine.getPersistentState();
@@ -794,7 +917,7 @@ public class SiteWhereServer extends LifecycleComponent implements ISiteWhereSer
 
 		    // Do not start if desired state is 'Stopped'.
 		    if (state.getDesiredState() != LifecycleStatus.Stopped) {
-			tenantStarters.execute(new Runnable() {
+			getTenantStarters().execute(new Runnable() {
 
 			    @Override
 			    public void run() {
@@ -807,10 +930,253 @@ public class SiteWhereServer extends LifecycleComponent implements ISiteWhereSer
 			});
 		    }
 		}
+
+		// Start only inbound event sources for other tenant engines.
+		for (ITenant tenant : idle) {
+		    final ISiteWhereTenantEngine engine = tenantEnginesById.get(tenant.getId());
+		    if (engine == null) {
+			continue;
+		    }
+		    getTenantStarters().execute(new Runnable() {
+
+			@Override
+			public void run() {
+			    try {
+				idleTenantEngine(engine);
+			    } catch (SiteWhereException e) {
+				LOGGER.error("Unable to start event sources for idle tenant engine.", e);
+			    }
+			}
+		    });
+		}
 	    }
 	});
     }
 
+    /**
+     * Get all tenants ordered so that those with the most recent activity are
+     * first. Tenants with no recorded activity are last.
+     * 
+     * @return
+     * @throws SiteWhereException
+     */
+    protected List<ITenant> getTenantsByPriority() throws SiteWhereException {
+	TenantSearchCriteria criteria = new TenantSearchCriteria(1, 0);
+	ISearchResults<ITenant> tenants = getTenantManagement().listTenants(criteria);
+	final Map<String, Long> activity = new HashMap<String, Long>();
+	for (ITenant tenant : tenants.getResults()) {
+	    ITenantPersistentState state = getStoredTenantState(tenant);
+	    if ((state != null) && (state.getLastActivityDate() != null)) {
+		activity.put(tenant.getId(), state.getLastActivityDate().getTime());
+	    }
+	}
+	List<ITenant> sorted = new ArrayList<ITenant>(tenants.getResults());
+	Collections.sort(sorted, new Comparator<ITenant>() {
+
+	    @Override
+	    public int compare(ITenant first, ITenant second) {
+		Long firstActivity = activity.get(first.getId());
+		Long secondActivity = activity.get(second.getId());
+		long a = (firstActivity != null) ? firstActivity : 0;
+		long b = (secondActivity != null) ? secondActivity : 0;
+		return Long.compare(b, a);
+	    }
+	});
+	return sorted;
+    }
+
+    /**
+     * Indicates whether a tenant engine should be initialized and started with
+     * the server. If lazy start is enabled, only tenants with activity inside
+     * the idle timeout are started.
+     * 
+     * @param tenant
+     * @return
+     * @throws SiteWhereException
+     */
+    protected boolean isStartedWithServer(ITenant tenant) throws SiteWhereException {
+	if (!getTenantEngineSettings().isLazyStartEnabled()) {
+	    return true;
+	}
+	ITenantPersistentState state = getStoredTenantState(tenant);
+	if ((state == null) || (state.getDesiredState() == LifecycleStatus.Stopped)
+		|| (state.getLastActivityDate() == null)) {
+	    return false;
+	}
+	long idle = System.currentTimeMillis() - state.getLastActivityDate().getTime();
+	return idle < getIdleTimeoutMs();
+    }
+
+    /**
+     * Indicates whether a tenant engine that is not started with the server
+     * should be initialized with only its inbound event sources running so
+     * that device traffic can start it on demand.
+     * 
+     * @param tenant
+     * @return
+     * @throws SiteWhereException
+     */
+    protected boolean isIdleWithServer(ITenant tenant) throws SiteWhereException {
+	if (!getTenantEngineSettings().isLazyStartEnabled()) {
+	    return false;
+	}
+	ITenantPersistentState state = getStoredTenantState(tenant);
+	return (state == null) || (state.getDesiredState() != LifecycleStatus.Stopped);
+    }
+
+    /**
+     * Read persistent state for a tenant without creating a tenant engine.
+     * 
+     * @param tenant
+     * @return
+     */
+    protected ITenantPersistentState getStoredTenantState(ITenant tenant) {
+	try {
+	    IResource resource = getRuntimeResourceManager().getTenantResource(tenant.getId(),
+		    IDefaultResourcePaths.TENANT_STATE_RESOURCE_NAME);
+	    if (resource == null) {
+		return null;
+	    }
+	    return MarshalUtils.unmarshalJson(resource.getContent(), TenantPersistentState.class);
+	} catch (SiteWhereException e) {
+	    LOGGER.warn("Unable to read persistent state for tenant '" + tenant.getName() + "'.", e);
+	    return null;
+	}
+    }
+
+    /**
+     * Initialize and start a tenant engine that is not running. The work is
+     * done on a tenant startup thread so that the security context of the
+     * calling thread is not affected. Concurrent callers wait on the same
+     * startup without holding the tenant lock.
+     * 
+     * @param tenantId
+     * @return
+     * @throws SiteWhereException
+     */
+    protected ISiteWhereTenantEngine startTenantEngineOnDemand(final String tenantId) throws SiteWhereException {
+	Future<ISiteWhereTenantEngine> result;
+	synchronized (getTenantLock(tenantId)) {
+	    result = pendingStarts.get(tenantId);
+	    if (result == null) {
+		ISiteWhereTenantEngine existing = tenantEnginesById.get(tenantId);
+		if ((existing != null) && (existing.getLifecycleStatus() != LifecycleStatus.Stopped)) {
+		    return existing;
+		}
+		result = getTenantStarters().submit(new Callable<ISiteWhereTenantEngine>() {
+
+		    @Override
+		    public ISiteWhereTenantEngine call() throws Exception {
+			synchronized (getTenantLock(tenantId)) {
+			    ISiteWhereTenantEngine engine = tenantEnginesById.get(tenantId);
+			    if (engine == null) {
+				ITenant tenant = getTenantManagement().getTenantById(tenantId);
+				if (tenant == null) {
+				    return null;
+				}
+				engine = initializeTenantEngine(tenant);
+				if (engine == null) {
+				    return null;
+				}
+			    }
+
+			    // Do not start if tenant was explicitly stopped.
+			    ITenantPersistentState state = engine.getPersistentState();
+			    if ((state != null) && (state.getDesiredState() == LifecycleStatus.Stopped)) {
+				return engine;
+			    }
+			    if (engine.getLifecycleStatus() == LifecycleStatus.Stopped) {
+				LOGGER.info("Starting tenant engine '" + engine.getTenant().getName() + "' on demand.");
+				startTenantEngine(engine);
+			    }
+			    return engine;
+			}
+		    }
+		});
+		pendingStarts.put(tenantId, result);
+	    }
+	}
+	try {
+	    return result.get();
+	} catch (InterruptedException e) {
+	    throw new SiteWhereException("Interrupted while starting tenant engine.", e);
+	} catch (ExecutionException e) {
+	    throw new SiteWhereException("Unable to start tenant engine on demand.", e.getCause());
+	} finally {
+	    if (result.isDone()) {
+		pendingStarts.remove(tenantId, result);
+	    }
+	}
+    }
+
+    /**
+     * Stop a tenant engine that has not been used within the idle timeout, or
+     * prepare a tenant engine that was never started. Inbound event sources
+     * are left running so that device traffic starts the engine again. The
+     * desired state is not changed.
+     * 
+     * @param engine
+     * @throws SiteWhereException
+     */
+    protected void idleTenantEngine(ISiteWhereTenantEngine engine) throws SiteWhereException {
+	String tenantId = engine.getTenant().getId();
+	synchronized (getTenantLock(tenantId)) {
+	    if ((tenantEnginesById.get(tenantId) != engine) || (pendingStarts.containsKey(tenantId))) {
+		return;
+	    }
+	    if (engine.getLifecycleStatus() == LifecycleStatus.Started) {
+		Date last = engine.getLastActivityDate();
+		if ((last != null) && (System.currentTimeMillis() - last.getTime() < getIdleTimeoutMs())) {
+		    return;
+		}
+		LOGGER.info("Stopping idle tenant engine '" + engine.getTenant().getName() + "'.");
+	    } else if (engine.getLifecycleStatus() != LifecycleStatus.Stopped) {
+		return;
+	    }
+	    engine.idle(new LifecycleProgressMonitor());
+	}
+    }
+
+    /**
+     * Get lock object used to serialize starting and stopping a tenant engine.
+     * 
+     * @param tenantId
+     * @return
+     */
+    protected Object getTenantLock(String tenantId) {
+	Object lock = tenantLocks.get(tenantId);
+	if (lock == null) {
+	    Object created = new Object();
+	    lock = tenantLocks.putIfAbsent(tenantId, created);
+	    if (lock == null) {
+		lock = created;
+	    }
+	}
+	return lock;
+    }
+
+    /**
+     * Get thread pool used for starting tenant engines. Created if necessary.
+     * 
+     * @return
+     */
+    protected synchronized ExecutorService getTenantStarters() {
+	if (tenantStarters == null) {
+	    tenantStarters = Executors.newFixedThreadPool(Math.max(1, getTenantEngineSettings().getStartupThreads()),
+		    new TenantThreadFactory("Tenant Starter"));
+	}
+	return tenantStarters;
+    }
+
+    /**
+     * Get idle timeout in milliseconds.
+     * 
+     * @return
+     */
+    protected long getIdleTimeoutMs() {
+	return getTenantEngineSettings().getIdleTimeoutMinutes() * 60L * 1000L;
+    }
+
     /**
      * Add management implementation startup to composite operation.
      * 
@@ -926,6 +1292,10 @@ public class SiteWhereServer extends LifecycleComponent implements ISiteWhereSer
 		    executor.shutdownNow();
 		    executor = null;
 		}
+		if (idleTenantMonitor != null) {
+		    idleTenantMonitor.shutdownNow();
+		    idleTenantMonitor = null;
+		}
 	    }
 	});
 
@@ -990,7 +1360,7 @@ public class SiteWhereServer extends LifecycleComponent implements ISiteWhereSer
 	    @Override
 	    public void execute(ILifecycleProgressMonitor monitor) throws SiteWhereException {
 		for (ISiteWhereTenantEngine engine : tenantEnginesById.values()) {
-		    if (engine.getLifecycleStatus() == LifecycleStatus.Started) {
+		    if ((engine.getLifecycleStatus() == LifecycleStatus.Started) || (engine.isIdle())) {
 			engine.lifecycleStop(monitor);
 		    }
 		}
@@ -1080,6 +1450,9 @@ public class SiteWhereServer extends LifecycleComponent implements ISiteWhereSer
 	// Initialize tracer.
 	initializeTracer();
 
+	// Initialize tenant engine settings.
+	initializeTenantEngineSettings();
+
 	// Initialize management implementations.
 	initializeManagementImplementations();
 
@@ -1226,6 +1599,24 @@ public class SiteWhereServer extends LifecycleComponent implements ISiteWhereSer
 	}
     }
 
+    /**
+     * Initialize settings for starting tenant engines.
+     * 
+     * @throws SiteWhereException
+     */
+    protected void initializeTenantEngineSettings() throws SiteWhereException {
+	try {
+	    this.tenantEngineSettings = (ITenantEngineSettings) SERVER_SPRING_CONTEXT
+		    .getBean(SiteWhereServerBeans.BEAN_TENANT_ENGINE_SETTINGS);
+	} catch (NoSuchBeanDefinitionException e) {
+	    this.tenantEngineSettings = new TenantEngineSettings();
+	}
+	if (tenantEngineSettings.isLazyStartEnabled()) {
+	    LOGGER.info("Tenant engines will be started on demand and stopped after "
+		    + tenantEngineSettings.getIdleTimeoutMinutes() + " idle minutes.");
+	}
+    }
+
     /**
      * Initialize the tenant template manager.
      * 
@@ -1300,15 +1691,50 @@ public class SiteWhereServer extends LifecycleComponent implements ISiteWhereSer
     }
 
     /**
-     * Create and initialize all tenant engines.
+     * Create and initialize tenant engines in parallel. Tenants are submitted in
+     * the order given.
      * 
+     * @param tenants
      * @throws SiteWhereException
      */
-    protected void initializeTenantEngines() throws SiteWhereException {
-	TenantSearchCriteria criteria = new TenantSearchCriteria(1, 0);
-	ISearchResults<ITenant> tenants = getTenantManagement().listTenants(criteria);
-	for (ITenant tenant : tenants.getResults()) {
-	    initializeTenantEngine(tenant);
+    protected void initializeTenantEngines(List<ITenant> tenants) throws SiteWhereException {
+	if (tenants.isEmpty()) {
+	    return;
+	}
+	int threads = getTenantEngineSettings().getInitializationThreads();
+	if (threads <= 0) {
+	    threads = Runtime.getRuntime().availableProcessors();
+	}
+	ExecutorService initializers = Executors.newFixedThreadPool(Math.min(threads, tenants.size()),
+		new TenantThreadFactory("Tenant Initializer"));
+	try {
+	    List<Future<ISiteWhereTenantEngine>> results = new ArrayList<Future<ISiteWhereTenantEngine>>();
+	    for (final ITenant tenant : tenants) {
+		results.add(initializers.submit(new Callable<ISiteWhereTenantEngine>() {
+
+		    @Override
+		    public ISiteWhereTenantEngine call() throws Exception {
+			return initializeTenantEngine(tenant);
+		    }
+		}));
+	    }
+	    SiteWhereException error = null;
+	    for (Future<ISiteWhereTenantEngine> result : results) {
+		try {
+		    result.get();
+		} catch (ExecutionException e) {
+		    if (error == null) {
+			error = new SiteWhereException("Unable to initialize tenant engine.", e.getCause());
+		    }
+		}
+	    }
+	    if (error != null) {
+		throw error;
+	    }
+	} catch (InterruptedException e) {
+	    throw new SiteWhereException("Interrupted while initializing tenant engines.", e);
+	} finally {
+	    initializers.shutdown();
 	}
     }
 
@@ -1386,4 +1812,77 @@ public class SiteWhereServer extends LifecycleComponent implements ISiteWhereSer
 	    LOGGER.warn("Error verifying tenant model.", e);
 	}
     }
-}
\ No newline at end of file
+
+    public ITenantEngineSettings getTenantEngineSettings() {
+	return tenantEngineSettings;
+    }
+
+    public void setTenantEngineSettings(ITenantEngineSettings tenantEngineSettings) {
+	this.tenantEngineSettings = tenantEngineSettings;
+    }
+
+    /**
+     * Periodically stops tenant engines that have had no activity within the
+     * idle timeout and persists the last activity of running engines. Engines
+     * are given a full timeout after they are first seen running so that
+     * engines started by an administrator are not stopped immediately.
+     * 
+     * @author Derek
+     */
+    private class IdleTenantMonitor implements Runnable {
+
+	/** Time each running engine was first seen */
+	private Map<String, Long> runningSince = new HashMap<String, Long>();
+
+	@Override
+	public void run() {
+	    try {
+		long now = System.currentTimeMillis();
+		for (ISiteWhereTenantEngine engine : tenantEnginesById.values()) {
+		    String tenantId = engine.getTenant().getId();
+		    if (engine.getLifecycleStatus() != LifecycleStatus.Started) {
+			runningSince.remove(tenantId);
+			continue;
+		    }
+		    try {
+			engine.persistLastActivity();
+		    } catch (SiteWhereException e) {
+			LOGGER.warn("Unable to persist last activity for tenant '" + tenantId + "'.", e);
+		    }
+		    Long since = runningSince.get(tenantId);
+		    if (since == null) {
+			runningSince.put(tenantId, now);
+			continue;
+		    }
+		    Date last = engine.getLastActivityDate();
+		    long reference = Math.max(since, (last != null) ? last.getTime() : 0);
+		    if (now - reference >= getIdleTimeoutMs()) {
+			idleTenantEngine(engine);
+			runningSince.remove(tenantId);
+		    }
+		}
+		runningSince.keySet().retainAll(tenantEnginesById.keySet());
+	    } catch (Throwable e) {
+		LOGGER.error("Error checking for idle tenant engines.", e);
+	    }
+	}
+    }
+
+    /** Used for naming tenant engine threads */
+    private class TenantThreadFactory implements ThreadFactory {
+
+	/** Counts threads */
+	private AtomicInteger counter = new AtomicInteger();
+
+	/** Thread name prefix */
+	private String prefix;
+
+	public TenantThreadFactory(String prefix) {
+	    this.prefix = prefix;
+	}
+
+	public Thread newThread(Runnable r) {
+	    return new Thread(r, "SiteWhere " + prefix + " " + counter.incrementAndGet());
+	}
+    }
+}
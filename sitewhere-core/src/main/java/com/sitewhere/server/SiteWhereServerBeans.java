@@ -24,6 +24,9 @@ public interface SiteWhereServerBeans {
     /** Bean id for version checker */
     public static final String BEAN_VERSION_CHECK = "versionChecker";
 
+    /** Bean id for tenant engine settings */
+    public static final String BEAN_TENANT_ENGINE_SETTINGS = "tenantEngineSettings";
+
     /*************************
      * MANAGEMENT INTERFACES *
      *************************/
@@ -22,6 +22,7 @@ import com.sitewhere.spi.device.IDeviceManagementCacheProvider;
 import com.sitewhere.spi.device.communication.IDeviceCommunication;
 import com.sitewhere.spi.device.event.IDeviceEventManagement;
 import com.sitewhere.spi.device.event.IEventProcessing;
+import com.sitewhere.spi.device.group.IDeviceGroupMembershipIndex;
 import com.sitewhere.spi.resource.IResourceManager;
 import com.sitewhere.spi.scheduling.IScheduleManagement;
 import com.sitewhere.spi.scheduling.IScheduleManager;
@@ -252,6 +253,18 @@ public class SiteWhereServerDecorator extends LifecycleComponentDecorator implem
 	return server.getTenantEngine(tenantId);
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.server.ISiteWhereServer#activateTenantEngine(java.lang.
+     * String)
+     */
+    @Override
+    public ISiteWhereTenantEngine activateTenantEngine(String tenantId) throws SiteWhereException {
+	return server.activateTenantEngine(tenantId);
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -318,6 +331,17 @@ public class SiteWhereServerDecorator extends LifecycleComponentDecorator implem
 	return server.getDeviceManagementCacheProvider(tenant);
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.server.ISiteWhereServer#
+     * getDeviceGroupMembershipIndex(com.sitewhere.spi.tenant.ITenant)
+     */
+    @Override
+    public IDeviceGroupMembershipIndex getDeviceGroupMembershipIndex(ITenant tenant) throws SiteWhereException {
+	return server.getDeviceGroupMembershipIndex(tenant);
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -8,6 +8,7 @@
 package com.sitewhere.server;
 
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -27,6 +28,7 @@ import com.sitewhere.configuration.ConfigurationUtils;
 import com.sitewhere.configuration.ResourceManagerTenantConfigurationResolver;
 import com.sitewhere.device.DeviceEventManagementTriggers;
 import com.sitewhere.device.DeviceManagementTriggers;
+import com.sitewhere.device.group.DeviceGroupMembershipIndex;
 import com.sitewhere.groovy.asset.GroovyAssetModelInitializer;
 import com.sitewhere.groovy.configuration.TenantGroovyConfiguration;
 import com.sitewhere.groovy.device.GroovyDeviceModelInitializer;
@@ -66,6 +68,7 @@ import com.sitewhere.spi.device.IDeviceManagementCacheProvider;
 import com.sitewhere.spi.device.communication.IDeviceCommunication;
 import com.sitewhere.spi.device.event.IDeviceEventManagement;
 import com.sitewhere.spi.device.event.IEventProcessing;
+import com.sitewhere.spi.device.group.IDeviceGroupMembershipIndex;
 import com.sitewhere.spi.error.ErrorCode;
 import com.sitewhere.spi.error.ErrorLevel;
 import com.sitewhere.spi.error.ResourceExistsException;
@@ -126,6 +129,9 @@ public class SiteWhereTenantEngine extends TenantLifecycleComponent implements I
     /** Device management cache provider implementation */
     private IDeviceManagementCacheProvider deviceManagementCacheProvider;
 
+    /** Device group membership index */
+    private IDeviceGroupMembershipIndex deviceGroupMembershipIndex;
+
     /** Asset management cache provider implementation */
     private IAssetManagementCacheProvider assetManagementCacheProvider;
 
@@ -159,6 +165,12 @@ public class SiteWhereTenantEngine extends TenantLifecycleComponent implements I
     /** Threads used to issue engine commands */
     private ExecutorService commandExecutor = Executors.newSingleThreadExecutor();
 
+    /** Time of last recorded activity (zero if none) */
+    private volatile long lastActivity;
+
+    /** Time of last activity written to persistent state */
+    private volatile long persistedActivity;
+
     public SiteWhereTenantEngine(ITenant tenant, ApplicationContext parent, IGlobalConfigurationResolver global) {
 	super(LifecycleComponentType.TenantEngine);
 	setTenant(tenant);
@@ -190,7 +202,12 @@ public class SiteWhereTenantEngine extends TenantLifecycleComponent implements I
 	    updated.setDesiredState(desired);
 	}
 	updated.setLastKnownState(getLifecycleStatus());
+	long last = lastActivity;
+	if (last > 0) {
+	    updated.setLastActivityDate(new Date(last));
+	}
 	persistState(updated);
+	persistedActivity = last;
 	return updated;
     }
 
@@ -363,7 +380,7 @@ public class SiteWhereTenantEngine extends TenantLifecycleComponent implements I
      */
     @Override
     public void stop(ILifecycleProgressMonitor monitor) throws SiteWhereException {
-	stop(monitor, false);
+	stop(monitor, false, false);
     }
 
     /*
@@ -378,26 +395,37 @@ public class SiteWhereTenantEngine extends TenantLifecycleComponent implements I
     public void stop(ILifecycleProgressMonitor monitor, ILifecycleConstraints constraints) throws SiteWhereException {
 	boolean persist = ((constraints != null)
 		&& (constraints instanceof SiteWhereTenantEngineCommands.PersistentShutdownConstraint));
-	stop(monitor, persist);
+	boolean idle = ((constraints != null)
+		&& (constraints instanceof SiteWhereTenantEngineCommands.IdleShutdownConstraint));
+	stop(monitor, persist, idle);
     }
 
     /**
-     * Stops components, but differentiates between server shutdown and an
-     * explicit stop request for the tenant.
+     * Stops components, but differentiates between server shutdown, an explicit
+     * stop request for the tenant and a stop due to inactivity. Inbound event
+     * sources are left running if stopping due to inactivity.
      * 
      * @param monitor
      * @param persist
+     * @param idle
      * @throws SiteWhereException
      */
-    protected void stop(ILifecycleProgressMonitor monitor, boolean persist) throws SiteWhereException {
+    protected void stop(ILifecycleProgressMonitor monitor, boolean persist, boolean idle) throws SiteWhereException {
 	LifecycleStatus desired = (persist) ? LifecycleStatus.Stopped : null;
 	updatePersistentState(desired, getLifecycleStatus());
 
 	// Organizes steps for stopping tenant.
 	ICompositeLifecycleStep stop = new CompositeLifecycleStep("STOP TENANT '" + getTenant().getName() + "'");
 
+	// Only event sources are running if engine is already idle.
+	if (isIdle()) {
+	    stop.addStep(new StopComponentLifecycleStep(this, getDeviceCommunication(), "Stop inbound event sources"));
+	    stop.execute(monitor);
+	    return;
+	}
+
 	// Stop tenant services.
-	stopTenantServices(stop);
+	stopTenantServices(stop, idle);
 
 	// Stop lifecycle components.
 	stop.addStep(new SimpleLifecycleStep("Stopping registered components") {
@@ -418,18 +446,30 @@ public class SiteWhereTenantEngine extends TenantLifecycleComponent implements I
     }
 
     /**
-     * Stop tenant services.
+     * Stop tenant services. If stopping due to inactivity, inbound event
+     * sources are left running.
      * 
      * @param stop
+     * @param idle
      * @throws SiteWhereException
      */
-    protected void stopTenantServices(ICompositeLifecycleStep stop) throws SiteWhereException {
+    protected void stopTenantServices(ICompositeLifecycleStep stop, boolean idle) throws SiteWhereException {
 	// Stop scheduling new jobs.
 	stop.addStep(new StopComponentLifecycleStep(this, getScheduleManager(), "Stop schedule manager"));
 
 	// Disable device communications.
-	stop.addStep(
-		new StopComponentLifecycleStep(this, getDeviceCommunication(), "Stop device communication subsystem"));
+	if (idle) {
+	    stop.addStep(new SimpleLifecycleStep("Idle device communication subsystem") {
+
+		@Override
+		public void execute(ILifecycleProgressMonitor monitor) throws SiteWhereException {
+		    getDeviceCommunication().idle(monitor);
+		}
+	    });
+	} else {
+	    stop.addStep(new StopComponentLifecycleStep(this, getDeviceCommunication(),
+		    "Stop device communication subsystem"));
+	}
 	stop.addStep(new StopComponentLifecycleStep(this, getEventProcessing(), "Stop event processing subsystem"));
 
 	// Stop search provider manager.
@@ -539,6 +579,83 @@ public class SiteWhereTenantEngine extends TenantLifecycleComponent implements I
 	}
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.server.tenant.ISiteWhereTenantEngine#recordActivity()
+     */
+    @Override
+    public void recordActivity() {
+	lastActivity = System.currentTimeMillis();
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.server.tenant.ISiteWhereTenantEngine#
+     * getLastActivityDate()
+     */
+    @Override
+    public Date getLastActivityDate() {
+	long last = lastActivity;
+	return (last > 0) ? new Date(last) : null;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.server.tenant.ISiteWhereTenantEngine#
+     * persistLastActivity()
+     */
+    @Override
+    public void persistLastActivity() throws SiteWhereException {
+	if (lastActivity > persistedActivity) {
+	    updatePersistentState(null, getLifecycleStatus());
+	}
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.server.tenant.ISiteWhereTenantEngine#idle(com.
+     * sitewhere.spi.server.lifecycle.ILifecycleProgressMonitor)
+     */
+    @Override
+    public void idle(ILifecycleProgressMonitor monitor) throws SiteWhereException {
+	if (getLifecycleStatus() == LifecycleStatus.Started) {
+	    lifecycleStop(monitor, new SiteWhereTenantEngineCommands.IdleShutdownConstraint());
+	} else if (getLifecycleStatus() != LifecycleStatus.Error) {
+	    getDeviceCommunication().idle(monitor);
+	}
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.server.tenant.ISiteWhereTenantEngine#isIdle()
+     */
+    @Override
+    public boolean isIdle() {
+	return (getDeviceCommunication() != null) && (getDeviceCommunication().isIdle());
+    }
+
+    /**
+     * Load last activity from persistent state if no activity has been
+     * recorded yet.
+     * 
+     * @throws SiteWhereException
+     */
+    protected void loadLastActivity() throws SiteWhereException {
+	if (lastActivity > 0) {
+	    return;
+	}
+	ITenantPersistentState state = getPersistentState();
+	if ((state != null) && (state.getLastActivityDate() != null)) {
+	    lastActivity = state.getLastActivityDate().getTime();
+	}
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -637,6 +754,9 @@ public class SiteWhereTenantEngine extends TenantLifecycleComponent implements I
 	    // Verify that tenant configuration exists.
 	    verifyTenantConfigured();
 
+	    // Load last activity from before restart.
+	    loadLastActivity();
+
 	    // Initialize the tenant Spring context.
 	    initializeSpringContext();
 
@@ -892,7 +1012,8 @@ public class SiteWhereTenantEngine extends TenantLifecycleComponent implements I
 	    LOGGER.info("Device management implementation not using cache provider.");
 	}
 
-	return new DeviceManagementTriggers(management);
+	this.deviceGroupMembershipIndex = new DeviceGroupMembershipIndex(management);
+	return new DeviceManagementTriggers(management, getDeviceGroupMembershipIndex());
     }
 
     /**
@@ -1116,6 +1237,20 @@ public class SiteWhereTenantEngine extends TenantLifecycleComponent implements I
 	this.deviceManagementCacheProvider = deviceManagementCacheProvider;
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.server.tenant.ISiteWhereTenantEngine#
+     * getDeviceGroupMembershipIndex()
+     */
+    public IDeviceGroupMembershipIndex getDeviceGroupMembershipIndex() {
+	return deviceGroupMembershipIndex;
+    }
+
+    public void setDeviceGroupMembershipIndex(IDeviceGroupMembershipIndex deviceGroupMembershipIndex) {
+	this.deviceGroupMembershipIndex = deviceGroupMembershipIndex;
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -20,6 +20,9 @@ import com.sitewhere.spi.asset.IPersonAsset;
  */
 public class AssetMatcher {
 
+    /** Separates fields in normalized search text */
+    public static final char FIELD_SEPARATOR = '\u0000';
+
     /**
      * Delegate match criteria by type.
      * 
@@ -90,6 +93,52 @@ public class AssetMatcher {
 	return false;
     }
 
+    /**
+     * Get normalized (trimmed, lower case) text containing all fields that
+     * are considered by {@link #isMatch(AssetType, IAsset, String)}. Used to
+     * build search indexes so normalization is not repeated for each query.
+     * 
+     * @param type
+     * @param asset
+     * @return
+     */
+    public String getSearchText(AssetType type, IAsset asset) {
+	switch (type) {
+	case Device:
+	case Hardware: {
+	    IHardwareAsset hardware = (IHardwareAsset) asset;
+	    return normalize(hardware.getName(), hardware.getDescription(), hardware.getId());
+	}
+	case Person: {
+	    IPersonAsset person = (IPersonAsset) asset;
+	    return normalize(person.getName(), person.getEmailAddress(), person.getUserName(), person.getId());
+	}
+	case Location: {
+	    return normalize(asset.getName());
+	}
+	}
+	return "";
+    }
+
+    /**
+     * Join trimmed, lower case field values using {@link #FIELD_SEPARATOR}.
+     * 
+     * @param fields
+     * @return
+     */
+    protected String normalize(String... fields) {
+	StringBuilder text = new StringBuilder();
+	for (String field : fields) {
+	    if (field != null) {
+		if (text.length() > 0) {
+		    text.append(FIELD_SEPARATOR);
+		}
+		text.append(field.trim().toLowerCase());
+	    }
+	}
+	return text.toString();
+    }
+
     /**
      * Simplifies comparing possibly null non-case sensitive values.
      * 
@@ -164,10 +164,20 @@ public class AssetModuleManager extends TenantLifecycleComponent implements IAss
      * java.lang.String)
      */
     public List<? extends IAsset> search(String assetModuleId, String criteria) throws SiteWhereException {
+	return search(assetModuleId, criteria, 0);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.asset.IAssetModuleManager#search(java.lang.String,
+     * java.lang.String, int)
+     */
+    @Override
+    public List<? extends IAsset> search(String assetModuleId, String criteria, int maxResults)
+	    throws SiteWhereException {
 	IAssetModule<?> match = assertAssetModule(assetModuleId);
-	List<? extends IAsset> results = match.search(criteria);
-	Collections.sort(results);
-	return results;
+	return match.search(criteria, maxResults);
     }
 
     /*
@@ -0,0 +1,222 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.server.asset;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.sitewhere.spi.asset.AssetType;
+import com.sitewhere.spi.asset.IAsset;
+
+/**
+ * Immutable in-memory search index for the assets held by an asset module.
+ * Assets are stored in name order along with their normalized search text
+ * and an n-gram inverted index is built so that substring (and therefore
+ * prefix) searches only verify assets that contain every n-gram of the
+ * criteria. Since postings are kept in name order, the first matches found
+ * are the top results and no sort is needed at query time.
+ * 
+ * @author Derek
+ * 
+ * @param <T>
+ */
+public class AssetSearchIndex<T extends IAsset> {
+
+    /** Length of n-grams stored in the inverted index */
+    public static final int GRAM_LENGTH = 3;
+
+    /** Empty postings list */
+    private static final int[] NO_POSTINGS = new int[0];
+
+    /** Orders assets by name with unnamed assets last */
+    private static final Comparator<IAsset> NAME_ORDER = new Comparator<IAsset>() {
+
+	@Override
+	public int compare(IAsset o1, IAsset o2) {
+	    if (o1.getName() == null) {
+		return (o2.getName() == null) ? 0 : 1;
+	    }
+	    if (o2.getName() == null) {
+		return -1;
+	    }
+	    return o1.getName().compareTo(o2.getName());
+	}
+    };
+
+    /** Assets in name order */
+    private final List<T> assets;
+
+    /** Normalized search text for each asset (parallel to assets) */
+    private final String[] searchText;
+
+    /** Ordinals of assets containing each n-gram in ascending order */
+    private final Map<String, int[]> postings;
+
+    private AssetSearchIndex(List<T> assets, String[] searchText, Map<String, int[]> postings) {
+	this.assets = assets;
+	this.searchText = searchText;
+	this.postings = postings;
+    }
+
+    /**
+     * Build an index for the given assets.
+     * 
+     * @param type
+     * @param assets
+     * @param matcher
+     * @return
+     */
+    public static <T extends IAsset> AssetSearchIndex<T> build(AssetType type, Collection<T> assets,
+	    AssetMatcher matcher) {
+	List<T> sorted = new ArrayList<T>(assets);
+	Collections.sort(sorted, NAME_ORDER);
+
+	String[] text = new String[sorted.size()];
+	Map<String, PostingsBuilder> builders = new HashMap<String, PostingsBuilder>();
+	for (int i = 0; i < sorted.size(); i++) {
+	    text[i] = matcher.getSearchText(type, sorted.get(i));
+	    for (int j = 0; j + GRAM_LENGTH <= text[i].length(); j++) {
+		String gram = text[i].substring(j, j + GRAM_LENGTH);
+		if (gram.indexOf(AssetMatcher.FIELD_SEPARATOR) != -1) {
+		    continue;
+		}
+		PostingsBuilder builder = builders.get(gram);
+		if (builder == null) {
+		    builder = new PostingsBuilder();
+		    builders.put(gram, builder);
+		}
+		builder.add(i);
+	    }
+	}
+
+	Map<String, int[]> postings = new HashMap<String, int[]>(builders.size() * 4 / 3 + 1);
+	for (Map.Entry<String, PostingsBuilder> entry : builders.entrySet()) {
+	    postings.put(entry.getKey(), entry.getValue().toArray());
+	}
+	return new AssetSearchIndex<T>(Collections.unmodifiableList(sorted), text, postings);
+    }
+
+    /**
+     * Find assets whose searchable fields contain the given criteria (case
+     * insensitive). Results are returned in name order.
+     * 
+     * @param criteria
+     * @param maxResults
+     *            maximum number of results or zero for no limit
+     * @return
+     */
+    public List<T> search(String criteria, int maxResults) {
+	int limit = (maxResults > 0) ? maxResults : Integer.MAX_VALUE;
+	criteria = criteria.toLowerCase();
+	if (criteria.length() == 0) {
+	    return new ArrayList<T>(assets.subList(0, Math.min(limit, assets.size())));
+	}
+
+	List<T> results = new ArrayList<T>();
+
+	// Criteria shorter than an n-gram match densely, so an ordered scan
+	// of the precomputed text terminates quickly.
+	if (criteria.length() < GRAM_LENGTH) {
+	    for (int i = 0; (i < searchText.length) && (results.size() < limit); i++) {
+		if (searchText[i].indexOf(criteria) != -1) {
+		    results.add(assets.get(i));
+		}
+	    }
+	    return results;
+	}
+
+	// Only verify candidates from the most selective n-gram.
+	int[] candidates = null;
+	for (int j = 0; j + GRAM_LENGTH <= criteria.length(); j++) {
+	    int[] list = postings.get(criteria.substring(j, j + GRAM_LENGTH));
+	    if (list == null) {
+		return results;
+	    }
+	    if ((candidates == null) || (list.length < candidates.length)) {
+		candidates = list;
+	    }
+	}
+	for (int i = 0; (i < candidates.length) && (results.size() < limit); i++) {
+	    if (searchText[candidates[i]].indexOf(criteria) != -1) {
+		results.add(assets.get(candidates[i]));
+	    }
+	}
+	return results;
+    }
+
+    /**
+     * Get number of assets in the index.
+     * 
+     * @return
+     */
+    public int size() {
+	return assets.size();
+    }
+
+    /**
+     * Create an empty index.
+     * 
+     * @return
+     */
+    public static <T extends IAsset> AssetSearchIndex<T> empty() {
+	return new AssetSearchIndex<T>(Collections.<T> emptyList(), new String[0],
+		Collections.<String, int[]> emptyMap());
+    }
+
+    /**
+     * Sort results of a module that does not maintain an index and truncate
+     * them to the requested size.
+     * 
+     * @param results
+     * @param maxResults
+     *            maximum number of results or zero for no limit
+     * @return
+     */
+    public static <T extends IAsset> List<T> sortAndLimit(List<T> results, int maxResults) {
+	Collections.sort(results, NAME_ORDER);
+	if ((maxResults > 0) && (results.size() > maxResults)) {
+	    return new ArrayList<T>(results.subList(0, maxResults));
+	}
+	return results;
+    }
+
+    /**
+     * Accumulates distinct ordinals for an n-gram. Ordinals are added in
+     * ascending order, so duplicates are always adjacent.
+     * 
+     * @author Derek
+     */
+    private static class PostingsBuilder {
+
+	/** Ordinal storage */
+	private int[] values = new int[4];
+
+	/** Number of ordinals stored */
+	private int count;
+
+	public void add(int ordinal) {
+	    if ((count > 0) && (values[count - 1] == ordinal)) {
+		return;
+	    }
+	    if (count == values.length) {
+		values = Arrays.copyOf(values, count * 2);
+	    }
+	    values[count++] = ordinal;
+	}
+
+	public int[] toArray() {
+	    return (count == 0) ? NO_POSTINGS : Arrays.copyOf(values, count);
+	}
+    }
+}
\ No newline at end of file
@@ -7,19 +7,25 @@
  */
 package com.sitewhere.server.asset.datastore;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import com.hazelcast.core.EntryEvent;
 import com.hazelcast.core.ILock;
 import com.hazelcast.core.IMap;
-import com.hazelcast.query.Predicate;
+import com.hazelcast.core.MapEvent;
+import com.hazelcast.map.listener.EntryAddedListener;
+import com.hazelcast.map.listener.EntryRemovedListener;
+import com.hazelcast.map.listener.EntryUpdatedListener;
+import com.hazelcast.map.listener.MapClearedListener;
 import com.sitewhere.SiteWhere;
 import com.sitewhere.rest.model.command.CommandResponse;
 import com.sitewhere.rest.model.search.SearchCriteria;
 import com.sitewhere.server.asset.AssetMatcher;
+import com.sitewhere.server.asset.AssetSearchIndex;
 import com.sitewhere.server.lifecycle.TenantLifecycleComponent;
 import com.sitewhere.spi.SiteWhereException;
 import com.sitewhere.spi.asset.AssetType;
@@ -55,6 +61,15 @@ public abstract class DataStoreAssetModule<T extends IAsset> extends TenantLifec
     /** Matcher used for searches */
     protected AssetMatcher matcher = new AssetMatcher();
 
+    /** Local search index built from asset store */
+    private volatile AssetSearchIndex<T> index = AssetSearchIndex.empty();
+
+    /** Indicates asset store changed since index was built */
+    private AtomicBoolean indexStale = new AtomicBoolean(true);
+
+    /** Id of listener that invalidates index on asset store changes */
+    private String indexListenerId;
+
     public DataStoreAssetModule(IAssetCategory category) {
 	super(LifecycleComponentType.AssetModule);
 	this.category = category;
@@ -71,6 +86,8 @@ public abstract class DataStoreAssetModule<T extends IAsset> extends TenantLifec
      */
     @Override
     public void start(ILifecycleProgressMonitor monitor) throws SiteWhereException {
+	indexListenerId = assets.addEntryListener(new IndexInvalidator(), false);
+	indexStale.set(true);
 	if (assets.size() == 0) {
 	    refresh(monitor);
 	} else {
@@ -78,6 +95,21 @@ public abstract class DataStoreAssetModule<T extends IAsset> extends TenantLifec
 	}
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.server.lifecycle.LifecycleComponent#stop(com.sitewhere.spi.
+     * server.lifecycle.ILifecycleProgressMonitor)
+     */
+    @Override
+    public void stop(ILifecycleProgressMonitor monitor) throws SiteWhereException {
+	if (indexListenerId != null) {
+	    assets.removeEntryListener(indexListenerId);
+	    indexListenerId = null;
+	}
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -135,6 +167,7 @@ public abstract class DataStoreAssetModule<T extends IAsset> extends TenantLifec
 	    for (IAsset asset : matches.getResults()) {
 		assets.put(asset.getId(), (T) asset);
 	    }
+	    indexStale.set(true);
 	    return new CommandResponse(CommandResult.Successful, "Asset list loaded from datastore.");
 	} catch (Throwable t) {
 	    return new CommandResponse(CommandResult.Failed, "Asset load operation failed. " + t.getMessage());
@@ -165,6 +198,7 @@ public abstract class DataStoreAssetModule<T extends IAsset> extends TenantLifec
      */
     protected void doPutAsset(String id, T asset) {
 	assets.put(id, asset);
+	indexStale.set(true);
     }
 
     /**
@@ -177,23 +211,44 @@ public abstract class DataStoreAssetModule<T extends IAsset> extends TenantLifec
      */
     protected void doRemoveAsset(String id) {
 	assets.remove(id);
+	indexStale.set(true);
     }
 
     /**
-     * Search cached assets based on criteria. TODO: Use Hazelcast
-     * {@link Predicate} to do search on grid.
+     * Search cached assets based on criteria.
      * 
      * @param criteria
      * @return
      */
     protected List<T> doSearch(String criteria) {
-	List<T> results = new ArrayList<T>();
-	for (T asset : assets.values()) {
-	    if (matcher.isMatch(getCategory().getAssetType(), asset, criteria)) {
-		results.add(asset);
+	return getSearchIndex().search(criteria, 0);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.asset.IAssetModule#search(java.lang.String, int)
+     */
+    @Override
+    public List<T> search(String criteria, int maxResults) throws SiteWhereException {
+	return getSearchIndex().search(criteria, maxResults);
+    }
+
+    /**
+     * Get the local search index, rebuilding it from the asset store if
+     * assets have changed since it was last built.
+     * 
+     * @return
+     */
+    protected AssetSearchIndex<T> getSearchIndex() {
+	if (indexStale.get()) {
+	    synchronized (this) {
+		if (indexStale.getAndSet(false)) {
+		    index = AssetSearchIndex.build(getCategory().getAssetType(), assets.values(), matcher);
+		}
 	    }
 	}
-	return results;
+	return index;
     }
 
     /**
@@ -222,4 +277,34 @@ public abstract class DataStoreAssetModule<T extends IAsset> extends TenantLifec
     public void setCategory(IAssetCategory category) {
 	this.category = category;
     }
+
+    /**
+     * Marks the local search index as stale when assets are changed from any
+     * node in the cluster.
+     * 
+     * @author Derek
+     */
+    private class IndexInvalidator implements EntryAddedListener<String, T>, EntryUpdatedListener<String, T>,
+	    EntryRemovedListener<String, T>, MapClearedListener {
+
+	@Override
+	public void entryAdded(EntryEvent<String, T> event) {
+	    indexStale.set(true);
+	}
+
+	@Override
+	public void entryUpdated(EntryEvent<String, T> event) {
+	    indexStale.set(true);
+	}
+
+	@Override
+	public void entryRemoved(EntryEvent<String, T> event) {
+	    indexStale.set(true);
+	}
+
+	@Override
+	public void mapCleared(MapEvent event) {
+	    indexStale.set(true);
+	}
+    }
 }
\ No newline at end of file
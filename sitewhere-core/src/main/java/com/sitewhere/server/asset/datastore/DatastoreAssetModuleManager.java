@@ -1,7 +1,6 @@
 package com.sitewhere.server.asset.datastore;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -176,10 +175,20 @@ public class DatastoreAssetModuleManager extends TenantLifecycleComponent implem
      */
     @Override
     public List<? extends IAsset> search(String assetModuleId, String criteria) throws SiteWhereException {
+	return search(assetModuleId, criteria, 0);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.asset.IAssetModuleManager#search(java.lang.String,
+     * java.lang.String, int)
+     */
+    @Override
+    public List<? extends IAsset> search(String assetModuleId, String criteria, int maxResults)
+	    throws SiteWhereException {
 	IAssetModule<?> match = assertAssetModule(assetModuleId);
-	List<? extends IAsset> results = match.search(criteria);
-	Collections.sort(results);
-	return results;
+	return match.search(criteria, maxResults);
     }
 
     /**
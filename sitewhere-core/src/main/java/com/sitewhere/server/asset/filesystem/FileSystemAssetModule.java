@@ -7,7 +7,6 @@
  */
 package com.sitewhere.server.asset.filesystem;
 
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -19,6 +18,7 @@ import com.sitewhere.SiteWhere;
 import com.sitewhere.rest.model.asset.Asset;
 import com.sitewhere.rest.model.command.CommandResponse;
 import com.sitewhere.server.asset.AssetMatcher;
+import com.sitewhere.server.asset.AssetSearchIndex;
 import com.sitewhere.server.lifecycle.LifecycleComponent;
 import com.sitewhere.spi.SiteWhereException;
 import com.sitewhere.spi.asset.IAssetModule;
@@ -49,6 +49,9 @@ public abstract class FileSystemAssetModule<T extends Asset> extends LifecycleCo
     /** Matcher used for searches */
     protected AssetMatcher matcher = new AssetMatcher();
 
+    /** Index used for searches (rebuilt on reload) */
+    protected volatile AssetSearchIndex<T> index = AssetSearchIndex.empty();
+
     /** Filename used to load assets */
     private String filename;
 
@@ -88,10 +91,12 @@ public abstract class FileSystemAssetModule<T extends Asset> extends LifecycleCo
 
 	// Unmarshal assets from XML file and store in data object.
 	List<T> assets = unmarshal(configResource);
-	this.assetsById = new HashMap<String, T>();
+	Map<String, T> byId = new HashMap<String, T>();
 	for (T asset : assets) {
-	    assetsById.put(asset.getId(), asset);
+	    byId.put(asset.getId(), asset);
 	}
+	this.index = AssetSearchIndex.build(getAssetType(), byId.values(), matcher);
+	this.assetsById = byId;
 	showLoadResults();
     }
 
@@ -185,18 +190,17 @@ public abstract class FileSystemAssetModule<T extends Asset> extends LifecycleCo
      * @see com.sitewhere.spi.asset.IAssetModule#search(java.lang.String)
      */
     public List<T> search(String criteria) throws SiteWhereException {
-	criteria = criteria.toLowerCase();
-	List<T> results = new ArrayList<T>();
-	if (criteria.length() == 0) {
-	    results.addAll(assetsById.values());
-	    return results;
-	}
-	for (T asset : assetsById.values()) {
-	    if (matcher.isMatch(getAssetType(), asset, criteria)) {
-		results.add(asset);
-	    }
-	}
-	return results;
+	return index.search(criteria, 0);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.asset.IAssetModule#search(java.lang.String, int)
+     */
+    @Override
+    public List<T> search(String criteria, int maxResults) throws SiteWhereException {
+	return index.search(criteria, maxResults);
     }
 
     /*
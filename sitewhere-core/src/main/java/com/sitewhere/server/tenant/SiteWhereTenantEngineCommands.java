@@ -130,4 +130,13 @@ public class SiteWhereTenantEngineCommands {
      */
     public static class PersistentShutdownConstraint implements ILifecycleConstraints {
     }
+
+    /**
+     * Marker class for indicating tenant shutdown is due to inactivity and
+     * inbound event sources should be left running.
+     * 
+     * @author Derek
+     */
+    public static class IdleShutdownConstraint implements ILifecycleConstraints {
+    }
 }
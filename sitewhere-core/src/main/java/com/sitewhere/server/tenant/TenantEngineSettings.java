@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.server.tenant;
+
+import com.sitewhere.spi.server.tenant.ITenantEngineSettings;
+
+/**
+ * Default implementation of {@link ITenantEngineSettings}. Tenant engines are
+ * started eagerly unless lazy start is enabled.
+ * 
+ * @author Derek
+ */
+public class TenantEngineSettings implements ITenantEngineSettings {
+
+    /** Default number of threads for starting tenants */
+    public static final int DEFAULT_STARTUP_THREADS = 5;
+
+    /** Default idle timeout in minutes */
+    public static final int DEFAULT_IDLE_TIMEOUT_MINUTES = 30;
+
+    /** Number of threads for initializing tenants (zero uses processor count) */
+    private int initializationThreads = 0;
+
+    /** Number of threads for starting tenants */
+    private int startupThreads = DEFAULT_STARTUP_THREADS;
+
+    /** Indicates if tenants are started on demand */
+    private boolean lazyStartEnabled = false;
+
+    /** Minutes without activity before an on-demand tenant is stopped */
+    private int idleTimeoutMinutes = DEFAULT_IDLE_TIMEOUT_MINUTES;
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.server.tenant.ITenantEngineSettings#
+     * getInitializationThreads()
+     */
+    @Override
+    public int getInitializationThreads() {
+	return initializationThreads;
+    }
+
+    public void setInitializationThreads(int initializationThreads) {
+	this.initializationThreads = initializationThreads;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.server.tenant.ITenantEngineSettings#getStartupThreads()
+     */
+    @Override
+    public int getStartupThreads() {
+	return startupThreads;
+    }
+
+    public void setStartupThreads(int startupThreads) {
+	this.startupThreads = startupThreads;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.server.tenant.ITenantEngineSettings#isLazyStartEnabled(
+     * )
+     */
+    @Override
+    public boolean isLazyStartEnabled() {
+	return lazyStartEnabled;
+    }
+
+    public void setLazyStartEnabled(boolean lazyStartEnabled) {
+	this.lazyStartEnabled = lazyStartEnabled;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.server.tenant.ITenantEngineSettings#
+     * getIdleTimeoutMinutes()
+     */
+    @Override
+    public int getIdleTimeoutMinutes() {
+	return idleTimeoutMinutes;
+    }
+
+    public void setIdleTimeoutMinutes(int idleTimeoutMinutes) {
+	this.idleTimeoutMinutes = idleTimeoutMinutes;
+    }
+}
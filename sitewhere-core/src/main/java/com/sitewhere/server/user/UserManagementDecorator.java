@@ -7,6 +7,7 @@
  */
 package com.sitewhere.server.user;
 
+import java.util.Date;
 import java.util.List;
 
 import com.sitewhere.server.lifecycle.LifecycleComponentDecorator;
@@ -71,6 +72,18 @@ public class UserManagementDecorator extends LifecycleComponentDecorator impleme
 	return delegate.authenticate(username, password);
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.user.IUserManagement#updateLastLogin(java.lang.String,
+     * java.util.Date)
+     */
+    @Override
+    public void updateLastLogin(String username, Date lastLogin) throws SiteWhereException {
+	delegate.updateLastLogin(username, lastLogin);
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -10,6 +10,7 @@ package com.sitewhere.hbase;
 import com.sitewhere.hbase.asset.IAssetIdManager;
 import com.sitewhere.hbase.device.IDeviceEventBuffer;
 import com.sitewhere.hbase.device.IDeviceIdManager;
+import com.sitewhere.hbase.device.IMeasurementSeriesWriter;
 import com.sitewhere.hbase.encoder.IPayloadMarshaler;
 import com.sitewhere.hbase.scheduling.IScheduleIdManager;
 import com.sitewhere.hbase.user.IUserIdManager;
@@ -39,6 +40,9 @@ public class HBaseContext implements IHBaseContext {
     /** Device event buffer */
     private IDeviceEventBuffer deviceEventBuffer;
 
+    /** Measurement series writer */
+    private IMeasurementSeriesWriter measurementSeriesWriter;
+
     /** Assignment state manager */
     private IAssignmentStateManager assignmentStateManager;
 
@@ -94,6 +98,14 @@ public class HBaseContext implements IHBaseContext {
 	this.deviceEventBuffer = deviceEventBuffer;
     }
 
+    public IMeasurementSeriesWriter getMeasurementSeriesWriter() {
+	return measurementSeriesWriter;
+    }
+
+    public void setMeasurementSeriesWriter(IMeasurementSeriesWriter measurementSeriesWriter) {
+	this.measurementSeriesWriter = measurementSeriesWriter;
+    }
+
     public IAssignmentStateManager getAssignmentStateManager() {
 	return assignmentStateManager;
     }
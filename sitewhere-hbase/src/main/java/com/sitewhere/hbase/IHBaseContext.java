@@ -10,6 +10,7 @@ package com.sitewhere.hbase;
 import com.sitewhere.hbase.asset.IAssetIdManager;
 import com.sitewhere.hbase.device.IDeviceEventBuffer;
 import com.sitewhere.hbase.device.IDeviceIdManager;
+import com.sitewhere.hbase.device.IMeasurementSeriesWriter;
 import com.sitewhere.hbase.encoder.IPayloadMarshaler;
 import com.sitewhere.hbase.scheduling.IScheduleIdManager;
 import com.sitewhere.hbase.user.IUserIdManager;
@@ -59,6 +60,14 @@ public interface IHBaseContext {
      */
     public IDeviceEventBuffer getDeviceEventBuffer();
 
+    /**
+     * Get writer for measurement series rows. Null if measurements are stored
+     * as event payloads.
+     * 
+     * @return
+     */
+    public IMeasurementSeriesWriter getMeasurementSeriesWriter();
+
     /**
      * Get assignment state manager.
      * 
@@ -35,6 +35,12 @@ public interface ISiteWhereHBase {
     /** Device streams table name */
     public static final byte[] STREAMS_TABLE_NAME = Bytes.toBytes("streams");
 
+    /** Measurement rollups table name */
+    public static final byte[] ROLLUPS_TABLE_NAME = Bytes.toBytes("rollups");
+
+    /** Measurement series table name */
+    public static final byte[] MEASUREMENTS_TABLE_NAME = Bytes.toBytes("measurements");
+
     /** Users table name */
     public static final byte[] USERS_TABLE_NAME = Bytes.toBytes("users");
 
@@ -40,6 +40,7 @@ import com.sitewhere.rest.model.search.Pager;
 import com.sitewhere.rest.model.search.SearchResults;
 import com.sitewhere.spi.SiteWhereException;
 import com.sitewhere.spi.SiteWhereSystemException;
+import com.sitewhere.spi.cache.ICacheLoader;
 import com.sitewhere.spi.device.IDevice;
 import com.sitewhere.spi.device.IDeviceAssignment;
 import com.sitewhere.spi.device.request.IDeviceCreateRequest;
@@ -251,52 +252,124 @@ public class HBaseDevice {
      * @return
      * @throws SiteWhereException
      */
-    public static Device getDeviceByHardwareId(IHBaseContext context, String hardwareId) throws SiteWhereException {
+    public static Device getDeviceByHardwareId(final IHBaseContext context, String hardwareId)
+	    throws SiteWhereException {
 	Tracer.push(TracerCategory.DeviceManagementApiCall, "getDeviceByHardwareId (HBase) " + hardwareId, LOGGER);
 	try {
 	    if (context.getCacheProvider() != null) {
-		IDevice result = context.getCacheProvider().getDeviceCache().get(hardwareId);
-		if (result != null) {
-		    Tracer.info("Returning cached device.", LOGGER);
-		    DeviceMarshalHelper helper = new DeviceMarshalHelper(context.getTenant()).setIncludeAsset(false)
-			    .setIncludeAssignment(false).setIncludeSpecification(false);
-		    return helper.convert(result, SiteWhere.getServer().getAssetModuleManager(context.getTenant()));
+		IDevice result = context.getCacheProvider().getDeviceCache().get(hardwareId,
+			new ICacheLoader<String, IDevice>() {
+
+			    @Override
+			    public IDevice load(String key) throws SiteWhereException {
+				return loadDeviceByHardwareId(context, key);
+			    }
+			});
+		if (result == null) {
+		    return null;
 		}
+		DeviceMarshalHelper helper = new DeviceMarshalHelper(context.getTenant()).setIncludeAsset(false)
+			.setIncludeAssignment(false).setIncludeSpecification(false);
+		return helper.convert(result, SiteWhere.getServer().getAssetModuleManager(context.getTenant()));
 	    }
-	    Long deviceId = context.getDeviceIdManager().getDeviceKeys().getValue(hardwareId);
-	    if (deviceId == null) {
-		Tracer.info("Device not found for hardware id.", LOGGER);
+	    return loadDeviceByHardwareId(context, hardwareId);
+	} finally {
+	    Tracer.pop(LOGGER);
+	}
+    }
+
+    /**
+     * Load a device by hardware id from HBase without using the cache.
+     * 
+     * @param context
+     * @param hardwareId
+     * @return
+     * @throws SiteWhereException
+     */
+    protected static Device loadDeviceByHardwareId(IHBaseContext context, String hardwareId) throws SiteWhereException {
+	Long deviceId = context.getDeviceIdManager().getDeviceKeys().getValue(hardwareId);
+	if (deviceId == null) {
+	    Tracer.info("Device not found for hardware id.", LOGGER);
+	    return null;
+	}
+
+	// Find row key based on value associated with hardware id.
+	byte[] primary = getDeviceRowKey(deviceId);
+
+	Table devices = null;
+	try {
+	    devices = getDeviceTableInterface(context);
+	    Get get = new Get(primary);
+	    HBaseUtils.addPayloadFields(get);
+	    Result result = devices.get(get);
+
+	    byte[] type = result.getValue(ISiteWhereHBase.FAMILY_ID, ISiteWhereHBase.PAYLOAD_TYPE);
+	    byte[] payload = result.getValue(ISiteWhereHBase.FAMILY_ID, ISiteWhereHBase.PAYLOAD);
+	    if ((type == null) || (payload == null)) {
 		return null;
 	    }
 
-	    // Find row key based on value associated with hardware id.
-	    byte[] primary = getDeviceRowKey(deviceId);
+	    return PayloadMarshalerResolver.getInstance().getMarshaler(type).decodeDevice(payload);
+	} catch (IOException e) {
+	    throw new SiteWhereException("Unable to load device by hardware id.", e);
+	} finally {
+	    HBaseUtils.closeCleanly(devices);
+	}
+    }
 
-	    Table devices = null;
-	    try {
-		devices = getDeviceTableInterface(context);
-		Get get = new Get(primary);
+    /**
+     * Get devices for a list of hardware ids. Devices not in the cache are
+     * loaded with a single multi-get.
+     * 
+     * @param context
+     * @param hardwareIds
+     * @return
+     * @throws SiteWhereException
+     */
+    public static List<IDevice> getDevicesByHardwareIds(IHBaseContext context, List<String> hardwareIds)
+	    throws SiteWhereException {
+	List<IDevice> results = new ArrayList<IDevice>();
+	List<Get> gets = new ArrayList<Get>();
+	DeviceMarshalHelper helper = new DeviceMarshalHelper(context.getTenant()).setIncludeAsset(false)
+		.setIncludeAssignment(false).setIncludeSpecification(false);
+	for (String hardwareId : hardwareIds) {
+	    IDevice cached = (context.getCacheProvider() != null)
+		    ? context.getCacheProvider().getDeviceCache().get(hardwareId) : null;
+	    if (cached != null) {
+		results.add(helper.convert(cached, SiteWhere.getServer().getAssetModuleManager(context.getTenant())));
+		continue;
+	    }
+	    Long deviceId = context.getDeviceIdManager().getDeviceKeys().getValue(hardwareId);
+	    if (deviceId != null) {
+		Get get = new Get(getDeviceRowKey(deviceId));
 		HBaseUtils.addPayloadFields(get);
-		Result result = devices.get(get);
+		gets.add(get);
+	    }
+	}
+	if (gets.isEmpty()) {
+	    return results;
+	}
 
+	Table devices = null;
+	try {
+	    devices = getDeviceTableInterface(context);
+	    for (Result result : devices.get(gets)) {
 		byte[] type = result.getValue(ISiteWhereHBase.FAMILY_ID, ISiteWhereHBase.PAYLOAD_TYPE);
 		byte[] payload = result.getValue(ISiteWhereHBase.FAMILY_ID, ISiteWhereHBase.PAYLOAD);
 		if ((type == null) || (payload == null)) {
-		    return null;
+		    continue;
 		}
-
-		Device found = PayloadMarshalerResolver.getInstance().getMarshaler(type).decodeDevice(payload);
-		if ((context.getCacheProvider() != null) && (found != null)) {
-		    context.getCacheProvider().getDeviceCache().put(hardwareId, found);
+		Device device = PayloadMarshalerResolver.getInstance().getMarshaler(type).decodeDevice(payload);
+		if (context.getCacheProvider() != null) {
+		    context.getCacheProvider().getDeviceCache().put(device.getHardwareId(), device);
 		}
-		return found;
-	    } catch (IOException e) {
-		throw new SiteWhereException("Unable to load device by hardware id.", e);
-	    } finally {
-		HBaseUtils.closeCleanly(devices);
+		results.add(device);
 	    }
+	    return results;
+	} catch (IOException e) {
+	    throw new SiteWhereException("Unable to load devices by hardware id.", e);
 	} finally {
-	    Tracer.pop(LOGGER);
+	    HBaseUtils.closeCleanly(devices);
 	}
     }
 
@@ -9,7 +9,9 @@ package com.sitewhere.hbase.device;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 
 import org.apache.hadoop.hbase.client.Delete;
 import org.apache.hadoop.hbase.client.Get;
@@ -34,6 +36,7 @@ import com.sitewhere.rest.model.device.DeviceAssignment;
 import com.sitewhere.rest.model.device.DeviceAssignmentState;
 import com.sitewhere.spi.SiteWhereException;
 import com.sitewhere.spi.SiteWhereSystemException;
+import com.sitewhere.spi.cache.ICacheLoader;
 import com.sitewhere.spi.common.IMetadataProvider;
 import com.sitewhere.spi.device.DeviceAssignmentStatus;
 import com.sitewhere.spi.device.IDeviceAssignment;
@@ -142,58 +145,139 @@ public class HBaseDeviceAssignment {
      * @return
      * @throws SiteWhereException
      */
-    public static DeviceAssignment getDeviceAssignment(IHBaseContext context, String token) throws SiteWhereException {
+    public static DeviceAssignment getDeviceAssignment(final IHBaseContext context, String token)
+	    throws SiteWhereException {
 	Tracer.push(TracerCategory.DeviceManagementApiCall, "getDeviceAssignment (HBase) " + token, LOGGER);
 	try {
 	    if (context.getCacheProvider() != null) {
-		IDeviceAssignment result = context.getCacheProvider().getDeviceAssignmentCache().get(token);
-		if (result != null) {
-		    Tracer.info("Returning cached device assignment.", LOGGER);
-		    DeviceAssignmentMarshalHelper helper = new DeviceAssignmentMarshalHelper(context.getTenant())
-			    .setIncludeAsset(false).setIncludeDevice(false).setIncludeSite(false);
-		    return helper.convert(result, SiteWhere.getServer().getAssetModuleManager(context.getTenant()));
+		IDeviceAssignment result = context.getCacheProvider().getDeviceAssignmentCache().get(token,
+			new ICacheLoader<String, IDeviceAssignment>() {
+
+			    @Override
+			    public IDeviceAssignment load(String key) throws SiteWhereException {
+				return loadDeviceAssignment(context, key);
+			    }
+			});
+		if (result == null) {
+		    return null;
 		}
+		DeviceAssignmentMarshalHelper helper = new DeviceAssignmentMarshalHelper(context.getTenant())
+			.setIncludeAsset(false).setIncludeDevice(false).setIncludeSite(false);
+		return helper.convert(result, SiteWhere.getServer().getAssetModuleManager(context.getTenant()));
 	    }
-	    byte[] assnKey = context.getDeviceIdManager().getAssignmentKeys().getValue(token);
-	    if (assnKey == null) {
-		return null;
-	    }
-	    byte[] primary = getPrimaryRowkey(assnKey);
+	    return loadDeviceAssignment(context, token);
+	} finally {
+	    Tracer.pop(LOGGER);
+	}
+    }
 
-	    Table sites = null;
-	    try {
-		sites = getSitesTableInterface(context);
-		Get get = new Get(primary);
+    /**
+     * Load a device assignment by token from HBase without using the cache.
+     * 
+     * @param context
+     * @param token
+     * @return
+     * @throws SiteWhereException
+     */
+    protected static DeviceAssignment loadDeviceAssignment(IHBaseContext context, String token)
+	    throws SiteWhereException {
+	byte[] assnKey = context.getDeviceIdManager().getAssignmentKeys().getValue(token);
+	if (assnKey == null) {
+	    return null;
+	}
+	byte[] primary = getPrimaryRowkey(assnKey);
+
+	Table sites = null;
+	try {
+	    sites = getSitesTableInterface(context);
+	    Get get = new Get(primary);
+	    HBaseUtils.addPayloadFields(get);
+	    get.addColumn(ISiteWhereHBase.FAMILY_ID, ASSIGNMENT_STATE);
+	    return decodeDeviceAssignment(sites.get(get));
+	} catch (IOException e) {
+	    throw new SiteWhereException("Unable to load device assignment by token.", e);
+	} finally {
+	    HBaseUtils.closeCleanly(sites);
+	}
+    }
+
+    /**
+     * Get device assignments for a list of tokens. Assignments not in the cache
+     * are loaded with a single multi-get.
+     * 
+     * @param context
+     * @param tokens
+     * @return
+     * @throws SiteWhereException
+     */
+    public static List<IDeviceAssignment> getDeviceAssignmentsByTokens(IHBaseContext context, List<String> tokens)
+	    throws SiteWhereException {
+	List<IDeviceAssignment> results = new ArrayList<IDeviceAssignment>();
+	List<Get> gets = new ArrayList<Get>();
+	DeviceAssignmentMarshalHelper helper = new DeviceAssignmentMarshalHelper(context.getTenant())
+		.setIncludeAsset(false).setIncludeDevice(false).setIncludeSite(false);
+	for (String token : tokens) {
+	    IDeviceAssignment cached = (context.getCacheProvider() != null)
+		    ? context.getCacheProvider().getDeviceAssignmentCache().get(token) : null;
+	    if (cached != null) {
+		results.add(helper.convert(cached, SiteWhere.getServer().getAssetModuleManager(context.getTenant())));
+		continue;
+	    }
+	    byte[] assnKey = context.getDeviceIdManager().getAssignmentKeys().getValue(token);
+	    if (assnKey != null) {
+		Get get = new Get(getPrimaryRowkey(assnKey));
 		HBaseUtils.addPayloadFields(get);
 		get.addColumn(ISiteWhereHBase.FAMILY_ID, ASSIGNMENT_STATE);
-		Result result = sites.get(get);
-
-		byte[] type = result.getValue(ISiteWhereHBase.FAMILY_ID, ISiteWhereHBase.PAYLOAD_TYPE);
-		byte[] payload = result.getValue(ISiteWhereHBase.FAMILY_ID, ISiteWhereHBase.PAYLOAD);
-		byte[] state = result.getValue(ISiteWhereHBase.FAMILY_ID, ASSIGNMENT_STATE);
-		if ((type == null) || (payload == null)) {
-		    return null;
-		}
+		gets.add(get);
+	    }
+	}
+	if (gets.isEmpty()) {
+	    return results;
+	}
 
-		DeviceAssignment found = PayloadMarshalerResolver.getInstance().getMarshaler(type)
-			.decodeDeviceAssignment(payload);
-		if (state != null) {
-		    DeviceAssignmentState assnState = PayloadMarshalerResolver.getInstance().getMarshaler(type)
-			    .decodeDeviceAssignmentState(state);
-		    found.setState(assnState);
-		}
-		if ((context.getCacheProvider() != null) && (found != null)) {
-		    context.getCacheProvider().getDeviceAssignmentCache().put(token, found);
+	Table sites = null;
+	try {
+	    sites = getSitesTableInterface(context);
+	    for (Result result : sites.get(gets)) {
+		DeviceAssignment found = decodeDeviceAssignment(result);
+		if (found != null) {
+		    if (context.getCacheProvider() != null) {
+			context.getCacheProvider().getDeviceAssignmentCache().put(found.getToken(), found);
+		    }
+		    results.add(found);
 		}
-		return found;
-	    } catch (IOException e) {
-		throw new SiteWhereException("Unable to load device assignment by token.", e);
-	    } finally {
-		HBaseUtils.closeCleanly(sites);
 	    }
+	    return results;
+	} catch (IOException e) {
+	    throw new SiteWhereException("Unable to load device assignments by token.", e);
 	} finally {
-	    Tracer.pop(LOGGER);
+	    HBaseUtils.closeCleanly(sites);
+	}
+    }
+
+    /**
+     * Decode a device assignment and its state from a row.
+     * 
+     * @param result
+     * @return
+     * @throws SiteWhereException
+     */
+    protected static DeviceAssignment decodeDeviceAssignment(Result result) throws SiteWhereException {
+	byte[] type = result.getValue(ISiteWhereHBase.FAMILY_ID, ISiteWhereHBase.PAYLOAD_TYPE);
+	byte[] payload = result.getValue(ISiteWhereHBase.FAMILY_ID, ISiteWhereHBase.PAYLOAD);
+	byte[] state = result.getValue(ISiteWhereHBase.FAMILY_ID, ASSIGNMENT_STATE);
+	if ((type == null) || (payload == null)) {
+	    return null;
+	}
+
+	DeviceAssignment found = PayloadMarshalerResolver.getInstance().getMarshaler(type)
+		.decodeDeviceAssignment(payload);
+	if (state != null) {
+	    DeviceAssignmentState assnState = PayloadMarshalerResolver.getInstance().getMarshaler(type)
+		    .decodeDeviceAssignmentState(state);
+	    found.setState(assnState);
 	}
+	return found;
     }
 
     /**
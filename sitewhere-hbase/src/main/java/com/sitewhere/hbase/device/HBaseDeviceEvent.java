@@ -13,8 +13,11 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
 import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
 
 import javax.servlet.http.HttpServletResponse;
 
@@ -25,6 +28,7 @@ import org.apache.hadoop.hbase.client.Result;
 import org.apache.hadoop.hbase.client.ResultScanner;
 import org.apache.hadoop.hbase.client.Scan;
 import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.filter.KeyOnlyFilter;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -32,6 +36,7 @@ import org.apache.logging.log4j.Logger;
 import com.google.bitcoin.core.AddressFormatException;
 import com.google.bitcoin.core.Base58;
 import com.sitewhere.core.SiteWherePersistence;
+import com.sitewhere.device.charting.ChartDownsampler;
 import com.sitewhere.hbase.IHBaseContext;
 import com.sitewhere.hbase.ISiteWhereHBase;
 import com.sitewhere.hbase.common.HBaseUtils;
@@ -40,6 +45,7 @@ import com.sitewhere.hbase.encoder.PayloadMarshalerResolver;
 import com.sitewhere.rest.model.device.event.DeviceAlert;
 import com.sitewhere.rest.model.device.event.DeviceCommandInvocation;
 import com.sitewhere.rest.model.device.event.DeviceCommandResponse;
+import com.sitewhere.rest.model.device.event.DeviceEventBatchResponse;
 import com.sitewhere.rest.model.device.event.DeviceLocation;
 import com.sitewhere.rest.model.device.event.DeviceMeasurements;
 import com.sitewhere.rest.model.device.event.DeviceStateChange;
@@ -50,11 +56,13 @@ import com.sitewhere.rest.model.search.SearchResults;
 import com.sitewhere.spi.SiteWhereException;
 import com.sitewhere.spi.SiteWhereSystemException;
 import com.sitewhere.spi.device.IDeviceAssignment;
+import com.sitewhere.spi.device.charting.ISampledChartSeries;
 import com.sitewhere.spi.device.command.IDeviceCommand;
 import com.sitewhere.spi.device.event.IDeviceAlert;
 import com.sitewhere.spi.device.event.IDeviceCommandInvocation;
 import com.sitewhere.spi.device.event.IDeviceCommandResponse;
 import com.sitewhere.spi.device.event.IDeviceEvent;
+import com.sitewhere.spi.device.event.IDeviceEventBatch;
 import com.sitewhere.spi.device.event.IDeviceLocation;
 import com.sitewhere.spi.device.event.IDeviceMeasurements;
 import com.sitewhere.spi.device.event.IDeviceStateChange;
@@ -70,6 +78,7 @@ import com.sitewhere.spi.device.event.request.IDeviceStreamDataCreateRequest;
 import com.sitewhere.spi.error.ErrorCode;
 import com.sitewhere.spi.error.ErrorLevel;
 import com.sitewhere.spi.search.IDateRangeSearchCriteria;
+import com.sitewhere.spi.search.device.IChartSeriesSearchCriteria;
 
 /**
  * HBase specifics for dealing with SiteWhere device events.
@@ -84,6 +93,112 @@ public class HBaseDeviceEvent {
     /** Size of a row in milliseconds */
     private static final long ROW_IN_MS = (1 << 24);
 
+    /** Number of rows fetched per scanner call when building chart series */
+    private static final int CHART_SCAN_CACHING = 500;
+
+    /** Maximum rows read each time an assignment is scanned for site events */
+    private static final int SITE_SCAN_MAX_CACHING = 100;
+
+    /** Length of assignment row key prefix (site id, record type, id) */
+    private static final int ASSIGNMENT_KEY_LENGTH = 7;
+
+    /**
+     * Create all events in a batch for an assignment. Events that fall in the
+     * same row are written with a single {@link Put} containing one column per
+     * event and state updates are merged for the whole batch.
+     * 
+     * @param context
+     * @param assignment
+     * @param batch
+     * @return
+     * @throws SiteWhereException
+     */
+    public static DeviceEventBatchResponse createDeviceEventBatch(IHBaseContext context, IDeviceAssignment assignment,
+	    IDeviceEventBatch batch) throws SiteWhereException {
+	byte[] assnKey = context.getDeviceIdManager().getAssignmentKeys().getValue(assignment.getToken());
+	if (assnKey == null) {
+	    throw new SiteWhereSystemException(ErrorCode.InvalidDeviceAssignmentToken, ErrorLevel.ERROR);
+	}
+	PayloadEncoding encoding = context.getPayloadMarshaler().getEncoding();
+	Map<byte[], Put> puts = new TreeMap<byte[], Put>(Bytes.BYTES_COMPARATOR);
+	Map<byte[], Put> seriesPuts = new TreeMap<byte[], Put>(Bytes.BYTES_COMPARATOR);
+	IMeasurementSeriesWriter seriesWriter = context.getMeasurementSeriesWriter();
+	DeviceEventBatchResponse response = new DeviceEventBatchResponse();
+	List<IDeviceEvent> state = new ArrayList<IDeviceEvent>();
+
+	for (IDeviceMeasurementsCreateRequest request : batch.getMeasurements()) {
+	    long time = getEventTime(request);
+	    DeviceMeasurements measurements = SiteWherePersistence.deviceMeasurementsCreateLogic(request, assignment);
+	    if ((seriesWriter != null) && (HBaseMeasurementSeries.isSupported(request))) {
+		measurements.setId(HBaseMeasurementSeries.getEventId(assnKey, time));
+		HBaseMeasurementSeries.addValues(
+			getBatchPut(seriesPuts, HBaseMeasurementSeries.getRowKey(assnKey, time)), time,
+			measurements.getMeasurements());
+	    } else {
+		byte[] rowkey = getRowKey(assnKey, time);
+		byte[] qualifier = getQualifier(EventRecordType.Measurement, time, encoding);
+		measurements.setId(getEncodedEventId(rowkey, qualifier));
+		byte[] payload = context.getPayloadMarshaler().encodeDeviceMeasurements(measurements);
+		getBatchPut(puts, rowkey).addColumn(ISiteWhereHBase.FAMILY_ID, qualifier, payload);
+	    }
+	    response.getCreatedMeasurements().add(measurements);
+	    if (request.isUpdateState()) {
+		state.add(measurements);
+	    }
+	}
+	for (IDeviceLocationCreateRequest request : batch.getLocations()) {
+	    long time = getEventTime(request);
+	    byte[] rowkey = getRowKey(assnKey, time);
+	    byte[] qualifier = getQualifier(EventRecordType.Location, time, encoding);
+	    DeviceLocation location = SiteWherePersistence.deviceLocationCreateLogic(assignment, request);
+	    location.setId(getEncodedEventId(rowkey, qualifier));
+	    byte[] payload = context.getPayloadMarshaler().encodeDeviceLocation(location);
+	    getBatchPut(puts, rowkey).addColumn(ISiteWhereHBase.FAMILY_ID, qualifier, payload);
+	    response.getCreatedLocations().add(location);
+	    if (request.isUpdateState()) {
+		state.add(location);
+	    }
+	}
+	for (IDeviceAlertCreateRequest request : batch.getAlerts()) {
+	    long time = getEventTime(request);
+	    byte[] rowkey = getRowKey(assnKey, time);
+	    byte[] qualifier = getQualifier(EventRecordType.Alert, time, encoding);
+	    DeviceAlert alert = SiteWherePersistence.deviceAlertCreateLogic(assignment, request);
+	    alert.setId(getEncodedEventId(rowkey, qualifier));
+	    byte[] payload = context.getPayloadMarshaler().encodeDeviceAlert(alert);
+	    getBatchPut(puts, rowkey).addColumn(ISiteWhereHBase.FAMILY_ID, qualifier, payload);
+	    response.getCreatedAlerts().add(alert);
+	    if (request.isUpdateState()) {
+		state.add(alert);
+	    }
+	}
+
+	for (Put put : puts.values()) {
+	    context.getDeviceEventBuffer().add(put);
+	}
+	for (Put put : seriesPuts.values()) {
+	    seriesWriter.add(put);
+	}
+	context.getAssignmentStateManager().addEvents(assignment.getToken(), state);
+	return response;
+    }
+
+    /**
+     * Get the {@link Put} used for a row in a batch. Create if necessary.
+     * 
+     * @param puts
+     * @param rowkey
+     * @return
+     */
+    protected static Put getBatchPut(Map<byte[], Put> puts, byte[] rowkey) {
+	Put put = puts.get(rowkey);
+	if (put == null) {
+	    put = new Put(rowkey);
+	    puts.put(rowkey, put);
+	}
+	return put;
+    }
+
     /**
      * List measurements associated with an assignment based on the given
      * criteria.
@@ -116,18 +231,27 @@ public class HBaseDeviceEvent {
 	if (assnKey == null) {
 	    throw new SiteWhereSystemException(ErrorCode.InvalidDeviceAssignmentToken, ErrorLevel.ERROR);
 	}
-	byte[] rowkey = getRowKey(assnKey, time);
-	byte[] qualifier = getQualifier(EventRecordType.Measurement, time, context.getPayloadMarshaler().getEncoding());
-
-	// Create measurements object and marshal to JSON.
 	DeviceMeasurements measurements = SiteWherePersistence.deviceMeasurementsCreateLogic(request, assignment);
-	String id = getEncodedEventId(rowkey, qualifier);
-	measurements.setId(id);
-	byte[] payload = context.getPayloadMarshaler().encodeDeviceMeasurements(measurements);
 
-	Put put = new Put(rowkey);
-	put.addColumn(ISiteWhereHBase.FAMILY_ID, qualifier, payload);
-	context.getDeviceEventBuffer().add(put);
+	// Store values in series rows if enabled.
+	if ((context.getMeasurementSeriesWriter() != null) && (HBaseMeasurementSeries.isSupported(request))) {
+	    measurements.setId(HBaseMeasurementSeries.getEventId(assnKey, time));
+	    context.getMeasurementSeriesWriter()
+		    .add(HBaseMeasurementSeries.createPut(assnKey, time, measurements.getMeasurements()));
+	} else {
+	    byte[] rowkey = getRowKey(assnKey, time);
+	    byte[] qualifier = getQualifier(EventRecordType.Measurement, time,
+		    context.getPayloadMarshaler().getEncoding());
+
+	    // Marshal measurements object to payload.
+	    String id = getEncodedEventId(rowkey, qualifier);
+	    measurements.setId(id);
+	    byte[] payload = context.getPayloadMarshaler().encodeDeviceMeasurements(measurements);
+
+	    Put put = new Put(rowkey);
+	    put.addColumn(ISiteWhereHBase.FAMILY_ID, qualifier, payload);
+	    context.getDeviceEventBuffer().add(put);
+	}
 
 	// Update state if requested.
 	if (request.isUpdateState()) {
@@ -694,7 +818,8 @@ public class HBaseDeviceEvent {
 
     /**
      * Find all event rows associated with a device assignment and return cells
-     * that match the search criteria.
+     * that match the search criteria. Measurements stored in series rows are
+     * merged in if enabled.
      * 
      * @param context
      * @param assnToken
@@ -705,32 +830,12 @@ public class HBaseDeviceEvent {
      */
     protected static Pager<EventMatch> getEventRowsForAssignment(IHBaseContext context, String assnToken,
 	    EventRecordType eventType, IDateRangeSearchCriteria criteria) throws SiteWhereException {
-	byte[] assnKey = context.getDeviceIdManager().getAssignmentKeys().getValue(assnToken);
-	if (assnKey == null) {
-	    throw new SiteWhereSystemException(ErrorCode.InvalidDeviceAssignmentToken, ErrorLevel.ERROR);
-	}
-
-	// Note: Because time values are inverted, start and end keys are
-	// reversed.
-	byte[] startKey = null, endKey = null;
-	if (criteria.getEndDate() != null) {
-	    startKey = getRowKey(assnKey, criteria.getEndDate().getTime());
-	} else {
-	    startKey = getAbsoluteStartKey(assnKey);
-	}
-	if (criteria.getStartDate() != null) {
-	    endKey = getRowKey(assnKey, criteria.getStartDate().getTime() - ROW_IN_MS);
-	} else {
-	    endKey = getAbsoluteEndKey(assnKey);
-	}
+	Scan scan = createAssignmentScan(context, assnToken, criteria);
 
 	Table events = null;
 	ResultScanner scanner = null;
 	try {
 	    events = getEventsTableInterface(context);
-	    Scan scan = new Scan();
-	    scan.setStartRow(startKey);
-	    scan.setStopRow(endKey);
 	    scanner = events.getScanner(scan);
 
 	    List<EventMatch> matches = new ArrayList<EventMatch>();
@@ -754,6 +859,16 @@ public class HBaseDeviceEvent {
 		    }
 		}
 	    }
+	    if ((context.getMeasurementSeriesWriter() != null)
+		    && ((eventType == null) || (eventType == EventRecordType.Measurement))) {
+		IDeviceAssignment assignment = HBaseDeviceAssignment.getDeviceAssignment(context, assnToken);
+		if (assignment != null) {
+		    for (IDeviceMeasurements mxs : HBaseMeasurementSeries.listDeviceMeasurements(context, assignment,
+			    criteria)) {
+			matches.add(new EventMatch(mxs));
+		    }
+		}
+	    }
 	    Collections.sort(matches, Collections.reverseOrder());
 	    Pager<EventMatch> pager = new Pager<EventMatch>(criteria);
 	    for (EventMatch match : matches) {
@@ -770,6 +885,118 @@ public class HBaseDeviceEvent {
 	}
     }
 
+    /**
+     * Create a scan over the event rows for an assignment that fall within the
+     * date range of the criteria.
+     * 
+     * @param context
+     * @param assnToken
+     * @param criteria
+     * @return
+     * @throws SiteWhereException
+     */
+    protected static Scan createAssignmentScan(IHBaseContext context, String assnToken,
+	    IDateRangeSearchCriteria criteria) throws SiteWhereException {
+	byte[] assnKey = context.getDeviceIdManager().getAssignmentKeys().getValue(assnToken);
+	if (assnKey == null) {
+	    throw new SiteWhereSystemException(ErrorCode.InvalidDeviceAssignmentToken, ErrorLevel.ERROR);
+	}
+	return createAssignmentScan(assnKey, criteria);
+    }
+
+    /**
+     * Create a scan over the event rows for an assignment row key that fall
+     * within the date range of the criteria.
+     * 
+     * @param assnKey
+     * @param criteria
+     * @return
+     * @throws SiteWhereException
+     */
+    protected static Scan createAssignmentScan(byte[] assnKey, IDateRangeSearchCriteria criteria)
+	    throws SiteWhereException {
+	// Note: Because time values are inverted, start and end keys are
+	// reversed.
+	byte[] startKey = null, endKey = null;
+	if (criteria.getEndDate() != null) {
+	    startKey = getRowKey(assnKey, criteria.getEndDate().getTime());
+	} else {
+	    startKey = getAbsoluteStartKey(assnKey);
+	}
+	if (criteria.getStartDate() != null) {
+	    endKey = getRowKey(assnKey, criteria.getStartDate().getTime() - ROW_IN_MS);
+	} else {
+	    endKey = getAbsoluteEndKey(assnKey);
+	}
+
+	Scan scan = new Scan();
+	scan.setStartRow(startKey);
+	scan.setStopRow(endKey);
+	return scan;
+    }
+
+    /**
+     * Get measurements for an assignment as downsampled chart series. Event
+     * rows are scanned once and each measurement payload is decoded straight
+     * into a {@link ChartDownsampler}, so matches are never collected, sorted
+     * or paged in memory. Values from series rows are added directly if
+     * enabled.
+     * 
+     * @param context
+     * @param assnToken
+     * @param criteria
+     * @return
+     * @throws SiteWhereException
+     */
+    public static List<ISampledChartSeries> listDeviceMeasurementsSeries(IHBaseContext context, String assnToken,
+	    IChartSeriesSearchCriteria criteria) throws SiteWhereException {
+	Scan scan = createAssignmentScan(context, assnToken, criteria);
+	scan.addFamily(ISiteWhereHBase.FAMILY_ID);
+	scan.setCaching(CHART_SCAN_CACHING);
+	scan.setCacheBlocks(false);
+
+	ChartDownsampler downsampler = new ChartDownsampler(criteria);
+	Table events = null;
+	ResultScanner scanner = null;
+	try {
+	    events = getEventsTableInterface(context);
+	    scanner = events.getScanner(scan);
+	    if (context.getMeasurementSeriesWriter() != null) {
+		HBaseMeasurementSeries.addToChart(context,
+			context.getDeviceIdManager().getAssignmentKeys().getValue(assnToken), criteria, downsampler);
+	    }
+	    for (Result current : scanner) {
+		Map<byte[], byte[]> cells = current.getFamilyMap(ISiteWhereHBase.FAMILY_ID);
+		for (byte[] qual : cells.keySet()) {
+		    if ((qual.length <= 3) || (qual[3] != EventRecordType.Measurement.getType())) {
+			continue;
+		    }
+		    Date eventDate = getDateForEventKeyValue(current.getRow(), qual);
+		    if ((criteria.getStartDate() != null) && (eventDate.before(criteria.getStartDate()))) {
+			continue;
+		    }
+		    if ((criteria.getEndDate() != null) && (eventDate.after(criteria.getEndDate()))) {
+			continue;
+		    }
+		    try {
+			downsampler.add(PayloadMarshalerResolver.getInstance()
+				.getMarshaler(getEncodingFromQualifier(qual)).decodeDeviceMeasurements(cells.get(qual)));
+		    } catch (Throwable e) {
+			LOGGER.error("Unable to read payload value into event object.", e);
+		    }
+		}
+	    }
+	    return downsampler.build();
+	} catch (IOException e) {
+	    throw new SiteWhereException("Error scanning event rows.", e);
+	} finally {
+	    if (scanner != null) {
+		scanner.close();
+	    }
+	    HBaseUtils.closeCleanly(events);
+	}
+    }
+
     /**
      * Decodes the event date encoded in the rowkey and qualifier for events.
      * 
@@ -792,11 +1019,16 @@ public class HBaseDeviceEvent {
     }
 
     /**
-     * Find all event rows associated with a site and return values that match
-     * the search criteria. TODO: This is not optimized at all and will take
-     * forever in cases where there are ton of assignments and events. It has to
-     * go through every record associated with the site. It works for now
-     * though.
+     * Find event rows associated with a site and return values that match the
+     * search criteria. Each assignment's rows are stored newest first, so a
+     * cursor is created per assignment and the cursors are merged with a heap.
+     * A cursor only holds a scanner open while it reads its next few rows, so a
+     * single scanner is open at any time no matter how many assignments the
+     * site has. Merging stops once the requested page has been filled, which
+     * keeps the cost proportional to the page rather than to the number of
+     * events in the site. When paging, one event past the end of the page is
+     * read so the total exceeds the page boundary if more events exist. The
+     * total is then a lower bound rather than the number of events in the site.
      * 
      * @param context
      * @param siteToken
@@ -811,55 +1043,215 @@ public class HBaseDeviceEvent {
 	if (siteId == null) {
 	    throw new SiteWhereSystemException(ErrorCode.InvalidSiteToken, ErrorLevel.ERROR);
 	}
-	byte[] startPrefix = HBaseSite.getAssignmentRowKey(siteId);
-	byte[] afterPrefix = HBaseSite.getAfterAssignmentRowKey(siteId);
+	List<byte[]> assnKeys = getAssignmentKeysForSite(context, siteId);
+
+	long needed = Long.MAX_VALUE;
+	if (criteria.getPageSize() > 0) {
+	    needed = ((long) Math.max(0, criteria.getPageNumber() - 1) * criteria.getPageSize())
+		    + criteria.getPageSize() + 1;
+	}
+	int rows = (int) Math.min(needed, SITE_SCAN_MAX_CACHING);
 
 	Table events = null;
-	ResultScanner scanner = null;
 	try {
 	    events = getEventsTableInterface(context);
-	    Scan scan = new Scan();
-	    scan.setStartRow(startPrefix);
-	    scan.setStopRow(afterPrefix);
-	    scanner = events.getScanner(scan);
-
-	    List<EventMatch> matches = new ArrayList<EventMatch>();
-	    Iterator<Result> results = scanner.iterator();
-	    while (results.hasNext()) {
-		Result current = results.next();
-		byte[] key = current.getRow();
-		if (key.length > 7) {
-		    Map<byte[], byte[]> cells = current.getFamilyMap(ISiteWhereHBase.FAMILY_ID);
-		    for (byte[] qual : cells.keySet()) {
-			byte[] value = cells.get(qual);
-			if ((qual.length > 3) && (qual[3] == eventType.getType())) {
-			    Date eventDate = getDateForEventKeyValue(key, qual);
-			    if ((criteria.getStartDate() != null) && (eventDate.before(criteria.getStartDate()))) {
-				continue;
-			    }
-			    if ((criteria.getEndDate() != null) && (eventDate.after(criteria.getEndDate()))) {
-				continue;
-			    }
-			    EventRecordType type = EventRecordType.decode(qual[3]);
-			    byte[] encoding = getEncodingFromQualifier(qual);
-			    matches.add(new EventMatch(type, eventDate, value, encoding));
-			}
-		    }
+	    PriorityQueue<AssignmentEventCursor> heap = new PriorityQueue<AssignmentEventCursor>(
+		    Math.max(1, assnKeys.size()));
+	    for (byte[] assnKey : assnKeys) {
+		AssignmentEventCursor cursor = new AssignmentEventCursor(events, assnKey, eventType, criteria, rows);
+		if (cursor.advance()) {
+		    heap.add(cursor);
 		}
 	    }
-	    Collections.sort(matches, Collections.reverseOrder());
+
 	    Pager<EventMatch> pager = new Pager<EventMatch>(criteria);
-	    for (EventMatch match : matches) {
-		pager.process(match);
+	    while ((!heap.isEmpty()) && (pager.getTotal() < needed)) {
+		AssignmentEventCursor cursor = heap.poll();
+		pager.process(cursor.getCurrent());
+		if (cursor.advance()) {
+		    heap.add(cursor);
+		}
 	    }
 	    return pager;
 	} catch (IOException e) {
 	    throw new SiteWhereException("Error scanning event rows.", e);
+	} finally {
+	    HBaseUtils.closeCleanly(events);
+	}
+    }
+
+    /**
+     * Get row keys for all assignments that belong to a site.
+     * 
+     * @param context
+     * @param siteId
+     * @return
+     * @throws SiteWhereException
+     */
+    protected static List<byte[]> getAssignmentKeysForSite(IHBaseContext context, Long siteId)
+	    throws SiteWhereException {
+	Table sites = null;
+	ResultScanner scanner = null;
+	try {
+	    sites = HBaseSite.getSitesTableInterface(context);
+	    Scan scan = new Scan();
+	    scan.setStartRow(HBaseSite.getAssignmentRowKey(siteId));
+	    scan.setStopRow(HBaseSite.getAfterAssignmentRowKey(siteId));
+	    scan.setFilter(new KeyOnlyFilter());
+	    scan.setCaching(SITE_SCAN_MAX_CACHING);
+	    scanner = sites.getScanner(scan);
+
+	    List<byte[]> keys = new ArrayList<byte[]>();
+	    for (Result result : scanner) {
+		byte[] row = result.getRow();
+		if ((row.length == ASSIGNMENT_KEY_LENGTH + 1)
+			&& (row[ASSIGNMENT_KEY_LENGTH] == DeviceAssignmentRecordType.DeviceAssignment.getType())) {
+		    keys.add(Bytes.head(row, ASSIGNMENT_KEY_LENGTH));
+		}
+	    }
+	    return keys;
+	} catch (IOException e) {
+	    throw new SiteWhereException("Error scanning site assignment rows.", e);
 	} finally {
 	    if (scanner != null) {
 		scanner.close();
 	    }
-	    HBaseUtils.closeCleanly(events);
+	    HBaseUtils.closeCleanly(sites);
+	}
+    }
+
+    /**
+     * Walks the event cells for one assignment, newest first. Rows are keyed by
+     * inverted time and qualifiers start with inverted time, so scanner order is
+     * already newest first. Matches are read a few rows at a time into a buffer
+     * and the scanner is closed after each read, resuming after the last row
+     * on the next read. The first read stops at the first matching row since
+     * most cursors in a site merge only contribute their head.
+     * 
+     * @author Derek
+     */
+    private static class AssignmentEventCursor implements Comparable<AssignmentEventCursor> {
+
+	/** Events table */
+	private Table events;
+
+	/** Assignment row key prefix */
+	private byte[] assnKey;
+
+	/** Event type to match (null for all) */
+	private EventRecordType eventType;
+
+	/** Date range criteria */
+	private IDateRangeSearchCriteria criteria;
+
+	/** Maximum rows read after the first read */
+	private int maxRows;
+
+	/** Maximum rows for the next read */
+	private int rows = 1;
+
+	/** Matches read but not yet returned */
+	private LinkedList<EventMatch> buffer = new LinkedList<EventMatch>();
+
+	/** Row key to resume scanning from (null for start of range) */
+	private byte[] resumeKey;
+
+	/** Current match */
+	private EventMatch current;
+
+	/** Indicates all rows have been read */
+	private boolean exhausted;
+
+	public AssignmentEventCursor(Table events, byte[] assnKey, EventRecordType eventType,
+		IDateRangeSearchCriteria criteria, int maxRows) {
+	    this.events = events;
+	    this.assnKey = assnKey;
+	    this.eventType = eventType;
+	    this.criteria = criteria;
+	    this.maxRows = maxRows;
+	}
+
+	/**
+	 * Move to the next matching event. Returns false when there are no more.
+	 * 
+	 * @return
+	 * @throws IOException
+	 */
+	public boolean advance() throws IOException {
+	    if ((buffer.isEmpty()) && (!exhausted)) {
+		read();
+	    }
+	    current = buffer.poll();
+	    return (current != null);
+	}
+
+	/**
+	 * Read matches from the next rows. Reading continues past the row limit
+	 * until at least one match is found or the range is exhausted.
+	 * 
+	 * @throws IOException
+	 */
+	protected void read() throws IOException {
+	    Scan scan = createAssignmentScan(assnKey, criteria);
+	    if (resumeKey != null) {
+		scan.setStartRow(resumeKey);
+	    }
+	    scan.addFamily(ISiteWhereHBase.FAMILY_ID);
+	    scan.setCaching(rows);
+	    ResultScanner scanner = events.getScanner(scan);
+	    try {
+		int count = 0;
+		while ((count < rows) || (buffer.isEmpty())) {
+		    Result row = scanner.next();
+		    if (row == null) {
+			exhausted = true;
+			break;
+		    }
+		    count++;
+		    resumeKey = Bytes.add(row.getRow(), new byte[] { 0 });
+		    addMatches(row);
+		}
+	    } finally {
+		scanner.close();
+	    }
+	    rows = maxRows;
+	}
+
+	/**
+	 * Add cells from a row that match the criteria to the buffer.
+	 * 
+	 * @param row
+	 */
+	protected void addMatches(Result row) {
+	    for (Map.Entry<byte[], byte[]> cell : row.getFamilyMap(ISiteWhereHBase.FAMILY_ID).entrySet()) {
+		byte[] qual = cell.getKey();
+		if ((qual.length <= 3) || ((eventType != null) && (qual[3] != eventType.getType()))) {
+		    continue;
+		}
+		Date eventDate = getDateForEventKeyValue(row.getRow(), qual);
+		if ((criteria.getStartDate() != null) && (eventDate.before(criteria.getStartDate()))) {
+		    continue;
+		}
+		if ((criteria.getEndDate() != null) && (eventDate.after(criteria.getEndDate()))) {
+		    continue;
+		}
+		buffer.add(new EventMatch(EventRecordType.decode(qual[3]), eventDate, cell.getValue(),
+			getEncodingFromQualifier(qual)));
+	    }
+	}
+
+	public EventMatch getCurrent() {
+	    return current;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Comparable#compareTo(java.lang.Object)
+	 */
+	@Override
+	public int compareTo(AssignmentEventCursor other) {
+	    return other.current.compareTo(current);
 	}
     }
 
@@ -879,6 +1271,8 @@ public class HBaseDeviceEvent {
 
 	private byte[] encoding;
 
+	private IDeviceEvent event;
+
 	public EventMatch(EventRecordType type, Date date, byte[] payload, byte[] encoding) {
 	    this.type = type;
 	    this.date = date;
@@ -886,6 +1280,12 @@ public class HBaseDeviceEvent {
 	    this.encoding = encoding;
 	}
 
+	public EventMatch(IDeviceEvent event) {
+	    this.type = EventRecordType.MeasurementSeries;
+	    this.date = event.getEventDate();
+	    this.event = event;
+	}
+
 	public EventRecordType getType() {
 	    return type;
 	}
@@ -902,6 +1302,10 @@ public class HBaseDeviceEvent {
 	    return encoding;
 	}
 
+	public IDeviceEvent getEvent() {
+	    return event;
+	}
+
 	public int compareTo(EventMatch other) {
 	    return this.getDate().compareTo(other.getDate());
 	}
@@ -920,6 +1324,10 @@ public class HBaseDeviceEvent {
 	    Pager<EventMatch> matches) throws SiteWhereException {
 	List<I> results = new ArrayList<I>();
 	for (EventMatch match : matches.getResults()) {
+	    if (match.getEvent() != null) {
+		results.add((I) match.getEvent());
+		continue;
+	    }
 	    Class<? extends IDeviceEvent> type = getEventClassForIndicator(match.getType().getType());
 	    try {
 		results.add((I) PayloadMarshalerResolver.getInstance().getMarshaler(match.getEncoding())
@@ -1073,6 +1481,9 @@ public class HBaseDeviceEvent {
 	byte[][] keys = getDecodedEventId(id);
 	byte[] row = keys[0];
 	byte[] qual = keys[1];
+	if ((qual.length > 3) && (qual[3] == EventRecordType.MeasurementSeries.getType())) {
+	    return getSeriesEventById(context, row, qual);
+	}
 	Table events = null;
 	try {
 	    events = getEventsTableInterface(context);
@@ -1097,6 +1508,35 @@ public class HBaseDeviceEvent {
 	}
     }
 
+    /**
+     * Gets measurements stored in a series row based on the row and qualifier
+     * decoded from the event id.
+     * 
+     * @param context
+     * @param row
+     * @param qual
+     * @return
+     * @throws SiteWhereException
+     */
+    protected static IDeviceEvent getSeriesEventById(IHBaseContext context, byte[] row, byte[] qual)
+	    throws SiteWhereException {
+	if (context.getMeasurementSeriesWriter() != null) {
+	    byte[] assnKey = Bytes.head(row, ASSIGNMENT_KEY_LENGTH);
+	    String token = context.getDeviceIdManager().getAssignmentKeys().getName(assnKey);
+	    IDeviceAssignment assignment = (token != null) ? HBaseDeviceAssignment.getDeviceAssignment(context, token)
+		    : null;
+	    if (assignment != null) {
+		long time = getDateForEventKeyValue(row, qual).getTime();
+		IDeviceEvent event = HBaseMeasurementSeries.getDeviceMeasurements(context, assignment, assnKey, time);
+		if (event != null) {
+		    return event;
+		}
+	    }
+	}
+	throw new SiteWhereSystemException(ErrorCode.InvalidDeviceEventId, ErrorLevel.ERROR,
+		HttpServletResponse.SC_NOT_FOUND);
+    }
+
     /**
      * Get the REST wrapper class that can be used to unmarshal JSON.
      * 
@@ -1107,7 +1547,8 @@ public class HBaseDeviceEvent {
     protected static Class<? extends IDeviceEvent> getEventClassForIndicator(byte indicator) throws SiteWhereException {
 	EventRecordType eventType = EventRecordType.decode(indicator);
 	switch (eventType) {
-	case Measurement: {
+	case Measurement:
+	case MeasurementSeries: {
 	    return DeviceMeasurements.class;
 	}
 	case Location: {
@@ -13,7 +13,6 @@ import org.apache.hadoop.hbase.regionserver.BloomType;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import com.sitewhere.core.SiteWherePersistence;
 import com.sitewhere.device.AssignmentStateManager;
 import com.sitewhere.hbase.HBaseContext;
 import com.sitewhere.hbase.ISiteWhereHBase;
@@ -27,6 +26,7 @@ import com.sitewhere.spi.SiteWhereException;
 import com.sitewhere.spi.SiteWhereSystemException;
 import com.sitewhere.spi.device.IDeviceAssignment;
 import com.sitewhere.spi.device.IDeviceManagement;
+import com.sitewhere.spi.device.charting.ISampledChartSeries;
 import com.sitewhere.spi.device.command.IDeviceCommand;
 import com.sitewhere.spi.device.event.IDeviceAlert;
 import com.sitewhere.spi.device.event.IDeviceCommandInvocation;
@@ -46,10 +46,13 @@ import com.sitewhere.spi.device.event.request.IDeviceLocationCreateRequest;
 import com.sitewhere.spi.device.event.request.IDeviceMeasurementsCreateRequest;
 import com.sitewhere.spi.device.event.request.IDeviceStateChangeCreateRequest;
 import com.sitewhere.spi.device.event.request.IDeviceStreamDataCreateRequest;
+import com.sitewhere.spi.device.event.rollup.IMeasurementRollup;
+import com.sitewhere.spi.device.event.rollup.RollupResolution;
 import com.sitewhere.spi.error.ErrorCode;
 import com.sitewhere.spi.error.ErrorLevel;
 import com.sitewhere.spi.search.IDateRangeSearchCriteria;
 import com.sitewhere.spi.search.ISearchResults;
+import com.sitewhere.spi.search.device.IChartSeriesSearchCriteria;
 import com.sitewhere.spi.server.lifecycle.ILifecycleProgressMonitor;
 import com.sitewhere.spi.server.lifecycle.LifecycleComponentType;
 
@@ -78,12 +81,21 @@ public class HBaseDeviceEventManagement extends TenantLifecycleComponent impleme
     /** Allows puts to be buffered for device events */
     private DeviceEventBuffer buffer;
 
+    /** Writes measurements to series rows if enabled */
+    private MeasurementSeriesWriter seriesWriter;
+
     /** Assignment state manager */
     private AssignmentStateManager assignmentStateManager;
 
     /** Device id manager */
     private DeviceIdManager deviceIdManager;
 
+    /** Indicates whether measurements are stored in compressed series rows */
+    private boolean columnarMeasurements = false;
+
+    /** Milliseconds a series row must be idle before it is compacted */
+    private long measurementCompactionDelayMs = 60 * 1000;
+
     public HBaseDeviceEventManagement() {
 	super(LifecycleComponentType.DataStore);
     }
@@ -114,6 +126,13 @@ public class HBaseDeviceEventManagement extends TenantLifecycleComponent impleme
 	buffer.start();
 	context.setDeviceEventBuffer(buffer);
 
+	// Start writer for measurement series rows if enabled.
+	if (isColumnarMeasurements()) {
+	    seriesWriter = new MeasurementSeriesWriter(context, getMeasurementCompactionDelayMs());
+	    seriesWriter.start();
+	    context.setMeasurementSeriesWriter(seriesWriter);
+	}
+
 	// Create assignment state manager and start it.
 	assignmentStateManager = new AssignmentStateManager(getDeviceManagement());
 	startNestedComponent(assignmentStateManager, monitor, true);
@@ -132,6 +151,9 @@ public class HBaseDeviceEventManagement extends TenantLifecycleComponent impleme
 	if (buffer != null) {
 	    buffer.stop();
 	}
+	if (seriesWriter != null) {
+	    seriesWriter.stop();
+	}
 
 	// Stop the assignment state manager.
 	if (assignmentStateManager != null) {
@@ -147,6 +169,10 @@ public class HBaseDeviceEventManagement extends TenantLifecycleComponent impleme
     protected void ensureTablesExist() throws SiteWhereException {
 	SiteWhereTables.assureTenantTable(context, ISiteWhereHBase.UID_TABLE_NAME, BloomType.ROW);
 	SiteWhereTables.assureTenantTable(context, ISiteWhereHBase.EVENTS_TABLE_NAME, BloomType.ROW);
+	SiteWhereTables.assureTenantTable(context, ISiteWhereHBase.ROLLUPS_TABLE_NAME, BloomType.ROW);
+	if (isColumnarMeasurements()) {
+	    SiteWhereTables.assureTenantTable(context, ISiteWhereHBase.MEASUREMENTS_TABLE_NAME, BloomType.ROW);
+	}
     }
 
     /*
@@ -169,7 +195,8 @@ public class HBaseDeviceEventManagement extends TenantLifecycleComponent impleme
     @Override
     public IDeviceEventBatchResponse addDeviceEventBatch(String assignmentToken, IDeviceEventBatch batch)
 	    throws SiteWhereException {
-	return SiteWherePersistence.deviceEventBatchLogic(assignmentToken, batch, this);
+	IDeviceAssignment assignment = assertDeviceAssignment(assignmentToken);
+	return HBaseDeviceEvent.createDeviceEventBatch(context, assignment, batch);
     }
 
     /*
@@ -237,6 +264,45 @@ public class HBaseDeviceEventManagement extends TenantLifecycleComponent impleme
 	return HBaseDeviceEvent.listDeviceMeasurementsForSite(context, siteToken, criteria);
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.event.IDeviceEventManagement#
+     * listDeviceMeasurementsSeries(java.lang.String,
+     * com.sitewhere.spi.search.device.IChartSeriesSearchCriteria)
+     */
+    @Override
+    public List<ISampledChartSeries> listDeviceMeasurementsSeries(String assignmentToken,
+	    IChartSeriesSearchCriteria criteria) throws SiteWhereException {
+	return HBaseDeviceEvent.listDeviceMeasurementsSeries(context, assignmentToken, criteria);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.event.IDeviceEventManagement#addMeasurementRollups
+     * (java.util.List)
+     */
+    @Override
+    public void addMeasurementRollups(List<IMeasurementRollup> rollups) throws SiteWhereException {
+	HBaseMeasurementRollup.addMeasurementRollups(context, rollups);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.event.IDeviceEventManagement#
+     * listMeasurementRollups(java.lang.String,
+     * com.sitewhere.spi.device.event.rollup.RollupResolution,
+     * com.sitewhere.spi.search.IDateRangeSearchCriteria)
+     */
+    @Override
+    public ISearchResults<IMeasurementRollup> listMeasurementRollups(String assignmentToken,
+	    RollupResolution resolution, IDateRangeSearchCriteria criteria) throws SiteWhereException {
+	return HBaseMeasurementRollup.listMeasurementRollups(context, assignmentToken, resolution, criteria);
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -375,6 +441,20 @@ public class HBaseDeviceEventManagement extends TenantLifecycleComponent impleme
 	return HBaseDeviceEvent.listDeviceStreamData(context, assignment, streamId, criteria);
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.event.IDeviceEventManagement#
+     * getDeviceStreamDataRange(java.lang.String, java.lang.String, long, int)
+     */
+    @Override
+    public List<IDeviceStreamData> getDeviceStreamDataRange(String assignmentToken, String streamId,
+	    long firstSequenceNumber, int maxChunks) throws SiteWhereException {
+	IDeviceAssignment assignment = assertDeviceAssignment(assignmentToken);
+	return HBaseDeviceStreamData.getDeviceStreamDataRange(context, assignment, streamId, firstSequenceNumber,
+		maxChunks);
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -562,4 +642,20 @@ public class HBaseDeviceEventManagement extends TenantLifecycleComponent impleme
     public void setPayloadMarshaler(IPayloadMarshaler payloadMarshaler) {
 	this.payloadMarshaler = payloadMarshaler;
     }
+
+    public boolean isColumnarMeasurements() {
+	return columnarMeasurements;
+    }
+
+    public void setColumnarMeasurements(boolean columnarMeasurements) {
+	this.columnarMeasurements = columnarMeasurements;
+    }
+
+    public long getMeasurementCompactionDelayMs() {
+	return measurementCompactionDelayMs;
+    }
+
+    public void setMeasurementCompactionDelayMs(long measurementCompactionDelayMs) {
+	this.measurementCompactionDelayMs = measurementCompactionDelayMs;
+    }
 }
\ No newline at end of file
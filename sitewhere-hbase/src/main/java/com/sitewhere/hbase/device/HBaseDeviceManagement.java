@@ -306,6 +306,17 @@ public class HBaseDeviceManagement extends TenantLifecycleComponent
 	return HBaseDevice.getDeviceByHardwareId(context, hardwareId);
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.IDeviceManagement#getDevicesByHardwareIds(java.
+     * util.List)
+     */
+    public List<IDevice> getDevicesByHardwareIds(List<String> hardwareIds) throws SiteWhereException {
+	return HBaseDevice.getDevicesByHardwareIds(context, hardwareIds);
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -401,6 +412,17 @@ public class HBaseDeviceManagement extends TenantLifecycleComponent
 	return HBaseDeviceAssignment.getDeviceAssignment(context, token);
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.IDeviceManagement#getDeviceAssignmentsByTokens(
+     * java.util.List)
+     */
+    public List<IDeviceAssignment> getDeviceAssignmentsByTokens(List<String> tokens) throws SiteWhereException {
+	return HBaseDeviceAssignment.getDeviceAssignmentsByTokens(context, tokens);
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -34,6 +34,7 @@ import com.sitewhere.rest.model.device.DeviceSpecification;
 import com.sitewhere.rest.model.search.SearchResults;
 import com.sitewhere.spi.SiteWhereException;
 import com.sitewhere.spi.SiteWhereSystemException;
+import com.sitewhere.spi.cache.ICacheLoader;
 import com.sitewhere.spi.common.IFilter;
 import com.sitewhere.spi.device.IDeviceSpecification;
 import com.sitewhere.spi.device.request.IDeviceSpecificationCreateRequest;
@@ -134,30 +135,45 @@ public class HBaseDeviceSpecification {
      * @return
      * @throws SiteWhereException
      */
-    public static DeviceSpecification getDeviceSpecificationByToken(IHBaseContext context, String token)
+    public static DeviceSpecification getDeviceSpecificationByToken(final IHBaseContext context, String token)
 	    throws SiteWhereException {
 	Tracer.push(TracerCategory.DeviceManagementApiCall, "getDeviceSpecificationByToken (HBase) " + token, LOGGER);
 	try {
 	    if (context.getCacheProvider() != null) {
-		IDeviceSpecification result = context.getCacheProvider().getDeviceSpecificationCache().get(token);
-		if (result != null) {
-		    Tracer.info("Returning cached device specification.", LOGGER);
-		    DeviceSpecificationMarshalHelper helper = new DeviceSpecificationMarshalHelper(context.getTenant())
-			    .setIncludeAsset(true);
-		    return helper.convert(result, SiteWhere.getServer().getAssetModuleManager(context.getTenant()));
+		IDeviceSpecification result = context.getCacheProvider().getDeviceSpecificationCache().get(token,
+			new ICacheLoader<String, IDeviceSpecification>() {
+
+			    @Override
+			    public IDeviceSpecification load(String key) throws SiteWhereException {
+				return loadDeviceSpecificationByToken(context, key);
+			    }
+			});
+		if (result == null) {
+		    return null;
 		}
+		DeviceSpecificationMarshalHelper helper = new DeviceSpecificationMarshalHelper(context.getTenant())
+			.setIncludeAsset(true);
+		return helper.convert(result, SiteWhere.getServer().getAssetModuleManager(context.getTenant()));
 	    }
-	    DeviceSpecification found = HBaseUtils.get(context, ISiteWhereHBase.DEVICES_TABLE_NAME, token, KEY_BUILDER,
-		    DeviceSpecification.class);
-	    if ((context.getCacheProvider() != null) && (found != null)) {
-		context.getCacheProvider().getDeviceSpecificationCache().put(token, found);
-	    }
-	    return found;
+	    return loadDeviceSpecificationByToken(context, token);
 	} finally {
 	    Tracer.pop(LOGGER);
 	}
     }
 
+    /**
+     * Load a device specification by token from HBase without using the cache.
+     * 
+     * @param context
+     * @param token
+     * @return
+     * @throws SiteWhereException
+     */
+    protected static DeviceSpecification loadDeviceSpecificationByToken(IHBaseContext context, String token)
+	    throws SiteWhereException {
+	return HBaseUtils.get(context, ISiteWhereHBase.DEVICES_TABLE_NAME, token, KEY_BUILDER, DeviceSpecification.class);
+    }
+
     /**
      * Update an existing device specification.
      * 
@@ -8,11 +8,17 @@
 package com.sitewhere.hbase.device;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableMap;
 
 import org.apache.hadoop.hbase.client.Get;
 import org.apache.hadoop.hbase.client.Put;
 import org.apache.hadoop.hbase.client.Result;
 import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.filter.ColumnPaginationFilter;
+import org.apache.hadoop.hbase.filter.ColumnRangeFilter;
+import org.apache.hadoop.hbase.filter.FilterList;
 import org.apache.hadoop.hbase.util.Bytes;
 
 import com.sitewhere.core.SiteWherePersistence;
@@ -108,6 +114,51 @@ public class HBaseDeviceStreamData {
 	}
     }
 
+    /**
+     * Get a range of device stream data. Chunks are stored as columns of a
+     * single row keyed by sequence number, so the range is read with one
+     * {@link Get} using column filters rather than one request per chunk.
+     * 
+     * @param context
+     * @param assignment
+     * @param streamId
+     * @param firstSequenceNumber
+     * @param maxChunks
+     * @return
+     * @throws SiteWhereException
+     */
+    public static List<IDeviceStreamData> getDeviceStreamDataRange(IHBaseContext context,
+	    IDeviceAssignment assignment, String streamId, long firstSequenceNumber, int maxChunks)
+	    throws SiteWhereException {
+	byte[] assnKey = context.getDeviceIdManager().getAssignmentKeys().getValue(assignment.getToken());
+	byte[] streamKey = HBaseDeviceStream.getDeviceStreamKey(assnKey, streamId);
+
+	Table streams = null;
+	try {
+	    streams = getStreamsTableInterface(context);
+	    Get get = new Get(streamKey);
+	    get.addFamily(ISiteWhereHBase.FAMILY_ID);
+	    FilterList filters = new FilterList(FilterList.Operator.MUST_PASS_ALL);
+	    filters.addFilter(new ColumnRangeFilter(Bytes.toBytes(firstSequenceNumber), true, null, false));
+	    filters.addFilter(new ColumnPaginationFilter(maxChunks, 0));
+	    get.setFilter(filters);
+	    Result result = streams.get(get);
+
+	    List<IDeviceStreamData> chunks = new ArrayList<IDeviceStreamData>(maxChunks);
+	    NavigableMap<byte[], byte[]> columns = result.getFamilyMap(ISiteWhereHBase.FAMILY_ID);
+	    if (columns != null) {
+		for (byte[] payload : columns.values()) {
+		    chunks.add(context.getPayloadMarshaler().decodeDeviceStreamData(payload));
+		}
+	    }
+	    return chunks;
+	} catch (IOException e) {
+	    throw new SiteWhereException("Unable to get stream data range.", e);
+	} finally {
+	    HBaseUtils.closeCleanly(streams);
+	}
+    }
+
     /**
      * Get streams table based on context.
      * 
@@ -0,0 +1,251 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.hbase.device;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.util.Bytes;
+
+import com.sitewhere.hbase.IHBaseContext;
+import com.sitewhere.hbase.ISiteWhereHBase;
+import com.sitewhere.hbase.common.HBaseUtils;
+import com.sitewhere.rest.model.device.event.rollup.MeasurementRollup;
+import com.sitewhere.rest.model.search.Pager;
+import com.sitewhere.rest.model.search.SearchResults;
+import com.sitewhere.spi.SiteWhereException;
+import com.sitewhere.spi.device.event.rollup.IMeasurementRollup;
+import com.sitewhere.spi.device.event.rollup.RollupResolution;
+import com.sitewhere.spi.search.IDateRangeSearchCriteria;
+import com.sitewhere.spi.search.ISearchResults;
+
+/**
+ * HBase specifics for dealing with measurement rollups. Each row holds one
+ * bucket for an assignment at a given resolution, keyed by assignment key,
+ * resolution and bucket start so that a time range is a single contiguous
+ * scan. Each measurement in the bucket is a column whose value packs the
+ * aggregates into a fixed 48 byte layout.
+ * 
+ * @author Derek
+ */
+public class HBaseMeasurementRollup {
+
+    /** Length of an encoded rollup value */
+    private static final int VALUE_LENGTH = 48;
+
+    /** Number of rows fetched per scanner round trip */
+    private static final int SCAN_CACHING = 500;
+
+    /** Number of times a conflicting rollup update is retried */
+    private static final int MAX_UPDATE_ATTEMPTS = 20;
+
+    /**
+     * Merge rollup deltas into the stored buckets.
+     * 
+     * @param context
+     * @param rollups
+     * @throws SiteWhereException
+     */
+    public static void addMeasurementRollups(IHBaseContext context, List<IMeasurementRollup> rollups)
+	    throws SiteWhereException {
+	// Combine deltas that target the same cell before hitting the table.
+	Map<String, MeasurementRollup> merged = new LinkedHashMap<String, MeasurementRollup>();
+	Map<String, byte[]> rowKeys = new LinkedHashMap<String, byte[]>();
+	for (IMeasurementRollup rollup : rollups) {
+	    byte[] assnKey = context.getDeviceIdManager().getAssignmentKeys().getValue(rollup.getAssignmentToken());
+	    RollupResolution resolution = RollupResolution.getByIntervalMs(rollup.getIntervalMs());
+	    if ((assnKey == null) || (resolution == null)) {
+		continue;
+	    }
+	    byte[] rowKey = getRowKey(assnKey, resolution, rollup.getBucketStart().getTime());
+	    String key = Bytes.toStringBinary(rowKey) + ":" + rollup.getMeasurementId();
+	    MeasurementRollup existing = merged.get(key);
+	    if (existing == null) {
+		merged.put(key, MeasurementRollup.copy(rollup));
+		rowKeys.put(key, rowKey);
+	    } else {
+		existing.merge(rollup);
+	    }
+	}
+	if (merged.isEmpty()) {
+	    return;
+	}
+
+	Table rollupsTable = null;
+	try {
+	    rollupsTable = getRollupsTableInterface(context);
+	    List<String> keys = new ArrayList<String>(merged.keySet());
+	    List<Get> gets = new ArrayList<Get>(keys.size());
+	    for (String key : keys) {
+		Get get = new Get(rowKeys.get(key));
+		get.addColumn(ISiteWhereHBase.FAMILY_ID, Bytes.toBytes(merged.get(key).getMeasurementId()));
+		gets.add(get);
+	    }
+	    Result[] stored = rollupsTable.get(gets);
+
+	    // Each cell is written with a compare-and-set against the value that
+	    // was read so concurrent writers to the same bucket do not lose
+	    // updates. On conflict the cell is read again and the merge retried.
+	    for (int i = 0; i < keys.size(); i++) {
+		MeasurementRollup delta = merged.get(keys.get(i));
+		byte[] rowKey = rowKeys.get(keys.get(i));
+		byte[] qualifier = Bytes.toBytes(delta.getMeasurementId());
+		byte[] value = stored[i].getValue(ISiteWhereHBase.FAMILY_ID, qualifier);
+		int attempts = 0;
+		while (true) {
+		    MeasurementRollup rollup = MeasurementRollup.copy(delta);
+		    if (value != null) {
+			rollup.merge(decode(value, delta));
+		    }
+		    Put put = new Put(rowKey);
+		    put.addColumn(ISiteWhereHBase.FAMILY_ID, qualifier, encode(rollup));
+		    if (rollupsTable.checkAndPut(rowKey, ISiteWhereHBase.FAMILY_ID, qualifier, value, put)) {
+			break;
+		    }
+		    if (++attempts >= MAX_UPDATE_ATTEMPTS) {
+			throw new SiteWhereException("Unable to update measurement rollup for '"
+				+ delta.getMeasurementId() + "' after " + attempts + " attempts.");
+		    }
+		    Get get = new Get(rowKey);
+		    get.addColumn(ISiteWhereHBase.FAMILY_ID, qualifier);
+		    value = rollupsTable.get(get).getValue(ISiteWhereHBase.FAMILY_ID, qualifier);
+		}
+	    }
+	} catch (IOException e) {
+	    throw new SiteWhereException("Unable to save measurement rollups.", e);
+	} finally {
+	    HBaseUtils.closeCleanly(rollupsTable);
+	}
+    }
+
+    /**
+     * List rollups for an assignment at the given resolution.
+     * 
+     * @param context
+     * @param assignmentToken
+     * @param resolution
+     * @param criteria
+     * @return
+     * @throws SiteWhereException
+     */
+    public static ISearchResults<IMeasurementRollup> listMeasurementRollups(IHBaseContext context,
+	    String assignmentToken, RollupResolution resolution, IDateRangeSearchCriteria criteria)
+	    throws SiteWhereException {
+	Pager<IMeasurementRollup> pager = new Pager<IMeasurementRollup>(criteria);
+	byte[] assnKey = context.getDeviceIdManager().getAssignmentKeys().getValue(assignmentToken);
+	if (assnKey == null) {
+	    return new SearchResults<IMeasurementRollup>(pager.getResults(), pager.getTotal());
+	}
+	long start = (criteria.getStartDate() != null)
+		? resolution.getBucketStart(criteria.getStartDate().getTime()) : 0;
+	long end = (criteria.getEndDate() != null) ? criteria.getEndDate().getTime() : Long.MAX_VALUE;
+
+	Table rollupsTable = null;
+	ResultScanner scanner = null;
+	try {
+	    rollupsTable = getRollupsTableInterface(context);
+	    Scan scan = new Scan();
+	    scan.addFamily(ISiteWhereHBase.FAMILY_ID);
+	    scan.setStartRow(getRowKey(assnKey, resolution, start));
+	    scan.setStopRow(getRowKey(assnKey, resolution, end));
+	    scan.setCaching(SCAN_CACHING);
+	    scanner = rollupsTable.getScanner(scan);
+	    for (Result result : scanner) {
+		Date bucketStart = new Date(Bytes.toLong(result.getRow(), assnKey.length + 1));
+		for (Map.Entry<byte[], byte[]> cell : result.getFamilyMap(ISiteWhereHBase.FAMILY_ID).entrySet()) {
+		    MeasurementRollup rollup = new MeasurementRollup(assignmentToken, Bytes.toString(cell.getKey()),
+			    resolution.getIntervalMs(), bucketStart);
+		    pager.process(decode(cell.getValue(), rollup));
+		}
+	    }
+	    return new SearchResults<IMeasurementRollup>(pager.getResults(), pager.getTotal());
+	} catch (IOException e) {
+	    throw new SiteWhereException("Error scanning measurement rollup rows.", e);
+	} finally {
+	    if (scanner != null) {
+		scanner.close();
+	    }
+	    HBaseUtils.closeCleanly(rollupsTable);
+	}
+    }
+
+    /**
+     * Get row key for a rollup bucket.
+     * 
+     * @param assnKey
+     * @param resolution
+     * @param bucketStart
+     * @return
+     */
+    public static byte[] getRowKey(byte[] assnKey, RollupResolution resolution, long bucketStart) {
+	ByteBuffer buffer = ByteBuffer.allocate(assnKey.length + 1 + 8);
+	buffer.put(assnKey);
+	buffer.put((byte) resolution.ordinal());
+	buffer.putLong(bucketStart);
+	return buffer.array();
+    }
+
+    /**
+     * Encode rollup aggregates.
+     * 
+     * @param rollup
+     * @return
+     */
+    protected static byte[] encode(IMeasurementRollup rollup) {
+	ByteBuffer buffer = ByteBuffer.allocate(VALUE_LENGTH);
+	buffer.putLong(rollup.getCount());
+	buffer.putDouble(rollup.getMin());
+	buffer.putDouble(rollup.getMax());
+	buffer.putDouble(rollup.getSum());
+	buffer.putDouble(rollup.getLast());
+	buffer.putLong((rollup.getLastDate() != null) ? rollup.getLastDate().getTime() : 0);
+	return buffer.array();
+    }
+
+    /**
+     * Decode rollup aggregates into the given target.
+     * 
+     * @param value
+     * @param target
+     * @return
+     */
+    protected static MeasurementRollup decode(byte[] value, MeasurementRollup target) {
+	ByteBuffer buffer = ByteBuffer.wrap(value);
+	MeasurementRollup result = new MeasurementRollup(target.getAssignmentToken(), target.getMeasurementId(),
+		target.getIntervalMs(), target.getBucketStart());
+	result.setCount(buffer.getLong());
+	result.setMin(buffer.getDouble());
+	result.setMax(buffer.getDouble());
+	result.setSum(buffer.getDouble());
+	result.setLast(buffer.getDouble());
+	result.setLastDate(new Date(buffer.getLong()));
+	return result;
+    }
+
+    /**
+     * Get rollups table based on context.
+     * 
+     * @param context
+     * @return
+     * @throws SiteWhereException
+     */
+    protected static Table getRollupsTableInterface(IHBaseContext context) throws SiteWhereException {
+	return context.getClient().getTableInterface(context.getTenant(), ISiteWhereHBase.ROLLUPS_TABLE_NAME);
+    }
+}
@@ -0,0 +1,558 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.hbase.device;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.client.Delete;
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.client.RowMutations;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.filter.ColumnPrefixFilter;
+import org.apache.hadoop.hbase.filter.CompareFilter.CompareOp;
+import org.apache.hadoop.hbase.filter.FilterList;
+import org.apache.hadoop.hbase.filter.KeyOnlyFilter;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.sitewhere.device.charting.ChartDownsampler;
+import com.sitewhere.hbase.IHBaseContext;
+import com.sitewhere.hbase.ISiteWhereHBase;
+import com.sitewhere.hbase.common.HBaseUtils;
+import com.sitewhere.rest.model.device.event.DeviceMeasurements;
+import com.sitewhere.spi.SiteWhereException;
+import com.sitewhere.spi.device.IDeviceAssignment;
+import com.sitewhere.spi.device.event.IDeviceMeasurements;
+import com.sitewhere.spi.device.event.request.IDeviceMeasurementsCreateRequest;
+import com.sitewhere.spi.search.IDateRangeSearchCriteria;
+
+/**
+ * HBase specifics for storing measurements in columnar series rows rather than
+ * as one encoded payload per event. Each row holds one hour of measurements for
+ * an assignment, keyed by assignment key and inverted hour so that the newest
+ * rows sort first. New values are written as raw cells with a qualifier of
+ * [0x00][millisecond offset in hour][measurement name] and an eight byte
+ * value. Raw cells are periodically compacted into a single block per
+ * measurement name with a qualifier of [0x01][measurement name] and a value
+ * encoded by {@link MeasurementSeriesCodec}. Readers merge blocks with any raw
+ * cells that have not been compacted yet.
+ * 
+ * Measurements for the same assignment and timestamp are returned as a single
+ * event. Event ids use the same layout as the events table with a record type
+ * of {@link EventRecordType#MeasurementSeries}, so they can be resolved back to
+ * the series row.
+ * 
+ * @author Derek
+ */
+public class HBaseMeasurementSeries {
+
+    /** Static logger instance */
+    private static Logger LOGGER = LogManager.getLogger();
+
+    /** Size of a row in milliseconds */
+    public static final long ROW_IN_MS = 60 * 60 * 1000;
+
+    /** Qualifier prefix for values that have not been compacted */
+    private static final byte RAW_VALUE = 0x00;
+
+    /** Qualifier prefix for compacted blocks */
+    private static final byte BLOCK = 0x01;
+
+    /** Qualifier for counter used to detect concurrent compactions */
+    private static final byte[] COMPACTION_VERSION = new byte[] { 0x02 };
+
+    /** Number of rows fetched per scanner round trip */
+    private static final int SCAN_CACHING = 100;
+
+    /**
+     * Indicates whether a request can be stored in series rows. Requests with
+     * metadata or without values are stored as regular event payloads so that
+     * nothing is lost.
+     * 
+     * @param request
+     * @return
+     */
+    public static boolean isSupported(IDeviceMeasurementsCreateRequest request) {
+	if ((request.getMetadata() != null) && (!request.getMetadata().isEmpty())) {
+	    return false;
+	}
+	if ((request.getMeasurements() == null) || (request.getMeasurements().isEmpty())) {
+	    return false;
+	}
+	for (Double value : request.getMeasurements().values()) {
+	    if (value == null) {
+		return false;
+	    }
+	}
+	return true;
+    }
+
+    /**
+     * Create a {@link Put} that adds raw cells for measurement values.
+     * 
+     * @param assnKey
+     * @param time
+     * @param values
+     * @return
+     */
+    public static Put createPut(byte[] assnKey, long time, Map<String, Double> values) {
+	Put put = new Put(getRowKey(assnKey, time));
+	addValues(put, time, values);
+	return put;
+    }
+
+    /**
+     * Add raw cells for measurement values to a {@link Put} for the row that
+     * contains the given time.
+     * 
+     * @param put
+     * @param time
+     * @param values
+     */
+    public static void addValues(Put put, long time, Map<String, Double> values) {
+	int offset = (int) (time - getRowStart(time));
+	for (String name : values.keySet()) {
+	    byte[] nameBytes = Bytes.toBytes(name);
+	    ByteBuffer qualifier = ByteBuffer.allocate(5 + nameBytes.length);
+	    qualifier.put(RAW_VALUE);
+	    qualifier.putInt(offset);
+	    qualifier.put(nameBytes);
+	    put.addColumn(ISiteWhereHBase.FAMILY_ID, qualifier.array(), Bytes.toBytes(values.get(name)));
+	}
+    }
+
+    /**
+     * List measurements for an assignment that fall within the date range of
+     * the criteria, newest first.
+     * 
+     * @param context
+     * @param assignment
+     * @param criteria
+     * @return
+     * @throws SiteWhereException
+     */
+    public static List<IDeviceMeasurements> listDeviceMeasurements(IHBaseContext context,
+	    IDeviceAssignment assignment, IDateRangeSearchCriteria criteria) throws SiteWhereException {
+	List<IDeviceMeasurements> results = new ArrayList<IDeviceMeasurements>();
+	byte[] assnKey = context.getDeviceIdManager().getAssignmentKeys().getValue(assignment.getToken());
+	if (assnKey == null) {
+	    return results;
+	}
+	long start = (criteria.getStartDate() != null) ? criteria.getStartDate().getTime() : Long.MIN_VALUE;
+	long end = (criteria.getEndDate() != null) ? criteria.getEndDate().getTime() : Long.MAX_VALUE;
+
+	Table series = null;
+	ResultScanner scanner = null;
+	try {
+	    series = getSeriesTableInterface(context);
+	    scanner = series.getScanner(createScan(assnKey, criteria));
+	    for (Result result : scanner) {
+		Map<Long, DeviceMeasurements> byTime = new TreeMap<Long, DeviceMeasurements>(
+			Collections.reverseOrder());
+		Map<String, SortedMap<Long, Double>> values = readRow(result);
+		for (String name : values.keySet()) {
+		    for (Map.Entry<Long, Double> point : values.get(name).entrySet()) {
+			if ((point.getKey() < start) || (point.getKey() > end)) {
+			    continue;
+			}
+			DeviceMeasurements mxs = byTime.get(point.getKey());
+			if (mxs == null) {
+			    mxs = createDeviceMeasurements(assignment, assnKey, point.getKey());
+			    byTime.put(point.getKey(), mxs);
+			}
+			mxs.addOrReplaceMeasurement(name, point.getValue());
+		    }
+		}
+		results.addAll(byTime.values());
+	    }
+	    return results;
+	} catch (IOException e) {
+	    throw new SiteWhereException("Error scanning measurement series rows.", e);
+	} finally {
+	    if (scanner != null) {
+		scanner.close();
+	    }
+	    HBaseUtils.closeCleanly(series);
+	}
+    }
+
+    /**
+     * Add values for an assignment to a chart without creating intermediate
+     * event objects.
+     * 
+     * @param context
+     * @param assnKey
+     * @param criteria
+     * @param downsampler
+     * @throws SiteWhereException
+     */
+    public static void addToChart(IHBaseContext context, byte[] assnKey, IDateRangeSearchCriteria criteria,
+	    ChartDownsampler downsampler) throws SiteWhereException {
+	long start = (criteria.getStartDate() != null) ? criteria.getStartDate().getTime() : Long.MIN_VALUE;
+	long end = (criteria.getEndDate() != null) ? criteria.getEndDate().getTime() : Long.MAX_VALUE;
+
+	Scan scan = createScan(assnKey, criteria);
+	scan.setCacheBlocks(false);
+	Table series = null;
+	ResultScanner scanner = null;
+	try {
+	    series = getSeriesTableInterface(context);
+	    scanner = series.getScanner(scan);
+	    for (Result result : scanner) {
+		Map<String, SortedMap<Long, Double>> values = readRow(result);
+		for (String name : values.keySet()) {
+		    if (!downsampler.includes(name)) {
+			continue;
+		    }
+		    for (Map.Entry<Long, Double> point : values.get(name).entrySet()) {
+			if ((point.getKey() >= start) && (point.getKey() <= end)) {
+			    downsampler.add(name, point.getKey(), point.getValue());
+			}
+		    }
+		}
+	    }
+	} catch (IOException e) {
+	    throw new SiteWhereException("Error scanning measurement series rows.", e);
+	} finally {
+	    if (scanner != null) {
+		scanner.close();
+	    }
+	    HBaseUtils.closeCleanly(series);
+	}
+    }
+
+    /**
+     * Get measurements for an assignment at an exact time.
+     * 
+     * @param context
+     * @param assignment
+     * @param assnKey
+     * @param time
+     * @return
+     * @throws SiteWhereException
+     */
+    public static IDeviceMeasurements getDeviceMeasurements(IHBaseContext context, IDeviceAssignment assignment,
+	    byte[] assnKey, long time) throws SiteWhereException {
+	Table series = null;
+	try {
+	    series = getSeriesTableInterface(context);
+	    Get get = new Get(getRowKey(assnKey, time));
+	    get.addFamily(ISiteWhereHBase.FAMILY_ID);
+	    Map<String, SortedMap<Long, Double>> values = readRow(series.get(get));
+	    DeviceMeasurements mxs = null;
+	    for (String name : values.keySet()) {
+		Double value = values.get(name).get(time);
+		if (value != null) {
+		    if (mxs == null) {
+			mxs = createDeviceMeasurements(assignment, assnKey, time);
+		    }
+		    mxs.addOrReplaceMeasurement(name, value);
+		}
+	    }
+	    return mxs;
+	} catch (IOException e) {
+	    throw new SiteWhereException("Unable to load measurement series row.", e);
+	} finally {
+	    HBaseUtils.closeCleanly(series);
+	}
+    }
+
+    /**
+     * Merge raw cells in a row into compressed blocks. The compaction version
+     * is checked when the row is rewritten so that a concurrent compaction from
+     * another instance causes this one to be abandoned rather than overwriting
+     * values it has not seen.
+     * 
+     * @param series
+     * @param rowkey
+     * @return false if the row changed and compaction should be retried
+     * @throws SiteWhereException
+     */
+    public static boolean compact(Table series, byte[] rowkey) throws SiteWhereException {
+	try {
+	    Get get = new Get(rowkey);
+	    get.addFamily(ISiteWhereHBase.FAMILY_ID);
+	    Result result = series.get(get);
+	    if (result.isEmpty()) {
+		return true;
+	    }
+
+	    Map<String, SortedMap<Long, Double>> values = new HashMap<String, SortedMap<Long, Double>>();
+	    List<Cell> raw = new ArrayList<Cell>();
+	    long rowStart = getRowStart(rowkey);
+	    for (Cell cell : result.rawCells()) {
+		byte[] qualifier = CellUtil.cloneQualifier(cell);
+		if (qualifier[0] == BLOCK) {
+		    MeasurementSeriesCodec.decode(CellUtil.cloneValue(cell), getSeries(values, qualifier, 1));
+		}
+	    }
+	    for (Cell cell : result.rawCells()) {
+		byte[] qualifier = CellUtil.cloneQualifier(cell);
+		if (qualifier[0] == RAW_VALUE) {
+		    long time = rowStart + Bytes.toInt(qualifier, 1);
+		    getSeries(values, qualifier, 5).put(time, Bytes.toDouble(CellUtil.cloneValue(cell)));
+		    raw.add(cell);
+		}
+	    }
+	    if (raw.isEmpty()) {
+		return true;
+	    }
+
+	    byte[] version = result.getValue(ISiteWhereHBase.FAMILY_ID, COMPACTION_VERSION);
+	    long next = (version != null) ? Bytes.toLong(version) + 1 : 1;
+
+	    Put put = new Put(rowkey);
+	    for (String name : values.keySet()) {
+		put.addColumn(ISiteWhereHBase.FAMILY_ID, getBlockQualifier(name),
+			MeasurementSeriesCodec.encode(values.get(name)));
+	    }
+	    put.addColumn(ISiteWhereHBase.FAMILY_ID, COMPACTION_VERSION, Bytes.toBytes(next));
+
+	    // Only remove the cell versions that were read so later writes are
+	    // kept for the next compaction.
+	    Delete delete = new Delete(rowkey);
+	    for (Cell cell : raw) {
+		delete.addColumn(ISiteWhereHBase.FAMILY_ID, CellUtil.cloneQualifier(cell), cell.getTimestamp());
+	    }
+
+	    RowMutations mutations = new RowMutations(rowkey);
+	    mutations.add(put);
+	    mutations.add(delete);
+	    return series.checkAndMutate(rowkey, ISiteWhereHBase.FAMILY_ID, COMPACTION_VERSION, CompareOp.EQUAL,
+		    version, mutations);
+	} catch (IOException e) {
+	    throw new SiteWhereException("Unable to compact measurement series row.", e);
+	}
+    }
+
+    /**
+     * Find rows that still have raw cells, for instance because an instance
+     * stopped before compacting them. Only cell keys are returned by the
+     * region servers.
+     * 
+     * @param series
+     * @return latest raw cell timestamp by row key
+     * @throws SiteWhereException
+     */
+    public static Map<ByteBuffer, Long> findUncompactedRows(Table series) throws SiteWhereException {
+	Map<ByteBuffer, Long> rows = new HashMap<ByteBuffer, Long>();
+	Scan scan = new Scan();
+	scan.addFamily(ISiteWhereHBase.FAMILY_ID);
+	scan.setFilter(new FilterList(FilterList.Operator.MUST_PASS_ALL,
+		new ColumnPrefixFilter(new byte[] { RAW_VALUE }), new KeyOnlyFilter()));
+	scan.setCaching(SCAN_CACHING);
+	scan.setCacheBlocks(false);
+	ResultScanner scanner = null;
+	try {
+	    scanner = series.getScanner(scan);
+	    for (Result result : scanner) {
+		long latest = 0;
+		for (Cell cell : result.rawCells()) {
+		    latest = Math.max(latest, cell.getTimestamp());
+		}
+		rows.put(ByteBuffer.wrap(result.getRow()), latest);
+	    }
+	    return rows;
+	} catch (IOException e) {
+	    throw new SiteWhereException("Error scanning measurement series rows.", e);
+	} finally {
+	    if (scanner != null) {
+		scanner.close();
+	    }
+	}
+    }
+
+    /**
+     * Read all values in a row by measurement name. Raw cells override values
+     * from blocks with the same timestamp.
+     * 
+     * @param result
+     * @return
+     * @throws SiteWhereException
+     */
+    protected static Map<String, SortedMap<Long, Double>> readRow(Result result) throws SiteWhereException {
+	Map<String, SortedMap<Long, Double>> values = new HashMap<String, SortedMap<Long, Double>>();
+	Map<byte[], byte[]> cells = result.getFamilyMap(ISiteWhereHBase.FAMILY_ID);
+	if (cells == null) {
+	    return values;
+	}
+	for (byte[] qualifier : cells.keySet()) {
+	    if (qualifier[0] == BLOCK) {
+		try {
+		    MeasurementSeriesCodec.decode(cells.get(qualifier), getSeries(values, qualifier, 1));
+		} catch (SiteWhereException e) {
+		    LOGGER.error("Unable to decode measurement series block.", e);
+		}
+	    }
+	}
+	long rowStart = getRowStart(result.getRow());
+	for (byte[] qualifier : cells.keySet()) {
+	    if (qualifier[0] == RAW_VALUE) {
+		long time = rowStart + Bytes.toInt(qualifier, 1);
+		getSeries(values, qualifier, 5).put(time, Bytes.toDouble(cells.get(qualifier)));
+	    }
+	}
+	return values;
+    }
+
+    /**
+     * Get series for the measurement name at the given offset in a qualifier.
+     * Create if necessary.
+     * 
+     * @param values
+     * @param qualifier
+     * @param nameOffset
+     * @return
+     */
+    protected static SortedMap<Long, Double> getSeries(Map<String, SortedMap<Long, Double>> values, byte[] qualifier,
+	    int nameOffset) {
+	String name = Bytes.toString(qualifier, nameOffset, qualifier.length - nameOffset);
+	SortedMap<Long, Double> series = values.get(name);
+	if (series == null) {
+	    series = new TreeMap<Long, Double>();
+	    values.put(name, series);
+	}
+	return series;
+    }
+
+    /**
+     * Create an empty measurements event for an assignment at the given time.
+     * Only values are stored in series rows, so the received date is reported
+     * as the event date.
+     * 
+     * @param assignment
+     * @param assnKey
+     * @param time
+     * @return
+     */
+    protected static DeviceMeasurements createDeviceMeasurements(IDeviceAssignment assignment, byte[] assnKey,
+	    long time) {
+	DeviceMeasurements mxs = new DeviceMeasurements();
+	mxs.setId(getEventId(assnKey, time));
+	mxs.setSiteToken(assignment.getSiteToken());
+	mxs.setDeviceAssignmentToken(assignment.getToken());
+	mxs.setAssignmentType(assignment.getAssignmentType());
+	mxs.setAssetModuleId(assignment.getAssetModuleId());
+	mxs.setAssetId(assignment.getAssetId());
+	mxs.setEventDate(new Date(time));
+	mxs.setReceivedDate(new Date(time));
+	return mxs;
+    }
+
+    /**
+     * Get unique event id for measurements stored at the given time.
+     * 
+     * @param assnKey
+     * @param time
+     * @return
+     */
+    public static String getEventId(byte[] assnKey, long time) {
+	byte[] timeBytes = Bytes.toBytes(time);
+	byte[] qualifier = new byte[] { (byte) ~timeBytes[5], (byte) ~timeBytes[6], (byte) ~timeBytes[7],
+		EventRecordType.MeasurementSeries.getType() };
+	return HBaseDeviceEvent.getEncodedEventId(HBaseDeviceEvent.getRowKey(assnKey, time), qualifier);
+    }
+
+    /**
+     * Create a scan over the series rows for an assignment that fall within
+     * the date range of the criteria.
+     * 
+     * @param assnKey
+     * @param criteria
+     * @return
+     */
+    protected static Scan createScan(byte[] assnKey, IDateRangeSearchCriteria criteria) {
+	// Note: Because time values are inverted, start and end keys are
+	// reversed.
+	byte[] startKey = (criteria.getEndDate() != null) ? getRowKey(assnKey, criteria.getEndDate().getTime())
+		: Bytes.add(assnKey, new byte[] { 0x00, 0x00, 0x00, 0x00 });
+	byte[] endKey = (criteria.getStartDate() != null)
+		? getRowKey(assnKey, criteria.getStartDate().getTime() - ROW_IN_MS)
+		: Bytes.add(assnKey, new byte[] { (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff });
+
+	Scan scan = new Scan();
+	scan.setStartRow(startKey);
+	scan.setStopRow(endKey);
+	scan.addFamily(ISiteWhereHBase.FAMILY_ID);
+	scan.setCaching(SCAN_CACHING);
+	return scan;
+    }
+
+    /**
+     * Get row key for the hour containing the given time.
+     * 
+     * @param assnKey
+     * @param time
+     * @return
+     */
+    public static byte[] getRowKey(byte[] assnKey, long time) {
+	int hour = (int) (time / ROW_IN_MS);
+	ByteBuffer buffer = ByteBuffer.allocate(assnKey.length + 4);
+	buffer.put(assnKey);
+	buffer.putInt(~hour);
+	return buffer.array();
+    }
+
+    /**
+     * Get start of the row containing the given time.
+     * 
+     * @param time
+     * @return
+     */
+    protected static long getRowStart(long time) {
+	return (time / ROW_IN_MS) * ROW_IN_MS;
+    }
+
+    /**
+     * Get start time for a row key.
+     * 
+     * @param rowkey
+     * @return
+     */
+    protected static long getRowStart(byte[] rowkey) {
+	int hour = ~Bytes.toInt(rowkey, rowkey.length - 4);
+	return hour * ROW_IN_MS;
+    }
+
+    /**
+     * Get qualifier for the compacted block of a measurement.
+     * 
+     * @param name
+     * @return
+     */
+    protected static byte[] getBlockQualifier(String name) {
+	return Bytes.add(new byte[] { BLOCK }, Bytes.toBytes(name));
+    }
+
+    /**
+     * Get measurement series table based on context.
+     * 
+     * @param context
+     * @return
+     * @throws SiteWhereException
+     */
+    protected static Table getSeriesTableInterface(IHBaseContext context) throws SiteWhereException {
+	return context.getClient().getTableInterface(context.getTenant(), ISiteWhereHBase.MEASUREMENTS_TABLE_NAME);
+    }
+}
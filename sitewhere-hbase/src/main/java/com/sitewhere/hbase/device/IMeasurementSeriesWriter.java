@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.hbase.device;
+
+import org.apache.hadoop.hbase.client.Put;
+
+import com.sitewhere.spi.SiteWhereException;
+
+/**
+ * Interface for writer that saves measurement values to series rows and
+ * compacts them.
+ * 
+ * @author Derek
+ */
+public interface IMeasurementSeriesWriter {
+
+    /**
+     * Start writer lifecycle.
+     * 
+     * @throws SiteWhereException
+     */
+    public void start() throws SiteWhereException;
+
+    /**
+     * Stop writer lifecycle.
+     * 
+     * @throws SiteWhereException
+     */
+    public void stop() throws SiteWhereException;
+
+    /**
+     * Add a {@link Put} for a series row. The row is compacted once writes to
+     * it have settled.
+     * 
+     * @param put
+     * @throws SiteWhereException
+     */
+    public void add(Put put) throws SiteWhereException;
+}
@@ -0,0 +1,267 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.hbase.device;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.SortedMap;
+
+import com.sitewhere.spi.SiteWhereException;
+
+/**
+ * Encodes a series of timestamp/value pairs for a single measurement into a
+ * compressed block. Timestamps are stored as delta-of-deltas and values as the
+ * XOR of each value with the one before it, as described for the Gorilla
+ * time-series database. Readings taken at a regular interval with slowly
+ * changing values use only a few bits per point.
+ * 
+ * The block starts with the number of points followed by the first timestamp
+ * and value in full. Each following point is written as:
+ * <ul>
+ * <li>Delta-of-delta of the timestamp: '0' if unchanged, otherwise '10', '110'
+ * or '1110' followed by 7, 9 or 12 bits, or '1111' followed by 32 bits.</li>
+ * <li>XOR of the value: '0' if unchanged, '10' followed by the meaningful bits
+ * if they fit the previous window of leading and trailing zeros, otherwise
+ * '11' followed by 5 bits of leading zeros, 6 bits of length and the
+ * meaningful bits.</li>
+ * </ul>
+ * 
+ * @author Derek
+ */
+public class MeasurementSeriesCodec {
+
+    /**
+     * Encode points ordered by timestamp into a block.
+     * 
+     * @param points
+     * @return
+     */
+    public static byte[] encode(SortedMap<Long, Double> points) {
+	BitWriter out = new BitWriter(16 + points.size() * 2);
+	out.write(points.size(), 32);
+	if (points.isEmpty()) {
+	    return out.toByteArray();
+	}
+
+	long previousTime = 0, previousDelta = 0, previousBits = 0;
+	int previousLeading = -1, previousTrailing = 0;
+	boolean first = true;
+	for (Map.Entry<Long, Double> point : points.entrySet()) {
+	    long time = point.getKey();
+	    long bits = Double.doubleToLongBits(point.getValue());
+	    if (first) {
+		out.write(time, 64);
+		out.write(bits, 64);
+		previousTime = time;
+		previousBits = bits;
+		first = false;
+		continue;
+	    }
+
+	    // Timestamp delta-of-delta.
+	    long delta = time - previousTime;
+	    long dod = delta - previousDelta;
+	    if (dod == 0) {
+		out.write(0, 1);
+	    } else if (fits(dod, 7)) {
+		out.write(0x2, 2);
+		out.write(dod, 7);
+	    } else if (fits(dod, 9)) {
+		out.write(0x6, 3);
+		out.write(dod, 9);
+	    } else if (fits(dod, 12)) {
+		out.write(0xe, 4);
+		out.write(dod, 12);
+	    } else {
+		out.write(0xf, 4);
+		out.write(dod, 32);
+	    }
+	    previousDelta = delta;
+	    previousTime = time;
+
+	    // Value XOR.
+	    long xor = bits ^ previousBits;
+	    if (xor == 0) {
+		out.write(0, 1);
+	    } else {
+		int leading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+		int trailing = Long.numberOfTrailingZeros(xor);
+		if ((previousLeading >= 0) && (leading >= previousLeading) && (trailing >= previousTrailing)) {
+		    out.write(0x2, 2);
+		    out.write(xor >>> previousTrailing, 64 - previousLeading - previousTrailing);
+		} else {
+		    int length = 64 - leading - trailing;
+		    out.write(0x3, 2);
+		    out.write(leading, 5);
+		    out.write(length - 1, 6);
+		    out.write(xor >>> trailing, length);
+		    previousLeading = leading;
+		    previousTrailing = trailing;
+		}
+	    }
+	    previousBits = bits;
+	}
+	return out.toByteArray();
+    }
+
+    /**
+     * Decode a block created by {@link #encode(SortedMap)} into the given map.
+     * 
+     * @param block
+     * @param points
+     * @throws SiteWhereException
+     */
+    public static void decode(byte[] block, SortedMap<Long, Double> points) throws SiteWhereException {
+	BitReader in = new BitReader(block);
+	int count = (int) in.read(32);
+	if (count == 0) {
+	    return;
+	}
+
+	long time = in.read(64);
+	long bits = in.read(64);
+	points.put(time, Double.longBitsToDouble(bits));
+
+	long delta = 0;
+	int leading = 0, trailing = 0;
+	for (int i = 1; i < count; i++) {
+	    // Timestamp delta-of-delta.
+	    if (in.read(1) != 0) {
+		if (in.read(1) == 0) {
+		    delta += in.readSigned(7);
+		} else if (in.read(1) == 0) {
+		    delta += in.readSigned(9);
+		} else if (in.read(1) == 0) {
+		    delta += in.readSigned(12);
+		} else {
+		    delta += in.readSigned(32);
+		}
+	    }
+	    time += delta;
+
+	    // Value XOR.
+	    if (in.read(1) != 0) {
+		if (in.read(1) != 0) {
+		    leading = (int) in.read(5);
+		    int length = (int) in.read(6) + 1;
+		    trailing = 64 - leading - length;
+		}
+		bits ^= in.read(64 - leading - trailing) << trailing;
+	    }
+	    points.put(time, Double.longBitsToDouble(bits));
+	}
+    }
+
+    /**
+     * Indicates whether a signed value fits in the given number of bits.
+     * 
+     * @param value
+     * @param bits
+     * @return
+     */
+    protected static boolean fits(long value, int bits) {
+	long limit = 1L << (bits - 1);
+	return (value >= -limit) && (value < limit);
+    }
+
+    /**
+     * Writes values of arbitrary bit length to a growable byte array.
+     * 
+     * @author Derek
+     */
+    private static class BitWriter {
+
+	/** Bytes written */
+	private byte[] bytes;
+
+	/** Total number of bits written */
+	private int position;
+
+	public BitWriter(int initialSize) {
+	    this.bytes = new byte[Math.max(initialSize, 16)];
+	}
+
+	/**
+	 * Write the lowest bits of a value, most significant bit first.
+	 * 
+	 * @param value
+	 * @param length
+	 */
+	public void write(long value, int length) {
+	    for (int i = length - 1; i >= 0; i--) {
+		int index = position >>> 3;
+		if (index == bytes.length) {
+		    bytes = Arrays.copyOf(bytes, bytes.length * 2);
+		}
+		if (((value >>> i) & 1) != 0) {
+		    bytes[index] |= (byte) (0x80 >>> (position & 7));
+		}
+		position++;
+	    }
+	}
+
+	/**
+	 * Get bytes written so far.
+	 * 
+	 * @return
+	 */
+	public byte[] toByteArray() {
+	    return Arrays.copyOf(bytes, (position + 7) >>> 3);
+	}
+    }
+
+    /**
+     * Reads values written by {@link BitWriter}.
+     * 
+     * @author Derek
+     */
+    private static class BitReader {
+
+	/** Bytes being read */
+	private byte[] bytes;
+
+	/** Total number of bits read */
+	private int position;
+
+	public BitReader(byte[] bytes) {
+	    this.bytes = bytes;
+	}
+
+	/**
+	 * Read an unsigned value of the given bit length.
+	 * 
+	 * @param length
+	 * @return
+	 * @throws SiteWhereException
+	 */
+	public long read(int length) throws SiteWhereException {
+	    if (position + length > (bytes.length << 3)) {
+		throw new SiteWhereException("Measurement series block is truncated.");
+	    }
+	    long value = 0;
+	    for (int i = 0; i < length; i++) {
+		int bit = (bytes[position >>> 3] >>> (7 - (position & 7))) & 1;
+		value = (value << 1) | bit;
+		position++;
+	    }
+	    return value;
+	}
+
+	/**
+	 * Read a two's complement value of the given bit length.
+	 * 
+	 * @param length
+	 * @return
+	 * @throws SiteWhereException
+	 */
+	public long readSigned(int length) throws SiteWhereException {
+	    long value = read(length);
+	    return (value << (64 - length)) >> (64 - length);
+	}
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.hbase.device;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hadoop.hbase.client.BufferedMutator;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.sitewhere.hbase.IHBaseContext;
+import com.sitewhere.hbase.ISiteWhereHBase;
+import com.sitewhere.hbase.common.HBaseUtils;
+import com.sitewhere.spi.SiteWhereException;
+
+/**
+ * Buffers writes to measurement series rows and compacts raw values into
+ * blocks once a row has not been written for a configurable interval. Rows
+ * still waiting for compaction are compacted when the writer is stopped. Rows
+ * are only tracked in memory, so on start the table is scanned for raw cells
+ * left by an instance that stopped without compacting them.
+ * 
+ * @author Derek
+ */
+public class MeasurementSeriesWriter implements IMeasurementSeriesWriter {
+
+    /** Static logger instance */
+    private static Logger LOGGER = LogManager.getLogger();
+
+    /** Number of milliseconds between flushes */
+    private static final int FLUSH_INTERVAL_MS = 250;
+
+    /** HBase context */
+    private IHBaseContext context;
+
+    /** Milliseconds a row must be idle before it is compacted */
+    private long compactionDelayMs;
+
+    /** Series table interface */
+    private BufferedMutator series;
+
+    /** Last write time for rows waiting to be compacted */
+    private Map<ByteBuffer, Long> pending = new ConcurrentHashMap<ByteBuffer, Long>();
+
+    /** Runs flushes and compactions */
+    private ScheduledExecutorService executor;
+
+    public MeasurementSeriesWriter(IHBaseContext context, long compactionDelayMs) {
+	this.context = context;
+	this.compactionDelayMs = compactionDelayMs;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.hbase.device.IMeasurementSeriesWriter#start()
+     */
+    @Override
+    public void start() throws SiteWhereException {
+	series = context.getClient().getBufferedMutator(context.getTenant(),
+		ISiteWhereHBase.MEASUREMENTS_TABLE_NAME);
+	executor = Executors.newSingleThreadScheduledExecutor(new CompactorThreadFactory());
+	executor.execute(new Recovery());
+	executor.scheduleWithFixedDelay(new Compactor(false), FLUSH_INTERVAL_MS, FLUSH_INTERVAL_MS,
+		TimeUnit.MILLISECONDS);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.hbase.device.IMeasurementSeriesWriter#stop()
+     */
+    @Override
+    public void stop() throws SiteWhereException {
+	if (executor != null) {
+	    executor.shutdown();
+	    try {
+		executor.awaitTermination(30, TimeUnit.SECONDS);
+	    } catch (InterruptedException e) {
+		Thread.currentThread().interrupt();
+	    }
+	}
+	if (series != null) {
+	    new Compactor(true).run();
+	    HBaseUtils.closeCleanly(series);
+	}
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.hbase.device.IMeasurementSeriesWriter#add(org.apache.hadoop
+     * .hbase.client.Put)
+     */
+    @Override
+    public void add(Put put) throws SiteWhereException {
+	try {
+	    series.mutate(put);
+	    pending.put(ByteBuffer.wrap(put.getRow()), System.currentTimeMillis());
+	} catch (IOException e) {
+	    throw new SiteWhereException("Unable to save measurement series data.", e);
+	}
+    }
+
+    /**
+     * Adds rows with raw cells that were not compacted before the last
+     * shutdown. Rows keep the time they were last written so they are
+     * compacted once idle like any other row.
+     * 
+     * @author Derek
+     */
+    private class Recovery implements Runnable {
+
+	@Override
+	public void run() {
+	    Table table = null;
+	    try {
+		table = context.getClient().getTableInterface(context.getTenant(),
+			ISiteWhereHBase.MEASUREMENTS_TABLE_NAME);
+		Map<ByteBuffer, Long> rows = HBaseMeasurementSeries.findUncompactedRows(table);
+		for (Map.Entry<ByteBuffer, Long> entry : rows.entrySet()) {
+		    pending.putIfAbsent(entry.getKey(), entry.getValue());
+		}
+		if (!rows.isEmpty()) {
+		    LOGGER.info("Found " + rows.size() + " measurement series rows waiting for compaction.");
+		}
+	    } catch (SiteWhereException e) {
+		LOGGER.error("Unable to find measurement series rows waiting for compaction.", e);
+	    } finally {
+		try {
+		    HBaseUtils.closeCleanly(table);
+		} catch (SiteWhereException e) {
+		    LOGGER.error("Unable to close measurement series table.", e);
+		}
+	    }
+	}
+    }
+
+    /**
+     * Flushes buffered writes and compacts rows that are no longer being
+     * written.
+     * 
+     * @author Derek
+     */
+    private class Compactor implements Runnable {
+
+	/** Indicates whether all pending rows are compacted */
+	private boolean all;
+
+	public Compactor(boolean all) {
+	    this.all = all;
+	}
+
+	@Override
+	public void run() {
+	    try {
+		series.flush();
+	    } catch (IOException e) {
+		LOGGER.error("Unable to save measurement series data.", e);
+		return;
+	    }
+	    if (pending.isEmpty()) {
+		return;
+	    }
+
+	    long cutoff = System.currentTimeMillis() - compactionDelayMs;
+	    Table table = null;
+	    try {
+		table = context.getClient().getTableInterface(context.getTenant(),
+			ISiteWhereHBase.MEASUREMENTS_TABLE_NAME);
+		for (Map.Entry<ByteBuffer, Long> entry : pending.entrySet()) {
+		    Long lastWrite = entry.getValue();
+		    if ((!all) && (lastWrite > cutoff)) {
+			continue;
+		    }
+
+		    // Rows written again while compacting stay pending.
+		    if (pending.remove(entry.getKey(), lastWrite)) {
+			try {
+			    if (!HBaseMeasurementSeries.compact(table, entry.getKey().array())) {
+				pending.putIfAbsent(entry.getKey(), lastWrite);
+			    }
+			} catch (SiteWhereException e) {
+			    LOGGER.error("Unable to compact measurement series row.", e);
+			    pending.putIfAbsent(entry.getKey(), lastWrite);
+			}
+		    }
+		}
+	    } catch (SiteWhereException e) {
+		LOGGER.error("Unable to access measurement series table.", e);
+	    } finally {
+		try {
+		    HBaseUtils.closeCleanly(table);
+		} catch (SiteWhereException e) {
+		    LOGGER.error("Unable to close measurement series table.", e);
+		}
+	    }
+	}
+    }
+
+    /** Used for naming compactor thread */
+    private class CompactorThreadFactory implements ThreadFactory {
+
+	/** Counts threads */
+	private AtomicInteger counter = new AtomicInteger();
+
+	public Thread newThread(Runnable r) {
+	    return new Thread(r, "SiteWhere HBase Series Compactor " + counter.incrementAndGet());
+	}
+    }
+}
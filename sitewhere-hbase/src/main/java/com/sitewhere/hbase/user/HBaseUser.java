@@ -261,9 +261,24 @@ public class HBaseUser {
 	    throw new SiteWhereSystemException(ErrorCode.InvalidPassword, ErrorLevel.ERROR,
 		    HttpServletResponse.SC_UNAUTHORIZED);
 	}
+	return existing;
+    }
 
-	// Update last login date.
-	existing.setLastLogin(new Date());
+    /**
+     * Set the last login date for a user.
+     * 
+     * @param context
+     * @param username
+     * @param lastLogin
+     * @throws SiteWhereException
+     */
+    public static void updateLastLogin(IHBaseContext context, String username, Date lastLogin)
+	    throws SiteWhereException {
+	User existing = getUserByUsername(context, username);
+	if (existing == null) {
+	    throw new SiteWhereSystemException(ErrorCode.InvalidUsername, ErrorLevel.ERROR);
+	}
+	existing.setLastLogin(lastLogin);
 	byte[] primary = getUserRowKey(username);
 	byte[] payload = context.getPayloadMarshaler().encodeUser(existing);
 
@@ -274,11 +289,10 @@ public class HBaseUser {
 	    HBaseUtils.addPayloadFields(context.getPayloadMarshaler().getEncoding(), put, payload);
 	    users.put(put);
 	} catch (IOException e) {
-	    throw new SiteWhereException("Unable to set deleted flag for user.", e);
+	    throw new SiteWhereException("Unable to update last login for user.", e);
 	} finally {
 	    HBaseUtils.closeCleanly(users);
 	}
-	return existing;
     }
 
     /**
@@ -7,6 +7,7 @@
  */
 package com.sitewhere.hbase.user;
 
+import java.util.Date;
 import java.util.List;
 
 import org.apache.hadoop.hbase.regionserver.BloomType;
@@ -135,6 +136,18 @@ public class HBaseUserManagement extends LifecycleComponent implements IUserMana
 	return HBaseUser.authenticate(context, username, password);
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.user.IUserManagement#updateLastLogin(java.lang.String,
+     * java.util.Date)
+     */
+    @Override
+    public void updateLastLogin(String username, Date lastLogin) throws SiteWhereException {
+	HBaseUser.updateLastLogin(context, username, lastLogin);
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -9,7 +9,6 @@ package com.sitewhere.influx;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.logging.log4j.LogManager;
@@ -17,6 +16,7 @@ import org.apache.logging.log4j.Logger;
 import org.influxdb.InfluxDB;
 import org.influxdb.InfluxDB.LogLevel;
 import org.influxdb.InfluxDBFactory;
+import org.influxdb.dto.BatchPoints;
 import org.influxdb.dto.Point;
 
 import com.sitewhere.core.SiteWherePersistence;
@@ -28,18 +28,22 @@ import com.sitewhere.influx.device.InfluxDbDeviceEvent;
 import com.sitewhere.influx.device.InfluxDbDeviceLocation;
 import com.sitewhere.influx.device.InfluxDbDeviceMeasurements;
 import com.sitewhere.influx.device.InfluxDbDeviceStateChange;
+import com.sitewhere.influx.device.InfluxDbMeasurementRollup;
 import com.sitewhere.rest.model.device.event.DeviceAlert;
 import com.sitewhere.rest.model.device.event.DeviceCommandInvocation;
 import com.sitewhere.rest.model.device.event.DeviceCommandResponse;
+import com.sitewhere.rest.model.device.event.DeviceEventBatchResponse;
 import com.sitewhere.rest.model.device.event.DeviceLocation;
 import com.sitewhere.rest.model.device.event.DeviceMeasurements;
 import com.sitewhere.rest.model.device.event.DeviceStateChange;
 import com.sitewhere.rest.model.search.SearchResults;
 import com.sitewhere.server.lifecycle.TenantLifecycleComponent;
 import com.sitewhere.spi.SiteWhereException;
+import com.sitewhere.spi.SiteWhereSystemException;
 import com.sitewhere.spi.device.IAssignmentStateManager;
 import com.sitewhere.spi.device.IDeviceAssignment;
 import com.sitewhere.spi.device.IDeviceManagement;
+import com.sitewhere.spi.device.charting.ISampledChartSeries;
 import com.sitewhere.spi.device.command.IDeviceCommand;
 import com.sitewhere.spi.device.event.DeviceEventType;
 import com.sitewhere.spi.device.event.IDeviceAlert;
@@ -60,8 +64,13 @@ import com.sitewhere.spi.device.event.request.IDeviceLocationCreateRequest;
 import com.sitewhere.spi.device.event.request.IDeviceMeasurementsCreateRequest;
 import com.sitewhere.spi.device.event.request.IDeviceStateChangeCreateRequest;
 import com.sitewhere.spi.device.event.request.IDeviceStreamDataCreateRequest;
+import com.sitewhere.spi.device.event.rollup.IMeasurementRollup;
+import com.sitewhere.spi.device.event.rollup.RollupResolution;
+import com.sitewhere.spi.error.ErrorCode;
+import com.sitewhere.spi.error.ErrorLevel;
 import com.sitewhere.spi.search.IDateRangeSearchCriteria;
 import com.sitewhere.spi.search.ISearchResults;
+import com.sitewhere.spi.search.device.IChartSeriesSearchCriteria;
 import com.sitewhere.spi.server.lifecycle.ILifecycleProgressMonitor;
 import com.sitewhere.spi.server.lifecycle.LifecycleComponentType;
 
@@ -112,6 +121,9 @@ public class InfluxDbDeviceEventManagement extends TenantLifecycleComponent impl
     /** Log level */
     private String logLevel;
 
+    /** Indicates if a total count is queried for each page of results */
+    private boolean countTotals = true;
+
     public InfluxDbDeviceEventManagement() {
 	super(LifecycleComponentType.DataStore);
     }
@@ -190,7 +202,55 @@ public class InfluxDbDeviceEventManagement extends TenantLifecycleComponent impl
     @Override
     public IDeviceEventBatchResponse addDeviceEventBatch(String assignmentToken, IDeviceEventBatch batch)
 	    throws SiteWhereException {
-	return SiteWherePersistence.deviceEventBatchLogic(assignmentToken, batch, this);
+	IDeviceAssignment assignment = getDeviceManagement().getDeviceAssignmentByToken(assignmentToken);
+	if (assignment == null) {
+	    throw new SiteWhereSystemException(ErrorCode.InvalidDeviceAssignmentToken, ErrorLevel.ERROR);
+	}
+	DeviceEventBatchResponse response = new DeviceEventBatchResponse();
+	List<IDeviceEvent> state = new ArrayList<IDeviceEvent>();
+	BatchPoints points = BatchPoints.database(getDatabase()).retentionPolicy(getRetention()).build();
+	for (IDeviceMeasurementsCreateRequest request : batch.getMeasurements()) {
+	    DeviceMeasurements mxs = SiteWherePersistence.deviceMeasurementsCreateLogic(request, assignment);
+	    mxs.setId(InfluxDbDeviceEvent.createEventId(mxs));
+	    Point.Builder builder = InfluxDbDeviceEvent.createBuilder();
+	    InfluxDbDeviceMeasurements.saveToBuilder(mxs, builder);
+	    points.point(builder.build());
+	    response.getCreatedMeasurements().add(mxs);
+	    if (request.isUpdateState()) {
+		state.add(mxs);
+	    }
+	}
+	for (IDeviceLocationCreateRequest request : batch.getLocations()) {
+	    DeviceLocation location = SiteWherePersistence.deviceLocationCreateLogic(assignment, request);
+	    location.setId(InfluxDbDeviceEvent.createEventId(location));
+	    Point.Builder builder = InfluxDbDeviceEvent.createBuilder();
+	    InfluxDbDeviceLocation.saveToBuilder(location, builder);
+	    points.point(builder.build());
+	    response.getCreatedLocations().add(location);
+	    if (request.isUpdateState()) {
+		state.add(location);
+	    }
+	}
+	for (IDeviceAlertCreateRequest request : batch.getAlerts()) {
+	    DeviceAlert alert = SiteWherePersistence.deviceAlertCreateLogic(assignment, request);
+	    alert.setId(InfluxDbDeviceEvent.createEventId(alert));
+	    Point.Builder builder = InfluxDbDeviceEvent.createBuilder();
+	    InfluxDbDeviceAlert.saveToBuilder(alert, builder);
+	    points.point(builder.build());
+	    response.getCreatedAlerts().add(alert);
+	    if (request.isUpdateState()) {
+		state.add(alert);
+	    }
+	}
+
+	// Write all points for the batch in a single request.
+	if (!points.getPoints().isEmpty()) {
+	    influx.write(points);
+	}
+
+	// Merge assignment state updates for the whole batch.
+	getAssignmentStateManager().addEvents(assignmentToken, state);
+	return response;
     }
 
     /*
@@ -202,7 +262,7 @@ public class InfluxDbDeviceEventManagement extends TenantLifecycleComponent impl
      */
     @Override
     public IDeviceEvent getDeviceEventById(String id) throws SiteWhereException {
-	return InfluxDbDeviceEvent.getEventById(id, influx, getDatabase());
+	return InfluxDbDeviceEvent.getEventById(id, influx, getDatabase(), getRetention());
     }
 
     /*
@@ -215,8 +275,8 @@ public class InfluxDbDeviceEventManagement extends TenantLifecycleComponent impl
     @Override
     public ISearchResults<IDeviceEvent> listDeviceEvents(String assignmentToken, IDateRangeSearchCriteria criteria)
 	    throws SiteWhereException {
-	List<IDeviceEvent> events = new ArrayList<IDeviceEvent>();
-	return new SearchResults<IDeviceEvent>(events);
+	return InfluxDbDeviceEvent.searchAllByAssignment(assignmentToken, criteria, isCountTotals(), influx,
+		getDatabase());
     }
 
     /*
@@ -231,7 +291,7 @@ public class InfluxDbDeviceEventManagement extends TenantLifecycleComponent impl
 	    IDeviceMeasurementsCreateRequest measurements) throws SiteWhereException {
 	IDeviceAssignment assignment = getDeviceManagement().getDeviceAssignmentByToken(assignmentToken);
 	DeviceMeasurements mxs = SiteWherePersistence.deviceMeasurementsCreateLogic(measurements, assignment);
-	mxs.setId(UUID.randomUUID().toString());
+	mxs.setId(InfluxDbDeviceEvent.createEventId(mxs));
 	Point.Builder builder = InfluxDbDeviceEvent.createBuilder();
 	InfluxDbDeviceMeasurements.saveToBuilder(mxs, builder);
 	influx.write(getDatabase(), getRetention(), builder.build());
@@ -253,8 +313,48 @@ public class InfluxDbDeviceEventManagement extends TenantLifecycleComponent impl
     @Override
     public ISearchResults<IDeviceMeasurements> listDeviceMeasurements(String assignmentToken,
 	    IDateRangeSearchCriteria criteria) throws SiteWhereException {
-	return InfluxDbDeviceEvent.searchByAssignment(assignmentToken, DeviceEventType.Measurements, criteria, influx,
-		getDatabase(), IDeviceMeasurements.class);
+	return InfluxDbDeviceEvent.searchByAssignment(assignmentToken, DeviceEventType.Measurements, criteria,
+		isCountTotals(), influx, getDatabase(), IDeviceMeasurements.class);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.event.IDeviceEventManagement#
+     * listDeviceMeasurementsSeries(java.lang.String,
+     * com.sitewhere.spi.search.device.IChartSeriesSearchCriteria)
+     */
+    @Override
+    public List<ISampledChartSeries> listDeviceMeasurementsSeries(String assignmentToken,
+	    IChartSeriesSearchCriteria criteria) throws SiteWhereException {
+	return InfluxDbDeviceMeasurements.listSeries(assignmentToken, criteria, influx, getDatabase());
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.event.IDeviceEventManagement#addMeasurementRollups
+     * (java.util.List)
+     */
+    @Override
+    public void addMeasurementRollups(List<IMeasurementRollup> rollups) throws SiteWhereException {
+	InfluxDbMeasurementRollup.addMeasurementRollups(rollups, influx, getDatabase(), getRetention());
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.event.IDeviceEventManagement#
+     * listMeasurementRollups(java.lang.String,
+     * com.sitewhere.spi.device.event.rollup.RollupResolution,
+     * com.sitewhere.spi.search.IDateRangeSearchCriteria)
+     */
+    @Override
+    public ISearchResults<IMeasurementRollup> listMeasurementRollups(String assignmentToken,
+	    RollupResolution resolution, IDateRangeSearchCriteria criteria) throws SiteWhereException {
+	return InfluxDbMeasurementRollup.listMeasurementRollups(assignmentToken, resolution, criteria, influx,
+		getDatabase());
     }
 
     /*
@@ -267,8 +367,8 @@ public class InfluxDbDeviceEventManagement extends TenantLifecycleComponent impl
     @Override
     public ISearchResults<IDeviceMeasurements> listDeviceMeasurementsForSite(String siteToken,
 	    IDateRangeSearchCriteria criteria) throws SiteWhereException {
-	return InfluxDbDeviceEvent.searchBySite(siteToken, DeviceEventType.Measurements, criteria, influx,
-		getDatabase(), IDeviceMeasurements.class);
+	return InfluxDbDeviceEvent.searchBySite(siteToken, DeviceEventType.Measurements, criteria,
+		isCountTotals(), influx, getDatabase(), IDeviceMeasurements.class);
     }
 
     /*
@@ -284,7 +384,7 @@ public class InfluxDbDeviceEventManagement extends TenantLifecycleComponent impl
 	    throws SiteWhereException {
 	IDeviceAssignment assignment = getDeviceManagement().getDeviceAssignmentByToken(assignmentToken);
 	DeviceLocation location = SiteWherePersistence.deviceLocationCreateLogic(assignment, request);
-	location.setId(UUID.randomUUID().toString());
+	location.setId(InfluxDbDeviceEvent.createEventId(location));
 	Point.Builder builder = InfluxDbDeviceEvent.createBuilder();
 	InfluxDbDeviceLocation.saveToBuilder(location, builder);
 	influx.write(getDatabase(), getRetention(), builder.build());
@@ -306,8 +406,8 @@ public class InfluxDbDeviceEventManagement extends TenantLifecycleComponent impl
     @Override
     public ISearchResults<IDeviceLocation> listDeviceLocations(String assignmentToken,
 	    IDateRangeSearchCriteria criteria) throws SiteWhereException {
-	return InfluxDbDeviceEvent.searchByAssignment(assignmentToken, DeviceEventType.Location, criteria, influx,
-		getDatabase(), IDeviceLocation.class);
+	return InfluxDbDeviceEvent.searchByAssignment(assignmentToken, DeviceEventType.Location, criteria,
+		isCountTotals(), influx, getDatabase(), IDeviceLocation.class);
     }
 
     /*
@@ -320,8 +420,8 @@ public class InfluxDbDeviceEventManagement extends TenantLifecycleComponent impl
     @Override
     public ISearchResults<IDeviceLocation> listDeviceLocationsForSite(String siteToken,
 	    IDateRangeSearchCriteria criteria) throws SiteWhereException {
-	return InfluxDbDeviceEvent.searchBySite(siteToken, DeviceEventType.Location, criteria, influx, getDatabase(),
-		IDeviceLocation.class);
+	return InfluxDbDeviceEvent.searchBySite(siteToken, DeviceEventType.Location, criteria,
+		isCountTotals(), influx, getDatabase(), IDeviceLocation.class);
     }
 
     /*
@@ -334,8 +434,8 @@ public class InfluxDbDeviceEventManagement extends TenantLifecycleComponent impl
     @Override
     public ISearchResults<IDeviceLocation> listDeviceLocations(List<String> assignmentTokens,
 	    IDateRangeSearchCriteria criteria) throws SiteWhereException {
-	List<IDeviceLocation> locations = new ArrayList<IDeviceLocation>();
-	return new SearchResults<IDeviceLocation>(locations);
+	return InfluxDbDeviceEvent.searchByAssignments(assignmentTokens, DeviceEventType.Location, criteria,
+		isCountTotals(), influx, getDatabase(), IDeviceLocation.class);
     }
 
     /*
@@ -351,7 +451,7 @@ public class InfluxDbDeviceEventManagement extends TenantLifecycleComponent impl
 	    throws SiteWhereException {
 	IDeviceAssignment assignment = getDeviceManagement().getDeviceAssignmentByToken(assignmentToken);
 	DeviceAlert alert = SiteWherePersistence.deviceAlertCreateLogic(assignment, request);
-	alert.setId(UUID.randomUUID().toString());
+	alert.setId(InfluxDbDeviceEvent.createEventId(alert));
 	Point.Builder builder = InfluxDbDeviceEvent.createBuilder();
 	InfluxDbDeviceAlert.saveToBuilder(alert, builder);
 	influx.write(getDatabase(), getRetention(), builder.build());
@@ -373,8 +473,8 @@ public class InfluxDbDeviceEventManagement extends TenantLifecycleComponent impl
     @Override
     public ISearchResults<IDeviceAlert> listDeviceAlerts(String assignmentToken, IDateRangeSearchCriteria criteria)
 	    throws SiteWhereException {
-	return InfluxDbDeviceEvent.searchByAssignment(assignmentToken, DeviceEventType.Alert, criteria, influx,
-		getDatabase(), IDeviceAlert.class);
+	return InfluxDbDeviceEvent.searchByAssignment(assignmentToken, DeviceEventType.Alert, criteria,
+		isCountTotals(), influx, getDatabase(), IDeviceAlert.class);
     }
 
     /*
@@ -387,8 +487,8 @@ public class InfluxDbDeviceEventManagement extends TenantLifecycleComponent impl
     @Override
     public ISearchResults<IDeviceAlert> listDeviceAlertsForSite(String siteToken, IDateRangeSearchCriteria criteria)
 	    throws SiteWhereException {
-	return InfluxDbDeviceEvent.searchBySite(siteToken, DeviceEventType.Alert, criteria, influx, getDatabase(),
-		IDeviceAlert.class);
+	return InfluxDbDeviceEvent.searchBySite(siteToken, DeviceEventType.Alert, criteria,
+		isCountTotals(), influx, getDatabase(), IDeviceAlert.class);
     }
 
     /*
@@ -432,6 +532,18 @@ public class InfluxDbDeviceEventManagement extends TenantLifecycleComponent impl
 	return new SearchResults<IDeviceStreamData>(results);
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.event.IDeviceEventManagement#
+     * getDeviceStreamDataRange(java.lang.String, java.lang.String, long, int)
+     */
+    @Override
+    public List<IDeviceStreamData> getDeviceStreamDataRange(String assignmentToken, String streamId,
+	    long firstSequenceNumber, int maxChunks) throws SiteWhereException {
+	throw new SiteWhereException("Streaming data not supported by InfluxDB.");
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -447,7 +559,7 @@ public class InfluxDbDeviceEventManagement extends TenantLifecycleComponent impl
 	IDeviceAssignment assignment = getDeviceManagement().getDeviceAssignmentByToken(assignmentToken);
 	DeviceCommandInvocation ci = SiteWherePersistence.deviceCommandInvocationCreateLogic(assignment, command,
 		request);
-	ci.setId(UUID.randomUUID().toString());
+	ci.setId(InfluxDbDeviceEvent.createEventId(ci));
 	Point.Builder builder = InfluxDbDeviceEvent.createBuilder();
 	InfluxDbDeviceCommandInvocation.saveToBuilder(ci, builder);
 	influx.write(getDatabase(), getRetention(), builder.build());
@@ -465,7 +577,7 @@ public class InfluxDbDeviceEventManagement extends TenantLifecycleComponent impl
     public ISearchResults<IDeviceCommandInvocation> listDeviceCommandInvocations(String assignmentToken,
 	    IDateRangeSearchCriteria criteria) throws SiteWhereException {
 	return InfluxDbDeviceEvent.searchByAssignment(assignmentToken, DeviceEventType.CommandInvocation, criteria,
-		influx, getDatabase(), IDeviceCommandInvocation.class);
+		isCountTotals(), influx, getDatabase(), IDeviceCommandInvocation.class);
     }
 
     /*
@@ -478,8 +590,8 @@ public class InfluxDbDeviceEventManagement extends TenantLifecycleComponent impl
     @Override
     public ISearchResults<IDeviceCommandInvocation> listDeviceCommandInvocationsForSite(String siteToken,
 	    IDateRangeSearchCriteria criteria) throws SiteWhereException {
-	return InfluxDbDeviceEvent.searchBySite(siteToken, DeviceEventType.CommandInvocation, criteria, influx,
-		getDatabase(), IDeviceCommandInvocation.class);
+	return InfluxDbDeviceEvent.searchBySite(siteToken, DeviceEventType.CommandInvocation, criteria,
+		isCountTotals(), influx, getDatabase(), IDeviceCommandInvocation.class);
     }
 
     /*
@@ -507,7 +619,7 @@ public class InfluxDbDeviceEventManagement extends TenantLifecycleComponent impl
 	    IDeviceCommandResponseCreateRequest request) throws SiteWhereException {
 	IDeviceAssignment assignment = getDeviceManagement().getDeviceAssignmentByToken(assignmentToken);
 	DeviceCommandResponse cr = SiteWherePersistence.deviceCommandResponseCreateLogic(assignment, request);
-	cr.setId(UUID.randomUUID().toString());
+	cr.setId(InfluxDbDeviceEvent.createEventId(cr));
 	Point.Builder builder = InfluxDbDeviceEvent.createBuilder();
 	InfluxDbDeviceCommandResponse.saveToBuilder(cr, builder);
 	influx.write(getDatabase(), getRetention(), builder.build());
@@ -525,7 +637,7 @@ public class InfluxDbDeviceEventManagement extends TenantLifecycleComponent impl
     public ISearchResults<IDeviceCommandResponse> listDeviceCommandResponses(String assignmentToken,
 	    IDateRangeSearchCriteria criteria) throws SiteWhereException {
 	return InfluxDbDeviceEvent.searchByAssignment(assignmentToken, DeviceEventType.CommandResponse, criteria,
-		influx, getDatabase(), IDeviceCommandResponse.class);
+		isCountTotals(), influx, getDatabase(), IDeviceCommandResponse.class);
     }
 
     /*
@@ -538,8 +650,8 @@ public class InfluxDbDeviceEventManagement extends TenantLifecycleComponent impl
     @Override
     public ISearchResults<IDeviceCommandResponse> listDeviceCommandResponsesForSite(String siteToken,
 	    IDateRangeSearchCriteria criteria) throws SiteWhereException {
-	return InfluxDbDeviceEvent.searchBySite(siteToken, DeviceEventType.CommandResponse, criteria, influx,
-		getDatabase(), IDeviceCommandResponse.class);
+	return InfluxDbDeviceEvent.searchBySite(siteToken, DeviceEventType.CommandResponse, criteria,
+		isCountTotals(), influx, getDatabase(), IDeviceCommandResponse.class);
     }
 
     /*
@@ -554,7 +666,7 @@ public class InfluxDbDeviceEventManagement extends TenantLifecycleComponent impl
 	    throws SiteWhereException {
 	IDeviceAssignment assignment = getDeviceManagement().getDeviceAssignmentByToken(assignmentToken);
 	DeviceStateChange sc = SiteWherePersistence.deviceStateChangeCreateLogic(assignment, request);
-	sc.setId(UUID.randomUUID().toString());
+	sc.setId(InfluxDbDeviceEvent.createEventId(sc));
 	Point.Builder builder = InfluxDbDeviceEvent.createBuilder();
 	InfluxDbDeviceStateChange.saveToBuilder(sc, builder);
 	influx.write(getDatabase(), getRetention(), builder.build());
@@ -576,8 +688,8 @@ public class InfluxDbDeviceEventManagement extends TenantLifecycleComponent impl
     @Override
     public ISearchResults<IDeviceStateChange> listDeviceStateChanges(String assignmentToken,
 	    IDateRangeSearchCriteria criteria) throws SiteWhereException {
-	return InfluxDbDeviceEvent.searchByAssignment(assignmentToken, DeviceEventType.StateChange, criteria, influx,
-		getDatabase(), IDeviceStateChange.class);
+	return InfluxDbDeviceEvent.searchByAssignment(assignmentToken, DeviceEventType.StateChange, criteria,
+		isCountTotals(), influx, getDatabase(), IDeviceStateChange.class);
     }
 
     /*
@@ -590,8 +702,8 @@ public class InfluxDbDeviceEventManagement extends TenantLifecycleComponent impl
     @Override
     public ISearchResults<IDeviceStateChange> listDeviceStateChangesForSite(String siteToken,
 	    IDateRangeSearchCriteria criteria) throws SiteWhereException {
-	return InfluxDbDeviceEvent.searchBySite(siteToken, DeviceEventType.StateChange, criteria, influx, getDatabase(),
-		IDeviceStateChange.class);
+	return InfluxDbDeviceEvent.searchBySite(siteToken, DeviceEventType.StateChange, criteria,
+		isCountTotals(), influx, getDatabase(), IDeviceStateChange.class);
     }
 
     /*
@@ -688,6 +800,14 @@ public class InfluxDbDeviceEventManagement extends TenantLifecycleComponent impl
 	this.batchIntervalMs = batchIntervalMs;
     }
 
+    public boolean isCountTotals() {
+	return countTotals;
+    }
+
+    public void setCountTotals(boolean countTotals) {
+	this.countTotals = countTotals;
+    }
+
     public String getLogLevel() {
 	return logLevel;
     }
@@ -24,6 +24,7 @@ import org.influxdb.dto.QueryResult.Result;
 import org.influxdb.dto.QueryResult.Series;
 import org.joda.time.format.ISODateTimeFormat;
 
+import com.sitewhere.device.event.TimeOrderedEventId;
 import com.sitewhere.rest.model.device.event.DeviceEvent;
 import com.sitewhere.rest.model.search.SearchResults;
 import com.sitewhere.spi.SiteWhereException;
@@ -46,6 +47,9 @@ public class InfluxDbDeviceEvent {
     /** Collection for events */
     public static final String COLLECTION_EVENTS = "events";
 
+    /** Collection that maps event ids without an embedded time to events */
+    public static final String COLLECTION_EVENT_IDS = "eventids";
+
     /** Event id tag */
     public static final String EVENT_ID = "eid";
 
@@ -84,24 +88,100 @@ public class InfluxDbDeviceEvent {
     }
 
     /**
-     * Get an event by unique id.
+     * Create a unique id for an event. The id embeds the event time and
+     * assignment token so that lookups by id only need to query a single
+     * point.
+     * 
+     * @param event
+     * @return
+     */
+    public static String createEventId(IDeviceEvent event) {
+	return TimeOrderedEventId.create(event.getEventDate().getTime(), event.getDeviceAssignmentToken());
+    }
+
+    /**
+     * Get an event by unique id. Ids created by {@link #createEventId} are
+     * looked up by assignment and time. Ids in other formats were written
+     * before ids embedded the time and are resolved through the event id
+     * index. If an id is not indexed yet, all events are searched once and the
+     * mapping is added to the index.
      * 
      * @param eventId
      * @param influx
      * @param database
+     * @param retention
      * @return
      * @throws SiteWhereException
      */
-    public static IDeviceEvent getEventById(String eventId, InfluxDB influx, String database)
+    public static IDeviceEvent getEventById(String eventId, InfluxDB influx, String database, String retention)
 	    throws SiteWhereException {
-	Query query = new Query(
-		"SELECT * FROM " + InfluxDbDeviceEvent.COLLECTION_EVENTS + " where eid='" + eventId + "'", database);
-	QueryResult response = influx.query(query, TimeUnit.MILLISECONDS);
-	List<IDeviceEvent> results = InfluxDbDeviceEvent.eventsOfType(response, IDeviceEvent.class);
-	if (results.size() > 0) {
-	    return results.get(0);
+	if (TimeOrderedEventId.isTimeOrdered(eventId)) {
+	    return getEventAt(eventId, TimeOrderedEventId.getAssignmentToken(eventId),
+		    TimeOrderedEventId.getTime(eventId), influx, database);
 	}
-	return null;
+
+	// Look up time and assignment in the event id index.
+	Query lookup = new Query("SELECT * FROM " + COLLECTION_EVENT_IDS + " where " + tagFilter(EVENT_ID, eventId)
+		+ " LIMIT 1", database);
+	QueryResult indexed = influx.query(lookup, TimeUnit.MILLISECONDS);
+	handleError(indexed);
+	for (Result result : indexed.getResults()) {
+	    if (result.getSeries() != null) {
+		for (Series series : result.getSeries()) {
+		    for (List<Object> values : series.getValues()) {
+			Map<String, Object> valueMap = getValueMap(series.getColumns(), values);
+			Date time = parseDateField(valueMap, "time");
+			String assignment = find(valueMap, EVENT_ASSIGNMENT, true);
+			if ((time != null) && (assignment != null)) {
+			    return getEventAt(eventId, assignment, time.getTime(), influx, database);
+			}
+		    }
+		}
+	    }
+	}
+
+	// Search all events and index the id for later lookups.
+	Query query = new Query("SELECT * FROM " + COLLECTION_EVENTS + " where " + tagFilter(EVENT_ID, eventId)
+		+ " LIMIT 1", database);
+	List<IDeviceEvent> results = eventsOfType(influx.query(query, TimeUnit.MILLISECONDS), IDeviceEvent.class);
+	if (results.isEmpty()) {
+	    return null;
+	}
+	IDeviceEvent event = results.get(0);
+	influx.write(database, retention, createEventIdIndex(event));
+	return event;
+    }
+
+    /**
+     * Get an event by id given the assignment and time it was stored with.
+     * 
+     * @param eventId
+     * @param assignmentToken
+     * @param time
+     * @param influx
+     * @param database
+     * @return
+     * @throws SiteWhereException
+     */
+    protected static IDeviceEvent getEventAt(String eventId, String assignmentToken, long time, InfluxDB influx,
+	    String database) throws SiteWhereException {
+	Query query = new Query("SELECT * FROM " + COLLECTION_EVENTS + " where "
+		+ tagFilter(EVENT_ASSIGNMENT, assignmentToken) + " and time = " + time + "ms and "
+		+ tagFilter(EVENT_ID, eventId), database);
+	List<IDeviceEvent> results = eventsOfType(influx.query(query, TimeUnit.MILLISECONDS), IDeviceEvent.class);
+	return (results.size() > 0) ? results.get(0) : null;
+    }
+
+    /**
+     * Create a point that maps an event id to the time and assignment of the
+     * event. The id is a tag so that index lookups do not scan event data.
+     * 
+     * @param event
+     * @return
+     */
+    protected static Point createEventIdIndex(IDeviceEvent event) {
+	return Point.measurement(COLLECTION_EVENT_IDS).time(event.getEventDate().getTime(), TimeUnit.MILLISECONDS)
+		.tag(EVENT_ID, event.getId()).addField(EVENT_ASSIGNMENT, event.getDeviceAssignmentToken()).build();
     }
 
     /**
@@ -110,6 +190,7 @@ public class InfluxDbDeviceEvent {
      * @param assignmentToken
      * @param type
      * @param criteria
+     * @param countTotal
      * @param influx
      * @param database
      * @param clazz
@@ -117,18 +198,10 @@ public class InfluxDbDeviceEvent {
      * @throws SiteWhereException
      */
     public static <T> SearchResults<T> searchByAssignment(String assignmentToken, DeviceEventType type,
-	    ISearchCriteria criteria, InfluxDB influx, String database, Class<T> clazz) throws SiteWhereException {
-	Query query = InfluxDbDeviceEvent.queryEventsOfTypeForAssignment(type, assignmentToken, criteria, database);
-	LOGGER.debug("Query: " + query.getCommand());
-	QueryResult response = influx.query(query, TimeUnit.MILLISECONDS);
-	List<T> results = InfluxDbDeviceEvent.eventsOfType(response, clazz);
-
-	Query countQuery = InfluxDbDeviceEvent.queryEventsOfTypeForAssignmentCount(type, assignmentToken, criteria,
-		database);
-	LOGGER.debug("Count: " + countQuery.getCommand());
-	QueryResult countResponse = influx.query(countQuery);
-	long count = parseCount(countResponse);
-	return new SearchResults<T>(results, count);
+	    ISearchCriteria criteria, boolean countTotal, InfluxDB influx, String database, Class<T> clazz)
+	    throws SiteWhereException {
+	return search(typeFilter(type) + " and " + tagFilter(EVENT_ASSIGNMENT, assignmentToken), criteria, countTotal,
+		influx, database, clazz);
     }
 
     /**
@@ -137,6 +210,7 @@ public class InfluxDbDeviceEvent {
      * @param siteToken
      * @param type
      * @param criteria
+     * @param countTotal
      * @param influx
      * @param database
      * @param clazz
@@ -144,111 +218,130 @@ public class InfluxDbDeviceEvent {
      * @throws SiteWhereException
      */
     public static <T> SearchResults<T> searchBySite(String siteToken, DeviceEventType type, ISearchCriteria criteria,
-	    InfluxDB influx, String database, Class<T> clazz) throws SiteWhereException {
-	Query query = InfluxDbDeviceEvent.queryEventsOfTypeForSite(type, siteToken, criteria, database);
-	LOGGER.debug("Query: " + query.getCommand());
-	QueryResult response = influx.query(query, TimeUnit.MILLISECONDS);
-	List<T> results = InfluxDbDeviceEvent.eventsOfType(response, clazz);
-
-	Query countQuery = InfluxDbDeviceEvent.queryEventsOfTypeForSiteCount(type, siteToken, criteria, database);
-	LOGGER.debug("Count: " + countQuery.getCommand());
-	QueryResult countResponse = influx.query(countQuery);
-	long count = parseCount(countResponse);
-	return new SearchResults<T>(results, count);
+	    boolean countTotal, InfluxDB influx, String database, Class<T> clazz) throws SiteWhereException {
+	return search(typeFilter(type) + " and " + tagFilter(EVENT_SITE, siteToken), criteria, countTotal, influx,
+		database, clazz);
     }
 
     /**
-     * Get a query for events of a given type associated with an assignment and
-     * that meet the search criteria.
+     * Search for events of all types associated with an assignment.
      * 
-     * @param type
      * @param assignmentToken
      * @param criteria
+     * @param countTotal
+     * @param influx
      * @param database
      * @return
      * @throws SiteWhereException
      */
-    public static Query queryEventsOfTypeForAssignment(DeviceEventType type, String assignmentToken,
-	    ISearchCriteria criteria, String database) throws SiteWhereException {
-	return new Query("SELECT * FROM " + InfluxDbDeviceEvent.COLLECTION_EVENTS + " where type='" + type.name()
-		+ "' and " + InfluxDbDeviceEvent.EVENT_ASSIGNMENT + "='" + assignmentToken + "'"
-		+ buildDateRangeCriteria(criteria) + " GROUP BY " + EVENT_ASSIGNMENT + " ORDER BY time DESC"
-		+ buildPagingCriteria(criteria), database);
+    public static SearchResults<IDeviceEvent> searchAllByAssignment(String assignmentToken, ISearchCriteria criteria,
+	    boolean countTotal, InfluxDB influx, String database) throws SiteWhereException {
+	return search(tagFilter(EVENT_ASSIGNMENT, assignmentToken), criteria, countTotal, influx, database,
+		IDeviceEvent.class);
     }
 
     /**
-     * Get a query for counting events of a given type associated with an
-     * assignment and that meet the search criteria.
+     * Search for events of a given type associated with any of a list of
+     * assignments.
      * 
+     * @param assignmentTokens
      * @param type
-     * @param assignmentToken
      * @param criteria
+     * @param countTotal
+     * @param influx
      * @param database
+     * @param clazz
      * @return
      * @throws SiteWhereException
      */
-    public static Query queryEventsOfTypeForAssignmentCount(DeviceEventType type, String assignmentToken,
-	    ISearchCriteria criteria, String database) throws SiteWhereException {
-	return new Query("SELECT count(" + EVENT_ID + ") FROM " + InfluxDbDeviceEvent.COLLECTION_EVENTS
-		+ " where type='" + type.name() + "' and " + InfluxDbDeviceEvent.EVENT_ASSIGNMENT + "='"
-		+ assignmentToken + "'" + buildDateRangeCriteria(criteria) + " GROUP BY " + EVENT_ASSIGNMENT, database);
+    public static <T> SearchResults<T> searchByAssignments(List<String> assignmentTokens, DeviceEventType type,
+	    ISearchCriteria criteria, boolean countTotal, InfluxDB influx, String database, Class<T> clazz)
+	    throws SiteWhereException {
+	if ((assignmentTokens == null) || (assignmentTokens.isEmpty())) {
+	    return new SearchResults<T>(new ArrayList<T>(), 0);
+	}
+	String assignments = "";
+	for (String token : assignmentTokens) {
+	    assignments += ((assignments.length() > 0) ? " or " : "") + tagFilter(EVENT_ASSIGNMENT, token);
+	}
+	return search(typeFilter(type) + " and (" + assignments + ")", criteria, countTotal, influx, database, clazz);
     }
 
     /**
-     * Get a query for events of a given type associated with a site and meeting
-     * the search criteria.
+     * Search for events matching a filter. Time bounds and paging are handled
+     * by InfluxDB so that only the requested page is returned. If counting the
+     * total is disabled, one extra event is requested to detect whether more
+     * pages exist and the total is reported as the number of events through
+     * the current page plus one if more are available.
      * 
-     * @param type
-     * @param siteToken
+     * @param filter
      * @param criteria
+     * @param countTotal
+     * @param influx
      * @param database
+     * @param clazz
      * @return
      * @throws SiteWhereException
      */
-    public static Query queryEventsOfTypeForSite(DeviceEventType type, String siteToken, ISearchCriteria criteria,
-	    String database) throws SiteWhereException {
-	return new Query("SELECT * FROM " + COLLECTION_EVENTS + " where type='" + type.name() + "' and " + EVENT_SITE
-		+ "='" + siteToken + "'" + buildDateRangeCriteria(criteria) + " GROUP BY " + EVENT_SITE
-		+ " ORDER BY time DESC" + buildPagingCriteria(criteria), database);
+    public static <T> SearchResults<T> search(String filter, ISearchCriteria criteria, boolean countTotal,
+	    InfluxDB influx, String database, Class<T> clazz) throws SiteWhereException {
+	String where = " where " + filter + buildDateRangeCriteria(criteria);
+	boolean paged = (criteria != null) && (criteria.getPageSize() != null) && (criteria.getPageSize() > 0);
+	int pageSize = (paged) ? criteria.getPageSize() : 0;
+	int offset = (paged && (criteria.getPageNumber() != null)) ? (criteria.getPageNumber() - 1) * pageSize : 0;
+	int limit = (paged && !countTotal) ? pageSize + 1 : pageSize;
+
+	Query query = new Query("SELECT * FROM " + COLLECTION_EVENTS + where + " ORDER BY time DESC"
+		+ buildPagingCriteria(limit, offset), database);
+	LOGGER.debug("Query: " + query.getCommand());
+	QueryResult response = influx.query(query, TimeUnit.MILLISECONDS);
+	List<T> results = InfluxDbDeviceEvent.eventsOfType(response, clazz);
+
+	if (countTotal) {
+	    Query countQuery = new Query("SELECT count(" + EVENT_ID + ") FROM " + COLLECTION_EVENTS + where, database);
+	    LOGGER.debug("Count: " + countQuery.getCommand());
+	    return new SearchResults<T>(results, parseCount(influx.query(countQuery)));
+	}
+	long total = offset + results.size();
+	if (paged && (results.size() > pageSize)) {
+	    results = new ArrayList<T>(results.subList(0, pageSize));
+	}
+	return new SearchResults<T>(results, total);
     }
 
     /**
-     * Get a query for counting events of a given type associated with a site
-     * and meeting the search criteria.
+     * Get filter clause for an event type.
      * 
      * @param type
-     * @param siteToken
-     * @param criteria
-     * @param database
      * @return
-     * @throws SiteWhereException
      */
-    public static Query queryEventsOfTypeForSiteCount(DeviceEventType type, String siteToken, ISearchCriteria criteria,
-	    String database) throws SiteWhereException {
-	return new Query("SELECT count(" + EVENT_ID + ") FROM " + COLLECTION_EVENTS + " where type='" + type.name()
-		+ "' and " + EVENT_SITE + "='" + siteToken + "'" + buildDateRangeCriteria(criteria) + " GROUP BY "
-		+ EVENT_SITE, database);
+    protected static String typeFilter(DeviceEventType type) {
+	return tagFilter(EVENT_TYPE, type.name());
     }
 
     /**
-     * Build search criteria clause.
+     * Get filter clause for a tag value.
      * 
-     * @param criteria
+     * @param tag
+     * @param value
+     * @return
+     */
+    protected static String tagFilter(String tag, String value) {
+	return tag + "='" + value.replace("'", "\\'") + "'";
+    }
+
+    /**
+     * Build paging clause.
+     * 
+     * @param limit
+     * @param offset
      * @return
-     * @throws SiteWhereException
      */
-    protected static String buildPagingCriteria(ISearchCriteria criteria) throws SiteWhereException {
-	if (criteria == null) {
+    protected static String buildPagingCriteria(int limit, int offset) {
+	if (limit <= 0) {
 	    return "";
 	}
-	String clause = " ";
-	if (criteria.getPageSize() != null) {
-	    clause += " LIMIT " + criteria.getPageSize();
-	}
-	if (criteria.getPageNumber() != null) {
-	    clause += " OFFSET " + ((criteria.getPageNumber() - 1) * criteria.getPageSize());
-	}
-	return clause;
+	return " LIMIT " + limit + ((offset > 0) ? " OFFSET " + offset : "");
     }
 
     /**
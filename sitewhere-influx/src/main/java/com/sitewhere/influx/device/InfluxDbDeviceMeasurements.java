@@ -7,12 +7,27 @@
  */
 package com.sitewhere.influx.device;
 
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.influxdb.InfluxDB;
 import org.influxdb.dto.Point;
+import org.influxdb.dto.Query;
+import org.influxdb.dto.QueryResult;
+import org.influxdb.dto.QueryResult.Result;
+import org.influxdb.dto.QueryResult.Series;
 
+import com.sitewhere.device.charting.ChartDownsampler;
+import com.sitewhere.device.charting.ChartSeriesCollector;
 import com.sitewhere.rest.model.device.event.DeviceMeasurements;
 import com.sitewhere.spi.SiteWhereException;
+import com.sitewhere.spi.device.charting.ChartAggregation;
+import com.sitewhere.spi.device.charting.ISampledChartSeries;
+import com.sitewhere.spi.device.event.DeviceEventType;
+import com.sitewhere.spi.search.device.IChartSeriesSearchCriteria;
 
 /**
  * Class for saving device measurements data to InfluxDB.
@@ -21,9 +36,15 @@ import com.sitewhere.spi.SiteWhereException;
  */
 public class InfluxDbDeviceMeasurements {
 
+    /** Static logger instance */
+    private static Logger LOGGER = LogManager.getLogger();
+
     /** Measurement name tag prefix */
     public static final String MEASUREMENT_PREFIX = "mx:";
 
+    /** Separates aggregation and measurement id in chart query column aliases */
+    private static final String ALIAS_SEPARATOR = ":";
+
     /**
      * Parse domain object from a value map.
      * 
@@ -69,4 +90,123 @@ public class InfluxDbDeviceMeasurements {
 	}
 	InfluxDbDeviceEvent.saveToBuilder(event, builder);
     }
+
+    /**
+     * Get measurements for an assignment as downsampled chart series. When
+     * measurement ids are given and the bucket width is known up front,
+     * buckets are calculated by InfluxDB with <code>GROUP BY time()</code>.
+     * Otherwise raw values are read and downsampled in memory.
+     * 
+     * @param assignmentToken
+     * @param criteria
+     * @param influx
+     * @param database
+     * @return
+     * @throws SiteWhereException
+     */
+    public static List<ISampledChartSeries> listSeries(String assignmentToken, IChartSeriesSearchCriteria criteria,
+	    InfluxDB influx, String database) throws SiteWhereException {
+	List<ChartAggregation> aggregations = ChartDownsampler.getAggregations(criteria);
+	boolean hasIds = (criteria.getMeasurementIds() != null) && (!criteria.getMeasurementIds().isEmpty());
+	String where = " where type='" + DeviceEventType.Measurements.name() + "' and "
+		+ InfluxDbDeviceEvent.EVENT_ASSIGNMENT + "='" + assignmentToken + "'"
+		+ InfluxDbDeviceEvent.buildDateRangeCriteria(criteria);
+
+	if (hasIds && !aggregations.contains(ChartAggregation.Lttb) && ChartDownsampler.isBucketWidthFixed(criteria)) {
+	    long width = ChartDownsampler.getBucketWidth(criteria, 0, 0);
+	    String select = "";
+	    for (String measurementId : criteria.getMeasurementIds()) {
+		for (ChartAggregation aggregation : aggregations) {
+		    select += (select.length() > 0) ? ", " : "";
+		    select += getAggregationFunction(aggregation) + "(\"" + MEASUREMENT_PREFIX + measurementId + "\") AS \""
+			    + aggregation.name() + ALIAS_SEPARATOR + measurementId + "\"";
+		}
+	    }
+	    Query query = new Query("SELECT " + select + " FROM " + InfluxDbDeviceEvent.COLLECTION_EVENTS + where
+		    + " GROUP BY time(" + width + "ms) fill(none)", database);
+	    LOGGER.debug("Query: " + query.getCommand());
+	    QueryResult response = influx.query(query, TimeUnit.MILLISECONDS);
+	    InfluxDbDeviceEvent.handleError(response);
+
+	    ChartSeriesCollector collector = new ChartSeriesCollector();
+	    for (Result result : response.getResults()) {
+		if (result.getSeries() != null) {
+		    for (Series series : result.getSeries()) {
+			List<String> columns = series.getColumns();
+			for (List<Object> values : series.getValues()) {
+			    long timestamp = ((Number) values.get(columns.indexOf("time"))).longValue();
+			    for (int i = 0; i < columns.size(); i++) {
+				String column = columns.get(i);
+				int separator = column.indexOf(ALIAS_SEPARATOR);
+				if ((separator < 0) || !(values.get(i) instanceof Number)) {
+				    continue;
+				}
+				ChartAggregation aggregation = ChartAggregation.valueOf(column.substring(0, separator));
+				collector.add(column.substring(separator + 1), aggregation, timestamp,
+					((Number) values.get(i)).doubleValue());
+			    }
+			}
+		    }
+		}
+	    }
+	    return collector.build();
+	}
+
+	// Read raw values and downsample in memory.
+	String fields = "/^" + MEASUREMENT_PREFIX + "/";
+	if (hasIds) {
+	    fields = "";
+	    for (String measurementId : criteria.getMeasurementIds()) {
+		fields += ((fields.length() > 0) ? ", " : "") + "\"" + MEASUREMENT_PREFIX + measurementId + "\"";
+	    }
+	}
+	Query query = new Query("SELECT " + fields + " FROM " + InfluxDbDeviceEvent.COLLECTION_EVENTS + where,
+		database);
+	LOGGER.debug("Query: " + query.getCommand());
+	QueryResult response = influx.query(query, TimeUnit.MILLISECONDS);
+	InfluxDbDeviceEvent.handleError(response);
+
+	ChartDownsampler downsampler = new ChartDownsampler(criteria);
+	for (Result result : response.getResults()) {
+	    if (result.getSeries() != null) {
+		for (Series series : result.getSeries()) {
+		    List<String> columns = series.getColumns();
+		    for (List<Object> values : series.getValues()) {
+			long timestamp = ((Number) values.get(columns.indexOf("time"))).longValue();
+			for (int i = 0; i < columns.size(); i++) {
+			    String column = columns.get(i);
+			    if (column.startsWith(MEASUREMENT_PREFIX) && (values.get(i) instanceof Number)) {
+				downsampler.add(column.substring(MEASUREMENT_PREFIX.length()), timestamp,
+					((Number) values.get(i)).doubleValue());
+			    }
+			}
+		    }
+		}
+	    }
+	}
+	return downsampler.build();
+    }
+
+    /**
+     * Get the InfluxQL function for a chart aggregation.
+     * 
+     * @param aggregation
+     * @return
+     */
+    protected static String getAggregationFunction(ChartAggregation aggregation) {
+	switch (aggregation) {
+	case Min: {
+	    return "MIN";
+	}
+	case Max: {
+	    return "MAX";
+	}
+	case Last: {
+	    return "LAST";
+	}
+	default: {
+	    return "MEAN";
+	}
+	}
+    }
 }
\ No newline at end of file
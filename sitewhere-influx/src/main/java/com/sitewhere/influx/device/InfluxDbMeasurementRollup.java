@@ -0,0 +1,208 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.influx.device;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.influxdb.InfluxDB;
+import org.influxdb.dto.BatchPoints;
+import org.influxdb.dto.Point;
+import org.influxdb.dto.Query;
+import org.influxdb.dto.QueryResult;
+import org.influxdb.dto.QueryResult.Result;
+import org.influxdb.dto.QueryResult.Series;
+import org.joda.time.format.ISODateTimeFormat;
+
+import com.sitewhere.rest.model.device.event.rollup.MeasurementRollup;
+import com.sitewhere.rest.model.search.Pager;
+import com.sitewhere.rest.model.search.SearchResults;
+import com.sitewhere.spi.SiteWhereException;
+import com.sitewhere.spi.device.event.rollup.IMeasurementRollup;
+import com.sitewhere.spi.device.event.rollup.RollupResolution;
+import com.sitewhere.spi.search.IDateRangeSearchCriteria;
+import com.sitewhere.spi.search.ISearchResults;
+
+/**
+ * Handles storage of measurement rollups in InfluxDB. Points can not be
+ * updated in place, so each flush is written as a delta point stamped with the
+ * date of its most recent value. Queries combine the deltas for each bucket
+ * with a GROUP BY on the rollup interval.
+ * 
+ * InfluxDB overwrites points that share a series and timestamp, so each delta
+ * is tagged with an id for the writing process and offset by a sequence number
+ * within its millisecond. Deltas from separate flushes then never collide even
+ * when they end on the same measurement date.
+ * 
+ * @author Derek
+ */
+public class InfluxDbMeasurementRollup {
+
+    /** Static logger instance */
+    private static Logger LOGGER = LogManager.getLogger();
+
+    /** Collection for rollups */
+    public static final String COLLECTION_ROLLUPS = "rollups";
+
+    /** Tag for assignment token */
+    public static final String ROLLUP_ASSIGNMENT = "assignment";
+
+    /** Tag for measurement id */
+    public static final String ROLLUP_MEASUREMENT_ID = "mxid";
+
+    /** Tag for rollup interval */
+    public static final String ROLLUP_INTERVAL = "interval";
+
+    /** Tag for process that wrote the delta */
+    public static final String ROLLUP_WRITER = "writer";
+
+    /** Field for value count */
+    public static final String ROLLUP_COUNT = "count";
+
+    /** Field for smallest value */
+    public static final String ROLLUP_MIN = "min";
+
+    /** Field for largest value */
+    public static final String ROLLUP_MAX = "max";
+
+    /** Field for sum of values */
+    public static final String ROLLUP_SUM = "sum";
+
+    /** Field for most recent value */
+    public static final String ROLLUP_LAST = "last";
+
+    /** Nanoseconds in a millisecond */
+    private static final long NANOS_PER_MILLI = 1000000;
+
+    /** Identifies deltas written by this process */
+    private static final String WRITER_ID = UUID.randomUUID().toString();
+
+    /** Sequence used to keep delta timestamps unique */
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+
+    /** Orders rollups by bucket then measurement id */
+    private static final Comparator<IMeasurementRollup> BUCKET_ORDER = new Comparator<IMeasurementRollup>() {
+
+	@Override
+	public int compare(IMeasurementRollup a, IMeasurementRollup b) {
+	    int result = a.getBucketStart().compareTo(b.getBucketStart());
+	    return (result != 0) ? result : a.getMeasurementId().compareTo(b.getMeasurementId());
+	}
+    };
+
+    /**
+     * Write rollup deltas as a single batch.
+     * 
+     * @param rollups
+     * @param influx
+     * @param database
+     * @param retention
+     * @throws SiteWhereException
+     */
+    public static void addMeasurementRollups(List<IMeasurementRollup> rollups, InfluxDB influx, String database,
+	    String retention) throws SiteWhereException {
+	BatchPoints batch = BatchPoints.database(database).retentionPolicy(retention).build();
+	for (IMeasurementRollup rollup : rollups) {
+	    if ((rollup.getCount() == 0) || (rollup.getLastDate() == null)) {
+		continue;
+	    }
+	    long offset = SEQUENCE.getAndIncrement() % NANOS_PER_MILLI;
+	    batch.point(Point.measurement(COLLECTION_ROLLUPS)
+		    .time((rollup.getLastDate().getTime() * NANOS_PER_MILLI) + offset, TimeUnit.NANOSECONDS)
+		    .tag(ROLLUP_WRITER, WRITER_ID).tag(ROLLUP_ASSIGNMENT, rollup.getAssignmentToken())
+		    .tag(ROLLUP_MEASUREMENT_ID, rollup.getMeasurementId())
+		    .tag(ROLLUP_INTERVAL, String.valueOf(rollup.getIntervalMs())).addField(ROLLUP_COUNT, rollup.getCount())
+		    .addField(ROLLUP_MIN, rollup.getMin()).addField(ROLLUP_MAX, rollup.getMax())
+		    .addField(ROLLUP_SUM, rollup.getSum()).addField(ROLLUP_LAST, rollup.getLast()).build());
+	}
+	if (!batch.getPoints().isEmpty()) {
+	    influx.write(batch);
+	}
+    }
+
+    /**
+     * List rollups for an assignment at the given resolution.
+     * 
+     * @param assignmentToken
+     * @param resolution
+     * @param criteria
+     * @param influx
+     * @param database
+     * @return
+     * @throws SiteWhereException
+     */
+    public static ISearchResults<IMeasurementRollup> listMeasurementRollups(String assignmentToken,
+	    RollupResolution resolution, IDateRangeSearchCriteria criteria, InfluxDB influx, String database)
+	    throws SiteWhereException {
+	String where = " where " + ROLLUP_ASSIGNMENT + "='" + assignmentToken + "' and " + ROLLUP_INTERVAL + "='"
+		+ resolution.getIntervalMs() + "'";
+	if (criteria.getStartDate() != null) {
+	    long start = resolution.getBucketStart(criteria.getStartDate().getTime());
+	    where += " and time >= '" + ISODateTimeFormat.dateTime().print(start) + "'";
+	}
+	if (criteria.getEndDate() != null) {
+	    where += " and time <= '" + ISODateTimeFormat.dateTime().print(criteria.getEndDate().getTime()) + "'";
+	}
+	Query query = new Query("SELECT SUM(\"" + ROLLUP_COUNT + "\") AS count, MIN(\"" + ROLLUP_MIN
+		+ "\") AS min, MAX(\"" + ROLLUP_MAX + "\") AS max, SUM(\"" + ROLLUP_SUM + "\") AS sum, LAST(\""
+		+ ROLLUP_LAST + "\") AS last FROM " + COLLECTION_ROLLUPS + where + " GROUP BY time("
+		+ resolution.getIntervalMs() + "ms), " + ROLLUP_MEASUREMENT_ID + " fill(none)", database);
+	LOGGER.debug("Query: " + query.getCommand());
+	QueryResult response = influx.query(query, TimeUnit.MILLISECONDS);
+	InfluxDbDeviceEvent.handleError(response);
+
+	List<IMeasurementRollup> matches = new ArrayList<IMeasurementRollup>();
+	for (Result result : response.getResults()) {
+	    if (result.getSeries() != null) {
+		for (Series series : result.getSeries()) {
+		    String measurementId = series.getTags().get(ROLLUP_MEASUREMENT_ID);
+		    List<String> columns = series.getColumns();
+		    for (List<Object> values : series.getValues()) {
+			long time = ((Number) values.get(columns.indexOf("time"))).longValue();
+			MeasurementRollup rollup = new MeasurementRollup(assignmentToken, measurementId,
+				resolution.getIntervalMs(), new Date(time));
+			rollup.setCount(getNumber(values, columns, "count").longValue());
+			rollup.setMin(getNumber(values, columns, "min").doubleValue());
+			rollup.setMax(getNumber(values, columns, "max").doubleValue());
+			rollup.setSum(getNumber(values, columns, "sum").doubleValue());
+			rollup.setLast(getNumber(values, columns, "last").doubleValue());
+			matches.add(rollup);
+		    }
+		}
+	    }
+	}
+	Collections.sort(matches, BUCKET_ORDER);
+	Pager<IMeasurementRollup> pager = new Pager<IMeasurementRollup>(criteria);
+	for (IMeasurementRollup match : matches) {
+	    pager.process(match);
+	}
+	return new SearchResults<IMeasurementRollup>(pager.getResults(), pager.getTotal());
+    }
+
+    /**
+     * Get a numeric column value, treating missing values as zero.
+     * 
+     * @param values
+     * @param columns
+     * @param column
+     * @return
+     */
+    protected static Number getNumber(List<Object> values, List<String> columns, String column) {
+	int index = columns.indexOf(column);
+	Object value = (index >= 0) ? values.get(index) : null;
+	return (value instanceof Number) ? (Number) value : 0;
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.memory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+
+import com.sitewhere.rest.model.search.Pager;
+import com.sitewhere.rest.model.search.SearchResults;
+import com.sitewhere.spi.SiteWhereException;
+import com.sitewhere.spi.SiteWhereSystemException;
+import com.sitewhere.spi.common.ISiteWhereEntity;
+import com.sitewhere.spi.error.ErrorCode;
+import com.sitewhere.spi.error.ErrorLevel;
+import com.sitewhere.spi.error.ResourceExistsException;
+import com.sitewhere.spi.search.IDateRangeSearchCriteria;
+import com.sitewhere.spi.search.ISearchCriteria;
+
+/**
+ * Common functionality shared by the in-memory datastore implementations.
+ * 
+ * @author Derek
+ */
+public class MemoryPersistence {
+
+    /** Sorts entities with most recently created first */
+    @SuppressWarnings("rawtypes")
+    public static final Comparator CREATED_DATE_DESCENDING = new Comparator<ISiteWhereEntity>() {
+
+	@Override
+	public int compare(ISiteWhereEntity first, ISiteWhereEntity second) {
+	    return compareDates(second.getCreatedDate(), first.getCreatedDate());
+	}
+    };
+
+    /**
+     * Store a new entity, failing if an entity already exists with the same
+     * key.
+     * 
+     * @param map
+     * @param key
+     * @param value
+     * @param ifExists
+     * @throws SiteWhereException
+     */
+    public static <K, V> void insert(ConcurrentMap<K, V> map, K key, V value, ErrorCode ifExists)
+	    throws SiteWhereException {
+	if (map.putIfAbsent(key, value) != null) {
+	    throw new ResourceExistsException(ifExists);
+	}
+    }
+
+    /**
+     * Get an entity or throw an exception with the given error code if not
+     * found.
+     * 
+     * @param map
+     * @param key
+     * @param ifMissing
+     * @return
+     * @throws SiteWhereException
+     */
+    public static <K, V> V assertExists(ConcurrentMap<K, V> map, K key, ErrorCode ifMissing)
+	    throws SiteWhereException {
+	V value = (key != null) ? map.get(key) : null;
+	if (value == null) {
+	    throw new SiteWhereSystemException(ifMissing, ErrorLevel.ERROR);
+	}
+	return value;
+    }
+
+    /**
+     * Sort a collection of matches and return the page requested by the search
+     * criteria.
+     * 
+     * @param matches
+     * @param sort
+     * @param criteria
+     * @return
+     */
+    public static <T> SearchResults<T> search(Collection<? extends T> matches, Comparator<? super T> sort,
+	    ISearchCriteria criteria) {
+	List<T> sorted = new ArrayList<T>(matches);
+	if (sort != null) {
+	    Collections.sort(sorted, sort);
+	}
+	if (criteria == null) {
+	    return new SearchResults<T>(sorted);
+	}
+	Pager<T> pager = new Pager<T>(criteria);
+	for (T match : sorted) {
+	    pager.process(match);
+	}
+	return new SearchResults<T>(pager.getResults(), pager.getTotal());
+    }
+
+    /**
+     * Sort a collection of matches and return all of them.
+     * 
+     * @param matches
+     * @param sort
+     * @return
+     */
+    public static <T> List<T> list(Collection<? extends T> matches, Comparator<? super T> sort) {
+	List<T> sorted = new ArrayList<T>(matches);
+	if (sort != null) {
+	    Collections.sort(sorted, sort);
+	}
+	return sorted;
+    }
+
+    /**
+     * Indicates whether a date falls within the range specified in search
+     * criteria. Both ends of the range are inclusive.
+     * 
+     * @param date
+     * @param criteria
+     * @return
+     */
+    public static boolean isInDateRange(Date date, IDateRangeSearchCriteria criteria) {
+	if ((criteria.getStartDate() == null) && (criteria.getEndDate() == null)) {
+	    return true;
+	}
+	if (date == null) {
+	    return false;
+	}
+	if ((criteria.getStartDate() != null) && (date.before(criteria.getStartDate()))) {
+	    return false;
+	}
+	if ((criteria.getEndDate() != null) && (date.after(criteria.getEndDate()))) {
+	    return false;
+	}
+	return true;
+    }
+
+    /**
+     * Compare dates with null values sorting first.
+     * 
+     * @param first
+     * @param second
+     * @return
+     */
+    public static int compareDates(Date first, Date second) {
+	if (first == null) {
+	    return (second == null) ? 0 : -1;
+	}
+	if (second == null) {
+	    return 1;
+	}
+	return first.compareTo(second);
+    }
+}
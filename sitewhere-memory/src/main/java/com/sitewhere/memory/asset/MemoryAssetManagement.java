@@ -0,0 +1,348 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.memory.asset;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.sitewhere.core.SiteWherePersistence;
+import com.sitewhere.memory.MemoryPersistence;
+import com.sitewhere.rest.model.asset.Asset;
+import com.sitewhere.rest.model.asset.AssetCategory;
+import com.sitewhere.rest.model.asset.HardwareAsset;
+import com.sitewhere.rest.model.asset.LocationAsset;
+import com.sitewhere.rest.model.asset.PersonAsset;
+import com.sitewhere.server.lifecycle.TenantLifecycleComponent;
+import com.sitewhere.spi.SiteWhereException;
+import com.sitewhere.spi.asset.IAsset;
+import com.sitewhere.spi.asset.IAssetCategory;
+import com.sitewhere.spi.asset.IAssetManagement;
+import com.sitewhere.spi.asset.IHardwareAsset;
+import com.sitewhere.spi.asset.ILocationAsset;
+import com.sitewhere.spi.asset.IPersonAsset;
+import com.sitewhere.spi.asset.request.IAssetCategoryCreateRequest;
+import com.sitewhere.spi.asset.request.IHardwareAssetCreateRequest;
+import com.sitewhere.spi.asset.request.ILocationAssetCreateRequest;
+import com.sitewhere.spi.asset.request.IPersonAssetCreateRequest;
+import com.sitewhere.spi.error.ErrorCode;
+import com.sitewhere.spi.search.ISearchCriteria;
+import com.sitewhere.spi.search.ISearchResults;
+import com.sitewhere.spi.server.lifecycle.LifecycleComponentType;
+
+/**
+ * Asset management implementation that keeps all data in memory. Assets are
+ * held in a map per asset category. Data is not retained when the tenant is
+ * stopped.
+ * 
+ * @author Derek
+ */
+public class MemoryAssetManagement extends TenantLifecycleComponent implements IAssetManagement {
+
+    /** Static logger instance */
+    private static Logger LOGGER = LogManager.getLogger();
+
+    /** Sorts asset categories by name, then asset type */
+    private static final Comparator<IAssetCategory> CATEGORY_NAME_ASCENDING = new Comparator<IAssetCategory>() {
+
+	@Override
+	public int compare(IAssetCategory first, IAssetCategory second) {
+	    int result = StringUtils.defaultString(first.getName())
+		    .compareTo(StringUtils.defaultString(second.getName()));
+	    if ((result == 0) && (first.getAssetType() != null) && (second.getAssetType() != null)) {
+		result = first.getAssetType().compareTo(second.getAssetType());
+	    }
+	    return result;
+	}
+    };
+
+    /** Sorts assets by name */
+    private static final Comparator<IAsset> ASSET_NAME_ASCENDING = new Comparator<IAsset>() {
+
+	@Override
+	public int compare(IAsset first, IAsset second) {
+	    return StringUtils.defaultString(first.getName()).compareTo(StringUtils.defaultString(second.getName()));
+	}
+    };
+
+    /** Asset categories by id */
+    private ConcurrentMap<String, AssetCategory> categories = new ConcurrentHashMap<String, AssetCategory>();
+
+    /** Assets indexed by category id, then asset id */
+    private ConcurrentMap<String, ConcurrentMap<String, Asset>> assets = new ConcurrentHashMap<String, ConcurrentMap<String, Asset>>();
+
+    public MemoryAssetManagement() {
+	super(LifecycleComponentType.DataStore);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.server.lifecycle.ILifecycleComponent#getLogger()
+     */
+    @Override
+    public Logger getLogger() {
+	return LOGGER;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.asset.IAssetManagement#createAssetCategory(com.sitewhere
+     * .spi.asset.request.IAssetCategoryCreateRequest)
+     */
+    @Override
+    public synchronized IAssetCategory createAssetCategory(IAssetCategoryCreateRequest request)
+	    throws SiteWhereException {
+	AssetCategory category = SiteWherePersistence.assetCategoryCreateLogic(request);
+	MemoryPersistence.insert(categories, category.getId(), category, ErrorCode.AssetCategoryIdInUse);
+	assets.putIfAbsent(category.getId(), new ConcurrentHashMap<String, Asset>());
+	return category;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.asset.IAssetManagement#getAssetCategory(java.lang.String)
+     */
+    @Override
+    public IAssetCategory getAssetCategory(String categoryId) throws SiteWhereException {
+	return categories.get(categoryId);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.asset.IAssetManagement#updateAssetCategory(java.lang.
+     * String, com.sitewhere.spi.asset.request.IAssetCategoryCreateRequest)
+     */
+    @Override
+    public synchronized IAssetCategory updateAssetCategory(String categoryId, IAssetCategoryCreateRequest request)
+	    throws SiteWhereException {
+	AssetCategory category = MemoryPersistence.assertExists(categories, categoryId,
+		ErrorCode.InvalidAssetCategoryId);
+	SiteWherePersistence.assetCategoryUpdateLogic(request, category);
+	return category;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.asset.IAssetManagement#listAssetCategories(com.sitewhere
+     * .spi.search.ISearchCriteria)
+     */
+    @Override
+    public ISearchResults<IAssetCategory> listAssetCategories(ISearchCriteria criteria) throws SiteWhereException {
+	List<IAssetCategory> matches = new ArrayList<IAssetCategory>(categories.values());
+	return MemoryPersistence.search(matches, CATEGORY_NAME_ASCENDING, criteria);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.asset.IAssetManagement#deleteAssetCategory(java.lang.
+     * String)
+     */
+    @Override
+    public synchronized IAssetCategory deleteAssetCategory(String categoryId) throws SiteWhereException {
+	AssetCategory category = MemoryPersistence.assertExists(categories, categoryId,
+		ErrorCode.InvalidAssetCategoryId);
+	categories.remove(categoryId);
+	return category;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.asset.IAssetManagement#createPersonAsset(java.lang.
+     * String, com.sitewhere.spi.asset.request.IPersonAssetCreateRequest)
+     */
+    @Override
+    public IPersonAsset createPersonAsset(String categoryId, IPersonAssetCreateRequest request)
+	    throws SiteWhereException {
+	IAssetCategory category = assertAssetCategory(categoryId);
+	PersonAsset person = SiteWherePersistence.personAssetCreateLogic(category, request);
+	MemoryPersistence.insert(getAssets(categoryId), person.getId(), person, ErrorCode.AssetIdInUse);
+	return person;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.asset.IAssetManagement#updatePersonAsset(java.lang.
+     * String, java.lang.String,
+     * com.sitewhere.spi.asset.request.IPersonAssetCreateRequest)
+     */
+    @Override
+    public synchronized IPersonAsset updatePersonAsset(String categoryId, String assetId,
+	    IPersonAssetCreateRequest request) throws SiteWhereException {
+	PersonAsset person = (PersonAsset) assertAsset(categoryId, assetId);
+	SiteWherePersistence.personAssetUpdateLogic(person, request);
+	return person;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.asset.IAssetManagement#createHardwareAsset(java.lang.
+     * String, com.sitewhere.spi.asset.request.IHardwareAssetCreateRequest)
+     */
+    @Override
+    public IHardwareAsset createHardwareAsset(String categoryId, IHardwareAssetCreateRequest request)
+	    throws SiteWhereException {
+	IAssetCategory category = assertAssetCategory(categoryId);
+	HardwareAsset hardware = SiteWherePersistence.hardwareAssetCreateLogic(category, request);
+	MemoryPersistence.insert(getAssets(categoryId), hardware.getId(), hardware, ErrorCode.AssetIdInUse);
+	return hardware;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.asset.IAssetManagement#updateHardwareAsset(java.lang.
+     * String, java.lang.String,
+     * com.sitewhere.spi.asset.request.IHardwareAssetCreateRequest)
+     */
+    @Override
+    public synchronized IHardwareAsset updateHardwareAsset(String categoryId, String assetId,
+	    IHardwareAssetCreateRequest request) throws SiteWhereException {
+	HardwareAsset hardware = (HardwareAsset) assertAsset(categoryId, assetId);
+	SiteWherePersistence.hardwareAssetUpdateLogic(hardware, request);
+	return hardware;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.asset.IAssetManagement#createLocationAsset(java.lang.
+     * String, com.sitewhere.spi.asset.request.ILocationAssetCreateRequest)
+     */
+    @Override
+    public ILocationAsset createLocationAsset(String categoryId, ILocationAssetCreateRequest request)
+	    throws SiteWhereException {
+	IAssetCategory category = assertAssetCategory(categoryId);
+	LocationAsset location = SiteWherePersistence.locationAssetCreateLogic(category, request);
+	MemoryPersistence.insert(getAssets(categoryId), location.getId(), location, ErrorCode.AssetIdInUse);
+	return location;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.asset.IAssetManagement#updateLocationAsset(java.lang.
+     * String, java.lang.String,
+     * com.sitewhere.spi.asset.request.ILocationAssetCreateRequest)
+     */
+    @Override
+    public synchronized ILocationAsset updateLocationAsset(String categoryId, String assetId,
+	    ILocationAssetCreateRequest request) throws SiteWhereException {
+	LocationAsset location = (LocationAsset) assertAsset(categoryId, assetId);
+	SiteWherePersistence.locationAssetUpdateLogic(location, request);
+	return location;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.asset.IAssetManagement#getAsset(java.lang.String,
+     * java.lang.String)
+     */
+    @Override
+    public IAsset getAsset(String categoryId, String assetId) throws SiteWhereException {
+	ConcurrentMap<String, Asset> forCategory = assets.get(categoryId);
+	return (forCategory != null) ? forCategory.get(assetId) : null;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.asset.IAssetManagement#deleteAsset(java.lang.String,
+     * java.lang.String)
+     */
+    @Override
+    public synchronized IAsset deleteAsset(String categoryId, String assetId) throws SiteWhereException {
+	Asset asset = assertAsset(categoryId, assetId);
+	assets.get(categoryId).remove(assetId);
+	return asset;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.asset.IAssetManagement#listAssets(java.lang.String,
+     * com.sitewhere.spi.search.ISearchCriteria)
+     */
+    @Override
+    public ISearchResults<IAsset> listAssets(String categoryId, ISearchCriteria criteria) throws SiteWhereException {
+	ConcurrentMap<String, Asset> forCategory = assets.get(categoryId);
+	List<IAsset> matches = new ArrayList<IAsset>();
+	if (forCategory != null) {
+	    matches.addAll(forCategory.values());
+	}
+	return MemoryPersistence.search(matches, ASSET_NAME_ASCENDING, criteria);
+    }
+
+    /**
+     * Get the assets map for a category, creating it if it does not exist.
+     * 
+     * @param categoryId
+     * @return
+     */
+    protected ConcurrentMap<String, Asset> getAssets(String categoryId) {
+	ConcurrentMap<String, Asset> forCategory = assets.get(categoryId);
+	if (forCategory == null) {
+	    ConcurrentMap<String, Asset> created = new ConcurrentHashMap<String, Asset>();
+	    forCategory = assets.putIfAbsent(categoryId, created);
+	    if (forCategory == null) {
+		forCategory = created;
+	    }
+	}
+	return forCategory;
+    }
+
+    /**
+     * Get an asset category or throw an exception if not found.
+     * 
+     * @param categoryId
+     * @return
+     * @throws SiteWhereException
+     */
+    protected AssetCategory assertAssetCategory(String categoryId) throws SiteWhereException {
+	return MemoryPersistence.assertExists(categories, categoryId, ErrorCode.InvalidAssetCategoryId);
+    }
+
+    /**
+     * Get an asset or throw an exception if not found.
+     * 
+     * @param categoryId
+     * @param assetId
+     * @return
+     * @throws SiteWhereException
+     */
+    protected Asset assertAsset(String categoryId, String assetId) throws SiteWhereException {
+	return MemoryPersistence.assertExists(getAssets(categoryId), assetId, ErrorCode.InvalidAssetId);
+    }
+}
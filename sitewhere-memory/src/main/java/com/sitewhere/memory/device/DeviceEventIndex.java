@@ -0,0 +1,309 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.memory.device;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sitewhere.rest.model.search.SearchResults;
+import com.sitewhere.spi.device.event.IDeviceEvent;
+import com.sitewhere.spi.search.IDateRangeSearchCriteria;
+
+/**
+ * Time-ordered log of device events. Events are kept newest first so that the
+ * common case of paging through recent events only touches the head of the
+ * log.
+ * 
+ * @author Derek
+ */
+public class DeviceEventIndex {
+
+    /** Events ordered by event date, newest first */
+    private ConcurrentSkipListMap<Key, IDeviceEvent> events = new ConcurrentSkipListMap<Key, IDeviceEvent>();
+
+    /** Number of events in the index */
+    private AtomicInteger size = new AtomicInteger();
+
+    /**
+     * Add an event to the index.
+     * 
+     * @param key
+     * @param event
+     */
+    public void add(Key key, IDeviceEvent event) {
+	if (events.put(key, event) == null) {
+	    size.incrementAndGet();
+	}
+    }
+
+    /**
+     * Remove an event from the index.
+     * 
+     * @param key
+     * @return
+     */
+    public IDeviceEvent remove(Key key) {
+	IDeviceEvent removed = events.remove(key);
+	if (removed != null) {
+	    size.decrementAndGet();
+	}
+	return removed;
+    }
+
+    /**
+     * Remove and return the oldest event in the index.
+     * 
+     * @return
+     */
+    public Map.Entry<Key, IDeviceEvent> removeOldest() {
+	Map.Entry<Key, IDeviceEvent> oldest = events.pollLastEntry();
+	if (oldest != null) {
+	    size.decrementAndGet();
+	}
+	return oldest;
+    }
+
+    /**
+     * Get the number of events in the index.
+     * 
+     * @return
+     */
+    public int size() {
+	return size.get();
+    }
+
+    /**
+     * Get the events that fall within the date range of the given criteria.
+     * 
+     * @param criteria
+     * @return
+     */
+    public NavigableMap<Key, IDeviceEvent> getRange(IDateRangeSearchCriteria criteria) {
+	ConcurrentNavigableMap<Key, IDeviceEvent> range = events;
+	if (criteria.getEndDate() != null) {
+	    range = range.tailMap(Key.first(criteria.getEndDate()), true);
+	}
+	if (criteria.getStartDate() != null) {
+	    range = range.headMap(Key.last(criteria.getStartDate()), true);
+	}
+	return range;
+    }
+
+    /**
+     * Return a page of events matching the given criteria.
+     * 
+     * @param criteria
+     * @return
+     */
+    public <T extends IDeviceEvent> SearchResults<T> search(IDateRangeSearchCriteria criteria) {
+	List<DeviceEventIndex> single = new ArrayList<DeviceEventIndex>(1);
+	single.add(this);
+	return search(single, criteria);
+    }
+
+    /**
+     * Return a page of events matching the given criteria from a group of
+     * indexes. Indexes are merged in time order without copying them, so the
+     * cost is driven by the page requested rather than by the size of the
+     * logs.
+     * 
+     * @param indexes
+     * @param criteria
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    public static <T extends IDeviceEvent> SearchResults<T> search(List<DeviceEventIndex> indexes,
+	    IDateRangeSearchCriteria criteria) {
+	boolean unbounded = (criteria.getStartDate() == null) && (criteria.getEndDate() == null);
+	long toSkip = (criteria.getPageNumber() > 0) ? ((long) (criteria.getPageNumber() - 1) * criteria.getPageSize())
+		: 0;
+	int pageSize = criteria.getPageSize();
+
+	PriorityQueue<Cursor> cursors = new PriorityQueue<Cursor>(Math.max(1, indexes.size()));
+	long total = 0;
+	for (DeviceEventIndex index : indexes) {
+	    Cursor cursor = new Cursor(index.getRange(criteria).entrySet().iterator());
+	    if (cursor.advance()) {
+		cursors.add(cursor);
+	    }
+	    if (unbounded) {
+		total += index.size();
+	    }
+	}
+
+	List<T> results = new ArrayList<T>();
+	long visited = 0;
+	while (!cursors.isEmpty()) {
+	    boolean pageFull = (pageSize > 0) && (results.size() >= pageSize);
+	    if (pageFull && unbounded) {
+		break;
+	    }
+	    Cursor cursor = cursors.poll();
+	    visited++;
+	    if (toSkip > 0) {
+		toSkip--;
+	    } else if (!pageFull) {
+		results.add((T) cursor.current.getValue());
+	    }
+	    if (cursor.advance()) {
+		cursors.add(cursor);
+	    }
+	}
+	return new SearchResults<T>(results, unbounded ? total : visited);
+    }
+
+    /**
+     * Key that orders events newest first. Ties on event date are broken by
+     * received date and then by a sequence number unique to each event.
+     * 
+     * @author Derek
+     */
+    public static class Key implements Comparable<Key> {
+
+	/** Event date in ms */
+	private final long eventDate;
+
+	/** Received date in ms */
+	private final long receivedDate;
+
+	/** Unique sequence number */
+	private final long sequence;
+
+	public Key(long eventDate, long receivedDate, long sequence) {
+	    this.eventDate = eventDate;
+	    this.receivedDate = receivedDate;
+	    this.sequence = sequence;
+	}
+
+	/**
+	 * Create key for an event.
+	 * 
+	 * @param event
+	 * @param sequence
+	 * @return
+	 */
+	public static Key forEvent(IDeviceEvent event, long sequence) {
+	    long eventDate = (event.getEventDate() != null) ? event.getEventDate().getTime() : 0;
+	    long receivedDate = (event.getReceivedDate() != null) ? event.getReceivedDate().getTime() : 0;
+	    return new Key(eventDate, receivedDate, sequence);
+	}
+
+	/**
+	 * Key that sorts before all events on the given date.
+	 * 
+	 * @param date
+	 * @return
+	 */
+	public static Key first(Date date) {
+	    return new Key(date.getTime(), Long.MAX_VALUE, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Key that sorts after all events on the given date.
+	 * 
+	 * @param date
+	 * @return
+	 */
+	public static Key last(Date date) {
+	    return new Key(date.getTime(), Long.MIN_VALUE, Long.MIN_VALUE);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Comparable#compareTo(java.lang.Object)
+	 */
+	@Override
+	public int compareTo(Key other) {
+	    if (eventDate != other.eventDate) {
+		return (eventDate > other.eventDate) ? -1 : 1;
+	    }
+	    if (receivedDate != other.receivedDate) {
+		return (receivedDate > other.receivedDate) ? -1 : 1;
+	    }
+	    if (sequence != other.sequence) {
+		return (sequence > other.sequence) ? -1 : 1;
+	    }
+	    return 0;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Object#equals(java.lang.Object)
+	 */
+	@Override
+	public boolean equals(Object obj) {
+	    return (obj instanceof Key) && (compareTo((Key) obj) == 0);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Object#hashCode()
+	 */
+	@Override
+	public int hashCode() {
+	    return (int) (sequence ^ (sequence >>> 32));
+	}
+
+	public long getSequence() {
+	    return sequence;
+	}
+    }
+
+    /**
+     * Walks one index while merging several of them.
+     * 
+     * @author Derek
+     */
+    private static class Cursor implements Comparable<Cursor> {
+
+	/** Iterator over index entries */
+	private Iterator<Map.Entry<Key, IDeviceEvent>> iterator;
+
+	/** Current entry */
+	private Map.Entry<Key, IDeviceEvent> current;
+
+	public Cursor(Iterator<Map.Entry<Key, IDeviceEvent>> iterator) {
+	    this.iterator = iterator;
+	}
+
+	/**
+	 * Move to the next entry. Returns false if the index is exhausted.
+	 * 
+	 * @return
+	 */
+	public boolean advance() {
+	    if (iterator.hasNext()) {
+		current = iterator.next();
+		return true;
+	    }
+	    current = null;
+	    return false;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Comparable#compareTo(java.lang.Object)
+	 */
+	@Override
+	public int compareTo(Cursor other) {
+	    return current.getKey().compareTo(other.current.getKey());
+	}
+    }
+}
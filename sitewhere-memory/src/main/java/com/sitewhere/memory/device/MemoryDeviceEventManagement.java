@@ -0,0 +1,929 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.memory.device;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.sitewhere.core.SiteWherePersistence;
+import com.sitewhere.device.AssignmentStateManager;
+import com.sitewhere.device.charting.ChartDownsampler;
+import com.sitewhere.memory.MemoryPersistence;
+import com.sitewhere.rest.model.device.event.DeviceAlert;
+import com.sitewhere.rest.model.device.event.DeviceCommandInvocation;
+import com.sitewhere.rest.model.device.event.DeviceCommandResponse;
+import com.sitewhere.rest.model.device.event.DeviceEvent;
+import com.sitewhere.rest.model.device.event.DeviceEventBatchResponse;
+import com.sitewhere.rest.model.device.event.DeviceLocation;
+import com.sitewhere.rest.model.device.event.DeviceMeasurements;
+import com.sitewhere.rest.model.device.event.DeviceStateChange;
+import com.sitewhere.rest.model.device.event.DeviceStreamData;
+import com.sitewhere.rest.model.device.event.rollup.MeasurementRollup;
+import com.sitewhere.rest.model.search.DateRangeSearchCriteria;
+import com.sitewhere.rest.model.search.SearchResults;
+import com.sitewhere.server.lifecycle.TenantLifecycleComponent;
+import com.sitewhere.spi.SiteWhereException;
+import com.sitewhere.spi.SiteWhereSystemException;
+import com.sitewhere.spi.device.IAssignmentStateManager;
+import com.sitewhere.spi.device.IDeviceAssignment;
+import com.sitewhere.spi.device.IDeviceManagement;
+import com.sitewhere.spi.device.charting.ISampledChartSeries;
+import com.sitewhere.spi.device.command.IDeviceCommand;
+import com.sitewhere.spi.device.event.DeviceEventType;
+import com.sitewhere.spi.device.event.IDeviceAlert;
+import com.sitewhere.spi.device.event.IDeviceCommandInvocation;
+import com.sitewhere.spi.device.event.IDeviceCommandResponse;
+import com.sitewhere.spi.device.event.IDeviceEvent;
+import com.sitewhere.spi.device.event.IDeviceEventBatch;
+import com.sitewhere.spi.device.event.IDeviceEventBatchResponse;
+import com.sitewhere.spi.device.event.IDeviceEventManagement;
+import com.sitewhere.spi.device.event.IDeviceLocation;
+import com.sitewhere.spi.device.event.IDeviceMeasurements;
+import com.sitewhere.spi.device.event.IDeviceStateChange;
+import com.sitewhere.spi.device.event.IDeviceStreamData;
+import com.sitewhere.spi.device.event.request.IDeviceAlertCreateRequest;
+import com.sitewhere.spi.device.event.request.IDeviceCommandInvocationCreateRequest;
+import com.sitewhere.spi.device.event.request.IDeviceCommandResponseCreateRequest;
+import com.sitewhere.spi.device.event.request.IDeviceLocationCreateRequest;
+import com.sitewhere.spi.device.event.request.IDeviceMeasurementsCreateRequest;
+import com.sitewhere.spi.device.event.request.IDeviceStateChangeCreateRequest;
+import com.sitewhere.spi.device.event.request.IDeviceStreamDataCreateRequest;
+import com.sitewhere.spi.device.event.rollup.IMeasurementRollup;
+import com.sitewhere.spi.device.event.rollup.RollupResolution;
+import com.sitewhere.spi.error.ErrorCode;
+import com.sitewhere.spi.error.ErrorLevel;
+import com.sitewhere.spi.search.IDateRangeSearchCriteria;
+import com.sitewhere.spi.search.ISearchResults;
+import com.sitewhere.spi.search.device.IChartSeriesSearchCriteria;
+import com.sitewhere.spi.server.lifecycle.ILifecycleProgressMonitor;
+import com.sitewhere.spi.server.lifecycle.LifecycleComponentType;
+
+/**
+ * Device event management implementation that keeps events in memory. Each
+ * assignment has a time-ordered event log along with logs per event type for
+ * the assignment and for its site, so list operations only walk the events
+ * that are returned. Optionally limits the number of events retained per
+ * assignment so that it can serve as a hot tier for recent data.
+ * 
+ * @author Derek
+ */
+public class MemoryDeviceEventManagement extends TenantLifecycleComponent implements IDeviceEventManagement {
+
+    /** Static logger instance */
+    private static Logger LOGGER = LogManager.getLogger();
+
+    /** Injected device management implementation */
+    private IDeviceManagement deviceManagement;
+
+    /** Assignment state manager */
+    private IAssignmentStateManager assignmentStateManager;
+
+    /** Maximum number of events kept for each assignment (0 for no limit) */
+    private int maxEventsPerAssignment = 0;
+
+    /** Sequence used for event ids and ordering */
+    private AtomicLong sequence = new AtomicLong();
+
+    /** Events by id */
+    private ConcurrentMap<String, IDeviceEvent> eventsById = new ConcurrentHashMap<String, IDeviceEvent>();
+
+    /** All events indexed by assignment token */
+    private ConcurrentMap<String, DeviceEventIndex> byAssignment = new ConcurrentHashMap<String, DeviceEventIndex>();
+
+    /** Events indexed by assignment token and event type */
+    private ConcurrentMap<String, DeviceEventIndex> byAssignmentAndType = new ConcurrentHashMap<String, DeviceEventIndex>();
+
+    /** Events indexed by site token and event type */
+    private ConcurrentMap<String, DeviceEventIndex> bySiteAndType = new ConcurrentHashMap<String, DeviceEventIndex>();
+
+    /** Command responses indexed by originating invocation id */
+    private ConcurrentMap<String, DeviceEventIndex> responsesByInvocation = new ConcurrentHashMap<String, DeviceEventIndex>();
+
+    /** Stream data indexed by assignment token and stream id, then sequence */
+    private ConcurrentMap<String, ConcurrentSkipListMap<Long, IDeviceStreamData>> streamData = new ConcurrentHashMap<String, ConcurrentSkipListMap<Long, IDeviceStreamData>>();
+
+    /** Measurement rollups indexed by assignment and interval, then bucket */
+    private ConcurrentMap<String, ConcurrentSkipListMap<Long, Map<String, MeasurementRollup>>> rollups = new ConcurrentHashMap<String, ConcurrentSkipListMap<Long, Map<String, MeasurementRollup>>>();
+
+    public MemoryDeviceEventManagement() {
+	super(LifecycleComponentType.DataStore);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.server.lifecycle.LifecycleComponent#start(com.sitewhere.spi
+     * .server.lifecycle.ILifecycleProgressMonitor)
+     */
+    @Override
+    public void start(ILifecycleProgressMonitor monitor) throws SiteWhereException {
+	if (getMaxEventsPerAssignment() > 0) {
+	    LOGGER.info("Device event management is keeping the last " + getMaxEventsPerAssignment()
+		    + " events for each assignment in memory.");
+	} else {
+	    LOGGER.info("Device event management is keeping all events in memory.");
+	}
+
+	// Create assignment state manager and start it.
+	this.assignmentStateManager = new AssignmentStateManager(getDeviceManagement());
+	startNestedComponent(assignmentStateManager, monitor, true);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.server.lifecycle.LifecycleComponent#stop(com.sitewhere.spi.
+     * server.lifecycle.ILifecycleProgressMonitor)
+     */
+    @Override
+    public void stop(ILifecycleProgressMonitor monitor) throws SiteWhereException {
+	if (assignmentStateManager != null) {
+	    assignmentStateManager.stop(monitor);
+	}
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.server.lifecycle.ILifecycleComponent#getLogger()
+     */
+    @Override
+    public Logger getLogger() {
+	return LOGGER;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.event.IDeviceEventManagement#addDeviceEventBatch
+     * (java.lang.String, com.sitewhere.spi.device.event.IDeviceEventBatch)
+     */
+    @Override
+    public IDeviceEventBatchResponse addDeviceEventBatch(String assignmentToken, IDeviceEventBatch batch)
+	    throws SiteWhereException {
+	IDeviceAssignment assignment = assertApiDeviceAssignment(assignmentToken);
+	DeviceEventBatchResponse response = new DeviceEventBatchResponse();
+	List<IDeviceEvent> state = new ArrayList<IDeviceEvent>();
+	for (IDeviceMeasurementsCreateRequest request : batch.getMeasurements()) {
+	    DeviceMeasurements measurements = SiteWherePersistence.deviceMeasurementsCreateLogic(request, assignment);
+	    store(measurements);
+	    response.getCreatedMeasurements().add(measurements);
+	    if (request.isUpdateState()) {
+		state.add(measurements);
+	    }
+	}
+	for (IDeviceLocationCreateRequest request : batch.getLocations()) {
+	    DeviceLocation location = SiteWherePersistence.deviceLocationCreateLogic(assignment, request);
+	    store(location);
+	    response.getCreatedLocations().add(location);
+	    if (request.isUpdateState()) {
+		state.add(location);
+	    }
+	}
+	for (IDeviceAlertCreateRequest request : batch.getAlerts()) {
+	    DeviceAlert alert = SiteWherePersistence.deviceAlertCreateLogic(assignment, request);
+	    store(alert);
+	    response.getCreatedAlerts().add(alert);
+	    if (request.isUpdateState()) {
+		state.add(alert);
+	    }
+	}
+
+	// Merge assignment state updates for the whole batch.
+	getAssignmentStateManager().addEvents(assignmentToken, state);
+	return response;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.event.IDeviceEventManagement#getDeviceEventById(
+     * java.lang.String)
+     */
+    @Override
+    public IDeviceEvent getDeviceEventById(String id) throws SiteWhereException {
+	return eventsById.get(id);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.event.IDeviceEventManagement#listDeviceEvents(
+     * java.lang.String, com.sitewhere.spi.search.IDateRangeSearchCriteria)
+     */
+    @Override
+    public ISearchResults<IDeviceEvent> listDeviceEvents(String assignmentToken, IDateRangeSearchCriteria criteria)
+	    throws SiteWhereException {
+	return search(byAssignment.get(assignmentToken), criteria);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.event.IDeviceEventManagement#addDeviceMeasurements
+     * (java.lang.String,
+     * com.sitewhere.spi.device.event.request.IDeviceMeasurementsCreateRequest)
+     */
+    @Override
+    public IDeviceMeasurements addDeviceMeasurements(String assignmentToken, IDeviceMeasurementsCreateRequest request)
+	    throws SiteWhereException {
+	IDeviceAssignment assignment = assertApiDeviceAssignment(assignmentToken);
+	DeviceMeasurements measurements = SiteWherePersistence.deviceMeasurementsCreateLogic(request, assignment);
+	store(measurements);
+
+	// Update assignment state if requested.
+	if (request.isUpdateState()) {
+	    getAssignmentStateManager().addMeasurements(assignmentToken, measurements);
+	}
+	return measurements;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.event.IDeviceEventManagement#
+     * listDeviceMeasurements(java.lang.String,
+     * com.sitewhere.spi.search.IDateRangeSearchCriteria)
+     */
+    @Override
+    public ISearchResults<IDeviceMeasurements> listDeviceMeasurements(String assignmentToken,
+	    IDateRangeSearchCriteria criteria) throws SiteWhereException {
+	return search(byAssignmentAndType.get(getIndexKey(assignmentToken, DeviceEventType.Measurements)), criteria);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.event.IDeviceEventManagement#
+     * listDeviceMeasurementsForSite(java.lang.String,
+     * com.sitewhere.spi.search.IDateRangeSearchCriteria)
+     */
+    @Override
+    public ISearchResults<IDeviceMeasurements> listDeviceMeasurementsForSite(String siteToken,
+	    IDateRangeSearchCriteria criteria) throws SiteWhereException {
+	return search(bySiteAndType.get(getIndexKey(siteToken, DeviceEventType.Measurements)), criteria);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.event.IDeviceEventManagement#
+     * listDeviceMeasurementsSeries(java.lang.String,
+     * com.sitewhere.spi.search.device.IChartSeriesSearchCriteria)
+     */
+    @Override
+    public List<ISampledChartSeries> listDeviceMeasurementsSeries(String assignmentToken,
+	    IChartSeriesSearchCriteria criteria) throws SiteWhereException {
+	ChartDownsampler downsampler = new ChartDownsampler(criteria);
+	DeviceEventIndex index = byAssignmentAndType.get(getIndexKey(assignmentToken, DeviceEventType.Measurements));
+	if (index != null) {
+	    for (IDeviceEvent event : index.getRange(criteria).values()) {
+		downsampler.add((IDeviceMeasurements) event);
+	    }
+	}
+	return downsampler.build();
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.event.IDeviceEventManagement#addMeasurementRollups
+     * (java.util.List)
+     */
+    @Override
+    public synchronized void addMeasurementRollups(List<IMeasurementRollup> deltas) throws SiteWhereException {
+	for (IMeasurementRollup delta : deltas) {
+	    String key = delta.getAssignmentToken() + ":" + delta.getIntervalMs();
+	    ConcurrentSkipListMap<Long, Map<String, MeasurementRollup>> buckets = rollups.get(key);
+	    if (buckets == null) {
+		buckets = new ConcurrentSkipListMap<Long, Map<String, MeasurementRollup>>();
+		rollups.put(key, buckets);
+	    }
+	    Map<String, MeasurementRollup> bucket = buckets.get(delta.getBucketStart().getTime());
+	    if (bucket == null) {
+		bucket = new ConcurrentHashMap<String, MeasurementRollup>();
+		buckets.put(delta.getBucketStart().getTime(), bucket);
+	    }
+	    MeasurementRollup rollup = bucket.get(delta.getMeasurementId());
+	    if (rollup == null) {
+		bucket.put(delta.getMeasurementId(), MeasurementRollup.copy(delta));
+	    } else {
+		MeasurementRollup merged = MeasurementRollup.copy(rollup);
+		merged.merge(delta);
+		bucket.put(delta.getMeasurementId(), merged);
+	    }
+	}
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.event.IDeviceEventManagement#
+     * listMeasurementRollups(java.lang.String,
+     * com.sitewhere.spi.device.event.rollup.RollupResolution,
+     * com.sitewhere.spi.search.IDateRangeSearchCriteria)
+     */
+    @Override
+    public ISearchResults<IMeasurementRollup> listMeasurementRollups(String assignmentToken,
+	    RollupResolution resolution, IDateRangeSearchCriteria criteria) throws SiteWhereException {
+	List<IMeasurementRollup> matches = new ArrayList<IMeasurementRollup>();
+	NavigableMap<Long, Map<String, MeasurementRollup>> buckets = rollups
+		.get(assignmentToken + ":" + resolution.getIntervalMs());
+	if (buckets != null) {
+	    if (criteria.getStartDate() != null) {
+		buckets = buckets.tailMap(resolution.getBucketStart(criteria.getStartDate().getTime()), true);
+	    }
+	    if (criteria.getEndDate() != null) {
+		buckets = buckets.headMap(criteria.getEndDate().getTime(), true);
+	    }
+	    for (Map<String, MeasurementRollup> bucket : buckets.values()) {
+		matches.addAll(bucket.values());
+	    }
+	}
+	return MemoryPersistence.search(matches, null, criteria);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.event.IDeviceEventManagement#addDeviceLocation(
+     * java.lang.String,
+     * com.sitewhere.spi.device.event.request.IDeviceLocationCreateRequest)
+     */
+    @Override
+    public IDeviceLocation addDeviceLocation(String assignmentToken, IDeviceLocationCreateRequest request)
+	    throws SiteWhereException {
+	IDeviceAssignment assignment = assertApiDeviceAssignment(assignmentToken);
+	DeviceLocation location = SiteWherePersistence.deviceLocationCreateLogic(assignment, request);
+	store(location);
+
+	// Update assignment state if requested.
+	if (request.isUpdateState()) {
+	    getAssignmentStateManager().addLocation(assignmentToken, location);
+	}
+	return location;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.event.IDeviceEventManagement#listDeviceLocations
+     * (java.lang.String, com.sitewhere.spi.search.IDateRangeSearchCriteria)
+     */
+    @Override
+    public ISearchResults<IDeviceLocation> listDeviceLocations(String assignmentToken,
+	    IDateRangeSearchCriteria criteria) throws SiteWhereException {
+	return search(byAssignmentAndType.get(getIndexKey(assignmentToken, DeviceEventType.Location)), criteria);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.event.IDeviceEventManagement#
+     * listDeviceLocationsForSite(java.lang.String,
+     * com.sitewhere.spi.search.IDateRangeSearchCriteria)
+     */
+    @Override
+    public ISearchResults<IDeviceLocation> listDeviceLocationsForSite(String siteToken,
+	    IDateRangeSearchCriteria criteria) throws SiteWhereException {
+	return search(bySiteAndType.get(getIndexKey(siteToken, DeviceEventType.Location)), criteria);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.event.IDeviceEventManagement#listDeviceLocations
+     * (java.util.List, com.sitewhere.spi.search.IDateRangeSearchCriteria)
+     */
+    @Override
+    public ISearchResults<IDeviceLocation> listDeviceLocations(List<String> assignmentTokens,
+	    IDateRangeSearchCriteria criteria) throws SiteWhereException {
+	List<DeviceEventIndex> indexes = new ArrayList<DeviceEventIndex>();
+	for (String assignmentToken : assignmentTokens) {
+	    DeviceEventIndex index = byAssignmentAndType.get(getIndexKey(assignmentToken, DeviceEventType.Location));
+	    if (index != null) {
+		indexes.add(index);
+	    }
+	}
+	return DeviceEventIndex.search(indexes, criteria);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.event.IDeviceEventManagement#addDeviceAlert(java
+     * .lang.String,
+     * com.sitewhere.spi.device.event.request.IDeviceAlertCreateRequest)
+     */
+    @Override
+    public IDeviceAlert addDeviceAlert(String assignmentToken, IDeviceAlertCreateRequest request)
+	    throws SiteWhereException {
+	IDeviceAssignment assignment = assertApiDeviceAssignment(assignmentToken);
+	DeviceAlert alert = SiteWherePersistence.deviceAlertCreateLogic(assignment, request);
+	store(alert);
+
+	// Update assignment state if requested.
+	if (request.isUpdateState()) {
+	    getAssignmentStateManager().addAlert(assignmentToken, alert);
+	}
+	return alert;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.event.IDeviceEventManagement#listDeviceAlerts(
+     * java.lang.String, com.sitewhere.spi.search.IDateRangeSearchCriteria)
+     */
+    @Override
+    public ISearchResults<IDeviceAlert> listDeviceAlerts(String assignmentToken, IDateRangeSearchCriteria criteria)
+	    throws SiteWhereException {
+	return search(byAssignmentAndType.get(getIndexKey(assignmentToken, DeviceEventType.Alert)), criteria);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.event.IDeviceEventManagement#
+     * listDeviceAlertsForSite(java.lang.String,
+     * com.sitewhere.spi.search.IDateRangeSearchCriteria)
+     */
+    @Override
+    public ISearchResults<IDeviceAlert> listDeviceAlertsForSite(String siteToken, IDateRangeSearchCriteria criteria)
+	    throws SiteWhereException {
+	return search(bySiteAndType.get(getIndexKey(siteToken, DeviceEventType.Alert)), criteria);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.event.IDeviceEventManagement#addDeviceStreamData
+     * (java.lang.String,
+     * com.sitewhere.spi.device.event.request.IDeviceStreamDataCreateRequest)
+     */
+    @Override
+    public IDeviceStreamData addDeviceStreamData(String assignmentToken, IDeviceStreamDataCreateRequest request)
+	    throws SiteWhereException {
+	IDeviceAssignment assignment = assertApiDeviceAssignment(assignmentToken);
+	DeviceStreamData data = SiteWherePersistence.deviceStreamDataCreateLogic(assignment, request);
+
+	// Verify that a stream with the given id exists for the assignment.
+	if (getDeviceManagement().getDeviceStream(assignmentToken, request.getStreamId()) == null) {
+	    throw new SiteWhereSystemException(ErrorCode.InvalidStreamId, ErrorLevel.ERROR);
+	}
+	store(data);
+	return data;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.event.IDeviceEventManagement#getDeviceStreamData
+     * (java.lang.String, java.lang.String, long)
+     */
+    @Override
+    public IDeviceStreamData getDeviceStreamData(String assignmentToken, String streamId, long sequenceNumber)
+	    throws SiteWhereException {
+	ConcurrentSkipListMap<Long, IDeviceStreamData> chunks = streamData.get(getStreamKey(assignmentToken, streamId));
+	return (chunks != null) ? chunks.get(sequenceNumber) : null;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.event.IDeviceEventManagement#
+     * listDeviceStreamData(java.lang.String, java.lang.String,
+     * com.sitewhere.spi.search.IDateRangeSearchCriteria)
+     */
+    @Override
+    public ISearchResults<IDeviceStreamData> listDeviceStreamData(String assignmentToken, String streamId,
+	    IDateRangeSearchCriteria criteria) throws SiteWhereException {
+	ConcurrentSkipListMap<Long, IDeviceStreamData> chunks = streamData.get(getStreamKey(assignmentToken, streamId));
+	List<IDeviceStreamData> matches = new ArrayList<IDeviceStreamData>();
+	if (chunks != null) {
+	    for (IDeviceStreamData chunk : chunks.values()) {
+		if (MemoryPersistence.isInDateRange(chunk.getEventDate(), criteria)) {
+		    matches.add(chunk);
+		}
+	    }
+	}
+	return MemoryPersistence.search(matches, null, criteria);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.event.IDeviceEventManagement#
+     * getDeviceStreamDataRange(java.lang.String, java.lang.String, long, int)
+     */
+    @Override
+    public List<IDeviceStreamData> getDeviceStreamDataRange(String assignmentToken, String streamId,
+	    long firstSequenceNumber, int maxChunks) throws SiteWhereException {
+	List<IDeviceStreamData> results = new ArrayList<IDeviceStreamData>(maxChunks);
+	ConcurrentSkipListMap<Long, IDeviceStreamData> chunks = streamData.get(getStreamKey(assignmentToken, streamId));
+	if (chunks == null) {
+	    return results;
+	}
+	for (IDeviceStreamData chunk : chunks.tailMap(firstSequenceNumber, true).values()) {
+	    if (results.size() >= maxChunks) {
+		break;
+	    }
+	    results.add(chunk);
+	}
+	return results;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.event.IDeviceEventManagement#
+     * addDeviceCommandInvocation(java.lang.String,
+     * com.sitewhere.spi.device.command.IDeviceCommand,
+     * com.sitewhere.spi.device.event.request.
+     * IDeviceCommandInvocationCreateRequest)
+     */
+    @Override
+    public IDeviceCommandInvocation addDeviceCommandInvocation(String assignmentToken, IDeviceCommand command,
+	    IDeviceCommandInvocationCreateRequest request) throws SiteWhereException {
+	IDeviceAssignment assignment = assertApiDeviceAssignment(assignmentToken);
+	DeviceCommandInvocation ci = SiteWherePersistence.deviceCommandInvocationCreateLogic(assignment, command,
+		request);
+	store(ci);
+	return ci;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.event.IDeviceEventManagement#
+     * listDeviceCommandInvocations(java.lang.String,
+     * com.sitewhere.spi.search.IDateRangeSearchCriteria)
+     */
+    @Override
+    public ISearchResults<IDeviceCommandInvocation> listDeviceCommandInvocations(String assignmentToken,
+	    IDateRangeSearchCriteria criteria) throws SiteWhereException {
+	return search(byAssignmentAndType.get(getIndexKey(assignmentToken, DeviceEventType.CommandInvocation)),
+		criteria);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.event.IDeviceEventManagement#
+     * listDeviceCommandInvocationsForSite(java.lang.String,
+     * com.sitewhere.spi.search.IDateRangeSearchCriteria)
+     */
+    @Override
+    public ISearchResults<IDeviceCommandInvocation> listDeviceCommandInvocationsForSite(String siteToken,
+	    IDateRangeSearchCriteria criteria) throws SiteWhereException {
+	return search(bySiteAndType.get(getIndexKey(siteToken, DeviceEventType.CommandInvocation)), criteria);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.event.IDeviceEventManagement#
+     * listDeviceCommandInvocationResponses(java.lang.String)
+     */
+    @Override
+    public ISearchResults<IDeviceCommandResponse> listDeviceCommandInvocationResponses(String invocationId)
+	    throws SiteWhereException {
+	return search(responsesByInvocation.get(invocationId), new DateRangeSearchCriteria(0, 0, null, null));
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.event.IDeviceEventManagement#
+     * addDeviceCommandResponse(java.lang.String,
+     * com.sitewhere.spi.device.event.request.
+     * IDeviceCommandResponseCreateRequest)
+     */
+    @Override
+    public IDeviceCommandResponse addDeviceCommandResponse(String assignmentToken,
+	    IDeviceCommandResponseCreateRequest request) throws SiteWhereException {
+	IDeviceAssignment assignment = assertApiDeviceAssignment(assignmentToken);
+	DeviceCommandResponse response = SiteWherePersistence.deviceCommandResponseCreateLogic(assignment, request);
+	store(response);
+	return response;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.event.IDeviceEventManagement#
+     * listDeviceCommandResponses(java.lang.String,
+     * com.sitewhere.spi.search.IDateRangeSearchCriteria)
+     */
+    @Override
+    public ISearchResults<IDeviceCommandResponse> listDeviceCommandResponses(String assignmentToken,
+	    IDateRangeSearchCriteria criteria) throws SiteWhereException {
+	return search(byAssignmentAndType.get(getIndexKey(assignmentToken, DeviceEventType.CommandResponse)),
+		criteria);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.event.IDeviceEventManagement#
+     * listDeviceCommandResponsesForSite(java.lang.String,
+     * com.sitewhere.spi.search.IDateRangeSearchCriteria)
+     */
+    @Override
+    public ISearchResults<IDeviceCommandResponse> listDeviceCommandResponsesForSite(String siteToken,
+	    IDateRangeSearchCriteria criteria) throws SiteWhereException {
+	return search(bySiteAndType.get(getIndexKey(siteToken, DeviceEventType.CommandResponse)), criteria);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.event.IDeviceEventManagement#addDeviceStateChange
+     * (java.lang.String,
+     * com.sitewhere.spi.device.event.request.IDeviceStateChangeCreateRequest)
+     */
+    @Override
+    public IDeviceStateChange addDeviceStateChange(String assignmentToken, IDeviceStateChangeCreateRequest request)
+	    throws SiteWhereException {
+	IDeviceAssignment assignment = assertApiDeviceAssignment(assignmentToken);
+	DeviceStateChange state = SiteWherePersistence.deviceStateChangeCreateLogic(assignment, request);
+	store(state);
+
+	// Update assignment state if requested.
+	if (request.isUpdateState()) {
+	    getAssignmentStateManager().addStateChange(assignmentToken, state);
+	}
+	return state;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.event.IDeviceEventManagement#
+     * listDeviceStateChanges(java.lang.String,
+     * com.sitewhere.spi.search.IDateRangeSearchCriteria)
+     */
+    @Override
+    public ISearchResults<IDeviceStateChange> listDeviceStateChanges(String assignmentToken,
+	    IDateRangeSearchCriteria criteria) throws SiteWhereException {
+	return search(byAssignmentAndType.get(getIndexKey(assignmentToken, DeviceEventType.StateChange)), criteria);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.event.IDeviceEventManagement#
+     * listDeviceStateChangesForSite(java.lang.String,
+     * com.sitewhere.spi.search.IDateRangeSearchCriteria)
+     */
+    @Override
+    public ISearchResults<IDeviceStateChange> listDeviceStateChangesForSite(String siteToken,
+	    IDateRangeSearchCriteria criteria) throws SiteWhereException {
+	return search(bySiteAndType.get(getIndexKey(siteToken, DeviceEventType.StateChange)), criteria);
+    }
+
+    /**
+     * Assign an id to an event and add it to all indexes. If a limit is set on
+     * the number of events per assignment, the oldest events are evicted once
+     * it is exceeded.
+     * 
+     * @param event
+     */
+    protected void store(DeviceEvent event) {
+	long seq = sequence.incrementAndGet();
+	event.setId(String.valueOf(seq));
+	DeviceEventIndex.Key key = DeviceEventIndex.Key.forEvent(event, seq);
+
+	DeviceEventIndex all = getIndex(byAssignment, event.getDeviceAssignmentToken());
+	synchronized (all) {
+	    eventsById.put(event.getId(), event);
+	    all.add(key, event);
+	    getIndex(byAssignmentAndType, getIndexKey(event.getDeviceAssignmentToken(), event.getEventType()))
+		    .add(key, event);
+	    if (event.getSiteToken() != null) {
+		getIndex(bySiteAndType, getIndexKey(event.getSiteToken(), event.getEventType())).add(key, event);
+	    }
+	    if (event instanceof DeviceCommandResponse) {
+		String invocationId = ((DeviceCommandResponse) event).getOriginatingEventId();
+		if (invocationId != null) {
+		    getIndex(responsesByInvocation, invocationId).add(key, event);
+		}
+	    } else if ((event instanceof DeviceStreamData)
+		    && (((DeviceStreamData) event).getSequenceNumber() != null)) {
+		DeviceStreamData data = (DeviceStreamData) event;
+		getStreamData(getStreamKey(data.getDeviceAssignmentToken(), data.getStreamId()))
+			.put(data.getSequenceNumber(), data);
+	    }
+
+	    if (getMaxEventsPerAssignment() > 0) {
+		while (all.size() > getMaxEventsPerAssignment()) {
+		    Map.Entry<DeviceEventIndex.Key, IDeviceEvent> oldest = all.removeOldest();
+		    if (oldest == null) {
+			break;
+		    }
+		    evict(oldest.getKey(), oldest.getValue());
+		}
+	    }
+	}
+    }
+
+    /**
+     * Remove an evicted event from the secondary indexes.
+     * 
+     * @param key
+     * @param event
+     */
+    protected void evict(DeviceEventIndex.Key key, IDeviceEvent event) {
+	eventsById.remove(event.getId());
+	removeFromIndex(byAssignmentAndType, getIndexKey(event.getDeviceAssignmentToken(), event.getEventType()), key);
+	if (event.getSiteToken() != null) {
+	    removeFromIndex(bySiteAndType, getIndexKey(event.getSiteToken(), event.getEventType()), key);
+	}
+	if (event instanceof IDeviceCommandResponse) {
+	    String invocationId = ((IDeviceCommandResponse) event).getOriginatingEventId();
+	    if (invocationId != null) {
+		removeFromIndex(responsesByInvocation, invocationId, key);
+	    }
+	} else if (event instanceof IDeviceStreamData) {
+	    IDeviceStreamData data = (IDeviceStreamData) event;
+	    ConcurrentSkipListMap<Long, IDeviceStreamData> chunks = streamData
+		    .get(getStreamKey(data.getDeviceAssignmentToken(), data.getStreamId()));
+	    if ((chunks != null) && (data.getSequenceNumber() != null)) {
+		chunks.remove(data.getSequenceNumber(), data);
+	    }
+	}
+    }
+
+    /**
+     * Remove an event from an index if the index exists.
+     * 
+     * @param indexes
+     * @param indexKey
+     * @param key
+     */
+    protected void removeFromIndex(ConcurrentMap<String, DeviceEventIndex> indexes, String indexKey,
+	    DeviceEventIndex.Key key) {
+	DeviceEventIndex index = indexes.get(indexKey);
+	if (index != null) {
+	    index.remove(key);
+	}
+    }
+
+    /**
+     * Get an index, creating it if it does not exist.
+     * 
+     * @param indexes
+     * @param indexKey
+     * @return
+     */
+    protected DeviceEventIndex getIndex(ConcurrentMap<String, DeviceEventIndex> indexes, String indexKey) {
+	DeviceEventIndex index = indexes.get(indexKey);
+	if (index == null) {
+	    DeviceEventIndex created = new DeviceEventIndex();
+	    index = indexes.putIfAbsent(indexKey, created);
+	    if (index == null) {
+		index = created;
+	    }
+	}
+	return index;
+    }
+
+    /**
+     * Get stream data chunks for a stream, creating the map if it does not
+     * exist.
+     * 
+     * @param streamKey
+     * @return
+     */
+    protected ConcurrentSkipListMap<Long, IDeviceStreamData> getStreamData(String streamKey) {
+	ConcurrentSkipListMap<Long, IDeviceStreamData> chunks = streamData.get(streamKey);
+	if (chunks == null) {
+	    ConcurrentSkipListMap<Long, IDeviceStreamData> created = new ConcurrentSkipListMap<Long, IDeviceStreamData>();
+	    chunks = streamData.putIfAbsent(streamKey, created);
+	    if (chunks == null) {
+		chunks = created;
+	    }
+	}
+	return chunks;
+    }
+
+    /**
+     * Search an index, returning empty results if it does not exist.
+     * 
+     * @param index
+     * @param criteria
+     * @return
+     */
+    protected <T extends IDeviceEvent> ISearchResults<T> search(DeviceEventIndex index,
+	    IDateRangeSearchCriteria criteria) {
+	if (index == null) {
+	    return new SearchResults<T>(new ArrayList<T>());
+	}
+	return index.search(criteria);
+    }
+
+    /**
+     * Get key for an index of a single event type.
+     * 
+     * @param token
+     * @param type
+     * @return
+     */
+    protected static String getIndexKey(String token, DeviceEventType type) {
+	return token + ":" + type.name();
+    }
+
+    /**
+     * Get key for stream data chunks.
+     * 
+     * @param assignmentToken
+     * @param streamId
+     * @return
+     */
+    protected static String getStreamKey(String assignmentToken, String streamId) {
+	return assignmentToken + ":" + streamId;
+    }
+
+    /**
+     * Return an {@link IDeviceAssignment} for the given token. Throws an
+     * exception if the token is not valid.
+     * 
+     * @param token
+     * @return
+     * @throws SiteWhereException
+     */
+    protected IDeviceAssignment assertApiDeviceAssignment(String token) throws SiteWhereException {
+	IDeviceAssignment assignment = getDeviceManagement().getDeviceAssignmentByToken(token);
+	if (assignment == null) {
+	    throw new SiteWhereSystemException(ErrorCode.InvalidDeviceAssignmentToken, ErrorLevel.ERROR);
+	}
+	return assignment;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.event.IDeviceEventManagement#getDeviceManagement
+     * ()
+     */
+    public IDeviceManagement getDeviceManagement() {
+	return deviceManagement;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.event.IDeviceEventManagement#setDeviceManagement
+     * (com.sitewhere.spi.device.IDeviceManagement)
+     */
+    public void setDeviceManagement(IDeviceManagement deviceManagement) {
+	this.deviceManagement = deviceManagement;
+    }
+
+    public IAssignmentStateManager getAssignmentStateManager() {
+	return assignmentStateManager;
+    }
+
+    public void setAssignmentStateManager(IAssignmentStateManager assignmentStateManager) {
+	this.assignmentStateManager = assignmentStateManager;
+    }
+
+    public int getMaxEventsPerAssignment() {
+	return maxEventsPerAssignment;
+    }
+
+    public void setMaxEventsPerAssignment(int maxEventsPerAssignment) {
+	this.maxEventsPerAssignment = maxEventsPerAssignment;
+    }
+}
@@ -0,0 +1,1422 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.memory.device;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.sitewhere.core.SiteWherePersistence;
+import com.sitewhere.memory.MemoryPersistence;
+import com.sitewhere.rest.model.common.MetadataProvider;
+import com.sitewhere.rest.model.device.Device;
+import com.sitewhere.rest.model.device.DeviceAssignment;
+import com.sitewhere.rest.model.device.DeviceAssignmentState;
+import com.sitewhere.rest.model.device.DeviceSpecification;
+import com.sitewhere.rest.model.device.Site;
+import com.sitewhere.rest.model.device.Zone;
+import com.sitewhere.rest.model.device.batch.BatchElement;
+import com.sitewhere.rest.model.device.batch.BatchOperation;
+import com.sitewhere.rest.model.device.command.DeviceCommand;
+import com.sitewhere.rest.model.device.group.DeviceGroup;
+import com.sitewhere.rest.model.device.group.DeviceGroupElement;
+import com.sitewhere.rest.model.device.streaming.DeviceStream;
+import com.sitewhere.rest.model.search.SearchCriteria;
+import com.sitewhere.server.lifecycle.TenantLifecycleComponent;
+import com.sitewhere.spi.SiteWhereException;
+import com.sitewhere.spi.SiteWhereSystemException;
+import com.sitewhere.spi.common.IMetadataProvider;
+import com.sitewhere.spi.device.DeviceAssignmentStatus;
+import com.sitewhere.spi.device.IDevice;
+import com.sitewhere.spi.device.IDeviceAssignment;
+import com.sitewhere.spi.device.IDeviceAssignmentState;
+import com.sitewhere.spi.device.IDeviceElementMapping;
+import com.sitewhere.spi.device.IDeviceManagement;
+import com.sitewhere.spi.device.IDeviceSpecification;
+import com.sitewhere.spi.device.ISite;
+import com.sitewhere.spi.device.IZone;
+import com.sitewhere.spi.device.batch.IBatchElement;
+import com.sitewhere.spi.device.batch.IBatchOperation;
+import com.sitewhere.spi.device.command.IDeviceCommand;
+import com.sitewhere.spi.device.event.request.IDeviceStreamCreateRequest;
+import com.sitewhere.spi.device.group.IDeviceGroup;
+import com.sitewhere.spi.device.group.IDeviceGroupElement;
+import com.sitewhere.spi.device.request.IBatchCommandInvocationRequest;
+import com.sitewhere.spi.device.request.IBatchElementUpdateRequest;
+import com.sitewhere.spi.device.request.IBatchOperationCreateRequest;
+import com.sitewhere.spi.device.request.IBatchOperationUpdateRequest;
+import com.sitewhere.spi.device.request.IDeviceAssignmentCreateRequest;
+import com.sitewhere.spi.device.request.IDeviceCommandCreateRequest;
+import com.sitewhere.spi.device.request.IDeviceCreateRequest;
+import com.sitewhere.spi.device.request.IDeviceGroupCreateRequest;
+import com.sitewhere.spi.device.request.IDeviceGroupElementCreateRequest;
+import com.sitewhere.spi.device.request.IDeviceSpecificationCreateRequest;
+import com.sitewhere.spi.device.request.ISiteCreateRequest;
+import com.sitewhere.spi.device.request.IZoneCreateRequest;
+import com.sitewhere.spi.device.streaming.IDeviceStream;
+import com.sitewhere.spi.error.ErrorCode;
+import com.sitewhere.spi.error.ErrorLevel;
+import com.sitewhere.spi.error.ResourceExistsException;
+import com.sitewhere.spi.search.IDateRangeSearchCriteria;
+import com.sitewhere.spi.search.ISearchCriteria;
+import com.sitewhere.spi.search.ISearchResults;
+import com.sitewhere.spi.search.device.IAssignmentSearchCriteria;
+import com.sitewhere.spi.search.device.IAssignmentsForAssetSearchCriteria;
+import com.sitewhere.spi.search.device.IBatchElementSearchCriteria;
+import com.sitewhere.spi.search.device.IDeviceSearchCriteria;
+import com.sitewhere.spi.server.lifecycle.ILifecycleProgressMonitor;
+import com.sitewhere.spi.server.lifecycle.LifecycleComponentType;
+
+/**
+ * Device management implementation that keeps all data in memory. Entities
+ * are held in concurrent maps keyed by their unique ids with secondary
+ * indexes for the common lookups (assignments by device and site, zones by
+ * site, streams by assignment, group and batch elements by index). Reads are
+ * lock free. Writes that touch more than one map are serialized so that
+ * indexes stay consistent. Data is not retained when the tenant is stopped.
+ * 
+ * @author Derek
+ */
+public class MemoryDeviceManagement extends TenantLifecycleComponent implements IDeviceManagement {
+
+    /** Static logger instance */
+    private static Logger LOGGER = LogManager.getLogger();
+
+    /** Sorts assignments with most recently activated first */
+    private static final Comparator<IDeviceAssignment> ACTIVE_DATE_DESCENDING = new Comparator<IDeviceAssignment>() {
+
+	@Override
+	public int compare(IDeviceAssignment first, IDeviceAssignment second) {
+	    return MemoryPersistence.compareDates(second.getActiveDate(), first.getActiveDate());
+	}
+    };
+
+    /** Device specifications by token */
+    private ConcurrentMap<String, DeviceSpecification> specifications = new ConcurrentHashMap<String, DeviceSpecification>();
+
+    /** Device commands by token */
+    private ConcurrentMap<String, DeviceCommand> commands = new ConcurrentHashMap<String, DeviceCommand>();
+
+    /** Devices by hardware id */
+    private ConcurrentMap<String, Device> devices = new ConcurrentHashMap<String, Device>();
+
+    /** Device assignments by token */
+    private ConcurrentMap<String, DeviceAssignment> assignments = new ConcurrentHashMap<String, DeviceAssignment>();
+
+    /** Assignment tokens indexed by device hardware id */
+    private ConcurrentMap<String, Set<String>> assignmentsByDevice = new ConcurrentHashMap<String, Set<String>>();
+
+    /** Assignment tokens indexed by site token */
+    private ConcurrentMap<String, Set<String>> assignmentsBySite = new ConcurrentHashMap<String, Set<String>>();
+
+    /** Device streams indexed by assignment token, then stream id */
+    private ConcurrentMap<String, ConcurrentMap<String, DeviceStream>> streams = new ConcurrentHashMap<String, ConcurrentMap<String, DeviceStream>>();
+
+    /** Sites by token */
+    private ConcurrentMap<String, Site> sites = new ConcurrentHashMap<String, Site>();
+
+    /** Zones by token */
+    private ConcurrentMap<String, Zone> zones = new ConcurrentHashMap<String, Zone>();
+
+    /** Device groups by token */
+    private ConcurrentMap<String, DeviceGroup> groups = new ConcurrentHashMap<String, DeviceGroup>();
+
+    /** Device group elements indexed by group token, then element index */
+    private ConcurrentMap<String, ConcurrentSkipListMap<Long, DeviceGroupElement>> groupElements = new ConcurrentHashMap<String, ConcurrentSkipListMap<Long, DeviceGroupElement>>();
+
+    /** Last element index used for each group */
+    private ConcurrentMap<String, AtomicLong> groupIndexes = new ConcurrentHashMap<String, AtomicLong>();
+
+    /** Batch operations by token */
+    private ConcurrentMap<String, BatchOperation> batchOperations = new ConcurrentHashMap<String, BatchOperation>();
+
+    /** Batch elements indexed by operation token, then element index */
+    private ConcurrentMap<String, ConcurrentSkipListMap<Long, BatchElement>> batchElements = new ConcurrentHashMap<String, ConcurrentSkipListMap<Long, BatchElement>>();
+
+    public MemoryDeviceManagement() {
+	super(LifecycleComponentType.DataStore);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.server.lifecycle.LifecycleComponent#start(com.sitewhere.spi
+     * .server.lifecycle.ILifecycleProgressMonitor)
+     */
+    @Override
+    public void start(ILifecycleProgressMonitor monitor) throws SiteWhereException {
+	LOGGER.info("Device management is storing data in memory. Data will not survive a restart.");
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.server.lifecycle.ILifecycleComponent#getLogger()
+     */
+    @Override
+    public Logger getLogger() {
+	return LOGGER;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.IDeviceManagement#createDeviceSpecification(com.
+     * sitewhere.spi.device.request.IDeviceSpecificationCreateRequest)
+     */
+    @Override
+    public IDeviceSpecification createDeviceSpecification(IDeviceSpecificationCreateRequest request)
+	    throws SiteWhereException {
+	String uuid = ((request.getToken() != null) ? request.getToken() : UUID.randomUUID().toString());
+	DeviceSpecification spec = SiteWherePersistence.deviceSpecificationCreateLogic(request, uuid);
+	MemoryPersistence.insert(specifications, uuid, spec, ErrorCode.DuplicateDeviceSpecificationToken);
+	return spec;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.IDeviceManagement#getDeviceSpecificationByToken(
+     * java.lang.String)
+     */
+    @Override
+    public IDeviceSpecification getDeviceSpecificationByToken(String token) throws SiteWhereException {
+	return specifications.get(token);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.IDeviceManagement#updateDeviceSpecification(java
+     * .lang.String,
+     * com.sitewhere.spi.device.request.IDeviceSpecificationCreateRequest)
+     */
+    @Override
+    public synchronized IDeviceSpecification updateDeviceSpecification(String token,
+	    IDeviceSpecificationCreateRequest request) throws SiteWhereException {
+	DeviceSpecification spec = MemoryPersistence.assertExists(specifications, token,
+		ErrorCode.InvalidDeviceSpecificationToken);
+	SiteWherePersistence.deviceSpecificationUpdateLogic(request, spec);
+	return spec;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.IDeviceManagement#listDeviceSpecifications(
+     * boolean, com.sitewhere.spi.search.ISearchCriteria)
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public ISearchResults<IDeviceSpecification> listDeviceSpecifications(boolean includeDeleted,
+	    ISearchCriteria criteria) throws SiteWhereException {
+	List<IDeviceSpecification> matches = new ArrayList<IDeviceSpecification>();
+	for (DeviceSpecification spec : specifications.values()) {
+	    if (includeDeleted || !spec.isDeleted()) {
+		matches.add(spec);
+	    }
+	}
+	return MemoryPersistence.search(matches, MemoryPersistence.CREATED_DATE_DESCENDING, criteria);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.IDeviceManagement#deleteDeviceSpecification(java
+     * .lang.String, boolean)
+     */
+    @Override
+    public synchronized IDeviceSpecification deleteDeviceSpecification(String token, boolean force)
+	    throws SiteWhereException {
+	DeviceSpecification spec = MemoryPersistence.assertExists(specifications, token,
+		ErrorCode.InvalidDeviceSpecificationToken);
+	if (force) {
+	    specifications.remove(token);
+	} else {
+	    spec.setDeleted(true);
+	}
+	return spec;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.IDeviceManagement#createDeviceCommand(com.
+     * sitewhere.spi.device.IDeviceSpecification,
+     * com.sitewhere.spi.device.request.IDeviceCommandCreateRequest)
+     */
+    @Override
+    public synchronized IDeviceCommand createDeviceCommand(IDeviceSpecification spec,
+	    IDeviceCommandCreateRequest request) throws SiteWhereException {
+	List<IDeviceCommand> existing = listDeviceCommands(spec.getToken(), false);
+	String uuid = ((request.getToken() != null) ? request.getToken() : UUID.randomUUID().toString());
+	DeviceCommand command = SiteWherePersistence.deviceCommandCreateLogic(spec, request, uuid, existing);
+	MemoryPersistence.insert(commands, uuid, command, ErrorCode.DeviceCommandExists);
+	return command;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.IDeviceManagement#getDeviceCommandByToken(java.
+     * lang.String)
+     */
+    @Override
+    public IDeviceCommand getDeviceCommandByToken(String token) throws SiteWhereException {
+	return commands.get(token);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.IDeviceManagement#updateDeviceCommand(java.lang.
+     * String, com.sitewhere.spi.device.request.IDeviceCommandCreateRequest)
+     */
+    @Override
+    public synchronized IDeviceCommand updateDeviceCommand(String token, IDeviceCommandCreateRequest request)
+	    throws SiteWhereException {
+	DeviceCommand command = MemoryPersistence.assertExists(commands, token, ErrorCode.InvalidDeviceCommandToken);
+	List<IDeviceCommand> existing = listDeviceCommands(command.getSpecificationToken(), false);
+	existing.remove(command);
+	SiteWherePersistence.deviceCommandUpdateLogic(request, command, existing);
+	return command;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.IDeviceManagement#listDeviceCommands(java.lang.
+     * String, boolean)
+     */
+    @Override
+    public List<IDeviceCommand> listDeviceCommands(String specToken, boolean includeDeleted)
+	    throws SiteWhereException {
+	List<IDeviceCommand> matches = new ArrayList<IDeviceCommand>();
+	for (DeviceCommand command : commands.values()) {
+	    if (command.getSpecificationToken().equals(specToken) && (includeDeleted || !command.isDeleted())) {
+		matches.add(command);
+	    }
+	}
+	return MemoryPersistence.list(matches, new Comparator<IDeviceCommand>() {
+
+	    @Override
+	    public int compare(IDeviceCommand first, IDeviceCommand second) {
+		return StringUtils.defaultString(first.getName()).compareTo(StringUtils.defaultString(second.getName()));
+	    }
+	});
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.IDeviceManagement#deleteDeviceCommand(java.lang.
+     * String, boolean)
+     */
+    @Override
+    public synchronized IDeviceCommand deleteDeviceCommand(String token, boolean force) throws SiteWhereException {
+	DeviceCommand command = MemoryPersistence.assertExists(commands, token, ErrorCode.InvalidDeviceCommandToken);
+	if (force) {
+	    commands.remove(token);
+	} else {
+	    command.setDeleted(true);
+	}
+	return command;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.IDeviceManagement#createDevice(com.sitewhere.spi
+     * .device.request.IDeviceCreateRequest)
+     */
+    @Override
+    public IDevice createDevice(IDeviceCreateRequest request) throws SiteWhereException {
+	Device device = SiteWherePersistence.deviceCreateLogic(request);
+	MemoryPersistence.insert(devices, device.getHardwareId(), device, ErrorCode.DuplicateHardwareId);
+	return device;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.IDeviceManagement#getDeviceByHardwareId(java.
+     * lang.String)
+     */
+    @Override
+    public IDevice getDeviceByHardwareId(String hardwareId) throws SiteWhereException {
+	return devices.get(hardwareId);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.IDeviceManagement#getDevicesByHardwareIds(java.
+     * util.List)
+     */
+    @Override
+    public List<IDevice> getDevicesByHardwareIds(List<String> hardwareIds) throws SiteWhereException {
+	List<IDevice> results = new ArrayList<IDevice>();
+	for (String hardwareId : hardwareIds) {
+	    IDevice device = devices.get(hardwareId);
+	    if (device != null) {
+		results.add(device);
+	    }
+	}
+	return results;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.IDeviceManagement#updateDevice(java.lang.String,
+     * com.sitewhere.spi.device.request.IDeviceCreateRequest)
+     */
+    @Override
+    public synchronized IDevice updateDevice(String hardwareId, IDeviceCreateRequest request)
+	    throws SiteWhereException {
+	Device device = assertDevice(hardwareId);
+	SiteWherePersistence.deviceUpdateLogic(request, device);
+	return device;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.IDeviceManagement#getCurrentDeviceAssignment(
+     * com.sitewhere.spi.device.IDevice)
+     */
+    @Override
+    public IDeviceAssignment getCurrentDeviceAssignment(IDevice device) throws SiteWhereException {
+	if (device.getAssignmentToken() == null) {
+	    return null;
+	}
+	return assertDeviceAssignment(device.getAssignmentToken());
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.IDeviceManagement#listDevices(boolean,
+     * com.sitewhere.spi.search.device.IDeviceSearchCriteria)
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public ISearchResults<IDevice> listDevices(boolean includeDeleted, IDeviceSearchCriteria criteria)
+	    throws SiteWhereException {
+	List<IDevice> matches = new ArrayList<IDevice>();
+	for (Device device : devices.values()) {
+	    if (!includeDeleted && device.isDeleted()) {
+		continue;
+	    }
+	    if (criteria.isExcludeAssigned() && (device.getAssignmentToken() != null)) {
+		continue;
+	    }
+	    if (!StringUtils.isEmpty(criteria.getSpecificationToken())
+		    && !criteria.getSpecificationToken().equals(device.getSpecificationToken())) {
+		continue;
+	    }
+	    if (!StringUtils.isEmpty(criteria.getSiteToken()) && !criteria.getSiteToken().equals(device.getSiteToken())) {
+		continue;
+	    }
+	    if (!MemoryPersistence.isInDateRange(device.getCreatedDate(), criteria)) {
+		continue;
+	    }
+	    matches.add(device);
+	}
+	return MemoryPersistence.search(matches, MemoryPersistence.CREATED_DATE_DESCENDING, criteria);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.IDeviceManagement#createDeviceElementMapping(
+     * java.lang.String, com.sitewhere.spi.device.IDeviceElementMapping)
+     */
+    @Override
+    public synchronized IDevice createDeviceElementMapping(String hardwareId, IDeviceElementMapping mapping)
+	    throws SiteWhereException {
+	return SiteWherePersistence.deviceElementMappingCreateLogic(this, hardwareId, mapping);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.IDeviceManagement#deleteDeviceElementMapping(
+     * java.lang.String, java.lang.String)
+     */
+    @Override
+    public synchronized IDevice deleteDeviceElementMapping(String hardwareId, String path)
+	    throws SiteWhereException {
+	return SiteWherePersistence.deviceElementMappingDeleteLogic(this, hardwareId, path);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.IDeviceManagement#deleteDevice(java.lang.String,
+     * boolean)
+     */
+    @Override
+    public synchronized IDevice deleteDevice(String hardwareId, boolean force) throws SiteWhereException {
+	Device device = assertDevice(hardwareId);
+	if (getCurrentDeviceAssignment(device) != null) {
+	    throw new SiteWhereSystemException(ErrorCode.DeviceCanNotBeDeletedIfAssigned, ErrorLevel.ERROR);
+	}
+	if (force) {
+	    devices.remove(hardwareId);
+	} else {
+	    device.setDeleted(true);
+	}
+	return device;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.IDeviceManagement#createDeviceAssignment(com.
+     * sitewhere.spi.device.request.IDeviceAssignmentCreateRequest)
+     */
+    @Override
+    public synchronized IDeviceAssignment createDeviceAssignment(IDeviceAssignmentCreateRequest request)
+	    throws SiteWhereException {
+	Device device = assertDevice(request.getDeviceHardwareId());
+	if (device.getAssignmentToken() != null) {
+	    throw new SiteWhereSystemException(ErrorCode.DeviceAlreadyAssigned, ErrorLevel.ERROR);
+	}
+
+	DeviceAssignment assignment = SiteWherePersistence.deviceAssignmentCreateLogic(request, device);
+	if (assignment.getToken() == null) {
+	    assignment.setToken(UUID.randomUUID().toString());
+	}
+	MemoryPersistence.insert(assignments, assignment.getToken(), assignment, ErrorCode.DuplicateDeviceAssignment);
+	addToIndex(assignmentsByDevice, assignment.getDeviceHardwareId(), assignment.getToken());
+	addToIndex(assignmentsBySite, assignment.getSiteToken(), assignment.getToken());
+
+	device.setAssignmentToken(assignment.getToken());
+	return assignment;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.IDeviceManagement#getDeviceAssignmentByToken(
+     * java.lang.String)
+     */
+    @Override
+    public IDeviceAssignment getDeviceAssignmentByToken(String token) throws SiteWhereException {
+	return assignments.get(token);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.IDeviceManagement#getDeviceAssignmentsByTokens(
+     * java.util.List)
+     */
+    @Override
+    public List<IDeviceAssignment> getDeviceAssignmentsByTokens(List<String> tokens) throws SiteWhereException {
+	List<IDeviceAssignment> results = new ArrayList<IDeviceAssignment>();
+	for (String token : tokens) {
+	    IDeviceAssignment assignment = assignments.get(token);
+	    if (assignment != null) {
+		results.add(assignment);
+	    }
+	}
+	return results;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.IDeviceManagement#deleteDeviceAssignment(java.
+     * lang.String, boolean)
+     */
+    @Override
+    public synchronized IDeviceAssignment deleteDeviceAssignment(String token, boolean force)
+	    throws SiteWhereException {
+	DeviceAssignment assignment = assertDeviceAssignment(token);
+	if (force) {
+	    assignments.remove(token);
+	    removeFromIndex(assignmentsByDevice, assignment.getDeviceHardwareId(), token);
+	    removeFromIndex(assignmentsBySite, assignment.getSiteToken(), token);
+	    streams.remove(token);
+	} else {
+	    assignment.setDeleted(true);
+	}
+	return assignment;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.IDeviceManagement#getDeviceForAssignment(com.
+     * sitewhere.spi.device.IDeviceAssignment)
+     */
+    @Override
+    public IDevice getDeviceForAssignment(IDeviceAssignment assignment) throws SiteWhereException {
+	return getDeviceByHardwareId(assignment.getDeviceHardwareId());
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.IDeviceManagement#getSiteForAssignment(com.
+     * sitewhere.spi.device.IDeviceAssignment)
+     */
+    @Override
+    public ISite getSiteForAssignment(IDeviceAssignment assignment) throws SiteWhereException {
+	return getSiteByToken(assignment.getSiteToken());
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.IDeviceManagement#updateDeviceAssignmentMetadata
+     * (java.lang.String, com.sitewhere.spi.common.IMetadataProvider)
+     */
+    @Override
+    public synchronized IDeviceAssignment updateDeviceAssignmentMetadata(String token, IMetadataProvider metadata)
+	    throws SiteWhereException {
+	DeviceAssignment assignment = assertDeviceAssignment(token);
+	assignment.clearMetadata();
+	MetadataProvider.copy(metadata, assignment);
+	SiteWherePersistence.setUpdatedEntityMetadata(assignment);
+	return assignment;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.IDeviceManagement#updateDeviceAssignmentStatus(
+     * java.lang.String, com.sitewhere.spi.device.DeviceAssignmentStatus)
+     */
+    @Override
+    public IDeviceAssignment updateDeviceAssignmentStatus(String token, DeviceAssignmentStatus status)
+	    throws SiteWhereException {
+	DeviceAssignment assignment = assertDeviceAssignment(token);
+	assignment.setStatus(status);
+	return assignment;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.IDeviceManagement#updateDeviceAssignmentState(
+     * java.lang.String, com.sitewhere.spi.device.IDeviceAssignmentState)
+     */
+    @Override
+    public IDeviceAssignment updateDeviceAssignmentState(String token, IDeviceAssignmentState state)
+	    throws SiteWhereException {
+	DeviceAssignment assignment = assertDeviceAssignment(token);
+	assignment.setState(DeviceAssignmentState.copy(state));
+	return assignment;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.IDeviceManagement#endDeviceAssignment(java.lang.
+     * String)
+     */
+    @Override
+    public synchronized IDeviceAssignment endDeviceAssignment(String token) throws SiteWhereException {
+	DeviceAssignment assignment = assertDeviceAssignment(token);
+	assignment.setReleasedDate(new Date());
+	assignment.setStatus(DeviceAssignmentStatus.Released);
+
+	// Remove device assignment reference.
+	Device device = devices.get(assignment.getDeviceHardwareId());
+	if ((device != null) && (token.equals(device.getAssignmentToken()))) {
+	    device.setAssignmentToken(null);
+	}
+	return assignment;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.IDeviceManagement#getDeviceAssignmentHistory(
+     * java.lang.String, com.sitewhere.spi.search.ISearchCriteria)
+     */
+    @Override
+    public ISearchResults<IDeviceAssignment> getDeviceAssignmentHistory(String hardwareId, ISearchCriteria criteria)
+	    throws SiteWhereException {
+	List<IDeviceAssignment> matches = new ArrayList<IDeviceAssignment>();
+	for (DeviceAssignment assignment : getIndexed(assignmentsByDevice, hardwareId)) {
+	    matches.add(assignment);
+	}
+	return MemoryPersistence.search(matches, ACTIVE_DATE_DESCENDING, criteria);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.IDeviceManagement#getDeviceAssignmentsForSite(
+     * java.lang.String,
+     * com.sitewhere.spi.search.device.IAssignmentSearchCriteria)
+     */
+    @Override
+    public ISearchResults<IDeviceAssignment> getDeviceAssignmentsForSite(String siteToken,
+	    IAssignmentSearchCriteria criteria) throws SiteWhereException {
+	List<IDeviceAssignment> matches = new ArrayList<IDeviceAssignment>();
+	for (DeviceAssignment assignment : getIndexed(assignmentsBySite, siteToken)) {
+	    if ((criteria.getStatus() == null) || (criteria.getStatus() == assignment.getStatus())) {
+		matches.add(assignment);
+	    }
+	}
+	return MemoryPersistence.search(matches, ACTIVE_DATE_DESCENDING, criteria);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.IDeviceManagement#
+     * getDeviceAssignmentsWithLastInteraction(java.lang.String,
+     * com.sitewhere.spi.search.IDateRangeSearchCriteria)
+     */
+    @Override
+    public ISearchResults<IDeviceAssignment> getDeviceAssignmentsWithLastInteraction(String siteToken,
+	    IDateRangeSearchCriteria dates) throws SiteWhereException {
+	if ((dates.getStartDate() == null) && (dates.getEndDate() == null)) {
+	    throw new SiteWhereException("No date criteria specified.");
+	}
+	List<IDeviceAssignment> matches = new ArrayList<IDeviceAssignment>();
+	for (DeviceAssignment assignment : getIndexed(assignmentsBySite, siteToken)) {
+	    IDeviceAssignmentState state = assignment.getState();
+	    if ((state != null) && (state.getLastInteractionDate() != null)
+		    && (MemoryPersistence.isInDateRange(state.getLastInteractionDate(), dates))) {
+		matches.add(assignment);
+	    }
+	}
+
+	// Only pass paging critieria. Dates apply to last interaction not
+	// create date.
+	SearchCriteria criteria = new SearchCriteria(dates.getPageNumber(), dates.getPageSize());
+	return MemoryPersistence.search(matches, ACTIVE_DATE_DESCENDING, criteria);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.IDeviceManagement#getMissingDeviceAssignments(
+     * java.lang.String, com.sitewhere.spi.search.ISearchCriteria)
+     */
+    @Override
+    public ISearchResults<IDeviceAssignment> getMissingDeviceAssignments(String siteToken, ISearchCriteria criteria)
+	    throws SiteWhereException {
+	List<IDeviceAssignment> matches = new ArrayList<IDeviceAssignment>();
+	for (DeviceAssignment assignment : getIndexed(assignmentsBySite, siteToken)) {
+	    IDeviceAssignmentState state = assignment.getState();
+	    if ((state != null) && (state.getPresenceMissingDate() != null)) {
+		matches.add(assignment);
+	    }
+	}
+	return MemoryPersistence.search(matches, ACTIVE_DATE_DESCENDING, criteria);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.IDeviceManagement#getDeviceAssignmentsForAsset(
+     * java.lang.String, java.lang.String,
+     * com.sitewhere.spi.search.device.IAssignmentsForAssetSearchCriteria)
+     */
+    @Override
+    public ISearchResults<IDeviceAssignment> getDeviceAssignmentsForAsset(String assetModuleId, String assetId,
+	    IAssignmentsForAssetSearchCriteria criteria) throws SiteWhereException {
+	Iterable<DeviceAssignment> candidates = (criteria.getSiteToken() != null)
+		? getIndexed(assignmentsBySite, criteria.getSiteToken()) : assignments.values();
+	List<IDeviceAssignment> matches = new ArrayList<IDeviceAssignment>();
+	for (DeviceAssignment assignment : candidates) {
+	    if (!assetModuleId.equals(assignment.getAssetModuleId()) || !assetId.equals(assignment.getAssetId())) {
+		continue;
+	    }
+	    if ((criteria.getStatus() != null) && (criteria.getStatus() != assignment.getStatus())) {
+		continue;
+	    }
+	    matches.add(assignment);
+	}
+	return MemoryPersistence.search(matches, ACTIVE_DATE_DESCENDING, criteria);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.IDeviceManagement#createDeviceStream(java.lang.
+     * String,
+     * com.sitewhere.spi.device.event.request.IDeviceStreamCreateRequest)
+     */
+    @Override
+    public IDeviceStream createDeviceStream(String assignmentToken, IDeviceStreamCreateRequest request)
+	    throws SiteWhereException {
+	IDeviceAssignment assignment = assertDeviceAssignment(assignmentToken);
+	DeviceStream stream = SiteWherePersistence.deviceStreamCreateLogic(assignment, request);
+	ConcurrentMap<String, DeviceStream> forAssignment = streams.get(assignmentToken);
+	if (forAssignment == null) {
+	    ConcurrentMap<String, DeviceStream> created = new ConcurrentHashMap<String, DeviceStream>();
+	    forAssignment = streams.putIfAbsent(assignmentToken, created);
+	    if (forAssignment == null) {
+		forAssignment = created;
+	    }
+	}
+	MemoryPersistence.insert(forAssignment, stream.getStreamId(), stream, ErrorCode.DuplicateStreamId);
+	return stream;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.IDeviceManagement#getDeviceStream(java.lang.
+     * String, java.lang.String)
+     */
+    @Override
+    public IDeviceStream getDeviceStream(String assignmentToken, String streamId) throws SiteWhereException {
+	ConcurrentMap<String, DeviceStream> forAssignment = streams.get(assignmentToken);
+	return (forAssignment != null) ? forAssignment.get(streamId) : null;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.IDeviceManagement#listDeviceStreams(java.lang.
+     * String, com.sitewhere.spi.search.ISearchCriteria)
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public ISearchResults<IDeviceStream> listDeviceStreams(String assignmentToken, ISearchCriteria criteria)
+	    throws SiteWhereException {
+	ConcurrentMap<String, DeviceStream> forAssignment = streams.get(assignmentToken);
+	List<IDeviceStream> matches = new ArrayList<IDeviceStream>();
+	if (forAssignment != null) {
+	    matches.addAll(forAssignment.values());
+	}
+	return MemoryPersistence.search(matches, MemoryPersistence.CREATED_DATE_DESCENDING, criteria);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.IDeviceManagement#createSite(com.sitewhere.spi.
+     * device.request.ISiteCreateRequest)
+     */
+    @Override
+    public ISite createSite(ISiteCreateRequest request) throws SiteWhereException {
+	Site site = SiteWherePersistence.siteCreateLogic(request);
+	MemoryPersistence.insert(sites, site.getToken(), site, ErrorCode.DeuplicateSiteToken);
+	return site;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.IDeviceManagement#deleteSite(java.lang.
+     * String, boolean)
+     */
+    @Override
+    public synchronized ISite deleteSite(String siteToken, boolean force) throws SiteWhereException {
+	Site site = MemoryPersistence.assertExists(sites, siteToken, ErrorCode.InvalidSiteToken);
+	if (force) {
+	    sites.remove(siteToken);
+	} else {
+	    site.setDeleted(true);
+	}
+	return site;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.IDeviceManagement#updateSite(java.lang.String,
+     * com.sitewhere.spi.device.request.ISiteCreateRequest)
+     */
+    @Override
+    public synchronized ISite updateSite(String siteToken, ISiteCreateRequest request) throws SiteWhereException {
+	Site site = MemoryPersistence.assertExists(sites, siteToken, ErrorCode.InvalidSiteToken);
+	SiteWherePersistence.siteUpdateLogic(request, site);
+	return site;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.IDeviceManagement#getSiteByToken(java.lang.
+     * String)
+     */
+    @Override
+    public ISite getSiteByToken(String token) throws SiteWhereException {
+	return sites.get(token);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.IDeviceManagement#listSites(com.sitewhere.
+     * spi.search.ISearchCriteria)
+     */
+    @Override
+    public ISearchResults<ISite> listSites(ISearchCriteria criteria) throws SiteWhereException {
+	List<ISite> matches = new ArrayList<ISite>(sites.values());
+	return MemoryPersistence.search(matches, new Comparator<ISite>() {
+
+	    @Override
+	    public int compare(ISite first, ISite second) {
+		return StringUtils.defaultString(first.getName()).compareTo(StringUtils.defaultString(second.getName()));
+	    }
+	}, criteria);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.IDeviceManagement#createZone(com.sitewhere.
+     * spi.device.ISite, com.sitewhere.spi.device.request.IZoneCreateRequest)
+     */
+    @Override
+    public IZone createZone(ISite site, IZoneCreateRequest request) throws SiteWhereException {
+	Zone zone = SiteWherePersistence.zoneCreateLogic(request, site.getToken(), UUID.randomUUID().toString());
+	MemoryPersistence.insert(zones, zone.getToken(), zone, ErrorCode.DuplicateZoneToken);
+	return zone;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.IDeviceManagement#updateZone(java.lang.String,
+     * com.sitewhere.spi.device.request.IZoneCreateRequest)
+     */
+    @Override
+    public synchronized IZone updateZone(String token, IZoneCreateRequest request) throws SiteWhereException {
+	Zone zone = MemoryPersistence.assertExists(zones, token, ErrorCode.InvalidZoneToken);
+	SiteWherePersistence.zoneUpdateLogic(request, zone);
+	return zone;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.IDeviceManagement#getZone(java.lang.String)
+     */
+    @Override
+    public IZone getZone(String zoneToken) throws SiteWhereException {
+	return zones.get(zoneToken);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.IDeviceManagement#listZones(java.lang.String,
+     * com.sitewhere.spi.search.ISearchCriteria)
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public ISearchResults<IZone> listZones(String siteToken, ISearchCriteria criteria) throws SiteWhereException {
+	List<IZone> matches = new ArrayList<IZone>();
+	for (Zone zone : zones.values()) {
+	    if (zone.getSiteToken().equals(siteToken)) {
+		matches.add(zone);
+	    }
+	}
+	return MemoryPersistence.search(matches, MemoryPersistence.CREATED_DATE_DESCENDING, criteria);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.IDeviceManagement#deleteZone(java.lang.String,
+     * boolean)
+     */
+    @Override
+    public synchronized IZone deleteZone(String zoneToken, boolean force) throws SiteWhereException {
+	Zone zone = MemoryPersistence.assertExists(zones, zoneToken, ErrorCode.InvalidZoneToken);
+	if (force) {
+	    zones.remove(zoneToken);
+	} else {
+	    zone.setDeleted(true);
+	}
+	return zone;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.IDeviceManagement#createDeviceGroup(com.sitewhere
+     * .spi.device.request.IDeviceGroupCreateRequest)
+     */
+    @Override
+    public IDeviceGroup createDeviceGroup(IDeviceGroupCreateRequest request) throws SiteWhereException {
+	String uuid = ((request.getToken() != null) ? request.getToken() : UUID.randomUUID().toString());
+	DeviceGroup group = SiteWherePersistence.deviceGroupCreateLogic(request, uuid);
+	MemoryPersistence.insert(groups, uuid, group, ErrorCode.DuplicateDeviceGroupToken);
+	groupIndexes.putIfAbsent(uuid, new AtomicLong());
+	groupElements.putIfAbsent(uuid, new ConcurrentSkipListMap<Long, DeviceGroupElement>());
+	return group;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.IDeviceManagement#updateDeviceGroup(java.lang.
+     * String, com.sitewhere.spi.device.request.IDeviceGroupCreateRequest)
+     */
+    @Override
+    public synchronized IDeviceGroup updateDeviceGroup(String token, IDeviceGroupCreateRequest request)
+	    throws SiteWhereException {
+	DeviceGroup group = MemoryPersistence.assertExists(groups, token, ErrorCode.InvalidDeviceGroupToken);
+	SiteWherePersistence.deviceGroupUpdateLogic(request, group);
+	return group;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.IDeviceManagement#getDeviceGroup(java.lang.
+     * String)
+     */
+    @Override
+    public IDeviceGroup getDeviceGroup(String token) throws SiteWhereException {
+	return groups.get(token);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.IDeviceManagement#listDeviceGroups(boolean,
+     * com.sitewhere.spi.search.ISearchCriteria)
+     */
+    @Override
+    public ISearchResults<IDeviceGroup> listDeviceGroups(boolean includeDeleted, ISearchCriteria criteria)
+	    throws SiteWhereException {
+	return listDeviceGroupsWithRole(null, includeDeleted, criteria);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.IDeviceManagement#listDeviceGroupsWithRole(java.
+     * lang.String, boolean, com.sitewhere.spi.search.ISearchCriteria)
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public ISearchResults<IDeviceGroup> listDeviceGroupsWithRole(String role, boolean includeDeleted,
+	    ISearchCriteria criteria) throws SiteWhereException {
+	List<IDeviceGroup> matches = new ArrayList<IDeviceGroup>();
+	for (DeviceGroup group : groups.values()) {
+	    if (!includeDeleted && group.isDeleted()) {
+		continue;
+	    }
+	    if ((role != null) && ((group.getRoles() == null) || !group.getRoles().contains(role))) {
+		continue;
+	    }
+	    matches.add(group);
+	}
+	return MemoryPersistence.search(matches, MemoryPersistence.CREATED_DATE_DESCENDING, criteria);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.IDeviceManagement#deleteDeviceGroup(java.lang.
+     * String, boolean)
+     */
+    @Override
+    public synchronized IDeviceGroup deleteDeviceGroup(String token, boolean force) throws SiteWhereException {
+	DeviceGroup group = MemoryPersistence.assertExists(groups, token, ErrorCode.InvalidDeviceGroupToken);
+	if (force) {
+	    groups.remove(token);
+	    groupElements.remove(token);
+	    groupIndexes.remove(token);
+	} else {
+	    group.setDeleted(true);
+	}
+	return group;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.IDeviceManagement#addDeviceGroupElements(java.
+     * lang.String, java.util.List, boolean)
+     */
+    @Override
+    public synchronized List<IDeviceGroupElement> addDeviceGroupElements(String groupToken,
+	    List<IDeviceGroupElementCreateRequest> elements, boolean ignoreDuplicates) throws SiteWhereException {
+	MemoryPersistence.assertExists(groups, groupToken, ErrorCode.InvalidDeviceGroupToken);
+	ConcurrentSkipListMap<Long, DeviceGroupElement> existing = groupElements.get(groupToken);
+	AtomicLong lastIndex = groupIndexes.get(groupToken);
+	List<IDeviceGroupElement> results = new ArrayList<IDeviceGroupElement>();
+	for (IDeviceGroupElementCreateRequest request : elements) {
+	    if (findGroupElement(existing, request) != null) {
+		if (!ignoreDuplicates) {
+		    throw new ResourceExistsException(ErrorCode.DuplicateId);
+		}
+		continue;
+	    }
+	    long index = lastIndex.incrementAndGet();
+	    DeviceGroupElement element = SiteWherePersistence.deviceGroupElementCreateLogic(request, groupToken, index);
+	    existing.put(index, element);
+	    results.add(element);
+	}
+	return results;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.IDeviceManagement#removeDeviceGroupElements(java
+     * .lang.String, java.util.List)
+     */
+    @Override
+    public synchronized List<IDeviceGroupElement> removeDeviceGroupElements(String groupToken,
+	    List<IDeviceGroupElementCreateRequest> elements) throws SiteWhereException {
+	List<IDeviceGroupElement> deleted = new ArrayList<IDeviceGroupElement>();
+	ConcurrentSkipListMap<Long, DeviceGroupElement> existing = groupElements.get(groupToken);
+	if (existing == null) {
+	    return deleted;
+	}
+	for (IDeviceGroupElementCreateRequest request : elements) {
+	    DeviceGroupElement match = findGroupElement(existing, request);
+	    if (match != null) {
+		existing.remove(match.getIndex());
+		deleted.add(match);
+	    }
+	}
+	return deleted;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.IDeviceManagement#listDeviceGroupElements(java.
+     * lang.String, com.sitewhere.spi.search.ISearchCriteria)
+     */
+    @Override
+    public ISearchResults<IDeviceGroupElement> listDeviceGroupElements(String groupToken, ISearchCriteria criteria)
+	    throws SiteWhereException {
+	ConcurrentSkipListMap<Long, DeviceGroupElement> existing = groupElements.get(groupToken);
+	List<IDeviceGroupElement> matches = new ArrayList<IDeviceGroupElement>();
+	if (existing != null) {
+	    matches.addAll(existing.values());
+	}
+	return MemoryPersistence.search(matches, null, criteria);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.IDeviceManagement#createBatchOperation(com.
+     * sitewhere.spi.device.request.IBatchOperationCreateRequest)
+     */
+    @Override
+    public synchronized IBatchOperation createBatchOperation(IBatchOperationCreateRequest request)
+	    throws SiteWhereException {
+	String uuid = ((request.getToken() != null) ? request.getToken() : UUID.randomUUID().toString());
+	BatchOperation batch = SiteWherePersistence.batchOperationCreateLogic(request, uuid);
+	MemoryPersistence.insert(batchOperations, uuid, batch, ErrorCode.DuplicateBatchOperationToken);
+
+	// Insert element for each hardware id.
+	ConcurrentSkipListMap<Long, BatchElement> elements = new ConcurrentSkipListMap<Long, BatchElement>();
+	long index = 0;
+	for (String hardwareId : request.getHardwareIds()) {
+	    BatchElement element = SiteWherePersistence.batchElementCreateLogic(uuid, hardwareId, ++index);
+	    elements.put(index, element);
+	}
+	batchElements.put(uuid, elements);
+	return batch;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.IDeviceManagement#updateBatchOperation(java.lang
+     * .String, com.sitewhere.spi.device.request.IBatchOperationUpdateRequest)
+     */
+    @Override
+    public synchronized IBatchOperation updateBatchOperation(String token, IBatchOperationUpdateRequest request)
+	    throws SiteWhereException {
+	BatchOperation operation = MemoryPersistence.assertExists(batchOperations, token,
+		ErrorCode.InvalidBatchOperationToken);
+	SiteWherePersistence.batchOperationUpdateLogic(request, operation);
+	return operation;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.IDeviceManagement#getBatchOperation(java.lang.
+     * String)
+     */
+    @Override
+    public IBatchOperation getBatchOperation(String token) throws SiteWhereException {
+	return batchOperations.get(token);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.IDeviceManagement#listBatchOperations(boolean,
+     * com.sitewhere.spi.search.ISearchCriteria)
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public ISearchResults<IBatchOperation> listBatchOperations(boolean includeDeleted, ISearchCriteria criteria)
+	    throws SiteWhereException {
+	List<IBatchOperation> matches = new ArrayList<IBatchOperation>();
+	for (BatchOperation operation : batchOperations.values()) {
+	    if (includeDeleted || !operation.isDeleted()) {
+		matches.add(operation);
+	    }
+	}
+	return MemoryPersistence.search(matches, MemoryPersistence.CREATED_DATE_DESCENDING, criteria);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.IDeviceManagement#deleteBatchOperation(java.lang
+     * .String, boolean)
+     */
+    @Override
+    public synchronized IBatchOperation deleteBatchOperation(String token, boolean force)
+	    throws SiteWhereException {
+	BatchOperation operation = MemoryPersistence.assertExists(batchOperations, token,
+		ErrorCode.InvalidBatchOperationToken);
+	if (force) {
+	    batchOperations.remove(token);
+	    batchElements.remove(token);
+	} else {
+	    operation.setDeleted(true);
+	}
+	return operation;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.IDeviceManagement#listBatchElements(java.lang.
+     * String, com.sitewhere.spi.search.device.IBatchElementSearchCriteria)
+     */
+    @Override
+    public ISearchResults<IBatchElement> listBatchElements(String batchToken, IBatchElementSearchCriteria criteria)
+	    throws SiteWhereException {
+	ConcurrentSkipListMap<Long, BatchElement> elements = batchElements.get(batchToken);
+	List<IBatchElement> matches = new ArrayList<IBatchElement>();
+	if (elements != null) {
+	    for (BatchElement element : elements.values()) {
+		if ((criteria.getProcessingStatus() == null)
+			|| (criteria.getProcessingStatus() == element.getProcessingStatus())) {
+		    matches.add(element);
+		}
+	    }
+	}
+	return MemoryPersistence.search(matches, null, criteria);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.IDeviceManagement#updateBatchElement(java.lang.
+     * String, long, com.sitewhere.spi.device.request.IBatchElementUpdateRequest)
+     */
+    @Override
+    public IBatchElement updateBatchElement(String operationToken, long index, IBatchElementUpdateRequest request)
+	    throws SiteWhereException {
+	ConcurrentSkipListMap<Long, BatchElement> elements = batchElements.get(operationToken);
+	BatchElement element = (elements != null) ? elements.get(index) : null;
+	if (element == null) {
+	    throw new SiteWhereSystemException(ErrorCode.InvalidBatchElement, ErrorLevel.ERROR);
+	}
+	synchronized (element) {
+	    SiteWherePersistence.batchElementUpdateLogic(request, element);
+	}
+	return element;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.IDeviceManagement#createBatchCommandInvocation(
+     * com.sitewhere.spi.device.request.IBatchCommandInvocationRequest)
+     */
+    @Override
+    public IBatchOperation createBatchCommandInvocation(IBatchCommandInvocationRequest request)
+	    throws SiteWhereException {
+	String uuid = ((request.getToken() != null) ? request.getToken() : UUID.randomUUID().toString());
+	IBatchOperationCreateRequest generic = SiteWherePersistence.batchCommandInvocationCreateLogic(request, uuid);
+	return createBatchOperation(generic);
+    }
+
+    /**
+     * Find an existing group element that matches the given request.
+     * 
+     * @param existing
+     * @param request
+     * @return
+     */
+    protected DeviceGroupElement findGroupElement(ConcurrentSkipListMap<Long, DeviceGroupElement> existing,
+	    IDeviceGroupElementCreateRequest request) {
+	for (DeviceGroupElement element : existing.values()) {
+	    if ((element.getType() == request.getType()) && (element.getElementId().equals(request.getElementId()))) {
+		return element;
+	    }
+	}
+	return null;
+    }
+
+    /**
+     * Add an assignment token to a secondary index.
+     * 
+     * @param index
+     * @param key
+     * @param token
+     */
+    protected void addToIndex(ConcurrentMap<String, Set<String>> index, String key, String token) {
+	if (key == null) {
+	    return;
+	}
+	Set<String> tokens = index.get(key);
+	if (tokens == null) {
+	    Set<String> created = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+	    tokens = index.putIfAbsent(key, created);
+	    if (tokens == null) {
+		tokens = created;
+	    }
+	}
+	tokens.add(token);
+    }
+
+    /**
+     * Remove an assignment token from a secondary index.
+     * 
+     * @param index
+     * @param key
+     * @param token
+     */
+    protected void removeFromIndex(ConcurrentMap<String, Set<String>> index, String key, String token) {
+	if (key == null) {
+	    return;
+	}
+	Set<String> tokens = index.get(key);
+	if (tokens != null) {
+	    tokens.remove(token);
+	}
+    }
+
+    /**
+     * Get the assignments referenced by a secondary index entry.
+     * 
+     * @param index
+     * @param key
+     * @return
+     */
+    protected List<DeviceAssignment> getIndexed(ConcurrentMap<String, Set<String>> index, String key) {
+	List<DeviceAssignment> results = new ArrayList<DeviceAssignment>();
+	Set<String> tokens = (key != null) ? index.get(key) : null;
+	if (tokens != null) {
+	    for (String token : tokens) {
+		DeviceAssignment assignment = assignments.get(token);
+		if (assignment != null) {
+		    results.add(assignment);
+		}
+	    }
+	}
+	return results;
+    }
+
+    /**
+     * Get a device or throw an exception if not found.
+     * 
+     * @param hardwareId
+     * @return
+     * @throws SiteWhereException
+     */
+    protected Device assertDevice(String hardwareId) throws SiteWhereException {
+	Device device = (hardwareId != null) ? devices.get(hardwareId) : null;
+	if (device == null) {
+	    throw new SiteWhereSystemException(ErrorCode.InvalidHardwareId, ErrorLevel.INFO);
+	}
+	return device;
+    }
+
+    /**
+     * Get a device assignment or throw an exception if not found.
+     * 
+     * @param token
+     * @return
+     * @throws SiteWhereException
+     */
+    protected DeviceAssignment assertDeviceAssignment(String token) throws SiteWhereException {
+	return MemoryPersistence.assertExists(assignments, token, ErrorCode.InvalidDeviceAssignmentToken);
+    }
+}
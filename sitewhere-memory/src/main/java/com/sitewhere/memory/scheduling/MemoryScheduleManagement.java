@@ -0,0 +1,224 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.memory.scheduling;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.sitewhere.core.SiteWherePersistence;
+import com.sitewhere.memory.MemoryPersistence;
+import com.sitewhere.rest.model.scheduling.Schedule;
+import com.sitewhere.rest.model.scheduling.ScheduledJob;
+import com.sitewhere.server.lifecycle.TenantLifecycleComponent;
+import com.sitewhere.spi.SiteWhereException;
+import com.sitewhere.spi.error.ErrorCode;
+import com.sitewhere.spi.scheduling.ISchedule;
+import com.sitewhere.spi.scheduling.IScheduleManagement;
+import com.sitewhere.spi.scheduling.IScheduledJob;
+import com.sitewhere.spi.scheduling.request.IScheduleCreateRequest;
+import com.sitewhere.spi.scheduling.request.IScheduledJobCreateRequest;
+import com.sitewhere.spi.search.ISearchCriteria;
+import com.sitewhere.spi.search.ISearchResults;
+import com.sitewhere.spi.server.lifecycle.LifecycleComponentType;
+
+/**
+ * Schedule management implementation that keeps all data in memory. Data is
+ * not retained when the tenant is stopped.
+ * 
+ * @author Derek
+ */
+public class MemoryScheduleManagement extends TenantLifecycleComponent implements IScheduleManagement {
+
+    /** Static logger instance */
+    private static Logger LOGGER = LogManager.getLogger();
+
+    /** Schedules by token */
+    private ConcurrentMap<String, Schedule> schedules = new ConcurrentHashMap<String, Schedule>();
+
+    /** Scheduled jobs by token */
+    private ConcurrentMap<String, ScheduledJob> jobs = new ConcurrentHashMap<String, ScheduledJob>();
+
+    public MemoryScheduleManagement() {
+	super(LifecycleComponentType.DataStore);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.server.lifecycle.ILifecycleComponent#getLogger()
+     */
+    @Override
+    public Logger getLogger() {
+	return LOGGER;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.scheduling.IScheduleManagement#createSchedule(com.
+     * sitewhere.spi.scheduling.request.IScheduleCreateRequest)
+     */
+    @Override
+    public ISchedule createSchedule(IScheduleCreateRequest request) throws SiteWhereException {
+	String uuid = ((request.getToken() != null) ? request.getToken() : UUID.randomUUID().toString());
+	Schedule schedule = SiteWherePersistence.scheduleCreateLogic(request, uuid);
+	MemoryPersistence.insert(schedules, uuid, schedule, ErrorCode.DuplicateScheduleToken);
+	return schedule;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.scheduling.IScheduleManagement#updateSchedule(java.lang
+     * .String, com.sitewhere.spi.scheduling.request.IScheduleCreateRequest)
+     */
+    @Override
+    public synchronized ISchedule updateSchedule(String token, IScheduleCreateRequest request)
+	    throws SiteWhereException {
+	Schedule schedule = MemoryPersistence.assertExists(schedules, token, ErrorCode.InvalidScheduleToken);
+	SiteWherePersistence.scheduleUpdateLogic(schedule, request);
+	return schedule;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.scheduling.IScheduleManagement#getScheduleByToken(java.
+     * lang.String)
+     */
+    @Override
+    public ISchedule getScheduleByToken(String token) throws SiteWhereException {
+	return schedules.get(token);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.scheduling.IScheduleManagement#listSchedules(com.
+     * sitewhere.spi.search.ISearchCriteria)
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public ISearchResults<ISchedule> listSchedules(ISearchCriteria criteria) throws SiteWhereException {
+	List<ISchedule> matches = new ArrayList<ISchedule>();
+	for (Schedule schedule : schedules.values()) {
+	    if (!schedule.isDeleted()) {
+		matches.add(schedule);
+	    }
+	}
+	return MemoryPersistence.search(matches, MemoryPersistence.CREATED_DATE_DESCENDING, criteria);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.scheduling.IScheduleManagement#deleteSchedule(java.lang
+     * .String, boolean)
+     */
+    @Override
+    public synchronized ISchedule deleteSchedule(String token, boolean force) throws SiteWhereException {
+	Schedule schedule = MemoryPersistence.assertExists(schedules, token, ErrorCode.InvalidScheduleToken);
+	if (force) {
+	    schedules.remove(token);
+	} else {
+	    schedule.setDeleted(true);
+	}
+	return schedule;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.scheduling.IScheduleManagement#createScheduledJob(com.
+     * sitewhere.spi.scheduling.request.IScheduledJobCreateRequest)
+     */
+    @Override
+    public IScheduledJob createScheduledJob(IScheduledJobCreateRequest request) throws SiteWhereException {
+	String uuid = ((request.getToken() != null) ? request.getToken() : UUID.randomUUID().toString());
+	ScheduledJob job = SiteWherePersistence.scheduledJobCreateLogic(request, uuid);
+	MemoryPersistence.insert(jobs, uuid, job, ErrorCode.DuplicateScheduledJobToken);
+	return job;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.scheduling.IScheduleManagement#updateScheduledJob(java.
+     * lang.String,
+     * com.sitewhere.spi.scheduling.request.IScheduledJobCreateRequest)
+     */
+    @Override
+    public synchronized IScheduledJob updateScheduledJob(String token, IScheduledJobCreateRequest request)
+	    throws SiteWhereException {
+	ScheduledJob job = MemoryPersistence.assertExists(jobs, token, ErrorCode.InvalidScheduledJobToken);
+	SiteWherePersistence.scheduledJobUpdateLogic(job, request);
+	return job;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.scheduling.IScheduleManagement#getScheduledJobByToken(
+     * java.lang.String)
+     */
+    @Override
+    public IScheduledJob getScheduledJobByToken(String token) throws SiteWhereException {
+	return jobs.get(token);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.scheduling.IScheduleManagement#listScheduledJobs(com.
+     * sitewhere.spi.search.ISearchCriteria)
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public ISearchResults<IScheduledJob> listScheduledJobs(ISearchCriteria criteria) throws SiteWhereException {
+	List<IScheduledJob> matches = new ArrayList<IScheduledJob>();
+	for (ScheduledJob job : jobs.values()) {
+	    if (!job.isDeleted()) {
+		matches.add(job);
+	    }
+	}
+	return MemoryPersistence.search(matches, MemoryPersistence.CREATED_DATE_DESCENDING, criteria);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.scheduling.IScheduleManagement#deleteScheduledJob(java.
+     * lang.String, boolean)
+     */
+    @Override
+    public synchronized IScheduledJob deleteScheduledJob(String token, boolean force) throws SiteWhereException {
+	ScheduledJob job = MemoryPersistence.assertExists(jobs, token, ErrorCode.InvalidScheduledJobToken);
+	if (force) {
+	    jobs.remove(token);
+	} else {
+	    job.setDeleted(true);
+	}
+	return job;
+    }
+}
@@ -50,6 +50,9 @@ public interface IDeviceManagementMongoClient {
     /** Default collection name for SiteWhere device streams data */
     public static final String DEFAULT_DEVICE_STREAM_DATA_COLLECTION_NAME = "streamdata";
 
+    /** Default collection name for SiteWhere measurement rollups */
+    public static final String DEFAULT_MEASUREMENT_ROLLUPS_COLLECTION_NAME = "rollups";
+
     /** Default collection name for SiteWhere batch operations */
     public static final String DEFAULT_BATCH_OPERATIONS_COLLECTION_NAME = "batchoperations";
 
@@ -78,6 +81,8 @@ public interface IDeviceManagementMongoClient {
 
     public DBCollection getStreamDataCollection(ITenant tenant);
 
+    public DBCollection getMeasurementRollupsCollection(ITenant tenant);
+
     public DBCollection getBatchOperationsCollection(ITenant tenant);
 
     public DBCollection getBatchOperationElementsCollection(ITenant tenant);
@@ -101,6 +101,37 @@ public class MongoPersistence {
 	}
     }
 
+    /**
+     * Insert a group of events with a single call to the database, taking into
+     * account whether the device management implementation in configured for
+     * bulk operations.
+     * 
+     * @param collection
+     * @param objects
+     * @param bulk
+     * @param buffer
+     * @throws SiteWhereException
+     */
+    public static void insertEvents(DBCollection collection, List<DBObject> objects, boolean bulk,
+	    IDeviceEventBuffer buffer) throws SiteWhereException {
+	if (objects.isEmpty()) {
+	    return;
+	}
+	try {
+	    if (bulk) {
+		for (DBObject object : objects) {
+		    buffer.add(object);
+		}
+	    } else {
+		collection.insert(objects);
+	    }
+	} catch (MongoCommandException e) {
+	    throw new SiteWhereException("Error during MongoDB insert.", e);
+	} catch (MongoTimeoutException e) {
+	    throw new SiteWhereException("Connection to MongoDB lost.", e);
+	}
+    }
+
     /**
      * Common handler for updating existing objects. Assures that errors are
      * handled in a consistent way.
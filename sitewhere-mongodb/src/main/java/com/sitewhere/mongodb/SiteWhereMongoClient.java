@@ -103,6 +103,9 @@ public class SiteWhereMongoClient extends TenantLifecycleComponent
     /** Injected name used for device stream data collection */
     private String streamDataCollectionName = IDeviceManagementMongoClient.DEFAULT_DEVICE_STREAM_DATA_COLLECTION_NAME;
 
+    /** Injected name used for measurement rollups collection */
+    private String measurementRollupsCollectionName = IDeviceManagementMongoClient.DEFAULT_MEASUREMENT_ROLLUPS_COLLECTION_NAME;
+
     /** Injected name used for batch operations collection */
     private String batchOperationsCollectionName = IDeviceManagementMongoClient.DEFAULT_BATCH_OPERATIONS_COLLECTION_NAME;
 
@@ -206,6 +209,7 @@ public class SiteWhereMongoClient extends TenantLifecycleComponent
 	messages.add("Zones collection name: " + getZonesCollectionName());
 	messages.add("Events collection name: " + getEventsCollectionName());
 	messages.add("Streams collection name: " + getStreamsCollectionName());
+	messages.add("Measurement rollups collection name: " + getMeasurementRollupsCollectionName());
 	messages.add("Batch operations collection name: " + getBatchOperationsCollectionName());
 	messages.add("Batch operation elements collection name: " + getBatchOperationElementsCollectionName());
 	messages.add("");
@@ -391,6 +395,16 @@ public class SiteWhereMongoClient extends TenantLifecycleComponent
 	return getTenantDatabase(tenant).getCollection(getStreamDataCollectionName());
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.mongodb.IDeviceManagementMongoClient#
+     * getMeasurementRollupsCollection(com.sitewhere.spi.user.ITenant)
+     */
+    public DBCollection getMeasurementRollupsCollection(ITenant tenant) {
+	return getTenantDatabase(tenant).getCollection(getMeasurementRollupsCollectionName());
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -658,6 +672,14 @@ public class SiteWhereMongoClient extends TenantLifecycleComponent
 	this.streamDataCollectionName = streamDataCollectionName;
     }
 
+    public String getMeasurementRollupsCollectionName() {
+	return measurementRollupsCollectionName;
+    }
+
+    public void setMeasurementRollupsCollectionName(String measurementRollupsCollectionName) {
+	this.measurementRollupsCollectionName = measurementRollupsCollectionName;
+    }
+
     public String getBatchOperationsCollectionName() {
 	return batchOperationsCollectionName;
     }
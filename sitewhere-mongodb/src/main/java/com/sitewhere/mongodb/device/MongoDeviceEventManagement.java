@@ -8,24 +8,34 @@
 package com.sitewhere.mongodb.device;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.bson.types.ObjectId;
 
+import com.mongodb.AggregationOptions;
 import com.mongodb.BasicDBObject;
+import com.mongodb.BulkWriteOperation;
+import com.mongodb.Cursor;
 import com.mongodb.DBCollection;
 import com.mongodb.DBCursor;
 import com.mongodb.DBObject;
+import com.mongodb.MongoException;
 import com.mongodb.MongoTimeoutException;
 import com.sitewhere.core.SiteWherePersistence;
 import com.sitewhere.device.AssignmentStateManager;
+import com.sitewhere.device.charting.ChartDownsampler;
+import com.sitewhere.device.charting.ChartSeriesCollector;
 import com.sitewhere.mongodb.IDeviceManagementMongoClient;
 import com.sitewhere.mongodb.MongoPersistence;
 import com.sitewhere.rest.model.device.event.DeviceAlert;
 import com.sitewhere.rest.model.device.event.DeviceCommandInvocation;
 import com.sitewhere.rest.model.device.event.DeviceCommandResponse;
+import com.sitewhere.rest.model.device.event.DeviceEventBatchResponse;
 import com.sitewhere.rest.model.device.event.DeviceLocation;
 import com.sitewhere.rest.model.device.event.DeviceMeasurements;
 import com.sitewhere.rest.model.device.event.DeviceStateChange;
@@ -37,6 +47,8 @@ import com.sitewhere.spi.SiteWhereSystemException;
 import com.sitewhere.spi.device.IAssignmentStateManager;
 import com.sitewhere.spi.device.IDeviceAssignment;
 import com.sitewhere.spi.device.IDeviceManagement;
+import com.sitewhere.spi.device.charting.ChartAggregation;
+import com.sitewhere.spi.device.charting.ISampledChartSeries;
 import com.sitewhere.spi.device.command.IDeviceCommand;
 import com.sitewhere.spi.device.event.DeviceEventType;
 import com.sitewhere.spi.device.event.IDeviceAlert;
@@ -57,10 +69,13 @@ import com.sitewhere.spi.device.event.request.IDeviceLocationCreateRequest;
 import com.sitewhere.spi.device.event.request.IDeviceMeasurementsCreateRequest;
 import com.sitewhere.spi.device.event.request.IDeviceStateChangeCreateRequest;
 import com.sitewhere.spi.device.event.request.IDeviceStreamDataCreateRequest;
+import com.sitewhere.spi.device.event.rollup.IMeasurementRollup;
+import com.sitewhere.spi.device.event.rollup.RollupResolution;
 import com.sitewhere.spi.error.ErrorCode;
 import com.sitewhere.spi.error.ErrorLevel;
 import com.sitewhere.spi.search.IDateRangeSearchCriteria;
 import com.sitewhere.spi.search.ISearchResults;
+import com.sitewhere.spi.search.device.IChartSeriesSearchCriteria;
 import com.sitewhere.spi.server.lifecycle.ILifecycleProgressMonitor;
 import com.sitewhere.spi.server.lifecycle.LifecycleComponentType;
 
@@ -74,6 +89,9 @@ public class MongoDeviceEventManagement extends TenantLifecycleComponent impleme
     /** Static logger instance */
     private static Logger LOGGER = LogManager.getLogger();
 
+    /** Number of documents fetched per batch when streaming chart values */
+    private static final int CHART_STREAM_BATCH_SIZE = 1000;
+
     /** Injected with global SiteWhere Mongo client */
     private IDeviceManagementMongoClient mongoClient;
 
@@ -152,9 +170,59 @@ public class MongoDeviceEventManagement extends TenantLifecycleComponent impleme
 	getMongoClient().getEventsCollection(getTenant())
 		.createIndex(new BasicDBObject(MongoDeviceEvent.PROP_DEVICE_ASSIGNMENT_TOKEN, 1)
 			.append(MongoDeviceEvent.PROP_EVENT_DATE, -1).append(MongoDeviceEvent.PROP_EVENT_TYPE, 1));
+	// Site queries match on type and sort by date, so type comes before date
+	// to let the index serve the range, the sort and the count.
+	dropIndex(getMongoClient().getEventsCollection(getTenant()),
+		new BasicDBObject(MongoDeviceEvent.PROP_SITE_TOKEN, 1).append(MongoDeviceEvent.PROP_EVENT_DATE, -1)
+			.append(MongoDeviceEvent.PROP_EVENT_TYPE, 1));
 	getMongoClient().getEventsCollection(getTenant())
 		.createIndex(new BasicDBObject(MongoDeviceEvent.PROP_SITE_TOKEN, 1)
-			.append(MongoDeviceEvent.PROP_EVENT_DATE, -1).append(MongoDeviceEvent.PROP_EVENT_TYPE, 1));
+			.append(MongoDeviceEvent.PROP_EVENT_TYPE, 1).append(MongoDeviceEvent.PROP_EVENT_DATE, -1)
+			.append(MongoDeviceEvent.PROP_RECEIVED_DATE, -1));
+	getMongoClient().getMeasurementRollupsCollection(getTenant())
+		.createIndex(new BasicDBObject(MongoMeasurementRollup.PROP_ASSIGNMENT_TOKEN, 1)
+			.append(MongoMeasurementRollup.PROP_INTERVAL_MS, 1)
+			.append(MongoMeasurementRollup.PROP_BUCKET_START, 1)
+			.append(MongoMeasurementRollup.PROP_MEASUREMENT_ID, 1), new BasicDBObject("unique", true));
+    }
+
+    /**
+     * Drop an index that has been replaced, if it still exists.
+     * 
+     * @param collection
+     * @param keys
+     */
+    protected void dropIndex(DBCollection collection, DBObject keys) {
+	for (DBObject index : collection.getIndexInfo()) {
+	    if (isSameKeys(keys, (DBObject) index.get("key"))) {
+		LOGGER.info("Dropping replaced index '" + index.get("name") + "' from " + collection.getName() + ".");
+		collection.dropIndex((String) index.get("name"));
+		return;
+	    }
+	}
+    }
+
+    /**
+     * Compare index keys in order. Directions are compared numerically since
+     * indexes created from the shell store them as doubles.
+     * 
+     * @param expected
+     * @param actual
+     * @return
+     */
+    protected boolean isSameKeys(DBObject expected, DBObject actual) {
+	if ((actual == null) || (expected.keySet().size() != actual.keySet().size())) {
+	    return false;
+	}
+	Iterator<String> actualKeys = actual.keySet().iterator();
+	for (String key : expected.keySet()) {
+	    String other = actualKeys.next();
+	    if ((!key.equals(other)) || (!(actual.get(other) instanceof Number))
+		    || (((Number) expected.get(key)).intValue() != ((Number) actual.get(other)).intValue())) {
+		return false;
+	    }
+	}
+	return true;
     }
 
     /*
@@ -177,7 +245,64 @@ public class MongoDeviceEventManagement extends TenantLifecycleComponent impleme
     @Override
     public IDeviceEventBatchResponse addDeviceEventBatch(String assignmentToken, IDeviceEventBatch batch)
 	    throws SiteWhereException {
-	return SiteWherePersistence.deviceEventBatchLogic(assignmentToken, batch, this);
+	IDeviceAssignment assignment = assertApiDeviceAssignment(assignmentToken);
+	List<DBObject> measurements = new ArrayList<DBObject>();
+	List<Boolean> measurementsState = new ArrayList<Boolean>();
+	for (IDeviceMeasurementsCreateRequest request : batch.getMeasurements()) {
+	    DeviceMeasurements mxs = SiteWherePersistence.deviceMeasurementsCreateLogic(request, assignment);
+	    measurements.add(MongoDeviceMeasurements.toDBObject(mxs, false));
+	    measurementsState.add(request.isUpdateState());
+	}
+	List<DBObject> locations = new ArrayList<DBObject>();
+	List<Boolean> locationsState = new ArrayList<Boolean>();
+	for (IDeviceLocationCreateRequest request : batch.getLocations()) {
+	    DeviceLocation location = SiteWherePersistence.deviceLocationCreateLogic(assignment, request);
+	    locations.add(MongoDeviceLocation.toDBObject(location, false));
+	    locationsState.add(request.isUpdateState());
+	}
+	List<DBObject> alerts = new ArrayList<DBObject>();
+	List<Boolean> alertsState = new ArrayList<Boolean>();
+	for (IDeviceAlertCreateRequest request : batch.getAlerts()) {
+	    DeviceAlert alert = SiteWherePersistence.deviceAlertCreateLogic(assignment, request);
+	    alerts.add(MongoDeviceAlert.toDBObject(alert, false));
+	    alertsState.add(request.isUpdateState());
+	}
+
+	// Insert all events for the batch in a single call.
+	List<DBObject> all = new ArrayList<DBObject>(measurements.size() + locations.size() + alerts.size());
+	all.addAll(measurements);
+	all.addAll(locations);
+	all.addAll(alerts);
+	DBCollection events = getMongoClient().getEventsCollection(getTenant());
+	MongoPersistence.insertEvents(events, all, isUseBulkEventInserts(), getEventBuffer());
+
+	DeviceEventBatchResponse response = new DeviceEventBatchResponse();
+	List<IDeviceEvent> state = new ArrayList<IDeviceEvent>();
+	for (int i = 0; i < measurements.size(); i++) {
+	    DeviceMeasurements mxs = MongoDeviceMeasurements.fromDBObject(measurements.get(i), false);
+	    response.getCreatedMeasurements().add(mxs);
+	    if (measurementsState.get(i)) {
+		state.add(mxs);
+	    }
+	}
+	for (int i = 0; i < locations.size(); i++) {
+	    DeviceLocation location = MongoDeviceLocation.fromDBObject(locations.get(i), false);
+	    response.getCreatedLocations().add(location);
+	    if (locationsState.get(i)) {
+		state.add(location);
+	    }
+	}
+	for (int i = 0; i < alerts.size(); i++) {
+	    DeviceAlert alert = MongoDeviceAlert.fromDBObject(alerts.get(i), false);
+	    response.getCreatedAlerts().add(alert);
+	    if (alertsState.get(i)) {
+		state.add(alert);
+	    }
+	}
+
+	// Merge assignment state updates for the whole batch.
+	getAssignmentStateManager().addEvents(assignmentToken, state);
+	return response;
     }
 
     /*
@@ -293,6 +418,269 @@ public class MongoDeviceEventManagement extends TenantLifecycleComponent impleme
 	return MongoPersistence.search(IDeviceMeasurements.class, events, query, sort, criteria);
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.event.IDeviceEventManagement#
+     * listDeviceMeasurementsSeries(java.lang.String,
+     * com.sitewhere.spi.search.device.IChartSeriesSearchCriteria)
+     */
+    @Override
+    public List<ISampledChartSeries> listDeviceMeasurementsSeries(String assignmentToken,
+	    IChartSeriesSearchCriteria criteria) throws SiteWhereException {
+	try {
+	    DBCollection events = getMongoClient().getEventsCollection(getTenant());
+	    BasicDBObject query = new BasicDBObject(MongoDeviceEvent.PROP_DEVICE_ASSIGNMENT_TOKEN, assignmentToken)
+		    .append(MongoDeviceEvent.PROP_EVENT_TYPE, DeviceEventType.Measurements.name());
+	    MongoPersistence.addDateSearchCriteria(query, MongoDeviceEvent.PROP_EVENT_DATE, criteria);
+
+	    // LTTB works on raw values, so stream them and downsample in memory.
+	    if (ChartDownsampler.getAggregations(criteria).contains(ChartAggregation.Lttb)) {
+		return streamMeasurementsSeries(events, query, criteria);
+	    }
+	    return aggregateMeasurementsSeries(events, query, criteria);
+	} catch (MongoTimeoutException e) {
+	    throw new SiteWhereException("Connection to MongoDB lost.", e);
+	}
+    }
+
+    /**
+     * Calculate bucketed chart series with an aggregation pipeline so that
+     * only one document per measurement and bucket is returned.
+     * 
+     * @param events
+     * @param query
+     * @param criteria
+     * @return
+     */
+    protected List<ISampledChartSeries> aggregateMeasurementsSeries(DBCollection events, BasicDBObject query,
+	    IChartSeriesSearchCriteria criteria) {
+	ChartSeriesCollector collector = new ChartSeriesCollector();
+	long width = getMeasurementsBucketWidth(events, query, criteria);
+	if (width == 0) {
+	    return collector.build();
+	}
+
+	String name = "$" + MongoDeviceMeasurements.PROP_MEASUREMENTS + "." + MongoDeviceMeasurements.PROP_NAME;
+	String value = "$" + MongoDeviceMeasurements.PROP_MEASUREMENTS + "." + MongoDeviceMeasurements.PROP_VALUE;
+	BasicDBObject millis = new BasicDBObject("$subtract",
+		Arrays.<Object> asList("$" + MongoDeviceEvent.PROP_EVENT_DATE, new Date(0)));
+	BasicDBObject bucket = new BasicDBObject("$subtract",
+		Arrays.<Object> asList(millis, new BasicDBObject("$mod", Arrays.<Object> asList(millis, width))));
+	BasicDBObject group = new BasicDBObject("_id",
+		new BasicDBObject(MongoDeviceMeasurements.PROP_NAME, name).append("bucket", bucket));
+	List<ChartAggregation> aggregations = ChartDownsampler.getAggregations(criteria);
+	for (ChartAggregation aggregation : aggregations) {
+	    group.append(aggregation.name(), new BasicDBObject(getAggregationOperator(aggregation), value));
+	}
+
+	List<DBObject> pipeline = new ArrayList<DBObject>();
+	pipeline.add(new BasicDBObject("$match", query));
+	pipeline.add(new BasicDBObject("$sort", new BasicDBObject(MongoDeviceEvent.PROP_EVENT_DATE, 1)));
+	pipeline.add(new BasicDBObject("$unwind", "$" + MongoDeviceMeasurements.PROP_MEASUREMENTS));
+	if ((criteria.getMeasurementIds() != null) && (!criteria.getMeasurementIds().isEmpty())) {
+	    pipeline.add(new BasicDBObject("$match",
+		    new BasicDBObject(name.substring(1), new BasicDBObject("$in", criteria.getMeasurementIds()))));
+	}
+	pipeline.add(new BasicDBObject("$group", group));
+
+	AggregationOptions options = AggregationOptions.builder().outputMode(AggregationOptions.OutputMode.CURSOR)
+		.allowDiskUse(true).build();
+	Cursor cursor = events.aggregate(pipeline, options);
+	try {
+	    while (cursor.hasNext()) {
+		DBObject match = cursor.next();
+		DBObject id = (DBObject) match.get("_id");
+		String measurementId = (String) id.get(MongoDeviceMeasurements.PROP_NAME);
+		long timestamp = ((Number) id.get("bucket")).longValue();
+		for (ChartAggregation aggregation : aggregations) {
+		    Number result = (Number) match.get(aggregation.name());
+		    if (result != null) {
+			collector.add(measurementId, aggregation, timestamp, result.doubleValue());
+		    }
+		}
+	    }
+	} finally {
+	    cursor.close();
+	}
+	return collector.build();
+    }
+
+    /**
+     * Stream raw measurement values in date order into a
+     * {@link ChartDownsampler}. Only the fields needed for charting are
+     * loaded.
+     * 
+     * @param events
+     * @param query
+     * @param criteria
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    protected List<ISampledChartSeries> streamMeasurementsSeries(DBCollection events, BasicDBObject query,
+	    IChartSeriesSearchCriteria criteria) {
+	ChartDownsampler downsampler = new ChartDownsampler(criteria);
+	BasicDBObject fields = new BasicDBObject(MongoDeviceEvent.PROP_EVENT_DATE, 1)
+		.append(MongoDeviceMeasurements.PROP_MEASUREMENTS, 1);
+	DBCursor cursor = events.find(query, fields).sort(new BasicDBObject(MongoDeviceEvent.PROP_EVENT_DATE, 1))
+		.batchSize(CHART_STREAM_BATCH_SIZE);
+	try {
+	    while (cursor.hasNext()) {
+		DBObject match = cursor.next();
+		Date eventDate = (Date) match.get(MongoDeviceEvent.PROP_EVENT_DATE);
+		List<DBObject> props = (List<DBObject>) match.get(MongoDeviceMeasurements.PROP_MEASUREMENTS);
+		if ((eventDate == null) || (props == null)) {
+		    continue;
+		}
+		for (DBObject prop : props) {
+		    String measurementId = (String) prop.get(MongoDeviceMeasurements.PROP_NAME);
+		    Number value = (Number) prop.get(MongoDeviceMeasurements.PROP_VALUE);
+		    if ((value != null) && (downsampler.includes(measurementId))) {
+			downsampler.add(measurementId, eventDate.getTime(), value.doubleValue());
+		    }
+		}
+	    }
+	} finally {
+	    cursor.close();
+	}
+	return downsampler.build();
+    }
+
+    /**
+     * Get bucket width for a chart query. If the criteria does not fix the
+     * width, the first and last matching event dates are looked up so that
+     * the data fits the requested number of points. Returns zero if no events
+     * match.
+     * 
+     * @param events
+     * @param query
+     * @param criteria
+     * @return
+     */
+    protected long getMeasurementsBucketWidth(DBCollection events, BasicDBObject query,
+	    IChartSeriesSearchCriteria criteria) {
+	if (ChartDownsampler.isBucketWidthFixed(criteria)) {
+	    return ChartDownsampler.getBucketWidth(criteria, 0, 0);
+	}
+	Date first = getMeasurementsDateBound(events, query, 1);
+	if (first == null) {
+	    return 0;
+	}
+	Date last = getMeasurementsDateBound(events, query, -1);
+	return ChartDownsampler.getBucketWidth(criteria, first.getTime(), last.getTime());
+    }
+
+    /**
+     * Get earliest (direction 1) or latest (direction -1) event date matching
+     * a query.
+     * 
+     * @param events
+     * @param query
+     * @param direction
+     * @return
+     */
+    protected Date getMeasurementsDateBound(DBCollection events, BasicDBObject query, int direction) {
+	DBCursor cursor = events.find(query, new BasicDBObject(MongoDeviceEvent.PROP_EVENT_DATE, 1))
+		.sort(new BasicDBObject(MongoDeviceEvent.PROP_EVENT_DATE, direction)).limit(1);
+	try {
+	    return cursor.hasNext() ? (Date) cursor.next().get(MongoDeviceEvent.PROP_EVENT_DATE) : null;
+	} finally {
+	    cursor.close();
+	}
+    }
+
+    /**
+     * Get the pipeline group operator for a chart aggregation.
+     * 
+     * @param aggregation
+     * @return
+     */
+    protected static String getAggregationOperator(ChartAggregation aggregation) {
+	switch (aggregation) {
+	case Min: {
+	    return "$min";
+	}
+	case Max: {
+	    return "$max";
+	}
+	case Last: {
+	    return "$last";
+	}
+	default: {
+	    return "$avg";
+	}
+	}
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.event.IDeviceEventManagement#addMeasurementRollups
+     * (java.util.List)
+     */
+    @Override
+    public void addMeasurementRollups(List<IMeasurementRollup> rollups) throws SiteWhereException {
+	if (rollups.isEmpty()) {
+	    return;
+	}
+	try {
+	    // Ordered so that the 'last' update sees the upserted bucket.
+	    DBCollection collection = getMongoClient().getMeasurementRollupsCollection(getTenant());
+	    BulkWriteOperation op = collection.initializeOrderedBulkOperation();
+	    for (IMeasurementRollup rollup : rollups) {
+		BasicDBObject query = MongoMeasurementRollup.toBucketQuery(rollup);
+		BasicDBObject update = new BasicDBObject("$inc",
+			new BasicDBObject(MongoMeasurementRollup.PROP_COUNT, rollup.getCount())
+				.append(MongoMeasurementRollup.PROP_SUM, rollup.getSum()))
+					.append("$min", new BasicDBObject(MongoMeasurementRollup.PROP_MIN, rollup.getMin()))
+					.append("$max", new BasicDBObject(MongoMeasurementRollup.PROP_MAX, rollup.getMax()));
+		op.find(query).upsert().updateOne(update);
+
+		BasicDBObject newer = MongoMeasurementRollup.toBucketQuery(rollup).append(
+			MongoMeasurementRollup.PROP_LAST_DATE,
+			new BasicDBObject("$not", new BasicDBObject("$gt", rollup.getLastDate())));
+		op.find(newer).updateOne(new BasicDBObject("$set",
+			new BasicDBObject(MongoMeasurementRollup.PROP_LAST, rollup.getLast())
+				.append(MongoMeasurementRollup.PROP_LAST_DATE, rollup.getLastDate())));
+	    }
+	    op.execute();
+	} catch (MongoTimeoutException e) {
+	    throw new SiteWhereException("Connection to MongoDB lost.", e);
+	} catch (MongoException e) {
+	    throw new SiteWhereException("Error saving measurement rollups.", e);
+	}
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.event.IDeviceEventManagement#
+     * listMeasurementRollups(java.lang.String,
+     * com.sitewhere.spi.device.event.rollup.RollupResolution,
+     * com.sitewhere.spi.search.IDateRangeSearchCriteria)
+     */
+    @Override
+    public ISearchResults<IMeasurementRollup> listMeasurementRollups(String assignmentToken,
+	    RollupResolution resolution, IDateRangeSearchCriteria criteria) throws SiteWhereException {
+	DBCollection collection = getMongoClient().getMeasurementRollupsCollection(getTenant());
+	BasicDBObject query = new BasicDBObject(MongoMeasurementRollup.PROP_ASSIGNMENT_TOKEN, assignmentToken)
+		.append(MongoMeasurementRollup.PROP_INTERVAL_MS, resolution.getIntervalMs());
+	if ((criteria.getStartDate() != null) || (criteria.getEndDate() != null)) {
+	    BasicDBObject range = new BasicDBObject();
+	    if (criteria.getStartDate() != null) {
+		range.append("$gte", new Date(resolution.getBucketStart(criteria.getStartDate().getTime())));
+	    }
+	    if (criteria.getEndDate() != null) {
+		range.append("$lte", criteria.getEndDate());
+	    }
+	    query.append(MongoMeasurementRollup.PROP_BUCKET_START, range);
+	}
+	BasicDBObject sort = new BasicDBObject(MongoMeasurementRollup.PROP_BUCKET_START, 1)
+		.append(MongoMeasurementRollup.PROP_MEASUREMENT_ID, 1);
+	return MongoPersistence.search(IMeasurementRollup.class, collection, query, sort, criteria);
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -506,6 +894,38 @@ public class MongoDeviceEventManagement extends TenantLifecycleComponent impleme
 	return MongoPersistence.search(IDeviceStreamData.class, events, query, sort, criteria);
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.device.event.IDeviceEventManagement#
+     * getDeviceStreamDataRange(java.lang.String, java.lang.String, long, int)
+     */
+    @Override
+    public List<IDeviceStreamData> getDeviceStreamDataRange(String assignmentToken, String streamId,
+	    long firstSequenceNumber, int maxChunks) throws SiteWhereException {
+	DBCursor cursor = null;
+	try {
+	    DBCollection events = getMongoClient().getEventsCollection(getTenant());
+	    BasicDBObject query = new BasicDBObject(MongoDeviceEvent.PROP_DEVICE_ASSIGNMENT_TOKEN, assignmentToken)
+		    .append(MongoDeviceStreamData.PROP_STREAM_ID, streamId)
+		    .append(MongoDeviceStreamData.PROP_SEQUENCE_NUMBER,
+			    new BasicDBObject("$gte", firstSequenceNumber));
+	    BasicDBObject sort = new BasicDBObject(MongoDeviceStreamData.PROP_SEQUENCE_NUMBER, 1);
+	    cursor = events.find(query).sort(sort).limit(maxChunks).batchSize(maxChunks);
+	    List<IDeviceStreamData> results = new ArrayList<IDeviceStreamData>(maxChunks);
+	    while (cursor.hasNext()) {
+		results.add(MongoDeviceStreamData.fromDBObject(cursor.next(), false));
+	    }
+	    return results;
+	} catch (MongoTimeoutException e) {
+	    throw new SiteWhereException("Connection to MongoDB lost.", e);
+	} finally {
+	    if (cursor != null) {
+		cursor.close();
+	    }
+	}
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -43,6 +43,7 @@ import com.sitewhere.rest.model.search.SearchResults;
 import com.sitewhere.server.lifecycle.TenantLifecycleComponent;
 import com.sitewhere.spi.SiteWhereException;
 import com.sitewhere.spi.SiteWhereSystemException;
+import com.sitewhere.spi.cache.ICacheLoader;
 import com.sitewhere.spi.common.IMetadataProvider;
 import com.sitewhere.spi.device.DeviceAssignmentStatus;
 import com.sitewhere.spi.device.ICachingDeviceManagement;
@@ -221,18 +222,29 @@ public class MongoDeviceManagement extends TenantLifecycleComponent
     @Override
     public IDeviceSpecification getDeviceSpecificationByToken(String token) throws SiteWhereException {
 	if (getCacheProvider() != null) {
-	    IDeviceSpecification cached = getCacheProvider().getDeviceSpecificationCache().get(token);
-	    if (cached != null) {
-		return cached;
-	    }
+	    return getCacheProvider().getDeviceSpecificationCache().get(token,
+		    new ICacheLoader<String, IDeviceSpecification>() {
+
+			@Override
+			public IDeviceSpecification load(String key) throws SiteWhereException {
+			    return loadDeviceSpecification(key);
+			}
+		    });
 	}
+	return loadDeviceSpecification(token);
+    }
+
+    /**
+     * Load a device specification from the datastore without using the cache.
+     * 
+     * @param token
+     * @return
+     * @throws SiteWhereException
+     */
+    protected IDeviceSpecification loadDeviceSpecification(String token) throws SiteWhereException {
 	DBObject dbSpecification = getDeviceSpecificationDBObjectByToken(token);
 	if (dbSpecification != null) {
-	    IDeviceSpecification result = MongoDeviceSpecification.fromDBObject(dbSpecification);
-	    if ((getCacheProvider() != null) && (result != null)) {
-		getCacheProvider().getDeviceSpecificationCache().put(token, result);
-	    }
-	    return result;
+	    return MongoDeviceSpecification.fromDBObject(dbSpecification);
 	}
 	return null;
     }
@@ -540,22 +552,73 @@ public class MongoDeviceManagement extends TenantLifecycleComponent
     @Override
     public IDevice getDeviceByHardwareId(String hardwareId) throws SiteWhereException {
 	if (getCacheProvider() != null) {
-	    IDevice cached = getCacheProvider().getDeviceCache().get(hardwareId);
-	    if (cached != null) {
-		return cached;
-	    }
+	    return getCacheProvider().getDeviceCache().get(hardwareId, new ICacheLoader<String, IDevice>() {
+
+		@Override
+		public IDevice load(String key) throws SiteWhereException {
+		    return loadDevice(key);
+		}
+	    });
 	}
+	return loadDevice(hardwareId);
+    }
+
+    /**
+     * Load a device from the datastore without using the cache.
+     * 
+     * @param hardwareId
+     * @return
+     * @throws SiteWhereException
+     */
+    protected IDevice loadDevice(String hardwareId) throws SiteWhereException {
 	DBObject dbDevice = getDeviceDBObjectByHardwareId(hardwareId);
 	if (dbDevice != null) {
-	    IDevice result = MongoDevice.fromDBObject(dbDevice);
-	    if ((getCacheProvider() != null) && (result != null)) {
-		getCacheProvider().getDeviceCache().put(hardwareId, result);
-	    }
-	    return result;
+	    return MongoDevice.fromDBObject(dbDevice);
 	}
 	return null;
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.IDeviceManagement#getDevicesByHardwareIds(java.
+     * util.List)
+     */
+    @Override
+    public List<IDevice> getDevicesByHardwareIds(List<String> hardwareIds) throws SiteWhereException {
+	List<IDevice> results = new ArrayList<IDevice>();
+	List<String> missing = new ArrayList<String>();
+	for (String hardwareId : hardwareIds) {
+	    IDevice cached = (getCacheProvider() != null) ? getCacheProvider().getDeviceCache().get(hardwareId) : null;
+	    if (cached != null) {
+		results.add(cached);
+	    } else {
+		missing.add(hardwareId);
+	    }
+	}
+	if (missing.isEmpty()) {
+	    return results;
+	}
+
+	// Load all cache misses with a single query.
+	DBCollection devices = getMongoClient().getDevicesCollection(getTenant());
+	BasicDBObject query = new BasicDBObject(MongoDevice.PROP_HARDWARE_ID, new BasicDBObject("$in", missing));
+	DBCursor cursor = devices.find(query);
+	try {
+	    while (cursor.hasNext()) {
+		Device device = MongoDevice.fromDBObject(cursor.next());
+		if (getCacheProvider() != null) {
+		    getCacheProvider().getDeviceCache().put(device.getHardwareId(), device);
+		}
+		results.add(device);
+	    }
+	} finally {
+	    cursor.close();
+	}
+	return results;
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -732,22 +795,74 @@ public class MongoDeviceManagement extends TenantLifecycleComponent
     @Override
     public IDeviceAssignment getDeviceAssignmentByToken(String token) throws SiteWhereException {
 	if (getCacheProvider() != null) {
-	    IDeviceAssignment cached = getCacheProvider().getDeviceAssignmentCache().get(token);
-	    if (cached != null) {
-		return cached;
-	    }
+	    return getCacheProvider().getDeviceAssignmentCache().get(token, new ICacheLoader<String, IDeviceAssignment>() {
+
+		@Override
+		public IDeviceAssignment load(String key) throws SiteWhereException {
+		    return loadDeviceAssignment(key);
+		}
+	    });
 	}
+	return loadDeviceAssignment(token);
+    }
+
+    /**
+     * Load a device assignment from the datastore without using the cache.
+     * 
+     * @param token
+     * @return
+     * @throws SiteWhereException
+     */
+    protected IDeviceAssignment loadDeviceAssignment(String token) throws SiteWhereException {
 	DBObject dbAssignment = getDeviceAssignmentDBObjectByToken(token);
 	if (dbAssignment != null) {
-	    IDeviceAssignment result = MongoDeviceAssignment.fromDBObject(dbAssignment);
-	    if ((getCacheProvider() != null) && (result != null)) {
-		getCacheProvider().getDeviceAssignmentCache().put(token, result);
-	    }
-	    return result;
+	    return MongoDeviceAssignment.fromDBObject(dbAssignment);
 	}
 	return null;
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.device.IDeviceManagement#getDeviceAssignmentsByTokens(
+     * java.util.List)
+     */
+    @Override
+    public List<IDeviceAssignment> getDeviceAssignmentsByTokens(List<String> tokens) throws SiteWhereException {
+	List<IDeviceAssignment> results = new ArrayList<IDeviceAssignment>();
+	List<String> missing = new ArrayList<String>();
+	for (String token : tokens) {
+	    IDeviceAssignment cached = (getCacheProvider() != null)
+		    ? getCacheProvider().getDeviceAssignmentCache().get(token) : null;
+	    if (cached != null) {
+		results.add(cached);
+	    } else {
+		missing.add(token);
+	    }
+	}
+	if (missing.isEmpty()) {
+	    return results;
+	}
+
+	// Load all cache misses with a single query.
+	DBCollection assignments = getMongoClient().getDeviceAssignmentsCollection(getTenant());
+	BasicDBObject query = new BasicDBObject(MongoDeviceAssignment.PROP_TOKEN, new BasicDBObject("$in", missing));
+	DBCursor cursor = assignments.find(query);
+	try {
+	    while (cursor.hasNext()) {
+		DeviceAssignment assignment = MongoDeviceAssignment.fromDBObject(cursor.next());
+		if (getCacheProvider() != null) {
+		    getCacheProvider().getDeviceAssignmentCache().put(assignment.getToken(), assignment);
+		}
+		results.add(assignment);
+	    }
+	} finally {
+	    cursor.close();
+	}
+	return results;
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -1742,16 +1857,9 @@ public class MongoDeviceManagement extends TenantLifecycleComponent
      * @throws SiteWhereException
      */
     protected IDeviceAssignment assertApiDeviceAssignment(String token) throws SiteWhereException {
-	if (getCacheProvider() != null) {
-	    IDeviceAssignment result = getCacheProvider().getDeviceAssignmentCache().get(token);
-	    if (result != null) {
-		return result;
-	    }
-	}
-	DBObject match = assertDeviceAssignment(token);
-	IDeviceAssignment result = MongoDeviceAssignment.fromDBObject(match);
-	if ((getCacheProvider() != null) && (result != null)) {
-	    getCacheProvider().getDeviceAssignmentCache().put(token, result);
+	IDeviceAssignment result = getDeviceAssignmentByToken(token);
+	if (result == null) {
+	    throw new SiteWhereSystemException(ErrorCode.InvalidDeviceAssignmentToken, ErrorLevel.ERROR);
 	}
 	return result;
     }
@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.mongodb.device;
+
+import java.util.Date;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+import com.sitewhere.mongodb.MongoConverter;
+import com.sitewhere.rest.model.device.event.rollup.MeasurementRollup;
+import com.sitewhere.spi.device.event.rollup.IMeasurementRollup;
+
+/**
+ * Handles loading/saving {@link MeasurementRollup} objects to a MongoDB
+ * datastore.
+ * 
+ * @author Derek
+ */
+public class MongoMeasurementRollup implements MongoConverter<IMeasurementRollup> {
+
+    /** Property for assignment token */
+    public static final String PROP_ASSIGNMENT_TOKEN = "assignmentToken";
+
+    /** Property for measurement id */
+    public static final String PROP_MEASUREMENT_ID = "measurementId";
+
+    /** Property for bucket width */
+    public static final String PROP_INTERVAL_MS = "intervalMs";
+
+    /** Property for bucket start */
+    public static final String PROP_BUCKET_START = "bucketStart";
+
+    /** Property for value count */
+    public static final String PROP_COUNT = "count";
+
+    /** Property for smallest value */
+    public static final String PROP_MIN = "min";
+
+    /** Property for largest value */
+    public static final String PROP_MAX = "max";
+
+    /** Property for sum of values */
+    public static final String PROP_SUM = "sum";
+
+    /** Property for most recent value */
+    public static final String PROP_LAST = "last";
+
+    /** Property for date of most recent value */
+    public static final String PROP_LAST_DATE = "lastDate";
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.mongodb.MongoConverter#convert(java.lang.Object)
+     */
+    @Override
+    public BasicDBObject convert(IMeasurementRollup source) {
+	return MongoMeasurementRollup.toDBObject(source);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.mongodb.MongoConverter#convert(com.mongodb.DBObject)
+     */
+    @Override
+    public IMeasurementRollup convert(DBObject source) {
+	return MongoMeasurementRollup.fromDBObject(source);
+    }
+
+    /**
+     * Create the query that identifies the stored bucket for a rollup.
+     * 
+     * @param source
+     * @return
+     */
+    public static BasicDBObject toBucketQuery(IMeasurementRollup source) {
+	return new BasicDBObject(PROP_ASSIGNMENT_TOKEN, source.getAssignmentToken())
+		.append(PROP_INTERVAL_MS, source.getIntervalMs()).append(PROP_BUCKET_START, source.getBucketStart())
+		.append(PROP_MEASUREMENT_ID, source.getMeasurementId());
+    }
+
+    /**
+     * Copy information from SPI into Mongo DBObject.
+     * 
+     * @param source
+     * @param target
+     */
+    public static void toDBObject(IMeasurementRollup source, BasicDBObject target) {
+	target.putAll((DBObject) toBucketQuery(source));
+	target.append(PROP_COUNT, source.getCount());
+	target.append(PROP_MIN, source.getMin());
+	target.append(PROP_MAX, source.getMax());
+	target.append(PROP_SUM, source.getSum());
+	target.append(PROP_LAST, source.getLast());
+	target.append(PROP_LAST_DATE, source.getLastDate());
+    }
+
+    /**
+     * Copy information from Mongo DBObject to model object.
+     * 
+     * @param source
+     * @param target
+     */
+    public static void fromDBObject(DBObject source, MeasurementRollup target) {
+	target.setAssignmentToken((String) source.get(PROP_ASSIGNMENT_TOKEN));
+	target.setMeasurementId((String) source.get(PROP_MEASUREMENT_ID));
+	target.setIntervalMs(getLong(source, PROP_INTERVAL_MS));
+	target.setBucketStart((Date) source.get(PROP_BUCKET_START));
+	target.setCount(getLong(source, PROP_COUNT));
+	target.setMin(getDouble(source, PROP_MIN));
+	target.setMax(getDouble(source, PROP_MAX));
+	target.setSum(getDouble(source, PROP_SUM));
+	target.setLast(getDouble(source, PROP_LAST));
+	target.setLastDate((Date) source.get(PROP_LAST_DATE));
+    }
+
+    /**
+     * Read a numeric field as a long.
+     * 
+     * @param source
+     * @param field
+     * @return
+     */
+    protected static long getLong(DBObject source, String field) {
+	Number value = (Number) source.get(field);
+	return (value != null) ? value.longValue() : 0;
+    }
+
+    /**
+     * Read a numeric field as a double.
+     * 
+     * @param source
+     * @param field
+     * @return
+     */
+    protected static double getDouble(DBObject source, String field) {
+	Number value = (Number) source.get(field);
+	return (value != null) ? value.doubleValue() : 0;
+    }
+
+    /**
+     * Convert SPI object to Mongo DBObject.
+     * 
+     * @param source
+     * @return
+     */
+    public static BasicDBObject toDBObject(IMeasurementRollup source) {
+	BasicDBObject result = new BasicDBObject();
+	MongoMeasurementRollup.toDBObject(source, result);
+	return result;
+    }
+
+    /**
+     * Convert a DBObject into the SPI equivalent.
+     * 
+     * @param source
+     * @return
+     */
+    public static MeasurementRollup fromDBObject(DBObject source) {
+	MeasurementRollup result = new MeasurementRollup();
+	MongoMeasurementRollup.fromDBObject(source, result);
+	return result;
+    }
+}
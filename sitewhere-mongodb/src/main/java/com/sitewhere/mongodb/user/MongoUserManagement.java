@@ -151,20 +151,25 @@ public class MongoUserManagement extends LifecycleComponent implements IUserMana
 	String inPassword = SiteWherePersistence.encodePassword(password);
 	User match = MongoUser.fromDBObject(userObj);
 	if (!match.getHashedPassword().equals(inPassword)) {
-	    LOGGER.info("User: " + username + " Password: " + password + " " + inPassword + " != "
-		    + match.getHashedPassword());
+	    LOGGER.info("Invalid password supplied for user: " + username);
 	    throw new SiteWhereSystemException(ErrorCode.InvalidPassword, ErrorLevel.ERROR,
 		    HttpServletResponse.SC_UNAUTHORIZED);
 	}
+	return match;
+    }
 
-	// Update last login date.
-	match.setLastLogin(new Date());
-	DBObject updated = MongoUser.toDBObject(match);
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.user.IUserManagement#updateLastLogin(java.lang.String,
+     * java.util.Date)
+     */
+    public void updateLastLogin(String username, Date lastLogin) throws SiteWhereException {
 	DBCollection users = getMongoClient().getUsersCollection();
 	BasicDBObject query = new BasicDBObject(MongoUser.PROP_USERNAME, username);
-	MongoPersistence.update(users, query, updated);
-
-	return match;
+	BasicDBObject update = new BasicDBObject("$set", new BasicDBObject(MongoUser.PROP_LAST_LOGIN, lastLogin));
+	MongoPersistence.update(users, query, update);
     }
 
     /*
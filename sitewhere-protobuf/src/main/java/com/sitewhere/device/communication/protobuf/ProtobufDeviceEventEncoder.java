@@ -193,7 +193,9 @@ public class ProtobufDeviceEventEncoder implements IDeviceEventEncoder<byte[]> {
 	    IDeviceRegistrationRequest request = (IDeviceRegistrationRequest) decoded.getRequest();
 	    SiteWhere.RegisterDevice.Builder register = SiteWhere.RegisterDevice.newBuilder();
 	    register.setHardwareId(request.getHardwareId());
-	    register.setSiteToken(request.getSiteToken());
+	    if (request.getSiteToken() != null) {
+		register.setSiteToken(request.getSiteToken());
+	    }
 	    register.setSpecificationToken(request.getSpecificationToken());
 
 	    ByteArrayOutputStream out = new ByteArrayOutputStream();
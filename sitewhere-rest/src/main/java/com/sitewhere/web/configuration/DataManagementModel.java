@@ -29,6 +29,7 @@ public class DataManagementModel extends ConfigurationModel {
 	addElement(createMongoTenantDatastoreElement());
 	addElement(createMongoInfluxDbTenantDatastoreElement());
 	addElement(createHBaseTenantDatastoreElement());
+	addElement(createMemoryTenantDatastoreElement());
 
 	// Cache implementations.
 	addElement(createHazelcastCacheElement());
@@ -108,6 +109,10 @@ public class DataManagementModel extends ConfigurationModel {
 	builder.attribute((new AttributeNode.Builder("Log level", "logLevel", AttributeType.String)
 		.description("Log level for debugging InfluxDB interactions.").group("conn").choice("none")
 		.choice("basic").choice("headers").choice("full").defaultValue("none").build()));
+	builder.attribute((new AttributeNode.Builder("Count search totals", "countTotals", AttributeType.Boolean)
+		.description("Query total number of matches for event searches. Disable to skip the count "
+			+ "query issued for each page of results.")
+		.group("conn").defaultValue("true").build()));
 
 	builder.attributeGroup("batch", "InfluxDB Batch Event Processing");
 	builder.attribute((new AttributeNode.Builder("Enable batch processing", "enableBatch", AttributeType.Boolean)
@@ -134,6 +139,35 @@ public class DataManagementModel extends ConfigurationModel {
 	builder.description("Store tenant data using tables in an HBase instance. Note that the "
 		+ "global datastore must be configured to use HBase if this tenant datastore is to "
 		+ "be used. Most core HBase settings are configured at the global level.");
+	builder.attribute((new AttributeNode.Builder("Columnar measurements", "columnarMeasurements",
+		AttributeType.Boolean)
+			.description("Store measurements in compressed series rows with one row per assignment "
+				+ "per hour rather than as one payload per event.")
+			.defaultValue("false").build()));
+	builder.attribute((new AttributeNode.Builder("Compaction delay (ms)", "measurementCompactionDelayMs",
+		AttributeType.Integer)
+			.description("Number of milliseconds a series row must go without writes before its "
+				+ "values are compacted.")
+			.defaultValue("60000").build()));
+	return builder.build();
+    }
+
+    /**
+     * Create element configuration for in-memory tenant datastore.
+     * 
+     * @return
+     */
+    protected ElementNode createMemoryTenantDatastoreElement() {
+	ElementNode.Builder builder = new ElementNode.Builder("In-Memory Tenant Datastore",
+		TenantDatastoreParser.Elements.MemoryTenantDatastore.getLocalName(), "database",
+		ElementRole.DataManagement_Datastore);
+	builder.description("Store tenant data in memory. Useful for load testing and capacity planning "
+		+ "since no external database is required. Data is lost when the tenant is stopped.");
+	builder.attribute((new AttributeNode.Builder("Max events per assignment", "maxEventsPerAssignment",
+		AttributeType.Integer)
+			.description("Maximum number of events kept for each device assignment. Oldest events "
+				+ "are discarded once the limit is reached. Use zero to keep all events.")
+			.defaultValue("0").build()));
 	return builder.build();
     }
 
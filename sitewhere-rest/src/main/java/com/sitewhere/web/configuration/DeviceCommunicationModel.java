@@ -40,6 +40,7 @@ public class DeviceCommunicationModel extends ConfigurationModel {
 	addElement(createHazelcastQueueEventSourceElement());
 	addElement(createPollingRestEventSourceElement());
 	addElement(createCoapServerEventSourceElement());
+	addElement(createLoadGeneratorEventSourceElement());
 
 	// Socket event source.
 	addElement(createReadAllSocketInteractionHandlerElement());
@@ -453,6 +454,61 @@ public class DeviceCommunicationModel extends ConfigurationModel {
 	return builder.build();
     }
 
+    /**
+     * Create element configuration for load generator event source.
+     * 
+     * @return
+     */
+    protected ElementNode createLoadGeneratorEventSourceElement() {
+	ElementNode.Builder builder = new ElementNode.Builder("Load Generator Event Source",
+		EventSourcesParser.Elements.LoadGeneratorEventSource.getLocalName(), "tachometer",
+		ElementRole.EventSources_EventSource);
+
+	builder.description("Event source that simulates a fleet of devices for load and soak testing. Devices "
+		+ "register and then send a mix of measurements, locations and alerts at the configured rate.");
+	addEventSourceAttributes(builder);
+
+	builder.attribute((new AttributeNode.Builder("Device count", "deviceCount", AttributeType.Integer)
+		.description("Number of simulated devices.").defaultValue("100").build()));
+	builder.attribute((new AttributeNode.Builder("Specification tokens", "specificationTokens",
+		AttributeType.String).description("Comma-separated list of specification tokens assigned to devices.")
+			.makeRequired().build()));
+	builder.attribute((new AttributeNode.Builder("Site", "siteToken", AttributeType.SiteReference)
+		.description("Site passed when registering devices.").build()));
+	builder.attribute((new AttributeNode.Builder("Hardware id prefix", "hardwareIdPrefix", AttributeType.String)
+		.description("Prefix for simulated hardware ids.").defaultValue("loadgen-").build()));
+	builder.attribute((new AttributeNode.Builder("Events per second", "eventsPerSecond", AttributeType.Integer)
+		.description("Aggregate number of events sent per second across all devices.").defaultValue("100")
+		.build()));
+	builder.attribute((new AttributeNode.Builder("Number of threads", "numThreads", AttributeType.Integer)
+		.description("Number of threads used to generate events.").defaultValue("1").build()));
+	builder.attribute((new AttributeNode.Builder("Payload format", "payloadFormat", AttributeType.String)
+		.description("Format used to encode payloads.").choice("protobuf").choice("json")
+		.defaultValue("protobuf").build()));
+	builder.attribute((new AttributeNode.Builder("Measurements per event", "measurementsPerEvent",
+		AttributeType.Integer).description("Number of values in each measurements event.").defaultValue("3")
+			.build()));
+	builder.attribute((new AttributeNode.Builder("Measurements weight", "measurementsWeight", AttributeType.Integer)
+		.description("Relative weight of measurements events in the mix.").defaultValue("80").build()));
+	builder.attribute((new AttributeNode.Builder("Locations weight", "locationsWeight", AttributeType.Integer)
+		.description("Relative weight of location events in the mix.").defaultValue("15").build()));
+	builder.attribute((new AttributeNode.Builder("Alerts weight", "alertsWeight", AttributeType.Integer)
+		.description("Relative weight of alert events in the mix.").defaultValue("5").build()));
+	builder.attribute((new AttributeNode.Builder("Arrival distribution", "arrivalDistribution",
+		AttributeType.String).description("Distribution of time between events.").choice("constant")
+			.choice("poisson").defaultValue("constant").build()));
+	builder.attribute((new AttributeNode.Builder("Duration (seconds)", "durationSecs", AttributeType.Integer)
+		.description("Number of seconds to send events. Zero sends events until stopped.").defaultValue("0")
+		.build()));
+	builder.attribute((new AttributeNode.Builder("Register devices", "registerDevices", AttributeType.Boolean)
+		.description("Register devices before sending events.").defaultValue("true").build()));
+	builder.attribute((new AttributeNode.Builder("Registration wait (seconds)", "registrationWaitSecs",
+		AttributeType.Integer).description("Seconds to wait after registration before sending events.")
+			.defaultValue("5").build()));
+
+	return builder.build();
+    }
+
     /**
      * Create element configuration for CoAP server event source.
      * 
@@ -714,6 +770,10 @@ public class DeviceCommunicationModel extends ConfigurationModel {
 		.description("Site token used for registering new devices if auto-assign is enabled "
 			+ "and no site token is passed.")
 		.build()));
+	builder.attribute((new AttributeNode.Builder("Batch size", "batchSize", AttributeType.Integer)
+		.description("Maximum number of registration requests processed together. Values greater "
+			+ "than 1 process requests in batches on a background thread.")
+		.defaultValue("1").build()));
 	return builder.build();
     }
 
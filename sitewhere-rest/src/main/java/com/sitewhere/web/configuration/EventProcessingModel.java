@@ -49,6 +49,8 @@ public class EventProcessingModel extends ConfigurationModel {
 	addElement(createDweetEventProcessorElement());
 	addElement(createWso2CepEventProcessorElement());
 	addElement(createGroovyEventProcessorElement());
+	addElement(createMeasurementRollupEventProcessorElement());
+	addElement(createLatencyReportEventProcessorElement());
 
 	// Zone test elements.
 	addElement(createZoneTestElement());
@@ -75,11 +77,14 @@ public class EventProcessingModel extends ConfigurationModel {
 	addElement(createInboundProcessingStrategyElement());
 	addElement(createDefaultInboundStrategyElement());
 	addElement(createBlockingQueueInboundStrategyElement());
+	addElement(createJournaledInboundStrategyElement());
+	addElement(createPartitionedInboundStrategyElement());
 
 	// Outbound processing strategy.
 	addElement(createOutboundProcessingStrategyElement());
 	addElement(createDefaultOutboundStrategyElement());
 	addElement(createBlockingQueueOutboundStrategyElement());
+	addElement(createBackpressureOutboundStrategyElement());
     }
 
     /**
@@ -537,6 +542,43 @@ public class EventProcessingModel extends ConfigurationModel {
 	return builder.build();
     }
 
+    /**
+     * Create a measurement rollup event processor.
+     * 
+     * @return
+     */
+    protected ElementNode createMeasurementRollupEventProcessorElement() {
+	ElementNode.Builder builder = new ElementNode.Builder("Measurement Rollup Processor",
+		OutboundProcessingChainParser.Elements.MeasurementRollupEventProcessor.getLocalName(), "bar-chart",
+		ElementRole.OutboundProcessingChain_FilteredEventProcessor);
+	builder.description("Maintains count/min/max/sum/last rollups of measurements at minute, hour "
+		+ "and day resolutions so that analytics queries do not have to scan raw events.");
+	builder.attribute((new AttributeNode.Builder("Flush interval (seconds)", "flushIntervalSecs",
+		AttributeType.Integer).defaultValue("30")
+			.description("Number of seconds between flushes of pending rollups to the datastore.").build()));
+	builder.attribute((new AttributeNode.Builder("Flush batch size", "flushBatchSize", AttributeType.Integer)
+		.defaultValue("1000").description("Maximum number of rollups sent to the datastore in one call.")
+		.build()));
+	return builder.build();
+    }
+
+    /**
+     * Create element configuration for latency report event processor.
+     * 
+     * @return
+     */
+    protected ElementNode createLatencyReportEventProcessorElement() {
+	ElementNode.Builder builder = new ElementNode.Builder("Latency Report Processor",
+		OutboundProcessingChainParser.Elements.LatencyReportEventProcessor.getLocalName(), "tachometer",
+		ElementRole.OutboundProcessingChain_FilteredEventProcessor);
+	builder.description("Measures time from event emit until events are persisted and delivered to the "
+		+ "outbound chain, and logs throughput and latency percentiles. Intended for use with the load "
+		+ "generator event source.");
+	builder.attribute((new AttributeNode.Builder("Report interval (seconds)", "reportIntervalSecs",
+		AttributeType.Integer).defaultValue("30").description("Number of seconds between reports.").build()));
+	return builder.build();
+    }
+
     /**
      * Create filter criteria element.
      * 
@@ -673,6 +715,80 @@ public class EventProcessingModel extends ConfigurationModel {
 	builder.attribute((new AttributeNode.Builder("Monitoring interval in seconds", "monitoringIntervalSec",
 		AttributeType.Integer).description("Number of seconds to wait between logging monitoring statistics.")
 			.build()));
+	builder.attribute((new AttributeNode.Builder("Ordered partitions", "partitionCount", AttributeType.Integer)
+		.description("If set, requests are hashed by hardware id onto this many single-threaded partitions "
+			+ "so that requests for a device are processed in order.")
+		.build()));
+    }
+
+    /**
+     * Create element configuration for journaled inbound processing strategy.
+     * 
+     * @return
+     */
+    protected ElementNode createJournaledInboundStrategyElement() {
+	ElementNode.Builder builder = new ElementNode.Builder("Journaled Strategy",
+		InboundProcessingStrategyParser.Elements.JournaledInboundProcessingStrategy.getLocalName(), "cogs",
+		ElementRole.InboundProcessingStrategy_Strategy);
+
+	builder.description("Write decoded messages to a memory-mapped journal on disk before sending them "
+		+ "into the processing pipeline. Messages that were accepted but not processed when the server "
+		+ "stopped are processed when it starts again. Messages for a device are processed in order.");
+	builder.attribute((new AttributeNode.Builder("Journal directory", "journalDirectory", AttributeType.String)
+		.description("Directory where journal files are stored. Defaults to a folder in the "
+			+ "system temp directory.")
+		.build()));
+	builder.attribute((new AttributeNode.Builder("Segment size (MB)", "segmentSizeMb", AttributeType.Integer)
+		.description("Size of each journal file in megabytes.").defaultValue("64").build()));
+	builder.attribute((new AttributeNode.Builder("Number of consumers", "consumerCount", AttributeType.Integer)
+		.description("Number of threads reading from the journal. Requests are split between consumers "
+			+ "by hardware id.")
+		.defaultValue("4").build()));
+	builder.attribute((new AttributeNode.Builder("Batch size", "batchSize", AttributeType.Integer)
+		.description("Maximum number of requests processed by a consumer before its position is saved.")
+		.defaultValue("100").build()));
+	builder.attribute((new AttributeNode.Builder("Flush interval (ms)", "flushIntervalMs", AttributeType.Integer)
+		.description("Milliseconds between writing journal data to disk. Set to zero to never force "
+			+ "writes and rely on the operating system.")
+		.defaultValue("1000").build()));
+	builder.attribute((new AttributeNode.Builder("Maximum segments", "maxSegments", AttributeType.Integer)
+		.description("Maximum number of journal files on disk. When the journal is full, event sources "
+			+ "wait for consumers to free a file. Set to zero for no limit.")
+		.defaultValue("16").build()));
+	builder.attribute((new AttributeNode.Builder("Append timeout (ms)", "appendTimeoutMs", AttributeType.Integer)
+		.description("Milliseconds a request waits for space in a full journal before it is rejected.")
+		.defaultValue("30000").build()));
+	return builder.build();
+    }
+
+    /**
+     * Create element configuration for partitioned inbound processing
+     * strategy.
+     * 
+     * @return
+     */
+    protected ElementNode createPartitionedInboundStrategyElement() {
+	ElementNode.Builder builder = new ElementNode.Builder("Partitioned Cluster Strategy",
+		InboundProcessingStrategyParser.Elements.PartitionedInboundProcessingStrategy.getLocalName(), "cogs",
+		ElementRole.InboundProcessingStrategy_Strategy);
+
+	builder.description("Spread inbound processing across all servers in the Hazelcast cluster. Each message "
+		+ "is processed on the server that owns the Hazelcast partition for its hardware id, so messages "
+		+ "for a device are always handled by one server. Messages received by other servers are sent "
+		+ "to the owner in batches. Work is rebalanced when servers join or leave the cluster.");
+	builder.attribute((new AttributeNode.Builder("Number of partitions", "partitionCount", AttributeType.Integer)
+		.description("Number of single-threaded partitions used to process messages on each server.")
+		.defaultValue("8").build()));
+	builder.attribute((new AttributeNode.Builder("Partition capacity", "partitionCapacity", AttributeType.Integer)
+		.description("Maximum number of messages queued in each partition before blocking occurs.")
+		.defaultValue("10000").build()));
+	builder.attribute((new AttributeNode.Builder("Batch size", "batchSize", AttributeType.Integer)
+		.description("Maximum number of messages sent to another server in one batch.").defaultValue("100")
+		.build()));
+	builder.attribute((new AttributeNode.Builder("Batch interval (ms)", "batchIntervalMs", AttributeType.Integer)
+		.description("Maximum milliseconds a message waits before its batch is sent to another server.")
+		.defaultValue("5").build()));
+	return builder.build();
     }
 
     /**
@@ -720,6 +836,37 @@ public class EventProcessingModel extends ConfigurationModel {
 	return builder.build();
     }
 
+    /**
+     * Create element configuration for backpressure outbound processing
+     * strategy.
+     * 
+     * @return
+     */
+    protected ElementNode createBackpressureOutboundStrategyElement() {
+	ElementNode.Builder builder = new ElementNode.Builder("Backpressure Strategy",
+		OutboundProcessingStrategyParser.Elements.BackpressureOutboundProcessingStrategy.getLocalName(),
+		"cogs", ElementRole.OutboundProcessingStrategy_Strategy);
+
+	builder.description("Gives each outbound processor its own queue and pool of workers so that a slow "
+		+ "processor does not delay the others. Workers are added as a queue grows. The overload policy "
+		+ "controls what happens when a queue is full and every dropped event is counted.");
+	builder.attribute((new AttributeNode.Builder("Max queue size", "maxQueueSize", AttributeType.Integer)
+		.description("Maximum number of events queued for each processor.").defaultValue("1000").build()));
+	builder.attribute((new AttributeNode.Builder("Minimum workers", "minWorkers", AttributeType.Integer)
+		.description("Minimum number of worker threads for each processor.").defaultValue("1").build()));
+	builder.attribute((new AttributeNode.Builder("Maximum workers", "maxWorkers", AttributeType.Integer)
+		.description("Maximum number of worker threads for each processor.").defaultValue("10").build()));
+	builder.attribute((new AttributeNode.Builder("Overload policy", "overloadPolicy", AttributeType.String)
+		.description("Action taken when the queue for a processor is full.").choice("block")
+		.choice("drop-oldest").choice("drop-newest").choice("spill-to-disk").defaultValue("block").build()));
+	builder.attribute((new AttributeNode.Builder("Block timeout (ms)", "blockTimeoutMs", AttributeType.Integer)
+		.description("Time to wait for queue space with the 'block' policy before dropping the event.")
+		.defaultValue("5000").build()));
+	builder.attribute((new AttributeNode.Builder("Spill directory", "spillDirectory", AttributeType.String)
+		.description("Directory for overflow files with the 'spill-to-disk' policy.").build()));
+	return builder.build();
+    }
+
     /**
      * Add fields for blocking queue outbound processing strategy.
      * 
@@ -736,5 +883,9 @@ public class EventProcessingModel extends ConfigurationModel {
 	builder.attribute((new AttributeNode.Builder("Number of processing threads", "numEventProcessorThreads",
 		AttributeType.Integer).description("Number of threads used to process incoming events in parallel")
 			.defaultValue("100").build()));
+	builder.attribute((new AttributeNode.Builder("Ordered partitions", "partitionCount", AttributeType.Integer)
+		.description("If set, events are hashed by assignment token onto this many single-threaded "
+			+ "partitions so that events for an assignment are processed in order.")
+		.build()));
     }
 }
\ No newline at end of file
@@ -0,0 +1,237 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.web.filters;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipException;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Decompresses request bodies sent with a 'Content-Encoding' of 'gzip'. The
+ * body is inflated before the request is passed on so that a body larger than
+ * the configured limit is rejected with a 413 and malformed gzip data is
+ * rejected with a 400.
+ * 
+ * @author Derek
+ */
+public class GzipRequestFilter extends OncePerRequestFilter {
+
+    /** Content encoding for gzip */
+    public static final String GZIP = "gzip";
+
+    /** Default maximum size of a decompressed body */
+    public static final int DEFAULT_MAX_INFLATED_BYTES = 16 * 1024 * 1024;
+
+    /** Size of buffer used when inflating */
+    private static final int BUFFER_SIZE = 8192;
+
+    /** Maximum size of a decompressed body */
+    private int maxInflatedBytes = DEFAULT_MAX_INFLATED_BYTES;
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * org.springframework.web.filter.OncePerRequestFilter#doFilterInternal(
+     * javax.servlet.http.HttpServletRequest,
+     * javax.servlet.http.HttpServletResponse, javax.servlet.FilterChain)
+     */
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+	    throws ServletException, IOException {
+	String encoding = request.getHeader("Content-Encoding");
+	if ((encoding == null) || (!encoding.trim().equalsIgnoreCase(GZIP))) {
+	    filterChain.doFilter(request, response);
+	    return;
+	}
+	byte[] body;
+	try {
+	    body = inflate(request.getInputStream());
+	} catch (ZipException e) {
+	    response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid gzip request body.");
+	    return;
+	} catch (EOFException e) {
+	    response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Truncated gzip request body.");
+	    return;
+	}
+	if (body == null) {
+	    response.sendError(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE,
+		    "Decompressed request body exceeds " + getMaxInflatedBytes() + " bytes.");
+	    return;
+	}
+	filterChain.doFilter(new GzipRequestWrapper(request, body), response);
+    }
+
+    /**
+     * Inflate a gzip stream. Returns null if the decompressed data is larger
+     * than the maximum allowed.
+     * 
+     * @param compressed
+     * @return
+     * @throws IOException
+     */
+    protected byte[] inflate(ServletInputStream compressed) throws IOException {
+	GZIPInputStream gzip = new GZIPInputStream(compressed, BUFFER_SIZE);
+	try {
+	    ByteArrayOutputStream output = new ByteArrayOutputStream(BUFFER_SIZE);
+	    byte[] buffer = new byte[BUFFER_SIZE];
+	    int count;
+	    while ((count = gzip.read(buffer)) != -1) {
+		if (output.size() + count > getMaxInflatedBytes()) {
+		    return null;
+		}
+		output.write(buffer, 0, count);
+	    }
+	    return output.toByteArray();
+	} finally {
+	    gzip.close();
+	}
+    }
+
+    public int getMaxInflatedBytes() {
+	return maxInflatedBytes;
+    }
+
+    public void setMaxInflatedBytes(int maxInflatedBytes) {
+	this.maxInflatedBytes = maxInflatedBytes;
+    }
+
+    /**
+     * Wraps request so that the decompressed body is read.
+     * 
+     * @author Derek
+     */
+    private static class GzipRequestWrapper extends HttpServletRequestWrapper {
+
+	/** Decompressed body */
+	private byte[] body;
+
+	/** Decompressed input */
+	private ByteArrayServletInputStream input;
+
+	public GzipRequestWrapper(HttpServletRequest request, byte[] body) {
+	    super(request);
+	    this.body = body;
+	    this.input = new ByteArrayServletInputStream(body);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see javax.servlet.ServletRequestWrapper#getInputStream()
+	 */
+	@Override
+	public ServletInputStream getInputStream() throws IOException {
+	    return input;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see javax.servlet.ServletRequestWrapper#getReader()
+	 */
+	@Override
+	public BufferedReader getReader() throws IOException {
+	    String charset = (getCharacterEncoding() != null) ? getCharacterEncoding() : "UTF-8";
+	    return new BufferedReader(new InputStreamReader(input, charset));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see javax.servlet.http.HttpServletRequestWrapper#getHeader(java.lang.
+	 * String)
+	 */
+	@Override
+	public String getHeader(String name) {
+	    if ("Content-Encoding".equalsIgnoreCase(name)) {
+		return null;
+	    }
+	    return super.getHeader(name);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see javax.servlet.ServletRequestWrapper#getContentLength()
+	 */
+	@Override
+	public int getContentLength() {
+	    return body.length;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see javax.servlet.ServletRequestWrapper#getContentLengthLong()
+	 */
+	@Override
+	public long getContentLengthLong() {
+	    return body.length;
+	}
+    }
+
+    /**
+     * Servlet input stream that reads from a byte array.
+     * 
+     * @author Derek
+     */
+    private static class ByteArrayServletInputStream extends ServletInputStream {
+
+	/** Decompressed input */
+	private ByteArrayInputStream input;
+
+	public ByteArrayServletInputStream(byte[] body) {
+	    this.input = new ByteArrayInputStream(body);
+	}
+
+	@Override
+	public int read() throws IOException {
+	    return input.read();
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+	    return input.read(b, off, len);
+	}
+
+	@Override
+	public boolean isFinished() {
+	    return input.available() == 0;
+	}
+
+	@Override
+	public boolean isReady() {
+	    return true;
+	}
+
+	@Override
+	public void setReadListener(ReadListener readListener) {
+	    try {
+		readListener.onDataAvailable();
+		readListener.onAllDataRead();
+	    } catch (IOException e) {
+		readListener.onError(e);
+	    }
+	}
+    }
+}
@@ -8,6 +8,7 @@
 package com.sitewhere.web.rest;
 
 import java.io.IOException;
+import java.util.concurrent.TimeUnit;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -20,6 +21,8 @@ import org.springframework.security.access.annotation.Secured;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.sitewhere.SiteWhere;
 import com.sitewhere.rest.ISiteWhereWebConstants;
 import com.sitewhere.security.LoginManager;
@@ -45,6 +48,17 @@ public class RestController {
     /** Static logger instance */
     private static Logger LOGGER = LogManager.getLogger();
 
+    /** Number of seconds a tenant authorization decision is cached */
+    private static final long TENANT_CACHE_EXPIRATION_SECS = 30;
+
+    /** Maximum number of cached tenant authorization decisions */
+    private static final long TENANT_CACHE_MAX_SIZE = 1000;
+
+    /** Authorized tenants keyed by tenant authentication token and username */
+    private static Cache<String, ITenant> AUTHORIZED_TENANTS = CacheBuilder.newBuilder()
+	    .maximumSize(TENANT_CACHE_MAX_SIZE).expireAfterWrite(TENANT_CACHE_EXPIRATION_SECS, TimeUnit.SECONDS)
+	    .build();
+
     /**
      * Get a tenant based on the authentication token passed. Assume that the
      * current user should be validated for access to the given tenant.
@@ -58,7 +72,9 @@ public class RestController {
     }
 
     /**
-     * Get a tenant based on the authentication token passed.
+     * Get a tenant based on the authentication token passed. Successful
+     * lookups are cached briefly per token and user. The tenant engine state
+     * is checked on every call.
      * 
      * @param request
      * @param checkAuthUser
@@ -67,29 +83,29 @@ public class RestController {
      */
     protected ITenant getTenant(HttpServletRequest request, boolean checkAuthUser) throws SiteWhereException {
 	String token = getTenantAuthToken(request);
-	ITenant match = SiteWhere.getServer().getTenantByAuthToken(token);
+	String username = (checkAuthUser) ? LoginManager.getCurrentlyLoggedInUser().getUsername() : null;
+	String key = token + ":" + ((username != null) ? username : "");
+	ITenant match = AUTHORIZED_TENANTS.getIfPresent(key);
 	if (match == null) {
-	    throw new SiteWhereSystemException(ErrorCode.InvalidTenantAuthToken, ErrorLevel.ERROR);
+	    match = SiteWhere.getServer().getTenantByAuthToken(token);
+	    if (match == null) {
+		throw new SiteWhereSystemException(ErrorCode.InvalidTenantAuthToken, ErrorLevel.ERROR);
+	    }
+	    if ((username != null) && (!match.getAuthorizedUserIds().contains(username))) {
+		throw new SiteWhereSystemException(ErrorCode.NotAuthorizedForTenant, ErrorLevel.ERROR);
+	    }
+	    AUTHORIZED_TENANTS.put(key, match);
 	}
-	ISiteWhereTenantEngine engine = SiteWhere.getServer().getTenantEngine(match.getId());
+	ISiteWhereTenantEngine engine = SiteWhere.getServer().activateTenantEngine(match.getId());
 	if (engine == null) {
 	    LOGGER.error("No tenant engine for tenant: " + match.getName());
 	    throw new TenantNotAvailableException();
 	}
-	if (engine.getEngineState().getLifecycleStatus() != LifecycleStatus.Started) {
+	if (engine.getLifecycleStatus() != LifecycleStatus.Started) {
 	    LOGGER.error("Engine not started for tenant: " + match.getName());
 	    throw new TenantNotAvailableException();
 	}
-
-	if (checkAuthUser) {
-	    String username = LoginManager.getCurrentlyLoggedInUser().getUsername();
-	    if (match.getAuthorizedUserIds().contains(username)) {
-		return match;
-	    }
-	    throw new SiteWhereSystemException(ErrorCode.NotAuthorizedForTenant, ErrorLevel.ERROR);
-	} else {
-	    return match;
-	}
+	return match;
     }
 
     /**
@@ -124,10 +124,11 @@ public class AssetsController extends RestController {
     public SearchResults<? extends IAsset> searchAssets(
 	    @ApiParam(value = "Unique asset module id", required = true) @PathVariable String assetModuleId,
 	    @ApiParam(value = "Criteria for search", required = false) @RequestParam(defaultValue = "") String criteria,
+	    @ApiParam(value = "Maximum number of results (0 for all)", required = false) @RequestParam(defaultValue = "0") int maxResults,
 	    HttpServletRequest servletRequest) throws SiteWhereException {
 	Tracer.start(TracerCategory.RestApiCall, "searchAssets", LOGGER);
 	List<? extends IAsset> found = SiteWhere.getServer().getAssetModuleManager(getTenant(servletRequest))
-		.search(assetModuleId, criteria);
+		.search(assetModuleId, criteria, maxResults);
 	SearchResults<? extends IAsset> results = new SearchResults(found);
 	Tracer.stop(LOGGER);
 	return results;
@@ -9,9 +9,9 @@ package com.sitewhere.web.rest.controllers;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 import java.util.UUID;
@@ -42,6 +42,7 @@ import com.sitewhere.SiteWhere;
 import com.sitewhere.Tracer;
 import com.sitewhere.device.charting.ChartBuilder;
 import com.sitewhere.device.communication.symbology.DefaultEntityUriProvider;
+import com.sitewhere.device.event.rollup.MeasurementRollups;
 import com.sitewhere.device.marshaling.DeviceAssignmentMarshalHelper;
 import com.sitewhere.device.marshaling.DeviceCommandInvocationMarshalHelper;
 import com.sitewhere.rest.model.common.MetadataProvider;
@@ -64,6 +65,7 @@ import com.sitewhere.rest.model.device.request.DeviceStreamCreateRequest;
 import com.sitewhere.rest.model.device.streaming.DeviceStream;
 import com.sitewhere.rest.model.search.DateRangeSearchCriteria;
 import com.sitewhere.rest.model.search.SearchResults;
+import com.sitewhere.rest.model.search.device.ChartSeriesSearchCriteria;
 import com.sitewhere.server.scheduling.ScheduledJobHelper;
 import com.sitewhere.spi.SiteWhereException;
 import com.sitewhere.spi.SiteWhereSystemException;
@@ -71,16 +73,21 @@ import com.sitewhere.spi.device.DeviceAssignmentStatus;
 import com.sitewhere.spi.device.DeviceAssignmentType;
 import com.sitewhere.spi.device.IDeviceAssignment;
 import com.sitewhere.spi.device.IDeviceManagement;
+import com.sitewhere.spi.device.charting.ChartAggregation;
 import com.sitewhere.spi.device.charting.IChartSeries;
+import com.sitewhere.spi.device.charting.ISampledChartSeries;
 import com.sitewhere.spi.device.command.IDeviceCommand;
 import com.sitewhere.spi.device.event.IDeviceAlert;
 import com.sitewhere.spi.device.event.IDeviceCommandInvocation;
 import com.sitewhere.spi.device.event.IDeviceCommandResponse;
 import com.sitewhere.spi.device.event.IDeviceEvent;
+import com.sitewhere.spi.device.event.IDeviceEventManagement;
 import com.sitewhere.spi.device.event.IDeviceLocation;
 import com.sitewhere.spi.device.event.IDeviceMeasurements;
 import com.sitewhere.spi.device.event.IDeviceStateChange;
 import com.sitewhere.spi.device.event.IDeviceStreamData;
+import com.sitewhere.spi.device.event.rollup.IMeasurementRollup;
+import com.sitewhere.spi.device.event.rollup.RollupResolution;
 import com.sitewhere.spi.device.streaming.IDeviceStream;
 import com.sitewhere.spi.device.symbology.IEntityUriProvider;
 import com.sitewhere.spi.device.symbology.ISymbolGenerator;
@@ -89,6 +96,7 @@ import com.sitewhere.spi.error.ErrorCode;
 import com.sitewhere.spi.error.ErrorLevel;
 import com.sitewhere.spi.scheduling.IScheduledJob;
 import com.sitewhere.spi.scheduling.request.IScheduledJobCreateRequest;
+import com.sitewhere.spi.search.IDateRangeSearchCriteria;
 import com.sitewhere.spi.search.ISearchResults;
 import com.sitewhere.spi.server.debug.TracerCategory;
 import com.sitewhere.spi.user.SiteWhereRoles;
@@ -101,6 +109,8 @@ import com.sitewhere.web.rest.annotations.Example;
 import com.sitewhere.web.rest.annotations.Example.Stage;
 import com.sitewhere.web.rest.documentation.Assignments;
 import com.sitewhere.web.rest.documentation.Schedules;
+import com.sitewhere.web.rest.streaming.DateRangeEventCursor;
+import com.sitewhere.web.rest.streaming.SearchResultsStreamer;
 import com.wordnik.swagger.annotations.Api;
 import com.wordnik.swagger.annotations.ApiOperation;
 import com.wordnik.swagger.annotations.ApiParam;
@@ -120,6 +130,9 @@ public class AssignmentsController extends RestController {
     /** Static logger instance */
     private static Logger LOGGER = LogManager.getLogger();
 
+    /** Number of stream data chunks read from the datastore at a time */
+    private static final int STREAM_DATA_FETCH_SIZE = 16;
+
     /**
      * Used by AJAX calls to create a device assignment.
      * 
@@ -279,12 +292,23 @@ public class AssignmentsController extends RestController {
 		    ConcernType.Paging }) int pageSize,
 	    @ApiParam(value = "Start date", required = false) @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date startDate,
 	    @ApiParam(value = "End date", required = false) @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date endDate,
-	    HttpServletRequest servletRequest) throws SiteWhereException {
+	    HttpServletRequest servletRequest, HttpServletResponse response) throws SiteWhereException {
 	Tracer.start(TracerCategory.RestApiCall, "listEvents", LOGGER);
 	try {
-	    DateRangeSearchCriteria criteria = new DateRangeSearchCriteria(page, pageSize, startDate, endDate);
-	    return SiteWhere.getServer().getDeviceEventManagement(getTenant(servletRequest)).listDeviceEvents(token,
-		    criteria);
+	    final IDeviceEventManagement events = SiteWhere.getServer().getDeviceEventManagement(getTenant(servletRequest));
+	    DateRangeEventCursor<IDeviceEvent> cursor = new DateRangeEventCursor<IDeviceEvent>(page, pageSize,
+		    startDate, endDate) {
+
+		@Override
+		public ISearchResults<IDeviceEvent> getEvents(IDateRangeSearchCriteria criteria) throws SiteWhereException {
+		    return events.listDeviceEvents(token, criteria);
+		}
+	    };
+	    if (SearchResultsStreamer.isRequested(servletRequest)) {
+		SearchResultsStreamer.stream(servletRequest, response, cursor);
+		return null;
+	    }
+	    return cursor.getEvents(new DateRangeSearchCriteria(page, pageSize, startDate, endDate));
 	} finally {
 	    Tracer.stop(LOGGER);
 	}
@@ -311,12 +335,24 @@ public class AssignmentsController extends RestController {
 		    ConcernType.Paging }) int pageSize,
 	    @ApiParam(value = "Start date", required = false) @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date startDate,
 	    @ApiParam(value = "End date", required = false) @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date endDate,
-	    HttpServletRequest servletRequest) throws SiteWhereException {
+	    HttpServletRequest servletRequest, HttpServletResponse response) throws SiteWhereException {
 	Tracer.start(TracerCategory.RestApiCall, "listMeasurements", LOGGER);
 	try {
-	    DateRangeSearchCriteria criteria = new DateRangeSearchCriteria(page, pageSize, startDate, endDate);
-	    return SiteWhere.getServer().getDeviceEventManagement(getTenant(servletRequest))
-		    .listDeviceMeasurements(token, criteria);
+	    final IDeviceEventManagement events = SiteWhere.getServer().getDeviceEventManagement(getTenant(servletRequest));
+	    DateRangeEventCursor<IDeviceMeasurements> cursor = new DateRangeEventCursor<IDeviceMeasurements>(page, pageSize,
+		    startDate, endDate) {
+
+		@Override
+		public ISearchResults<IDeviceMeasurements> getEvents(IDateRangeSearchCriteria criteria)
+			throws SiteWhereException {
+		    return events.listDeviceMeasurements(token, criteria);
+		}
+	    };
+	    if (SearchResultsStreamer.isRequested(servletRequest)) {
+		SearchResultsStreamer.stream(servletRequest, response, cursor);
+		return null;
+	    }
+	    return cursor.getEvents(new DateRangeSearchCriteria(page, pageSize, startDate, endDate));
 	} finally {
 	    Tracer.stop(LOGGER);
 	}
@@ -357,6 +393,109 @@ public class AssignmentsController extends RestController {
 	}
     }
 
+    /**
+     * List device measurements for a given assignment as chart series that are
+     * downsampled by the server. Values are reduced to time buckets (or to a
+     * target number of points) with the requested aggregations.
+     * 
+     * @param token
+     * @param startDate
+     * @param endDate
+     * @param measurementIds
+     * @param bucketWidthMs
+     * @param maxPoints
+     * @param aggregations
+     * @param servletRequest
+     * @return
+     * @throws SiteWhereException
+     */
+    @RequestMapping(value = "/{token}/measurements/series/sampled", method = RequestMethod.GET)
+    @ResponseBody
+    @ApiOperation(value = "List assignment measurements as downsampled chart series")
+    @Secured({ SiteWhereRoles.REST })
+    @Documented
+    public List<ISampledChartSeries> listMeasurementsAsSampledChartSeries(
+	    @ApiParam(value = "Assignment token", required = true) @PathVariable String token,
+	    @ApiParam(value = "Start date", required = false) @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date startDate,
+	    @ApiParam(value = "End date", required = false) @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date endDate,
+	    @ApiParam(value = "Measurement Ids", required = false) @RequestParam(required = false) String[] measurementIds,
+	    @ApiParam(value = "Bucket width in milliseconds", required = false) @RequestParam(required = false) Long bucketWidthMs,
+	    @ApiParam(value = "Maximum points per series", required = false) @RequestParam(required = false) Integer maxPoints,
+	    @ApiParam(value = "Aggregations", required = false) @RequestParam(required = false) ChartAggregation[] aggregations,
+	    HttpServletRequest servletRequest) throws SiteWhereException {
+	Tracer.start(TracerCategory.RestApiCall, "listMeasurementsAsSampledChartSeries", LOGGER);
+	try {
+	    ChartSeriesSearchCriteria criteria = new ChartSeriesSearchCriteria(startDate, endDate);
+	    if (measurementIds != null) {
+		criteria.setMeasurementIds(Arrays.asList(measurementIds));
+	    }
+	    if (aggregations != null) {
+		criteria.setAggregations(Arrays.asList(aggregations));
+	    }
+	    criteria.setBucketWidthMs(bucketWidthMs);
+	    criteria.setMaxPoints(maxPoints);
+	    return SiteWhere.getServer().getDeviceEventManagement(getTenant(servletRequest))
+		    .listDeviceMeasurementsSeries(token, criteria);
+	} finally {
+	    Tracer.stop(LOGGER);
+	}
+    }
+
+    /**
+     * List measurement rollups for an assignment. Rollups are read from the
+     * coarsest stored tier that evenly divides the requested interval and
+     * combined further if needed.
+     * 
+     * @param token
+     * @param intervalMs
+     * @param startDate
+     * @param endDate
+     * @param measurementIds
+     * @param servletRequest
+     * @return
+     * @throws SiteWhereException
+     */
+    @RequestMapping(value = "/{token}/measurements/rollups", method = RequestMethod.GET)
+    @ResponseBody
+    @ApiOperation(value = "List measurement rollups for device assignment")
+    @Secured({ SiteWhereRoles.REST })
+    @Documented
+    public List<IMeasurementRollup> listMeasurementRollups(
+	    @ApiParam(value = "Assignment token", required = true) @PathVariable String token,
+	    @ApiParam(value = "Rollup interval in milliseconds", required = true) @RequestParam(required = true) long intervalMs,
+	    @ApiParam(value = "Start date", required = false) @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date startDate,
+	    @ApiParam(value = "End date", required = false) @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date endDate,
+	    @ApiParam(value = "Measurement Ids", required = false) @RequestParam(required = false) String[] measurementIds,
+	    HttpServletRequest servletRequest) throws SiteWhereException {
+	Tracer.start(TracerCategory.RestApiCall, "listMeasurementRollups", LOGGER);
+	try {
+	    RollupResolution resolution = RollupResolution.getCoarsestFor(intervalMs);
+	    if (resolution == null) {
+		throw new SiteWhereException("Rollup interval must be a whole number of minutes.");
+	    }
+	    DateRangeSearchCriteria criteria = new DateRangeSearchCriteria(1, 0, startDate, endDate);
+	    ISearchResults<IMeasurementRollup> stored = SiteWhere.getServer()
+		    .getDeviceEventManagement(getTenant(servletRequest))
+		    .listMeasurementRollups(token, resolution, criteria);
+	    List<IMeasurementRollup> matches = stored.getResults();
+	    if (measurementIds != null) {
+		List<String> ids = Arrays.asList(measurementIds);
+		matches = new ArrayList<IMeasurementRollup>();
+		for (IMeasurementRollup rollup : stored.getResults()) {
+		    if (ids.contains(rollup.getMeasurementId())) {
+			matches.add(rollup);
+		    }
+		}
+	    }
+	    if (intervalMs > resolution.getIntervalMs()) {
+		matches = MeasurementRollups.combine(matches, intervalMs);
+	    }
+	    return matches;
+	} finally {
+	    Tracer.stop(LOGGER);
+	}
+    }
+
     /**
      * Create measurements to be associated with a device assignment.
      * 
@@ -407,12 +546,23 @@ public class AssignmentsController extends RestController {
 		    ConcernType.Paging }) int pageSize,
 	    @ApiParam(value = "Start date", required = false) @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date startDate,
 	    @ApiParam(value = "End date", required = false) @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date endDate,
-	    HttpServletRequest servletRequest) throws SiteWhereException {
+	    HttpServletRequest servletRequest, HttpServletResponse response) throws SiteWhereException {
 	Tracer.start(TracerCategory.RestApiCall, "listLocations", LOGGER);
 	try {
-	    DateRangeSearchCriteria criteria = new DateRangeSearchCriteria(page, pageSize, startDate, endDate);
-	    return SiteWhere.getServer().getDeviceEventManagement(getTenant(servletRequest)).listDeviceLocations(token,
-		    criteria);
+	    final IDeviceEventManagement events = SiteWhere.getServer().getDeviceEventManagement(getTenant(servletRequest));
+	    DateRangeEventCursor<IDeviceLocation> cursor = new DateRangeEventCursor<IDeviceLocation>(page, pageSize,
+		    startDate, endDate) {
+
+		@Override
+		public ISearchResults<IDeviceLocation> getEvents(IDateRangeSearchCriteria criteria) throws SiteWhereException {
+		    return events.listDeviceLocations(token, criteria);
+		}
+	    };
+	    if (SearchResultsStreamer.isRequested(servletRequest)) {
+		SearchResultsStreamer.stream(servletRequest, response, cursor);
+		return null;
+	    }
+	    return cursor.getEvents(new DateRangeSearchCriteria(page, pageSize, startDate, endDate));
 	} finally {
 	    Tracer.stop(LOGGER);
 	}
@@ -468,12 +618,23 @@ public class AssignmentsController extends RestController {
 		    ConcernType.Paging }) int pageSize,
 	    @ApiParam(value = "Start date", required = false) @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date startDate,
 	    @ApiParam(value = "End date", required = false) @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date endDate,
-	    HttpServletRequest servletRequest) throws SiteWhereException {
+	    HttpServletRequest servletRequest, HttpServletResponse response) throws SiteWhereException {
 	Tracer.start(TracerCategory.RestApiCall, "listAlerts", LOGGER);
 	try {
-	    DateRangeSearchCriteria criteria = new DateRangeSearchCriteria(page, pageSize, startDate, endDate);
-	    return SiteWhere.getServer().getDeviceEventManagement(getTenant(servletRequest)).listDeviceAlerts(token,
-		    criteria);
+	    final IDeviceEventManagement events = SiteWhere.getServer().getDeviceEventManagement(getTenant(servletRequest));
+	    DateRangeEventCursor<IDeviceAlert> cursor = new DateRangeEventCursor<IDeviceAlert>(page, pageSize,
+		    startDate, endDate) {
+
+		@Override
+		public ISearchResults<IDeviceAlert> getEvents(IDateRangeSearchCriteria criteria) throws SiteWhereException {
+		    return events.listDeviceAlerts(token, criteria);
+		}
+	    };
+	    if (SearchResultsStreamer.isRequested(servletRequest)) {
+		SearchResultsStreamer.stream(servletRequest, response, cursor);
+		return null;
+	    }
+	    return cursor.getEvents(new DateRangeSearchCriteria(page, pageSize, startDate, endDate));
 	} finally {
 	    Tracer.stop(LOGGER);
 	}
@@ -682,6 +843,20 @@ public class AssignmentsController extends RestController {
 	}
     }
 
+    /**
+     * Stream data chunks from a device stream in sequence number order. Chunks
+     * are read from the datastore a range at a time and written to the
+     * response as they arrive so that large streams are never assembled in
+     * memory.
+     * 
+     * @param token
+     * @param streamId
+     * @param firstSequenceNumber
+     * @param maxChunks
+     * @param servletRequest
+     * @param svtResponse
+     * @throws SiteWhereException
+     */
     @RequestMapping(value = "/{token}/streams/{streamId:.+}/data", method = RequestMethod.GET)
     @ResponseBody
     @ApiOperation(value = "Get all data from device assignment data stream")
@@ -689,34 +864,42 @@ public class AssignmentsController extends RestController {
     @Documented
     public void listDeviceStreamData(@ApiParam(value = "Assignment token", required = true) @PathVariable String token,
 	    @ApiParam(value = "Stream Id", required = true) @PathVariable String streamId,
+	    @ApiParam(value = "First sequence number", required = false) @RequestParam(defaultValue = "0") long firstSequenceNumber,
+	    @ApiParam(value = "Maximum number of chunks", required = false) @RequestParam(defaultValue = "0") int maxChunks,
 	    HttpServletRequest servletRequest, HttpServletResponse svtResponse) throws SiteWhereException {
 	Tracer.start(TracerCategory.RestApiCall, "listDeviceStreamData", LOGGER);
-	IDeviceStream stream = SiteWhere.getServer().getDeviceManagement(getTenant(servletRequest))
-		.getDeviceStream(token, streamId);
-	if (stream == null) {
-	    throw new SiteWhereSystemException(ErrorCode.InvalidStreamId, ErrorLevel.ERROR,
-		    HttpServletResponse.SC_NOT_FOUND);
-	}
-	svtResponse.setContentType(stream.getContentType());
-
-	DateRangeSearchCriteria criteria = new DateRangeSearchCriteria(1, 0, null, null);
-	ISearchResults<IDeviceStreamData> data = SiteWhere.getServer()
-		.getDeviceEventManagement(getTenant(servletRequest)).listDeviceStreamData(token, streamId, criteria);
-
-	// Sort results by sequence number.
-	Collections.sort(data.getResults(), new Comparator<IDeviceStreamData>() {
-
-	    @Override
-	    public int compare(IDeviceStreamData o1, IDeviceStreamData o2) {
-		return o1.getSequenceNumber().compareTo(o2.getSequenceNumber());
+	try {
+	    IDeviceStream stream = SiteWhere.getServer().getDeviceManagement(getTenant(servletRequest))
+		    .getDeviceStream(token, streamId);
+	    if (stream == null) {
+		throw new SiteWhereSystemException(ErrorCode.InvalidStreamId, ErrorLevel.ERROR,
+			HttpServletResponse.SC_NOT_FOUND);
 	    }
-	});
-	for (IDeviceStreamData chunk : data.getResults()) {
+	    svtResponse.setContentType(stream.getContentType());
+
+	    IDeviceEventManagement events = SiteWhere.getServer().getDeviceEventManagement(getTenant(servletRequest));
+	    long remaining = (maxChunks > 0) ? maxChunks : Long.MAX_VALUE;
+	    long next = firstSequenceNumber;
 	    try {
-		svtResponse.getOutputStream().write(chunk.getData());
+		OutputStream output = svtResponse.getOutputStream();
+		while (remaining > 0) {
+		    int fetch = (int) Math.min(remaining, STREAM_DATA_FETCH_SIZE);
+		    List<IDeviceStreamData> chunks = events.getDeviceStreamDataRange(token, streamId, next, fetch);
+		    for (IDeviceStreamData chunk : chunks) {
+			output.write(chunk.getData());
+			next = chunk.getSequenceNumber() + 1;
+		    }
+		    output.flush();
+		    remaining -= chunks.size();
+		    if (chunks.size() < fetch) {
+			break;
+		    }
+		}
 	    } catch (IOException e) {
 		LOGGER.error("Error writing chunk to servlet output stream.", e);
 	    }
+	} finally {
+	    Tracer.stop(LOGGER);
 	}
     }
 
@@ -795,20 +978,33 @@ public class AssignmentsController extends RestController {
 		    ConcernType.Paging }) int pageSize,
 	    @ApiParam(value = "Start date", required = false) @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date startDate,
 	    @ApiParam(value = "End date", required = false) @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date endDate,
-	    HttpServletRequest servletRequest) throws SiteWhereException {
+	    HttpServletRequest servletRequest, HttpServletResponse response) throws SiteWhereException {
 	Tracer.start(TracerCategory.RestApiCall, "listCommandInvocations", LOGGER);
 	try {
-	    DateRangeSearchCriteria criteria = new DateRangeSearchCriteria(page, pageSize, startDate, endDate);
-	    ISearchResults<IDeviceCommandInvocation> matches = SiteWhere.getServer()
-		    .getDeviceEventManagement(getTenant(servletRequest)).listDeviceCommandInvocations(token, criteria);
-	    DeviceCommandInvocationMarshalHelper helper = new DeviceCommandInvocationMarshalHelper(
+	    final IDeviceEventManagement events = SiteWhere.getServer().getDeviceEventManagement(getTenant(servletRequest));
+	    final DeviceCommandInvocationMarshalHelper helper = new DeviceCommandInvocationMarshalHelper(
 		    getTenant(servletRequest));
 	    helper.setIncludeCommand(includeCommand);
-	    List<IDeviceCommandInvocation> converted = new ArrayList<IDeviceCommandInvocation>();
-	    for (IDeviceCommandInvocation invocation : matches.getResults()) {
-		converted.add(helper.convert(invocation));
+	    DateRangeEventCursor<IDeviceCommandInvocation> cursor = new DateRangeEventCursor<IDeviceCommandInvocation>(
+		    page, pageSize, startDate, endDate) {
+
+		@Override
+		public ISearchResults<IDeviceCommandInvocation> getEvents(IDateRangeSearchCriteria criteria)
+			throws SiteWhereException {
+		    ISearchResults<IDeviceCommandInvocation> matches = events.listDeviceCommandInvocations(token,
+			    criteria);
+		    List<IDeviceCommandInvocation> converted = new ArrayList<IDeviceCommandInvocation>();
+		    for (IDeviceCommandInvocation invocation : matches.getResults()) {
+			converted.add(helper.convert(invocation));
+		    }
+		    return new SearchResults<IDeviceCommandInvocation>(converted);
+		}
+	    };
+	    if (SearchResultsStreamer.isRequested(servletRequest)) {
+		SearchResultsStreamer.stream(servletRequest, response, cursor);
+		return null;
 	    }
-	    return new SearchResults<IDeviceCommandInvocation>(converted);
+	    return cursor.getEvents(new DateRangeSearchCriteria(page, pageSize, startDate, endDate));
 	} finally {
 	    Tracer.stop(LOGGER);
 	}
@@ -858,12 +1054,24 @@ public class AssignmentsController extends RestController {
 		    ConcernType.Paging }) int pageSize,
 	    @ApiParam(value = "Start date", required = false) @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date startDate,
 	    @ApiParam(value = "End date", required = false) @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date endDate,
-	    HttpServletRequest servletRequest) throws SiteWhereException {
+	    HttpServletRequest servletRequest, HttpServletResponse response) throws SiteWhereException {
 	Tracer.start(TracerCategory.RestApiCall, "listStateChanges", LOGGER);
 	try {
-	    DateRangeSearchCriteria criteria = new DateRangeSearchCriteria(page, pageSize, startDate, endDate);
-	    return SiteWhere.getServer().getDeviceEventManagement(getTenant(servletRequest))
-		    .listDeviceStateChanges(token, criteria);
+	    final IDeviceEventManagement events = SiteWhere.getServer().getDeviceEventManagement(getTenant(servletRequest));
+	    DateRangeEventCursor<IDeviceStateChange> cursor = new DateRangeEventCursor<IDeviceStateChange>(page, pageSize,
+		    startDate, endDate) {
+
+		@Override
+		public ISearchResults<IDeviceStateChange> getEvents(IDateRangeSearchCriteria criteria)
+			throws SiteWhereException {
+		    return events.listDeviceStateChanges(token, criteria);
+		}
+	    };
+	    if (SearchResultsStreamer.isRequested(servletRequest)) {
+		SearchResultsStreamer.stream(servletRequest, response, cursor);
+		return null;
+	    }
+	    return cursor.getEvents(new DateRangeSearchCriteria(page, pageSize, startDate, endDate));
 	} finally {
 	    Tracer.stop(LOGGER);
 	}
@@ -919,12 +1127,24 @@ public class AssignmentsController extends RestController {
 		    ConcernType.Paging }) int pageSize,
 	    @ApiParam(value = "Start date", required = false) @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date startDate,
 	    @ApiParam(value = "End date", required = false) @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date endDate,
-	    HttpServletRequest servletRequest) throws SiteWhereException {
+	    HttpServletRequest servletRequest, HttpServletResponse response) throws SiteWhereException {
 	Tracer.start(TracerCategory.RestApiCall, "listCommandResponses", LOGGER);
 	try {
-	    DateRangeSearchCriteria criteria = new DateRangeSearchCriteria(page, pageSize, startDate, endDate);
-	    return SiteWhere.getServer().getDeviceEventManagement(getTenant(servletRequest))
-		    .listDeviceCommandResponses(token, criteria);
+	    final IDeviceEventManagement events = SiteWhere.getServer().getDeviceEventManagement(getTenant(servletRequest));
+	    DateRangeEventCursor<IDeviceCommandResponse> cursor = new DateRangeEventCursor<IDeviceCommandResponse>(
+		    page, pageSize, startDate, endDate) {
+
+		@Override
+		public ISearchResults<IDeviceCommandResponse> getEvents(IDateRangeSearchCriteria criteria)
+			throws SiteWhereException {
+		    return events.listDeviceCommandResponses(token, criteria);
+		}
+	    };
+	    if (SearchResultsStreamer.isRequested(servletRequest)) {
+		SearchResultsStreamer.stream(servletRequest, response, cursor);
+		return null;
+	    }
+	    return cursor.getEvents(new DateRangeSearchCriteria(page, pageSize, startDate, endDate));
 	} finally {
 	    Tracer.stop(LOGGER);
 	}
@@ -8,7 +8,6 @@
 package com.sitewhere.web.rest.controllers;
 
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 
@@ -49,8 +48,10 @@ import com.sitewhere.rest.model.search.SearchResults;
 import com.sitewhere.rest.model.search.device.DeviceSearchCriteria;
 import com.sitewhere.spi.SiteWhereException;
 import com.sitewhere.spi.SiteWhereSystemException;
+import com.sitewhere.spi.asset.IAssetModuleManager;
 import com.sitewhere.spi.device.IDevice;
 import com.sitewhere.spi.device.IDeviceAssignment;
+import com.sitewhere.spi.device.IDeviceManagement;
 import com.sitewhere.spi.device.event.IDeviceEventBatchResponse;
 import com.sitewhere.spi.device.event.request.IDeviceAlertCreateRequest;
 import com.sitewhere.spi.device.event.request.IDeviceLocationCreateRequest;
@@ -72,6 +73,8 @@ import com.sitewhere.web.rest.annotations.DocumentedController;
 import com.sitewhere.web.rest.annotations.Example;
 import com.sitewhere.web.rest.annotations.Example.Stage;
 import com.sitewhere.web.rest.documentation.Devices;
+import com.sitewhere.web.rest.streaming.PagedSearchResultsCursor;
+import com.sitewhere.web.rest.streaming.SearchResultsStreamer;
 import com.wordnik.swagger.annotations.Api;
 import com.wordnik.swagger.annotations.ApiOperation;
 import com.wordnik.swagger.annotations.ApiParam;
@@ -407,23 +410,34 @@ public class DevicesController extends RestController {
 		    ConcernType.Paging }) int pageSize,
 	    @ApiParam(value = "Start date", required = false) @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date startDate,
 	    @ApiParam(value = "End date", required = false) @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date endDate,
-	    HttpServletRequest servletRequest) throws SiteWhereException {
+	    HttpServletRequest servletRequest, HttpServletResponse response) throws SiteWhereException {
 	Tracer.start(TracerCategory.RestApiCall, "listDevices", LOGGER);
 	try {
-	    IDeviceSearchCriteria criteria = new DeviceSearchCriteria(specification, site, excludeAssigned, page,
-		    pageSize, startDate, endDate);
-	    ISearchResults<IDevice> results = SiteWhere.getServer().getDeviceManagement(getTenant(servletRequest))
-		    .listDevices(includeDeleted, criteria);
-	    DeviceMarshalHelper helper = new DeviceMarshalHelper(getTenant(servletRequest));
+	    final IDeviceManagement devices = SiteWhere.getServer().getDeviceManagement(getTenant(servletRequest));
+	    final IAssetModuleManager assets = SiteWhere.getServer().getAssetModuleManager(getTenant(servletRequest));
+	    final DeviceMarshalHelper helper = new DeviceMarshalHelper(getTenant(servletRequest));
 	    helper.setIncludeAsset(true);
 	    helper.setIncludeSpecification(includeSpecification);
 	    helper.setIncludeAssignment(includeAssignment);
-	    List<IDevice> devicesConv = new ArrayList<IDevice>();
-	    for (IDevice device : results.getResults()) {
-		devicesConv.add(
-			helper.convert(device, SiteWhere.getServer().getAssetModuleManager(getTenant(servletRequest))));
+	    PagedSearchResultsCursor<IDevice> cursor = new PagedSearchResultsCursor<IDevice>(page, pageSize) {
+
+		@Override
+		public ISearchResults<IDevice> getPage(int page, int pageSize) throws SiteWhereException {
+		    IDeviceSearchCriteria criteria = new DeviceSearchCriteria(specification, site, excludeAssigned,
+			    page, pageSize, startDate, endDate);
+		    ISearchResults<IDevice> results = devices.listDevices(includeDeleted, criteria);
+		    List<IDevice> devicesConv = new ArrayList<IDevice>();
+		    for (IDevice device : results.getResults()) {
+			devicesConv.add(helper.convert(device, assets));
+		    }
+		    return new SearchResults<IDevice>(devicesConv, results.getNumResults());
+		}
+	    };
+	    if (SearchResultsStreamer.isRequested(servletRequest)) {
+		SearchResultsStreamer.stream(servletRequest, response, cursor);
+		return null;
 	    }
-	    return new SearchResults<IDevice>(devicesConv, results.getNumResults());
+	    return cursor.getPage(page, pageSize);
 	} finally {
 	    Tracer.stop(LOGGER);
 	}
@@ -496,17 +510,18 @@ public class DevicesController extends RestController {
 	try {
 	    IDeviceSearchCriteria criteria = new DeviceSearchCriteria(specification, site, excludeAssigned, page,
 		    pageSize, startDate, endDate);
-	    List<IDevice> matches = DeviceGroupUtils.getDevicesInGroup(groupToken, criteria, getTenant(servletRequest));
+	    ISearchResults<IDevice> matches = DeviceGroupUtils.searchDevicesInGroup(groupToken, criteria,
+		    getTenant(servletRequest));
 	    DeviceMarshalHelper helper = new DeviceMarshalHelper(getTenant(servletRequest));
 	    helper.setIncludeAsset(true);
 	    helper.setIncludeSpecification(includeSpecification);
 	    helper.setIncludeAssignment(includeAssignment);
 	    List<IDevice> devicesConv = new ArrayList<IDevice>();
-	    for (IDevice device : matches) {
+	    for (IDevice device : matches.getResults()) {
 		devicesConv.add(
 			helper.convert(device, SiteWhere.getServer().getAssetModuleManager(getTenant(servletRequest))));
 	    }
-	    return new SearchResults<IDevice>(devicesConv, matches.size());
+	    return new SearchResults<IDevice>(devicesConv, matches.getNumResults());
 	} finally {
 	    Tracer.stop(LOGGER);
 	}
@@ -537,18 +552,18 @@ public class DevicesController extends RestController {
 	try {
 	    IDeviceSearchCriteria criteria = new DeviceSearchCriteria(specification, site, excludeAssigned, page,
 		    pageSize, startDate, endDate);
-	    Collection<IDevice> matches = DeviceGroupUtils.getDevicesInGroupsWithRole(role, criteria,
+	    ISearchResults<IDevice> matches = DeviceGroupUtils.searchDevicesInGroupsWithRole(role, criteria,
 		    getTenant(servletRequest));
 	    DeviceMarshalHelper helper = new DeviceMarshalHelper(getTenant(servletRequest));
 	    helper.setIncludeAsset(true);
 	    helper.setIncludeSpecification(includeSpecification);
 	    helper.setIncludeAssignment(includeAssignment);
 	    List<IDevice> devicesConv = new ArrayList<IDevice>();
-	    for (IDevice device : matches) {
+	    for (IDevice device : matches.getResults()) {
 		devicesConv.add(
 			helper.convert(device, SiteWhere.getServer().getAssetModuleManager(getTenant(servletRequest))));
 	    }
-	    return new SearchResults<IDevice>(devicesConv, matches.size());
+	    return new SearchResults<IDevice>(devicesConv, matches.getNumResults());
 	} finally {
 	    Tracer.stop(LOGGER);
 	}
@@ -0,0 +1,224 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.web.rest.controllers;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.security.access.annotation.Secured;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+import com.sitewhere.SiteWhere;
+import com.sitewhere.Tracer;
+import com.sitewhere.rest.model.device.event.replay.EventReplay;
+import com.sitewhere.rest.model.device.event.replay.EventReplayCreateRequest;
+import com.sitewhere.spi.SiteWhereException;
+import com.sitewhere.spi.SiteWhereSystemException;
+import com.sitewhere.spi.device.event.replay.IEventReplay;
+import com.sitewhere.spi.device.event.replay.IEventReplayManager;
+import com.sitewhere.spi.error.ErrorCode;
+import com.sitewhere.spi.error.ErrorLevel;
+import com.sitewhere.spi.server.debug.TracerCategory;
+import com.sitewhere.spi.user.SiteWhereRoles;
+import com.sitewhere.web.rest.RestController;
+import com.sitewhere.web.rest.annotations.Documented;
+import com.sitewhere.web.rest.annotations.DocumentedController;
+import com.wordnik.swagger.annotations.Api;
+import com.wordnik.swagger.annotations.ApiOperation;
+import com.wordnik.swagger.annotations.ApiParam;
+
+/**
+ * Controller for replaying stored events through outbound processors.
+ * 
+ * @author Derek Adams
+ */
+@Controller
+@CrossOrigin
+@RequestMapping(value = "/replays")
+@Api(value = "replays", description = "Operations related to SiteWhere event replays.")
+@DocumentedController(name = "Event Replays")
+public class ReplaysController extends RestController {
+
+    /** Static logger instance */
+    private static Logger LOGGER = LogManager.getLogger();
+
+    /**
+     * Start a new event replay.
+     * 
+     * @param request
+     * @param servletRequest
+     * @return
+     * @throws SiteWhereException
+     */
+    @RequestMapping(method = RequestMethod.POST)
+    @ResponseBody
+    @ApiOperation(value = "Start a new event replay")
+    @Secured({ SiteWhereRoles.REST })
+    @Documented
+    public IEventReplay startEventReplay(@RequestBody EventReplayCreateRequest request,
+	    HttpServletRequest servletRequest) throws SiteWhereException {
+	Tracer.start(TracerCategory.RestApiCall, "startEventReplay", LOGGER);
+	try {
+	    IEventReplay replay = getEventReplayManager(servletRequest).startReplay(request);
+	    return EventReplay.copy(replay);
+	} finally {
+	    Tracer.stop(LOGGER);
+	}
+    }
+
+    /**
+     * List event replays.
+     * 
+     * @param servletRequest
+     * @return
+     * @throws SiteWhereException
+     */
+    @RequestMapping(method = RequestMethod.GET)
+    @ResponseBody
+    @ApiOperation(value = "List event replays")
+    @Secured({ SiteWhereRoles.REST })
+    @Documented
+    public List<IEventReplay> listEventReplays(HttpServletRequest servletRequest) throws SiteWhereException {
+	Tracer.start(TracerCategory.RestApiCall, "listEventReplays", LOGGER);
+	try {
+	    List<IEventReplay> converted = new ArrayList<IEventReplay>();
+	    for (IEventReplay replay : getEventReplayManager(servletRequest).listReplays()) {
+		converted.add(EventReplay.copy(replay));
+	    }
+	    return converted;
+	} finally {
+	    Tracer.stop(LOGGER);
+	}
+    }
+
+    /**
+     * Get progress for an event replay.
+     * 
+     * @param replayId
+     * @param servletRequest
+     * @return
+     * @throws SiteWhereException
+     */
+    @RequestMapping(value = "/{replayId}", method = RequestMethod.GET)
+    @ResponseBody
+    @ApiOperation(value = "Get event replay by unique id")
+    @Secured({ SiteWhereRoles.REST })
+    @Documented
+    public IEventReplay getEventReplay(
+	    @ApiParam(value = "Unique id for replay", required = true) @PathVariable String replayId,
+	    HttpServletRequest servletRequest) throws SiteWhereException {
+	Tracer.start(TracerCategory.RestApiCall, "getEventReplay", LOGGER);
+	try {
+	    IEventReplay replay = getEventReplayManager(servletRequest).getReplay(replayId);
+	    if (replay == null) {
+		throw new SiteWhereSystemException(ErrorCode.InvalidEventReplayId, ErrorLevel.ERROR);
+	    }
+	    return EventReplay.copy(replay);
+	} finally {
+	    Tracer.stop(LOGGER);
+	}
+    }
+
+    /**
+     * Pause an event replay.
+     * 
+     * @param replayId
+     * @param servletRequest
+     * @return
+     * @throws SiteWhereException
+     */
+    @RequestMapping(value = "/{replayId}/pause", method = RequestMethod.POST)
+    @ResponseBody
+    @ApiOperation(value = "Pause an event replay")
+    @Secured({ SiteWhereRoles.REST })
+    @Documented
+    public IEventReplay pauseEventReplay(
+	    @ApiParam(value = "Unique id for replay", required = true) @PathVariable String replayId,
+	    HttpServletRequest servletRequest) throws SiteWhereException {
+	Tracer.start(TracerCategory.RestApiCall, "pauseEventReplay", LOGGER);
+	try {
+	    return EventReplay.copy(getEventReplayManager(servletRequest).pauseReplay(replayId));
+	} finally {
+	    Tracer.stop(LOGGER);
+	}
+    }
+
+    /**
+     * Resume a paused or failed event replay.
+     * 
+     * @param replayId
+     * @param servletRequest
+     * @return
+     * @throws SiteWhereException
+     */
+    @RequestMapping(value = "/{replayId}/resume", method = RequestMethod.POST)
+    @ResponseBody
+    @ApiOperation(value = "Resume an event replay")
+    @Secured({ SiteWhereRoles.REST })
+    @Documented
+    public IEventReplay resumeEventReplay(
+	    @ApiParam(value = "Unique id for replay", required = true) @PathVariable String replayId,
+	    HttpServletRequest servletRequest) throws SiteWhereException {
+	Tracer.start(TracerCategory.RestApiCall, "resumeEventReplay", LOGGER);
+	try {
+	    return EventReplay.copy(getEventReplayManager(servletRequest).resumeReplay(replayId));
+	} finally {
+	    Tracer.stop(LOGGER);
+	}
+    }
+
+    /**
+     * Cancel an event replay.
+     * 
+     * @param replayId
+     * @param servletRequest
+     * @return
+     * @throws SiteWhereException
+     */
+    @RequestMapping(value = "/{replayId}/cancel", method = RequestMethod.POST)
+    @ResponseBody
+    @ApiOperation(value = "Cancel an event replay")
+    @Secured({ SiteWhereRoles.REST })
+    @Documented
+    public IEventReplay cancelEventReplay(
+	    @ApiParam(value = "Unique id for replay", required = true) @PathVariable String replayId,
+	    HttpServletRequest servletRequest) throws SiteWhereException {
+	Tracer.start(TracerCategory.RestApiCall, "cancelEventReplay", LOGGER);
+	try {
+	    return EventReplay.copy(getEventReplayManager(servletRequest).cancelReplay(replayId));
+	} finally {
+	    Tracer.stop(LOGGER);
+	}
+    }
+
+    /**
+     * Get the event replay manager for the current tenant.
+     * 
+     * @param servletRequest
+     * @return
+     * @throws SiteWhereException
+     */
+    protected IEventReplayManager getEventReplayManager(HttpServletRequest servletRequest) throws SiteWhereException {
+	IEventReplayManager manager = SiteWhere.getServer().getEventProcessing(getTenant(servletRequest))
+		.getEventReplayManager();
+	if (manager == null) {
+	    throw new SiteWhereException("Event replay is not available for tenant.");
+	}
+	return manager;
+    }
+}
@@ -12,6 +12,7 @@ import java.util.Date;
 import java.util.List;
 
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -55,11 +56,13 @@ import com.sitewhere.spi.device.IZone;
 import com.sitewhere.spi.device.event.IDeviceAlert;
 import com.sitewhere.spi.device.event.IDeviceCommandInvocation;
 import com.sitewhere.spi.device.event.IDeviceCommandResponse;
+import com.sitewhere.spi.device.event.IDeviceEventManagement;
 import com.sitewhere.spi.device.event.IDeviceLocation;
 import com.sitewhere.spi.device.event.IDeviceMeasurements;
 import com.sitewhere.spi.device.event.IDeviceStateChange;
 import com.sitewhere.spi.error.ErrorCode;
 import com.sitewhere.spi.error.ErrorLevel;
+import com.sitewhere.spi.search.IDateRangeSearchCriteria;
 import com.sitewhere.spi.search.ISearchResults;
 import com.sitewhere.spi.server.debug.TracerCategory;
 import com.sitewhere.spi.user.SiteWhereRoles;
@@ -72,6 +75,8 @@ import com.sitewhere.web.rest.annotations.Example;
 import com.sitewhere.web.rest.annotations.Example.Stage;
 import com.sitewhere.web.rest.documentation.Assignments;
 import com.sitewhere.web.rest.documentation.Sites;
+import com.sitewhere.web.rest.streaming.DateRangeEventCursor;
+import com.sitewhere.web.rest.streaming.SearchResultsStreamer;
 import com.wordnik.swagger.annotations.Api;
 import com.wordnik.swagger.annotations.ApiOperation;
 import com.wordnik.swagger.annotations.ApiParam;
@@ -258,21 +263,32 @@ public class SitesController extends RestController {
 		    ConcernType.Paging }) int pageSize,
 	    @ApiParam(value = "Start date", required = false) @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date startDate,
 	    @ApiParam(value = "End date", required = false) @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date endDate,
-	    HttpServletRequest servletRequest) throws SiteWhereException {
+	    HttpServletRequest servletRequest, HttpServletResponse response) throws SiteWhereException {
 	Tracer.start(TracerCategory.RestApiCall, "listDeviceMeasurementsForSite", LOGGER);
 	try {
-	    DateRangeSearchCriteria criteria = new DateRangeSearchCriteria(page, pageSize, startDate, endDate);
-	    ISearchResults<IDeviceMeasurements> results = SiteWhere.getServer()
-		    .getDeviceEventManagement(getTenant(servletRequest))
-		    .listDeviceMeasurementsForSite(siteToken, criteria);
-
-	    // Marshal with asset info since multiple assignments might match.
-	    List<IDeviceMeasurements> wrapped = new ArrayList<IDeviceMeasurements>();
-	    IAssetModuleManager assets = SiteWhere.getServer().getAssetModuleManager(getTenant(servletRequest));
-	    for (IDeviceMeasurements result : results.getResults()) {
-		wrapped.add(new DeviceMeasurementsWithAsset(result, assets));
+	    final IDeviceEventManagement events = SiteWhere.getServer().getDeviceEventManagement(getTenant(servletRequest));
+	    final IAssetModuleManager assets = SiteWhere.getServer().getAssetModuleManager(getTenant(servletRequest));
+	    DateRangeEventCursor<IDeviceMeasurements> cursor = new DateRangeEventCursor<IDeviceMeasurements>(page, pageSize,
+		    startDate, endDate) {
+
+		@Override
+		public ISearchResults<IDeviceMeasurements> getEvents(IDateRangeSearchCriteria criteria)
+			throws SiteWhereException {
+		    ISearchResults<IDeviceMeasurements> results = events.listDeviceMeasurementsForSite(siteToken, criteria);
+
+		    // Marshal with asset info since multiple assignments might match.
+		    List<IDeviceMeasurements> wrapped = new ArrayList<IDeviceMeasurements>();
+		    for (IDeviceMeasurements result : results.getResults()) {
+			wrapped.add(new DeviceMeasurementsWithAsset(result, assets));
+		    }
+		    return new SearchResults<IDeviceMeasurements>(wrapped, results.getNumResults());
+		}
+	    };
+	    if (SearchResultsStreamer.isRequested(servletRequest)) {
+		SearchResultsStreamer.stream(servletRequest, response, cursor);
+		return null;
 	    }
-	    return new SearchResults<IDeviceMeasurements>(wrapped, results.getNumResults());
+	    return cursor.getEvents(new DateRangeSearchCriteria(page, pageSize, startDate, endDate));
 	} finally {
 	    Tracer.stop(LOGGER);
 	}
@@ -300,21 +316,31 @@ public class SitesController extends RestController {
 		    ConcernType.Paging }) int pageSize,
 	    @ApiParam(value = "Start date", required = false) @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date startDate,
 	    @ApiParam(value = "End date", required = false) @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date endDate,
-	    HttpServletRequest servletRequest) throws SiteWhereException {
+	    HttpServletRequest servletRequest, HttpServletResponse response) throws SiteWhereException {
 	Tracer.start(TracerCategory.RestApiCall, "listDeviceLocationsForSite", LOGGER);
 	try {
-	    DateRangeSearchCriteria criteria = new DateRangeSearchCriteria(page, pageSize, startDate, endDate);
-	    ISearchResults<IDeviceLocation> results = SiteWhere.getServer()
-		    .getDeviceEventManagement(getTenant(servletRequest))
-		    .listDeviceLocationsForSite(siteToken, criteria);
-
-	    // Marshal with asset info since multiple assignments might match.
-	    List<IDeviceLocation> wrapped = new ArrayList<IDeviceLocation>();
-	    IAssetModuleManager assets = SiteWhere.getServer().getAssetModuleManager(getTenant(servletRequest));
-	    for (IDeviceLocation result : results.getResults()) {
-		wrapped.add(new DeviceLocationWithAsset(result, assets));
+	    final IDeviceEventManagement events = SiteWhere.getServer().getDeviceEventManagement(getTenant(servletRequest));
+	    final IAssetModuleManager assets = SiteWhere.getServer().getAssetModuleManager(getTenant(servletRequest));
+	    DateRangeEventCursor<IDeviceLocation> cursor = new DateRangeEventCursor<IDeviceLocation>(page, pageSize,
+		    startDate, endDate) {
+
+		@Override
+		public ISearchResults<IDeviceLocation> getEvents(IDateRangeSearchCriteria criteria) throws SiteWhereException {
+		    ISearchResults<IDeviceLocation> results = events.listDeviceLocationsForSite(siteToken, criteria);
+
+		    // Marshal with asset info since multiple assignments might match.
+		    List<IDeviceLocation> wrapped = new ArrayList<IDeviceLocation>();
+		    for (IDeviceLocation result : results.getResults()) {
+			wrapped.add(new DeviceLocationWithAsset(result, assets));
+		    }
+		    return new SearchResults<IDeviceLocation>(wrapped, results.getNumResults());
+		}
+	    };
+	    if (SearchResultsStreamer.isRequested(servletRequest)) {
+		SearchResultsStreamer.stream(servletRequest, response, cursor);
+		return null;
 	    }
-	    return new SearchResults<IDeviceLocation>(wrapped, results.getNumResults());
+	    return cursor.getEvents(new DateRangeSearchCriteria(page, pageSize, startDate, endDate));
 	} finally {
 	    Tracer.stop(LOGGER);
 	}
@@ -342,20 +368,31 @@ public class SitesController extends RestController {
 		    ConcernType.Paging }) int pageSize,
 	    @ApiParam(value = "Start date", required = false) @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date startDate,
 	    @ApiParam(value = "End date", required = false) @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date endDate,
-	    HttpServletRequest servletRequest) throws SiteWhereException {
+	    HttpServletRequest servletRequest, HttpServletResponse response) throws SiteWhereException {
 	Tracer.start(TracerCategory.RestApiCall, "listDeviceAlertsForSite", LOGGER);
 	try {
-	    DateRangeSearchCriteria criteria = new DateRangeSearchCriteria(page, pageSize, startDate, endDate);
-	    ISearchResults<IDeviceAlert> results = SiteWhere.getServer()
-		    .getDeviceEventManagement(getTenant(servletRequest)).listDeviceAlertsForSite(siteToken, criteria);
-
-	    // Marshal with asset info since multiple assignments might match.
-	    List<IDeviceAlert> wrapped = new ArrayList<IDeviceAlert>();
-	    IAssetModuleManager assets = SiteWhere.getServer().getAssetModuleManager(getTenant(servletRequest));
-	    for (IDeviceAlert result : results.getResults()) {
-		wrapped.add(new DeviceAlertWithAsset(result, assets));
+	    final IDeviceEventManagement events = SiteWhere.getServer().getDeviceEventManagement(getTenant(servletRequest));
+	    final IAssetModuleManager assets = SiteWhere.getServer().getAssetModuleManager(getTenant(servletRequest));
+	    DateRangeEventCursor<IDeviceAlert> cursor = new DateRangeEventCursor<IDeviceAlert>(page, pageSize,
+		    startDate, endDate) {
+
+		@Override
+		public ISearchResults<IDeviceAlert> getEvents(IDateRangeSearchCriteria criteria) throws SiteWhereException {
+		    ISearchResults<IDeviceAlert> results = events.listDeviceAlertsForSite(siteToken, criteria);
+
+		    // Marshal with asset info since multiple assignments might match.
+		    List<IDeviceAlert> wrapped = new ArrayList<IDeviceAlert>();
+		    for (IDeviceAlert result : results.getResults()) {
+			wrapped.add(new DeviceAlertWithAsset(result, assets));
+		    }
+		    return new SearchResults<IDeviceAlert>(wrapped, results.getNumResults());
+		}
+	    };
+	    if (SearchResultsStreamer.isRequested(servletRequest)) {
+		SearchResultsStreamer.stream(servletRequest, response, cursor);
+		return null;
 	    }
-	    return new SearchResults<IDeviceAlert>(wrapped, results.getNumResults());
+	    return cursor.getEvents(new DateRangeSearchCriteria(page, pageSize, startDate, endDate));
 	} finally {
 	    Tracer.stop(LOGGER);
 	}
@@ -383,21 +420,33 @@ public class SitesController extends RestController {
 		    ConcernType.Paging }) int pageSize,
 	    @ApiParam(value = "Start date", required = false) @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date startDate,
 	    @ApiParam(value = "End date", required = false) @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date endDate,
-	    HttpServletRequest servletRequest) throws SiteWhereException {
+	    HttpServletRequest servletRequest, HttpServletResponse response) throws SiteWhereException {
 	Tracer.start(TracerCategory.RestApiCall, "listDeviceCommandInvocationsForSite", LOGGER);
 	try {
-	    DateRangeSearchCriteria criteria = new DateRangeSearchCriteria(page, pageSize, startDate, endDate);
-	    ISearchResults<IDeviceCommandInvocation> results = SiteWhere.getServer()
-		    .getDeviceEventManagement(getTenant(servletRequest))
-		    .listDeviceCommandInvocationsForSite(siteToken, criteria);
-
-	    // Marshal with asset info since multiple assignments might match.
-	    List<IDeviceCommandInvocation> wrapped = new ArrayList<IDeviceCommandInvocation>();
-	    IAssetModuleManager assets = SiteWhere.getServer().getAssetModuleManager(getTenant(servletRequest));
-	    for (IDeviceCommandInvocation result : results.getResults()) {
-		wrapped.add(new DeviceCommandInvocationWithAsset(result, assets));
+	    final IDeviceEventManagement events = SiteWhere.getServer().getDeviceEventManagement(getTenant(servletRequest));
+	    final IAssetModuleManager assets = SiteWhere.getServer().getAssetModuleManager(getTenant(servletRequest));
+	    DateRangeEventCursor<IDeviceCommandInvocation> cursor = new DateRangeEventCursor<IDeviceCommandInvocation>(
+		    page, pageSize, startDate, endDate) {
+
+		@Override
+		public ISearchResults<IDeviceCommandInvocation> getEvents(IDateRangeSearchCriteria criteria)
+			throws SiteWhereException {
+		    ISearchResults<IDeviceCommandInvocation> results = events
+			.listDeviceCommandInvocationsForSite(siteToken, criteria);
+
+		    // Marshal with asset info since multiple assignments might match.
+		    List<IDeviceCommandInvocation> wrapped = new ArrayList<IDeviceCommandInvocation>();
+		    for (IDeviceCommandInvocation result : results.getResults()) {
+			wrapped.add(new DeviceCommandInvocationWithAsset(result, assets));
+		    }
+		    return new SearchResults<IDeviceCommandInvocation>(wrapped, results.getNumResults());
+		}
+	    };
+	    if (SearchResultsStreamer.isRequested(servletRequest)) {
+		SearchResultsStreamer.stream(servletRequest, response, cursor);
+		return null;
 	    }
-	    return new SearchResults<IDeviceCommandInvocation>(wrapped, results.getNumResults());
+	    return cursor.getEvents(new DateRangeSearchCriteria(page, pageSize, startDate, endDate));
 	} finally {
 	    Tracer.stop(LOGGER);
 	}
@@ -425,21 +474,33 @@ public class SitesController extends RestController {
 		    ConcernType.Paging }) int pageSize,
 	    @ApiParam(value = "Start date", required = false) @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date startDate,
 	    @ApiParam(value = "End date", required = false) @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date endDate,
-	    HttpServletRequest servletRequest) throws SiteWhereException {
+	    HttpServletRequest servletRequest, HttpServletResponse response) throws SiteWhereException {
 	Tracer.start(TracerCategory.RestApiCall, "listDeviceCommandResponsesForSite", LOGGER);
 	try {
-	    DateRangeSearchCriteria criteria = new DateRangeSearchCriteria(page, pageSize, startDate, endDate);
-	    ISearchResults<IDeviceCommandResponse> results = SiteWhere.getServer()
-		    .getDeviceEventManagement(getTenant(servletRequest))
-		    .listDeviceCommandResponsesForSite(siteToken, criteria);
-
-	    // Marshal with asset info since multiple assignments might match.
-	    List<IDeviceCommandResponse> wrapped = new ArrayList<IDeviceCommandResponse>();
-	    IAssetModuleManager assets = SiteWhere.getServer().getAssetModuleManager(getTenant(servletRequest));
-	    for (IDeviceCommandResponse result : results.getResults()) {
-		wrapped.add(new DeviceCommandResponseWithAsset(result, assets));
+	    final IDeviceEventManagement events = SiteWhere.getServer().getDeviceEventManagement(getTenant(servletRequest));
+	    final IAssetModuleManager assets = SiteWhere.getServer().getAssetModuleManager(getTenant(servletRequest));
+	    DateRangeEventCursor<IDeviceCommandResponse> cursor = new DateRangeEventCursor<IDeviceCommandResponse>(
+		    page, pageSize, startDate, endDate) {
+
+		@Override
+		public ISearchResults<IDeviceCommandResponse> getEvents(IDateRangeSearchCriteria criteria)
+			throws SiteWhereException {
+		    ISearchResults<IDeviceCommandResponse> results = events
+			.listDeviceCommandResponsesForSite(siteToken, criteria);
+
+		    // Marshal with asset info since multiple assignments might match.
+		    List<IDeviceCommandResponse> wrapped = new ArrayList<IDeviceCommandResponse>();
+		    for (IDeviceCommandResponse result : results.getResults()) {
+			wrapped.add(new DeviceCommandResponseWithAsset(result, assets));
+		    }
+		    return new SearchResults<IDeviceCommandResponse>(wrapped, results.getNumResults());
+		}
+	    };
+	    if (SearchResultsStreamer.isRequested(servletRequest)) {
+		SearchResultsStreamer.stream(servletRequest, response, cursor);
+		return null;
 	    }
-	    return new SearchResults<IDeviceCommandResponse>(wrapped, results.getNumResults());
+	    return cursor.getEvents(new DateRangeSearchCriteria(page, pageSize, startDate, endDate));
 	} finally {
 	    Tracer.stop(LOGGER);
 	}
@@ -465,21 +526,32 @@ public class SitesController extends RestController {
 		    ConcernType.Paging }) int pageSize,
 	    @ApiParam(value = "Start date", required = false) @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date startDate,
 	    @ApiParam(value = "End date", required = false) @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date endDate,
-	    HttpServletRequest servletRequest) throws SiteWhereException {
+	    HttpServletRequest servletRequest, HttpServletResponse response) throws SiteWhereException {
 	Tracer.start(TracerCategory.RestApiCall, "listDeviceStateChangesForSite", LOGGER);
 	try {
-	    DateRangeSearchCriteria criteria = new DateRangeSearchCriteria(page, pageSize, startDate, endDate);
-	    ISearchResults<IDeviceStateChange> results = SiteWhere.getServer()
-		    .getDeviceEventManagement(getTenant(servletRequest))
-		    .listDeviceStateChangesForSite(siteToken, criteria);
-
-	    // Marshal with asset info since multiple assignments might match.
-	    List<IDeviceStateChange> wrapped = new ArrayList<IDeviceStateChange>();
-	    IAssetModuleManager assets = SiteWhere.getServer().getAssetModuleManager(getTenant(servletRequest));
-	    for (IDeviceStateChange result : results.getResults()) {
-		wrapped.add(new DeviceStateChangeWithAsset(result, assets));
+	    final IDeviceEventManagement events = SiteWhere.getServer().getDeviceEventManagement(getTenant(servletRequest));
+	    final IAssetModuleManager assets = SiteWhere.getServer().getAssetModuleManager(getTenant(servletRequest));
+	    DateRangeEventCursor<IDeviceStateChange> cursor = new DateRangeEventCursor<IDeviceStateChange>(page, pageSize,
+		    startDate, endDate) {
+
+		@Override
+		public ISearchResults<IDeviceStateChange> getEvents(IDateRangeSearchCriteria criteria)
+			throws SiteWhereException {
+		    ISearchResults<IDeviceStateChange> results = events.listDeviceStateChangesForSite(siteToken, criteria);
+
+		    // Marshal with asset info since multiple assignments might match.
+		    List<IDeviceStateChange> wrapped = new ArrayList<IDeviceStateChange>();
+		    for (IDeviceStateChange result : results.getResults()) {
+			wrapped.add(new DeviceStateChangeWithAsset(result, assets));
+		    }
+		    return new SearchResults<IDeviceStateChange>(wrapped, results.getNumResults());
+		}
+	    };
+	    if (SearchResultsStreamer.isRequested(servletRequest)) {
+		SearchResultsStreamer.stream(servletRequest, response, cursor);
+		return null;
 	    }
-	    return new SearchResults<IDeviceStateChange>(wrapped, results.getNumResults());
+	    return cursor.getEvents(new DateRangeSearchCriteria(page, pageSize, startDate, endDate));
 	} finally {
 	    Tracer.stop(LOGGER);
 	}
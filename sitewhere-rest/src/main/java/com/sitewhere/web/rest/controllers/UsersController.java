@@ -8,6 +8,7 @@
 package com.sitewhere.web.rest.controllers;
 
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
 
 import javax.servlet.http.HttpServletResponse;
@@ -15,6 +16,7 @@ import javax.servlet.http.HttpServletResponse;
 import org.apache.commons.lang.StringEscapeUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.springframework.security.access.annotation.Secured;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.CrossOrigin;
@@ -30,9 +32,12 @@ import com.sitewhere.Tracer;
 import com.sitewhere.rest.model.search.SearchResults;
 import com.sitewhere.rest.model.search.user.UserSearchCriteria;
 import com.sitewhere.rest.model.tenant.Tenant;
+import com.sitewhere.rest.model.user.AccessToken;
 import com.sitewhere.rest.model.user.GrantedAuthority;
 import com.sitewhere.rest.model.user.User;
 import com.sitewhere.rest.model.user.request.UserCreateRequest;
+import com.sitewhere.security.LoginManager;
+import com.sitewhere.security.TokenManagement;
 import com.sitewhere.spi.SiteWhereException;
 import com.sitewhere.spi.SiteWhereSystemException;
 import com.sitewhere.spi.error.ErrorCode;
@@ -41,6 +46,7 @@ import com.sitewhere.spi.server.debug.TracerCategory;
 import com.sitewhere.spi.server.tenant.ISiteWhereTenantEngine;
 import com.sitewhere.spi.tenant.ITenant;
 import com.sitewhere.spi.user.AccountStatus;
+import com.sitewhere.spi.user.IAccessToken;
 import com.sitewhere.spi.user.IGrantedAuthority;
 import com.sitewhere.spi.user.IUser;
 import com.sitewhere.spi.user.IUserManagement;
@@ -102,6 +108,35 @@ public class UsersController extends RestController {
 	}
     }
 
+    /**
+     * Issue a signed access token for the current user. The token may be
+     * passed as a bearer token on later calls instead of user credentials.
+     * Tokens are only issued to callers that supplied a password so that a
+     * token can not be used to renew itself indefinitely.
+     * 
+     * @return
+     * @throws SiteWhereException
+     */
+    @RequestMapping(value = "/current/token", method = RequestMethod.GET)
+    @ResponseBody
+    @ApiOperation(value = "Get access token for current user")
+    @Secured({ SiteWhereRoles.REST })
+    public IAccessToken getAccessToken() throws SiteWhereException {
+	Tracer.start(TracerCategory.RestApiCall, "getAccessToken", LOGGER);
+	try {
+	    LoginManager.assertPasswordAuthentication();
+	    IUser user = LoginManager.getCurrentlyLoggedInUser();
+	    String token = TokenManagement.generateToken(user.getUsername(), TokenManagement.DEFAULT_EXPIRATION_MS);
+	    AccessToken result = new AccessToken();
+	    result.setToken(token);
+	    result.setUsername(user.getUsername());
+	    result.setExpires(new Date(TokenManagement.getExpiration(token)));
+	    return result;
+	} finally {
+	    Tracer.stop(LOGGER);
+	}
+    }
+
     /**
      * Update an existing user.
      * 
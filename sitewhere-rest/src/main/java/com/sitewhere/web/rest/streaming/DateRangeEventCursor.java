@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.web.rest.streaming;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.sitewhere.rest.model.search.DateRangeSearchCriteria;
+import com.sitewhere.spi.SiteWhereException;
+import com.sitewhere.spi.device.event.IDeviceEvent;
+import com.sitewhere.spi.search.IDateRangeSearchCriteria;
+import com.sitewhere.spi.search.ISearchResults;
+
+/**
+ * Cursor for events, which datastores return newest first. If a page size was
+ * requested, only that page is read. Otherwise each chunk is read as the first
+ * page of a query that ends at the date of the last event already returned, so
+ * reading late chunks costs the same as reading early ones. Events at that
+ * date are returned again by the next query and are skipped by id.
+ * 
+ * @author Derek
+ * 
+ * @param <T>
+ */
+public abstract class DateRangeEventCursor<T extends IDeviceEvent> implements ISearchResultsCursor<T> {
+
+    /** Number of events read per query when streaming all results */
+    public static final int CHUNK_SIZE = 1000;
+
+    /** Requested page */
+    private int page;
+
+    /** Requested page size or zero for all results */
+    private int pageSize;
+
+    /** Earliest event date */
+    private Date startDate;
+
+    /** Latest event date for the next query */
+    private Date endDate;
+
+    /** Ids of events already returned with a date equal to the end date */
+    private Set<String> returnedAtEndDate = new HashSet<String>();
+
+    /** Indicates whether all events have been read */
+    private boolean done;
+
+    public DateRangeEventCursor(int page, int pageSize, Date startDate, Date endDate) {
+	this.page = page;
+	this.pageSize = pageSize;
+	this.startDate = startDate;
+	this.endDate = endDate;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.web.rest.streaming.ISearchResultsCursor#next()
+     */
+    @Override
+    public List<T> next() throws SiteWhereException {
+	if (done) {
+	    return Collections.emptyList();
+	}
+	if (pageSize > 0) {
+	    done = true;
+	    return getEvents(new DateRangeSearchCriteria(page, pageSize, startDate, endDate)).getResults();
+	}
+
+	int requested = CHUNK_SIZE + returnedAtEndDate.size();
+	List<T> events = getEvents(new DateRangeSearchCriteria(1, requested, startDate, endDate)).getResults();
+	if (events.size() < requested) {
+	    done = true;
+	}
+	List<T> results = new ArrayList<T>(events.size());
+	for (T event : events) {
+	    if (!returnedAtEndDate.contains(event.getId())) {
+		results.add(event);
+	    }
+	}
+	if (!results.isEmpty()) {
+	    Date last = results.get(results.size() - 1).getEventDate();
+	    if (!last.equals(endDate)) {
+		returnedAtEndDate.clear();
+		endDate = last;
+	    }
+	    for (T event : results) {
+		if (endDate.equals(event.getEventDate())) {
+		    returnedAtEndDate.add(event.getId());
+		}
+	    }
+	}
+	return results;
+    }
+
+    /**
+     * Get events for the given criteria, newest first. Also used directly when
+     * results are not streamed.
+     * 
+     * @param criteria
+     * @return
+     * @throws SiteWhereException
+     */
+    public abstract ISearchResults<T> getEvents(IDateRangeSearchCriteria criteria) throws SiteWhereException;
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.web.rest.streaming;
+
+import java.util.List;
+
+import com.sitewhere.spi.SiteWhereException;
+
+/**
+ * Reads search results in chunks so that they can be written to a response
+ * without holding the whole result set in memory.
+ * 
+ * @author Derek
+ * 
+ * @param <T>
+ */
+public interface ISearchResultsCursor<T> {
+
+    /**
+     * Get the next chunk of results. Returns an empty list once all results
+     * have been read.
+     * 
+     * @return
+     * @throws SiteWhereException
+     */
+    public List<T> next() throws SiteWhereException;
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.web.rest.streaming;
+
+import java.util.Collections;
+import java.util.List;
+
+import com.sitewhere.spi.SiteWhereException;
+import com.sitewhere.spi.search.ISearchResults;
+
+/**
+ * Cursor that reads results a page at a time. If a page size was requested,
+ * only that page is read. Otherwise all results are read in pages of
+ * {@link #CHUNK_SIZE}.
+ * 
+ * @author Derek
+ * 
+ * @param <T>
+ */
+public abstract class PagedSearchResultsCursor<T> implements ISearchResultsCursor<T> {
+
+    /** Number of results read per page when streaming all results */
+    public static final int CHUNK_SIZE = 1000;
+
+    /** Next page to read */
+    private int page;
+
+    /** Requested page size or zero for all results */
+    private int pageSize;
+
+    /** Indicates whether all pages have been read */
+    private boolean done;
+
+    public PagedSearchResultsCursor(int page, int pageSize) {
+	this.page = page;
+	this.pageSize = pageSize;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.web.rest.streaming.ISearchResultsCursor#next()
+     */
+    @Override
+    public List<T> next() throws SiteWhereException {
+	if (done) {
+	    return Collections.emptyList();
+	}
+	if (pageSize > 0) {
+	    done = true;
+	    return getPage(page, pageSize).getResults();
+	}
+	List<T> results = getPage(page++, CHUNK_SIZE).getResults();
+	if (results.size() < CHUNK_SIZE) {
+	    done = true;
+	}
+	return results;
+    }
+
+    /**
+     * Get a page of results. Also used directly when results are not
+     * streamed.
+     * 
+     * @param page
+     * @param pageSize
+     * @return
+     * @throws SiteWhereException
+     */
+    public abstract ISearchResults<T> getPage(int page, int pageSize) throws SiteWhereException;
+}
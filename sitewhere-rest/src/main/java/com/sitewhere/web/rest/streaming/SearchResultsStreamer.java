@@ -0,0 +1,190 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.web.rest.streaming;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.sitewhere.spi.SiteWhereException;
+
+/**
+ * Writes search results to the response as they are read from an
+ * {@link ISearchResultsCursor} rather than building the whole result in
+ * memory. Streaming is used if the request has a 'stream=true' parameter or
+ * accepts 'application/x-ndjson'.
+ * 
+ * In JSON mode the response has the same structure as other search results,
+ * with the total written after the results. In NDJSON mode each result is
+ * written on its own line with no wrapper. The response is compressed if the
+ * client accepts gzip. Output is flushed after each chunk, so a client that
+ * disconnects stops the datastore reads at the next chunk.
+ * 
+ * If reading fails after results have been sent, the status can no longer be
+ * changed. The response then ends with an 'error' field in place of the total
+ * in JSON mode, or a final line holding an 'error' field in NDJSON mode, so a
+ * truncated export is not mistaken for a complete one.
+ * 
+ * @author Derek
+ */
+public class SearchResultsStreamer {
+
+    /** Static logger instance */
+    private static Logger LOGGER = LogManager.getLogger();
+
+    /** Request parameter that enables streaming */
+    public static final String REQUEST_STREAM = "stream";
+
+    /** Content type for newline-delimited JSON */
+    public static final String NDJSON = "application/x-ndjson";
+
+    /** Content encoding for gzip */
+    private static final String GZIP = "gzip";
+
+    /** Size of gzip output buffer */
+    private static final int GZIP_BUFFER_SIZE = 8192;
+
+    /** Writes each result using the same settings as the REST message converter */
+    private static final ObjectWriter WRITER = Jackson2ObjectMapperBuilder.json().build().writer()
+	    .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+    /**
+     * Indicates whether the request asks for streamed results.
+     * 
+     * @param request
+     * @return
+     */
+    public static boolean isRequested(HttpServletRequest request) {
+	return isNdjson(request) || "true".equalsIgnoreCase(request.getParameter(REQUEST_STREAM));
+    }
+
+    /**
+     * Write all results from a cursor to the response.
+     * 
+     * @param request
+     * @param response
+     * @param cursor
+     * @throws SiteWhereException
+     */
+    public static <T> void stream(HttpServletRequest request, HttpServletResponse response,
+	    ISearchResultsCursor<T> cursor) throws SiteWhereException {
+	// Read the first chunk before writing so errors are reported normally.
+	List<T> chunk = cursor.next();
+
+	boolean ndjson = isNdjson(request);
+	boolean gzip = acceptsGzip(request);
+	response.setContentType(ndjson ? NDJSON : MediaType.APPLICATION_JSON_VALUE);
+	response.setCharacterEncoding("UTF-8");
+	response.addHeader("Vary", "Accept-Encoding");
+	if (gzip) {
+	    response.setHeader("Content-Encoding", GZIP);
+	}
+
+	long count = 0;
+	try {
+	    OutputStream output = response.getOutputStream();
+	    GZIPOutputStream compressed = null;
+	    if (gzip) {
+		compressed = new GZIPOutputStream(output, GZIP_BUFFER_SIZE, true);
+		output = compressed;
+	    }
+	    JsonGenerator generator = WRITER.getFactory().createGenerator(output, JsonEncoding.UTF8);
+	    generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+	    generator.setRootValueSeparator(null);
+	    if (!ndjson) {
+		generator.writeStartObject();
+		generator.writeArrayFieldStart("results");
+	    }
+
+	    String error = null;
+	    try {
+		while (!chunk.isEmpty()) {
+		    for (T result : chunk) {
+			WRITER.writeValue(generator, result);
+			if (ndjson) {
+			    generator.writeRaw('\n');
+			}
+		    }
+		    count += chunk.size();
+		    generator.flush();
+		    chunk = cursor.next();
+		}
+	    } catch (SiteWhereException e) {
+		// Once results have been sent the status can no longer be changed.
+		if (!response.isCommitted()) {
+		    response.reset();
+		    throw e;
+		}
+		LOGGER.error("Error reading search results after " + count + " results.", e);
+		error = "Results truncated after " + count + " results. " + e.getMessage();
+	    }
+
+	    if (ndjson) {
+		if (error != null) {
+		    generator.writeStartObject();
+		    generator.writeStringField("error", error);
+		    generator.writeEndObject();
+		    generator.writeRaw('\n');
+		}
+	    } else {
+		generator.writeEndArray();
+		if (error != null) {
+		    generator.writeStringField("error", error);
+		} else {
+		    generator.writeNumberField("numResults", count);
+		}
+		generator.writeEndObject();
+	    }
+	    generator.close();
+	    if (compressed != null) {
+		compressed.finish();
+	    }
+	    output.flush();
+	} catch (SiteWhereException e) {
+	    throw e;
+	} catch (IOException e) {
+	    LOGGER.info("Stopped streaming search results after " + count + " results. Client may have disconnected.");
+	    LOGGER.debug("Error writing search results.", e);
+	}
+    }
+
+    /**
+     * Indicates whether the client asked for newline-delimited JSON.
+     * 
+     * @param request
+     * @return
+     */
+    protected static boolean isNdjson(HttpServletRequest request) {
+	String accept = request.getHeader("Accept");
+	return (accept != null) && (accept.contains(NDJSON));
+    }
+
+    /**
+     * Indicates whether the client accepts gzip responses.
+     * 
+     * @param request
+     * @return
+     */
+    protected static boolean acceptsGzip(HttpServletRequest request) {
+	String encoding = request.getHeader("Accept-Encoding");
+	return (encoding != null) && (encoding.toLowerCase().contains(GZIP));
+    }
+}
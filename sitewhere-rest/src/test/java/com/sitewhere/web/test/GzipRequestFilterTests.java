@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.web.test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.GZIPOutputStream;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.StreamUtils;
+
+import com.sitewhere.web.filters.GzipRequestFilter;
+
+/**
+ * Tests for decompressing gzip request bodies.
+ * 
+ * @author Derek
+ */
+public class GzipRequestFilterTests {
+
+    /** Uncompressed body used by tests */
+    private static final byte[] BODY = "{\"hardwareId\":\"123-TEST-4567890\",\"measurements\":[]}".getBytes();
+
+    @Test
+    public void testDecompressBody() throws Exception {
+	GzipRequestFilter filter = new GzipRequestFilter();
+	MockHttpServletResponse response = new MockHttpServletResponse();
+	CapturingFilterChain chain = new CapturingFilterChain();
+	filter.doFilter(createRequest(gzip(BODY)), response, chain);
+
+	Assert.assertTrue(chain.invoked);
+	Assert.assertArrayEquals(BODY, chain.body);
+	Assert.assertNull(chain.encoding);
+	Assert.assertEquals(BODY.length, chain.contentLength);
+	Assert.assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+    }
+
+    @Test
+    public void testUncompressedPassThrough() throws Exception {
+	GzipRequestFilter filter = new GzipRequestFilter();
+	MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/events");
+	request.setContent(BODY);
+	MockHttpServletResponse response = new MockHttpServletResponse();
+	CapturingFilterChain chain = new CapturingFilterChain();
+	filter.doFilter(request, response, chain);
+
+	Assert.assertTrue(chain.invoked);
+	Assert.assertArrayEquals(BODY, chain.body);
+    }
+
+    @Test
+    public void testBodyTooLarge() throws Exception {
+	GzipRequestFilter filter = new GzipRequestFilter();
+	filter.setMaxInflatedBytes(1024);
+	byte[] large = new byte[1024 * 1024];
+	Arrays.fill(large, (byte) 'a');
+	MockHttpServletResponse response = new MockHttpServletResponse();
+	CapturingFilterChain chain = new CapturingFilterChain();
+	filter.doFilter(createRequest(gzip(large)), response, chain);
+
+	Assert.assertFalse(chain.invoked);
+	Assert.assertEquals(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, response.getStatus());
+    }
+
+    @Test
+    public void testBodyAtLimit() throws Exception {
+	GzipRequestFilter filter = new GzipRequestFilter();
+	filter.setMaxInflatedBytes(BODY.length);
+	MockHttpServletResponse response = new MockHttpServletResponse();
+	CapturingFilterChain chain = new CapturingFilterChain();
+	filter.doFilter(createRequest(gzip(BODY)), response, chain);
+
+	Assert.assertTrue(chain.invoked);
+	Assert.assertArrayEquals(BODY, chain.body);
+    }
+
+    @Test
+    public void testMalformedBody() throws Exception {
+	GzipRequestFilter filter = new GzipRequestFilter();
+	MockHttpServletResponse response = new MockHttpServletResponse();
+	CapturingFilterChain chain = new CapturingFilterChain();
+	filter.doFilter(createRequest(BODY), response, chain);
+
+	Assert.assertFalse(chain.invoked);
+	Assert.assertEquals(HttpServletResponse.SC_BAD_REQUEST, response.getStatus());
+    }
+
+    @Test
+    public void testTruncatedBody() throws Exception {
+	GzipRequestFilter filter = new GzipRequestFilter();
+	byte[] compressed = gzip(BODY);
+	MockHttpServletResponse response = new MockHttpServletResponse();
+	CapturingFilterChain chain = new CapturingFilterChain();
+	filter.doFilter(createRequest(Arrays.copyOf(compressed, compressed.length / 2)), response, chain);
+
+	Assert.assertFalse(chain.invoked);
+	Assert.assertEquals(HttpServletResponse.SC_BAD_REQUEST, response.getStatus());
+    }
+
+    /**
+     * Create a request with a gzip content encoding.
+     * 
+     * @param content
+     * @return
+     */
+    protected MockHttpServletRequest createRequest(byte[] content) {
+	MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/events");
+	request.addHeader("Content-Encoding", GzipRequestFilter.GZIP);
+	request.setContent(content);
+	return request;
+    }
+
+    /**
+     * Compress data with gzip.
+     * 
+     * @param data
+     * @return
+     * @throws IOException
+     */
+    protected byte[] gzip(byte[] data) throws IOException {
+	ByteArrayOutputStream output = new ByteArrayOutputStream();
+	GZIPOutputStream gzip = new GZIPOutputStream(output);
+	gzip.write(data);
+	gzip.close();
+	return output.toByteArray();
+    }
+
+    /**
+     * Filter chain that records the request it was passed.
+     * 
+     * @author Derek
+     */
+    private static class CapturingFilterChain implements FilterChain {
+
+	/** Indicates chain was invoked */
+	private boolean invoked;
+
+	/** Body read from request */
+	private byte[] body;
+
+	/** Content encoding seen by chain */
+	private String encoding;
+
+	/** Content length seen by chain */
+	private int contentLength;
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see javax.servlet.FilterChain#doFilter(javax.servlet.ServletRequest,
+	 * javax.servlet.ServletResponse)
+	 */
+	@Override
+	public void doFilter(ServletRequest request, ServletResponse response) throws IOException, ServletException {
+	    invoked = true;
+	    body = StreamUtils.copyToByteArray(request.getInputStream());
+	    encoding = ((HttpServletRequest) request).getHeader("Content-Encoding");
+	    contentLength = request.getContentLength();
+	}
+    }
+}
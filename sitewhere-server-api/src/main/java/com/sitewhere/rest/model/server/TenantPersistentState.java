@@ -1,5 +1,7 @@
 package com.sitewhere.rest.model.server;
 
+import java.util.Date;
+
 import com.sitewhere.spi.server.lifecycle.LifecycleStatus;
 import com.sitewhere.spi.server.tenant.ITenantPersistentState;
 
@@ -16,6 +18,9 @@ public class TenantPersistentState implements ITenantPersistentState {
     /** Last known state for tenant engine */
     private LifecycleStatus lastKnownState;
 
+    /** Date of last recorded activity */
+    private Date lastActivityDate;
+
     /*
      * (non-Javadoc)
      * 
@@ -45,6 +50,21 @@ public class TenantPersistentState implements ITenantPersistentState {
 	this.lastKnownState = lastKnownState;
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.sitewhere.spi.server.tenant.ITenantPersistentState#getLastActivityDate
+     * ()
+     */
+    public Date getLastActivityDate() {
+	return lastActivityDate;
+    }
+
+    public void setLastActivityDate(Date lastActivityDate) {
+	this.lastActivityDate = lastActivityDate;
+    }
+
     /**
      * Copy from API object.
      * 
@@ -55,6 +75,7 @@ public class TenantPersistentState implements ITenantPersistentState {
 	TenantPersistentState state = new TenantPersistentState();
 	state.setDesiredState(api.getDesiredState());
 	state.setLastKnownState(api.getLastKnownState());
+	state.setLastActivityDate(api.getLastActivityDate());
 	return state;
     }
 }
\ No newline at end of file
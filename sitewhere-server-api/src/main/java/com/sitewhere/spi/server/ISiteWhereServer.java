@@ -21,6 +21,7 @@ import com.sitewhere.spi.device.IDeviceManagementCacheProvider;
 import com.sitewhere.spi.device.communication.IDeviceCommunication;
 import com.sitewhere.spi.device.event.IDeviceEventManagement;
 import com.sitewhere.spi.device.event.IEventProcessing;
+import com.sitewhere.spi.device.group.IDeviceGroupMembershipIndex;
 import com.sitewhere.spi.resource.IResourceManager;
 import com.sitewhere.spi.scheduling.IScheduleManagement;
 import com.sitewhere.spi.scheduling.IScheduleManager;
@@ -177,6 +178,17 @@ public interface ISiteWhereServer extends ILifecycleComponent, ILifecycleHierarc
      */
     public ISiteWhereTenantEngine getTenantEngine(String tenantId) throws SiteWhereException;
 
+    /**
+     * Get a tenant engine for an API call or inbound event and record activity
+     * for the tenant. If lazy start is enabled, an engine that is not running
+     * is initialized and started before returning.
+     * 
+     * @param tenantId
+     * @return
+     * @throws SiteWhereException
+     */
+    public ISiteWhereTenantEngine activateTenantEngine(String tenantId) throws SiteWhereException;
+
     /**
      * Called when tenant information has been updated so that cached data is
      * kept current.
@@ -227,6 +239,15 @@ public interface ISiteWhereServer extends ILifecycleComponent, ILifecycleHierarc
      */
     public IDeviceManagementCacheProvider getDeviceManagementCacheProvider(ITenant tenant) throws SiteWhereException;
 
+    /**
+     * Get device group membership index for tenant.
+     * 
+     * @param tenant
+     * @return
+     * @throws SiteWhereException
+     */
+    public IDeviceGroupMembershipIndex getDeviceGroupMembershipIndex(ITenant tenant) throws SiteWhereException;
+
     /**
      * Get asset management implementation for the given tenant.
      * 
@@ -7,6 +7,8 @@
  */
 package com.sitewhere.spi.server.tenant;
 
+import java.util.Date;
+
 import org.springframework.context.ApplicationContext;
 
 import com.sitewhere.spi.SiteWhereException;
@@ -21,6 +23,7 @@ import com.sitewhere.spi.device.IDeviceManagementCacheProvider;
 import com.sitewhere.spi.device.communication.IDeviceCommunication;
 import com.sitewhere.spi.device.event.IDeviceEventManagement;
 import com.sitewhere.spi.device.event.IEventProcessing;
+import com.sitewhere.spi.device.group.IDeviceGroupMembershipIndex;
 import com.sitewhere.spi.scheduling.IScheduleManagement;
 import com.sitewhere.spi.scheduling.IScheduleManager;
 import com.sitewhere.spi.search.external.ISearchProviderManager;
@@ -103,6 +106,13 @@ public interface ISiteWhereTenantEngine extends ITenantLifecycleComponent, ILife
      */
     public IDeviceManagementCacheProvider getDeviceManagementCacheProvider();
 
+    /**
+     * Get the device group membership index.
+     * 
+     * @return
+     */
+    public IDeviceGroupMembershipIndex getDeviceGroupMembershipIndex();
+
     /**
      * Get the asset management cache provider implementation.
      * 
@@ -169,6 +179,44 @@ public interface ISiteWhereTenantEngine extends ITenantLifecycleComponent, ILife
      */
     public void persistState(ITenantPersistentState state) throws SiteWhereException;
 
+    /**
+     * Record that the tenant was used by an API call or inbound event.
+     */
+    public void recordActivity();
+
+    /**
+     * Get date of last recorded activity. Activity from before a restart is
+     * loaded from the persistent state.
+     * 
+     * @return
+     */
+    public Date getLastActivityDate();
+
+    /**
+     * Persist the date of last recorded activity if it has changed since it
+     * was last persisted.
+     * 
+     * @throws SiteWhereException
+     */
+    public void persistLastActivity() throws SiteWhereException;
+
+    /**
+     * Stop the engine due to inactivity. Inbound event sources are left
+     * running (or started if the engine was never started) so that device
+     * traffic can start the engine again on demand.
+     * 
+     * @param monitor
+     * @throws SiteWhereException
+     */
+    public void idle(ILifecycleProgressMonitor monitor) throws SiteWhereException;
+
+    /**
+     * Indicates the engine is not running but its inbound event sources are.
+     * 
+     * @return
+     */
+    public boolean isIdle();
+
     /**
      * Issue a command to the tenant engine.
      * 
@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.spi.server.tenant;
+
+/**
+ * Settings that control how the server initializes, starts and stops tenant
+ * engines.
+ * 
+ * @author Derek
+ */
+public interface ITenantEngineSettings {
+
+    /**
+     * Get number of threads used to initialize tenant engines in parallel. A
+     * value of zero uses the number of available processors.
+     * 
+     * @return
+     */
+    public int getInitializationThreads();
+
+    /**
+     * Get number of threads used to start tenant engines in parallel.
+     * 
+     * @return
+     */
+    public int getStartupThreads();
+
+    /**
+     * Indicates if tenant engines are started on demand. If enabled, only
+     * recently active tenants are started with the server. Other tenants are
+     * started on the first API call or inbound event and stopped again after
+     * the idle timeout.
+     * 
+     * @return
+     */
+    public boolean isLazyStartEnabled();
+
+    /**
+     * Get number of minutes without activity before a tenant engine is stopped
+     * when lazy start is enabled.
+     * 
+     * @return
+     */
+    public int getIdleTimeoutMinutes();
+}
@@ -1,5 +1,7 @@
 package com.sitewhere.spi.server.tenant;
 
+import java.util.Date;
+
 import com.sitewhere.spi.server.lifecycle.LifecycleStatus;
 
 /**
@@ -22,4 +24,12 @@ public interface ITenantPersistentState {
      * @return
      */
     public LifecycleStatus getLastKnownState();
-}
\ No newline at end of file
+
+    /**
+     * Get date of last API call or inbound event for the tenant. Used to
+     * prioritize recently active tenants at startup.
+     * 
+     * @return
+     */
+    public Date getLastActivityDate();
+}
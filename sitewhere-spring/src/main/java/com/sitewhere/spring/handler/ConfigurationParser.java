@@ -19,6 +19,7 @@ import org.w3c.dom.Attr;
 import org.w3c.dom.Element;
 
 import com.sitewhere.server.SiteWhereServerBeans;
+import com.sitewhere.server.tenant.TenantEngineSettings;
 import com.sitewhere.version.VersionChecker;
 
 /**
@@ -71,6 +72,10 @@ public class ConfigurationParser extends AbstractBeanDefinitionParser {
 		parseDatastore(child, context);
 		break;
 	    }
+	    case TenantEngines: {
+		parseTenantEngines(child, context);
+		break;
+	    }
 	    }
 	}
 	return null;
@@ -96,6 +101,39 @@ public class ConfigurationParser extends AbstractBeanDefinitionParser {
 	new DatastoreParser().parse(child, context);
     }
 
+    /**
+     * Parse settings for tenant engine startup.
+     * 
+     * @param element
+     * @param context
+     */
+    protected void parseTenantEngines(Element element, ParserContext context) {
+	BeanDefinitionBuilder settings = BeanDefinitionBuilder.rootBeanDefinition(TenantEngineSettings.class);
+
+	Attr initializationThreads = element.getAttributeNode("initializationThreads");
+	if (initializationThreads != null) {
+	    settings.addPropertyValue("initializationThreads", initializationThreads.getValue());
+	}
+
+	Attr startupThreads = element.getAttributeNode("startupThreads");
+	if (startupThreads != null) {
+	    settings.addPropertyValue("startupThreads", startupThreads.getValue());
+	}
+
+	Attr lazyStart = element.getAttributeNode("lazyStart");
+	if (lazyStart != null) {
+	    settings.addPropertyValue("lazyStartEnabled", lazyStart.getValue());
+	}
+
+	Attr idleTimeoutMinutes = element.getAttributeNode("idleTimeoutMinutes");
+	if (idleTimeoutMinutes != null) {
+	    settings.addPropertyValue("idleTimeoutMinutes", idleTimeoutMinutes.getValue());
+	}
+
+	context.getRegistry().registerBeanDefinition(SiteWhereServerBeans.BEAN_TENANT_ENGINE_SETTINGS,
+		settings.getBeanDefinition());
+    }
+
     /**
      * Expected child elements.
      * 
@@ -107,7 +145,10 @@ public class ConfigurationParser extends AbstractBeanDefinitionParser {
 	Globals("globals"),
 
 	/** Datastore */
-	Datastore("datastore");
+	Datastore("datastore"),
+
+	/** Tenant engine startup settings */
+	TenantEngines("tenant-engines");
 
 	/** Event code */
 	private String localName;
@@ -91,6 +91,11 @@ public class DeviceServicesParser {
 	    manager.addPropertyValue("autoAssignToken", autoAssignToken.getValue());
 	}
 
+	Attr batchSize = element.getAttributeNode("batchSize");
+	if (batchSize != null) {
+	    manager.addPropertyValue("batchSize", batchSize.getValue());
+	}
+
 	return manager.getBeanDefinition();
     }
 
@@ -37,8 +37,11 @@ import com.sitewhere.device.communication.decoder.composite.BinaryCompositeDevic
 import com.sitewhere.device.communication.decoder.composite.DeviceSpecificationDecoderChoice;
 import com.sitewhere.device.communication.json.JsonBatchEventDecoder;
 import com.sitewhere.device.communication.json.JsonDeviceRequestDecoder;
+import com.sitewhere.device.communication.json.JsonDeviceRequestEncoder;
+import com.sitewhere.device.communication.loadgen.LoadGeneratorEventReceiver;
 import com.sitewhere.device.communication.mqtt.MqttInboundEventReceiver;
 import com.sitewhere.device.communication.protobuf.ProtobufDeviceEventDecoder;
+import com.sitewhere.device.communication.protobuf.ProtobufDeviceEventEncoder;
 import com.sitewhere.device.communication.socket.BinarySocketInboundEventReceiver;
 import com.sitewhere.device.communication.socket.HttpInteractionHandler;
 import com.sitewhere.device.communication.socket.ReadAllInteractionHandler;
@@ -120,6 +123,10 @@ public class EventSourcesParser extends SiteWhereBeanListParser {
 		result.add(parseHazelcastQueueEventSource(child, context));
 		break;
 	    }
+	    case LoadGeneratorEventSource: {
+		result.add(parseLoadGeneratorEventSource(child, context));
+		break;
+	    }
 	    case MqttEventSource: {
 		result.add(parseMqttEventSource(child, context));
 		break;
@@ -333,7 +340,7 @@ public class EventSourcesParser extends SiteWhereBeanListParser {
 
     /**
      * Parse an EventHub event source.
-     *
+     * 
      * @param element
      * @param context
      * @return
@@ -366,7 +373,7 @@ public class EventSourcesParser extends SiteWhereBeanListParser {
 
     /**
      * Create EventHub event receiver from XML element.
-     *
+     * 
      * @param element
      * @return
      */
@@ -1036,6 +1043,90 @@ public class EventSourcesParser extends SiteWhereBeanListParser {
 	return receiver.getBeanDefinition();
     }
 
+    /**
+     * Configure components needed to realize a load generator event source.
+     * The payload format determines both the encoder used by the generator
+     * and the decoder used by the event source.
+     * 
+     * @param element
+     * @param context
+     * @return
+     */
+    protected AbstractBeanDefinition parseLoadGeneratorEventSource(Element element, ParserContext context) {
+	BeanDefinitionBuilder source = getBuilderFor(BinaryInboundEventSource.class);
+
+	// Verify that a sourceId was provided and set it on the bean.
+	parseEventSourceId(element, source);
+
+	boolean json = false;
+	Attr payloadFormat = element.getAttributeNode("payloadFormat");
+	if (payloadFormat != null) {
+	    if ("json".equals(payloadFormat.getValue())) {
+		json = true;
+	    } else if (!"protobuf".equals(payloadFormat.getValue())) {
+		throw new RuntimeException("Unknown load generator payload format: " + payloadFormat.getValue());
+	    }
+	}
+
+	// Create load generator event receiver bean and register it.
+	AbstractBeanDefinition receiver = createLoadGeneratorEventReceiver(element, json);
+	String receiverName = nameGenerator.generateBeanName(receiver, context.getRegistry());
+	context.getRegistry().registerBeanDefinition(receiverName, receiver);
+
+	// Create list with bean reference and add it as property.
+	ManagedList<Object> list = new ManagedList<Object>();
+	RuntimeBeanReference ref = new RuntimeBeanReference(receiverName);
+	list.add(ref);
+	source.addPropertyValue("inboundEventReceivers", list);
+
+	// Add decoder that matches the payload format.
+	AbstractBeanDefinition decoder = json ? parseJsonDeviceRequestDecoder(element, null, context)
+		: parseProtobufDecoder(element, null, context);
+	String decoderName = nameGenerator.generateBeanName(decoder, context.getRegistry());
+	context.getRegistry().registerBeanDefinition(decoderName, decoder);
+	source.addPropertyReference("deviceEventDecoder", decoderName);
+
+	return source.getBeanDefinition();
+    }
+
+    /**
+     * Create load generator event receiver from XML element.
+     * 
+     * @param element
+     * @param json
+     * @return
+     */
+    protected AbstractBeanDefinition createLoadGeneratorEventReceiver(Element element, boolean json) {
+	BeanDefinitionBuilder receiver = BeanDefinitionBuilder.rootBeanDefinition(LoadGeneratorEventReceiver.class);
+
+	String[] properties = { "deviceCount", "specificationTokens", "siteToken", "hardwareIdPrefix",
+		"eventsPerSecond", "numThreads", "measurementsPerEvent", "measurementsWeight", "locationsWeight",
+		"alertsWeight", "durationSecs", "registerDevices", "registrationWaitSecs" };
+	for (String property : properties) {
+	    Attr attr = element.getAttributeNode(property);
+	    if (attr != null) {
+		receiver.addPropertyValue(property, attr.getValue());
+	    }
+	}
+
+	Attr arrivalDistribution = element.getAttributeNode("arrivalDistribution");
+	if (arrivalDistribution != null) {
+	    if ("poisson".equals(arrivalDistribution.getValue())) {
+		receiver.addPropertyValue("arrivalDistribution",
+			LoadGeneratorEventReceiver.ArrivalDistribution.Poisson);
+	    } else if (!"constant".equals(arrivalDistribution.getValue())) {
+		throw new RuntimeException(
+			"Unknown load generator arrival distribution: " + arrivalDistribution.getValue());
+	    }
+	}
+
+	BeanDefinitionBuilder encoder = BeanDefinitionBuilder
+		.rootBeanDefinition(json ? JsonDeviceRequestEncoder.class : ProtobufDeviceEventEncoder.class);
+	receiver.addPropertyValue("encoder", encoder.getBeanDefinition());
+
+	return receiver.getBeanDefinition();
+    }
+
     /**
      * Parse a binary decoder from the list of possibilities.
      * 
@@ -1428,6 +1519,9 @@ public class EventSourcesParser extends SiteWhereBeanListParser {
 	/** Hazelcast queue event source */
 	HazelcastQueueEventSource("hazelcast-queue-event-source"),
 
+	/** Load generator event source */
+	LoadGeneratorEventSource("load-generator-event-source"),
+
 	/** MQTT event source */
 	MqttEventSource("mqtt-event-source"),
 
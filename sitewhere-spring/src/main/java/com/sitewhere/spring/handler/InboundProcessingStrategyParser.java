@@ -18,6 +18,8 @@ import org.w3c.dom.Attr;
 import org.w3c.dom.Element;
 
 import com.sitewhere.device.communication.BlockingQueueInboundProcessingStrategy;
+import com.sitewhere.device.communication.JournaledInboundProcessingStrategy;
+import com.sitewhere.hazelcast.HazelcastPartitionedInboundProcessingStrategy;
 
 /**
  * Parse elements related to inbound processing strategy.
@@ -45,6 +47,12 @@ public class InboundProcessingStrategyParser {
 	    case DefaultInboundProcessingStrategy: {
 		return parseDefaultInboundProcessingStrategy(child, context);
 	    }
+	    case JournaledInboundProcessingStrategy: {
+		return parseJournaledInboundProcessingStrategy(child, context);
+	    }
+	    case PartitionedInboundProcessingStrategy: {
+		return parsePartitionedInboundProcessingStrategy(child, context);
+	    }
 	    }
 	}
 	return null;
@@ -81,6 +89,94 @@ public class InboundProcessingStrategyParser {
 	    manager.addPropertyValue("monitoringIntervalSec", monitoringIntervalSec.getValue());
 	}
 
+	Attr partitionCount = element.getAttributeNode("partitionCount");
+	if (partitionCount != null) {
+	    manager.addPropertyValue("partitionCount", partitionCount.getValue());
+	}
+
+	return manager.getBeanDefinition();
+    }
+
+    /**
+     * Parse information for the journaled inbound processing strategy.
+     * 
+     * @param element
+     * @param context
+     * @return
+     */
+    protected BeanDefinition parseJournaledInboundProcessingStrategy(Element element, ParserContext context) {
+	BeanDefinitionBuilder manager = BeanDefinitionBuilder
+		.rootBeanDefinition(JournaledInboundProcessingStrategy.class);
+
+	Attr journalDirectory = element.getAttributeNode("journalDirectory");
+	if (journalDirectory != null) {
+	    manager.addPropertyValue("journalDirectory", journalDirectory.getValue());
+	}
+
+	Attr segmentSizeMb = element.getAttributeNode("segmentSizeMb");
+	if (segmentSizeMb != null) {
+	    manager.addPropertyValue("segmentSizeMb", segmentSizeMb.getValue());
+	}
+
+	Attr consumerCount = element.getAttributeNode("consumerCount");
+	if (consumerCount != null) {
+	    manager.addPropertyValue("consumerCount", consumerCount.getValue());
+	}
+
+	Attr batchSize = element.getAttributeNode("batchSize");
+	if (batchSize != null) {
+	    manager.addPropertyValue("batchSize", batchSize.getValue());
+	}
+
+	Attr flushIntervalMs = element.getAttributeNode("flushIntervalMs");
+	if (flushIntervalMs != null) {
+	    manager.addPropertyValue("flushIntervalMs", flushIntervalMs.getValue());
+	}
+
+	Attr maxSegments = element.getAttributeNode("maxSegments");
+	if (maxSegments != null) {
+	    manager.addPropertyValue("maxSegments", maxSegments.getValue());
+	}
+
+	Attr appendTimeoutMs = element.getAttributeNode("appendTimeoutMs");
+	if (appendTimeoutMs != null) {
+	    manager.addPropertyValue("appendTimeoutMs", appendTimeoutMs.getValue());
+	}
+
+	return manager.getBeanDefinition();
+    }
+
+    /**
+     * Parse information for the partitioned inbound processing strategy.
+     * 
+     * @param element
+     * @param context
+     * @return
+     */
+    protected BeanDefinition parsePartitionedInboundProcessingStrategy(Element element, ParserContext context) {
+	BeanDefinitionBuilder manager = BeanDefinitionBuilder
+		.rootBeanDefinition(HazelcastPartitionedInboundProcessingStrategy.class);
+
+	Attr partitionCount = element.getAttributeNode("partitionCount");
+	if (partitionCount != null) {
+	    manager.addPropertyValue("partitionCount", partitionCount.getValue());
+	}
+
+	Attr partitionCapacity = element.getAttributeNode("partitionCapacity");
+	if (partitionCapacity != null) {
+	    manager.addPropertyValue("partitionCapacity", partitionCapacity.getValue());
+	}
+
+	Attr batchSize = element.getAttributeNode("batchSize");
+	if (batchSize != null) {
+	    manager.addPropertyValue("batchSize", batchSize.getValue());
+	}
+
+	Attr batchIntervalMs = element.getAttributeNode("batchIntervalMs");
+	if (batchIntervalMs != null) {
+	    manager.addPropertyValue("batchIntervalMs", batchIntervalMs.getValue());
+	}
+
 	return manager.getBeanDefinition();
     }
 
@@ -110,7 +206,13 @@ public class InboundProcessingStrategyParser {
 	BlockingQueueInboundProcessingStrategy("blocking-queue-inbound-processing-strategy"),
 
 	/** Default inbound processing strategy */
-	DefaultInboundProcessingStrategy("default-inbound-processing-strategy");
+	DefaultInboundProcessingStrategy("default-inbound-processing-strategy"),
+
+	/** Journaled inbound processing strategy */
+	JournaledInboundProcessingStrategy("journaled-inbound-processing-strategy"),
+
+	/** Hazelcast partitioned inbound processing strategy */
+	PartitionedInboundProcessingStrategy("partitioned-inbound-processing-strategy");
 
 	/** Event code */
 	private String localName;
@@ -24,11 +24,13 @@ import com.sitewhere.azure.device.communication.EventHubOutboundEventProcessor;
 import com.sitewhere.cloud.providers.dweetio.DweetIoEventProcessor;
 import com.sitewhere.cloud.providers.initialstate.InitialStateEventProcessor;
 import com.sitewhere.device.communication.DeviceCommandEventProcessor;
+import com.sitewhere.device.communication.loadgen.LatencyReportEventProcessor;
 import com.sitewhere.device.communication.mqtt.MqttOutboundEventProcessor;
 import com.sitewhere.device.event.processor.DefaultOutboundEventProcessorChain;
 import com.sitewhere.device.event.processor.filter.FilterOperation;
 import com.sitewhere.device.event.processor.filter.SiteFilter;
 import com.sitewhere.device.event.processor.filter.SpecificationFilter;
+import com.sitewhere.device.event.rollup.MeasurementRollupEventProcessor;
 import com.sitewhere.geospatial.ZoneTest;
 import com.sitewhere.geospatial.ZoneTestEventProcessor;
 import com.sitewhere.groovy.device.event.processor.GroovyEventProcessor;
@@ -131,6 +133,14 @@ public class OutboundProcessingChainParser extends SiteWhereBeanDefinitionParser
 		processors.add(parseGroovyEventProcessor(child, context));
 		break;
 	    }
+	    case MeasurementRollupEventProcessor: {
+		processors.add(parseMeasurementRollupEventProcessor(child, context));
+		break;
+	    }
+	    case LatencyReportEventProcessor: {
+		processors.add(parseLatencyReportEventProcessor(child, context));
+		break;
+	    }
 	    }
 	}
 	chain.addPropertyValue("processors", processors);
@@ -547,6 +557,55 @@ public class OutboundProcessingChainParser extends SiteWhereBeanDefinitionParser
 	return processor.getBeanDefinition();
     }
 
+    /**
+     * Parse configuration for event processor that maintains measurement
+     * rollups.
+     * 
+     * @param element
+     * @param context
+     * @return
+     */
+    protected AbstractBeanDefinition parseMeasurementRollupEventProcessor(Element element, ParserContext context) {
+	BeanDefinitionBuilder processor = BeanDefinitionBuilder
+		.rootBeanDefinition(MeasurementRollupEventProcessor.class);
+
+	Attr flushIntervalSecs = element.getAttributeNode("flushIntervalSecs");
+	if (flushIntervalSecs != null) {
+	    processor.addPropertyValue("flushIntervalSecs", flushIntervalSecs.getValue());
+	}
+
+	Attr flushBatchSize = element.getAttributeNode("flushBatchSize");
+	if (flushBatchSize != null) {
+	    processor.addPropertyValue("flushBatchSize", flushBatchSize.getValue());
+	}
+
+	// Parse nested filters.
+	processor.addPropertyValue("filters", parseFilters(element, context));
+
+	return processor.getBeanDefinition();
+    }
+
+    /**
+     * Parse configuration for event processor that reports event latency.
+     * 
+     * @param element
+     * @param context
+     * @return
+     */
+    protected AbstractBeanDefinition parseLatencyReportEventProcessor(Element element, ParserContext context) {
+	BeanDefinitionBuilder processor = BeanDefinitionBuilder.rootBeanDefinition(LatencyReportEventProcessor.class);
+
+	Attr reportIntervalSecs = element.getAttributeNode("reportIntervalSecs");
+	if (reportIntervalSecs != null) {
+	    processor.addPropertyValue("reportIntervalSecs", reportIntervalSecs.getValue());
+	}
+
+	// Parse nested filters.
+	processor.addPropertyValue("filters", parseFilters(element, context));
+
+	return processor.getBeanDefinition();
+    }
+
     /**
      * Parse configuration for event processor that uses Siddhi to perform
      * complex event processing.
@@ -920,7 +979,13 @@ public class OutboundProcessingChainParser extends SiteWhereBeanDefinitionParser
 	SiddhiEventProcessor("siddhi-event-processor"),
 
 	/** Outbound event processor that delegates to a Groovy script */
-	GroovyEventProcessor("groovy-event-processor");
+	GroovyEventProcessor("groovy-event-processor"),
+
+	/** Outbound event processor that maintains measurement rollups */
+	MeasurementRollupEventProcessor("measurement-rollup-event-processor"),
+
+	/** Outbound event processor that reports event latency */
+	LatencyReportEventProcessor("latency-report-event-processor");
 
 	/** Event code */
 	private String localName;
@@ -16,7 +16,9 @@ import org.springframework.util.xml.DomUtils;
 import org.w3c.dom.Attr;
 import org.w3c.dom.Element;
 
+import com.sitewhere.device.communication.BackpressureOutboundProcessingStrategy;
 import com.sitewhere.device.communication.BlockingQueueOutboundProcessingStrategy;
+import com.sitewhere.device.communication.OutboundOverloadPolicy;
 
 /**
  * Parse elements related to outbound processing strategy.
@@ -44,6 +46,9 @@ public class OutboundProcessingStrategyParser {
 	    case DefaultOutboundProcessingStrategy: {
 		return parseDefaultOutboundProcessingStrategy(child, context);
 	    }
+	    case BackpressureOutboundProcessingStrategy: {
+		return parseBackpressureOutboundProcessingStrategy(child, context);
+	    }
 	    }
 	}
 	return null;
@@ -70,6 +75,59 @@ public class OutboundProcessingStrategyParser {
 	    manager.addPropertyValue("eventProcessorThreadCount", numEventProcessorThreads.getValue());
 	}
 
+	Attr partitionCount = element.getAttributeNode("partitionCount");
+	if (partitionCount != null) {
+	    manager.addPropertyValue("partitionCount", partitionCount.getValue());
+	}
+
+	return manager.getBeanDefinition();
+    }
+
+    /**
+     * Parse information for the backpressure outbound processing strategy.
+     * 
+     * @param element
+     * @param context
+     * @return
+     */
+    protected BeanDefinition parseBackpressureOutboundProcessingStrategy(Element element, ParserContext context) {
+	BeanDefinitionBuilder manager = BeanDefinitionBuilder
+		.rootBeanDefinition(BackpressureOutboundProcessingStrategy.class);
+
+	Attr maxQueueSize = element.getAttributeNode("maxQueueSize");
+	if (maxQueueSize != null) {
+	    manager.addPropertyValue("maxQueueSize", maxQueueSize.getValue());
+	}
+
+	Attr minWorkers = element.getAttributeNode("minWorkers");
+	if (minWorkers != null) {
+	    manager.addPropertyValue("minWorkers", minWorkers.getValue());
+	}
+
+	Attr maxWorkers = element.getAttributeNode("maxWorkers");
+	if (maxWorkers != null) {
+	    manager.addPropertyValue("maxWorkers", maxWorkers.getValue());
+	}
+
+	Attr overloadPolicy = element.getAttributeNode("overloadPolicy");
+	if (overloadPolicy != null) {
+	    OutboundOverloadPolicy policy = OutboundOverloadPolicy.getByConfigValue(overloadPolicy.getValue());
+	    if (policy == null) {
+		throw new RuntimeException("Unknown outbound overload policy: " + overloadPolicy.getValue());
+	    }
+	    manager.addPropertyValue("overloadPolicy", policy);
+	}
+
+	Attr blockTimeoutMs = element.getAttributeNode("blockTimeoutMs");
+	if (blockTimeoutMs != null) {
+	    manager.addPropertyValue("blockTimeoutMs", blockTimeoutMs.getValue());
+	}
+
+	Attr spillDirectory = element.getAttributeNode("spillDirectory");
+	if (spillDirectory != null) {
+	    manager.addPropertyValue("spillDirectory", spillDirectory.getValue());
+	}
+
 	return manager.getBeanDefinition();
     }
 
@@ -84,7 +142,10 @@ public class OutboundProcessingStrategyParser {
 	BlockingQueueOutboundProcessingStrategy("blocking-queue-outbound-processing-strategy"),
 
 	/** Default outbound processing strategy */
-	DefaultOutboundProcessingStrategy("default-outbound-processing-strategy");
+	DefaultOutboundProcessingStrategy("default-outbound-processing-strategy"),
+
+	/** Outbound processing strategy with a queue per processor */
+	BackpressureOutboundProcessingStrategy("backpressure-outbound-processing-strategy");
 
 	/** Event code */
 	private String localName;
@@ -25,6 +25,10 @@ import com.sitewhere.hbase.device.HBaseDeviceEventManagement;
 import com.sitewhere.hbase.device.HBaseDeviceManagement;
 import com.sitewhere.hbase.scheduling.HBaseScheduleManagement;
 import com.sitewhere.influx.InfluxDbDeviceEventManagement;
+import com.sitewhere.memory.asset.MemoryAssetManagement;
+import com.sitewhere.memory.device.MemoryDeviceEventManagement;
+import com.sitewhere.memory.device.MemoryDeviceManagement;
+import com.sitewhere.memory.scheduling.MemoryScheduleManagement;
 import com.sitewhere.mongodb.asset.MongoAssetManagement;
 import com.sitewhere.mongodb.device.MongoDeviceEventManagement;
 import com.sitewhere.mongodb.device.MongoDeviceManagement;
@@ -80,6 +84,10 @@ public class TenantDatastoreParser extends AbstractBeanDefinitionParser {
 		parseHBaseTenantDatasource(child, context);
 		break;
 	    }
+	    case MemoryTenantDatastore: {
+		parseMemoryTenantDatasource(child, context);
+		break;
+	    }
 	    case EHCacheDeviceManagementCache: {
 		break;
 	    }
@@ -201,6 +209,10 @@ public class TenantDatastoreParser extends AbstractBeanDefinitionParser {
 	if (logLevel != null) {
 	    dem.addPropertyValue("logLevel", logLevel.getValue());
 	}
+	Attr countTotals = element.getAttributeNode("countTotals");
+	if (countTotals != null) {
+	    dem.addPropertyValue("countTotals", countTotals.getValue());
+	}
 	context.getRegistry().registerBeanDefinition(SiteWhereServerBeans.BEAN_DEVICE_EVENT_MANAGEMENT,
 		dem.getBeanDefinition());
 
@@ -234,6 +246,14 @@ public class TenantDatastoreParser extends AbstractBeanDefinitionParser {
 	// Register HBase device event management implementation.
 	BeanDefinitionBuilder dem = BeanDefinitionBuilder.rootBeanDefinition(HBaseDeviceEventManagement.class);
 	dem.addPropertyReference("client", "hbase");
+	Attr columnarMeasurements = element.getAttributeNode("columnarMeasurements");
+	if (columnarMeasurements != null) {
+	    dem.addPropertyValue("columnarMeasurements", columnarMeasurements.getValue());
+	}
+	Attr measurementCompactionDelayMs = element.getAttributeNode("measurementCompactionDelayMs");
+	if (measurementCompactionDelayMs != null) {
+	    dem.addPropertyValue("measurementCompactionDelayMs", measurementCompactionDelayMs.getValue());
+	}
 	context.getRegistry().registerBeanDefinition(SiteWhereServerBeans.BEAN_DEVICE_EVENT_MANAGEMENT,
 		dem.getBeanDefinition());
 
@@ -250,6 +270,39 @@ public class TenantDatastoreParser extends AbstractBeanDefinitionParser {
 		sm.getBeanDefinition());
     }
 
+    /**
+     * Parse an in-memory datasource configuration and create beans needed to
+     * realize it.
+     * 
+     * @param element
+     * @param context
+     */
+    protected void parseMemoryTenantDatasource(Element element, ParserContext context) {
+	// Register in-memory device management implementation.
+	BeanDefinitionBuilder dm = BeanDefinitionBuilder.rootBeanDefinition(MemoryDeviceManagement.class);
+	context.getRegistry().registerBeanDefinition(SiteWhereServerBeans.BEAN_DEVICE_MANAGEMENT,
+		dm.getBeanDefinition());
+
+	// Register in-memory device event management implementation.
+	BeanDefinitionBuilder dem = BeanDefinitionBuilder.rootBeanDefinition(MemoryDeviceEventManagement.class);
+	Attr maxEventsPerAssignment = element.getAttributeNode("maxEventsPerAssignment");
+	if (maxEventsPerAssignment != null) {
+	    dem.addPropertyValue("maxEventsPerAssignment", maxEventsPerAssignment.getValue());
+	}
+	context.getRegistry().registerBeanDefinition(SiteWhereServerBeans.BEAN_DEVICE_EVENT_MANAGEMENT,
+		dem.getBeanDefinition());
+
+	// Register in-memory asset management implementation.
+	BeanDefinitionBuilder am = BeanDefinitionBuilder.rootBeanDefinition(MemoryAssetManagement.class);
+	context.getRegistry().registerBeanDefinition(SiteWhereServerBeans.BEAN_ASSET_MANAGEMENT,
+		am.getBeanDefinition());
+
+	// Register in-memory schedule management implementation.
+	BeanDefinitionBuilder sm = BeanDefinitionBuilder.rootBeanDefinition(MemoryScheduleManagement.class);
+	context.getRegistry().registerBeanDefinition(SiteWhereServerBeans.BEAN_SCHEDULE_MANAGEMENT,
+		sm.getBeanDefinition());
+    }
+
     /**
      * Parse configuration for default device model initializer.
      * 
@@ -306,6 +359,9 @@ public class TenantDatastoreParser extends AbstractBeanDefinitionParser {
 	/** HBase tenant datastore service providers */
 	HBaseTenantDatastore("hbase-tenant-datastore"),
 
+	/** In-memory tenant datastore service providers */
+	MemoryTenantDatastore("memory-tenant-datastore"),
+
 	/** EHCache device mananagement cache provider */
 	@Deprecated
 	EHCacheDeviceManagementCache("ehcache-device-management-cache"),
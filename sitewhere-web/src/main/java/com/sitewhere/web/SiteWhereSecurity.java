@@ -22,6 +22,7 @@ import org.springframework.security.config.annotation.web.builders.WebSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
 import org.springframework.security.config.http.SessionCreationPolicy;
+import org.springframework.security.web.authentication.www.BasicAuthenticationFilter;
 import org.springframework.security.web.util.matcher.RequestMatcher;
 
 import com.sitewhere.SiteWhere;
@@ -39,6 +40,9 @@ public class SiteWhereSecurity {
     @EnableGlobalMethodSecurity(securedEnabled = true, prePostEnabled = true)
     public static class RestSecurityConfiguration extends WebSecurityConfigurerAdapter {
 
+	/** Provider shared by basic and token authentication */
+	private SitewhereAuthenticationProvider authenticationProvider;
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -63,7 +67,7 @@ public class SiteWhereSecurity {
 	 */
 	@Override
 	protected void configure(AuthenticationManagerBuilder auth) throws Exception {
-	    auth.authenticationProvider(new SitewhereAuthenticationProvider(SiteWhere.getServer().getUserManagement()));
+	    auth.authenticationProvider(getAuthenticationProvider());
 	}
 
 	/*
@@ -80,6 +84,21 @@ public class SiteWhereSecurity {
 		    .authorizeRequests().antMatchers(HttpMethod.OPTIONS, "/api/**").permitAll()
 		    .antMatchers(HttpMethod.GET, "/api/**/symbol").permitAll().antMatchers("/api/**")
 		    .hasRole(SiteWhereRoles.AUTH_REST).and().httpBasic();
+	    http.addFilterBefore(new TokenAuthenticationFilter(getAuthenticationProvider()),
+		    BasicAuthenticationFilter.class);
+	}
+
+	/**
+	 * Get provider used for REST authentication, creating it if necessary.
+	 * 
+	 * @return
+	 */
+	protected synchronized SitewhereAuthenticationProvider getAuthenticationProvider() {
+	    if (authenticationProvider == null) {
+		authenticationProvider = new SitewhereAuthenticationProvider(
+			SiteWhere.getServer().getUserManagement());
+	    }
+	    return authenticationProvider;
 	}
     }
 
@@ -35,6 +35,7 @@ import com.hazelcast.core.HazelcastInstance;
 import com.sitewhere.SiteWhere;
 import com.sitewhere.SiteWhereApplication;
 import com.sitewhere.hazelcast.NoShutdownHazelcastInstance;
+import com.sitewhere.web.filters.GzipRequestFilter;
 import com.sitewhere.web.filters.JsonpFilter;
 import com.sitewhere.web.filters.MethodOverrideFilter;
 import com.sitewhere.web.filters.NoCacheFilter;
@@ -146,6 +147,15 @@ public class SiteWhereWebApplication extends SiteWhereApplication {
 	return registration;
     }
 
+    @Bean
+    public FilterRegistrationBean gzipRequestFilter() {
+	GzipRequestFilter filter = new GzipRequestFilter();
+	FilterRegistrationBean registration = new FilterRegistrationBean();
+	registration.setFilter(filter);
+	registration.addUrlPatterns(RestMvcConfiguration.REST_API_MATCHER);
+	return registration;
+    }
+
     @Bean
     public FilterRegistrationBean responseTimerFilter() {
 	ResponseTimerFilter filter = new ResponseTimerFilter();
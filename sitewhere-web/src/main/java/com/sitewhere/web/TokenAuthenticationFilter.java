@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) SiteWhere, LLC. All rights reserved. http://www.sitewhere.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.web;
+
+import java.io.IOException;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import com.sitewhere.security.SitewhereAuthenticationProvider;
+
+/**
+ * Authenticates REST requests that carry an access token in the
+ * "Authorization: Bearer" header. Requests without a bearer token are passed
+ * through to the remaining authentication filters.
+ * 
+ * @author Derek
+ */
+public class TokenAuthenticationFilter extends OncePerRequestFilter {
+
+    /** Authorization header name */
+    private static final String AUTHORIZATION_HEADER = "Authorization";
+
+    /** Prefix for bearer tokens */
+    private static final String BEARER_PREFIX = "Bearer ";
+
+    /** Provider used to validate tokens */
+    private SitewhereAuthenticationProvider authenticationProvider;
+
+    public TokenAuthenticationFilter(SitewhereAuthenticationProvider authenticationProvider) {
+	this.authenticationProvider = authenticationProvider;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * org.springframework.web.filter.OncePerRequestFilter#doFilterInternal(
+     * javax.servlet.http.HttpServletRequest,
+     * javax.servlet.http.HttpServletResponse, javax.servlet.FilterChain)
+     */
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+	    throws ServletException, IOException {
+	String header = request.getHeader(AUTHORIZATION_HEADER);
+	if ((header != null) && (header.startsWith(BEARER_PREFIX))) {
+	    try {
+		Authentication auth = authenticationProvider
+			.authenticateToken(header.substring(BEARER_PREFIX.length()).trim());
+		SecurityContextHolder.getContext().setAuthentication(auth);
+	    } catch (AuthenticationException e) {
+		SecurityContextHolder.clearContext();
+		response.sendError(HttpServletResponse.SC_UNAUTHORIZED, e.getMessage());
+		return;
+	    }
+	}
+	chain.doFilter(request, response);
+    }
+}
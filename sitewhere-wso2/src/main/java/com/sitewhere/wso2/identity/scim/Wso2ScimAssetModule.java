@@ -42,6 +42,7 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.sitewhere.rest.model.asset.PersonAsset;
 import com.sitewhere.rest.model.command.CommandResponse;
 import com.sitewhere.server.asset.AssetMatcher;
+import com.sitewhere.server.asset.AssetSearchIndex;
 import com.sitewhere.server.lifecycle.LifecycleComponent;
 import com.sitewhere.spi.SiteWhereException;
 import com.sitewhere.spi.asset.AssetType;
@@ -240,6 +241,16 @@ public class Wso2ScimAssetModule extends LifecycleComponent implements IAssetMod
 	return results;
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.sitewhere.spi.asset.IAssetModule#search(java.lang.String, int)
+     */
+    @Override
+    public List<PersonAsset> search(String criteria, int maxResults) throws SiteWhereException {
+	return AssetSearchIndex.sortAndLimit(search(criteria), maxResults);
+    }
+
     /*
      * (non-Javadoc)
      * 